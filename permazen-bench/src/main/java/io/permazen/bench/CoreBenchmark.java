@@ -0,0 +1,141 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.bench;
+
+import io.permazen.core.ObjId;
+import io.permazen.core.Transaction;
+import io.permazen.tuple.Tuple2;
+
+import java.util.ArrayList;
+import java.util.NavigableSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Core API ({@link Transaction}) workloads: simple field reads and writes, index queries, and reference path traversal.
+ *
+ * <p>
+ * Each invocation runs one transaction performing {@link #BATCH_SIZE} operations, and results are reported per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoreBenchmark {
+
+    /**
+     * Number of operations per transaction.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    /**
+     * Number of reference fields traversed by the reference path benchmarks.
+     */
+    public static final int PATH_LENGTH = 3;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void readSimpleField(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            final Transaction tx = jtx.getTransaction();
+            for (int i = 0; i < BATCH_SIZE; i++)
+                blackhole.consume(tx.readSimpleField(state.randomId(), state.getNameField(), false));
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeSimpleField(PermazenState state) {
+        state.execute(jtx -> {
+            final Transaction tx = jtx.getTransaction();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++)
+                tx.writeSimpleField(state.randomId(), state.getAgeField(), random.nextInt(PermazenState.NUM_AGES), false);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void queryIndex(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            final Transaction tx = jtx.getTransaction();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final NavigableSet<ObjId> ids = tx.queryIndex(state.getAgeField()).asMap()
+                  .get(random.nextInt(PermazenState.NUM_AGES));
+                if (ids != null)
+                    ids.forEach(blackhole::consume);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void queryCompositeIndex(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            final Transaction tx = jtx.getTransaction();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final int index = random.nextInt(PermazenState.NUM_NAMES);
+                final NavigableSet<ObjId> ids = tx.queryCompositeIndex2(state.getNameAndAgeIndex()).asMap()
+                  .get(new Tuple2<>(state.name(index), index % PermazenState.NUM_AGES));
+                if (ids != null)
+                    ids.forEach(blackhole::consume);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void followReferencePath(PermazenState state, Blackhole blackhole) {
+        final int[] path = CoreBenchmark.buildPath(state.getFriendField());
+        final ArrayList<ObjId> starts = CoreBenchmark.randomIds(state);
+        state.executeReadOnly(jtx -> {
+            jtx.getTransaction().followReferencePath(starts, path, null).forEach(blackhole::consume);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void invertReferencePath(PermazenState state, Blackhole blackhole) {
+        final int[] path = CoreBenchmark.buildPath(state.getFriendField());
+        final ArrayList<ObjId> targets = CoreBenchmark.randomIds(state);
+        state.executeReadOnly(jtx -> {
+            jtx.getTransaction().invertReferencePath(path, null, targets).forEach(blackhole::consume);
+            return null;
+        });
+    }
+
+    private static int[] buildPath(int storageId) {
+        final int[] path = new int[PATH_LENGTH];
+        for (int i = 0; i < path.length; i++)
+            path[i] = storageId;
+        return path;
+    }
+
+    private static ArrayList<ObjId> randomIds(PermazenState state) {
+        final ArrayList<ObjId> ids = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+            ids.add(state.randomId());
+        return ids;
+    }
+}
@@ -0,0 +1,223 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.bench;
+
+import io.permazen.CopyState;
+import io.permazen.JObject;
+import io.permazen.JTransaction;
+import io.permazen.ReferencePath;
+import io.permazen.SnapshotJTransaction;
+import io.permazen.ValidationMode;
+import io.permazen.index.Index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Java layer ({@link JTransaction}) workloads: object lifecycle, complex field mutation, index queries,
+ * reference paths, copying, and validation.
+ *
+ * <p>
+ * Each invocation runs one transaction performing {@link #BATCH_SIZE} operations, and results are reported per operation.
+ * Compare with {@link CoreBenchmark} to see the overhead added by the Java layer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaBenchmark {
+
+    /**
+     * Number of operations per transaction.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    /**
+     * Reference path traversed by the reference path benchmarks.
+     */
+    public static final String FRIEND_PATH = "friend.friend.friend";
+
+// Object lifecycle
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void get(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            for (int i = 0; i < BATCH_SIZE; i++)
+                blackhole.consume(jtx.get(state.randomId(), Person.class).getName());
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void create(PermazenState state) {
+        state.execute(jtx -> {
+            for (int i = 0; i < BATCH_SIZE; i++)
+                state.populate(jtx.create(Person.class), i);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void createAndDelete(PermazenState state) {
+        state.execute(jtx -> {
+            final ArrayList<Person> people = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++)
+                people.add(state.populate(jtx.create(Person.class), i));
+            for (Person person : people)
+                jtx.delete(person);
+            return null;
+        });
+    }
+
+// Complex fields
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void mutateSet(PermazenState state) {
+        state.execute(jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final NavigableSet<String> tags = jtx.get(state.randomId(), Person.class).getTags();
+                final String tag = "tag" + random.nextInt(PermazenState.NUM_TAGS);
+                if (!tags.add(tag))
+                    tags.remove(tag);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void mutateList(PermazenState state) {
+        state.execute(jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final List<Integer> scores = jtx.get(state.randomId(), Person.class).getScores();
+                if (scores.isEmpty() || random.nextBoolean())
+                    scores.add(random.nextInt());
+                else
+                    scores.set(random.nextInt(scores.size()), random.nextInt());
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void mutateMap(PermazenState state) {
+        state.execute(jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++)
+                jtx.get(state.randomId(), Person.class).getAttributes().put("weight", random.nextInt(150));
+            return null;
+        });
+    }
+
+// Indexes
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void queryIndex(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final NavigableSet<Person> people = jtx.queryIndex(Person.class, "age", Integer.class).asMap()
+                  .get(random.nextInt(PermazenState.NUM_AGES));
+                if (people != null)
+                    people.forEach(blackhole::consume);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void queryCompositeIndex(PermazenState state, Blackhole blackhole) {
+        state.executeReadOnly(jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final int index = random.nextInt(PermazenState.NUM_NAMES);
+                final Index<Integer, Person> ageIndex = jtx.queryCompositeIndex(Person.class,
+                  "nameAndAge", String.class, Integer.class).asMapOfIndex().get(state.name(index));
+                final NavigableSet<Person> people = ageIndex != null ? ageIndex.asMap().get(index % PermazenState.NUM_AGES) : null;
+                if (people != null)
+                    people.forEach(blackhole::consume);
+            }
+            return null;
+        });
+    }
+
+// Reference paths
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void followReferencePath(PermazenState state, Blackhole blackhole) {
+        final ReferencePath path = state.getPermazen().parseReferencePath(Person.class, FRIEND_PATH, false);
+        state.executeReadOnly(jtx -> {
+            jtx.followReferencePath(path, JavaBenchmark.randomPeople(state, jtx)).forEach(blackhole::consume);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void invertReferencePath(PermazenState state, Blackhole blackhole) {
+        final ReferencePath path = state.getPermazen().parseReferencePath(Person.class, FRIEND_PATH, false);
+        state.executeReadOnly(jtx -> {
+            jtx.invertReferencePath(path, JavaBenchmark.randomPeople(state, jtx)).forEach(blackhole::consume);
+            return null;
+        });
+    }
+
+// Copying
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void copyTo(PermazenState state) {
+        state.executeReadOnly(jtx -> {
+            final SnapshotJTransaction snapshot = jtx.createSnapshotTransaction(ValidationMode.MANUAL);
+            jtx.copyTo(snapshot, new CopyState(), JavaBenchmark.randomPeople(state, jtx));
+            return null;
+        });
+    }
+
+// Validation
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void validateOnCommit(PermazenState state) {
+        state.execute(false, ValidationMode.AUTOMATIC, jtx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++)
+                jtx.get(state.randomId(), Person.class).setAge(random.nextInt(PermazenState.NUM_AGES));
+            return null;
+        });
+    }
+
+    private static ArrayList<JObject> randomPeople(PermazenState state, JTransaction jtx) {
+        final ArrayList<JObject> people = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+            people.add(jtx.get(state.randomId()));
+        return people;
+    }
+}
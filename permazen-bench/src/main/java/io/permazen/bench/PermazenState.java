@@ -0,0 +1,247 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.bench;
+
+import io.permazen.JClass;
+import io.permazen.JTransaction;
+import io.permazen.Permazen;
+import io.permazen.PermazenFactory;
+import io.permazen.ValidationMode;
+import io.permazen.core.Database;
+import io.permazen.core.ObjId;
+import io.permazen.kv.simple.SimpleKVDatabase;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared benchmark state: a {@link Permazen} instance over an in-memory {@link SimpleKVDatabase}
+ * pre-populated with {@link #numObjects} {@link Person} objects.
+ *
+ * <p>
+ * Person number {@code i} has name {@code "name" + (i % NUM_NAMES)}, age {@code i % NUM_AGES}, refers to person
+ * {@code i - 1} as its friend (person zero refers to the last person), and has a few tags, scores, and attributes.
+ * Also provided are the storage ID's of the fields and indexes, for use by core API benchmarks.
+ */
+@State(Scope.Benchmark)
+public class PermazenState {
+
+    /**
+     * Number of distinct {@code name} values.
+     */
+    public static final int NUM_NAMES = 1000;
+
+    /**
+     * Number of distinct {@code age} values.
+     */
+    public static final int NUM_AGES = 100;
+
+    /**
+     * Number of distinct tags.
+     */
+    public static final int NUM_TAGS = 10;
+
+    private static final int POPULATE_BATCH_SIZE = 1000;
+
+    @Param("10000")
+    public int numObjects;
+
+    private SimpleKVDatabase kvdb;
+    private Permazen jdb;
+    private ObjId[] ids;
+
+    private int nameField;
+    private int ageField;
+    private int friendField;
+    private int nameAndAgeIndex;
+
+// Lifecycle
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.kvdb = new SimpleKVDatabase();
+        this.jdb = new PermazenFactory()
+          .setDatabase(new Database(this.kvdb))
+          .setSchemaVersion(1)
+          .setModelClasses(Person.class)
+          .newPermazen();
+        final JClass<Person> jclass = this.jdb.getJClass(Person.class);
+        this.nameField = jclass.getJFieldsByName().get("name").getStorageId();
+        this.ageField = jclass.getJFieldsByName().get("age").getStorageId();
+        this.friendField = jclass.getJFieldsByName().get("friend").getStorageId();
+        this.nameAndAgeIndex = jclass.getJCompositeIndexesByName().get("nameAndAge").getStorageId();
+
+        // Create objects
+        this.ids = new ObjId[this.numObjects];
+        for (int base = 0; base < this.numObjects; base += POPULATE_BATCH_SIZE) {
+            final int min = base;
+            final int max = Math.min(base + POPULATE_BATCH_SIZE, this.numObjects);
+            this.execute(true, ValidationMode.MANUAL, jtx -> {
+                for (int i = min; i < max; i++)
+                    this.ids[i] = this.populate(jtx.create(Person.class), i).getObjId();
+                return null;
+            });
+        }
+
+        // Link friends
+        for (int base = 0; base < this.numObjects; base += POPULATE_BATCH_SIZE) {
+            final int min = base;
+            final int max = Math.min(base + POPULATE_BATCH_SIZE, this.numObjects);
+            this.execute(false, ValidationMode.MANUAL, jtx -> {
+                for (int i = min; i < max; i++) {
+                    final Person person = jtx.get(this.ids[i], Person.class);
+                    person.setFriend(jtx.get(this.ids[(i + this.numObjects - 1) % this.numObjects], Person.class));
+                }
+                return null;
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.ids = null;
+        this.jdb = null;
+        if (this.kvdb != null)
+            this.kvdb.stop();
+        this.kvdb = null;
+    }
+
+// Accessors
+
+    public Permazen getPermazen() {
+        return this.jdb;
+    }
+
+    public int getNameField() {
+        return this.nameField;
+    }
+
+    public int getAgeField() {
+        return this.ageField;
+    }
+
+    public int getFriendField() {
+        return this.friendField;
+    }
+
+    public int getNameAndAgeIndex() {
+        return this.nameAndAgeIndex;
+    }
+
+// Data
+
+    /**
+     * Get the ID of person number {@code index}.
+     *
+     * @param index person number
+     * @return object ID
+     */
+    public ObjId id(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Get the ID of a randomly chosen pre-populated person.
+     *
+     * @return object ID
+     */
+    public ObjId randomId() {
+        return this.ids[ThreadLocalRandom.current().nextInt(this.ids.length)];
+    }
+
+    /**
+     * Get the name assigned to person number {@code index}.
+     *
+     * @param index person number
+     * @return name
+     */
+    public String name(int index) {
+        return "name" + (index % NUM_NAMES);
+    }
+
+    /**
+     * Initialize the fields of a newly created person.
+     *
+     * @param person new person
+     * @param index person number
+     * @return {@code person}
+     */
+    public Person populate(Person person, int index) {
+        person.setName(this.name(index));
+        person.setAge(index % NUM_AGES);
+        person.getTags().add("tag" + (index % NUM_TAGS));
+        person.getTags().add("tag" + ((index + 1) % NUM_TAGS));
+        final List<Integer> scores = person.getScores();
+        for (int i = 0; i < 3; i++)
+            scores.add(index + i);
+        final NavigableMap<String, Integer> attributes = person.getAttributes();
+        attributes.put("height", index % 200);
+        attributes.put("weight", index % 150);
+        return person;
+    }
+
+// Transactions
+
+    /**
+     * Perform the given action within a new {@link JTransaction} that is associated with the current thread,
+     * then commit it.
+     *
+     * @param allowNewSchema whether a new schema version may be recorded
+     * @param validationMode validation mode
+     * @param action transaction action
+     * @param <R> action result type
+     * @return result of {@code action}
+     */
+    public <R> R execute(boolean allowNewSchema, ValidationMode validationMode, Function<? super JTransaction, R> action) {
+        final JTransaction jtx = this.jdb.createTransaction(allowNewSchema, validationMode);
+        JTransaction.setCurrent(jtx);
+        boolean success = false;
+        try {
+            final R result = action.apply(jtx);
+            jtx.commit();
+            success = true;
+            return result;
+        } finally {
+            if (!success)
+                jtx.rollback();
+            JTransaction.setCurrent(null);
+        }
+    }
+
+    /**
+     * Perform the given action within a new, non-validating {@link JTransaction}, then commit it.
+     *
+     * @param action transaction action
+     * @param <R> action result type
+     * @return result of {@code action}
+     */
+    public <R> R execute(Function<? super JTransaction, R> action) {
+        return this.execute(false, ValidationMode.MANUAL, action);
+    }
+
+    /**
+     * Perform the given action within a new, read-only, non-validating {@link JTransaction}.
+     *
+     * @param action transaction action
+     * @param <R> action result type
+     * @return result of {@code action}
+     */
+    public <R> R executeReadOnly(Function<? super JTransaction, R> action) {
+        return this.execute(jtx -> {
+            jtx.getTransaction().setReadOnly(true);
+            return action.apply(jtx);
+        });
+    }
+}
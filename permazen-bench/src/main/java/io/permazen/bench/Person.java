@@ -0,0 +1,47 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.bench;
+
+import io.permazen.JObject;
+import io.permazen.annotation.JCompositeIndex;
+import io.permazen.annotation.JField;
+import io.permazen.annotation.JSetField;
+import io.permazen.annotation.PermazenType;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Benchmark model class exercising simple, indexed, reference, and complex fields plus a composite index.
+ */
+@PermazenType
+@JCompositeIndex(name = "nameAndAge", fields = { "name", "age" })
+public abstract class Person implements JObject {
+
+    @NotNull
+    @JField(indexed = true)
+    public abstract String getName();
+    public abstract void setName(String name);
+
+    @Min(0)
+    @JField(indexed = true)
+    public abstract int getAge();
+    public abstract void setAge(int age);
+
+    public abstract Person getFriend();
+    public abstract void setFriend(Person friend);
+
+    @JSetField(element = @JField(indexed = true))
+    public abstract NavigableSet<String> getTags();
+
+    public abstract List<Integer> getScores();
+
+    public abstract NavigableMap<String, Integer> getAttributes();
+}
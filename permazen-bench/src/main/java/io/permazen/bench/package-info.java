@@ -0,0 +1,16 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * JMH benchmarks for the Permazen core API and Java layers.
+ *
+ * <p>
+ * All benchmarks run over an in-memory {@link io.permazen.kv.simple.SimpleKVDatabase} so that they measure only
+ * the overhead added above the key/value store. Run {@link io.permazen.bench.PermazenBenchmarks}
+ * (the {@code -benchmarks} JAR's main class) to execute them; results are written in JSON format by default.
+ *
+ * @see io.permazen.kv.bench
+ */
+package io.permazen.bench;
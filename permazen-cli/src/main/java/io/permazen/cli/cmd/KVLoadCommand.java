@@ -8,7 +8,9 @@ package io.permazen.cli.cmd;
 import io.permazen.Session;
 import io.permazen.SessionMode;
 import io.permazen.cli.CliSession;
+import io.permazen.kv.KVDatabase;
 import io.permazen.kv.KVTransaction;
+import io.permazen.kv.util.BinarySerializer;
 import io.permazen.kv.util.XMLSerializer;
 import io.permazen.parse.Parser;
 import io.permazen.util.ParseContext;
@@ -16,24 +18,29 @@ import io.permazen.util.ParseContext;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.Map;
 
 public class KVLoadCommand extends AbstractKVCommand {
 
     public KVLoadCommand() {
-        super("kvload -R:reset file.xml:file");
+        super("kvload -R:reset -p:parallel:int file.xml:file");
     }
 
     @Override
     public String getHelpSummary() {
-        return "Load key/value pairs from an XML file";
+        return "Load key/value pairs from an XML or binary file";
     }
 
     @Override
     public String getHelpDetail() {
-        return "Imports key/value pairs from an XML file created previously via `kvsave'. Does NOT remove any key/value pairs"
-          + "already in the database unless the `-R' flag is given, in which case the database is completely wiped first."
+        return "Imports key/value pairs from an XML or binary file created previously via `kvsave'. Does NOT remove any"
+          + " key/value pairs already in the database unless the `-R' flag is given, in which case the database is completely"
+          + " wiped first. The file format is detected automatically."
+          + "\n\nIf the `-p' flag is given, a binary file is loaded using the specified number of parallel transactions."
+          + " This is much faster for large files, but the load is no longer atomic: if it fails, the database may be left"
+          + " partially loaded."
           + "\n\nWARNING: this command can corrupt a Permazen database.";
     }
 
@@ -49,7 +56,15 @@ public class KVLoadCommand extends AbstractKVCommand {
 
     @Override
     public CliSession.Action getAction(CliSession session, ParseContext ctx, boolean complete, Map<String, Object> params) {
-        return new LoadAction(params.containsKey("reset"), (File)params.get("file.xml"));
+        final boolean reset = params.containsKey("reset");
+        final File file = (File)params.get("file.xml");
+        final Integer parallel = (Integer)params.get("parallel");
+        if (parallel != null) {
+            if (parallel <= 0)
+                throw new IllegalArgumentException("invalid parallelism " + parallel);
+            return new ParallelLoadAction(reset, file, parallel);
+        }
+        return new LoadAction(reset, file);
     }
 
     private static class LoadAction implements CliSession.Action, Session.RetryableAction {
@@ -67,9 +82,47 @@ public class KVLoadCommand extends AbstractKVCommand {
             final KVTransaction kvt = session.getKVTransaction();
             if (this.reset)
                 kvt.removeRange(null, null);
-            final int count;
+            final long count;
+            try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(this.file))) {
+                count = BinarySerializer.isBinaryFormat(input) ?
+                  new BinarySerializer(kvt).read(input) : new XMLSerializer(kvt).read(input);
+            }
+            session.getWriter().println("Read " + count + " key/value pairs from `" + this.file + "'");
+        }
+    }
+
+    private static class ParallelLoadAction implements CliSession.Action {
+
+        private final boolean reset;
+        private final File file;
+        private final int parallelism;
+
+        ParallelLoadAction(boolean reset, File file, int parallelism) {
+            this.reset = reset;
+            this.file = file;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public void run(CliSession session) throws Exception {
+            final KVDatabase kvdb = session.getKVDatabase();
+            final long count;
             try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(this.file))) {
-                count = new XMLSerializer(kvt).read(input);
+                if (!BinarySerializer.isBinaryFormat(input))
+                    throw new IOException("file `" + this.file + "' is not in binary format, required for parallel loading");
+                if (this.reset) {
+                    final KVTransaction kvt = kvdb.createTransaction();
+                    boolean success = false;
+                    try {
+                        kvt.removeRange(null, null);
+                        kvt.commit();
+                        success = true;
+                    } finally {
+                        if (!success)
+                            kvt.rollback();
+                    }
+                }
+                count = BinarySerializer.restore(kvdb, input, this.parallelism);
             }
             session.getWriter().println("Read " + count + " key/value pairs from `" + this.file + "'");
         }
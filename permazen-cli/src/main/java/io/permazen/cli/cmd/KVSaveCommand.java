@@ -8,6 +8,7 @@ package io.permazen.cli.cmd;
 import io.permazen.Session;
 import io.permazen.SessionMode;
 import io.permazen.cli.CliSession;
+import io.permazen.kv.util.BinarySerializer;
 import io.permazen.kv.util.XMLSerializer;
 import io.permazen.parse.Parser;
 import io.permazen.util.ParseContext;
@@ -16,12 +17,14 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Locale;
 import java.util.Map;
 
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.dellroad.stuff.io.AtomicUpdateFileOutputStream;
@@ -30,12 +33,12 @@ import org.dellroad.stuff.xml.IndentXMLStreamWriter;
 public class KVSaveCommand extends AbstractCommand {
 
     public KVSaveCommand() {
-        super("kvsave -i:indent -w:weak file.xml:file minKey? maxKey?");
+        super("kvsave -i:indent -w:weak -b:binary -z:compress file.xml:file minKey? maxKey?");
     }
 
     @Override
     public String getHelpSummary() {
-        return "Exports key/value pairs to an XML file";
+        return "Exports key/value pairs to an XML or binary file";
     }
 
     @Override
@@ -44,6 +47,8 @@ public class KVSaveCommand extends AbstractCommand {
           + "\n\nIf `minKey' and/or `maxKey' are specified, the keys are restricted to the specified range."
           + " `minKey' and `maxKey' may be given as hexadecimal strings or C-style doubly-quoted strings.\n"
           + "The `-i' flag causes the output XML to be indented.\n"
+          + "The `-b' flag selects a compact binary format instead of XML, which is much faster and smaller for large"
+          + " databases; the `-z' flag selects the binary format with compression.\n"
           + "If the `-w' flag is given, for certain key/value stores a weaker consistency level is used for"
           + " the tranasction to reduce the chance of conflicts.";
     }
@@ -65,11 +70,13 @@ public class KVSaveCommand extends AbstractCommand {
         final File file = (File)params.get("file.xml");
         final boolean indent = params.containsKey("indent");
         final boolean weak = params.containsKey("weak");
+        final boolean compress = params.containsKey("compress");
+        final boolean binary = compress || params.containsKey("binary");
         final byte[] minKey = (byte[])params.get("minKey");
         final byte[] maxKey = (byte[])params.get("maxKey");
 
         // Return action
-        return new SaveAction(file, indent, weak, minKey, maxKey);
+        return new SaveAction(file, indent, weak, binary, compress, minKey, maxKey);
     }
 
     private static class SaveAction implements CliSession.Action, Session.RetryableAction, Session.HasTransactionOptions {
@@ -77,13 +84,17 @@ public class KVSaveCommand extends AbstractCommand {
         private final File file;
         private final boolean indent;
         private final boolean weak;
+        private final boolean binary;
+        private final boolean compress;
         private final byte[] minKey;
         private final byte[] maxKey;
 
-        SaveAction(File file, boolean indent, boolean weak, byte[] minKey, byte[] maxKey) {
+        SaveAction(File file, boolean indent, boolean weak, boolean binary, boolean compress, byte[] minKey, byte[] maxKey) {
             this.file = file;
             this.indent = indent;
             this.weak = weak;
+            this.binary = binary;
+            this.compress = compress;
             this.minKey = minKey;
             this.maxKey = maxKey;
         }
@@ -94,14 +105,14 @@ public class KVSaveCommand extends AbstractCommand {
               new AtomicUpdateFileOutputStream(this.file) : new FileOutputStream(this.file);
             final BufferedOutputStream output = new BufferedOutputStream(updateOutput);
             boolean success = false;
-            final int count;
+            final long count;
             try {
-                XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
-                if (this.indent)
-                    writer = new IndentXMLStreamWriter(writer);
-                writer.writeStartDocument("UTF-8", "1.0");
-                final XMLSerializer serializer = new XMLSerializer(session.getKVTransaction());
-                count = serializer.write(writer, this.minKey, this.maxKey);
+                if (this.binary) {
+                    final BinarySerializer serializer = new BinarySerializer(session.getKVTransaction());
+                    serializer.setCompress(this.compress);
+                    count = serializer.write(output, this.minKey, this.maxKey);
+                } else
+                    count = this.writeXML(session, output);
                 output.flush();
                 success = true;
             } finally {
@@ -117,6 +128,17 @@ public class KVSaveCommand extends AbstractCommand {
             session.getWriter().println("Wrote " + count + " key/value pairs to `" + this.file + "'");
         }
 
+        private int writeXML(CliSession session, OutputStream output) throws XMLStreamException {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+            if (this.indent)
+                writer = new IndentXMLStreamWriter(writer);
+            writer.writeStartDocument("UTF-8", "1.0");
+            final XMLSerializer serializer = new XMLSerializer(session.getKVTransaction());
+            final int count = serializer.write(writer, this.minKey, this.maxKey);
+            writer.flush();
+            return count;
+        }
+
         // Use EVENTUAL_COMMITTED consistency for Raft key/value stores to avoid retries
         @Override
         public Map<String, ?> getTransactionOptions() {
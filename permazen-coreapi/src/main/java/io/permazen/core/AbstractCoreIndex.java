@@ -11,6 +11,7 @@ import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyFilter;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.util.Bounds;
 
 import java.util.Arrays;
@@ -47,6 +48,41 @@ abstract class AbstractCoreIndex {
         return Arrays.asList(this.indexView.fieldTypes.clone());
     }
 
+    /**
+     * Estimate the number of entries in this index.
+     *
+     * <p>
+     * The estimate is derived using {@link KVStore#estimateSize KVStore.estimateSize()} and accounts for any key range
+     * restrictions on the first indexed value (e.g., those imposed by {@link CoreIndex#withValueBounds withValueBounds()}).
+     * Any other filtering is not accounted for, in which case the estimate is an upper bound. Estimates are not
+     * transactional: they may not reflect all changes made in the current transaction, and they do not create
+     * read conflicts.
+     *
+     * @return estimated number of index entries, or null if the underlying key/value store does not support size estimation
+     */
+    public SizeEstimate estimateSize() {
+
+        // Get the key ranges corresponding to the first value
+        final KeyFilter filter = this.indexView.getFilter(0);
+        final KeyRanges ranges = filter instanceof KeyRanges ?
+          ((KeyRanges)filter).prefixedBy(this.indexView.prefix) : KeyRanges.forPrefix(this.indexView.prefix);
+
+        // Sum estimates
+        SizeEstimate total = SizeEstimate.EMPTY;
+        for (KeyRange range : ranges) {
+            final SizeEstimate estimate = this.kv.estimateSize(range.getMin(), range.getMax());
+            if (estimate == null)
+                return null;
+            total = total.add(estimate);
+        }
+
+        // Other filters make the estimate an upper bound
+        boolean unfiltered = filter == null || filter instanceof KeyRanges;
+        for (int i = 1; i < this.indexView.filters.length; i++)
+            unfiltered &= this.indexView.filters[i] == null;
+        return unfiltered ? total : total.approximate();
+    }
+
     /**
      * Apply key filtering to field values at the specified index. This method works cummulatively: the new instance
      * filters to the intersection of the given key filter and any existing key filter on that field.
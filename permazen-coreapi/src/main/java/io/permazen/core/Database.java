@@ -21,6 +21,7 @@ import io.permazen.util.UnsignedIntEncoder;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -358,6 +359,53 @@ public class Database {
           new SnapshotTransaction(this, kvstore, schemas, version) : new SnapshotTransaction(this, kvstore, schemas);
     }
 
+    /**
+     * Load a complete database image, in the form of a sorted stream of key/value pairs, into the (empty)
+     * key/value database underlying this instance.
+     *
+     * <p>
+     * This method is intended for initial data loads, e.g., populating a new database from a key/value dump of
+     * an existing one. It delegates to {@link KVDatabase#bulkLoad KVDatabase.bulkLoad()}, which is typically much faster
+     * than copying the same data using transactions.
+     *
+     * <p>
+     * The pairs are loaded as is; no meta-data, schema, or object validation is performed. Therefore, {@code pairs} must
+     * comprise a consistent database image, including meta-data such as the format version and recorded schemas.
+     * If the source is not trusted, use the {@code jsck} consistency checker to verify the result.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalStateException if the key/value database contains any keys other than user meta-data
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     * @see KVDatabase#bulkLoad
+     */
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+
+        // Sanity check
+        Preconditions.checkArgument(pairs != null, "null pairs");
+
+        // Verify the key/value database is empty, ignoring any user meta-data
+        final byte[] userMetaDataPrefix = Layout.getUserMetaDataKeyPrefix();
+        final KVTransaction kvt = this.kvdb.createTransaction();
+        try {
+            KVPair pair = kvt.getAtLeast(ByteUtil.EMPTY, userMetaDataPrefix);
+            if (pair == null)
+                pair = kvt.getAtLeast(ByteUtil.getKeyAfterPrefix(userMetaDataPrefix), null);
+            if (pair != null) {
+                throw new IllegalStateException("can't bulk load into a non-empty database (found key "
+                  + ByteUtil.toString(pair.getKey()) + ")");
+            }
+        } finally {
+            kvt.rollback();
+        }
+
+        // Load data
+        this.kvdb.bulkLoad(pairs);
+
+        // Discard cached schema information
+        this.lastSchemas = null;
+    }
+
     /**
      * Initialize (if necessary) and validate the given {@link KVStore} for use with this database.
      *
@@ -148,6 +148,8 @@ public class Schemas {
             return "object type";
         if (CompositeIndexStorageInfo.class.isAssignableFrom(type))
             return "composite index";
+        if (IndexStorageInfo.class.isAssignableFrom(type))
+            return "index";
         return type.getSimpleName();    // ???
     }
 
@@ -16,6 +16,7 @@ import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KVTransactionException;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.ByteReader;
 import io.permazen.util.ByteUtil;
@@ -38,6 +39,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -111,6 +113,7 @@ import org.slf4j.LoggerFactory;
  * <b>Object and Field Access</b>
  * <ul>
  *  <li>{@link #getAll getAll(int)} - Get all objects, or all objects of a specific type</li>
+ *  <li>{@link #estimateObjectCount estimateObjectCount()} - Estimate the number of objects of a specific type</li>
  *  <li>{@link #readSimpleField readSimpleField()} - Read the value of a {@link SimpleField} in an object</li>
  *  <li>{@link #writeSimpleField writeSimpleField()} - Write the value of a {@link SimpleField} in an object</li>
  *  <li>{@link #readCounterField readCounterField()} - Read the value of a {@link CounterField} in an object</li>
@@ -122,6 +125,8 @@ import org.slf4j.LoggerFactory;
  *  <li>{@link #getKey getKey(ObjId)} - Get the {@link io.permazen.kv.KVDatabase} key corresponding to an object</li>
  *  <li>{@link #getKey getKey(ObjId, int)} - Get the {@link io.permazen.kv.KVDatabase}
  *      key corresponding to a field in an object</li>
+ *  <li>{@link #watchObject watchObject()} - Watch for changes to any of an object's fields, or its deletion</li>
+ *  <li>{@link #watchIndex watchIndex()} - Watch for changes to any entry in an index</li>
  * </ul>
  *
  * <p>
@@ -974,6 +979,29 @@ public class Transaction {
         return this.getObjectInfoIfExists(id, false) != null;
     }
 
+    /**
+     * Bulk load the meta-data of multiple objects, returning those that exist.
+     *
+     * <p>
+     * This method is equivalent to invoking {@link #exists exists()} for each object in turn, but it reads
+     * the meta-data of all objects not already loaded in a single batch. Subsequent access to the returned
+     * objects will not require re-reading their meta-data, subject to the size limits of the internal cache.
+     *
+     * <p>
+     * This method does <i>not</i> change the schema version of any object.
+     *
+     * @param ids object IDs of the objects to load
+     * @return those objects in {@code ids} that were found; does not include objects having an unknown object type
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws IllegalArgumentException if {@code ids} is null or contains a null element
+     */
+    public synchronized ObjIdSet loadObjects(Iterable<ObjId> ids) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        Preconditions.checkArgument(ids != null, "null ids");
+        return this.loadIntoCache(ids).keySet();
+    }
+
     /**
      * Copy an object into a (possibly different) transaction.
      *
@@ -1743,6 +1771,44 @@ public class Transaction {
         return new ObjTypeSet(this, storageId);
     }
 
+    /**
+     * Estimate the number of objects whose object type has the specified storage ID.
+     *
+     * <p>
+     * The estimate is derived from the object version index using {@link io.permazen.kv.KVStore#estimateSize
+     * KVStore.estimateSize()}, so it is typically much cheaper than counting {@link #getAll(int) getAll()}, but
+     * its accuracy depends on the underlying key/value store. Estimates are not transactional: they may not reflect
+     * all changes made in this transaction, and they do not create read conflicts.
+     *
+     * @param storageId object type storage ID
+     * @return estimated number of objects, or null if the underlying key/value store does not support size estimation
+     * @throws UnknownTypeException if {@code storageId} does not correspond to any known object type
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @see CoreIndex#estimateSize
+     */
+    public synchronized SizeEstimate estimateObjectCount(int storageId) {
+
+        // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.schemas.verifyStorageInfo(storageId, ObjTypeStorageInfo.class);
+
+        // Sum the version index entries for the object type in each schema version
+        final KeyRange idRange = ObjId.getKeyRange(storageId);
+        SizeEstimate total = SizeEstimate.EMPTY;
+        for (int version : this.schemas.versions.keySet()) {
+            final ByteWriter writer = new ByteWriter();
+            writer.write(Layout.getObjectVersionIndexKeyPrefix());
+            UnsignedIntEncoder.write(writer, version);
+            final KeyRange range = idRange.prefixedBy(writer.getBytes());
+            final SizeEstimate estimate = this.kvt.estimateSize(range.getMin(), range.getMax());
+            if (estimate == null)
+                return null;
+            total = total.add(estimate);
+        }
+        return total;
+    }
+
     /**
      * Read the value of a {@link SimpleField} from an object, optionally updating the object's schema version.
      *
@@ -1786,6 +1852,63 @@ public class Transaction {
         return value != null ? field.fieldType.read(new ByteReader(value)) : field.fieldType.getDefaultValueObject();
     }
 
+    /**
+     * Bulk read the value of a {@link SimpleField} from multiple objects, optionally updating the objects' schema versions.
+     *
+     * <p>
+     * This method is equivalent to invoking {@link #readSimpleField readSimpleField()} for each object in turn,
+     * but it is more efficient when the underlying key/value store can {@linkplain KVTransaction#getMany read
+     * multiple keys at once}: the objects' meta-data and field values are each read in a single batch.
+     *
+     * @param ids object IDs of the objects
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the objects' schema versions, false to not change them
+     * @return values of the field in the objects, in the same order as {@code ids}
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws DeletedObjectException if any object in {@code ids} is not found
+     * @throws UnknownTypeException if any object in {@code ids} has an unknown object type
+     * @throws UnknownFieldException if no {@link SimpleField} corresponding to {@code storageId} exists in some object
+     * @throws IllegalArgumentException if {@code ids} is null or contains a null element
+     * @throws TypeNotInSchemaVersionException {@code updateVersion} is true and some object could not be updated because
+     *   the object's type does not exist in the schema version associated with this transaction
+     */
+    public synchronized List<Object> readSimpleFields(List<ObjId> ids, int storageId, boolean updateVersion) {
+
+        // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        Preconditions.checkArgument(ids != null, "null ids");
+
+        // Load object info for all objects at once
+        final ObjIdMap<ObjInfo> infoMap = this.loadIntoCache(ids);
+
+        // Find fields and build keys
+        final ArrayList<SimpleField<?>> fields = new ArrayList<>(ids.size());
+        final ArrayList<byte[]> keys = new ArrayList<>(ids.size());
+        for (ObjId id : ids) {
+            ObjInfo info = infoMap.get(id);
+            if (info == null || (updateVersion && info.getVersion() != this.schema.versionNumber))
+                info = this.getObjectInfo(id, updateVersion);           // throw the appropriate exception, or update version
+            final SimpleField<?> field = info.getObjType().simpleFields.get(storageId);
+            if (field == null)
+                throw new UnknownFieldException(info.getObjType(), storageId, "simple field");
+            fields.add(field);
+            keys.add(field.buildKey(id));
+        }
+
+        // Read field values
+        final List<byte[]> values = this.kvt.getMany(keys);
+
+        // Decode values
+        final ArrayList<Object> result = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            final SimpleField<?> field = fields.get(i);
+            final byte[] value = values.get(i);
+            result.add(value != null ? field.fieldType.read(new ByteReader(value)) : field.fieldType.getDefaultValueObject());
+        }
+        return result;
+    }
+
     /**
      * Change the value of a {@link SimpleField} in an object, optionally updating the object's schema version.
      *
@@ -2255,6 +2378,64 @@ public class Transaction {
         return writer.getBytes();
     }
 
+    /**
+     * Watch an object for changes.
+     *
+     * <p>
+     * The returned {@link Future} completes if and when a change to any field in the specified object, or the object's
+     * creation, deletion, or schema version change, is subsequently committed by some transaction. This is implemented
+     * as a single {@linkplain KVTransaction#watchRange range watch} on all of the object's keys, so it is much cheaper than
+     * watching each of the object's fields individually.
+     *
+     * <p>
+     * The semantics and caveats described for {@link KVTransaction#watchKey KVTransaction.watchKey()} apply;
+     * in particular, the returned {@link Future} must be {@link Future#cancel cancel()}'ed if no longer needed.
+     *
+     * @param id object ID
+     * @return a {@link Future} that completes when the object is modified
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws UnsupportedOperationException if the underlying key/value store does not support range watches
+     * @throws IllegalArgumentException if {@code id} is null
+     * @see KVTransaction#watchRange KVTransaction.watchRange()
+     */
+    public synchronized Future<Void> watchObject(ObjId id) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        Preconditions.checkArgument(id != null, "null id");
+        return this.kvt.watchRange(KeyRange.forPrefix(id.getBytes()));
+    }
+
+    /**
+     * Watch an index for changes.
+     *
+     * <p>
+     * The returned {@link Future} completes if and when any entry is subsequently added to or removed from the specified
+     * index by some transaction; for example, when an object is created with an indexed field, or when the value of the
+     * indexed field changes. This is implemented as a single {@linkplain KVTransaction#watchRange range watch}
+     * on all of the index's keys.
+     *
+     * <p>
+     * The {@code storageId} may refer to any indexed {@link SimpleField}, whether part of an object or a sub-field
+     * of a {@link ComplexField}, or any {@link CompositeIndex}.
+     *
+     * <p>
+     * The semantics and caveats described for {@link KVTransaction#watchKey KVTransaction.watchKey()} apply;
+     * in particular, the returned {@link Future} must be {@link Future#cancel cancel()}'ed if no longer needed.
+     *
+     * @param storageId storage ID of the indexed field or composite index
+     * @return a {@link Future} that completes when the index is modified
+     * @throws UnknownIndexException if no index corresponding to {@code storageId} exists
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws UnsupportedOperationException if the underlying key/value store does not support range watches
+     * @see KVTransaction#watchRange KVTransaction.watchRange()
+     */
+    public synchronized Future<Void> watchIndex(int storageId) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.schemas.verifyStorageInfo(storageId, IndexStorageInfo.class);
+        return this.kvt.watchRange(KeyRange.forPrefix(UnsignedIntEncoder.encode(storageId)));
+    }
+
     synchronized boolean hasDefaultValue(ObjId id, SimpleField<?> field) {
 
         // Sanity check
@@ -2371,6 +2552,59 @@ public class Transaction {
         return info;
     }
 
+    /**
+     * Get the specified objects' info from the object info cache, loading those not already cached in a single batch.
+     *
+     * @return object info for those objects that exist and have a known object type
+     * @throws IllegalArgumentException if {@code ids} contains a null element
+     */
+    private ObjIdMap<ObjInfo> loadIntoCache(Iterable<ObjId> ids) {
+
+        // Sanity check
+        assert Thread.holdsLock(this);
+
+        // Gather cached object info and determine which objects need to be read
+        final ObjIdMap<ObjInfo> infoMap = new ObjIdMap<>();
+        final ObjIdSet readIds = new ObjIdSet();
+        for (ObjId id : ids) {
+            Preconditions.checkArgument(id != null, "null id");
+            final ObjInfo info = this.objInfoCache.get(id);
+            if (info != null) {
+                infoMap.put(id, info);
+                continue;
+            }
+            try {
+                this.schemas.verifyStorageInfo(id.getStorageId(), ObjTypeStorageInfo.class);
+            } catch (UnknownTypeException e) {
+                continue;
+            }
+            readIds.add(id);
+        }
+        if (readIds.isEmpty())
+            return infoMap;
+
+        // Read meta-data for uncached objects in a single batch
+        final ObjId[] readIdArray = readIds.toArray();
+        final ArrayList<byte[]> keys = new ArrayList<>(readIdArray.length);
+        for (ObjId id : readIdArray)
+            keys.add(id.getBytes());
+        final List<byte[]> values = this.kvt.getMany(keys);
+
+        // Add object info to the cache
+        for (int i = 0; i < readIdArray.length; i++) {
+            final byte[] value = values.get(i);
+            if (value == null)
+                continue;
+            final ObjId id = readIdArray[i];
+            final ObjInfo info = new ObjInfo(this, id, value);
+            if (this.objInfoCache.size() >= MAX_OBJ_INFO_CACHE_ENTRIES)
+                this.objInfoCache.removeOne();
+            this.objInfoCache.put(id, info);
+            infoMap.put(id, info);
+        }
+        return infoMap;
+    }
+
 // Field Change Notifications
 
     /**
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.core.util.ObjIdSet;
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify Transaction.loadObjects() and Transaction.readSimpleFields() agree with their one-at-a-time equivalents
+public class BulkReadTest extends CoreAPITestSupport {
+
+    @Test
+    public void testBulkRead() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final Database db = new Database(kvstore);
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+          + "  </ObjectType>\n"
+          + "  <ObjectType name=\"Bar\" storageId=\"10\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        Transaction tx = db.createTransaction(schema, 1, true);
+
+    // Create objects, leaving some fields at their default values
+
+        final ArrayList<ObjId> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final ObjId id = tx.create(i % 4 == 0 ? 10 : 1);
+            if (i % 3 != 0)
+                tx.writeSimpleField(id, 2, i, false);
+            if (id.getStorageId() == 1 && i % 2 == 0)
+                tx.writeSimpleField(id, 3, "value" + i, false);
+            ids.add(id);
+        }
+        final ObjId deleted = ids.get(5);
+        tx.delete(deleted);
+        final ObjId missing = new ObjId(1);
+        tx.commit();
+
+    // Verify loadObjects() in a fresh transaction, including deleted, missing, and duplicate objects
+
+        tx = db.createTransaction(schema, 1, false);
+        final ArrayList<ObjId> loadIds = new ArrayList<>(ids);
+        loadIds.add(missing);
+        loadIds.add(ids.get(0));
+        final ObjIdSet found = tx.loadObjects(loadIds);
+        for (ObjId id : loadIds)
+            Assert.assertEquals(found.contains(id), tx.exists(id), "wrong result for " + id);
+        Assert.assertEquals(found.size(), ids.size() - 1);
+        Assert.assertTrue(tx.loadObjects(Collections.<ObjId>emptyList()).isEmpty());
+
+    // Verify readSimpleFields() against readSimpleField()
+
+        final ArrayList<ObjId> liveIds = new ArrayList<>(ids);
+        liveIds.remove(deleted);
+        liveIds.add(liveIds.get(1));
+        this.checkReadSimpleFields(tx, liveIds, 2);
+        final ArrayList<ObjId> fooIds = new ArrayList<>();
+        for (ObjId id : liveIds) {
+            if (id.getStorageId() == 1)
+                fooIds.add(id);
+        }
+        this.checkReadSimpleFields(tx, fooIds, 3);
+
+    // Values written in the same transaction are visible
+
+        tx.writeSimpleField(fooIds.get(0), 3, "changed", false);
+        tx.writeSimpleField(fooIds.get(1), 3, null, false);
+        Assert.assertEquals(tx.readSimpleFields(fooIds.subList(0, 2), 3, false), Arrays.asList("changed", null));
+        this.checkReadSimpleFields(tx, fooIds, 3);
+
+    // Deleted objects and missing fields are reported
+
+        try {
+            tx.readSimpleFields(Arrays.asList(ids.get(1), deleted), 2, false);
+            assert false : "read from deleted object";
+        } catch (DeletedObjectException e) {
+            // expected
+        }
+        try {
+            tx.readSimpleFields(Arrays.asList(ids.get(1), ids.get(0)), 3, false);
+            assert false : "read of missing field";
+        } catch (UnknownFieldException e) {
+            // expected
+        }
+
+        tx.rollback();
+    }
+
+    private void checkReadSimpleFields(Transaction tx, List<ObjId> ids, int storageId) {
+        final List<Object> values = tx.readSimpleFields(ids, storageId, false);
+        Assert.assertEquals(values.size(), ids.size());
+        for (int i = 0; i < ids.size(); i++)
+            Assert.assertEquals(values.get(i), tx.readSimpleField(ids.get(i), storageId, false), "wrong value for " + ids.get(i));
+    }
+}
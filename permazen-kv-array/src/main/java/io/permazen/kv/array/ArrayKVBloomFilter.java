@@ -0,0 +1,139 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter for the keys in an {@link ArrayKVStore}.
+ *
+ * <p>
+ * The filter data consists of a four byte header containing the number of hash functions (big endian), followed by the
+ * bit array as a sequence of big endian 64-bit words. Key hashes are derived from the 128-bit MurmurHash3 of the key
+ * using the Kirsch-Mitzenmacher double hashing technique.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+class ArrayKVBloomFilter {
+
+    static final int HEADER_LENGTH = 4;
+    static final int MAX_HASH_FUNCTIONS = 30;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    // Note: for thread safety, perform only absolute gets
+    private final ByteBuffer buf;
+    private final int numHashFunctions;
+    private final long numBits;
+
+    /**
+     * Constructor.
+     *
+     * @param buf buffer containing filter data written by a {@link Builder}
+     * @throws IllegalArgumentException if {@code buf} is null or invalid
+     */
+    ArrayKVBloomFilter(ByteBuffer buf) {
+        Preconditions.checkArgument(buf != null, "null buf");
+        Preconditions.checkArgument(buf.capacity() >= HEADER_LENGTH + 8, "Bloom filter data is truncated");
+        Preconditions.checkArgument((buf.capacity() - HEADER_LENGTH) % 8 == 0, "Bloom filter size is not a correct multiple");
+        this.buf = buf.duplicate();
+        this.buf.limit(this.buf.capacity());
+        this.numHashFunctions = this.buf.getInt(0);
+        Preconditions.checkArgument(this.numHashFunctions > 0 && this.numHashFunctions <= MAX_HASH_FUNCTIONS,
+          "invalid Bloom filter hash function count");
+        this.numBits = (long)(this.buf.capacity() - HEADER_LENGTH) * 8;
+    }
+
+    /**
+     * Determine whether the given key might have been added to the filter.
+     *
+     * @param key key
+     * @return false if {@code key} is definitely not present, true if it might be present
+     */
+    public boolean mightContain(byte[] key) {
+        final ByteBuffer hash = ByteBuffer.wrap(HASH_FUNCTION.hashBytes(key).asBytes());
+        final long hash1 = hash.getLong(0);
+        final long hash2 = hash.getLong(8);
+        long combinedHash = hash1;
+        for (int i = 0; i < this.numHashFunctions; i++) {
+            final long bit = (combinedHash & Long.MAX_VALUE) % this.numBits;
+            if ((this.buf.getLong(HEADER_LENGTH + (int)(bit >>> 6) * 8) & (1L << (bit & 0x3f))) == 0)
+                return false;
+            combinedHash += hash2;
+        }
+        return true;
+    }
+
+// Builder
+
+    /**
+     * Builds a {@link ArrayKVBloomFilter} in memory and then writes out the filter data.
+     */
+    static class Builder {
+
+        private final long[] words;
+        private final long numBits;
+        private final int numHashFunctions;
+
+        /**
+         * Constructor.
+         *
+         * @param expectedKeys expected number of keys; if exceeded, the false positive rate degrades
+         * @param bitsPerKey number of filter bits per expected key
+         * @throws IllegalArgumentException if {@code expectedKeys} is negative or {@code bitsPerKey} is not positive
+         * @throws IllegalArgumentException if the filter would exceed 2GB
+         */
+        Builder(long expectedKeys, int bitsPerKey) {
+            Preconditions.checkArgument(expectedKeys >= 0, "expectedKeys < 0");
+            Preconditions.checkArgument(bitsPerKey > 0, "bitsPerKey <= 0");
+            final long numWords = Math.max(1, (Math.max(1, expectedKeys) * bitsPerKey + 63) / 64);
+            Preconditions.checkArgument(numWords <= (Integer.MAX_VALUE - HEADER_LENGTH) / 8, "Bloom filter is too large");
+            this.words = new long[(int)numWords];
+            this.numBits = numWords * 64;
+            this.numHashFunctions = Math.max(1, Math.min(MAX_HASH_FUNCTIONS, (int)Math.round(bitsPerKey * Math.log(2))));
+        }
+
+        /**
+         * Add a key to the filter.
+         *
+         * @param key key to add
+         */
+        public void add(byte[] key) {
+            final ByteBuffer hash = ByteBuffer.wrap(HASH_FUNCTION.hashBytes(key).asBytes());
+            final long hash1 = hash.getLong(0);
+            final long hash2 = hash.getLong(8);
+            long combinedHash = hash1;
+            for (int i = 0; i < this.numHashFunctions; i++) {
+                final long bit = (combinedHash & Long.MAX_VALUE) % this.numBits;
+                this.words[(int)(bit >>> 6)] |= 1L << (bit & 0x3f);
+                combinedHash += hash2;
+            }
+        }
+
+        /**
+         * Write out the filter data.
+         *
+         * @param output destination
+         * @throws IOException if an I/O error occurs
+         */
+        public void writeTo(OutputStream output) throws IOException {
+            final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+            data.writeInt(this.numHashFunctions);
+            for (long word : this.words)
+                data.writeLong(word);
+            data.flush();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A simple, fast LZ77-style compressor used for compressing blocks of {@link ArrayKVStore} value data.
+ *
+ * <p>
+ * The compressed format is a sequence of "sequences", each consisting of a token byte, a run of literal bytes,
+ * and a back-reference to a previous match, exactly as in the LZ4 block format: the high nibble of the token is
+ * the number of literal bytes, and the low nibble is the match length minus {@value #MIN_MATCH}; in either case
+ * a nibble value of 15 indicates that additional length bytes follow. Literal bytes are followed by a two byte
+ * little endian match offset. The final sequence contains only literals, and ends when the expected uncompressed
+ * length is reached; this means the uncompressed length must be known in order to decompress.
+ *
+ * <p>
+ * Favors speed over compression ratio. The implementation is pure Java and stateless, so it is thread safe.
+ */
+final class ArrayKVCompressor {
+
+    static final int MIN_MATCH = 4;
+    static final int MAX_OFFSET = 0xffff;
+
+    private static final int HASH_BITS = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private ArrayKVCompressor() {
+    }
+
+    /**
+     * Get the maximum possible compressed length of data having the given length.
+     *
+     * @param len uncompressed length
+     * @return maximum compressed length
+     */
+    static int maxCompressedLength(int len) {
+        Preconditions.checkArgument(len >= 0, "len < 0");
+        return len + len / 255 + 16;
+    }
+
+    /**
+     * Compress data.
+     *
+     * @param src source data
+     * @param srcOff offset of source data
+     * @param srcLen length of source data
+     * @param dest destination buffer having length at least {@link #maxCompressedLength maxCompressedLength(srcLen)}
+     * @return compressed length
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dest) {
+        Preconditions.checkArgument(dest.length >= ArrayKVCompressor.maxCompressedLength(srcLen), "dest is too small");
+        final int end = srcOff + srcLen;
+        final int matchLimit = end - MIN_MATCH;
+        final int[] table = new int[1 << HASH_BITS];                        // holds (position - srcOff + 1), or zero
+        int anchor = srcOff;
+        int pos = srcOff;
+        int destPos = 0;
+        int misses = 0;
+        while (pos <= matchLimit) {
+
+            // Look for a previous occurrence of the next four bytes
+            final int sequence = ArrayKVCompressor.readInt(src, pos);
+            final int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            final int candidate = table[hash] - 1 + srcOff;
+            table[hash] = pos - srcOff + 1;
+            if (candidate < srcOff || pos - candidate > MAX_OFFSET || ArrayKVCompressor.readInt(src, candidate) != sequence) {
+                pos += 1 + (misses++ >>> SKIP_TRIGGER);                     // skip faster through incompressible data
+                continue;
+            }
+            misses = 0;
+
+            // Extend the match as far as possible
+            int matchLen = MIN_MATCH;
+            while (pos + matchLen < end && src[candidate + matchLen] == src[pos + matchLen])
+                matchLen++;
+
+            // Emit the sequence
+            final int tokenPos = destPos;
+            destPos = ArrayKVCompressor.writeSequence(src, anchor, pos - anchor, dest, destPos);
+            dest[destPos++] = (byte)(pos - candidate);
+            dest[destPos++] = (byte)((pos - candidate) >>> 8);
+            destPos = ArrayKVCompressor.writeLength(matchLen - MIN_MATCH, dest, tokenPos, destPos, false);
+            pos += matchLen;
+            anchor = pos;
+        }
+
+        // Emit the final literals-only sequence
+        return ArrayKVCompressor.writeSequence(src, anchor, end - anchor, dest, destPos);
+    }
+
+    /**
+     * Decompress data.
+     *
+     * @param src compressed data
+     * @param srcOff offset of compressed data
+     * @param srcLen length of compressed data
+     * @param dest destination for uncompressed data, which must have exactly the original uncompressed length
+     * @throws ArrayKVException if the compressed data is invalid
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest) {
+        final int srcEnd = srcOff + srcLen;
+        int pos = srcOff;
+        int destPos = 0;
+        try {
+            while (true) {
+
+                // Read token and literal length
+                final int token = src[pos++] & 0xff;
+                int literalLen = token >>> 4;
+                if (literalLen == 15) {
+                    int b;
+                    do
+                        literalLen += (b = src[pos++] & 0xff);
+                    while (b == 0xff);
+                }
+
+                // Copy literals
+                if (literalLen > srcEnd - pos || literalLen > dest.length - destPos)
+                    throw new ArrayKVException("invalid compressed data: literals overflow");
+                System.arraycopy(src, pos, dest, destPos, literalLen);
+                pos += literalLen;
+                destPos += literalLen;
+                if (destPos == dest.length)
+                    break;
+
+                // Read match offset and length
+                final int offset = (src[pos++] & 0xff) | (src[pos++] & 0xff) << 8;
+                int matchLen = token & 0x0f;
+                if (matchLen == 15) {
+                    int b;
+                    do
+                        matchLen += (b = src[pos++] & 0xff);
+                    while (b == 0xff);
+                }
+                matchLen += MIN_MATCH;
+
+                // Copy match, which may overlap the bytes being written
+                if (offset == 0 || offset > destPos || matchLen > dest.length - destPos)
+                    throw new ArrayKVException("invalid compressed data: bad match");
+                int from = destPos - offset;
+                if (offset >= matchLen) {
+                    System.arraycopy(dest, from, dest, destPos, matchLen);
+                    destPos += matchLen;
+                } else {
+                    while (matchLen-- > 0)
+                        dest[destPos++] = dest[from++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ArrayKVException("invalid compressed data: truncated", e);
+        }
+        if (pos != srcEnd)
+            throw new ArrayKVException("invalid compressed data: trailing garbage");
+    }
+
+    // Write token, extended literal length (if any), and literals; the token's match nibble is filled in later (if needed)
+    private static int writeSequence(byte[] src, int off, int len, byte[] dest, int destPos) {
+        final int tokenPos = destPos++;
+        dest[tokenPos] = 0;
+        destPos = ArrayKVCompressor.writeLength(len, dest, tokenPos, destPos, true);
+        System.arraycopy(src, off, dest, destPos, len);
+        return destPos + len;
+    }
+
+    // Write a length into the token's high or low nibble, plus any extended length bytes; returns updated destPos
+    private static int writeLength(int len, byte[] dest, int tokenPos, int destPos, boolean high) {
+        final int nibble = Math.min(len, 15);
+        dest[tokenPos] |= (byte)(high ? nibble << 4 : nibble);
+        if (nibble == 15) {
+            len -= 15;
+            while (len >= 0xff) {
+                dest[destPos++] = (byte)0xff;
+                len -= 0xff;
+            }
+            dest[destPos++] = (byte)len;
+        }
+        return destPos;
+    }
+
+    private static int readInt(byte[] buf, int pos) {
+        return (buf[pos] & 0xff) << 24 | (buf[pos + 1] & 0xff) << 16 | (buf[pos + 2] & 0xff) << 8 | (buf[pos + 3] & 0xff);
+    }
+}
@@ -8,6 +8,7 @@ package io.permazen.kv.array;
 import com.google.common.base.Preconditions;
 
 import io.permazen.kv.KVPair;
+import io.permazen.util.ByteSlice;
 import io.permazen.util.ByteUtil;
 
 import java.nio.ByteBuffer;
@@ -16,17 +17,32 @@ import java.nio.ByteBuffer;
  * Performs searches into an {@link ArrayKVStore}.
  *
  * <p>
+ * To avoid touching many pages of the index and key data during each binary search, instances lazily build an in-heap
+ * sparse index containing the key of every {@value #SPARSE_INDEX_STRIDE}th entry (i.e., one key per page of index data),
+ * which is searched first to narrow the range of entries to be searched in the buffers.
+ *
+ * <p>
+ * If the value data is {@linkplain ArrayKVValueBlocks block-compressed}, value offsets in the index refer to
+ * positions in the uncompressed value data.
+ *
+ * <p>
  * Instances are thread safe.
  */
 class ArrayKVFinder {
 
+    static final int SPARSE_INDEX_STRIDE = 512;
+
     // Note: for thread safety, perform only absolute gets
     private final ByteBuffer indx;
     private final ByteBuffer keys;
     private final ByteBuffer vals;
+    private final ArrayKVValueBlocks valueBlocks;                   // null if value data is not block-compressed
+    private final int valsLength;
     private final int size;
 
-    ArrayKVFinder(ByteBuffer indx, ByteBuffer keys, ByteBuffer vals) {
+    private volatile byte[][] sparseIndex;
+
+    ArrayKVFinder(ByteBuffer indx, ByteBuffer keys, ByteBuffer vals, boolean blockVals) {
         Preconditions.checkArgument(indx.capacity() % 8 == 0, "index size is not a multiple of 8");
         this.indx = indx.duplicate();
         this.keys = keys.duplicate();
@@ -35,6 +51,8 @@ class ArrayKVFinder {
         this.keys.limit(this.keys.capacity());
         this.vals.limit(this.vals.capacity());
         this.size = this.indx.capacity() / 8;
+        this.valueBlocks = blockVals ? new ArrayKVValueBlocks(vals) : null;
+        this.valsLength = this.valueBlocks != null ? this.valueBlocks.length() : this.vals.capacity();
     }
 
     /**
@@ -44,9 +62,30 @@ class ArrayKVFinder {
      */
     public int find(byte[] searchKey) {
 
-        // Initialize bounds using cached prefix
+        // Initialize bounds using the sparse index
         int min = 0;
         int max = this.size;
+        if (this.size > SPARSE_INDEX_STRIDE) {
+            final byte[][] blockKeys = this.getSparseIndex();
+            int blockMin = 0;
+            int blockMax = blockKeys.length;
+            while (blockMin < blockMax) {
+                final int blockMid = (blockMin + (blockMax - 1)) >>> 1;
+                final int diff = ByteUtil.compare(searchKey, blockKeys[blockMid]);
+                if (diff == 0)
+                    return blockMid * SPARSE_INDEX_STRIDE;
+                if (diff < 0)
+                    blockMax = blockMid;
+                else
+                    blockMin = blockMid + 1;
+            }
+
+            // Now search key is greater than the first key of block (blockMin - 1) and less than the first key of block blockMin
+            if (blockMin == 0)
+                return ~0;
+            min = (blockMin - 1) * SPARSE_INDEX_STRIDE + 1;
+            max = Math.min(blockMin * SPARSE_INDEX_STRIDE, this.size);
+        }
 
         // Perform binary search for key, starting at the point where we diverged from the previous search key
         byte[] prevMin = null;
@@ -78,6 +117,18 @@ class ArrayKVFinder {
         return ~min;
     }
 
+    // Get the sparse index, building it if necessary; it's harmless if two threads race to build it
+    private byte[][] getSparseIndex() {
+        byte[][] blockKeys = this.sparseIndex;
+        if (blockKeys == null) {
+            blockKeys = new byte[(this.size + SPARSE_INDEX_STRIDE - 1) / SPARSE_INDEX_STRIDE][];
+            for (int i = 0; i < blockKeys.length; i++)
+                blockKeys[i] = this.readKey(i * SPARSE_INDEX_STRIDE);
+            this.sparseIndex = blockKeys;
+        }
+        return blockKeys;
+    }
+
     /**
      * Read the key at the specified index.
      */
@@ -126,17 +177,71 @@ class ArrayKVFinder {
     public byte[] readValue(int index) {
         Preconditions.checkArgument(index >= 0, "index < 0");
         Preconditions.checkArgument(index < this.size, "index >= size");
-        final int dataOffset = this.indx.getInt(index * 8 + 4);
-        final int nextOffset = (index + 1) < this.size ? this.indx.getInt((index + 1) * 8 + 4) : this.vals.capacity();
-        final int length = nextOffset - dataOffset;
+        final int dataOffset = this.valueOffset(index);
+        final int length = this.valueOffset(index + 1) - dataOffset;
+        if (this.valueBlocks != null)
+            return this.valueBlocks.read(dataOffset, length);
         return this.get(this.vals, dataOffset, new byte[length], 0, length);
     }
 
+    /**
+     * Read the value at the specified index as a {@link ByteSlice}.
+     *
+     * <p>
+     * If the value data is in a heap buffer, the returned slice refers to it directly and no data is copied.
+     * Likewise, if the value data is block-compressed, the returned slice usually refers to a cached decompressed block.
+     */
+    public ByteSlice readValueSlice(int index) {
+        if (this.valueBlocks == null && !this.vals.hasArray())
+            return new ByteSlice(this.readValue(index));
+        Preconditions.checkArgument(index >= 0, "index < 0");
+        Preconditions.checkArgument(index < this.size, "index >= size");
+        final int dataOffset = this.valueOffset(index);
+        final int length = this.valueOffset(index + 1) - dataOffset;
+        if (this.valueBlocks != null)
+            return this.valueBlocks.readSlice(dataOffset, length);
+        return new ByteSlice(this.vals.array(), this.vals.arrayOffset() + dataOffset, length);
+    }
+
     /**
      * Read the key/value pair at the specified index.
+     *
+     * <p>
+     * The value is not read until it is accessed, so callers that only need keys avoid the cost of copying values.
      */
     public KVPair readKV(int index) {
-        return new KVPair(this.readKey(index), this.readValue(index));
+        return new KVPair(new ByteSlice(this.readKey(index))) {
+            @Override
+            protected ByteSlice loadValue() {
+                return ArrayKVFinder.this.readValueSlice(index);
+            }
+        };
+    }
+
+    /**
+     * Get the number of bytes of (prefix-compressed) key data and value data occupied by the entries
+     * in the specified index range.
+     */
+    public long dataSize(int minIndex, int maxIndex) {
+        Preconditions.checkArgument(minIndex >= 0, "minIndex < 0");
+        Preconditions.checkArgument(maxIndex <= this.size, "maxIndex > size");
+        Preconditions.checkArgument(minIndex <= maxIndex, "minIndex > maxIndex");
+        return (long)(this.keyOffset(maxIndex) - this.keyOffset(minIndex))
+          + (this.valueOffset(maxIndex) - this.valueOffset(minIndex));
+    }
+
+    // Get the offset of the (possibly prefix-compressed) key data for the specified index
+    private int keyOffset(int index) {
+        if (index == this.size)
+            return this.keys.capacity();
+        final int baseIndex = index & ~0x1f;
+        final int baseKeyOffset = this.indx.getInt(baseIndex * 8);
+        return index == baseIndex ? baseKeyOffset : baseKeyOffset + (this.indx.getInt(index * 8) & 0x00ffffff);
+    }
+
+    // Get the offset of the value data for the specified index
+    private int valueOffset(int index) {
+        return index == this.size ? this.valsLength : this.indx.getInt(index * 8 + 4);
     }
 
     // Perform a bulk get() that doesn't modify the buffer
@@ -10,6 +10,7 @@ import com.google.common.collect.UnmodifiableIterator;
 
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
@@ -28,12 +29,24 @@ import java.util.NoSuchElementException;
  * queried key. Key data is prefix-compressed.
  *
  * <p>
+ * An optional fourth {@link ByteBuffer} may contain a Bloom filter for the keys, also created using {@link ArrayKVWriter}.
+ * If present, {@link #get get()} consults it first, so that most lookups of keys that are not present never touch
+ * the index or key data. In addition, a sparse index of every 512th key is kept on the heap, which narrows each binary
+ * search of the index to a single page.
+ *
+ * <p>
+ * Value data may optionally be block-compressed (see {@link ArrayKVWriter#setValueBlockSize ArrayKVWriter.setValueBlockSize()}),
+ * which allows more values to fit in the page cache at the cost of decompressing blocks on access. Instances keep a small
+ * cache of recently decompressed blocks, so that iterating nearby values decompresses each block only once.
+ *
+ * <p>
  * Key and value data must not exceed 2GB (each separately).
  */
 public class ArrayKVStore extends AbstractKVStore {
 
     private final int size;
     private final ArrayKVFinder finder;
+    private final ArrayKVBloomFilter bloomFilter;
 
     /**
      * Constructor.
@@ -45,16 +58,62 @@ public class ArrayKVStore extends AbstractKVStore {
      * @throws IllegalArgumentException if {@code indx} size is not a correct multiple
      */
     public ArrayKVStore(ByteBuffer indx, ByteBuffer keys, ByteBuffer vals) {
+        this(indx, keys, vals, null);
+    }
+
+    /**
+     * Constructor with optional Bloom filter.
+     *
+     * @param indx buffer containing index data written by a {@link ArrayKVWriter}
+     * @param keys buffer containing key data written by a {@link ArrayKVWriter}
+     * @param vals buffer containing value data written by a {@link ArrayKVWriter}
+     * @param bloom buffer containing Bloom filter data written by a {@link ArrayKVWriter}, or null for none
+     * @throws IllegalArgumentException if {@code indx}, {@code keys}, or {@code vals} is null
+     * @throws IllegalArgumentException if {@code indx} size is not a correct multiple
+     * @throws IllegalArgumentException if {@code bloom} is invalid
+     */
+    public ArrayKVStore(ByteBuffer indx, ByteBuffer keys, ByteBuffer vals, ByteBuffer bloom) {
+        this(indx, keys, vals, bloom, false);
+    }
+
+    /**
+     * Constructor with optional Bloom filter and optionally block-compressed value data.
+     *
+     * @param indx buffer containing index data written by a {@link ArrayKVWriter}
+     * @param keys buffer containing key data written by a {@link ArrayKVWriter}
+     * @param vals buffer containing value data written by a {@link ArrayKVWriter}
+     * @param bloom buffer containing Bloom filter data written by a {@link ArrayKVWriter}, or null for none
+     * @param blockVals true if {@code vals} contains block-compressed value data,
+     *  i.e., it was written by a {@link ArrayKVWriter} configured with a non-zero
+     *  {@linkplain ArrayKVWriter#setValueBlockSize value block size}
+     * @throws IllegalArgumentException if {@code indx}, {@code keys}, or {@code vals} is null
+     * @throws IllegalArgumentException if {@code indx} size is not a correct multiple
+     * @throws IllegalArgumentException if {@code bloom} is invalid
+     * @throws IllegalArgumentException if {@code blockVals} is true but {@code vals} is not valid block-compressed value data
+     */
+    public ArrayKVStore(ByteBuffer indx, ByteBuffer keys, ByteBuffer vals, ByteBuffer bloom, boolean blockVals) {
         Preconditions.checkArgument(indx != null, "null indx");
         Preconditions.checkArgument(keys != null, "null keys");
         Preconditions.checkArgument(vals != null, "null vals");
         Preconditions.checkArgument(indx.capacity() % 8 == 0, "index size is not a multiple of 8");
         this.size = indx.capacity() / 8;
-        this.finder = new ArrayKVFinder(indx, keys, vals);
+        this.finder = new ArrayKVFinder(indx, keys, vals, blockVals);
+        this.bloomFilter = bloom != null ? new ArrayKVBloomFilter(bloom) : null;
+    }
+
+    /**
+     * Get the number of key/value pairs in this instance.
+     *
+     * @return number of key/value pairs
+     */
+    public int size() {
+        return this.size;
     }
 
     @Override
     public byte[] get(byte[] key) {
+        if (this.bloomFilter != null && !this.bloomFilter.mightContain(key))
+            return null;
         final int index = this.finder.find(key);
         if (index < 0)
             return null;
@@ -91,24 +150,43 @@ public class ArrayKVStore extends AbstractKVStore {
 
     @Override
     public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, final boolean reverse) {
+        final int minIndex = this.findMinIndex(minKey);
+        final int maxIndex = this.findMaxIndex(maxKey);
+        return new RangeIter(minIndex, maxIndex, reverse);
+    }
 
-        // Find min index
+    /**
+     * Estimate the size of the specified range.
+     *
+     * <p>
+     * The implementation in {@link ArrayKVStore} computes the exact number of keys and the exact amount of key and
+     * value data in the range from the offsets recorded in the index; no key or value data is read other than that
+     * required to binary search for {@code minKey} and {@code maxKey}. Note that key data is prefix-compressed,
+     * while value data is counted uncompressed.
+     */
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        final int minIndex = this.findMinIndex(minKey);
+        final int maxIndex = Math.max(this.findMaxIndex(maxKey), minIndex);
+        return new SizeEstimate(maxIndex - minIndex, this.finder.dataSize(minIndex, maxIndex), true);
+    }
+
+    private int findMinIndex(byte[] minKey) {
         int index;
         if (minKey == null || minKey.length == 0)
             index = 0;
         else if ((index = this.finder.find(minKey)) < 0)
             index = ~index;
-        final int minIndex = index;
+        return index;
+    }
 
-        // Find max index
+    private int findMaxIndex(byte[] maxKey) {
+        int index;
         if (maxKey == null)
             index = this.size;
         else if ((index = this.finder.find(maxKey)) < 0)
             index = ~index;
-        final int maxIndex = index;
-
-        // Return iterator over array indexes
-        return new RangeIter(minIndex, maxIndex, reverse);
+        return index;
     }
 
     @Override
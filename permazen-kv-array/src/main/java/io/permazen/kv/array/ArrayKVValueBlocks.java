@@ -0,0 +1,295 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.util.ByteSlice;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Block-compressed {@link ArrayKVStore} value data.
+ *
+ * <p>
+ * The (uncompressed) value data is divided into fixed-size blocks, and each block is compressed separately using
+ * {@link ArrayKVCompressor}, or stored as-is if compression would not make it smaller. The compressed blocks are
+ * followed by a table of block offsets (one four byte big endian offset per block, plus one more marking the end of
+ * the last block), followed by a trailer containing the block size, the total uncompressed length, the number of blocks,
+ * and a magic number. Each block starts with a one byte header indicating whether it is compressed.
+ *
+ * <p>
+ * Offsets in the {@link ArrayKVStore} index refer to positions in the uncompressed value data. To avoid repeatedly
+ * decompressing the same block, instances keep a small cache of recently decompressed blocks.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+class ArrayKVValueBlocks {
+
+    static final int MAGIC = 0x41564231;                                    // "AVB1"
+    static final int TRAILER_LENGTH = 16;
+    static final int CACHE_SIZE = 16;
+
+    private static final int BLOCK_STORED = 0;
+    private static final int BLOCK_COMPRESSED = 1;
+
+    // Note: for thread safety, perform only absolute gets
+    private final ByteBuffer buf;
+    private final int blockSize;
+    private final int length;
+    private final int numBlocks;
+    private final int tableOffset;
+
+    // Direct-mapped cache; Block fields are final so racy access is safe, and at worst we decompress a block twice
+    private final Block[] cache = new Block[CACHE_SIZE];
+
+    /**
+     * Constructor.
+     *
+     * @param buf buffer containing data written by a {@link Writer}
+     * @throws IllegalArgumentException if {@code buf} is null or invalid
+     */
+    ArrayKVValueBlocks(ByteBuffer buf) {
+        Preconditions.checkArgument(buf != null, "null buf");
+        final int capacity = buf.capacity();
+        Preconditions.checkArgument(capacity >= TRAILER_LENGTH + 4, "value block data is truncated");
+        this.buf = buf.duplicate();
+        this.buf.limit(capacity);
+        Preconditions.checkArgument(this.buf.getInt(capacity - 4) == MAGIC, "value data is not in block format");
+        this.blockSize = this.buf.getInt(capacity - 16);
+        this.length = this.buf.getInt(capacity - 12);
+        this.numBlocks = this.buf.getInt(capacity - 8);
+        Preconditions.checkArgument(this.blockSize > 0 && this.length >= 0 && this.numBlocks >= 0
+          && this.numBlocks == (int)(((long)this.length + this.blockSize - 1) / this.blockSize), "invalid value block trailer");
+        this.tableOffset = capacity - TRAILER_LENGTH - (this.numBlocks + 1) * 4;
+        Preconditions.checkArgument(this.tableOffset >= 0
+          && this.buf.getInt(this.tableOffset + this.numBlocks * 4) == this.tableOffset, "invalid value block offset table");
+    }
+
+    /**
+     * Get the total length of the uncompressed value data.
+     *
+     * @return uncompressed length
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Read uncompressed value data.
+     *
+     * @param offset offset in the uncompressed value data
+     * @param len number of bytes
+     * @return the data
+     */
+    public byte[] read(int offset, int len) {
+        final byte[] dest = new byte[len];
+        int destPos = 0;
+        while (destPos < len) {
+            final int blockIndex = offset / this.blockSize;
+            final int blockOffset = offset - blockIndex * this.blockSize;
+            final byte[] block = this.getBlock(blockIndex);
+            final int count = Math.min(len - destPos, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, dest, destPos, count);
+            destPos += count;
+            offset += count;
+        }
+        return dest;
+    }
+
+    /**
+     * Read uncompressed value data as a {@link ByteSlice}.
+     *
+     * <p>
+     * If the data lies within a single block, the returned slice refers directly to the cached decompressed block.
+     *
+     * @param offset offset in the uncompressed value data
+     * @param len number of bytes
+     * @return the data
+     */
+    public ByteSlice readSlice(int offset, int len) {
+        final int blockIndex = offset / this.blockSize;
+        final int blockOffset = offset - blockIndex * this.blockSize;
+        if (len == 0 || blockOffset + len > this.blockSize)
+            return new ByteSlice(this.read(offset, len));
+        return new ByteSlice(this.getBlock(blockIndex), blockOffset, len);
+    }
+
+    // Get decompressed block, from the cache if possible
+    private byte[] getBlock(int blockIndex) {
+        Preconditions.checkArgument(blockIndex >= 0 && blockIndex < this.numBlocks, "invalid offset");
+        final int slot = blockIndex % CACHE_SIZE;
+        Block block = this.cache[slot];
+        if (block == null || block.index != blockIndex) {
+            block = new Block(blockIndex, this.decompressBlock(blockIndex));
+            this.cache[slot] = block;
+        }
+        return block.data;
+    }
+
+    private byte[] decompressBlock(int blockIndex) {
+        final int start = this.buf.getInt(this.tableOffset + blockIndex * 4);
+        final int end = this.buf.getInt(this.tableOffset + (blockIndex + 1) * 4);
+        if (start < 0 || end <= start || end > this.tableOffset)
+            throw new ArrayKVException("invalid value block offset table");
+        final byte[] data = new byte[Math.min(this.blockSize, this.length - blockIndex * this.blockSize)];
+        final int rawLength = end - start - 1;
+        switch (this.buf.get(start)) {
+        case BLOCK_STORED:
+            if (rawLength != data.length)
+                throw new ArrayKVException("invalid stored value block length");
+            if (this.buf.hasArray())
+                System.arraycopy(this.buf.array(), this.buf.arrayOffset() + start + 1, data, 0, rawLength);
+            else
+                ((ByteBuffer)this.buf.duplicate().position(start + 1)).get(data);
+            return data;
+        case BLOCK_COMPRESSED:
+            if (this.buf.hasArray())
+                ArrayKVCompressor.decompress(this.buf.array(), this.buf.arrayOffset() + start + 1, rawLength, data);
+            else {
+                final byte[] raw = new byte[rawLength];
+                ((ByteBuffer)this.buf.duplicate().position(start + 1)).get(raw);
+                ArrayKVCompressor.decompress(raw, 0, rawLength, data);
+            }
+            return data;
+        default:
+            throw new ArrayKVException("invalid value block type");
+        }
+    }
+
+// Block
+
+    private static final class Block {
+
+        final int index;
+        final byte[] data;
+
+        Block(int index, byte[] data) {
+            this.index = index;
+            this.data = data;
+        }
+    }
+
+// Writer
+
+    /**
+     * Writes block-compressed value data.
+     *
+     * <p>
+     * Instances buffer one block of uncompressed data. The block offset table and trailer are written by {@link #finish},
+     * after which no more data may be written. Neither {@link #finish} nor {@link #close} closes the underlying output.
+     */
+    static class Writer extends OutputStream {
+
+        private final DataOutputStream output;
+        private final byte[] block;
+        private final byte[] compressed;
+
+        private int[] offsets = new int[32];
+        private int numBlocks;
+        private int blockLength;
+        private long length;
+        private long outputLength;
+        private boolean finished;
+
+        /**
+         * Constructor.
+         *
+         * @param output underlying output
+         * @param blockSize uncompressed block size
+         * @throws IllegalArgumentException if {@code output} is null or {@code blockSize} is not positive
+         */
+        Writer(OutputStream output, int blockSize) {
+            Preconditions.checkArgument(output != null, "null output");
+            Preconditions.checkArgument(blockSize > 0, "blockSize <= 0");
+            this.output = new DataOutputStream(output);
+            this.block = new byte[blockSize];
+            this.compressed = new byte[ArrayKVCompressor.maxCompressedLength(blockSize)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) throws IOException {
+            Preconditions.checkState(!this.finished, "already finished");
+            while (len > 0) {
+                final int count = Math.min(len, this.block.length - this.blockLength);
+                System.arraycopy(data, off, this.block, this.blockLength, count);
+                this.blockLength += count;
+                this.length += count;
+                off += count;
+                len -= count;
+                if (this.blockLength == this.block.length)
+                    this.writeBlock();
+            }
+        }
+
+        /**
+         * Write out the final partial block, if any, followed by the block offset table and trailer.
+         *
+         * <p>
+         * Does nothing if already invoked.
+         *
+         * @throws IllegalStateException if the data is too large
+         * @throws IOException if an I/O error occurs
+         */
+        public void finish() throws IOException {
+            if (this.finished)
+                return;
+            if (this.blockLength > 0)
+                this.writeBlock();
+            this.finished = true;
+            Preconditions.checkState(this.length <= Integer.MAX_VALUE
+              && this.outputLength + (this.numBlocks + 1) * 4L + TRAILER_LENGTH <= Integer.MAX_VALUE, "too much value data");
+            for (int i = 0; i < this.numBlocks; i++)
+                this.output.writeInt(this.offsets[i]);
+            this.output.writeInt((int)this.outputLength);
+            this.output.writeInt(this.block.length);
+            this.output.writeInt((int)this.length);
+            this.output.writeInt(this.numBlocks);
+            this.output.writeInt(MAGIC);
+            this.output.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.finish();
+        }
+
+        private void writeBlock() throws IOException {
+            Preconditions.checkState(this.outputLength <= Integer.MAX_VALUE, "too much value data");
+            if (this.numBlocks == this.offsets.length) {
+                final int[] newOffsets = new int[this.offsets.length * 2];
+                System.arraycopy(this.offsets, 0, newOffsets, 0, this.numBlocks);
+                this.offsets = newOffsets;
+            }
+            this.offsets[this.numBlocks++] = (int)this.outputLength;
+            final int compressedLength = ArrayKVCompressor.compress(this.block, 0, this.blockLength, this.compressed);
+            if (compressedLength < this.blockLength) {
+                this.output.write(BLOCK_COMPRESSED);
+                this.output.write(this.compressed, 0, compressedLength);
+                this.outputLength += 1 + compressedLength;
+            } else {
+                this.output.write(BLOCK_STORED);
+                this.output.write(this.block, 0, this.blockLength);
+                this.outputLength += 1 + this.blockLength;
+            }
+            this.blockLength = 0;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
 
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
@@ -25,10 +26,24 @@ import java.util.Map;
  * Writes {@link ArrayKVStore} index, key, and value data, given a sorted sequence of key/value pairs.
  *
  * <p>
+ * Optionally, instances also write a Bloom filter for the keys, which allows {@link ArrayKVStore#get ArrayKVStore.get()}
+ * to quickly reject most lookups of keys that are not present.
+ *
+ * <p>
+ * Optionally, instances also block-compress the value data; see {@link #setValueBlockSize setValueBlockSize()}.
+ *
+ * <p>
  * Key and value data must not exceed 2GB (each separately).
  */
 public class ArrayKVWriter implements Closeable {
 
+    /**
+     * Suggested value block size when compressing value data ({@value #DEFAULT_VALUE_BLOCK_SIZE} bytes).
+     *
+     * @see #setValueBlockSize setValueBlockSize()
+     */
+    public static final int DEFAULT_VALUE_BLOCK_SIZE = 16 * 1024;
+
     private static final int BUFFER_SIZE = 1024 * 1024;
 
     // Flags used by writeMerged()
@@ -39,6 +54,10 @@ public class ArrayKVWriter implements Closeable {
     private final BufferedOutputStream indxOutput;
     private final BufferedOutputStream keysOutput;
     private final BufferedOutputStream valsOutput;
+    private final OutputStream bloomOutput;
+    private final ArrayKVBloomFilter.Builder bloomBuilder;
+
+    private ArrayKVValueBlocks.Writer valsBlockOutput;                  // null if value data is not block-compressed
 
     private int keysLength;
     private int valsLength;
@@ -47,6 +66,7 @@ public class ArrayKVWriter implements Closeable {
     private byte[] prevKey;
     private byte[] baseKey;
     private int baseKeyOffset;
+    private boolean finished;
     private boolean closed;
 
     /**
@@ -57,12 +77,60 @@ public class ArrayKVWriter implements Closeable {
      * @param valsOutput value data file output
      */
     public ArrayKVWriter(OutputStream indxOutput, OutputStream keysOutput, OutputStream valsOutput) {
+        this(indxOutput, keysOutput, valsOutput, null, 0, 0);
+    }
+
+    /**
+     * Constructor for an instance that also writes a Bloom filter for the keys.
+     *
+     * <p>
+     * The Bloom filter is built in memory and written to {@code bloomOutput} by {@link #flush} or {@link #close},
+     * after which no more key/value pairs may be written. The filter is sized for {@code expectedKeys} keys;
+     * if more keys are written, the filter's false positive rate increases. Ten bits per key gives a false positive
+     * rate of about one percent.
+     *
+     * @param indxOutput index file output
+     * @param keysOutput key data file output
+     * @param valsOutput value data file output
+     * @param bloomOutput Bloom filter file output, or null for none
+     * @param expectedKeys expected number of keys to be written
+     * @param bitsPerKey number of Bloom filter bits per expected key
+     * @throws IllegalArgumentException if {@code indxOutput}, {@code keysOutput}, or {@code valsOutput} is null
+     * @throws IllegalArgumentException if {@code bloomOutput} is not null and {@code expectedKeys} is negative
+     *  or {@code bitsPerKey} is not positive
+     */
+    public ArrayKVWriter(OutputStream indxOutput, OutputStream keysOutput, OutputStream valsOutput,
+      OutputStream bloomOutput, long expectedKeys, int bitsPerKey) {
         Preconditions.checkArgument(indxOutput != null, "null indxOutput");
         Preconditions.checkArgument(keysOutput != null, "null keysOutput");
         Preconditions.checkArgument(valsOutput != null, "null valsOutput");
         this.indxOutput = new BufferedOutputStream(indxOutput, BUFFER_SIZE);
         this.keysOutput = new BufferedOutputStream(keysOutput, BUFFER_SIZE);
         this.valsOutput = new BufferedOutputStream(valsOutput, BUFFER_SIZE);
+        this.bloomOutput = bloomOutput;
+        this.bloomBuilder = bloomOutput != null ? new ArrayKVBloomFilter.Builder(expectedKeys, bitsPerKey) : null;
+    }
+
+    /**
+     * Configure this instance to block-compress the value data.
+     *
+     * <p>
+     * The value data is divided into blocks of {@code valueBlockSize} bytes, and each block is compressed separately
+     * using a fast LZ77-style compressor. Larger blocks compress better, but require more work to read any one value.
+     * Block-compressed value data is finished by {@link #flush} or {@link #close}, after which no more key/value pairs
+     * may be written. To read it back, use the {@link ArrayKVStore} constructor that takes a {@code blockVals} parameter.
+     *
+     * <p>
+     * By default, value data is not compressed.
+     *
+     * @param valueBlockSize uncompressed size of each block of value data, or zero to not compress value data
+     * @throws IllegalArgumentException if {@code valueBlockSize} is negative
+     * @throws IllegalStateException if any key/value pairs have already been written
+     */
+    public void setValueBlockSize(int valueBlockSize) {
+        Preconditions.checkArgument(valueBlockSize >= 0, "valueBlockSize < 0");
+        Preconditions.checkState(this.nextIndex == 0 && !this.finished, "key/value pairs already written");
+        this.valsBlockOutput = valueBlockSize > 0 ? new ArrayKVValueBlocks.Writer(this.valsOutput, valueBlockSize) : null;
     }
 
     /**
@@ -84,9 +152,12 @@ public class ArrayKVWriter implements Closeable {
     }
 
     /**
-     * Get the number of bytes written so far to the value data file.
+     * Get the number of bytes of value data written so far.
+     *
+     * <p>
+     * If the value data is block-compressed, this returns the uncompressed length.
      *
-     * @return length of the value data file
+     * @return length of the value data
      */
     public int getValsLength() {
         return this.valsLength;
@@ -100,11 +171,13 @@ public class ArrayKVWriter implements Closeable {
      * @throws IllegalArgumentException if {@code key} is out of order (i.e., not strictly greater then the previous key)
      * @throws IllegalArgumentException if {@code key} or {@code val} is null
      * @throws IllegalStateException if either the key or data file would grow larger than 2<sup>31</sup>-1 bytes
+     * @throws IllegalStateException if the Bloom filter or the block-compressed value data has already been finished
      * @throws IOException if an I/O error occurrs
      */
     public void writeKV(byte[] key, byte[] val) throws IOException {
 
         // Sanity checks
+        Preconditions.checkState(!this.finished, "output already finished");
         Preconditions.checkArgument(key != null, "null key");
         Preconditions.checkArgument(val != null, "null value");
         Preconditions.checkArgument(this.prevKey == null || ByteUtil.compare(key, this.prevKey) > 0, "key <= previous key");
@@ -147,9 +220,16 @@ public class ArrayKVWriter implements Closeable {
         this.writeIndxValue(this.valsLength);
 
         // Write value data
-        this.valsOutput.write(val);
+        if (this.valsBlockOutput != null)
+            this.valsBlockOutput.write(val);
+        else
+            this.valsOutput.write(val);
         this.valsLength += val.length;
 
+        // Add key to Bloom filter
+        if (this.bloomBuilder != null)
+            this.bloomBuilder.add(key);
+
         // Update state
         this.prevKey = this.cloneOrCopy(this.prevKey, key);
         this.nextIndex++;
@@ -293,6 +373,31 @@ public class ArrayKVWriter implements Closeable {
         }
     }
 
+    /**
+     * Write a Bloom filter for the keys in an existing {@link ArrayKVStore}.
+     *
+     * <p>
+     * This is useful when the number of keys was not known in advance of writing the {@link ArrayKVStore}.
+     * Only key data is read from {@code kvstore}.
+     *
+     * @param kvstore key/value store
+     * @param bloomOutput Bloom filter file output
+     * @param bitsPerKey number of Bloom filter bits per key
+     * @throws IllegalArgumentException if {@code kvstore} or {@code bloomOutput} is null
+     * @throws IllegalArgumentException if {@code bitsPerKey} is not positive
+     * @throws IOException if an I/O error occurrs
+     */
+    public static void writeBloomFilter(ArrayKVStore kvstore, OutputStream bloomOutput, int bitsPerKey) throws IOException {
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(bloomOutput != null, "null bloomOutput");
+        final ArrayKVBloomFilter.Builder builder = new ArrayKVBloomFilter.Builder(kvstore.size(), bitsPerKey);
+        try (CloseableIterator<KVPair> i = kvstore.getRange(null, null)) {
+            while (i.hasNext())
+                builder.add(i.next().getKey());
+        }
+        builder.writeTo(bloomOutput);
+    }
+
     private void writeIndxValue(int offset) throws IOException {
         this.indxOutput.write(offset >> 24);
         this.indxOutput.write(offset >> 16);
@@ -301,18 +406,23 @@ public class ArrayKVWriter implements Closeable {
     }
 
     /**
-     * Flush all three outputs.
+     * Flush all outputs.
+     *
+     * <p>
+     * If this instance writes a Bloom filter or block-compressed value data, the first invocation of this method
+     * finishes the output by writing out the Bloom filter and the final block of value data.
      *
      * @throws IOException if an I/O error occurrs
      */
     public void flush() throws IOException {
+        this.finish();
         this.indxOutput.flush();
         this.keysOutput.flush();
         this.valsOutput.flush();
     }
 
     /**
-     * Close all three outputs.
+     * Close all outputs, first finishing the Bloom filter and block-compressed value data, if any.
      *
      * @throws IOException if an I/O error occurrs
      */
@@ -321,9 +431,23 @@ public class ArrayKVWriter implements Closeable {
         if (this.closed)
             return;
         this.closed = true;
+        this.finish();
         this.indxOutput.close();
         this.keysOutput.close();
         this.valsOutput.close();
+        if (this.bloomOutput != null)
+            this.bloomOutput.close();
+    }
+
+    // Write out the data that can only be written once all key/value pairs have been written, if any
+    private void finish() throws IOException {
+        if (this.finished || (this.bloomBuilder == null && this.valsBlockOutput == null))
+            return;
+        this.finished = true;
+        if (this.valsBlockOutput != null)
+            this.valsBlockOutput.finish();
+        if (this.bloomBuilder != null)
+            this.bloomBuilder.writeTo(this.bloomOutput);
     }
 
     // Copy array if we have to, otherwise just overwrite the previous copy if the array length hasn't chagned
@@ -0,0 +1,228 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import io.permazen.kv.mvcc.Writes;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Point-in-time restore for {@link AtomicArrayKVStore} using archived mutation log segments.
+ *
+ * <p>
+ * When an {@link AtomicArrayKVStore} is configured with an {@linkplain AtomicArrayKVStore#setArchiveDirectory archive
+ * directory}, each compaction of generation {@code N} first archives the mutations being compacted as {@code mods.N}.
+ * Starting from a {@linkplain AtomicArrayKVStore#hotCopy hot copy}, {@link #restore restore()} replays the archived
+ * segments in order, rebuilding the database as it was at the start of the compaction of any later generation.
+ *
+ * <p>
+ * A typical backup strategy is therefore to take an occasional hot copy, and continuously copy the archive
+ * directory to backup storage.
+ */
+public final class AtomicArrayKVArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AtomicArrayKVArchive.class);
+
+    private AtomicArrayKVArchive() {
+    }
+
+    /**
+     * Get the generation numbers of the mutation log segments in an archive directory.
+     *
+     * <p>
+     * Each generation number returned is a valid {@code lastGeneration} for {@link #restore restore()},
+     * provided the archive contains all of the segments from the hot copy's generation onward.
+     *
+     * @param archiveDirectory mutation log archive directory
+     * @return sorted list of archived generation numbers
+     * @throws IllegalArgumentException if {@code archiveDirectory} is null or not a directory
+     */
+    public static List<Long> getArchivedGenerations(File archiveDirectory) {
+        Preconditions.checkArgument(archiveDirectory != null, "null archiveDirectory");
+        Preconditions.checkArgument(archiveDirectory.isDirectory(), "archiveDirectory is not a directory");
+        final ArrayList<Long> generations = new ArrayList<>();
+        final String[] names = archiveDirectory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (!name.startsWith(AtomicArrayKVStore.MODS_FILE_NAME_BASE))
+                    continue;
+                try {
+                    generations.add(Long.parseLong(name.substring(AtomicArrayKVStore.MODS_FILE_NAME_BASE.length()), 10));
+                } catch (NumberFormatException e) {
+                    continue;                                               // e.g., temporary file
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Restore a hot copy up through the specified archived mutation log segment.
+     *
+     * <p>
+     * The hot copy in {@code directory} is modified in place: all archived mutations following those already included
+     * in the hot copy, up through and including those in the segment for generation {@code lastGeneration}, are applied,
+     * and the result is compacted. The database is then in the state it was in at the start of the compaction of
+     * generation {@code lastGeneration}. Keep a separate copy of the original hot copy to allow restoring again
+     * to a different point.
+     *
+     * <p>
+     * Restoring is not possible across a bulk load, because bulk loaded data is not archived.
+     *
+     * @param directory directory containing a hot copy of an {@link AtomicArrayKVStore}, which must not be in use
+     * @param archiveDirectory mutation log archive directory
+     * @param lastGeneration generation of the last archived segment to apply
+     * @return the number of mutation records applied
+     * @throws IllegalArgumentException if either directory is null or not a directory
+     * @throws IllegalArgumentException if {@code lastGeneration} is less than the hot copy's generation
+     * @throws ArrayKVException if any needed segment is missing from the archive or corrupt, or a bulk load intervenes
+     * @throws IOException if an I/O error occurs
+     */
+    public static long restore(File directory, File archiveDirectory, long lastGeneration) throws IOException {
+
+        // Sanity check
+        Preconditions.checkArgument(directory != null, "null directory");
+        Preconditions.checkArgument(archiveDirectory != null, "null archiveDirectory");
+        Preconditions.checkArgument(directory.isDirectory(), "directory is not a directory");
+        Preconditions.checkArgument(archiveDirectory.isDirectory(), "archiveDirectory is not a directory");
+
+        // Read the hot copy's generation number
+        final File generationFile = new File(directory, AtomicArrayKVStore.GENERATION_FILE_NAME);
+        final long generation;
+        try (LineNumberReader reader = new LineNumberReader(
+          new InputStreamReader(new FileInputStream(generationFile), StandardCharsets.UTF_8))) {
+            final String line = reader.readLine();
+            if (line == null)
+                throw new ArrayKVException("generation file " + generationFile + " is empty");
+            generation = Long.parseLong(line.trim(), 10);
+        } catch (NumberFormatException e) {
+            throw new ArrayKVException("error reading generation file " + generationFile, e);
+        }
+        Preconditions.checkArgument(lastGeneration >= generation,
+          "lastGeneration " + lastGeneration + " precedes hot copy generation " + generation);
+
+        // Verify we have all the segments we need, and that there are no intervening bulk loads
+        final ArrayList<File> segments = new ArrayList<>();
+        for (long gen = generation; gen <= lastGeneration; gen++) {
+            final File segment = new File(archiveDirectory, AtomicArrayKVStore.MODS_FILE_NAME_BASE + gen);
+            if (!segment.exists())
+                throw new ArrayKVException("archived mutation log segment " + segment + " not found");
+            if (gen < lastGeneration && new File(archiveDirectory, AtomicArrayKVStore.BULK_FILE_NAME_BASE + gen).exists()) {
+                throw new ArrayKVException("can't restore past generation " + gen
+                  + " because a bulk load occurred during its compaction; restore from a later hot copy instead");
+            }
+            segments.add(segment);
+        }
+
+        // Find the end of the last complete record in the hot copy's mods file
+        final File modsFile = new File(directory, AtomicArrayKVStore.MODS_FILE_NAME_BASE + generation);
+        long copiedLength = 0;
+        if (modsFile.exists()) {
+            try (CountingInputStream input = new CountingInputStream(new BufferedInputStream(new FileInputStream(modsFile)))) {
+                while (AtomicArrayKVArchive.readWrites(input) != null)
+                    copiedLength = input.getCount();
+            } catch (IOException | IllegalArgumentException e) {
+                // probably a partial write at the end of the hot copy
+            }
+        }
+
+        // The archived segments form one continuous mutation stream, of which the hot copy contains the first copiedLength
+        // bytes (possibly extending into the next segment, if the hot copy was taken while a compaction was in progress)
+        long remainingSkip = copiedLength;
+        for (File segment : segments)
+            remainingSkip -= Math.min(remainingSkip, segment.length());
+        if (remainingSkip > 0) {
+            throw new ArrayKVException("hot copy mutation log " + modsFile + " extends beyond archived segment "
+              + segments.get(segments.size() - 1) + "; restore to a later generation");
+        }
+
+        // Discard any partial record at the end of the hot copy's mods file; it will be replayed from the archive
+        if (modsFile.exists() && modsFile.length() > copiedLength) {
+            try (FileChannel channel = FileChannel.open(modsFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(copiedLength);
+                channel.force(false);
+            }
+        }
+
+        // Replay the archived segments, skipping the mutations already contained in the hot copy
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+        kvstore.setDirectory(directory);
+        kvstore.start();
+        long count = 0;
+        try {
+            long skip = copiedLength;
+            for (File segment : segments) {
+                try (CountingInputStream input = new CountingInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+                    final long segmentSkip = Math.min(skip, segment.length());
+                    ByteStreams.skipFully(input, segmentSkip);
+                    skip -= segmentSkip;
+                    Writes writes;
+                    while (true) {
+                        final long offset = input.getCount();
+                        try {
+                            writes = AtomicArrayKVArchive.readWrites(input);
+                        } catch (IOException | IllegalArgumentException e) {
+                            throw new ArrayKVException("archived mutation log segment " + segment
+                              + " contains an invalid record at offset " + offset, e);
+                        }
+                        if (writes == null)
+                            break;
+                        kvstore.mutate(writes, false);
+                        count++;
+                    }
+                }
+            }
+
+            // Compact the result so that it's durable
+            final Future<?> compaction = kvstore.scheduleCompaction();
+            try {
+                if (compaction != null)
+                    compaction.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ArrayKVException("interrupted while compacting restored database", e);
+            } catch (ExecutionException e) {
+                throw new ArrayKVException("error compacting restored database", e.getCause());
+            }
+        } finally {
+            kvstore.stop();
+        }
+        LOG.info("restored " + directory + " through generation " + lastGeneration + " by applying " + count
+          + " archived mutation record(s)");
+        return count;
+    }
+
+    // Read the next mutation record, or return null if there are no more records
+    private static Writes readWrites(InputStream input) throws IOException {
+        input.mark(1);
+        if (input.read() == -1)
+            return null;
+        input.reset();
+        return Writes.deserialize(input, true);
+    }
+}
@@ -6,7 +6,9 @@
 package io.permazen.kv.array;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ForwardingFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
@@ -14,14 +16,18 @@ import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.util.BulkLoader;
 import io.permazen.kv.util.CloseableForwardingKVStore;
+import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
@@ -38,9 +44,13 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -99,6 +109,44 @@ import org.slf4j.LoggerFactory;
  * by the in-memory change set.
  *
  * <p>
+ * <b>Leveled Compaction</b>
+ *
+ * <p>
+ * To keep the cost of a compaction proportional to the amount of change rather than to the total size of the database,
+ * a compaction normally does not rewrite the base array files. Instead, it flushes the outstanding changes into a new,
+ * small "delta run", which is another set of array files (plus a set of removed key ranges) stacked on top of the base
+ * array files; reads consult the delta runs from newest to oldest before the base array files, and all files remain
+ * memory-mapped and prefix-compressed. Each delta run has a level, starting at zero. Whenever a compaction would result
+ * in {@linkplain #setCompactLevelRatio level ratio} runs at some level, those runs are merged together (along with the
+ * outstanding changes) into a single run at the next level up. Once the merged delta data would become larger than
+ * the base array files divided by the level ratio, all of the delta runs are merged into a new generation of base array
+ * files instead. As a result, each key/value pair is rewritten a bounded number of times per level, and the time for which
+ * writers may be stalled by the {@linkplain #setCompactHighWater high-water mark} no longer grows with the database size.
+ *
+ * <p>
+ * <b>Bloom Filters</b>
+ *
+ * <p>
+ * By default, each set of array files (base or delta run) written by a compaction includes a Bloom filter file for its keys,
+ * so that lookups of keys that are not present can usually skip the binary search of that set of array files entirely.
+ * This is especially helpful when there are several delta runs. See {@link #setBloomFilterBitsPerKey setBloomFilterBitsPerKey()}.
+ *
+ * <p>
+ * <b>Value Compression</b>
+ *
+ * <p>
+ * Optionally, compaction can write block-compressed value data files, so that more values fit in the page cache.
+ * See {@link #setValueBlockSize setValueBlockSize()}. Array files written with and without value compression may
+ * coexist, so this setting may be changed at any time between restarts.
+ *
+ * <p>
+ * <b>Bulk Loading</b>
+ *
+ * <p>
+ * {@link #bulkLoad bulkLoad()} merges sorted key/value pairs directly into a new generation of array files as part of a
+ * compaction, so that the loaded data never passes through the in-memory change set or the mutation log file.
+ *
+ * <p>
  * <b>Hot Backups</b>
  *
  * <p>
@@ -106,6 +154,15 @@ import org.slf4j.LoggerFactory;
  * Hard links are used to make this operation fast; only the mutation log file (if any) is actually copied.
  *
  * <p>
+ * <b>Mutation Log Archiving</b>
+ *
+ * <p>
+ * If an {@linkplain #setArchiveDirectory archive directory} is configured, each compaction first copies the portion
+ * of the mutation log file being compacted into the archive directory. Together with a hot copy, the archived mutation
+ * log segments allow the database to be restored as of any later compaction using {@link AtomicArrayKVArchive}.
+ * This makes backups incremental: only one hot copy is needed, plus the archived segments that follow it.
+ *
+ * <p>
  * The {@linkplain #setDirectory database directory} is a required configuration property.
  *
  * <p>
@@ -134,14 +191,34 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
      */
     public static final int DEFAULT_COMPACTION_HIGH_WATER = 1024 * 1024 * 1024;
 
+    /**
+     * Default compaction level size ratio ({@value #DEFAULT_COMPACTION_LEVEL_RATIO}).
+     */
+    public static final int DEFAULT_COMPACTION_LEVEL_RATIO = 10;
+
+    /**
+     * Default number of Bloom filter bits per key ({@value #DEFAULT_BLOOM_FILTER_BITS_PER_KEY}).
+     */
+    public static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = 10;
+
     private static final int MIN_MMAP_LENGTH = 1024 * 1024;
 
-    private static final String GENERATION_FILE_NAME = "gen";
+    static final String GENERATION_FILE_NAME = "gen";
     private static final String LOCK_FILE_NAME = "lockfile";
     private static final String INDX_FILE_NAME_BASE = "indx.";
     private static final String KEYS_FILE_NAME_BASE = "keys.";
     private static final String VALS_FILE_NAME_BASE = "vals.";
-    private static final String MODS_FILE_NAME_BASE = "mods.";
+    private static final String CVALS_FILE_NAME_BASE = "cvals.";
+    static final String MODS_FILE_NAME_BASE = "mods.";
+    static final String BULK_FILE_NAME_BASE = "bulk.";
+    static final String ARCHIVE_TEMP_SUFFIX = ".tmp";
+    private static final String RMVS_FILE_NAME_BASE = "rmvs.";
+    private static final String BLOOM_FILE_NAME_BASE = "bloom.";
+    private static final String BASE_GENERATION_PREFIX = "base ";
+    private static final String DELTA_RUN_PREFIX = "run ";
+
+    // Files whose presence determines how a generation is read, so leftovers from a failed compaction must be removed
+    private static final String[] PROBED_FILE_NAME_BASES = { BLOOM_FILE_NAME_BASE, CVALS_FILE_NAME_BASE, VALS_FILE_NAME_BASE };
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -162,11 +239,21 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
     private int compactLowWater = DEFAULT_COMPACTION_LOW_WATER;
     @GuardedBy("lock")
     private int compactHighWater = DEFAULT_COMPACTION_HIGH_WATER;
+    @GuardedBy("lock")
+    private int compactLevelRatio = DEFAULT_COMPACTION_LEVEL_RATIO;
+    @GuardedBy("lock")
+    private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+    @GuardedBy("lock")
+    private int valueBlockSize;
+    @GuardedBy("lock")
+    private File archiveDirectory;
 
     // Runtime state
     @GuardedBy("lock")
     private long generation;
     @GuardedBy("lock")
+    private long baseGeneration;
+    @GuardedBy("lock")
     private boolean createdExecutorService;
     @GuardedBy("lock")
     private File generationFile;
@@ -179,7 +266,9 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
     @GuardedBy("lock")
     private File keysFile;
     @GuardedBy("lock")
-    private File valsFile;
+    private File valsFile;                                              // either "vals.N" or block-compressed "cvals.N"
+    @GuardedBy("lock")
+    private File bloomFile;                                             // null if base array files have no Bloom filter
     @GuardedBy("lock")
     private File modsFile;
     @GuardedBy("lock")
@@ -197,7 +286,11 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
     @GuardedBy("lock")
     private ByteBuffer vals;
     @GuardedBy("lock")
-    private ArrayKVStore kvstore;
+    private ByteBuffer bloom;
+    @GuardedBy("lock")
+    private final ArrayList<DeltaRun> runs = new ArrayList<>();            // ordered oldest to newest
+    @GuardedBy("lock")
+    private KVStore kvstore;
     @GuardedBy("lock")
     private MutableView mods;
     @GuardedBy("lock")
@@ -325,6 +418,116 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
     }
 
+    /**
+     * Configure the compaction level size ratio.
+     *
+     * <p>
+     * This value is both the number of delta runs at any one level that triggers a merge into a single run
+     * at the next level up, and the ratio of the size of the base array files to the size of the delta data
+     * beyond which all delta runs are merged into a new generation of base array files.
+     *
+     * <p>
+     * A value of zero disables delta runs, so that every compaction rewrites the base array files.
+     *
+     * @param compactLevelRatio compaction level size ratio, or zero to disable delta runs
+     * @throws IllegalArgumentException if {@code compactLevelRatio} is negative or one
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public void setCompactLevelRatio(int compactLevelRatio) {
+        Preconditions.checkArgument(compactLevelRatio == 0 || compactLevelRatio >= 2, "invalid value");
+        this.writeLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore == null, "already started");
+            this.compactLevelRatio = compactLevelRatio;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Configure the number of Bloom filter bits per key in newly written array files.
+     *
+     * <p>
+     * Ten bits per key gives a false positive rate of about one percent. A value of zero disables writing Bloom filters;
+     * existing Bloom filter files are still used until the corresponding array files are compacted.
+     *
+     * @param bloomFilterBitsPerKey number of Bloom filter bits per key, or zero for no Bloom filters
+     * @throws IllegalArgumentException if {@code bloomFilterBitsPerKey} is negative
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public void setBloomFilterBitsPerKey(int bloomFilterBitsPerKey) {
+        Preconditions.checkArgument(bloomFilterBitsPerKey >= 0, "negative value");
+        this.writeLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore == null, "already started");
+            this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Configure the block size for block-compressed value data in newly written array files.
+     *
+     * <p>
+     * A non-zero value enables value data compression: value data is divided into blocks of this many (uncompressed)
+     * bytes and each block is compressed separately (see {@link ArrayKVWriter#setValueBlockSize}).
+     * A value of zero disables value data compression; existing compressed value data files are still read until the
+     * corresponding array files are compacted.
+     *
+     * <p>
+     * Default is zero (no compression). A reasonable value is {@link ArrayKVWriter#DEFAULT_VALUE_BLOCK_SIZE}.
+     *
+     * @param valueBlockSize value data block size, or zero to not compress value data
+     * @throws IllegalArgumentException if {@code valueBlockSize} is negative
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public void setValueBlockSize(int valueBlockSize) {
+        Preconditions.checkArgument(valueBlockSize >= 0, "negative value");
+        this.writeLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore == null, "already started");
+            this.valueBlockSize = valueBlockSize;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Configure the directory into which mutation log segments are archived prior to each compaction.
+     *
+     * <p>
+     * When configured, before a compaction discards the mutations being compacted, it first copies them into this
+     * directory as a file named {@code mods.N}, where {@code N} is the generation number being compacted; the compaction
+     * fails if the copy fails. As a result, every compacted mutation is archived, in order, with no gaps. Archived files
+     * are never deleted by this class; it's up to the application to discard segments older than the oldest hot copy
+     * it wishes to keep.
+     *
+     * <p>
+     * Bulk loads do not pass through the mutation log, so they are not archived; instead, a marker file is left in
+     * the archive directory and {@link AtomicArrayKVArchive#restore AtomicArrayKVArchive.restore()} will not restore
+     * across a bulk load. Take a new {@linkplain #hotCopy hot copy} after any bulk load.
+     *
+     * <p>
+     * After restoring a database from archived segments, use a new, empty archive directory for the restored database.
+     *
+     * <p>
+     * Default is null, i.e., no archiving.
+     *
+     * @param archiveDirectory mutation log archive directory, or null to disable archiving
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     * @see AtomicArrayKVArchive
+     */
+    public void setArchiveDirectory(File archiveDirectory) {
+        this.writeLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore == null, "already started");
+            this.archiveDirectory = archiveDirectory;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
 // Lifecycle
 
     @Override
@@ -346,12 +549,15 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             assert this.scheduledExecutorService == null;
             assert !this.createdExecutorService;
             assert this.generation == 0;
+            assert this.baseGeneration == 0;
+            assert this.runs.isEmpty();
             assert this.generationFile == null;
             assert this.lockFile == null;
             assert this.lockFileChannel == null;
             assert this.indxFile == null;
             assert this.keysFile == null;
             assert this.valsFile == null;
+            assert this.bloomFile == null;
             assert this.modsFile == null;
             assert this.modsFileOutput == null;
             assert this.directoryChannel == null;
@@ -360,6 +566,7 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             assert this.indx == null;
             assert this.keys == null;
             assert this.vals == null;
+            assert this.bloom == null;
             assert this.kvstore == null;
             assert this.mods == null;
             assert this.firstModTimestamp == 0;
@@ -385,6 +592,12 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             }
             if (!this.directory.isDirectory())
                 throw new ArrayKVException("file `" + this.directory + "' is not a directory");
+            if (this.archiveDirectory != null) {
+                if (!this.archiveDirectory.exists() && !this.archiveDirectory.mkdirs())
+                    throw new ArrayKVException("failed to create archive directory `" + this.archiveDirectory + "'");
+                if (!this.archiveDirectory.isDirectory())
+                    throw new ArrayKVException("file `" + this.archiveDirectory + "' is not a directory");
+            }
 
             // Get directory channel we can fsync()
             try {
@@ -423,7 +636,10 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                         final String name = file.getName();
                         if (name.startsWith(INDX_FILE_NAME_BASE)
                           || name.startsWith(KEYS_FILE_NAME_BASE)
-                          || name.startsWith(VALS_FILE_NAME_BASE)) {
+                          || name.startsWith(VALS_FILE_NAME_BASE)
+                          || name.startsWith(CVALS_FILE_NAME_BASE)
+                          || name.startsWith(RMVS_FILE_NAME_BASE)
+                          || name.startsWith(BLOOM_FILE_NAME_BASE)) {
                             throw new ArrayKVException("database file inconsistency: found "
                               + name + " but not " + GENERATION_FILE_NAME + " in " + this.directory);
                         }
@@ -454,36 +670,44 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                     this.directoryChannel.force(false);
             }
 
-            // Read current generation number
+            // Read current generation number, followed by the base generation number and delta runs (if any)
+            final ArrayList<long[]> runInfos = new ArrayList<>();
             try (LineNumberReader reader = new LineNumberReader(
               new InputStreamReader(new FileInputStream(this.generationFile), "UTF-8"))) {
-                final String line = reader.readLine();
+                String line = reader.readLine();
                 if (line == null)
                     throw new ArrayKVException("generation file " + this.generationFile + " is empty");
                 this.generation = Long.parseLong(line.trim(), 10);
                 if (this.generation < 0)
                     throw new ArrayKVException("read negative generation number from " + this.generationFile);
+                this.baseGeneration = this.generation;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty())
+                        continue;
+                    if (line.startsWith(BASE_GENERATION_PREFIX))
+                        this.baseGeneration = Long.parseLong(line.substring(BASE_GENERATION_PREFIX.length()).trim(), 10);
+                    else if (line.startsWith(DELTA_RUN_PREFIX)) {
+                        final String[] fields = line.substring(DELTA_RUN_PREFIX.length()).trim().split("\\s+");
+                        if (fields.length != 2)
+                            throw new ArrayKVException("invalid delta run on line " + reader.getLineNumber());
+                        runInfos.add(new long[] { Long.parseLong(fields[0], 10), Integer.parseInt(fields[1], 10) });
+                    } else
+                        throw new ArrayKVException("invalid content on line " + reader.getLineNumber());
+                }
             } catch (Exception e) {
                 throw new ArrayKVException("error reading generation file", e);
             }
 
             // Set corresponding filenames
-            this.indxFile = new File(this.directory, INDX_FILE_NAME_BASE + this.generation);
-            this.keysFile = new File(this.directory, KEYS_FILE_NAME_BASE + this.generation);
-            this.valsFile = new File(this.directory, VALS_FILE_NAME_BASE + this.generation);
+            this.indxFile = new File(this.directory, INDX_FILE_NAME_BASE + this.baseGeneration);
+            this.keysFile = new File(this.directory, KEYS_FILE_NAME_BASE + this.baseGeneration);
+            this.valsFile = AtomicArrayKVStore.getValsFile(this.directory, this.baseGeneration);
+            this.bloomFile = new File(this.directory, BLOOM_FILE_NAME_BASE + this.baseGeneration);
+            if (!this.bloomFile.exists())
+                this.bloomFile = null;
             this.modsFile = new File(this.directory, MODS_FILE_NAME_BASE + this.generation);
 
-            // Scan directory for unexpected files
-            final List<File> expectedFiles = Arrays.asList(this.lockFile, this.generationFile,
-              this.indxFile, this.keysFile, this.valsFile, this.modsFile);
-            try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory.toPath())) {
-                for (Path path : paths) {
-                    final File file = path.toFile();
-                    if (!expectedFiles.contains(file))
-                        this.log.warn("ignoring unexpected file " + file.getName() + " in my database directory");
-                }
-            }
-
             // Create buffers that wrap the index, keys, and values files
             try (FileInputStream input = new FileInputStream(this.indxFile)) {
                 this.indx = AtomicArrayKVStore.getBuffer(this.indxFile, input.getChannel());
@@ -494,9 +718,42 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             try (FileInputStream input = new FileInputStream(this.valsFile)) {
                 this.vals = AtomicArrayKVStore.getBuffer(this.valsFile, input.getChannel());
             }
+            if (this.bloomFile != null) {
+                try (FileInputStream input = new FileInputStream(this.bloomFile)) {
+                    this.bloom = AtomicArrayKVStore.getBuffer(this.bloomFile, input.getChannel());
+                }
+            }
+
+            // Set up underlying k/v store, with delta runs stacked on top of the base array files
+            this.kvstore = new ArrayKVStore(this.indx, this.keys, this.vals, this.bloom,
+              AtomicArrayKVStore.isBlockVals(this.valsFile));
+            for (long[] runInfo : runInfos) {
+                final DeltaRun run = new DeltaRun(this.directory, runInfo[0], (int)runInfo[1], this.kvstore);
+                this.runs.add(run);
+                this.kvstore = run.getKVStore();
+            }
+
+            // Scan directory for unexpected files
+            final ArrayList<File> expectedFiles = new ArrayList<>(Arrays.asList(this.lockFile, this.generationFile,
+              this.indxFile, this.keysFile, this.valsFile, this.modsFile));
+            if (this.bloomFile != null)
+                expectedFiles.add(this.bloomFile);
+            for (DeltaRun run : this.runs)
+                expectedFiles.addAll(run.getFiles());
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory.toPath())) {
+                for (Path path : paths) {
+                    final File file = path.toFile();
+                    if (expectedFiles.contains(file))
+                        continue;
+                    if (AtomicArrayKVStore.isProbedFile(file)) {
+                        this.log.info("deleting leftover file " + file.getName() + " in my database directory");
+                        this.deleteWarnException(file);
+                    } else
+                        this.log.warn("ignoring unexpected file " + file.getName() + " in my database directory");
+                }
+            }
 
-            // Set up underlying k/v store and uncompacted modifications
-            this.kvstore = new ArrayKVStore(this.indx, this.keys, this.vals);
+            // Set up uncompacted modifications
             this.mods = new MutableView(this.kvstore, null, new Writes());
 
             // Setup modifications file
@@ -507,6 +764,7 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             // Read and apply pre-existing uncompacted modifications from modifications file
             if (this.modsFileLength > 0) {
                 this.log.info("reading " + this.modsFileLength + " bytes of uncompacted modifications from " + this.modsFile);
+                long validLength = 0;
                 try (FileInputStream input = new FileInputStream(this.modsFile)) {
                     while (input.available() > 0) {
                         final Writes writes;
@@ -516,8 +774,19 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                             break;                                                      // probably a partial write
                         }
                         writes.applyTo(this.mods);
+                        validLength = input.getChannel().position();
                     }
                 }
+
+                // Discard any partial write, so that the mods file (and therefore its archived copy) has only complete records
+                if (validLength < this.modsFileLength) {
+                    this.log.warn("discarding " + (this.modsFileLength - validLength) + " bytes of unreadable data at the end of "
+                      + this.modsFile + " (probably a partial write)");
+                    this.modsFileOutput.getChannel().truncate(validLength);
+                    this.modsFileOutput.getChannel().force(false);
+                    this.modsFileLength = validLength;
+                    this.modsFileSyncPoint = validLength;
+                }
                 this.firstModTimestamp = System.nanoTime() | 1;                     // avoid zero value which is special
             }
 
@@ -613,12 +882,15 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
 
         // Reset state
         this.generation = 0;
+        this.baseGeneration = 0;
+        this.runs.clear();
         this.generationFile = null;
         this.lockFile = null;
         this.lockFileChannel = null;
         this.indxFile = null;
         this.keysFile = null;
         this.valsFile = null;
+        this.bloomFile = null;
         this.modsFile = null;
         this.modsFileOutput = null;
         this.directoryChannel = null;
@@ -627,6 +899,7 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         this.indx = null;
         this.keys = null;
         this.vals = null;
+        this.bloom = null;
         this.kvstore = null;
         this.mods = null;
         this.firstModTimestamp = 0;
@@ -678,6 +951,17 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
     }
 
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        this.readLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore != null, "closed");
+            return this.mods.estimateSize(minKey, maxKey);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         final Writes writes = new Writes();
@@ -917,6 +1201,67 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
     }
 
+    /**
+     * Load a sorted stream of key/value pairs directly into this instance.
+     *
+     * <p>
+     * The implementation in {@link AtomicArrayKVStore} performs a compaction in the current thread (after waiting for any
+     * compaction already in progress to complete), merging {@code pairs} into the new generation of array files as they
+     * are written. The loaded data is never recorded in the in-memory change set or the mutation log file.
+     * Mutations applied concurrently with the load take precedence over the loaded data.
+     *
+     * <p>
+     * The load is atomic: concurrent {@linkplain #snapshot snapshots} never observe a partial load, and if this method
+     * throws an exception, none of the pairs will have been loaded.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     * @throws ArrayKVException if an I/O error occurs
+     */
+    @Override
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+        Preconditions.checkArgument(pairs != null, "null pairs");
+
+        // Wait for any in-progress compaction to complete, then claim the next compaction for ourselves
+        final Compaction bulkCompaction;
+        this.writeLock.lock();
+        try {
+
+            // Sanity check
+            Preconditions.checkState(this.kvstore != null, "not started");
+
+            // Anything to do?
+            if (!pairs.hasNext())
+                return;
+
+            // Cancel any scheduled compaction (ours will subsume it) or wait for it to complete if already started
+            while (this.compaction != null) {
+                final Compaction previous = this.compaction;
+                if (previous.cancel()) {
+                    previous.setCompleted();                            // wake up any threads waiting on it
+                    continue;
+                }
+                this.log.debug("waiting for in-progress compaction to complete before bulk load");
+                previous.waitForCompletion(0);
+                if (this.kvstore == null)
+                    throw new ArrayKVException("k/v store was closed while waiting for compaction to complete");
+            }
+            bulkCompaction = new Compaction(pairs);
+            this.compaction = bulkCompaction;
+        } finally {
+            this.writeLock.unlock();
+        }
+
+        // Perform compaction
+        try {
+            this.compact(bulkCompaction);
+        } catch (IOException e) {
+            throw new ArrayKVException("error during bulk load compaction", e);
+        }
+    }
+
 // Hot Copy
 
     /**
@@ -962,6 +1307,7 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
 
         // Increment hot copy counter - this prevents compaction from removing files while we're copying them
+        final ArrayList<File> readOnlyFiles = new ArrayList<>();
         this.writeLock.lock();
         try {
 
@@ -970,6 +1316,13 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
 
             // Bump counter
             this.hotCopiesInProgress++;
+
+            // Gather the read-only files: base index, keys, values, and Bloom filter files, plus all delta run files
+            readOnlyFiles.addAll(Arrays.asList(this.indxFile, this.keysFile, this.valsFile));
+            if (this.bloomFile != null)
+                readOnlyFiles.add(this.bloomFile);
+            for (DeltaRun run : this.runs)
+                readOnlyFiles.addAll(run.getFiles());
         } finally {
             this.writeLock.unlock();
         }
@@ -978,9 +1331,9 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             // Logit
             this.log.debug("started hot copy into " + target);
 
-            // Copy index, keys, and values files using hard links (if possible) as these files are read-only
-            final ArrayList<File> regularCopyFiles = new ArrayList<>(5);
-            for (File file : new File[] { this.indxFile, this.keysFile, this.valsFile }) {
+            // Copy array, removes, and Bloom filter files using hard links (if possible) as these files are read-only
+            final ArrayList<File> regularCopyFiles = new ArrayList<>(readOnlyFiles.size() + 2);
+            for (File file : readOnlyFiles) {
                 try {
                     Files.createLink(dir.resolve(file.getName()), file.toPath());
                 } catch (IOException | UnsupportedOperationException e) {
@@ -1138,7 +1491,7 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                 return;
 
             // Set now running - this prevents future cancel()'s
-            assert !compaction.isStarted();
+            assert !compaction.isStarted() || compaction.getBulkPairs() != null;
             assert !compaction.isCompleted();
             compaction.setStarted();
         } finally {
@@ -1146,11 +1499,13 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
 
         // Start compaction
+        final Iterator<? extends KVPair> bulkPairs = compaction.getBulkPairs();
         final long compactionStartTime;
         try {
 
             // Snapshot (and wrap) pending modifications, and mark log file position
             final Writes writesToCompact;
+            final File previousModsFile;
             final long previousModsFileLength;
             final long previousModsFileSyncPoint;
             this.writeLock.lock();
@@ -1158,14 +1513,15 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
 
                 // Sanity checks
                 assert this.kvstore != null;
-                assert this.modsFileLength > 0;
+                assert this.modsFileLength > 0 || bulkPairs != null;
 
                 // Mark start time and get uncompacted modifications
                 compactionStartTime = System.nanoTime();
                 writesToCompact = this.mods.getWrites();
 
-                // It's possible the uncompacted modifications are a no-op; if so, no compaction is necessary
-                if (writesToCompact.isEmpty()) {
+                // It's possible the uncompacted modifications are a no-op; if so, no compaction is necessary.
+                // But when archiving, we always move to a new generation, so that each archived segment has a unique name.
+                if (writesToCompact.isEmpty() && bulkPairs == null && this.archiveDirectory == null) {
 
                     // Wait for any in-progress hot copies to complete
                     while (this.hotCopiesInProgress > 0) {
@@ -1192,43 +1548,139 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
 
                 // Allow new modifications to be added by other threads while we are compacting the old modifications
                 this.mods = new MutableView(this.mods, null, new Writes());
+                previousModsFile = this.modsFile;
                 previousModsFileLength = this.modsFileLength;
                 previousModsFileSyncPoint = this.modsFileSyncPoint;
             } finally {
                 this.writeLock.unlock();
             }
+
+            // Decide whether to write a new delta run (merging in any runs at levels that would become full)
+            // or to merge everything into new base array files. Only compaction modifies this.runs, so no lock is needed.
+            int mergeIndex = this.runs.size();
+            int runLevel = 0;
+            boolean rewriteBase = bulkPairs != null || this.compactLevelRatio == 0;
+            if (!rewriteBase) {
+                while (true) {
+                    int index = mergeIndex;
+                    while (index > 0 && this.runs.get(index - 1).getLevel() == runLevel)
+                        index--;
+                    if (mergeIndex - index + 1 < this.compactLevelRatio)
+                        break;
+                    mergeIndex = index;
+                    runLevel++;
+                }
+                long deltaSize = previousModsFileLength;
+                for (DeltaRun run : this.runs.subList(mergeIndex, this.runs.size()))
+                    deltaSize += run.getSize();
+                final long baseSize = (long)this.indx.capacity() + this.keys.capacity() + this.vals.capacity();
+                rewriteBase = deltaSize * this.compactLevelRatio >= baseSize;
+            }
+            if (rewriteBase) {
+                mergeIndex = 0;
+                runLevel = -1;
+            }
+            final List<DeltaRun> runsToMerge = new ArrayList<>(this.runs.subList(mergeIndex, this.runs.size()));
             if (this.log.isDebugEnabled()) {
-                this.log.debug("starting compaction for generation " + this.generation + " -> " + (this.generation + 1)
-                  + " with mods file length " + previousModsFileLength);
+                this.log.debug("starting " + (bulkPairs != null ? "bulk load " : "") + "compaction for generation "
+                  + this.generation + " -> " + (this.generation + 1) + " with mods file length " + previousModsFileLength
+                  + (rewriteBase ? " into new base array files" : " into new level " + runLevel + " delta run")
+                  + (runsToMerge.isEmpty() ? "" : ", merging " + runsToMerge.size() + " delta run(s)"));
             }
 
             // Create the next generation
             final long newGeneration = this.generation + 1;
             final File newIndxFile = new File(this.directory, INDX_FILE_NAME_BASE + newGeneration);
             final File newKeysFile = new File(this.directory, KEYS_FILE_NAME_BASE + newGeneration);
-            final File newValsFile = new File(this.directory, VALS_FILE_NAME_BASE + newGeneration);
+            final File newValsFile = new File(this.directory,
+              (this.valueBlockSize > 0 ? CVALS_FILE_NAME_BASE : VALS_FILE_NAME_BASE) + newGeneration);
+            final File newRmvsFile = !rewriteBase ? new File(this.directory, RMVS_FILE_NAME_BASE + newGeneration) : null;
+            final File newBloomFile = this.bloomFilterBitsPerKey > 0 ?
+              new File(this.directory, BLOOM_FILE_NAME_BASE + newGeneration) : null;
             final File newModsFile = new File(this.directory, MODS_FILE_NAME_BASE + newGeneration);
             ByteBuffer newIndx = null;
             ByteBuffer newKeys = null;
             ByteBuffer newVals = null;
+            ByteBuffer newBloom = null;
+            DeltaRun newRun = null;
             FileOutputStream newModsFileOutput = null;
             boolean success = false;
             try {
 
+                // Archive the portion of the mods file we are compacting, discarding any bulk load marker left by a
+                // failed bulk load compaction of this generation (if this is a bulk load, we mark it after success)
+                if (this.archiveDirectory != null) {
+                    this.archiveModsFile(previousModsFile, previousModsFileLength);
+                    if (bulkPairs == null)
+                        Files.deleteIfExists(new File(this.archiveDirectory, BULK_FILE_NAME_BASE + this.generation).toPath());
+                }
+
+                // Remove any files for the new generation left behind by an earlier failed compaction
+                for (String base : PROBED_FILE_NAME_BASES)
+                    Files.deleteIfExists(new File(this.directory, base + newGeneration).toPath());
+
+                // Size the Bloom filter using an upper bound on the number of keys; for bulk loads that's unknown,
+                // so in that case we build the Bloom filter from the new files after writing them (see below)
+                long expectedKeys = writesToCompact.getPuts().size() + writesToCompact.getAdjusts().size();
+                if (rewriteBase)
+                    expectedKeys += this.indx.capacity() / 8;
+                for (DeltaRun run : runsToMerge)
+                    expectedKeys += run.getPuts().size();
+
                 // Merge existing compacted key/value data with uncompacted modifications
                 try (
                   final FileOutputStream indxOutput = new FileOutputStream(newIndxFile);
                   final FileOutputStream keysOutput = new FileOutputStream(newKeysFile);
                   final FileOutputStream valsOutput = new FileOutputStream(newValsFile);
-                  final ArrayKVWriter arrayWriter = new ArrayKVWriter(indxOutput, keysOutput, valsOutput)) {
+                  final FileOutputStream bloomOutput = newBloomFile != null && bulkPairs == null ?
+                    new FileOutputStream(newBloomFile) : null;
+                  final ArrayKVWriter arrayWriter = new ArrayKVWriter(indxOutput, keysOutput, valsOutput,
+                    bloomOutput, expectedKeys, this.bloomFilterBitsPerKey)) {
+                    arrayWriter.setValueBlockSize(this.valueBlockSize);
 
                     // Write out merged key/value pairs
-                    try (CloseableIterator<KVPair> i = this.kvstore.getRange(null, null)) {
-                        arrayWriter.writeMerged(this.kvstore, i, writesToCompact);
+                    if (!rewriteBase) {
+
+                        // Layer the runs being merged, and then the uncompacted modifications, over an empty store
+                        final Writes delta = this.resolveAdjustments(writesToCompact);
+                        KVStore merged = new NavigableMapKVStore();
+                        for (DeltaRun run : runsToMerge)
+                            merged = new DeltaKVStore(merged, run.getPuts(), run.getRemoves());
+                        try (CloseableIterator<KVPair> i = new MutableView(merged, null, delta).getRange(null, null)) {
+                            while (i.hasNext()) {
+                                final KVPair pair = i.next();
+                                arrayWriter.writeKV(pair.getKey(), pair.getValue());
+                            }
+                        }
+
+                        // Write out the union of all of their removed key ranges
+                        final KeyRanges removes = new KeyRanges();
+                        for (DeltaRun run : runsToMerge)
+                            removes.add(run.getRemoves());
+                        removes.add(delta.getRemoves());
+                        try (FileOutputStream rmvsOutput = new FileOutputStream(newRmvsFile)) {
+                            final BufferedOutputStream buf = new BufferedOutputStream(rmvsOutput);
+                            removes.serialize(buf);
+                            buf.flush();
+                            rmvsOutput.getChannel().force(false);
+                        }
+                    } else if (bulkPairs == null) {
+                        try (CloseableIterator<KVPair> i = this.kvstore.getRange(null, null)) {
+                            arrayWriter.writeMerged(this.kvstore, i, writesToCompact);
+                        }
+                    } else {
+
+                        // The bulk pairs are newer than the uncompacted modifications, so layer them on top as puts
+                        final MutableView compacted = new MutableView(this.kvstore, null, writesToCompact);
+                        try (CloseableIterator<KVPair> i = compacted.getRange(null, null)) {
+                            arrayWriter.writeMerged(this.kvstore, i, new BulkLoadMutations(bulkPairs));
+                        }
                     }
 
                     // Sync file data
                     arrayWriter.flush();
+                    if (bloomOutput != null)
+                        bloomOutput.getChannel().force(false);
                     valsOutput.getChannel().force(false);
                     keysOutput.getChannel().force(false);
                     indxOutput.getChannel().force(false);
@@ -1237,16 +1689,31 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                 assert newKeysFile.exists();
                 assert newValsFile.exists();
 
-                // Create byte buffers from new files
-                try (FileInputStream input = new FileInputStream(newIndxFile)) {
-                    newIndx = AtomicArrayKVStore.getBuffer(newIndxFile, input.getChannel());
-                }
-                try (FileInputStream input = new FileInputStream(newKeysFile)) {
-                    newKeys = AtomicArrayKVStore.getBuffer(newKeysFile, input.getChannel());
-                }
-                try (FileInputStream input = new FileInputStream(newValsFile)) {
-                    newVals = AtomicArrayKVStore.getBuffer(newValsFile, input.getChannel());
-                }
+                // Create byte buffers from new files, or open the new delta run on top of the runs it doesn't replace
+                if (rewriteBase) {
+                    try (FileInputStream input = new FileInputStream(newIndxFile)) {
+                        newIndx = AtomicArrayKVStore.getBuffer(newIndxFile, input.getChannel());
+                    }
+                    try (FileInputStream input = new FileInputStream(newKeysFile)) {
+                        newKeys = AtomicArrayKVStore.getBuffer(newKeysFile, input.getChannel());
+                    }
+                    try (FileInputStream input = new FileInputStream(newValsFile)) {
+                        newVals = AtomicArrayKVStore.getBuffer(newValsFile, input.getChannel());
+                    }
+                    if (newBloomFile != null) {
+                        if (bulkPairs != null) {
+                            try (FileOutputStream bloomOutput = new FileOutputStream(newBloomFile)) {
+                                ArrayKVWriter.writeBloomFilter(new ArrayKVStore(newIndx, newKeys, newVals, null,
+                                  AtomicArrayKVStore.isBlockVals(newValsFile)), bloomOutput, this.bloomFilterBitsPerKey);
+                                bloomOutput.getChannel().force(false);
+                            }
+                        }
+                        try (FileInputStream input = new FileInputStream(newBloomFile)) {
+                            newBloom = AtomicArrayKVStore.getBuffer(newBloomFile, input.getChannel());
+                        }
+                    }
+                } else
+                    newRun = new DeltaRun(this.directory, newGeneration, runLevel, this.getRunStack(mergeIndex));
 
                 // Create new, empty mods file
                 newModsFileOutput = new FileOutputStream(newModsFile, true);
@@ -1256,6 +1723,10 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                 if (this.directoryChannel != null)
                     this.directoryChannel.force(false);
 
+                // Now that the bulk loaded data is safely written, mark the archived segment as preceding a bulk load
+                if (this.archiveDirectory != null && bulkPairs != null)
+                    this.createArchiveFile(BULK_FILE_NAME_BASE + this.generation);
+
                 // We're done creating files
                 success = true;
             } finally {
@@ -1323,7 +1794,12 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                           new AtomicUpdateFileOutputStream(this.generationFile) : new FileOutputStream(this.generationFile);
                         boolean genSuccess = false;
                         try {
-                            genOutput.write((newGeneration + "\n").getBytes(StandardCharsets.UTF_8));
+                            final List<DeltaRun> newRuns = new ArrayList<>(this.runs.subList(0, mergeIndex));
+                            if (newRun != null)
+                                newRuns.add(newRun);
+                            final long newBaseGeneration = rewriteBase ? newGeneration : this.baseGeneration;
+                            genOutput.write(AtomicArrayKVStore.generationFileContent(newGeneration, newBaseGeneration, newRuns)
+                              .getBytes(StandardCharsets.UTF_8));
                             genOutput.flush();
                             genOutput.getChannel().force(false);
                             genSuccess = true;
@@ -1338,26 +1814,42 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                         success = true;
 
                         // Remember old info so we can clean it up
-                        final File oldIndxFile = this.indxFile;
-                        final File oldKeysFile = this.keysFile;
-                        final File oldValsFile = this.valsFile;
+                        final ArrayList<File> oldFiles = new ArrayList<>();
+                        if (rewriteBase) {
+                            oldFiles.addAll(Arrays.asList(this.indxFile, this.keysFile, this.valsFile));
+                            if (this.bloomFile != null)
+                                oldFiles.add(this.bloomFile);
+                        }
+                        for (DeltaRun run : runsToMerge)
+                            oldFiles.addAll(run.getFiles());
                         final File oldModsFile = this.modsFile;
                         final FileOutputStream oldModsFileOutput = this.modsFileOutput;
 
                         // Change to the new generation
                         this.generation = newGeneration;
-                        this.indx = newIndx;
-                        this.keys = newKeys;
-                        this.vals = newVals;
-                        this.indxFile = newIndxFile;
-                        this.keysFile = newKeysFile;
-                        this.valsFile = newValsFile;
+                        if (rewriteBase) {
+                            this.baseGeneration = newGeneration;
+                            this.indx = newIndx;
+                            this.keys = newKeys;
+                            this.vals = newVals;
+                            this.bloom = newBloom;
+                            this.indxFile = newIndxFile;
+                            this.keysFile = newKeysFile;
+                            this.valsFile = newValsFile;
+                            this.bloomFile = newBloomFile;
+                            this.runs.clear();
+                            this.kvstore = new ArrayKVStore(this.indx, this.keys, this.vals, this.bloom,
+                              AtomicArrayKVStore.isBlockVals(this.valsFile));
+                        } else {
+                            this.runs.subList(mergeIndex, this.runs.size()).clear();
+                            this.runs.add(newRun);
+                            this.kvstore = newRun.getKVStore();
+                        }
                         this.modsFile = newModsFile;
                         this.modsFileOutput = newModsFileOutput;
                         newModsFileOutput = null;
                         this.modsFileLength = newModsFileLength;
                         this.modsFileSyncPoint = newModsFileSyncPoint;
-                        this.kvstore = new ArrayKVStore(this.indx, this.keys, this.vals);
                         this.mods = new MutableView(this.kvstore, null, this.mods.getWrites());
                         if (additionalModsLength == 0)
                             this.firstModTimestamp = 0;
@@ -1379,9 +1871,8 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                         this.closeIgnoreException(oldModsFileOutput);
 
                         // Delete old files
-                        this.deleteWarnException(oldIndxFile);
-                        this.deleteWarnException(oldKeysFile);
-                        this.deleteWarnException(oldValsFile);
+                        for (File oldFile : oldFiles)
+                            this.deleteWarnException(oldFile);
                         this.deleteWarnException(oldModsFile);
                     }
                 } finally {
@@ -1407,10 +1898,22 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
                             this.mods = new MutableView(this.kvstore, null, writesToCompact);
                             writesDuringCompaction.applyTo(this.mods);
 
-                            // Delete the files we were creating
-                            this.deleteWarnException(newIndxFile);
-                            this.deleteWarnException(newKeysFile);
-                            this.deleteWarnException(newValsFile);
+                            // Delete the files we were creating (if we got that far)
+                            for (File newFile : new File[] { newIndxFile, newKeysFile, newValsFile }) {
+                                if (newFile.exists())
+                                    this.deleteWarnException(newFile);
+                            }
+                            if (newRmvsFile != null && newRmvsFile.exists())
+                                this.deleteWarnException(newRmvsFile);
+                            if (newBloomFile != null && newBloomFile.exists())
+                                this.deleteWarnException(newBloomFile);
+
+                            // Remove the bulk load marker, if we got that far
+                            if (this.archiveDirectory != null && bulkPairs != null) {
+                                final File bulkFile = new File(this.archiveDirectory, BULK_FILE_NAME_BASE + (newGeneration - 1));
+                                if (bulkFile.exists())
+                                    this.deleteWarnException(bulkFile);
+                            }
                         }
                     } finally {
                         this.writeLock.unlock();
@@ -1432,6 +1935,78 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
     }
 
+    // Copy the first "length" bytes of the given mods file into the archive directory, replacing any previous copy
+    private void archiveModsFile(File modsFile, long length) throws IOException {
+        final File tempFile = new File(this.archiveDirectory, modsFile.getName() + ARCHIVE_TEMP_SUFFIX);
+        try (
+          final FileChannel input = FileChannel.open(modsFile.toPath(), StandardOpenOption.READ);
+          final FileChannel output = FileChannel.open(tempFile.toPath(),
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (position < length)
+                position += input.transferTo(position, length - position, output);
+            output.force(false);
+        }
+        this.moveIntoArchive(tempFile, new File(this.archiveDirectory, modsFile.getName()));
+        if (this.log.isDebugEnabled())
+            this.log.debug("archived " + length + " bytes of " + modsFile + " into " + this.archiveDirectory);
+    }
+
+    // Create an empty marker file in the archive directory
+    private void createArchiveFile(String name) throws IOException {
+        final File tempFile = new File(this.archiveDirectory, name + ARCHIVE_TEMP_SUFFIX);
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            output.getChannel().force(false);
+        }
+        this.moveIntoArchive(tempFile, new File(this.archiveDirectory, name));
+    }
+
+    // Atomically (if possible) rename a file in the archive directory, then sync the directory
+    private void moveIntoArchive(File tempFile, File file) throws IOException {
+        if (!this.suckyOS) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel dirChannel = FileChannel.open(this.archiveDirectory.toPath())) {
+                dirChannel.force(false);
+            }
+        } else
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Get the k/v store consisting of the base array files with the first numRuns delta runs stacked on top
+    private KVStore getRunStack(int numRuns) {
+        if (numRuns > 0)
+            return this.runs.get(numRuns - 1).getKVStore();
+        return this.runs.isEmpty() ? this.kvstore : this.runs.get(0).getKVStore().getLower();
+    }
+
+    // Convert counter adjustments into puts of the adjusted values, so the result contains only removes and puts
+    private Writes resolveAdjustments(Writes writes) {
+        final Writes resolved = new Writes();
+        resolved.getRemoves().add(writes.getRemoves());
+        resolved.getPuts().putAll(writes.getPuts());
+        if (!writes.getAdjusts().isEmpty()) {
+            final MutableView view = new MutableView(this.kvstore, null, writes);
+            for (byte[] key : writes.getAdjusts().keySet()) {
+                final byte[] value = view.get(key);
+                if (value != null)
+                    resolved.getPuts().put(key, value);
+            }
+        }
+        return resolved;
+    }
+
+    // Build generation file content; the base generation and delta runs are omitted when there are no delta runs
+    private static String generationFileContent(long generation, long baseGeneration, List<DeltaRun> runs) {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(generation).append('\n');
+        if (runs.isEmpty() && baseGeneration == generation)
+            return buf.toString();
+        buf.append(BASE_GENERATION_PREFIX).append(baseGeneration).append('\n');
+        for (DeltaRun run : runs)
+            buf.append(DELTA_RUN_PREFIX).append(run.getGeneration()).append(' ').append(run.getLevel()).append('\n');
+        return buf.toString();
+    }
+
     private boolean isWindows() {
         return System.getProperty("os.name", "generic").toLowerCase(Locale.ENGLISH).contains("win");
     }
@@ -1457,7 +2032,8 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
     private class Compaction implements Runnable {
 
         private final Condition completedCondition = AtomicArrayKVStore.this.writeLock.newCondition();
-        private final ScheduledFuture<Void> future;
+        private final Future<Void> future;
+        private final Iterator<? extends KVPair> bulkPairs;
 
         private boolean started;
         private boolean completed;
@@ -1472,6 +2048,21 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             // Schedule
             this.future = (ScheduledFuture<Void>)AtomicArrayKVStore.this.scheduledExecutorService.schedule(this,
               millis, TimeUnit.MILLISECONDS);
+            this.bulkPairs = null;
+        }
+
+        // Constructor for bulk load compactions, which are performed by the loading thread and can't be canceled
+        Compaction(Iterator<? extends KVPair> bulkPairs) {
+
+            // Sanity check
+            assert AtomicArrayKVStore.this.lock.isWriteLockedByCurrentThread();
+            Preconditions.checkState(AtomicArrayKVStore.this.compaction == null, "compaction already exists");
+            assert bulkPairs != null;
+
+            // Initialize
+            this.future = SettableFuture.create();
+            this.bulkPairs = bulkPairs;
+            this.started = true;
         }
 
         /**
@@ -1514,7 +2105,9 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             Preconditions.checkState(this.future != null, "not scheduled");
 
             // Get delay
-            return Math.max(0, this.future.getDelay(TimeUnit.MILLISECONDS));
+            if (!(this.future instanceof ScheduledFuture))
+                return 0;
+            return Math.max(0, ((ScheduledFuture<Void>)this.future).getDelay(TimeUnit.MILLISECONDS));
         }
 
         /**
@@ -1552,6 +2145,10 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             return this.future;
         }
 
+        public Iterator<? extends KVPair> getBulkPairs() {
+            return this.bulkPairs;
+        }
+
         public boolean isStarted() {
             assert AtomicArrayKVStore.this.lock.isWriteLockedByCurrentThread();
             return this.started;
@@ -1569,6 +2166,8 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
             assert AtomicArrayKVStore.this.lock.isWriteLockedByCurrentThread();
             this.completed = true;
             this.completedCondition.signalAll();
+            if (this.future instanceof SettableFuture)
+                ((SettableFuture<Void>)this.future).set(null);
         }
 
         @Override
@@ -1582,6 +2181,121 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         }
     }
 
+// DeltaRun
+
+    // A delta run: put key/value pairs in index, keys, values, and (optional) Bloom filter files, plus removed key ranges
+    private static class DeltaRun {
+
+        private final long generation;
+        private final int level;
+        private final List<File> files;
+        private final long size;
+        private final ArrayKVStore puts;
+        private final KeyRanges removes;
+        private final DeltaKVStore kvstore;
+
+        DeltaRun(File directory, long generation, int level, KVStore lower) throws IOException {
+            assert level >= 0;
+            this.generation = generation;
+            this.level = level;
+
+            // Get files
+            final File indxFile = new File(directory, INDX_FILE_NAME_BASE + generation);
+            final File keysFile = new File(directory, KEYS_FILE_NAME_BASE + generation);
+            final File valsFile = AtomicArrayKVStore.getValsFile(directory, generation);
+            final File rmvsFile = new File(directory, RMVS_FILE_NAME_BASE + generation);
+            final File bloomFile = new File(directory, BLOOM_FILE_NAME_BASE + generation);
+            final ArrayList<File> fileList = new ArrayList<>(Arrays.asList(indxFile, keysFile, valsFile, rmvsFile));
+            if (bloomFile.exists())
+                fileList.add(bloomFile);
+            this.files = Collections.unmodifiableList(fileList);
+
+            // Create buffers that wrap the index, keys, and values files, and read the removes file
+            final ByteBuffer indx;
+            final ByteBuffer keys;
+            final ByteBuffer vals;
+            try (FileInputStream input = new FileInputStream(indxFile)) {
+                indx = AtomicArrayKVStore.getBuffer(indxFile, input.getChannel());
+            }
+            try (FileInputStream input = new FileInputStream(keysFile)) {
+                keys = AtomicArrayKVStore.getBuffer(keysFile, input.getChannel());
+            }
+            try (FileInputStream input = new FileInputStream(valsFile)) {
+                vals = AtomicArrayKVStore.getBuffer(valsFile, input.getChannel());
+            }
+            ByteBuffer bloom = null;
+            if (bloomFile.exists()) {
+                try (FileInputStream input = new FileInputStream(bloomFile)) {
+                    bloom = AtomicArrayKVStore.getBuffer(bloomFile, input.getChannel());
+                }
+            }
+            try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(rmvsFile))) {
+                this.removes = new KeyRanges(input, true);
+            }
+            this.size = (long)indx.capacity() + keys.capacity() + vals.capacity() + rmvsFile.length();
+
+            // Stack on top of the lower store
+            this.puts = new ArrayKVStore(indx, keys, vals, bloom, AtomicArrayKVStore.isBlockVals(valsFile));
+            this.kvstore = new DeltaKVStore(lower, this.puts, this.removes);
+        }
+
+        public long getGeneration() {
+            return this.generation;
+        }
+
+        public int getLevel() {
+            return this.level;
+        }
+
+        public List<File> getFiles() {
+            return this.files;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public ArrayKVStore getPuts() {
+            return this.puts;
+        }
+
+        public KeyRanges getRemoves() {
+            return this.removes;
+        }
+
+        public DeltaKVStore getKVStore() {
+            return this.kvstore;
+        }
+    }
+
+// BulkLoadMutations
+
+    // Presents bulk loaded key/value pairs as a stream of puts for ArrayKVWriter.writeMerged()
+    private static class BulkLoadMutations implements Mutations {
+
+        private final Iterator<? extends KVPair> pairs;
+
+        BulkLoadMutations(Iterator<? extends KVPair> pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public Iterable<KeyRange> getRemoveRanges() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<Map.Entry<byte[], byte[]>> getPutPairs() {
+            return () -> Iterators.transform(new BulkLoader.SortedIterator(this.pairs),
+              pair -> new AbstractMap.SimpleImmutableEntry<>(pair.getKey(), pair.getValue()));
+        }
+
+        @Override
+        public Iterable<Map.Entry<byte[], Long>> getAdjustPairs() {
+            return Collections.emptyList();
+        }
+    }
+
 // Object
 
     /**
@@ -1603,6 +2317,24 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         return this.getClass().getSimpleName() + "[" + this.directory + "]";
     }
 
+    // Get the values file for the given generation, which may or may not be block-compressed
+    private static File getValsFile(File directory, long generation) {
+        final File cvalsFile = new File(directory, CVALS_FILE_NAME_BASE + generation);
+        return cvalsFile.exists() ? cvalsFile : new File(directory, VALS_FILE_NAME_BASE + generation);
+    }
+
+    private static boolean isProbedFile(File file) {
+        for (String base : PROBED_FILE_NAME_BASES) {
+            if (file.getName().startsWith(base))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isBlockVals(File valsFile) {
+        return valsFile.getName().startsWith(CVALS_FILE_NAME_BASE);
+    }
+
     private static ByteBuffer getBuffer(File file, FileChannel fileChannel) throws IOException {
         final long length = fileChannel.size();
         return length >= MIN_MMAP_LENGTH ?
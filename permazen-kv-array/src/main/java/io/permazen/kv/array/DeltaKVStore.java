@@ -0,0 +1,237 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.UnmodifiableIterator;
+
+import io.permazen.kv.AbstractKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only {@link KVStore} that layers a sorted delta run on top of some other, lower {@link KVStore}.
+ *
+ * <p>
+ * A delta run consists of an {@link ArrayKVStore} containing put key/value pairs plus a set of removed key ranges.
+ * The removed key ranges hide key/value pairs in the lower {@link KVStore}, and the puts take precedence over both.
+ *
+ * <p>
+ * Used by {@link AtomicArrayKVStore} to stack small delta runs on top of its base array files.
+ */
+class DeltaKVStore extends AbstractKVStore {
+
+    private final KVStore lower;
+    private final ArrayKVStore puts;
+    private final KeyRanges removes;
+
+    /**
+     * Constructor.
+     *
+     * @param lower underlying {@link KVStore}
+     * @param puts put key/value pairs
+     * @param removes removed key ranges; must not be modified
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    DeltaKVStore(KVStore lower, ArrayKVStore puts, KeyRanges removes) {
+        Preconditions.checkArgument(lower != null, "null lower");
+        Preconditions.checkArgument(puts != null, "null puts");
+        Preconditions.checkArgument(removes != null, "null removes");
+        this.lower = lower;
+        this.puts = puts;
+        this.removes = removes;
+    }
+
+    /**
+     * Get the underlying {@link KVStore}.
+     *
+     * @return lower key/value store
+     */
+    public KVStore getLower() {
+        return this.lower;
+    }
+
+// KVStore
+
+    @Override
+    public byte[] get(byte[] key) {
+        final byte[] value = this.puts.get(key);
+        if (value != null)
+            return value;
+        if (this.removes.contains(key))
+            return null;
+        return this.lower.get(key);
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        return new RangeIter(minKey, maxKey, reverse);
+    }
+
+    /**
+     * Estimate the size of the specified range.
+     *
+     * <p>
+     * The implementation in {@link DeltaKVStore} adds the puts in the range to the lower store's estimate;
+     * if there are any such puts, or any removed key ranges intersecting the range, the result is marked as approximate.
+     */
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        final SizeEstimate estimate = this.lower.estimateSize(minKey, maxKey);
+        if (estimate == null)
+            return null;
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        if (maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+            return estimate;
+        final SizeEstimate putsEstimate = this.puts.estimateSize(minKey, maxKey);
+        if (putsEstimate.getNumKeys() == 0 && !this.removes.intersects(new KeyRange(minKey, maxKey)))
+            return estimate;
+        return estimate.add(putsEstimate).approximate();
+    }
+
+    @Override
+    public byte[] encodeCounter(long value) {
+        return this.lower.encodeCounter(value);
+    }
+
+    @Override
+    public long decodeCounter(byte[] value) {
+        return this.lower.decodeCounter(value);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void remove(byte[] key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        throw new UnsupportedOperationException();
+    }
+
+// RangeIter
+
+    // Merges the puts with the lower store, skipping over removed key ranges in the latter
+    private class RangeIter extends UnmodifiableIterator<KVPair> implements CloseableIterator<KVPair> {
+
+        private final CloseableIterator<KVPair> upperIter;
+        private final byte[] minKey;
+        private final byte[] maxKey;
+        private final boolean reverse;
+
+        private CloseableIterator<KVPair> lowerIter;
+        private KVPair upperNext;
+        private KVPair lowerNext;
+        private KVPair next;
+
+        RangeIter(byte[] minKey, byte[] maxKey, boolean reverse) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.reverse = reverse;
+            this.upperIter = DeltaKVStore.this.puts.getRange(minKey, maxKey, reverse);
+            this.lowerIter = DeltaKVStore.this.lower.getRange(minKey, maxKey, reverse);
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            // Already found it?
+            if (this.next != null)
+                return true;
+
+            // Get next candidates
+            if (this.upperNext == null && this.upperIter.hasNext())
+                this.upperNext = this.upperIter.next();
+            if (this.lowerNext == null && this.lowerIter != null)
+                this.lowerNext = this.advanceLower();
+
+            // Choose the one that comes first; if keys are equal, the put wins
+            if (this.upperNext == null && this.lowerNext == null)
+                return false;
+            int diff;
+            if (this.upperNext == null)
+                diff = 1;
+            else if (this.lowerNext == null)
+                diff = -1;
+            else {
+                diff = ByteUtil.compare(this.upperNext.getKey(), this.lowerNext.getKey());
+                if (this.reverse)
+                    diff = -diff;
+            }
+            if (diff <= 0) {
+                this.next = this.upperNext;
+                this.upperNext = null;
+                if (diff == 0)
+                    this.lowerNext = null;
+            } else {
+                this.next = this.lowerNext;
+                this.lowerNext = null;
+            }
+            return true;
+        }
+
+        @Override
+        public KVPair next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            final KVPair pair = this.next;
+            this.next = null;
+            return pair;
+        }
+
+        @Override
+        public void close() {
+            this.upperIter.close();
+            if (this.lowerIter != null)
+                this.lowerIter.close();
+        }
+
+        // Get the next visible pair from the lower store, restarting the iteration past any removed key range we run into
+        private KVPair advanceLower() {
+            while (this.lowerIter.hasNext()) {
+                final KVPair pair = this.lowerIter.next();
+                if (DeltaKVStore.this.removes.isEmpty())
+                    return pair;
+                final KeyRange[] neighbors = DeltaKVStore.this.removes.findKey(pair.getKey());
+                if (neighbors[0] != neighbors[1] || neighbors[0] == null)
+                    return pair;
+                final KeyRange removed = neighbors[0];
+                this.lowerIter.close();
+                this.lowerIter = null;
+                if (this.reverse) {
+                    if (ByteUtil.compare(removed.getMin(), this.minKey) <= 0)
+                        return null;
+                    this.lowerIter = DeltaKVStore.this.lower.getRange(this.minKey, removed.getMin(), true);
+                } else {
+                    if (removed.getMax() == null || (this.maxKey != null && ByteUtil.compare(removed.getMax(), this.maxKey) >= 0))
+                        return null;
+                    this.lowerIter = DeltaKVStore.this.lower.getRange(removed.getMax(), this.maxKey, false);
+                }
+            }
+            return null;
+        }
+    }
+}
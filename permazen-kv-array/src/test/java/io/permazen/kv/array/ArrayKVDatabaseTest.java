@@ -68,6 +68,63 @@ public class ArrayKVDatabaseTest extends KVDatabaseTest {
             thread.join();
     }
 
+    @Test
+    private void testGroupCommit() throws Exception {
+        final int numThreads = 10;
+        final int numIncrements = 50;
+        final int previousWindow = this.arrayKV.getCommitBatchWindow();
+        this.arrayKV.setCommitBatchWindow(1000);
+        try {
+
+            // Concurrently increment a counter per thread, plus one shared counter
+            final Thread[] threads = new Thread[numThreads];
+            for (int i = 0; i < threads.length; i++) {
+                final byte[] key = new byte[] { (byte)0xee, (byte)i };
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < numIncrements; j++)
+                        this.increment(key);
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+
+            // Verify results
+            final ArrayKVTransaction tx = this.arrayKV.createTransaction();
+            try {
+                for (int i = 0; i < threads.length; i++)
+                    Assert.assertEquals(tx.decodeCounter(tx.get(new byte[] { (byte)0xee, (byte)i })), (long)numIncrements);
+                Assert.assertEquals(tx.decodeCounter(tx.get(new byte[] { (byte)0xef })), (long)(numThreads * numIncrements));
+            } finally {
+                tx.rollback();
+            }
+        } finally {
+            this.arrayKV.setCommitBatchWindow(previousWindow);
+        }
+    }
+
+    private void increment(byte[] key) {
+        final byte[] sharedKey = new byte[] { (byte)0xef };
+        while (true) {
+            final ArrayKVTransaction tx = this.arrayKV.createTransaction();
+            boolean success = false;
+            try {
+                for (byte[] k : new byte[][] { key, sharedKey }) {
+                    final byte[] value = tx.get(k);
+                    tx.put(k, tx.encodeCounter((value != null ? tx.decodeCounter(value) : 0) + 1));
+                }
+                tx.commit();
+                success = true;
+                return;
+            } catch (RetryTransactionException e) {
+                // try again
+            } finally {
+                if (!success)
+                    tx.rollback();
+            }
+        }
+    }
+
     private static class BigWriter extends Thread {
 
         private static final int MAX_VALUE_LENGTH = 1024 * 1024;
@@ -8,6 +8,7 @@ package io.permazen.kv.array;
 import com.google.common.collect.Lists;
 
 import io.permazen.kv.KVPair;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.test.AtomicKVStoreTest;
 import io.permazen.kv.util.NavigableMapKVStore;
@@ -33,13 +34,18 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
             final ByteArrayOutputStream indxOutput = new ByteArrayOutputStream();
             final ByteArrayOutputStream keysOutput = new ByteArrayOutputStream();
             final ByteArrayOutputStream valsOutput = new ByteArrayOutputStream();
+            final ByteArrayOutputStream bloomOutput = this.random.nextBoolean() ? new ByteArrayOutputStream() : null;
             final byte[] keybuf = new byte[maxKeyLen];
             final byte[] maxkey = new byte[maxKeyLen];
             Arrays.fill(maxkey, (byte)0xff);
             int keylen = 0;
             byte[] key;
             final NavigableMapKVStore reference = new NavigableMapKVStore();
-            final ArrayKVWriter writer = new ArrayKVWriter(indxOutput, keysOutput, valsOutput);
+            final ArrayKVWriter writer = new ArrayKVWriter(indxOutput, keysOutput, valsOutput,
+              bloomOutput, this.random.nextInt(1000), 1 + this.random.nextInt(16));
+            final boolean blockVals = this.random.nextBoolean();
+            if (blockVals)
+                writer.setValueBlockSize(1 + this.random.nextInt(100));
             while (true) {
 
                 // Create key
@@ -77,7 +83,9 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
             final ArrayKVStore kvstore = new ArrayKVStore(
               ByteBuffer.wrap(indxOutput.toByteArray()),
               ByteBuffer.wrap(keysOutput.toByteArray()),
-              ByteBuffer.wrap(valsOutput.toByteArray()));
+              ByteBuffer.wrap(valsOutput.toByteArray()),
+              bloomOutput != null ? ByteBuffer.wrap(bloomOutput.toByteArray()) : null,
+              blockVals);
 
             // Debug
             //this.log.info("INDX:" + this.format(indxOutput.toByteArray()));
@@ -106,11 +114,210 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
                     final boolean reverse = this.random.nextBoolean();
                     this.verify(kvstore.getRange(minKey, maxKey, reverse),
                       reference.getRange(minKey, maxKey, reverse));
+                    this.verify(kvstore.estimateSize(minKey, maxKey), reference.estimateSize(minKey, maxKey));
                 }
             }
         }
     }
 
+    @Test
+    public void testPointLookups() throws Exception {
+
+        // Build a KVStore large enough to use the sparse index, with a Bloom filter
+        final ByteArrayOutputStream indxOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream keysOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream valsOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream bloomOutput = new ByteArrayOutputStream();
+        final int numKeys = 20000;
+        final NavigableMapKVStore reference = new NavigableMapKVStore();
+        try (ArrayKVWriter writer = new ArrayKVWriter(indxOutput, keysOutput, valsOutput, bloomOutput, numKeys, 10)) {
+            for (int i = 0; i < numKeys; i++) {
+                final byte[] key = ByteUtil.parse(String.format("%08x", i * 2));
+                final byte[] val = ByteUtil.parse(String.format("%04x", i & 0xffff));
+                writer.writeKV(key, val);
+                reference.put(key, val);
+            }
+        }
+        final ArrayKVStore kvstore = new ArrayKVStore(
+          ByteBuffer.wrap(indxOutput.toByteArray()),
+          ByteBuffer.wrap(keysOutput.toByteArray()),
+          ByteBuffer.wrap(valsOutput.toByteArray()),
+          ByteBuffer.wrap(bloomOutput.toByteArray()));
+        Assert.assertEquals(kvstore.size(), numKeys);
+
+        // Verify lookups of present and missing keys, including those on sparse index block boundaries
+        for (int i = -2; i < numKeys * 2 + 2; i += this.random.nextInt(7) == 0 ? 1 : 1 + this.random.nextInt(50)) {
+            final byte[] key = ByteUtil.parse(String.format("%08x", i & 0xffffffffL));
+            this.verify(kvstore.get(key), reference.get(key));
+            this.verify(kvstore.getAtLeast(key, null), reference.getAtLeast(key, null));
+            this.verify(kvstore.getAtMost(key, null), reference.getAtMost(key, null));
+        }
+        final int stride = ArrayKVFinder.SPARSE_INDEX_STRIDE;
+        for (int block = 0; block <= numKeys / stride; block++) {
+            for (int i = block * stride * 2 - 2; i <= block * stride * 2 + 2; i++) {
+                final byte[] key = ByteUtil.parse(String.format("%08x", i & 0xffffffffL));
+                this.verify(kvstore.get(key), reference.get(key));
+                this.verify(kvstore.getAtLeast(key, null), reference.getAtLeast(key, null));
+            }
+        }
+
+        // Verify the Bloom filter rejects most missing keys
+        final ArrayKVBloomFilter filter = new ArrayKVBloomFilter(ByteBuffer.wrap(bloomOutput.toByteArray()));
+        int falsePositives = 0;
+        for (int i = 0; i < numKeys; i++) {
+            Assert.assertTrue(filter.mightContain(ByteUtil.parse(String.format("%08x", i * 2))));
+            if (filter.mightContain(ByteUtil.parse(String.format("%08x", i * 2 + 1))))
+                falsePositives++;
+        }
+        Assert.assertTrue(falsePositives < numKeys / 50, "too many false positives: " + falsePositives);
+
+        // Same filter results when written after the fact
+        final ByteArrayOutputStream bloomOutput2 = new ByteArrayOutputStream();
+        ArrayKVWriter.writeBloomFilter(kvstore, bloomOutput2, 10);
+        Assert.assertEquals(bloomOutput2.toByteArray(), bloomOutput.toByteArray());
+    }
+
+    @Test
+    public void testCompressor() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+
+            // Generate data with a random mix of random bytes, repeated bytes, and repeated earlier sequences
+            final byte[] data = new byte[this.random.nextInt(i < 500 ? 100 : 20000)];
+            int pos = 0;
+            while (pos < data.length) {
+                final int len = Math.min(data.length - pos, 1 + this.random.nextInt(this.random.nextBoolean() ? 8 : 600));
+                switch (pos == 0 ? 0 : this.random.nextInt(3)) {
+                case 0:
+                    for (int j = 0; j < len; j++)
+                        data[pos + j] = (byte)this.random.nextInt(i % 3 == 0 ? 4 : 256);
+                    break;
+                case 1:
+                    Arrays.fill(data, pos, pos + len, (byte)this.random.nextInt());
+                    break;
+                default:
+                    final int from = this.random.nextInt(pos);
+                    for (int j = 0; j < len; j++)                               // may overlap
+                        data[pos + j] = data[from + j];
+                    break;
+                }
+                pos += len;
+            }
+
+            // Compress, with some offset, and decompress
+            final int off = this.random.nextInt(10);
+            final byte[] src = new byte[off + data.length];
+            System.arraycopy(data, 0, src, off, data.length);
+            final byte[] compressed = new byte[ArrayKVCompressor.maxCompressedLength(data.length)];
+            final int compressedLength = ArrayKVCompressor.compress(src, off, data.length, compressed);
+            Assert.assertTrue(compressedLength <= compressed.length);
+            final byte[] uncompressed = new byte[data.length];
+            ArrayKVCompressor.decompress(compressed, 0, compressedLength, uncompressed);
+            Assert.assertEquals(uncompressed, data);
+        }
+
+        // Truncated data is detected
+        final byte[] data = new byte[1000];
+        final byte[] compressed = new byte[ArrayKVCompressor.maxCompressedLength(data.length)];
+        final int compressedLength = ArrayKVCompressor.compress(data, 0, data.length, compressed);
+        Assert.assertTrue(compressedLength < 20, "compressed length " + compressedLength);
+        try {
+            ArrayKVCompressor.decompress(compressed, 0, compressedLength - 1, new byte[data.length]);
+            assert false;
+        } catch (ArrayKVException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testValueCompression() throws Exception {
+
+        // Write the same compressible values with and without block compression
+        final int numKeys = 5000;
+        final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[6];
+        for (int i = 0; i < outputs.length; i++)
+            outputs[i] = new ByteArrayOutputStream();
+        final NavigableMapKVStore reference = new NavigableMapKVStore();
+        try (
+          ArrayKVWriter writer1 = new ArrayKVWriter(outputs[0], outputs[1], outputs[2]);
+          ArrayKVWriter writer2 = new ArrayKVWriter(outputs[3], outputs[4], outputs[5])) {
+            writer2.setValueBlockSize(ArrayKVWriter.DEFAULT_VALUE_BLOCK_SIZE);
+            for (int i = 0; i < numKeys; i++) {
+                final byte[] key = ByteUtil.parse(String.format("%08x", i));
+                final byte[] val = String.format("value #%d is %s", i, i % 7 == 0 ? "" : "the string "
+                  + "\"abcdefghijklmnopqrstuvwxyz\"".substring(0, 2 + i % 27)).getBytes("UTF-8");
+                writer1.writeKV(key, val);
+                writer2.writeKV(key, val);
+                reference.put(key, val);
+            }
+            Assert.assertEquals(writer2.getValsLength(), writer1.getValsLength());
+        }
+        Assert.assertEquals(outputs[3].toByteArray(), outputs[0].toByteArray());
+        Assert.assertEquals(outputs[4].toByteArray(), outputs[1].toByteArray());
+        Assert.assertTrue(outputs[5].size() * 2 < outputs[2].size(),
+          "compressed size " + outputs[5].size() + " vs. uncompressed size " + outputs[2].size());
+
+        // Verify reads, including from a buffer with no accessible array (like a memory-mapped file)
+        final ArrayKVStore kvstore = new ArrayKVStore(
+          ByteBuffer.wrap(outputs[3].toByteArray()),
+          ByteBuffer.wrap(outputs[4].toByteArray()),
+          ByteBuffer.wrap(outputs[5].toByteArray()).asReadOnlyBuffer(), null, true);
+        this.verify(kvstore.getRange(null, null, false), reference.getRange(null, null, false));
+        this.verify(kvstore.getRange(null, null, true), reference.getRange(null, null, true));
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key = ByteUtil.parse(String.format("%08x", this.random.nextInt(numKeys + 10)));
+            this.verify(kvstore.get(key), reference.get(key));
+            final KVPair pair = kvstore.getAtLeast(key, null);
+            final KVPair expectedPair = reference.getAtLeast(key, null);
+            Assert.assertEquals(pair != null ? pair.getValueSlice().toByteArray() : null,
+              expectedPair != null ? expectedPair.getValue() : null);
+        }
+        this.verify(kvstore.estimateSize(null, null), reference.estimateSize(null, null));
+
+        // Uncompressed value data is rejected
+        try {
+            new ArrayKVStore(
+              ByteBuffer.wrap(outputs[0].toByteArray()),
+              ByteBuffer.wrap(outputs[1].toByteArray()),
+              ByteBuffer.wrap(outputs[2].toByteArray()), null, true);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReturnedArraysAreCopies() throws Exception {
+        final byte[] key = ByteUtil.parse("1234");
+        final byte[] val = ByteUtil.parse("5678");
+        for (boolean blockVals : new boolean[] { false, true }) {
+
+            // Create a store whose only value occupies the entire (heap) value buffer or value block
+            final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[3];
+            for (int i = 0; i < outputs.length; i++)
+                outputs[i] = new ByteArrayOutputStream();
+            try (ArrayKVWriter writer = new ArrayKVWriter(outputs[0], outputs[1], outputs[2])) {
+                if (blockVals)
+                    writer.setValueBlockSize(ArrayKVWriter.DEFAULT_VALUE_BLOCK_SIZE);
+                writer.writeKV(key, val);
+            }
+            final ArrayKVStore kvstore = new ArrayKVStore(
+              ByteBuffer.wrap(outputs[0].toByteArray()),
+              ByteBuffer.wrap(outputs[1].toByteArray()),
+              ByteBuffer.wrap(outputs[2].toByteArray()), null, blockVals);
+
+            // Modifying returned arrays must not affect subsequent reads
+            for (int i = 0; i < 3; i++) {
+                final KVPair pair = kvstore.getAtLeast(key, null);
+                Assert.assertEquals(pair.getKey(), key);
+                Assert.assertEquals(pair.getValue(), val);
+                Assert.assertEquals(kvstore.get(key), val);
+                pair.getKey()[0] ^= (byte)0xff;
+                pair.getValue()[0] ^= (byte)0xff;
+                kvstore.get(key)[0] ^= (byte)0xff;
+            }
+        }
+    }
+
     @Override
     protected void compact(AtomicKVStore kvstore) throws Exception {
         ((AtomicArrayKVStore)kvstore).scheduleCompaction();
@@ -136,6 +343,14 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
         Assert.assertEquals(Lists.newArrayList(actual), Lists.newArrayList(expected));
     }
 
+    // Key data is prefix-compressed, so only the key counts are comparable
+    private void verify(SizeEstimate actual, SizeEstimate expected) {
+        Assert.assertTrue(actual.isExact());
+        Assert.assertTrue(expected.isExact());
+        Assert.assertEquals(actual.getNumKeys(), expected.getNumKeys());
+        Assert.assertTrue(actual.getNumBytes() <= expected.getNumBytes());
+    }
+
     private byte[] randomKey(int maxKeyLen) {
         final byte[] key = new byte[this.random.nextInt(maxKeyLen + 1)];
         this.random.nextBytes(key);
@@ -5,9 +5,27 @@
 
 package io.permazen.kv.array;
 
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
 import io.permazen.kv.test.AtomicKVStoreTest;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
 
 public class AtomicArrayKVStoreTest extends AtomicKVStoreTest {
 
@@ -17,4 +35,415 @@ public class AtomicArrayKVStoreTest extends AtomicKVStoreTest {
         kvstore.setDirectory(dir);
         return kvstore;
     }
+
+    @Test
+    public void testBulkLoadGeneration() throws Exception {
+
+        // Create and populate k/v store, leaving some modifications uncompacted
+        final File dir = this.createTempDirectory();
+        AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.start();
+        kv.put(b("10"), b("01"));
+        kv.put(b("20"), kv.encodeCounter(100));
+        kv.scheduleCompaction().get();
+        kv.put(b("30"), b("03"));
+        kv.adjustCounter(b("20"), 5);
+
+        // Bulk load, overwriting one existing key
+        kv.bulkLoad(Arrays.asList(
+          new KVPair(b("10"), b("1111")),
+          new KVPair(b("40"), b("4444")),
+          new KVPair(b("50"), b("5555"))).iterator());
+
+        // A failed load has no effect
+        try {
+            kv.bulkLoad(Arrays.asList(new KVPair(b("60"), b("6666")), new KVPair(b("55"), b("5555"))).iterator());
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertNull(kv.get(b("60")));
+
+        // Restart and verify everything was persisted
+        kv.stop();
+        kv = this.createAtomicKVStore(dir);
+        kv.start();
+        Assert.assertEquals(kv.get(b("10")), b("1111"));
+        Assert.assertEquals(kv.decodeCounter(kv.get(b("20"))), 105);
+        Assert.assertEquals(kv.get(b("30")), b("03"));
+        Assert.assertEquals(kv.get(b("40")), b("4444"));
+        Assert.assertEquals(kv.get(b("50")), b("5555"));
+        Assert.assertNull(kv.get(b("60")));
+        kv.stop();
+        this.deleteDirectoryHierarchy(dir);
+    }
+
+    @Test
+    public void testLeveledCompaction() throws Exception {
+
+        // Create k/v store with a large base relative to each compaction, so that delta runs are used
+        final File dir = this.createTempDirectory();
+        AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(3);
+        kv.start();
+        final NavigableMapKVStore expected = new NavigableMapKVStore();
+        final ArrayList<KVPair> initial = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            final KVPair pair = new KVPair(ByteUtil.parse(String.format("%04x", i * 16)), kv.encodeCounter(i));
+            initial.add(pair);
+            expected.put(pair.getKey(), pair.getValue());
+        }
+        kv.bulkLoad(initial.iterator());
+
+        // Apply random mutations, compacting after each batch
+        boolean sawDeltaRuns = false;
+        for (int round = 0; round < 60; round++) {
+            this.mutateRandomly(kv, expected, 20);
+            kv.scheduleCompaction().get();
+            sawDeltaRuns |= dir.list((d, name) -> name.startsWith("rmvs.")).length > 0;
+
+            // Occasionally restart or verify a hot copy
+            if (round % 10 == 3) {
+                kv.stop();
+                kv = this.createAtomicKVStore(dir);
+                kv.setCompactLevelRatio(3);
+                kv.start();
+            } else if (round % 10 == 7) {
+                final File copyDir = this.createTempDirectory();
+                this.deleteDirectoryHierarchy(copyDir);
+                kv.hotCopy(copyDir);
+                final AtomicArrayKVStore copy = this.createAtomicKVStore(copyDir);
+                copy.start();
+                this.verifySame(copy, expected);
+                copy.stop();
+                this.deleteDirectoryHierarchy(copyDir);
+            }
+            this.verifySame(kv, expected);
+        }
+        Assert.assertTrue(sawDeltaRuns, "no delta runs were created");
+
+        // Disabling delta runs merges everything back into the base array files
+        kv.stop();
+        kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(0);
+        kv.start();
+        kv.put(b("ffff"), b("ff"));
+        expected.put(b("ffff"), b("ff"));
+        kv.scheduleCompaction().get();
+        Assert.assertEquals(dir.list((d, name) -> name.startsWith("rmvs.")).length, 0);
+        this.verifySame(kv, expected);
+        kv.stop();
+        this.deleteDirectoryHierarchy(dir);
+    }
+
+    @Test
+    public void testValueCompression() throws Exception {
+
+        // Create uncompressed base array files
+        final File dir = this.createTempDirectory();
+        AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(3);
+        kv.start();
+        final NavigableMapKVStore expected = new NavigableMapKVStore();
+        final ArrayList<KVPair> initial = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final byte[] key = ByteUtil.parse(String.format("%04x", i * 32));
+            final byte[] value = String.format("initial value %d, initial value %d", i, i).getBytes("UTF-8");
+            initial.add(new KVPair(key, value));
+            expected.put(key, value);
+        }
+        kv.bulkLoad(initial.iterator());
+        kv.stop();
+        Assert.assertEquals(dir.list((d, name) -> name.startsWith("cvals.")).length, 0);
+        final long uncompressedLength = this.getValsLength(dir, "vals.");
+
+        // Restart with value compression enabled; new delta runs are compressed, the base array files are not
+        kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(3);
+        kv.setValueBlockSize(256);
+        kv.start();
+        this.verifySame(kv, expected);
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 20; i++) {
+                final byte[] key = ByteUtil.parse(String.format("%04x", this.random.nextInt(0x10000)));
+                final byte[] value = String.format("round %d value %d, round %d value %d", round, i, round, i).getBytes("UTF-8");
+                kv.put(key, value);
+                expected.put(key, value);
+            }
+            final byte[] removeKey = ByteUtil.parse(String.format("%04x", this.random.nextInt(2000) * 32));
+            kv.remove(removeKey);
+            expected.remove(removeKey);
+            kv.scheduleCompaction().get();
+            this.verifySame(kv, expected);
+        }
+        Assert.assertTrue(dir.list((d, name) -> name.startsWith("vals.")).length > 0);
+        Assert.assertTrue(dir.list((d, name) -> name.startsWith("cvals.")).length > 0);
+
+        // A hot copy includes both kinds of files
+        final File copyDir = this.createTempDirectory();
+        this.deleteDirectoryHierarchy(copyDir);
+        kv.hotCopy(copyDir);
+        final AtomicArrayKVStore copy = this.createAtomicKVStore(copyDir);
+        copy.start();
+        this.verifySame(copy, expected);
+        copy.stop();
+        this.deleteDirectoryHierarchy(copyDir);
+
+        // Merge everything into compressed base array files
+        kv.stop();
+        kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(0);
+        kv.setValueBlockSize(ArrayKVWriter.DEFAULT_VALUE_BLOCK_SIZE);
+        kv.start();
+        kv.put(b("ffff"), b("ff"));
+        expected.put(b("ffff"), b("ff"));
+        kv.scheduleCompaction().get();
+        this.verifySame(kv, expected);
+        kv.stop();
+        Assert.assertEquals(dir.list((d, name) -> name.startsWith("vals.")).length, 0);
+        Assert.assertTrue(this.getValsLength(dir, "cvals.") * 2 < uncompressedLength);
+
+        // Compressed files are still readable with compression disabled
+        kv = this.createAtomicKVStore(dir);
+        kv.start();
+        this.verifySame(kv, expected);
+        kv.stop();
+        this.deleteDirectoryHierarchy(dir);
+    }
+
+    @Test
+    public void testLeftoverBloomFilter() throws Exception {
+
+        // Create k/v store without Bloom filters
+        final File dir = this.createTempDirectory();
+        AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.setBloomFilterBitsPerKey(0);
+        kv.start();
+        kv.put(b("10"), b("01"));
+
+        // Leave behind an empty Bloom filter for the next generation, as if from a crashed compaction
+        this.writeEmptyBloomFilter(new File(dir, "bloom." + (this.readGeneration(dir) + 1)));
+
+        // Compaction must not adopt it
+        kv.scheduleCompaction().get();
+        Assert.assertEquals(kv.get(b("10")), b("01"));
+        kv.put(b("20"), b("02"));
+
+        // Restart must discard one left behind for a later generation
+        kv.stop();
+        final File leftover = new File(dir, "bloom." + (this.readGeneration(dir) + 1));
+        this.writeEmptyBloomFilter(leftover);
+        kv = this.createAtomicKVStore(dir);
+        kv.setBloomFilterBitsPerKey(0);
+        kv.start();
+        Assert.assertFalse(leftover.exists());
+        kv.scheduleCompaction().get();
+        Assert.assertEquals(kv.get(b("10")), b("01"));
+        Assert.assertEquals(kv.get(b("20")), b("02"));
+        kv.stop();
+        this.deleteDirectoryHierarchy(dir);
+    }
+
+    @Test
+    public void testLeftoverValuesFile() throws Exception {
+
+        // Create k/v store without value compression
+        final File dir = this.createTempDirectory();
+        AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.start();
+        kv.put(b("10"), b("01"));
+
+        // Leave behind a compressed values file for the next generation, as if from a crashed compaction
+        Files.write(new File(dir, "cvals." + (this.readGeneration(dir) + 1)).toPath(), new byte[64]);
+
+        // Compaction must read back the uncompressed values file it actually wrote
+        kv.scheduleCompaction().get();
+        Assert.assertEquals(kv.get(b("10")), b("01"));
+        kv.put(b("20"), b("02"));
+
+        // Restart must discard one left behind for a later generation
+        kv.stop();
+        final File leftover = new File(dir, "cvals." + (this.readGeneration(dir) + 1));
+        Files.write(leftover.toPath(), new byte[64]);
+        kv = this.createAtomicKVStore(dir);
+        kv.start();
+        Assert.assertFalse(leftover.exists());
+        kv.scheduleCompaction().get();
+        Assert.assertEquals(kv.get(b("10")), b("01"));
+        Assert.assertEquals(kv.get(b("20")), b("02"));
+        kv.stop();
+        Assert.assertEquals(dir.list((d, name) -> name.startsWith("cvals.")).length, 0);
+        this.deleteDirectoryHierarchy(dir);
+    }
+
+    @Test
+    public void testArchiveRestore() throws Exception {
+
+        // Create k/v store with mutation log archiving
+        final File dir = this.createTempDirectory();
+        final File archiveDir = this.createTempDirectory();
+        final AtomicArrayKVStore kv = this.createAtomicKVStore(dir);
+        kv.setCompactLevelRatio(3);
+        kv.setArchiveDirectory(archiveDir);
+        kv.start();
+
+        // Apply random mutations and compactions, remembering the expected content as of each archived generation;
+        // take a hot copy partway through, with uncompacted mutations before and after it
+        final NavigableMapKVStore expected = new NavigableMapKVStore();
+        final HashMap<Long, NavigableMapKVStore> snapshots = new HashMap<>();
+        final File copyDir = this.createTempDirectory();
+        this.deleteDirectoryHierarchy(copyDir);
+        long copyGeneration = -1;
+        for (int round = 0; round < 12; round++) {
+            this.mutateRandomly(kv, expected, 20);
+            if (round == 4) {
+                kv.hotCopy(copyDir);
+                this.mutateRandomly(kv, expected, 20);
+            }
+            final NavigableMapKVStore snapshot = expected.clone();
+            kv.scheduleCompaction().get();
+            final List<Long> generations = AtomicArrayKVArchive.getArchivedGenerations(archiveDir);
+            Assert.assertEquals(generations.size(), round + 1);
+            final long generation = generations.get(round);
+            Assert.assertEquals(generation, (long)generations.get(0) + round);
+            snapshots.put(generation, snapshot);
+            if (round == 4)
+                copyGeneration = generation;
+        }
+
+        // Restore the hot copy to various points in time
+        for (long generation = copyGeneration; snapshots.containsKey(generation); generation += 1 + this.random.nextInt(3)) {
+            final File restoreDir = this.copyDirectory(copyDir);
+            Assert.assertTrue(AtomicArrayKVArchive.restore(restoreDir, archiveDir, generation) > 0);
+            final AtomicArrayKVStore restored = this.createAtomicKVStore(restoreDir);
+            restored.start();
+            this.verifySame(restored, snapshots.get(generation));
+            restored.stop();
+            this.deleteDirectoryHierarchy(restoreDir);
+        }
+
+        // Can't restore to before the hot copy
+        try {
+            AtomicArrayKVArchive.restore(copyDir, archiveDir, copyGeneration - 1);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // Can't restore from a corrupt archived segment, even at its end
+        final File corruptArchiveDir = this.copyDirectory(archiveDir);
+        final File corruptSegment = new File(corruptArchiveDir, "mods." + (copyGeneration + 1));
+        try (FileChannel channel = FileChannel.open(corruptSegment.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        final File corruptDir = this.copyDirectory(copyDir);
+        try {
+            AtomicArrayKVArchive.restore(corruptDir, corruptArchiveDir, copyGeneration + 2);
+            assert false;
+        } catch (ArrayKVException e) {
+            // expected
+        }
+
+        // A failed bulk load leaves no bulk load marker behind
+        try {
+            kv.bulkLoad(Arrays.asList(new KVPair(b("fff1"), b("f1")), new KVPair(b("fff0"), b("f0"))).iterator());
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(archiveDir.list((d, name) -> name.startsWith("bulk.")).length, 0);
+
+        // Can't restore across a bulk load
+        kv.bulkLoad(Collections.singletonList(new KVPair(b("ffff"), b("ff"))).iterator());
+        kv.put(b("fffe"), b("fe"));
+        kv.scheduleCompaction().get();
+        final List<Long> generations = AtomicArrayKVArchive.getArchivedGenerations(archiveDir);
+        final File restoreDir = this.copyDirectory(copyDir);
+        try {
+            AtomicArrayKVArchive.restore(restoreDir, archiveDir, generations.get(generations.size() - 1));
+            assert false;
+        } catch (ArrayKVException e) {
+            // expected
+        }
+        AtomicArrayKVArchive.restore(restoreDir, archiveDir, generations.get(generations.size() - 2));
+        kv.stop();
+        for (File file : new File[] { dir, archiveDir, copyDir, restoreDir, corruptArchiveDir, corruptDir })
+            this.deleteDirectoryHierarchy(file);
+    }
+
+    private long readGeneration(File dir) throws IOException {
+        return Long.parseLong(Files.readAllLines(new File(dir, AtomicArrayKVStore.GENERATION_FILE_NAME).toPath()).get(0).trim());
+    }
+
+    private void writeEmptyBloomFilter(File file) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            new ArrayKVBloomFilter.Builder(100, 10).writeTo(output);
+        }
+    }
+
+    private File copyDirectory(File dir) throws IOException {
+        final File copy = this.createTempDirectory();
+        for (File file : dir.listFiles())
+            Files.copy(file.toPath(), new File(copy, file.getName()).toPath());
+        return copy;
+    }
+
+    private void mutateRandomly(AtomicArrayKVStore kv, NavigableMapKVStore expected, int count) {
+        for (int i = 0; i < count; i++) {
+            final int keyValue = this.random.nextInt(0x10000);
+            final byte[] key = ByteUtil.parse(String.format("%04x", keyValue));
+            switch (this.random.nextInt(5)) {
+            case 0:
+                kv.remove(key);
+                expected.remove(key);
+                break;
+            case 1:
+                final int maxValue = Math.min(0xffff, keyValue + this.random.nextInt(256));
+                final byte[] maxKey = ByteUtil.parse(String.format("%04x", maxValue));
+                kv.removeRange(key, maxKey);
+                expected.removeRange(key, maxKey);
+                break;
+            case 2:
+                final long delta = this.random.nextInt(100);
+                kv.adjustCounter(key, delta);
+                expected.adjustCounter(key, delta);
+                break;
+            default:
+                final byte[] value = new byte[this.random.nextInt(10)];
+                this.random.nextBytes(value);
+                kv.put(key, value);
+                expected.put(key, value);
+                break;
+            }
+        }
+    }
+
+    private long getValsLength(File dir, String prefix) {
+        long total = 0;
+        for (File file : dir.listFiles((d, name) -> name.startsWith(prefix)))
+            total += file.length();
+        return total;
+    }
+
+    private void verifySame(KVStore actual, KVStore expected) {
+        for (boolean reverse : new boolean[] { false, true }) {
+            Assert.assertEquals(this.toList(actual, null, null, reverse), this.toList(expected, null, null, reverse));
+            final byte[] minKey = ByteUtil.parse(String.format("%04x", this.random.nextInt(0x8000)));
+            final byte[] maxKey = ByteUtil.parse(String.format("%04x", 0x8000 + this.random.nextInt(0x8000)));
+            Assert.assertEquals(this.toList(actual, minKey, maxKey, reverse), this.toList(expected, minKey, maxKey, reverse));
+        }
+        for (int i = 0; i < 100; i++) {
+            final byte[] key = ByteUtil.parse(String.format("%04x", this.random.nextInt(0x10000)));
+            Assert.assertEquals(actual.get(key), expected.get(key));
+        }
+    }
+
+    private List<String> toList(KVStore kv, byte[] minKey, byte[] maxKey, boolean reverse) {
+        final ArrayList<String> list = new ArrayList<>();
+        try (CloseableIterator<KVPair> i = kv.getRange(minKey, maxKey, reverse)) {
+            while (i.hasNext())
+                list.add(i.next().toString());
+        }
+        return list;
+    }
 }
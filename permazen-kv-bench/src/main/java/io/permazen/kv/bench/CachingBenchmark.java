@@ -0,0 +1,223 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.caching.CachingKVStore;
+import io.permazen.kv.caching.CachingStatistics;
+import io.permazen.kv.caching.EvictionPolicy;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+import io.permazen.util.CloseableIterator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Replays synthetic access traces against a {@link CachingKVStore} that is too small to hold all of the data,
+ * comparing {@link EvictionPolicy}s.
+ *
+ * <p>
+ * Point reads follow a Zipfian distribution over randomly permuted keys. With the {@link Trace#SCAN} trace, one
+ * operation in {@link #SCAN_PERIOD} is instead a range scan of {@link #SCAN_LENGTH} keys starting at a uniformly
+ * random key. Cache hits and misses for the point reads, and evictions caused by them, are reported as secondary
+ * results; the hit ratio is what matters most here, because the underlying store is in memory and so misses are much
+ * cheaper than they would be in practice.
+ *
+ * <p>
+ * For example:
+ * <pre>
+ *  java -jar permazen-kv-bench-benchmarks.jar CachingBenchmark -p policy=LRU,TINY_LFU -p trace=ZIPFIAN,SCAN
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CachingBenchmark {
+
+    /**
+     * Number of key/value pairs read per range scan.
+     */
+    public static final int SCAN_LENGTH = 500;
+
+    /**
+     * With {@link Trace#SCAN}, how often (in operations) to perform a range scan.
+     */
+    public static final int SCAN_PERIOD = 20;
+
+    private static final byte DATA_PREFIX = (byte)0x10;
+    private static final long RTT_ESTIMATE = 1000000L;
+
+    @Param
+    public EvictionPolicy policy;
+
+    @Param
+    public Trace trace;
+
+    @Param("100000")
+    public int numKeys;
+
+    @Param("100")
+    public int valueSize;
+
+    @Param("1048576")
+    public long maxTotalBytes;
+
+    @Param("0.99")
+    public double zipfExponent;
+
+    private ExecutorService executor;
+    private CachingKVStore kv;
+    private int[] permutation;                                          // maps popularity rank to key index
+    private double[] cdf;                                               // cumulative Zipfian distribution by rank
+    private CachingStatistics previousStats;
+    private long operations;
+
+// Lifecycle
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        // Populate underlying store
+        final NavigableMapKVStore underlying = new NavigableMapKVStore();
+        final byte[] value = new byte[this.valueSize];
+        for (int i = 0; i < this.numKeys; i++)
+            underlying.put(this.key(i), value);
+
+        // Create caching layer
+        this.executor = Executors.newFixedThreadPool(4);
+        this.kv = new CachingKVStore(underlying, this.executor, RTT_ESTIMATE);
+        this.kv.setMaxTotalBytes(this.maxTotalBytes);
+        this.kv.setEvictionPolicy(this.policy);
+        this.previousStats = this.kv.getStatistics();
+
+        // Randomly assign popularity ranks to keys, so popular keys are not adjacent
+        final Random random = new Random(0);
+        this.permutation = new int[this.numKeys];
+        for (int i = 0; i < this.numKeys; i++) {
+            final int j = random.nextInt(i + 1);
+            this.permutation[i] = this.permutation[j];
+            this.permutation[j] = i;
+        }
+
+        // Build Zipfian distribution
+        this.cdf = new double[this.numKeys];
+        double total = 0;
+        for (int i = 0; i < this.numKeys; i++) {
+            total += 1.0 / Math.pow(i + 1, this.zipfExponent);
+            this.cdf[i] = total;
+        }
+        for (int i = 0; i < this.numKeys; i++)
+            this.cdf[i] /= total;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (this.kv != null)
+            this.kv.close();
+        if (this.executor != null)
+            this.executor.shutdown();
+    }
+
+// Benchmarks
+
+    @Benchmark
+    public void replay(CacheCounters counters, Blackhole blackhole) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (this.trace == Trace.SCAN && ++this.operations % SCAN_PERIOD == 0) {
+            final int start = random.nextInt(Math.max(1, this.numKeys - SCAN_LENGTH));
+            try (CloseableIterator<KVPair> i = this.kv.getRange(this.key(start), this.key(start + SCAN_LENGTH), false)) {
+                while (i.hasNext())
+                    blackhole.consume(i.next());
+            }
+            this.previousStats = this.kv.getStatistics();                 // only count hits and misses for point reads
+            return;
+        }
+        int rank = Arrays.binarySearch(this.cdf, random.nextDouble());
+        if (rank < 0)
+            rank = Math.min(~rank, this.numKeys - 1);
+        blackhole.consume(this.kv.get(this.key(this.permutation[rank])));
+
+        // Update counters
+        final CachingStatistics stats = this.kv.getStatistics();
+        counters.hits += stats.getHits() - this.previousStats.getHits();
+        counters.misses += stats.getMisses() - this.previousStats.getMisses();
+        counters.evictions += stats.getEvictions() - this.previousStats.getEvictions();
+        this.previousStats = stats;
+    }
+
+// Internal methods
+
+    private byte[] key(int index) {
+        final ByteWriter writer = new ByteWriter(5);
+        writer.writeByte(DATA_PREFIX);
+        ByteUtil.writeInt(writer, index);
+        return writer.getBytes();
+    }
+
+// Trace
+
+    /**
+     * Access traces.
+     */
+    public enum Trace {
+
+        /**
+         * Zipfian point reads only.
+         */
+        ZIPFIAN,
+
+        /**
+         * Zipfian point reads mixed with uniformly distributed range scans.
+         */
+        SCAN;
+    }
+
+// CacheCounters
+
+    /**
+     * Per-thread cache hit, miss, and eviction counts, reported by JMH as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+
+        public long hits;
+        public long misses;
+        public long evictions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.hits = 0;
+            this.misses = 0;
+            this.evictions = 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.KVTransaction;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Commit latency as a function of the number of other open transactions.
+ *
+ * <p>
+ * Before each iteration, {@link #openTransactions} transactions are opened and each reads {@link #readsPerTransaction}
+ * random data keys; they remain open for the entire iteration. Each invocation then commits a transaction that writes
+ * one counter key, which does not conflict with any of the open transactions. For databases that check committed
+ * writes against the reads of every open transaction (such as {@link io.permazen.kv.mvcc.SnapshotKVDatabase}),
+ * this measures how commit latency scales with concurrency; ideally it should stay flat.
+ *
+ * <p>
+ * Most meaningful with the {@code ARRAY}, {@code LEVELDB}, and {@code ROCKSDB} backends, e.g.:
+ * <pre>
+ *  java -jar permazen-kv-bench-benchmarks.jar CommitBenchmark -p backend=ARRAY
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommitBenchmark {
+
+    @Param({ "0", "10", "100", "1000", "5000" })
+    public int openTransactions;
+
+    @Param("10")
+    public int readsPerTransaction;
+
+    private final ArrayList<KVTransaction> transactions = new ArrayList<>();
+
+    @Setup(Level.Iteration)
+    public void openTransactions(KVDatabaseState state) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < this.openTransactions; i++) {
+            final KVTransaction tx = state.getKVDatabase().createTransaction();
+            this.transactions.add(tx);
+            for (int j = 0; j < this.readsPerTransaction; j++)
+                tx.get(state.key(random.nextInt(state.numKeys)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeTransactions() {
+        for (KVTransaction tx : this.transactions)
+            tx.rollback();
+        this.transactions.clear();
+    }
+
+    @Benchmark
+    public void commit(KVDatabaseState state) {
+        final byte[] value = state.value(ThreadLocalRandom.current().nextInt());
+        state.execute(tx -> {
+            tx.put(state.randomCounterKey(), value);
+            return null;
+        });
+    }
+}
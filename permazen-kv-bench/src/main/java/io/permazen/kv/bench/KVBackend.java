@@ -0,0 +1,123 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.array.ArrayKVDatabase;
+import io.permazen.kv.array.AtomicArrayKVStore;
+import io.permazen.kv.bdb.BerkeleyKVDatabase;
+import io.permazen.kv.leveldb.LevelDBAtomicKVStore;
+import io.permazen.kv.leveldb.LevelDBKVDatabase;
+import io.permazen.kv.rocksdb.RocksDBAtomicKVStore;
+import io.permazen.kv.rocksdb.RocksDBKVDatabase;
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.kv.sqlite.SQLiteKVDatabase;
+
+import java.io.File;
+
+/**
+ * The {@link KVDatabase} implementations that can be benchmarked.
+ *
+ * <p>
+ * Persistent implementations store their data under a caller-supplied scratch directory.
+ */
+public enum KVBackend {
+
+    /**
+     * {@link SimpleKVDatabase} (in-memory).
+     */
+    SIMPLE {
+        @Override
+        public KVDatabase create(File dir) {
+            return new SimpleKVDatabase();
+        }
+    },
+
+    /**
+     * {@link ArrayKVDatabase} using an {@link AtomicArrayKVStore}.
+     */
+    ARRAY {
+        @Override
+        public KVDatabase create(File dir) {
+            final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+            kvstore.setDirectory(dir);
+            final ArrayKVDatabase kvdb = new ArrayKVDatabase();
+            kvdb.setKVStore(kvstore);
+            return kvdb;
+        }
+    },
+
+    /**
+     * {@link LevelDBKVDatabase}.
+     */
+    LEVELDB {
+        @Override
+        public KVDatabase create(File dir) {
+            final LevelDBAtomicKVStore kvstore = new LevelDBAtomicKVStore();
+            kvstore.setDirectory(dir);
+            kvstore.setCreateIfMissing(true);
+            final LevelDBKVDatabase kvdb = new LevelDBKVDatabase();
+            kvdb.setKVStore(kvstore);
+            return kvdb;
+        }
+    },
+
+    /**
+     * {@link RocksDBKVDatabase}.
+     */
+    ROCKSDB {
+        @Override
+        public KVDatabase create(File dir) {
+            final RocksDBAtomicKVStore kvstore = new RocksDBAtomicKVStore();
+            kvstore.setDirectory(dir);
+            final RocksDBKVDatabase kvdb = new RocksDBKVDatabase();
+            kvdb.setKVStore(kvstore);
+            return kvdb;
+        }
+    },
+
+    /**
+     * {@link SQLiteKVDatabase}.
+     */
+    SQLITE {
+        @Override
+        public KVDatabase create(File dir) {
+            final SQLiteKVDatabase kvdb = new SQLiteKVDatabase();
+            kvdb.setDatabaseFile(new File(dir, "kvstore.sqlite3"));
+            return kvdb;
+        }
+    },
+
+    /**
+     * {@link BerkeleyKVDatabase}.
+     */
+    BDB {
+        @Override
+        public KVDatabase create(File dir) {
+            final BerkeleyKVDatabase kvdb = new BerkeleyKVDatabase();
+            kvdb.setDirectory(dir);
+            return kvdb;
+        }
+    },
+
+    /**
+     * A three node {@link io.permazen.kv.raft.RaftKVDatabase} cluster running in the current process.
+     */
+    RAFT {
+        @Override
+        public KVDatabase create(File dir) {
+            return new LocalRaftCluster(dir, 3);
+        }
+    };
+
+    /**
+     * Create a new, unstarted {@link KVDatabase} instance of this type.
+     *
+     * @param dir empty scratch directory for persistent state
+     * @return new database instance
+     */
+    public abstract KVDatabase create(File dir);
+}
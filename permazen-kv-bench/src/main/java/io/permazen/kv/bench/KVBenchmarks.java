@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Command line entry point for the key/value benchmarks.
+ *
+ * <p>
+ * Accepts the usual JMH command line flags. Unless {@code -rf} or {@code -rff} is given, results are written
+ * in JSON format to {@value #DEFAULT_RESULT_FILE}, suitable for comparing implementations or successive releases.
+ *
+ * <p>
+ * For example, to compare LevelDB and RocksDB point reads:
+ * <pre>
+ *  java -jar permazen-kv-bench-benchmarks.jar ReadBenchmark.get -p backend=LEVELDB,ROCKSDB
+ * </pre>
+ */
+public final class KVBenchmarks {
+
+    /**
+     * Default result file.
+     */
+    public static final String DEFAULT_RESULT_FILE = "permazen-kv-bench.json";
+
+    private KVBenchmarks() {
+    }
+
+    /**
+     * Main entry point.
+     *
+     * @param args JMH command line arguments
+     * @throws IOException if an I/O error occurs
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws IOException, RunnerException {
+        final CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue() && !commandLine.getResult().hasValue())
+            options.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT_FILE);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,261 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared benchmark state: a started {@link KVDatabase} of the configured {@link KVBackend} type
+ * pre-populated with {@link #numKeys} data keys and {@link #numCounters} counter keys.
+ *
+ * <p>
+ * Data keys have the form {@code 0x10 + big-endian int}; counter keys have the form {@code 0x20 + big-endian int}.
+ * Benchmarks that remove keys should invoke {@link #populate} at the start of each iteration so that
+ * every iteration sees the same initial content.
+ */
+@State(Scope.Benchmark)
+public class KVDatabaseState {
+
+    /**
+     * Maximum number of times to retry a transaction.
+     */
+    public static final int MAX_RETRIES = 100;
+
+    /**
+     * Number of key/value pairs written per transaction when populating the database.
+     */
+    public static final int POPULATE_BATCH_SIZE = 1000;
+
+    private static final byte DATA_PREFIX = (byte)0x10;
+    private static final byte COUNTER_PREFIX = (byte)0x20;
+
+    @Param
+    public KVBackend backend;
+
+    @Param("10000")
+    public int numKeys;
+
+    @Param("100")
+    public int numCounters;
+
+    @Param("100")
+    public int valueSize;
+
+    private File dir;
+    private KVDatabase kvdb;
+
+// Lifecycle
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("permazen-kv-bench-" + this.backend.name().toLowerCase() + "-").toFile();
+        this.kvdb = this.backend.create(this.dir);
+        this.kvdb.start();
+        this.populate();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        try {
+            if (this.kvdb != null)
+                this.kvdb.stop();
+        } finally {
+            this.kvdb = null;
+            if (this.dir != null)
+                KVDatabaseState.deleteDirectory(this.dir.toPath());
+            this.dir = null;
+        }
+    }
+
+// Accessors
+
+    /**
+     * Get the database being benchmarked.
+     *
+     * @return started database
+     */
+    public KVDatabase getKVDatabase() {
+        return this.kvdb;
+    }
+
+// Data
+
+    /**
+     * (Re)write all data and counter keys to their initial values.
+     */
+    public void populate() {
+        for (int base = 0; base < this.numKeys; base += POPULATE_BATCH_SIZE) {
+            final int min = base;
+            final int max = Math.min(base + POPULATE_BATCH_SIZE, this.numKeys);
+            this.execute(tx -> {
+                for (int i = min; i < max; i++)
+                    tx.put(this.key(i), this.value(i));
+                return null;
+            });
+        }
+        this.execute(tx -> {
+            final byte[] zero = tx.encodeCounter(0);
+            for (int i = 0; i < this.numCounters; i++)
+                tx.put(this.counterKey(i), zero);
+            return null;
+        });
+    }
+
+    /**
+     * Get the data key with the given index.
+     *
+     * @param index key index
+     * @return data key
+     */
+    public byte[] key(int index) {
+        return KVDatabaseState.encode(DATA_PREFIX, index);
+    }
+
+    /**
+     * Get a randomly chosen existing data key.
+     *
+     * @return data key
+     */
+    public byte[] randomKey() {
+        return this.key(ThreadLocalRandom.current().nextInt(this.numKeys));
+    }
+
+    /**
+     * Get the counter key with the given index.
+     *
+     * @param index counter index
+     * @return counter key
+     */
+    public byte[] counterKey(int index) {
+        return KVDatabaseState.encode(COUNTER_PREFIX, index);
+    }
+
+    /**
+     * Get a randomly chosen existing counter key.
+     *
+     * @return counter key
+     */
+    public byte[] randomCounterKey() {
+        return this.counterKey(ThreadLocalRandom.current().nextInt(this.numCounters));
+    }
+
+    /**
+     * Build a value for the given key index.
+     *
+     * @param index key index
+     * @return value of length {@link #valueSize}
+     */
+    public byte[] value(int index) {
+        final byte[] value = new byte[this.valueSize];
+        for (int i = 0; i < value.length; i++)
+            value[i] = (byte)(index + i);
+        return value;
+    }
+
+    /**
+     * Get the upper bound (exclusive) of all data keys.
+     *
+     * @return data key range upper bound
+     */
+    public byte[] maxDataKey() {
+        return new byte[] { DATA_PREFIX + 1 };
+    }
+
+// Transactions
+
+    /**
+     * Perform the given action within a transaction, retrying as necessary.
+     *
+     * @param action transaction action
+     * @param <R> action result type
+     * @return result of {@code action}
+     * @throws RetryTransactionException if the transaction fails {@link #MAX_RETRIES} times
+     */
+    public <R> R execute(Function<? super KVTransaction, R> action) {
+        return this.execute(action, null);
+    }
+
+    /**
+     * Perform the given action within a transaction, retrying as necessary and recording the outcome.
+     *
+     * @param action transaction action
+     * @param counters counters to update, or null for none
+     * @param <R> action result type
+     * @return result of {@code action}
+     * @throws RetryTransactionException if the transaction fails {@link #MAX_RETRIES} times
+     */
+    public <R> R execute(Function<? super KVTransaction, R> action, TransactionCounters counters) {
+        RetryTransactionException retry = null;
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            final KVTransaction tx = this.kvdb.createTransaction();
+            boolean success = false;
+            try {
+                final R result = action.apply(tx);
+                tx.commit();
+                success = true;
+                if (counters != null)
+                    counters.commits++;
+                return result;
+            } catch (RetryTransactionException e) {
+                if (counters != null)
+                    counters.retries++;
+                retry = e;
+            } finally {
+                if (!success)
+                    tx.rollback();
+            }
+        }
+        throw retry;
+    }
+
+// Internal methods
+
+    private static byte[] encode(byte prefix, int index) {
+        final ByteWriter writer = new ByteWriter(5);
+        writer.writeByte(prefix);
+        ByteUtil.writeInt(writer, index);
+        return writer.getBytes();
+    }
+
+    private static void deleteDirectory(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null)
+                    throw e;
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
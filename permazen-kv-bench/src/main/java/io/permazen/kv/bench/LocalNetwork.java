@@ -0,0 +1,95 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.dellroad.stuff.net.Network;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process {@link Network} used to connect the nodes of a local Raft cluster.
+ *
+ * <p>
+ * Messages are delivered in order, without delay or loss, on a per-recipient thread. Peers are addressed by identity.
+ */
+class LocalNetwork implements Network {
+
+    private static final HashMap<String, LocalNetwork> NETWORK = new HashMap<>();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final String identity;
+
+    private ExecutorService executor;
+    private Handler handler;
+
+    LocalNetwork(String identity) {
+        Preconditions.checkArgument(identity != null, "null identity");
+        this.identity = identity;
+    }
+
+    @Override
+    public void start(Handler handler) throws IOException {
+        Preconditions.checkArgument(handler != null, "null handler");
+        synchronized (NETWORK) {
+            Preconditions.checkState(this.handler == null, "already started");
+            Preconditions.checkState(!NETWORK.containsKey(this.identity),
+              "network identity \"" + this.identity + "\" already in use");
+            NETWORK.put(this.identity, this);
+            this.handler = handler;
+            this.executor = Executors.newSingleThreadExecutor();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (NETWORK) {
+            if (this.handler == null)
+                return;
+            this.handler = null;
+            this.executor.shutdown();
+            this.executor = null;
+            NETWORK.remove(this.identity);
+        }
+    }
+
+    @Override
+    public boolean send(final String peer, final ByteBuffer msg) {
+        synchronized (NETWORK) {
+            if (this.handler == null)
+                return false;
+            final LocalNetwork target = NETWORK.get(peer);
+            if (target == null)
+                return false;
+            final ByteBuffer copy = msg.asReadOnlyBuffer();
+            target.executor.execute(() -> target.deliver(h -> h.handle(this.identity, copy)));
+            this.executor.execute(() -> this.deliver(h -> h.outputQueueEmpty(peer)));
+        }
+        return true;
+    }
+
+    private void deliver(Consumer<Handler> action) {
+        final Handler myHandler;
+        synchronized (NETWORK) {
+            myHandler = this.handler;
+        }
+        if (myHandler == null)
+            return;
+        try {
+            action.accept(myHandler);
+        } catch (Throwable t) {
+            this.log.error("error in network callback (\"" + this.identity + "\")", t);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.array.AtomicArrayKVStore;
+import io.permazen.kv.raft.RaftKVDatabase;
+import io.permazen.kv.raft.RaftKVTransaction;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * A {@link KVDatabase} backed by an in-process {@link RaftKVDatabase} cluster whose nodes communicate
+ * via a {@link LocalNetwork}.
+ *
+ * <p>
+ * All transactions are created on the first node. Because that node starts the cluster, it is normally the leader;
+ * transactions therefore measure leader-side commit cost including replication to a majority of followers.
+ */
+class LocalRaftCluster implements KVDatabase {
+
+    private static final int MAX_CONFIG_ATTEMPTS = 100;
+
+    private final RaftKVDatabase[] nodes;
+
+    /**
+     * Constructor.
+     *
+     * @param dir top level directory for node state
+     * @param numNodes number of nodes in the cluster
+     */
+    LocalRaftCluster(File dir, int numNodes) {
+        Preconditions.checkArgument(dir != null, "null dir");
+        Preconditions.checkArgument(numNodes > 0, "numNodes <= 0");
+        this.nodes = new RaftKVDatabase[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            final String name = "node" + i;
+            final File nodeDir = new File(dir, name);
+            final File kvDir = new File(nodeDir, "kvstore");
+            Preconditions.checkState(kvDir.mkdirs(), "can't create directory " + kvDir);
+            final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+            kvstore.setDirectory(kvDir);
+            this.nodes[i] = new RaftKVDatabase();
+            this.nodes[i].setKVStore(kvstore);
+            this.nodes[i].setLogDirectory(nodeDir);
+            this.nodes[i].setNetwork(new LocalNetwork(name));
+            this.nodes[i].setIdentity(name);
+        }
+    }
+
+// KVDatabase
+
+    @Override
+    public void start() {
+        for (RaftKVDatabase node : this.nodes)
+            node.start();
+        for (RaftKVDatabase node : this.nodes)
+            this.addNode(node.getIdentity());
+    }
+
+    @Override
+    public void stop() {
+        for (RaftKVDatabase node : this.nodes)
+            node.stop();
+    }
+
+    @Override
+    public KVTransaction createTransaction() {
+        return this.nodes[0].createTransaction();
+    }
+
+    @Override
+    public KVTransaction createTransaction(Map<String, ?> options) {
+        return this.nodes[0].createTransaction(options);
+    }
+
+// Internal methods
+
+    private void addNode(String identity) {
+        for (int attempt = 0; attempt < MAX_CONFIG_ATTEMPTS; attempt++) {
+            final RaftKVTransaction tx = this.nodes[0].createTransaction();
+            try {
+                tx.configChange(identity, identity);
+                tx.commit();
+                return;
+            } catch (RetryTransactionException e) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e2) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while configuring cluster", e2);
+                }
+            }
+        }
+        throw new RuntimeException("failed to add node \"" + identity + "\" to cluster");
+    }
+}
@@ -0,0 +1,94 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.KVPair;
+import io.permazen.util.CloseableIterator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Read-only workloads: point gets and forward/reverse range scans.
+ *
+ * <p>
+ * Each invocation runs one transaction performing {@link #BATCH_SIZE} operations, and results are reported per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    /**
+     * Number of reads per transaction.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    /**
+     * Number of key/value pairs read per range scan.
+     */
+    public static final int SCAN_LENGTH = 100;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void get(KVDatabaseState state, Blackhole blackhole) {
+        state.execute(tx -> {
+            tx.setReadOnly(true);
+            for (int i = 0; i < BATCH_SIZE; i++)
+                blackhole.consume(tx.get(state.randomKey()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void getMissing(KVDatabaseState state, Blackhole blackhole) {
+        state.execute(tx -> {
+            tx.setReadOnly(true);
+            for (int i = 0; i < BATCH_SIZE; i++)
+                blackhole.consume(tx.get(state.key(state.numKeys + i)));
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCAN_LENGTH)
+    public void getRange(KVDatabaseState state, Blackhole blackhole) {
+        this.scan(state, blackhole, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCAN_LENGTH)
+    public void getRangeReverse(KVDatabaseState state, Blackhole blackhole) {
+        this.scan(state, blackhole, true);
+    }
+
+    private void scan(KVDatabaseState state, Blackhole blackhole, boolean reverse) {
+        final int start = ThreadLocalRandom.current().nextInt(Math.max(1, state.numKeys - SCAN_LENGTH));
+        final byte[] minKey = state.key(start);
+        final byte[] maxKey = state.key(start + SCAN_LENGTH);
+        state.execute(tx -> {
+            tx.setReadOnly(true);
+            try (final CloseableIterator<KVPair> i = tx.getRange(minKey, maxKey, reverse)) {
+                while (i.hasNext())
+                    blackhole.consume(i.next());
+            }
+            return null;
+        });
+    }
+}
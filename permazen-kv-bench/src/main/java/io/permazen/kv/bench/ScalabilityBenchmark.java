@@ -0,0 +1,205 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import io.permazen.kv.mvcc.LockManager;
+import io.permazen.kv.mvcc.LockOwner;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput as a function of the number of concurrent threads, from one to 64.
+ *
+ * <p>
+ * The {@code transactions} benchmark runs short transactions of {@link #opsPerTransaction} reads and writes of random data
+ * keys; with the {@code SIMPLE} backend, this measures {@link io.permazen.kv.simple.SimpleKVDatabase} and its
+ * {@link LockManager}. The {@code lockManager} benchmark measures a {@link LockManager} by itself: each invocation acquires
+ * {@link #opsPerTransaction} locks on random keys, {@link #writePercent} percent of them write locks, and then releases them.
+ * Running the latter with {@code numStripes=1} approximates a single, unstriped lock.
+ *
+ * <p>
+ * JMH runs each benchmark with a fixed number of threads, so {@link #main main()} runs this class once for each
+ * of the {@link #THREAD_COUNTS} and then prints a summary showing the speedup relative to one thread. JMH command
+ * line flags are passed through; the {@code backend} parameter defaults to {@code SIMPLE}. For example:
+ * <pre>
+ *  java -cp permazen-kv-bench-benchmarks.jar io.permazen.kv.bench.ScalabilityBenchmark -p numStripes=1,32
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScalabilityBenchmark {
+
+    /**
+     * The thread counts used by {@link #main main()}.
+     */
+    public static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    @Param("4")
+    public int opsPerTransaction;
+
+    @Param("20")
+    public int writePercent;
+
+    @Benchmark
+    public void transactions(KVDatabaseState state, TransactionCounters counters, Blackhole blackhole) {
+        state.execute(tx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < this.opsPerTransaction; i++) {
+                final byte[] key = state.randomKey();
+                if (random.nextInt(100) < this.writePercent)
+                    tx.put(key, state.value(i));
+                else
+                    blackhole.consume(tx.get(key));
+            }
+            return null;
+        }, counters);
+    }
+
+    @Benchmark
+    public boolean lockManager(LockManagerState state) throws InterruptedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final LockOwner owner = new LockOwner();
+        try {
+            for (int i = 0; i < this.opsPerTransaction; i++) {
+                final int index = random.nextInt(LockManagerState.NUM_KEYS);
+                final boolean write = random.nextInt(100) < this.writePercent;
+                final LockManager.LockResult result = state.lockManager.lock(owner,
+                  state.keys[index], state.nextKeys[index], write, LockManagerState.WAIT_TIMEOUT);
+                if (result != LockManager.LockResult.SUCCESS)
+                    return false;
+            }
+            return true;
+        } finally {
+            state.lockManager.release(owner);
+        }
+    }
+
+    /**
+     * Main entry point.
+     *
+     * @param args JMH command line arguments
+     * @throws IOException if an I/O error occurs
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws IOException, RunnerException {
+        final CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // Run benchmarks for each thread count
+        final Map<String, TreeMap<Integer, Double>> scores = new LinkedHashMap<>();
+        for (int threads : THREAD_COUNTS) {
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+              .parent(commandLine)
+              .include(ScalabilityBenchmark.class.getName())
+              .threads(threads);
+            if (!commandLine.getParameter("backend").hasValue())
+                options.param("backend", KVBackend.SIMPLE.name());
+            final Collection<RunResult> results = new Runner(options.build()).run();
+            for (RunResult result : results) {
+                final String key = ScalabilityBenchmark.describe(result.getParams());
+                scores.computeIfAbsent(key, k -> new TreeMap<>()).put(threads, result.getPrimaryResult().getScore());
+            }
+        }
+
+        // Print summary
+        System.out.println();
+        System.out.println(String.format("%-64s %8s %16s %8s", "Benchmark", "Threads", "Ops/sec", "Speedup"));
+        for (Map.Entry<String, TreeMap<Integer, Double>> entry : scores.entrySet()) {
+            final double base = entry.getValue().firstEntry().getValue();
+            for (Map.Entry<Integer, Double> score : entry.getValue().entrySet()) {
+                System.out.println(String.format("%-64s %8d %16.1f %8.2f",
+                  entry.getKey(), score.getKey(), score.getValue(), score.getValue() / base));
+            }
+        }
+    }
+
+    private static String describe(BenchmarkParams params) {
+        final String benchmark = params.getBenchmark();
+        final StringBuilder buf = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.') + 1));
+        for (String name : params.getParamsKeys())
+            buf.append(' ').append(name).append('=').append(params.getParam(name));
+        return buf.toString();
+    }
+
+// LockManagerState
+
+    /**
+     * State for the {@code lockManager} benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class LockManagerState {
+
+        /**
+         * Number of distinct keys locked.
+         */
+        public static final int NUM_KEYS = 100000;
+
+        /**
+         * Lock wait timeout in milliseconds.
+         */
+        public static final long WAIT_TIMEOUT = 100;
+
+        @Param({ "1", "32" })
+        public int numStripes;
+
+        final byte[][] keys = new byte[NUM_KEYS][];
+        final byte[][] nextKeys = new byte[NUM_KEYS][];
+
+        LockManager lockManager;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            this.lockManager = new LockManager(this.numStripes);
+            for (int i = 0; i < NUM_KEYS; i++) {
+                final ByteWriter writer = new ByteWriter(5);
+                writer.writeByte(0x10);
+                ByteUtil.writeInt(writer, i);
+                this.keys[i] = writer.getBytes();
+                this.nextKeys[i] = ByteUtil.getNextKey(this.keys[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Whole-transaction workloads measured in committed transactions per second.
+ *
+ * <p>
+ * The {@code mixed} benchmark runs transactions of {@link #opsPerTransaction} random reads and writes, with the write
+ * fraction given by {@link #writePercent}, from several threads. The {@code conflicting} group runs read-modify-write
+ * transactions from competing threads against a small set of {@link #hotKeys} keys, so most of them conflict;
+ * the {@link TransactionCounters} secondary results show how many retries this causes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+
+    @Param("10")
+    public int opsPerTransaction;
+
+    @Param("20")
+    public int writePercent;
+
+    @Param("4")
+    public int hotKeys;
+
+    @Benchmark
+    @Threads(4)
+    public void mixed(KVDatabaseState state, TransactionCounters counters, Blackhole blackhole) {
+        state.execute(tx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < this.opsPerTransaction; i++) {
+                final byte[] key = state.randomKey();
+                if (random.nextInt(100) < this.writePercent)
+                    tx.put(key, state.value(i));
+                else
+                    blackhole.consume(tx.get(key));
+            }
+            return null;
+        }, counters);
+    }
+
+    @Benchmark
+    @Group("conflicting")
+    @GroupThreads(4)
+    public void conflicting(KVDatabaseState state, TransactionCounters counters) {
+        state.execute(tx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < this.opsPerTransaction; i++) {
+                final byte[] key = state.key(random.nextInt(this.hotKeys));
+                final byte[] value = tx.get(key);
+                if (value != null && value.length > 0)
+                    value[0]++;
+                tx.put(key, value != null ? value : state.value(i));
+            }
+            return null;
+        }, counters);
+    }
+}
@@ -0,0 +1,31 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread counts of committed and retried transactions, reported by JMH as secondary results.
+ *
+ * @see KVDatabaseState#execute(java.util.function.Function, TransactionCounters)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class TransactionCounters {
+
+    public long commits;
+    public long retries;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.commits = 0;
+        this.retries = 0;
+    }
+}
@@ -0,0 +1,98 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write workloads: {@code put()}, {@code remove()}, {@code removeRange()}, and {@code adjustCounter()}.
+ *
+ * <p>
+ * Each invocation runs (and commits) one transaction performing {@link #BATCH_SIZE} operations,
+ * and results are reported per operation. The database is re-populated before each iteration
+ * so removals always start from the same content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    /**
+     * Number of mutations per transaction.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    /**
+     * Number of keys removed by each {@code removeRange()}.
+     */
+    public static final int RANGE_LENGTH = 10;
+
+    @Setup(Level.Iteration)
+    public void repopulate(KVDatabaseState state) {
+        state.populate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void put(KVDatabaseState state) {
+        final byte[] value = state.value(ThreadLocalRandom.current().nextInt());
+        state.execute(tx -> {
+            for (int i = 0; i < BATCH_SIZE; i++)
+                tx.put(state.randomKey(), value);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void remove(KVDatabaseState state) {
+        state.execute(tx -> {
+            for (int i = 0; i < BATCH_SIZE; i++)
+                tx.remove(state.randomKey());
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void removeRange(KVDatabaseState state) {
+        state.execute(tx -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final int start = random.nextInt(Math.max(1, state.numKeys - RANGE_LENGTH));
+                tx.removeRange(state.key(start), state.key(start + RANGE_LENGTH));
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void adjustCounter(KVDatabaseState state) {
+        state.execute(tx -> {
+            for (int i = 0; i < BATCH_SIZE; i++)
+                tx.adjustCounter(state.randomCounterKey(), 1);
+            return null;
+        });
+    }
+}
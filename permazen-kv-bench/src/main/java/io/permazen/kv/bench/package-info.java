@@ -0,0 +1,14 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * JMH benchmarks for the various {@link io.permazen.kv.KVDatabase} implementations.
+ *
+ * <p>
+ * Each benchmark is parameterized by {@link io.permazen.kv.bench.KVBackend} so the same workload can be compared
+ * across implementations. Run {@link io.permazen.kv.bench.KVBenchmarks} (the {@code -benchmarks} JAR's main class)
+ * to execute them; results are written in JSON format by default.
+ */
+package io.permazen.kv.bench;
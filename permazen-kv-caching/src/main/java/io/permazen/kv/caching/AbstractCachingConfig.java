@@ -17,6 +17,7 @@ public abstract class AbstractCachingConfig implements CachingConfig {
     long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
     double waitFactor = DEFAULT_WAIT_FACTOR;
     boolean readAhead = DEFAULT_READ_AHEAD;
+    EvictionPolicy evictionPolicy = DEFAULT_EVICTION_POLICY;
 
     /**
      * Constructor.
@@ -78,4 +79,15 @@ public abstract class AbstractCachingConfig implements CachingConfig {
     public synchronized void setReadAhead(boolean readAhead) {
         this.readAhead = readAhead;
     }
+
+    @Override
+    public synchronized EvictionPolicy getEvictionPolicy() {
+        return this.evictionPolicy;
+    }
+
+    @Override
+    public synchronized void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        Preconditions.checkArgument(evictionPolicy != null, "null evictionPolicy");
+        this.evictionPolicy = evictionPolicy;
+    }
 }
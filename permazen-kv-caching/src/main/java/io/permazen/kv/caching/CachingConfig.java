@@ -49,6 +49,13 @@ public interface CachingConfig {
      */
     boolean DEFAULT_READ_AHEAD = true;
 
+    /**
+     * Default eviction policy ({@link EvictionPolicy#LRU}).
+     *
+     * @see #getEvictionPolicy
+     */
+    EvictionPolicy DEFAULT_EVICTION_POLICY = EvictionPolicy.LRU;
+
     /**
      * Get the maximum number of bytes to cache in a single contiguous range of key/value pairs.
      *
@@ -161,6 +168,28 @@ public interface CachingConfig {
      */
     void setReadAhead(boolean readAhead);
 
+    /**
+     * Get the policy for choosing which ranges to discard when the cache exceeds its limits.
+     *
+     * <p>
+     * Default is {@link EvictionPolicy#LRU}.
+     *
+     * @return eviction policy
+     */
+    EvictionPolicy getEvictionPolicy();
+
+    /**
+     * Configure the policy for choosing which ranges to discard when the cache exceeds its limits.
+     *
+     * <p>
+     * The available policies are the values of {@link EvictionPolicy}; custom policies are not supported.
+     * Default is {@link EvictionPolicy#LRU}.
+     *
+     * @param evictionPolicy eviction policy
+     * @throws IllegalArgumentException if {@code evictionPolicy} is null
+     */
+    void setEvictionPolicy(EvictionPolicy evictionPolicy);
+
     /**
      * Copy config parameters.
      *
@@ -173,5 +202,6 @@ public interface CachingConfig {
         dest.setMaxTotalBytes(this.getMaxTotalBytes());
         dest.setMaxRanges(this.getMaxRanges());
         dest.setReadAhead(this.isReadAhead());
+        dest.setEvictionPolicy(this.getEvictionPolicy());
     }
 }
@@ -28,6 +28,25 @@ import javax.annotation.PreDestroy;
  * <p>
  * See {@link CachingKVStore} for details on how caching is performed.
  *
+ * <p><b>Shared Cache</b></p>
+ *
+ * <p>
+ * Each transaction normally has its own private cache, so cached data is discarded at the end of every transaction.
+ * Optionally, instances may also maintain a database-wide cache of committed key/value ranges that is shared by all
+ * transactions; see {@link #setSharedCacheMaxBytes setSharedCacheMaxBytes()}. When a transaction that has not modified
+ * any data commits successfully, the ranges it loaded are published to the shared cache, provided no other transaction
+ * has committed any mutations in the meantime. Read-only transactions consult the shared cache before querying the
+ * underlying database. When a transaction commits mutations, all shared ranges it affects are discarded. Ranges in
+ * the shared cache are tagged with version numbers, so that a transaction never reads data published after it started.
+ *
+ * <p>
+ * Only transactions that are {@linkplain KVTransaction#setReadOnly read-only} read from the shared cache, because
+ * such reads bypass any conflict detection in the underlying database; a read-only transaction that has read shared
+ * data may not be set back to read-write. If the underlying database supports {@linkplain KVTransaction#watchRange
+ * range watches}, a watch is registered on each published range so that modifications made through other clients also
+ * invalidate it; otherwise, the shared cache assumes that the underlying database is not modified except through this
+ * instance. The shared cache also assumes that underlying transactions establish their snapshot when created.
+ *
  * <p><b>Consistency Assumptions</b></p>
  *
  * <p>
@@ -54,6 +73,13 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
      */
     public static final int DEFAULT_THREAD_POOL_SIZE = 10;
 
+    /**
+     * Default maximum size of the shared cache ({@value #DEFAULT_SHARED_CACHE_MAX_BYTES}, i.e., disabled).
+     *
+     * @see #setSharedCacheMaxBytes
+     */
+    public static final long DEFAULT_SHARED_CACHE_MAX_BYTES = 0;
+
     private static final double RTT_ESTIMATE_DECAY_FACTOR = 0.025;
 
     private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
@@ -62,10 +88,13 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
     private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
     private long initialRttEstimate = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_RTT_ESTIMATE_MILLIS);
     private ExecutorService executor;
+    private long sharedCacheMaxBytes = DEFAULT_SHARED_CACHE_MAX_BYTES;
 
     private boolean started;
     private boolean privateExecutor;
     private MovingAverage rtt;
+    private SharedRangeCache sharedCache;
+    private CachingStatistics statistics = CachingStatistics.EMPTY;
 
     /**
      * Default constructor.
@@ -200,6 +229,37 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
         this.threadPoolSize = threadPoolSize;
     }
 
+    /**
+     * Get the maximum total amount of key and value data to keep in the shared cache.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_SHARED_CACHE_MAX_BYTES}.
+     *
+     * @return maximum shared cache size in bytes, or zero if the shared cache is disabled
+     */
+    public synchronized long getSharedCacheMaxBytes() {
+        return this.sharedCacheMaxBytes;
+    }
+
+    /**
+     * Set the maximum total amount of key and value data to keep in the shared cache.
+     *
+     * <p>
+     * Set to zero to disable the shared cache. See the class description for details.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_SHARED_CACHE_MAX_BYTES}.
+     *
+     * @param sharedCacheMaxBytes maximum shared cache size in bytes, or zero to disable the shared cache
+     * @throws IllegalStateException if this instance is already started
+     * @throws IllegalArgumentException if {@code sharedCacheMaxBytes < 0}
+     */
+    public synchronized void setSharedCacheMaxBytes(long sharedCacheMaxBytes) {
+        Preconditions.checkArgument(sharedCacheMaxBytes >= 0, "sharedCacheMaxBytes < 0");
+        Preconditions.checkState(!this.started, "already started");
+        this.sharedCacheMaxBytes = sharedCacheMaxBytes;
+    }
+
 // Lifecycle
 
     @Override
@@ -217,6 +277,7 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
             });
         }
         this.rtt = new MovingAverage(RTT_ESTIMATE_DECAY_FACTOR, this.initialRttEstimate);
+        this.sharedCache = this.sharedCacheMaxBytes > 0 ? new SharedRangeCache(this.sharedCacheMaxBytes) : null;
         try {
             this.inner.start();
             this.started = true;
@@ -241,9 +302,22 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
                 this.executor.shutdown();
             this.executor = null;
         }
+        if (this.sharedCache != null) {
+            this.sharedCache.clear();
+            this.sharedCache = null;
+        }
         this.inner.stop();
     }
 
+    /**
+     * Get the shared cache, if any.
+     *
+     * @return shared cache, or null if this instance is not started or the shared cache is disabled
+     */
+    synchronized SharedRangeCache getSharedCache() {
+        return this.sharedCache;
+    }
+
 // Transactions
 
     @Override
@@ -258,7 +332,9 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
 
     protected synchronized CachingKVTransaction createTransaction(Supplier<? extends KVTransaction> innerTxCreator) {
         Preconditions.checkState(this.started, "not started");
-        return new CachingKVTransaction(this, innerTxCreator.get(), this.executor, (long)this.rtt.get());
+        final long sharedVersion = this.sharedCache != null ? this.sharedCache.getVersion() : 0;     // must precede snapshot
+        return new CachingKVTransaction(this, innerTxCreator.get(), this.executor, (long)this.rtt.get(),
+          this.sharedCache, sharedVersion);
     }
 
 // RTT estimate
@@ -277,4 +353,19 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
     synchronized void updateRttEstimate(double rtt) {
         this.rtt.add(rtt);
     }
+
+// Statistics
+
+    /**
+     * Get the caching statistics accumulated from all transactions that have completed.
+     *
+     * @return cumulative caching statistics
+     */
+    public synchronized CachingStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    synchronized void updateStatistics(CachingStatistics statistics) {
+        this.statistics = this.statistics.plus(statistics);
+    }
 }
@@ -6,13 +6,19 @@
 package io.permazen.kv.caching;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
+import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVException;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVPairIterator;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.kv.mvcc.MutableView;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.Writes;
 import io.permazen.kv.util.CloseableForwardingKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
@@ -24,11 +30,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -37,7 +48,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A caching layer for read-only {@link KVStore}'s that have high latency for individual reads but low
+ * A caching layer for {@link KVStore}'s that have high latency for individual reads but low
  * latency for consecutive key/value pairs in a {@link KVStore#getRange KVStore.getRange()} range read.
  *
  * <p>
@@ -70,13 +81,25 @@ import org.slf4j.LoggerFactory;
  * Instances are configured with limits on {@linkplain #setMaxRanges the maximum number of contiguous key/value ranges},
  * {@linkplain #setMaxRangeBytes the maximum amount of data to preload into a single contiguous key/value range},
  * and {@linkplain #setMaxTotalBytes the maximum total amount of data to cache}. Once these limits are exceeded,
- * stored ranges are discarded on a least-recently-used basis.
+ * stored ranges are discarded according to the configured {@linkplain #setEvictionPolicy eviction policy}:
+ * by default, on a least-recently-used basis. Hit ratio and related {@linkplain #getStatistics statistics}
+ * are available.
+ *
+ * <p><b>Mutations</b></p>
+ *
+ * <p>
+ * Instances may be modified. Mutations are recorded in a private {@link MutableView} overlay on top of the cache,
+ * so reads observe prior writes, and they are pushed down to the underlying {@link KVStore} by {@link #flush},
+ * typically just before the underlying transaction is committed. At that time, each cached range that intersects the
+ * mutations is updated in place, or discarded if it was still being loaded; background loads heading into mutated
+ * key ranges are stopped. Mutations that are never flushed are simply discarded. While there are no outstanding
+ * mutations, reads are served directly from the cache.
  *
  * <p><b>Consistency Assumptions</b></p>
  *
  * <p>
- * This class assumes the underlying key/value store is read-only and unchanging, so that cached values are always
- * up-to-date. Attempts to modify the key/value store will result in an {@link UnsupportedOperationException}.
+ * This class assumes the underlying key/value store is not modified except through this instance, so that cached
+ * values are always up-to-date.
  *
  * <p>
  * <b>Warning:</b> this class assumes that the underlying {@link KVStore} provides fully consistent
@@ -196,14 +219,13 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
     private static final float ARRAY_GROWTH_FACTOR = 1.5f;
 
     private static final Comparator<KVRange> SORT_BY_MIN
-      = Comparator.nullsLast(Comparator.comparing(KVRange::getMin, ByteUtil.COMPARATOR));
+      = Comparator.nullsLast(Comparator.comparing(KVRange::getMin, KeyRange::compare));
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final MovingAverage rtt;                                            // estimation of time to load first key in range
     private final ExecutorService executor;                                     // executor for async loading tasks
     private final TreeSet<KVRange> ranges = new TreeSet<>(SORT_BY_MIN);         // ranges ordered by key range minimum
-    private final RingEntry<KVRange> lru = new RingEntry<>(null);               // ranges ordered by recency (MRU first, LRU last)
 
     // CachingConfig
     private int maxRanges = DEFAULT_MAX_RANGES;
@@ -211,9 +233,30 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
     private long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
     private boolean readAhead = DEFAULT_READ_AHEAD;
     private double waitFactor = DEFAULT_WAIT_FACTOR;
+    private EvictionPolicy evictionPolicy = DEFAULT_EVICTION_POLICY;
 
+    private Evictor<KVRange> evictor = DEFAULT_EVICTION_POLICY.createEvictor(KVRange::getTotalBytes);
     private long totalBytes;
     private KVException error;
+    private long epoch;                                                         // incremented by each flush()
+
+    // Statistics
+    private long hits;
+    private long misses;
+    private long loadedBytes;
+    private long evictions;
+    private long evictedBytes;
+
+    // Mutations
+    private final CacheView cacheView = new CacheView();                        // reads from cache only
+    private final Object writeLock = new Object();                              // serializes mutations vs. flush()
+    private volatile MutableView overlay;                                       // outstanding mutations, if any
+    private boolean flushing;                                                   // a flush() is in progress
+
+    // Shared cache
+    private SharedRangeCache sharedCache;                                       // shared cache to import ranges from, if any
+    private long sharedVersion;                                                 // shared cache version we're allowed to read
+    private boolean importedShared;                                             // whether we have imported any shared ranges
 
 // Constructors
 
@@ -273,6 +316,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
     public synchronized void setMaxTotalBytes(long maxTotalBytes) {
         Preconditions.checkArgument(maxTotalBytes > 0, "maxTotalBytes <= 0");
         this.maxTotalBytes = maxTotalBytes;
+        this.evictor.configure(this.maxRanges, this.maxTotalBytes);
     }
 
     @Override
@@ -284,6 +328,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
     public synchronized void setMaxRanges(int maxRanges) {
         Preconditions.checkArgument(maxRanges > 0, "maxRanges <= 0");
         this.maxRanges = maxRanges;
+        this.evictor.configure(this.maxRanges, this.maxTotalBytes);
     }
 
     @Override
@@ -308,52 +353,178 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         this.readAhead = readAhead;
     }
 
+    @Override
+    public synchronized EvictionPolicy getEvictionPolicy() {
+        return this.evictionPolicy;
+    }
+
+    @Override
+    public synchronized void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        Preconditions.checkArgument(evictionPolicy != null, "null evictionPolicy");
+        if (evictionPolicy == this.evictionPolicy)
+            return;
+        final Evictor<KVRange> newEvictor = evictionPolicy.createEvictor(KVRange::getTotalBytes);
+        newEvictor.configure(this.maxRanges, this.maxTotalBytes);
+        for (KVRange range : Lists.reverse(this.evictor.getItems())) {
+            this.evictor.remove(range.getEvictionNode());
+            newEvictor.add(range.getEvictionNode());
+        }
+        this.evictionPolicy = evictionPolicy;
+        this.evictor = newEvictor;
+    }
+
 // KVStore
 
     @Override
     public byte[] get(byte[] key) {
-        final KVPair pair = this.getAtLeast(key, ByteUtil.getNextKey(key));
-        return pair != null ? pair.getValue() : null;
+        return this.reader().get(key);
+    }
+
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        return this.reader().getMany(keys);
     }
 
     @Override
     public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
-        return new KVPairIterator(this, new KeyRange(minKey, maxKey), null, reverse);
+        return this.reader().getRange(minKey, maxKey, reverse);
     }
 
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
-        if (KeyRange.compare(minKey, maxKey) >= 0)
-            return null;
-        return this.find(minKey, maxKey, false);
+        return this.reader().getAtLeast(minKey, maxKey);
     }
 
     @Override
     public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
-        if (KeyRange.compare(minKey, maxKey) >= 0)
-            return null;
-        return this.find(maxKey, minKey, true);
+        return this.reader().getAtMost(maxKey, minKey);
+    }
+
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return this.reader().estimateSize(minKey, maxKey);
+    }
+
+    /**
+     * Asynchronously get the value associated with the given key, if any.
+     *
+     * <p>
+     * If the key is already cached, the returned future is already completed; otherwise, the future is completed
+     * by a background task after the key's range has been loaded. The calling thread is never blocked.
+     */
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        return this.reader().getAsync(key);
+    }
+
+    /**
+     * Asynchronously get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * The keys are loaded concurrently via {@link #getAsync getAsync()}. The calling thread is never blocked.
+     */
+    @Override
+    public CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+        return this.reader().getManyAsync(keys);
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the smallest key greater than or equal to the given minimum, if any.
+     *
+     * <p>
+     * The calling thread is never blocked.
+     */
+    @Override
+    public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        return this.reader().getAtLeastAsync(minKey, maxKey);
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the largest key strictly less than the given maximum, if any.
+     *
+     * <p>
+     * The calling thread is never blocked.
+     */
+    @Override
+    public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        return this.reader().getAtMostAsync(maxKey, minKey);
+    }
+
+    /**
+     * Asynchronously retrieve a batch of key/value pairs from the specified range.
+     *
+     * <p>
+     * The batch is assembled from successive cache lookups, each of which may have to wait for a background
+     * range load. The calling thread is never blocked.
+     */
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        return this.reader().getRangeAsync(minKey, maxKey, reverse, limit);
     }
 
+    /**
+     * Put a key/value pair.
+     *
+     * <p>
+     * The mutation is recorded locally; it is not visible in the underlying {@link KVStore} until {@link #flush}.
+     */
     @Override
     public void put(byte[] key, byte[] value) {
-        throw new UnsupportedOperationException();
+        synchronized (this.writeLock) {
+            this.writer().put(key, value);
+        }
     }
 
+    /**
+     * Remove a key/value pair.
+     *
+     * <p>
+     * The mutation is recorded locally; it is not visible in the underlying {@link KVStore} until {@link #flush}.
+     */
     @Override
     public void remove(byte[] key) {
-        throw new UnsupportedOperationException();
+        synchronized (this.writeLock) {
+            this.writer().remove(key);
+        }
     }
 
+    /**
+     * Remove a range of key/value pairs.
+     *
+     * <p>
+     * The mutation is recorded locally; it is not visible in the underlying {@link KVStore} until {@link #flush}.
+     */
     @Override
     public void removeRange(byte[] minKey, byte[] maxKey) {
-        throw new UnsupportedOperationException();
+        synchronized (this.writeLock) {
+            this.writer().removeRange(minKey, maxKey);
+        }
+    }
+
+    /**
+     * Adjust a counter value.
+     *
+     * <p>
+     * The mutation is recorded locally; it is not visible in the underlying {@link KVStore} until {@link #flush}.
+     */
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        synchronized (this.writeLock) {
+            this.writer().adjustCounter(key, amount);
+        }
+    }
+
+    /**
+     * Apply mutations.
+     *
+     * <p>
+     * The mutations are recorded locally; they are not visible in the underlying {@link KVStore} until {@link #flush}.
+     */
+    @Override
+    public void apply(Mutations mutations) {
+        synchronized (this.writeLock) {
+            this.writer().apply(mutations);
+        }
     }
 
 // Closeable
@@ -381,6 +552,70 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
 
 // Other methods
 
+    /**
+     * Push any outstanding mutations down to the underlying {@link KVStore}.
+     *
+     * <p>
+     * After the mutations are applied, cached ranges intersecting them are updated in place if they were completely
+     * loaded beforehand, or else discarded, and background loads whose remaining key range intersects them are stopped.
+     * Mutations attempted by other threads while this method is executing block until it returns.
+     *
+     * <p>
+     * If the underlying {@link KVStore} throws an exception, it may have been partially modified. Because the mutations
+     * can't safely be applied again (e.g., counter adjustments), the outstanding mutations are discarded along with
+     * all cached data, so that this instance subsequently reflects whatever state the underlying {@link KVStore} is in.
+     *
+     * @return the mutations that were applied, or null if there were none
+     */
+    public Writes flush() {
+
+        // Grab outstanding mutations, if any, and block other writers
+        final MutableView mutations;
+        synchronized (this.writeLock) {
+            this.waitForFlush();
+            if ((mutations = this.overlay) == null)
+                return null;
+            this.flushing = true;
+        }
+
+        // Apply mutations and update cache
+        final Writes writes;
+        boolean success = false;
+        try {
+            writes = this.prepareFlush(mutations);
+
+            // Start a new epoch; any range data loaded from here on may or may not reflect the mutations
+            synchronized (this) {
+                this.epoch++;
+            }
+
+            // Apply mutations to the underlying store
+            if (this.log.isTraceEnabled())
+                this.trace("flush: applying {}", writes);
+            this.delegate().apply(writes);
+
+            // Update or discard affected ranges
+            synchronized (this) {
+                this.reconcile(writes);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                synchronized (this) {
+                    for (KVRange range : this.ranges)
+                        this.discard(range, false);
+                    this.ranges.clear();
+                }
+            }
+            synchronized (this.writeLock) {
+                this.overlay = null;
+                this.flushing = false;
+                this.writeLock.notifyAll();
+            }
+        }
+        return writes;
+    }
+
     /**
      * Get the current round trip time estimate.
      *
@@ -390,8 +625,159 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         return this.rtt.get();
     }
 
+    /**
+     * Get the cumulative caching statistics for this instance.
+     *
+     * @return caching statistics
+     */
+    public synchronized CachingStatistics getStatistics() {
+        return new CachingStatistics(this.hits, this.misses, this.loadedBytes, this.evictions, this.evictedBytes);
+    }
+
+// Shared cache
+
+    /**
+     * Configure a shared cache from which to import ranges that are not cached locally.
+     *
+     * <p>
+     * Only entries whose version is at most {@code sharedVersion} are imported.
+     *
+     * @param sharedCache shared cache, or null for none
+     * @param sharedVersion shared cache version as of the start of the associated transaction
+     * @throws IllegalStateException if {@code sharedCache} is null but shared ranges have already been imported
+     */
+    synchronized void setSharedCache(SharedRangeCache sharedCache, long sharedVersion) {
+        Preconditions.checkState(sharedCache != null || !this.importedShared, "shared cache data has already been read");
+        this.sharedCache = sharedCache;
+        this.sharedVersion = sharedVersion;
+    }
+
+    /**
+     * Copy the ranges loaded from the underlying {@link KVStore} for publication in a shared cache.
+     *
+     * <p>
+     * Ranges that were imported from a shared cache unchanged, and primordial ranges, are omitted.
+     *
+     * @param version version to assign the new entries
+     * @return shared cache entries
+     */
+    synchronized List<SharedRangeCache.Entry> exportRanges(long version) {
+        final ArrayList<SharedRangeCache.Entry> entries = new ArrayList<>();
+        for (KVRange range : this.ranges) {
+            if (range.isPrimordial() || range.isImported())
+                continue;
+            entries.add(new SharedRangeCache.Entry(range.getMin(), range.getMax(),
+              range.copyKeys(), range.copyVals(), version));
+        }
+        return entries;
+    }
+
 // Internal methods
 
+    // Get the store to read from: the overlay if there are outstanding mutations, otherwise the cache directly
+    private KVStore reader() {
+        final MutableView mutations = this.overlay;
+        return mutations != null ? mutations : this.cacheView;
+    }
+
+    // Get the overlay for recording mutations, creating it on demand
+    private MutableView writer() {
+        assert Thread.holdsLock(this.writeLock);
+        this.waitForFlush();
+        if (this.overlay == null)
+            this.overlay = new MutableView(this.cacheView, null, new Writes());
+        return this.overlay;
+    }
+
+    // Get the mutations to flush, and make the overlay safe to read while they are applied underneath it. Readers keep
+    // using the overlay until the flush completes, during which time the underlying store and cached ranges may or may
+    // not reflect the mutations. Puts and removes read the same either way, but counter adjustments would be applied
+    // twice, so we replace them in the overlay with puts of their pre-flush results while the base is still unchanged.
+    private Writes prepareFlush(MutableView mutations) {
+        assert this.flushing;
+        final Writes writes;
+        synchronized (mutations) {
+            if (mutations.getWrites().getAdjusts().isEmpty())
+                return mutations.getWrites();
+            writes = mutations.getWrites().clone();
+        }
+        for (byte[] key : writes.getAdjusts().keySet()) {
+            final byte[] value = mutations.get(key);
+            if (value != null)
+                mutations.put(key, value);
+        }
+        return writes;
+    }
+
+    private void waitForFlush() {
+        assert Thread.holdsLock(this.writeLock);
+        boolean interrupted = false;
+        while (this.flushing) {
+            try {
+                this.writeLock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    // Update or discard ranges affected by mutations that have just been applied to the underlying store
+    private void reconcile(Writes writes) {
+        assert Thread.holdsLock(this);
+        for (KVRange range : new ArrayList<>(this.ranges)) {
+
+            // Stop loaders whose remaining key range intersects the mutations
+            for (boolean reverse : new boolean[] { false, true }) {
+                final Loader loader = range.getLoader(reverse);
+                if (loader != null && (reverse ?
+                  CachingKVStore.intersects(writes, loader.getLimit(), loader.getBase()) :
+                  CachingKVStore.intersects(writes, loader.getBase(), loader.getLimit()))) {
+                    if (this.log.isTraceEnabled())
+                        this.trace("flush: stopping {}", loader);
+                    loader.stop();
+                }
+            }
+
+            // Unaffected ranges stay as-is, except primordial ranges which must always have a loader
+            final boolean loading = range.getLoader(false) != null || range.getLoader(true) != null;
+            if (!CachingKVStore.intersects(writes, range.getMin(), range.getMax())) {
+                if (range.isPrimordial() && !loading)
+                    this.discard(range, true);
+                continue;
+            }
+
+            // Discard ranges whose data may have been loaded while the mutations were being applied; otherwise update
+            if (loading || range.getLoadEpoch() == this.epoch) {
+                if (this.log.isTraceEnabled())
+                    this.trace("flush: discarding {}", range);
+                this.discard(range, true);
+                continue;
+            }
+            if (this.log.isTraceEnabled())
+                this.trace("flush: updating {}", range);
+            this.totalBytes -= range.getTotalBytes();
+            range.apply(writes);
+            this.totalBytes += range.getTotalBytes();
+        }
+        assert this.sanityCheck();
+        this.scrub();
+    }
+
+    // Determine whether any mutation affects the given key range
+    static boolean intersects(Writes writes, byte[] min, byte[] max) {
+        if (KeyRange.compare(min, max) >= 0)
+            return false;
+        return writes.getRemoves().intersects(new KeyRange(min, max))
+          || !CachingKVStore.subMap(writes.getPuts(), min, max).isEmpty()
+          || !CachingKVStore.subMap(writes.getAdjusts(), min, max).isEmpty();
+    }
+
+    private static <V> NavigableMap<byte[], V> subMap(NavigableMap<byte[], V> map, byte[] min, byte[] max) {
+        return max != null ? map.subMap(min, true, max, false) : map.tailMap(min, true);
+    }
+
     private KVPair find(byte[] start, final byte[] limit, final boolean reverse) {
 
         // Sanity check
@@ -399,277 +785,440 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         assert limit != null || !reverse;
 
         // Determine limit on how long we'll wait for some existing load operation before starting our own
-        long waitTimeRemain;
+        final Search search;
         synchronized (this) {
             assert this.sanityCheck();
-            waitTimeRemain = (long)(this.waitFactor * this.rtt.get());
+            search = new Search(start, limit, reverse, (long)(this.waitFactor * this.rtt.get()));
         }
-        assert waitTimeRemain >= 0;
 
         // Loop until we have an answer
-        long lastLoopTime = System.nanoTime();
-        boolean interrupted = false;
         while (true) {
-            Future<?> future;
+            final Future<?> future;
             synchronized (this) {
+                if (this.searchStep(search))
+                    return search.result;
+                future = search.future;
+            }
 
-                // Check for error
-                if (this.error != null)
-                    this.error.rethrow();
+            // Wait for loader to report progress, then try again
+            try {
+                future.get();
+                if (this.log.isTraceEnabled())
+                    this.trace("find: start={} limit={} woke up", ByteUtil.toString(search.start), ByteUtil.toString(search.limit));
+            } catch (CancellationException e) {                                                 // loader was stopped
+                if (this.log.isTraceEnabled()) {
+                    this.trace("find: start={} limit={} woke up - {}",
+                      ByteUtil.toString(search.start), ByteUtil.toString(search.limit), "canceled");
+                }
+            } catch (ExecutionException e) {
+                if (this.log.isTraceEnabled()) {
+                    this.trace("find: start={} limit={} woke up - {}",
+                      ByteUtil.toString(search.start), ByteUtil.toString(search.limit), (Object)e.getCause());
+                }
+                synchronized (this) {
+                    if (this.error == null) {                                                       // this should never happen
+                        final Throwable cause = e.getCause();
+                        this.error = cause instanceof KVException ? (KVException)cause : new KVException(cause);
+                    }
+                    throw this.error.rethrow();
+                }
+            } catch (InterruptedException e) {
+                if (this.log.isTraceEnabled()) {
+                    this.trace("find: start={} limit={} woke up - {}",
+                      ByteUtil.toString(search.start), ByteUtil.toString(search.limit), "interrupted");
+                }
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CompletableFuture<KVPair> findAsync(byte[] start, final byte[] limit, final boolean reverse) {
 
-                // Sanity check
-                assert this.sanityCheck();
+        // Sanity check
+        assert start != null || reverse;
+        assert limit != null || !reverse;
 
-                // Update wait time remaining
-                final long now = System.nanoTime();
-                final long elapsed = now - lastLoopTime;
-                waitTimeRemain = Math.max(0, waitTimeRemain - elapsed);
-                lastLoopTime = now;
+        // Start search
+        final CompletableFuture<KVPair> result = new CompletableFuture<>();
+        final Search search;
+        synchronized (this) {
+            assert this.sanityCheck();
+            search = new Search(start, limit, reverse, (long)(this.waitFactor * this.rtt.get()));
+        }
+        this.continueSearch(search, result);
+        return result;
+    }
 
-                // Debug
-                if (this.log.isTraceEnabled()) {
-                    this.trace("find: start={} limit={} {} remain={}ms ranges={}", ByteUtil.toString(start),
-                      ByteUtil.toString(limit), reverse ? "reverse" : "forward", waitTimeRemain / 1000000L, this.ranges);
+    // Advance the given search as far as possible without blocking; when we must wait, resume when the loader makes progress
+    private void continueSearch(final Search search, final CompletableFuture<KVPair> result) {
+        final CompletableFuture<?> future;
+        try {
+            synchronized (this) {
+                if (this.searchStep(search)) {
+                    result.complete(search.result);
+                    return;
                 }
+                future = search.future;
+            }
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+            return;
+        }
 
-                // Find the closest range whose minimum is <= start (if forward), or whose maximum is >= start (if reverse).
-                // We may have to do an extra step in the reverse case because ranges are sorted by minimum, not maximum.
-                KVRange range = this.last(start != null ? this.ranges.headSet(this.key(start), true) : this.ranges);
-                if (reverse && range != null) {
-                    if (KeyRange.compare(range.getMax(), start) < 0 && start != null) {
-                        range = this.first(this.ranges.tailSet(this.key(start), true));
-                        assert range == null || KeyRange.compare(range.getMax(), start) >= 0;
-                    }
+        // Resume in a separate task; loaders complete their futures while holding our lock
+        future.whenCompleteAsync((ignore, e) -> {
+            if (e instanceof CompletionException && e.getCause() != null)
+                e = e.getCause();
+            if (e != null && !(e instanceof CancellationException)) {
+                if (this.log.isTraceEnabled()) {
+                    this.trace("find: start={} limit={} woke up - {}",
+                      ByteUtil.toString(search.start), ByteUtil.toString(search.limit), e);
+                }
+                synchronized (this) {
+                    if (this.error == null)                                                         // this should never happen
+                        this.error = e instanceof KVException ? (KVException)e : new KVException(e);
+                    result.completeExceptionally(this.error.duplicate());
                 }
+                return;
+            }
+            this.continueSearch(search, result);
+        }, this.executor);
+    }
 
-                // If we found one, investigate to determine what to do
-                Loader loader = null;
-                if (range != null) {
-
-                    // We have a candidate range
-                    assert reverse ?
-                      KeyRange.compare(start, range.getMax()) <= 0 :
-                      KeyRange.compare(start, range.getMin()) >= 0;
-
-                    // See if it contains the start of our search
-                    final boolean rangeContainsStart = reverse ?
-                      KeyRange.compare(start, range.getMin()) > 0 :
-                      KeyRange.compare(start, range.getMax()) < 0;
-                    if (rangeContainsStart) {
-
-                        // Search range for key/value pair
-                        KVPair pair = reverse ? range.getAtMost(start) : range.getAtLeast(start);
-
-                        // See if range also contains the limit of our search
-                        final boolean rangeContainsLimit = reverse ?
-                          KeyRange.compare(limit, range.getMin()) >= 0 :
-                          KeyRange.compare(limit, range.getMax()) <= 0;
-
-                        // Ignore any pair that's past the limit
-                        if (pair != null && rangeContainsLimit) {
-                            final boolean pairWithinLimit = reverse ?
-                              KeyRange.compare(pair.getKey(), limit) >= 0 :
-                              KeyRange.compare(pair.getKey(), limit) < 0;
-                            if (!pairWithinLimit)
-                                pair = null;
-                        }
+    // Perform one step of a search; return true if search has completed, or false if search.future must be waited on
+    private boolean searchStep(Search search) {
 
-                        // Return positive result if we know it
-                        if (pair != null || rangeContainsLimit) {
-                            if (this.log.isTraceEnabled()) {
-                                if (pair != null) {
-                                    this.trace("find: start={} limit={} found {}={} in range={}",
-                                      ByteUtil.toString(start), ByteUtil.toString(limit),
-                                      ByteUtil.toString(pair.getKey()), ByteUtil.toString(pair.getValue()), range);
-                                } else {
-                                    this.trace("find: start={} limit={} not found in range={}",
-                                      ByteUtil.toString(start), ByteUtil.toString(limit), range);
-                                }
-                            }
+        // Sanity check
+        assert Thread.holdsLock(this);
 
-                            // Keep range fresh
-                            this.touch(range);
-                            return pair;
-                        }
+        // Get search state
+        byte[] start = search.start;
+        final byte[] limit = search.limit;
+        final boolean reverse = search.reverse;
 
-                        // Nothing found in range, so shift our starting point past the empty space
-                        if (this.log.isTraceEnabled()) {
-                            this.trace("find: start={} limit={} not found in range={} -> new start={}",
-                              ByteUtil.toString(start), ByteUtil.toString(limit), range, reverse ? range.getMin() : range.getMax());
-                        }
-                        start = reverse ? range.getMin() : range.getMax();
-                    }
+        // Check for error
+        if (this.error != null)
+            this.error.rethrow();
 
-                    // Check whether our starting point exactly matches the edge of the adjacent range
-                    final boolean startOnEdge = KeyRange.compare(start, reverse ? range.getMin() : range.getMax()) == 0;
+        // Sanity check
+        assert this.sanityCheck();
+
+        // If the start of our search is not cached locally, try to import it from the shared cache
+        if (this.sharedCache != null)
+            this.importShared(start, reverse);
+
+        // Update wait time remaining
+        final long now = System.nanoTime();
+        final long elapsed = now - search.lastLoopTime;
+        search.waitTimeRemain = Math.max(0, search.waitTimeRemain - elapsed);
+        search.lastLoopTime = now;
+
+        // Debug
+        if (this.log.isTraceEnabled()) {
+            this.trace("find: start={} limit={} {} remain={}ms ranges={}", ByteUtil.toString(start),
+              ByteUtil.toString(limit), reverse ? "reverse" : "forward", search.waitTimeRemain / 1000000L, this.ranges);
+        }
 
-                    // If range already has a loader pointing at start, determine whether we want to wait for it
-                    if ((loader = range.getLoader(reverse)) == null) {
+        // Find the closest range whose minimum is <= start (if forward), or whose maximum is >= start (if reverse).
+        // We may have to do an extra step in the reverse case because ranges are sorted by minimum, not maximum.
+        // A null start (reverse only) means positive infinity, and only a range with a null maximum can reach it.
+        KVRange range = this.last(start != null ? this.ranges.headSet(this.key(start), true) : this.ranges);
+        if (reverse && range != null) {
+            if (KeyRange.compare(range.getMax(), start) < 0) {
+                range = start != null ? this.first(this.ranges.tailSet(this.key(start), true)) : null;
+                assert range == null || KeyRange.compare(range.getMax(), start) >= 0;
+            }
+        }
 
-                        // No loader, so unless we're on the edge of range we want to create a new range at our start point
-                        if (!startOnEdge) {
-                            if (this.log.isTraceEnabled()) {
-                                this.trace("find: start={} limit={} range={} not adjacent, no loader => create my own range",
-                                  ByteUtil.toString(start), ByteUtil.toString(limit), range);
-                            }
-                            range = null;                                                   // create a new range
+        // If we found one, investigate to determine what to do
+        Loader loader = null;
+        if (range != null) {
+
+            // We have a candidate range
+            assert reverse ?
+              KeyRange.compare(start, range.getMax()) <= 0 :
+              KeyRange.compare(start, range.getMin()) >= 0;
+
+            // See if it contains the start of our search
+            final boolean rangeContainsStart = reverse ?
+              KeyRange.compare(start, range.getMin()) > 0 :
+              KeyRange.compare(start, range.getMax()) < 0;
+            if (rangeContainsStart) {
+
+                // Search range for key/value pair
+                KVPair pair = reverse ? range.getAtMost(start) : range.getAtLeast(start);
+
+                // See if range also contains the limit of our search
+                final boolean rangeContainsLimit = reverse ?
+                  KeyRange.compare(limit, range.getMin()) >= 0 :
+                  KeyRange.compare(limit, range.getMax()) <= 0;
+
+                // Ignore any pair that's past the limit
+                if (pair != null && rangeContainsLimit) {
+                    final boolean pairWithinLimit = reverse ?
+                      KeyRange.compare(pair.getKey(), limit) >= 0 :
+                      KeyRange.compare(pair.getKey(), limit) < 0;
+                    if (!pairWithinLimit)
+                        pair = null;
+                }
+
+                // Return positive result if we know it
+                if (pair != null || rangeContainsLimit) {
+                    if (this.log.isTraceEnabled()) {
+                        if (pair != null) {
+                            this.trace("find: start={} limit={} found {}={} in range={}",
+                              ByteUtil.toString(start), ByteUtil.toString(limit),
+                              ByteUtil.toString(pair.getKey()), ByteUtil.toString(pair.getValue()), range);
                         } else {
-                            if (this.log.isTraceEnabled()) {
-                                this.trace("find: start={} limit={} range={} adjacent but no loader => create new loader",
-                                  ByteUtil.toString(start), ByteUtil.toString(limit), range);
-                            }
+                            this.trace("find: start={} limit={} not found in range={}",
+                              ByteUtil.toString(start), ByteUtil.toString(limit), range);
                         }
-                    } else if (!startOnEdge) {
+                    }
 
-                        // There is space between range and our start point: estimate the arrival time of our start key and decide
-                        // max time to wait for the range to reach our start point, or else don't wait and start a new range now
-                        final boolean startNewRange;
-                        long eta = -1;
-                        if (range.size() < 2) {
+                    // Keep range fresh
+                    this.touch(range, start);
+                    search.result = pair;
+                    if (search.waited)
+                        this.misses++;
+                    else
+                        this.hits++;
+                    return true;
+                }
 
-                            // Wait at least 1.2 * RTT from when range started before deciding what to do
-                            startNewRange = waitTimeRemain == 0 || now >= loader.getStartTime() + 1.2 * this.rtt.get();
-                        } else {
+                // Nothing found in range, so shift our starting point past the empty space
+                if (this.log.isTraceEnabled()) {
+                    this.trace("find: start={} limit={} not found in range={} -> new start={}",
+                      ByteUtil.toString(start), ByteUtil.toString(limit), range, reverse ? range.getMin() : range.getMax());
+                }
+                start = reverse ? range.getMin() : range.getMax();
+            }
 
-                            // Get loader's rate of progress (if known) and base estimated arrival time on that
-                            final double arrivalRate = loader.getArrivalRate();
-                            if (!Double.isNaN(arrivalRate) && arrivalRate > 0) {
-                                final byte[] loaderBase = reverse ? range.getMin() : range.getMax();
-                                eta = (long)(Math.abs(this.measure(start) - this.measure(loaderBase)) / arrivalRate);
-                                startNewRange = eta >= waitTimeRemain;
-                            } else
-                                startNewRange = true;               // arrival rate is unknown or very slow
-                        }
+            // Check whether our starting point exactly matches the edge of the adjacent range
+            final boolean startOnEdge = KeyRange.compare(start, reverse ? range.getMin() : range.getMax()) == 0;
 
-                        // If wait is too long, create a new range and loader (i.e., don't wait for the existing loader to reach us)
-                        if (startNewRange) {
-                            range = null;                                                   // create a new range
-                            loader = null;                                                  // ... and a new loader obviously
-                            if (this.log.isTraceEnabled()) {
-                                this.trace("find: start={} limit={} range={} eta={} >= waitTimeRemain={} => don't wait for it",
-                                  ByteUtil.toString(start), ByteUtil.toString(limit), range, eta, waitTimeRemain);
-                            }
-                        } else {
-                            if (this.log.isTraceEnabled()) {
-                                this.trace("find: start={} limit={} range={} eta={} < waitTimeRemain={} => wait for it",
-                                  ByteUtil.toString(start), ByteUtil.toString(limit), range, eta, waitTimeRemain);
-                            }
-                        }
+            // If range already has a loader pointing at start, determine whether we want to wait for it
+            if ((loader = range.getLoader(reverse)) == null) {
+
+                // No loader, so unless we're on the edge of range we want to create a new range at our start point
+                if (!startOnEdge) {
+                    if (this.log.isTraceEnabled()) {
+                        this.trace("find: start={} limit={} range={} not adjacent, no loader => create my own range",
+                          ByteUtil.toString(start), ByteUtil.toString(limit), range);
                     }
+                    range = null;                                                   // create a new range
                 } else {
                     if (this.log.isTraceEnabled()) {
-                        this.trace("find: start={} limit={} no containing or adjacent range found",
-                          ByteUtil.toString(start), ByteUtil.toString(limit));
+                        this.trace("find: start={} limit={} range={} adjacent but no loader => create new loader",
+                          ByteUtil.toString(start), ByteUtil.toString(limit), range);
                     }
                 }
-                assert range != null || loader == null;
+            } else if (!startOnEdge) {
+
+                // There is space between range and our start point: estimate the arrival time of our start key and decide
+                // max time to wait for the range to reach our start point, or else don't wait and start a new range now
+                final boolean startNewRange;
+                long eta = -1;
+                if (range.size() < 2) {
+
+                    // Wait at least 1.2 * RTT from when range started before deciding what to do
+                    startNewRange = search.waitTimeRemain == 0 || now >= loader.getStartTime() + 1.2 * this.rtt.get();
+                } else {
+
+                    // Get loader's rate of progress (if known) and base estimated arrival time on that
+                    final double arrivalRate = loader.getArrivalRate();
+                    if (!Double.isNaN(arrivalRate) && arrivalRate > 0) {
+                        final byte[] loaderBase = reverse ? range.getMin() : range.getMax();
+                        eta = (long)(Math.abs(this.measure(start) - this.measure(loaderBase)) / arrivalRate);
+                        startNewRange = eta >= search.waitTimeRemain;
+                    } else
+                        startNewRange = true;               // arrival rate is unknown or very slow
+                }
 
-                // Create a new range if necessary
-                if (range == null) {
-                    range = new KVRange(start);
-                    this.ranges.add(range);
-                    range.getLruEntry().attachAfter(this.lru);
+                // If wait is too long, create a new range and loader (i.e., don't wait for the existing loader to reach us)
+                if (startNewRange) {
+                    range = null;                                                   // create a new range
+                    loader = null;                                                  // ... and a new loader obviously
                     if (this.log.isTraceEnabled()) {
-                        this.trace("find: start={} limit={} created new {}",
-                          ByteUtil.toString(start), ByteUtil.toString(limit), range);
+                        this.trace("find: start={} limit={} range={} eta={} >= waitTimeRemain={} => don't wait for it",
+                          ByteUtil.toString(start), ByteUtil.toString(limit), range, eta, search.waitTimeRemain);
                     }
-                } else
-                    this.touch(range);                                                      // keep range fresh
-
-                // Create a new loader if necessary
-                if (loader == null) {
-                    assert range.getLoader(reverse) == null : "" + range;
-
-                    // Extend our range query all the way to the neighboring range, or to read-ahead limit if there is none
-                    byte[] actualLimit = limit;
-                    if (reverse && limit.length > 0) {
-                        final KVRange nextRange = this.ranges.lower(range);
-                        if (nextRange != null && !nextRange.isPrimordial())
-                            actualLimit = nextRange.getMax();
-                        else if (this.readAhead)
-                            actualLimit = ByteUtil.EMPTY;
-                    } else if (!reverse && limit != null) {
-                        final KVRange nextRange = this.ranges.higher(range);
-                        if (nextRange != null && !nextRange.isPrimordial())
-                            actualLimit = nextRange.getMin();
-                        else if (this.readAhead)
-                            actualLimit = null;
-                    }
-
-                    // Create new loader
-                    loader = new Loader(range, reverse, actualLimit);
+                } else {
                     if (this.log.isTraceEnabled()) {
-                        this.trace("find: start={} limit={} created new {}",
-                          ByteUtil.toString(start), ByteUtil.toString(limit), loader);
+                        this.trace("find: start={} limit={} range={} eta={} < waitTimeRemain={} => wait for it",
+                          ByteUtil.toString(start), ByteUtil.toString(limit), range, eta, search.waitTimeRemain);
                     }
                 }
+            }
+        } else {
+            if (this.log.isTraceEnabled()) {
+                this.trace("find: start={} limit={} no containing or adjacent range found",
+                  ByteUtil.toString(start), ByteUtil.toString(limit));
+            }
+        }
+        assert range != null || loader == null;
+
+        // Create a new range if necessary
+        if (range == null) {
+            range = new KVRange(start);
+            this.ranges.add(range);
+            this.evictor.add(range.getEvictionNode());
+            if (this.log.isTraceEnabled()) {
+                this.trace("find: start={} limit={} created new {}",
+                  ByteUtil.toString(start), ByteUtil.toString(limit), range);
+            }
+        } else
+            this.touch(range, start);                                               // keep range fresh
+
+        // Create a new loader if necessary
+        if (loader == null) {
+            assert range.getLoader(reverse) == null : "" + range;
+
+            // Extend our range query all the way to the neighboring range, or to read-ahead limit if there is none
+            byte[] actualLimit = limit;
+            if (reverse && limit.length > 0) {
+                final KVRange nextRange = this.ranges.lower(range);
+                if (nextRange != null && !nextRange.isPrimordial())
+                    actualLimit = nextRange.getMax();
+                else if (this.readAhead)
+                    actualLimit = ByteUtil.EMPTY;
+            } else if (!reverse && limit != null) {
+                final KVRange nextRange = this.ranges.higher(range);
+                if (nextRange != null && !nextRange.isPrimordial())
+                    actualLimit = nextRange.getMin();
+                else if (this.readAhead)
+                    actualLimit = null;
+            }
 
-                // We will wait for loader
-                future = loader.getFuture();
-                assert future != null;
+            // Create new loader
+            loader = new Loader(range, reverse, actualLimit);
+            if (this.log.isTraceEnabled()) {
+                this.trace("find: start={} limit={} created new {}",
+                  ByteUtil.toString(start), ByteUtil.toString(limit), loader);
+            }
+        }
 
-                // Scrub
-                this.scrub();
+        // We will wait for loader
+        search.future = loader.getFuture();
+        assert search.future != null;
 
-                // Sanity check
-                assert this.sanityCheck();
-                if (this.log.isTraceEnabled())
-                    this.trace("going to sleep, ranges={}", this.ranges);
-            }
+        // Scrub
+        this.scrub();
 
-            // Wait for loader to report progress, then try again
-            try {
-                future.get();
-                if (this.log.isTraceEnabled())
-                    this.trace("find: start={} limit={} woke up", ByteUtil.toString(start), ByteUtil.toString(limit));
-            } catch (CancellationException e) {                                                 // loader was stopped
-                if (this.log.isTraceEnabled()) {
-                    this.trace("find: start={} limit={} woke up - {}",
-                      ByteUtil.toString(start), ByteUtil.toString(limit), "canceled");
-                }
-            } catch (ExecutionException e) {
-                if (this.log.isTraceEnabled()) {
-                    this.trace("find: start={} limit={} woke up - {}",
-                      ByteUtil.toString(start), ByteUtil.toString(limit), (Object)e.getCause());
-                }
-                synchronized (this) {
-                    if (this.error == null) {                                                       // this should never happen
-                        final Throwable cause = e.getCause();
-                        this.error = cause instanceof KVException ? (KVException)cause : new KVException(cause);
-                    }
-                    throw this.error.rethrow();
-                }
-            } catch (InterruptedException e) {
-                if (this.log.isTraceEnabled()) {
-                    this.trace("find: start={} limit={} woke up - {}",
-                      ByteUtil.toString(start), ByteUtil.toString(limit), "interrupted");
-                }
-                Thread.currentThread().interrupt();
-            }
+        // Sanity check
+        assert this.sanityCheck();
+        if (this.log.isTraceEnabled())
+            this.trace("going to sleep, ranges={}", this.ranges);
+
+        // Save updated starting point for next time
+        search.start = start;
+        search.waited = true;
+        return false;
+    }
+
+    // Import the shared cache entry containing the start of the search (if any) into the gap between our neighboring ranges
+    private void importShared(byte[] start, boolean reverse) {
+        assert Thread.holdsLock(this);
+
+        // If the start of our search is already contained in some range, there's nothing to do
+        final KVRange prev = this.last(start != null ? this.ranges.headSet(this.key(start), !reverse) : this.ranges);
+        if (prev != null && (reverse ?
+          KeyRange.compare(prev.getMax(), start) >= 0 :
+          KeyRange.compare(start, prev.getMax()) < 0))
+            return;
+
+        // Find the gap between our neighboring ranges
+        final KVRange next = start != null ? this.first(this.ranges.tailSet(this.key(start), reverse)) : null;
+        final byte[] gapMin = prev != null ? prev.getMax() : ByteUtil.EMPTY;
+        final byte[] gapMax = next != null ? next.getMin() : null;
+
+        // Look for a shared entry containing the start of our search
+        final SharedRangeCache.Entry entry = this.sharedCache.find(start, reverse, this.sharedVersion);
+        if (entry == null)
+            return;
+
+        // Copy the portion of the entry that lies within the gap
+        final byte[] min = KeyRange.compare(entry.getMin(), gapMin) > 0 ? entry.getMin() : gapMin;
+        final byte[] max = KeyRange.compare(entry.getMax(), gapMax) < 0 ? entry.getMax() : gapMax;
+        final byte[][] entryKeys = entry.getKeys();
+        final byte[][] entryVals = entry.getVals();
+        int entryMinIndex = Arrays.binarySearch(entryKeys, min, ByteUtil.COMPARATOR);
+        if (entryMinIndex < 0)
+            entryMinIndex = ~entryMinIndex;
+        int entryMaxIndex = max != null ? Arrays.binarySearch(entryKeys, max, ByteUtil.COMPARATOR) : entryKeys.length;
+        if (entryMaxIndex < 0)
+            entryMaxIndex = ~entryMaxIndex;
+        final int size = entryMaxIndex - entryMinIndex;
+        final byte[][] keys = new byte[(int)(size * ARRAY_GROWTH_FACTOR) + 30][];
+        final byte[][] vals = new byte[keys.length][];
+        final int minIndex = (keys.length - size) / 2;
+        System.arraycopy(entryKeys, entryMinIndex, keys, minIndex, size);
+        System.arraycopy(entryVals, entryMinIndex, vals, minIndex, size);
+        long totalBytes = 0;
+        for (int i = minIndex; i < minIndex + size; i++)
+            totalBytes += keys[i].length + vals[i].length;
+
+        // Add new range
+        KVRange range = new KVRange(min, max, keys, vals, minIndex, minIndex + size, totalBytes);
+        range.setImported(true);
+        this.ranges.add(range);
+        this.evictor.add(range.getEvictionNode());
+        this.totalBytes += totalBytes;
+        this.importedShared = true;
+        if (this.log.isTraceEnabled())
+            this.trace("find: start={} imported {} from {}", ByteUtil.toString(start), range, entry);
+
+        // Merge with adjacent neighbors
+        if (prev != null && KeyRange.compare(prev.getMax(), min) == 0)
+            range = this.mergeAdjacent(prev, range);
+        if (next != null && KeyRange.compare(max, next.getMin()) == 0)
+            this.mergeAdjacent(range, next);
+        assert this.sanityCheck();
+    }
+
+    // Merge two adjacent ranges; if either is primordial, just discard it
+    private KVRange mergeAdjacent(KVRange range1, KVRange range2) {
+        assert Thread.holdsLock(this);
+        assert KeyRange.compare(range1.getMax(), range2.getMin()) == 0;
+        if (range1.isPrimordial()) {
+            this.discard(range1, true);
+            return range2;
+        }
+        if (range2.isPrimordial()) {
+            this.discard(range2, true);
+            return range1;
         }
+        final KVRange mergedRange = range1.merge(range2);
+        this.evictor.merge(range1.getEvictionNode(), range2.getEvictionNode(), mergedRange.getEvictionNode());
+        this.discard(range1, true);
+        this.discard(range2, true);
+        this.ranges.add(mergedRange);
+        this.totalBytes += mergedRange.getTotalBytes();
+        return mergedRange;
     }
 
-    // Move range back to the front of the LRU list
-    private void touch(KVRange range) {
+    // Record a use of the range to access the given key
+    private void touch(KVRange range, byte[] key) {
         assert Thread.holdsLock(this);
-        assert range.getLruEntry().isAttached();
+        assert range.getEvictionNode().getSegment() != -1;
         assert this.ranges.contains(range) : "range " + range + " not found in " + this.ranges;
         if (this.log.isTraceEnabled())
             this.trace("touch: renew range={}", range);
-        range.getLruEntry().attachAfter(this.lru);
+        this.evictor.touch(range.getEvictionNode(), Evictor.hash(key));
     }
 
-    // Remove old ranges until we are underneath our total byte limit
+    // Discard ranges chosen by the eviction policy until we are within our limits
     private void scrub() {
         assert Thread.holdsLock(this);
-        while (this.totalBytes > this.maxTotalBytes) {
+        while (this.totalBytes > this.maxTotalBytes || this.ranges.size() > this.maxRanges) {
 
-            // Get the least recently used range
-            final KVRange range = this.lru.prev().getOwner();
-            if (range == null)                                          // LRU ring is empty
+            // Choose a range to evict
+            final KVRange range = this.evictor.victim();
+            if (range == null)                                          // there are no ranges
                 break;
 
             // Discard it
+            this.evictions++;
+            this.evictedBytes += range.getTotalBytes();
             this.discard(range, true);
         }
     }
@@ -680,7 +1229,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             this.trace("discarding range={} age={}ms", range, (System.nanoTime() - range.getCreationTime()) / 1000000L);
         range.stopLoader(false);
         range.stopLoader(true);
-        range.getLruEntry().detach();
+        this.evictor.remove(range.getEvictionNode());
         this.totalBytes -= range.getTotalBytes();
         if (removeFromRanges) {
             final boolean removed = this.ranges.remove(range);
@@ -702,11 +1251,9 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             prev = next;
         }
         final ArrayList<KVRange> rangesList = new ArrayList<>(this.ranges);
-        final ArrayList<KVRange> lruList = new ArrayList<>(this.ranges.size());
-        for (RingEntry<KVRange> entry = this.lru.next(); entry.getOwner() != null; entry = entry.next())
-            lruList.add(entry.getOwner());
-        Collections.sort(lruList, SORT_BY_MIN);
-        assert lruList.equals(rangesList) : "lru=" + lruList + ", ranges=" + rangesList;
+        final ArrayList<KVRange> evictorList = new ArrayList<>(this.evictor.getItems());
+        Collections.sort(evictorList, SORT_BY_MIN);
+        assert evictorList.equals(rangesList) : "evictor=" + evictorList + ", ranges=" + rangesList;
         return true;
     }
 
@@ -745,6 +1292,222 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         }
     }
 
+// CacheView
+
+    // Read-only view of the underlying store through the cache, i.e., without any outstanding mutations
+    private class CacheView extends AbstractKVStore {
+
+        @Override
+        public byte[] get(byte[] key) {
+            final KVPair pair = this.getAtLeast(key, ByteUtil.getNextKey(key));
+            return pair != null ? pair.getValue() : null;
+        }
+
+        @Override
+        public List<byte[]> getMany(List<byte[]> keys) {
+            return CachingKVStore.super.getMany(keys);
+        }
+
+        @Override
+        public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            if (minKey == null)
+                minKey = ByteUtil.EMPTY;
+            return new KVPairIterator(this, new KeyRange(minKey, maxKey), null, reverse);
+        }
+
+        @Override
+        public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+            if (minKey == null)
+                minKey = ByteUtil.EMPTY;
+            if (KeyRange.compare(minKey, maxKey) >= 0)
+                return null;
+            return CachingKVStore.this.find(minKey, maxKey, false);
+        }
+
+        @Override
+        public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+            if (minKey == null)
+                minKey = ByteUtil.EMPTY;
+            if (KeyRange.compare(minKey, maxKey) >= 0)
+                return null;
+            return CachingKVStore.this.find(maxKey, minKey, true);
+        }
+
+        @Override
+        public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+            return CachingKVStore.super.estimateSize(minKey, maxKey);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getAsync(byte[] key) {
+            return this.getAtLeastAsync(key, ByteUtil.getNextKey(key)).thenApply(pair -> pair != null ? pair.getValue() : null);
+        }
+
+        @Override
+        public CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+            Preconditions.checkArgument(keys != null, "null keys");
+            final ArrayList<CompletableFuture<byte[]>> futures = new ArrayList<>(keys.size());
+            for (byte[] key : keys)
+                futures.add(this.getAsync(key));
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(ignore -> {
+                final ArrayList<byte[]> values = new ArrayList<>(futures.size());
+                for (CompletableFuture<byte[]> future : futures)
+                    values.add(future.join());
+                return values;
+            });
+        }
+
+        @Override
+        public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+            if (minKey == null)
+                minKey = ByteUtil.EMPTY;
+            if (KeyRange.compare(minKey, maxKey) >= 0)
+                return CompletableFuture.completedFuture(null);
+            return CachingKVStore.this.findAsync(minKey, maxKey, false);
+        }
+
+        @Override
+        public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+            if (minKey == null)
+                minKey = ByteUtil.EMPTY;
+            if (KeyRange.compare(minKey, maxKey) >= 0)
+                return CompletableFuture.completedFuture(null);
+            return CachingKVStore.this.findAsync(maxKey, minKey, true);
+        }
+
+        @Override
+        public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+            Preconditions.checkArgument(limit > 0, "limit <= 0");
+            final RangeBatch batch = new RangeBatch(minKey != null ? minKey : ByteUtil.EMPTY, maxKey, reverse, limit);
+            batch.proceed();
+            return batch.result;
+        }
+
+        @Override
+        public byte[] encodeCounter(long value) {
+            return CachingKVStore.super.encodeCounter(value);
+        }
+
+        @Override
+        public long decodeCounter(byte[] value) {
+            return CachingKVStore.super.decodeCounter(value);
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(byte[] key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeRange(byte[] minKey, byte[] maxKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void adjustCounter(byte[] key, long amount) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+// RangeBatch
+
+    // State associated with an in-progress getRangeAsync()
+    private class RangeBatch {
+
+        final CompletableFuture<List<KVPair>> result = new CompletableFuture<>();
+        final ArrayList<KVPair> pairs = new ArrayList<>();
+        final boolean reverse;
+        final int limit;
+
+        byte[] minKey;
+        byte[] maxKey;
+
+        RangeBatch(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.reverse = reverse;
+            this.limit = limit;
+        }
+
+        // Add key/value pairs until we're done or we have to wait
+        void proceed() {
+            while (true) {
+
+                // Are we done?
+                if (this.pairs.size() >= this.limit || KeyRange.compare(this.minKey, this.maxKey) >= 0) {
+                    this.result.complete(this.pairs);
+                    return;
+                }
+
+                // Find the next key/value pair; if not immediately available, resume when it is
+                final CompletableFuture<KVPair> next = this.reverse ?
+                  CachingKVStore.this.cacheView.getAtMostAsync(this.maxKey, this.minKey) :
+                  CachingKVStore.this.cacheView.getAtLeastAsync(this.minKey, this.maxKey);
+                if (!next.isDone()) {
+                    next.whenComplete((pair, e) -> {
+                        if (e != null)
+                            this.result.completeExceptionally(e);
+                        else if (this.add(pair))
+                            this.proceed();
+                    });
+                    return;
+                }
+                final KVPair pair;
+                try {
+                    pair = next.join();
+                } catch (CompletionException e) {
+                    this.result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                if (!this.add(pair))
+                    return;
+            }
+        }
+
+        // Add the next key/value pair; returns false if range is exhausted
+        private boolean add(KVPair pair) {
+            if (pair == null) {
+                this.result.complete(this.pairs);
+                return false;
+            }
+            this.pairs.add(pair);
+            if (this.reverse)
+                this.maxKey = pair.getKey();
+            else
+                this.minKey = ByteUtil.getNextKey(pair.getKey());
+            return true;
+        }
+    }
+
+// Search
+
+    // State associated with an in-progress find() or findAsync()
+    private static class Search {
+
+        final byte[] limit;
+        final boolean reverse;
+
+        byte[] start;
+        long waitTimeRemain;
+        long lastLoopTime = System.nanoTime();
+        KVPair result;
+        CompletableFuture<?> future;
+        boolean waited;
+
+        Search(byte[] start, byte[] limit, boolean reverse, long waitTimeRemain) {
+            assert waitTimeRemain >= 0;
+            this.start = start;
+            this.limit = limit;
+            this.reverse = reverse;
+            this.waitTimeRemain = waitTimeRemain;
+        }
+    }
+
 // Loader
 
     private class Loader implements Runnable {
@@ -774,10 +1537,10 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             assert reverse ?
               KeyRange.compare(limit, this.start) < 0 :
               KeyRange.compare(limit, this.start) > 0;
+            this.limit = limit;
             this.future = new CompletableFuture<>();
-            this.taskFuture = CachingKVStore.this.executor.submit(this);
             this.range.setLoader(this.reverse, this);
-            this.limit = limit;
+            this.taskFuture = CachingKVStore.this.executor.submit(this);
         }
 
         /**
@@ -787,6 +1550,13 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             return this.reverse ? this.range.getMin() : this.range.getMax();
         }
 
+        /**
+         * Get the limit of this loader's query.
+         */
+        public byte[] getLimit() {
+            return this.limit;
+        }
+
         /**
          * Determine the direction of loading.
          */
@@ -935,7 +1705,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                     for (Iterator<KVRange> i = CachingKVStore.this.ranges.tailSet(
                       CachingKVStore.this.key(extentMin), true).iterator(); i.hasNext(); ) {
                         final KVRange contained = i.next();
-                        assert ByteUtil.compare(contained.getMin(), extentMin) >= 0;
+                        assert KeyRange.compare(contained.getMin(), extentMin) >= 0;
 
                         // Is range completely contained within our extent?
                         if (KeyRange.compare(contained.getMax(), extentMax) > 0)
@@ -1000,6 +1770,8 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                         if (this.log.isTraceEnabled())
                             this.trace("adding key {} to {}", ByteUtil.toString(key), this.range);
                         this.range.add(key, val);
+                        CachingKVStore.this.totalBytes += key.length + val.length;
+                        CachingKVStore.this.loadedBytes += key.length + val.length;
                     }
                     if (reverse) {
                         if (this.log.isTraceEnabled())
@@ -1010,6 +1782,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                             this.trace("setting max of {} to {}", this.range, ByteUtil.toString(extentMax));
                         this.range.setMax(extentMax);
                     }
+                    this.range.setLoadEpoch(CachingKVStore.this.epoch);
 
                     // Update key/value pair arrival rate
                     final long now = System.nanoTime();
@@ -1037,7 +1810,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                     if (reverse && extentMin.length > 0) {
                         final KVRange neighbor
                           = this.last(CachingKVStore.this.ranges.headSet(CachingKVStore.this.key(extentMin), false));
-                        if (neighbor != null && ByteUtil.compare(neighbor.getMax(), extentMin) == 0) {
+                        if (neighbor != null && KeyRange.compare(neighbor.getMax(), extentMin) == 0) {
                             if (neighbor.isPrimordial()) {
                                 assert neighbor.isEmpty();
                                 if (this.log.isTraceEnabled())
@@ -1046,13 +1819,9 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                             } else {
                                 if (this.log.isTraceEnabled())
                                     this.trace("merging {} + {}", neighbor, this.range);
-                                mergedRange = neighbor.merge(this.range);
+                                mergedRange = CachingKVStore.this.mergeAdjacent(neighbor, this.range);
                                 if (this.log.isTraceEnabled())
                                     this.trace("result of merge: {}", mergedRange);
-                                CachingKVStore.this.discard(neighbor, true);
-                                CachingKVStore.this.discard(this.range, true);
-                                CachingKVStore.this.ranges.add(mergedRange);
-                                mergedRange.getLruEntry().attachAfter(CachingKVStore.this.lru);
                                 assert mergedRange.sanityCheck();
                             }
                             assert CachingKVStore.this.sanityCheck();
@@ -1060,7 +1829,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                     } else if (!reverse && extentMax != null) {
                         final KVRange neighbor
                           = this.first(CachingKVStore.this.ranges.tailSet(CachingKVStore.this.key(extentMax), true));
-                        if (neighbor != null && ByteUtil.compare(neighbor.getMin(), extentMax) == 0) {
+                        if (neighbor != null && KeyRange.compare(neighbor.getMin(), extentMax) == 0) {
                             if (neighbor.isPrimordial()) {
                                 assert neighbor.isEmpty();
                                 if (this.log.isTraceEnabled())
@@ -1069,21 +1838,20 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
                             } else {
                                 if (this.log.isTraceEnabled())
                                     this.trace("merging {} + {}", this.range, neighbor);
-                                mergedRange = this.range.merge(neighbor);
+                                mergedRange = CachingKVStore.this.mergeAdjacent(this.range, neighbor);
                                 if (this.log.isTraceEnabled())
                                     this.trace("result of merge: {}", mergedRange);
-                                CachingKVStore.this.discard(this.range, true);
-                                CachingKVStore.this.discard(neighbor, true);
-                                CachingKVStore.this.ranges.add(mergedRange);
-                                mergedRange.getLruEntry().attachAfter(CachingKVStore.this.lru);
                                 assert mergedRange.sanityCheck();
                             }
                             assert CachingKVStore.this.sanityCheck();
                         }
                     }
 
-                    // Stop if we merged into another range, or if our range has gotten too big
-                    stopLoading |= mergedRange != null || this.range.getTotalBytes() > CachingKVStore.this.maxRangeBytes;
+                    // Stop if we merged into another range, if our range has gotten too big, or if reading further
+                    // ahead would only force the eviction of other ranges
+                    stopLoading |= mergedRange != null
+                      || this.range.getTotalBytes() > CachingKVStore.this.maxRangeBytes
+                      || CachingKVStore.this.totalBytes > CachingKVStore.this.maxTotalBytes;
 
                     // Stop if done
                     if (stopLoading) {
@@ -1143,7 +1911,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
     private class KVRange {
 
         private final long creationTime = System.nanoTime();
-        private final RingEntry<KVRange> lruEntry = new RingEntry<>(this);
+        private final Evictor.Node<KVRange> evictionNode;
         private final Loader[] loaders = new Loader[2];                 // 0 = forward, 1 = reverse
 
         private byte[] min;
@@ -1155,12 +1923,15 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         private int maxIndex;
         private long totalBytes;
         private int lastKnownRangesIndex;
+        private long loadEpoch = CachingKVStore.this.epoch;
+        private boolean imported;
 
         KVRange(byte[] start) {
             this(start, start, new byte[INITIAL_ARRAY_CAPACITY][], new byte[INITIAL_ARRAY_CAPACITY][], 0, 0, 0);
         }
 
         KVRange(byte[] min, byte[] max, byte[][] keys, byte[][] vals, int minIndex, int maxIndex, long totalBytes) {
+            this.evictionNode = new Evictor.Node<>(this, Evictor.hash(min));
             this.min = min;
             this.max = max;
             this.keys = keys;
@@ -1183,8 +1954,9 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         public void setMin(byte[] min) {
             assert Thread.holdsLock(CachingKVStore.this);
             assert min != null;
-            assert ByteUtil.compare(min, this.min) <= 0;                // KVRanges can only get bigger, not smaller
+            assert KeyRange.compare(min, this.min) <= 0;                // KVRanges can only get bigger, not smaller
             this.min = min;
+            this.imported = false;
         }
 
         /**
@@ -1200,6 +1972,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             assert Thread.holdsLock(CachingKVStore.this);
             assert KeyRange.compare(max, this.max) >= 0;                // KVRanges can only get bigger, not smaller
             this.max = max;
+            this.imported = false;
         }
 
         public KeyRange getKeyRange() {
@@ -1220,6 +1993,30 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             this.lastKnownRangesIndex = lastKnownRangesIndex;
         }
 
+        /**
+         * Get the flush epoch during which this range was last extended.
+         */
+        public long getLoadEpoch() {
+            assert Thread.holdsLock(CachingKVStore.this);
+            return this.loadEpoch;
+        }
+        public void setLoadEpoch(long loadEpoch) {
+            assert Thread.holdsLock(CachingKVStore.this);
+            this.loadEpoch = loadEpoch;
+        }
+
+        /**
+         * Determine whether this range was imported unchanged from the shared cache.
+         */
+        public boolean isImported() {
+            assert Thread.holdsLock(CachingKVStore.this);
+            return this.imported;
+        }
+        public void setImported(boolean imported) {
+            assert Thread.holdsLock(CachingKVStore.this);
+            this.imported = imported;
+        }
+
         public Loader getLoader(boolean reverse) {
             assert Thread.holdsLock(CachingKVStore.this);
             return this.loaders[reverse ? 1 : 0];
@@ -1303,17 +2100,33 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
         }
 
         /**
-         * Get LRU list entry.
+         * Get eviction policy node.
          */
-        public RingEntry<KVRange> getLruEntry() {
+        public Evictor.Node<KVRange> getEvictionNode() {
             assert Thread.holdsLock(CachingKVStore.this);
-            return this.lruEntry;
+            return this.evictionNode;
         }
 
         public CachingKVStore getKVStore() {
             return CachingKVStore.this;
         }
 
+        /**
+         * Copy the keys contained in this range.
+         */
+        public byte[][] copyKeys() {
+            assert Thread.holdsLock(CachingKVStore.this);
+            return Arrays.copyOfRange(this.keys, this.minIndex, this.maxIndex);
+        }
+
+        /**
+         * Copy the values contained in this range.
+         */
+        public byte[][] copyVals() {
+            assert Thread.holdsLock(CachingKVStore.this);
+            return Arrays.copyOfRange(this.vals, this.minIndex, this.maxIndex);
+        }
+
         /**
          * Add the given key/value pair to this range.
          */
@@ -1321,11 +2134,11 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
 
             // Sanity check
             assert Thread.holdsLock(CachingKVStore.this);
-            assert !this.getKeyRange().contains(key);
+            assert this.min == null || !this.getKeyRange().contains(key);
             assert key != null && val != null;
 
             // Add key/value pair
-            if (ByteUtil.compare(key, this.min) < 0) {
+            if (KeyRange.compare(key, this.min) < 0) {
                 if (this.minIndex == 0)
                     this.growArrays();
                 assert this.minIndex > 0;
@@ -1420,6 +2233,50 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             return range;
         }
 
+        /**
+         * Apply the given mutations, which have just been applied to the underlying store, to this range.
+         */
+        public void apply(Writes writes) {
+            assert Thread.holdsLock(CachingKVStore.this);
+
+            // Apply removes, then puts, then counter adjustments
+            final TreeMap<byte[], byte[]> map = new TreeMap<>(ByteUtil.COMPARATOR);
+            for (int i = this.minIndex; i < this.maxIndex; i++) {
+                if (!writes.getRemoves().contains(this.keys[i]))
+                    map.put(this.keys[i], this.vals[i]);
+            }
+            for (Map.Entry<byte[], byte[]> entry : CachingKVStore.subMap(writes.getPuts(), this.min, this.max).entrySet())
+                map.put(entry.getKey().clone(), entry.getValue().clone());
+            for (Map.Entry<byte[], Long> entry : CachingKVStore.subMap(writes.getAdjusts(), this.min, this.max).entrySet()) {
+                final byte[] value = map.get(entry.getKey());
+                if (value == null)
+                    continue;
+                final long counter;
+                try {
+                    counter = CachingKVStore.this.decodeCounter(value);
+                } catch (IllegalArgumentException e) {
+                    continue;                                   // value is not a counter, so the adjustment is ignored
+                }
+                map.put(entry.getKey(), CachingKVStore.this.encodeCounter(counter + entry.getValue()));
+            }
+
+            // Rebuild arrays
+            this.imported = false;
+            final int size = map.size();
+            this.keys = new byte[(int)(size * ARRAY_GROWTH_FACTOR) + 30][];
+            this.vals = new byte[this.keys.length][];
+            this.minIndex = (this.keys.length - size) / 2;
+            this.maxIndex = this.minIndex;
+            this.totalBytes = 0;
+            for (Map.Entry<byte[], byte[]> entry : map.entrySet()) {
+                this.keys[this.maxIndex] = entry.getKey();
+                this.vals[this.maxIndex] = entry.getValue();
+                this.totalBytes += entry.getKey().length + entry.getValue().length;
+                this.maxIndex++;
+            }
+            assert this.sanityCheck();
+        }
+
         private void growArrays() {
             assert Thread.holdsLock(CachingKVStore.this);
             final int size = this.size();
@@ -1439,7 +2296,7 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             assert Thread.holdsLock(CachingKVStore.this);
             assert this.sanityCheckInternal();
             assert CachingKVStore.this.ranges.contains(this) : this + " not in " + CachingKVStore.this.ranges;
-            assert this.lruEntry.isAttached() : this + " not in LRU";
+            assert this.evictionNode.getSegment() != -1 : this + " not in evictor";
             return true;
         }
 
@@ -1470,7 +2327,6 @@ public class CachingKVStore extends CloseableForwardingKVStore implements Cachin
             this.vals = null;
             this.minIndex = -1;
             this.maxIndex = -1;
-            this.totalBytes = -1;
             this.lastKnownRangesIndex = -1;
             return true;
         }
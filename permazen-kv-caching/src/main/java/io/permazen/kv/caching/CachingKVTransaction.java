@@ -8,11 +8,16 @@ package io.permazen.kv.caching;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.kv.mvcc.Writes;
 import io.permazen.util.CloseableIterator;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -26,6 +31,10 @@ import java.util.concurrent.Future;
  *  <li>A {@link CachingKVStore} to cache transaction data</li>
  *  <li>The underlying {@link KVTransaction}</li>
  * </ul>
+ *
+ * <p>
+ * If the associated {@link CachingKVDatabase} has a shared cache, read-only instances read from it, and instances
+ * that commit without modifying any data publish their cached ranges to it.
  */
 public class CachingKVTransaction extends AbstractCachingConfig implements KVTransaction, CloseableKVStore {
 
@@ -49,13 +58,21 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
      */
     protected final KVTransaction inner;
 
-    CachingKVTransaction(CachingKVDatabase kvdb, KVTransaction inner, ExecutorService executor, long rttEstimate) {
+    private final SharedRangeCache sharedCache;
+    private final long sharedVersion;
+
+    CachingKVTransaction(CachingKVDatabase kvdb, KVTransaction inner, ExecutorService executor, long rttEstimate,
+      SharedRangeCache sharedCache, long sharedVersion) {
         this.kvdb = kvdb;
         this.inner = inner;
+        this.sharedCache = sharedCache;
+        this.sharedVersion = sharedVersion;
         this.cachingKV = new CachingKVStore(inner, executor, rttEstimate);
         this.kvdb.copyCachingConfigTo(this.cachingKV);
         this.view = new MutableView(this.cachingKV);
         this.view.disableReadTracking();
+        if (this.sharedCache != null && this.inner.isReadOnly())
+            this.cachingKV.setSharedCache(this.sharedCache, this.sharedVersion);
     }
 
     /**
@@ -81,6 +98,7 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
     @Override
     public void close() {
         this.kvdb.updateRttEstimate(this.cachingKV.getRttEstimate());
+        this.kvdb.updateStatistics(this.cachingKV.getStatistics());
         this.cachingKV.close();
         this.inner.rollback();
     }
@@ -92,6 +110,36 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         return this.view.get(key);
     }
 
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        return this.view.getMany(keys);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        return this.view.getAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+        return this.view.getManyAsync(keys);
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        return this.view.getAtLeastAsync(minKey, maxKey);
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        return this.view.getAtMostAsync(maxKey, minKey);
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        return this.view.getRangeAsync(minKey, maxKey, reverse, limit);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         return this.view.getAtLeast(minKey, maxKey);
@@ -107,6 +155,11 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         return this.view.getRange(minKey, maxKey, reverse);
     }
 
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return this.view.estimateSize(minKey, maxKey);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.view.put(key, value);
@@ -159,9 +212,26 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         return this.inner.isReadOnly();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * If the associated {@link CachingKVDatabase} has a shared cache, this transaction may not be changed from
+     * read-only back to read-write once it has read any data from the shared cache.
+     *
+     * @throws IllegalStateException if {@code readOnly} is false and data has been read from the shared cache
+     */
     @Override
     public void setReadOnly(boolean readOnly) {
+        if (this.sharedCache == null) {
+            this.inner.setReadOnly(readOnly);
+            return;
+        }
+        if (!readOnly)
+            this.cachingKV.setSharedCache(null, 0);
         this.inner.setReadOnly(readOnly);
+        if (readOnly)
+            this.cachingKV.setSharedCache(this.sharedCache, this.sharedVersion);
     }
 
     @Override
@@ -169,23 +239,49 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         return this.inner.watchKey(key);
     }
 
+    @Override
+    public Future<Void> watchRange(KeyRange range) {
+        return this.inner.watchRange(range);
+    }
+
     @Override
     public void commit() {
 
         // Grab transaction reads & writes, set to immutable
         final Writes writes;
+        final boolean mutating;
+        List<SharedRangeCache.Entry> published = Collections.emptyList();
         synchronized (this.view) {
             writes = this.view.getWrites();
             this.view.setReadOnly();
+            mutating = !writes.isEmpty() && !this.inner.isReadOnly();
+            if (this.sharedCache != null && !mutating && this.sharedCache.isPublishable(this.sharedVersion))
+                published = this.cachingKV.exportRanges(this.sharedVersion);
             this.cachingKV.close();                 // this tells background read-ahead threads to ignore subsequent exceptions
         }
 
+        // Invalidate shared cache ranges we're about to modify
+        if (this.sharedCache != null && mutating)
+            this.sharedCache.commitStarting(writes);
+
         // Apply writes and commit tx
+        boolean committed = false;
         try {
             this.applyWritesBeforeCommitIfNotReadOnly(writes);
+            this.watchPublished(published);
             this.inner.commit();
+            committed = true;
         } finally {
-            this.close();
+            try {
+                this.close();
+            } finally {
+                if (this.sharedCache != null && mutating)
+                    this.sharedCache.commitFinished();
+                if (committed && !published.isEmpty())
+                    this.sharedCache.publish(this.sharedVersion, published);
+                else
+                    published.forEach(SharedRangeCache.Entry::cancelWatch);
+            }
         }
     }
 
@@ -205,6 +301,17 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
 
 // Other methods
 
+    // Register watches so that external modifications invalidate published ranges, if supported
+    private void watchPublished(List<SharedRangeCache.Entry> published) {
+        for (SharedRangeCache.Entry entry : published) {
+            try {
+                entry.setWatch(this.inner.watchRange(entry.getKeyRange()));
+            } catch (UnsupportedOperationException e) {
+                break;
+            }
+        }
+    }
+
     /**
      * Apply accumulated mutations just prior to {@link commit commit()}'ing the transaction.
      *
@@ -0,0 +1,132 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+/**
+ * Cumulative caching statistics, as reported by {@link CachingKVStore#getStatistics} and
+ * {@link CachingKVDatabase#getStatistics}.
+ *
+ * <p>
+ * A lookup is a single search for a key/value pair, for example, one {@code get()} or one step of a range iteration.
+ * A lookup is a hit if it was answered from cached data without waiting for the underlying store.
+ *
+ * <p>
+ * Instances are immutable.
+ */
+public final class CachingStatistics {
+
+    /**
+     * All zeroes.
+     */
+    public static final CachingStatistics EMPTY = new CachingStatistics(0, 0, 0, 0, 0);
+
+    private final long hits;
+    private final long misses;
+    private final long loadedBytes;
+    private final long evictions;
+    private final long evictedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param hits number of lookups answered from the cache
+     * @param misses number of lookups that waited for the underlying store
+     * @param loadedBytes number of key and value bytes loaded from the underlying store
+     * @param evictions number of ranges discarded to stay within the configured limits
+     * @param evictedBytes number of key and value bytes in the evicted ranges
+     */
+    public CachingStatistics(long hits, long misses, long loadedBytes, long evictions, long evictedBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadedBytes = loadedBytes;
+        this.evictions = evictions;
+        this.evictedBytes = evictedBytes;
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     *
+     * @return hit count
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of lookups that had to wait for data from the underlying store.
+     *
+     * @return miss count
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the fraction of lookups answered from the cache.
+     *
+     * @return hit ratio from 0.0 to 1.0, or {@link Double#NaN} if there have been no lookups
+     */
+    public double getHitRatio() {
+        final long lookups = this.hits + this.misses;
+        return lookups > 0 ? (double)this.hits / lookups : Double.NaN;
+    }
+
+    /**
+     * Get the number of key and value bytes loaded from the underlying store.
+     *
+     * @return bytes loaded
+     */
+    public long getLoadedBytes() {
+        return this.loadedBytes;
+    }
+
+    /**
+     * Get the number of ranges discarded to stay within the configured limits.
+     *
+     * <p>
+     * This does not include ranges discarded when the cache is closed or invalidated by mutations.
+     *
+     * @return eviction count
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of key and value bytes contained in evicted ranges.
+     *
+     * @return bytes evicted
+     */
+    public long getEvictedBytes() {
+        return this.evictedBytes;
+    }
+
+    /**
+     * Combine these statistics with the given statistics.
+     *
+     * @param that other statistics
+     * @return sum of this and {@code that}
+     * @throws NullPointerException if {@code that} is null
+     */
+    public CachingStatistics plus(CachingStatistics that) {
+        return new CachingStatistics(this.hits + that.hits, this.misses + that.misses,
+          this.loadedBytes + that.loadedBytes, this.evictions + that.evictions, this.evictedBytes + that.evictedBytes);
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[hits=" + this.hits
+          + ",misses=" + this.misses
+          + ",hitRatio=" + String.format("%.4f", this.getHitRatio())
+          + ",loadedBytes=" + this.loadedBytes
+          + ",evictions=" + this.evictions
+          + ",evictedBytes=" + this.evictedBytes
+          + "]";
+    }
+}
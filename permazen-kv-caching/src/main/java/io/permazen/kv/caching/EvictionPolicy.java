@@ -0,0 +1,58 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Policies for choosing which cached key/value ranges to discard when a {@link CachingKVStore} exceeds its limits.
+ *
+ * <p>
+ * The set of policies is fixed: the eviction policy is selected from the values of this enum, and applications
+ * cannot supply their own implementations.
+ *
+ * @see CachingConfig#setEvictionPolicy
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Discard the least recently used range.
+     *
+     * <p>
+     * This policy is simple and cheap, but a single large scan can flush all of the frequently used ranges.
+     */
+    LRU {
+        @Override
+        <T> Evictor<T> createEvictor(ToLongFunction<? super T> weigher) {
+            return new LruEvictor<>(weigher);
+        }
+    },
+
+    /**
+     * Discard ranges using a variant of the W-TinyLFU policy.
+     *
+     * <p>
+     * Recently created ranges are held in a small window. Ranges that outgrow the window are admitted to the main
+     * area of the cache only if they have been used more frequently than the range they would displace, as estimated
+     * by a compact frequency sketch that also remembers ranges no longer cached. Within the main area, ranges used
+     * more than once are protected from ranges used only once. This makes the cache resistant to scans.
+     */
+    TINY_LFU {
+        @Override
+        <T> Evictor<T> createEvictor(ToLongFunction<? super T> weigher) {
+            return new TinyLfuEvictor<>(weigher);
+        }
+    };
+
+    /**
+     * Create an {@link Evictor} implementing this policy.
+     *
+     * @param weigher gets the current size in bytes of a cached item
+     * @param <T> cached item type
+     * @return new evictor
+     */
+    abstract <T> Evictor<T> createEvictor(ToLongFunction<? super T> weigher);
+}
@@ -0,0 +1,180 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Decides which cached item to discard next, on behalf of an {@link EvictionPolicy}.
+ *
+ * <p>
+ * Each cached item has an associated {@link Node}, which the evictor links into its own internal rings.
+ * The cache invokes {@link #add add()} when an item is created, {@link #touch touch()} each time it is used,
+ * and {@link #remove remove()} when it is discarded for any reason. Whenever the cache exceeds its limits,
+ * it repeatedly discards the item returned by {@link #victim}.
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @param <T> cached item type
+ */
+abstract class Evictor<T> {
+
+    /**
+     * Gets the current size in bytes of a cached item.
+     */
+    protected final ToLongFunction<? super T> weigher;
+
+    /**
+     * The configured maximum number of items.
+     */
+    protected int maxItems = CachingConfig.DEFAULT_MAX_RANGES;
+
+    /**
+     * The configured maximum total size of all items in bytes.
+     */
+    protected long maxBytes = CachingConfig.DEFAULT_MAX_TOTAL_BYTES;
+
+    /**
+     * Constructor.
+     *
+     * @param weigher gets the current size in bytes of a cached item
+     * @throws IllegalArgumentException if {@code weigher} is null
+     */
+    protected Evictor(ToLongFunction<? super T> weigher) {
+        Preconditions.checkArgument(weigher != null, "null weigher");
+        this.weigher = weigher;
+    }
+
+    /**
+     * Update the cache limits.
+     *
+     * @param maxItems maximum number of items
+     * @param maxBytes maximum total size of all items in bytes
+     */
+    public void configure(int maxItems, long maxBytes) {
+        Preconditions.checkArgument(maxItems > 0, "maxItems <= 0");
+        Preconditions.checkArgument(maxBytes > 0, "maxBytes <= 0");
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Record the creation of a new item.
+     *
+     * @param node the item's node, which must not already be added
+     */
+    public abstract void add(Node<T> node);
+
+    /**
+     * Record a use of an item.
+     *
+     * @param node the item's node
+     * @param hash the hash of the key that was used, which may not be the key that identifies the item
+     */
+    public abstract void touch(Node<T> node, long hash);
+
+    /**
+     * Record the removal of an item.
+     *
+     * @param node the item's node; if not added, nothing happens
+     */
+    public abstract void remove(Node<T> node);
+
+    /**
+     * Record the replacement of two items by a new item that combines them.
+     *
+     * <p>
+     * This removes the two original items and adds the new item.
+     *
+     * @param node1 the first item's node
+     * @param node2 the second item's node
+     * @param merged the new item's node, which must not already be added
+     */
+    public abstract void merge(Node<T> node1, Node<T> node2, Node<T> merged);
+
+    /**
+     * Choose the next item to discard. The caller must then discard it and {@link #remove remove()} it.
+     *
+     * @return item to discard, or null if there are no items
+     */
+    public abstract T victim();
+
+    /**
+     * Get all items, in no particular order.
+     *
+     * @return list of items
+     */
+    public abstract List<T> getItems();
+
+    /**
+     * Compute the hash used to identify an item by a key.
+     *
+     * @param key key
+     * @return item hash
+     */
+    public static long hash(byte[] key) {
+        long hash = Arrays.hashCode(key) * 0x9e3779b97f4a7c15L;
+        hash ^= hash >>> 29;
+        return hash;
+    }
+
+// Node
+
+    /**
+     * An item's entry in the internal rings of an {@link Evictor}.
+     *
+     * @param <T> cached item type
+     */
+    static class Node<T> extends RingEntry<T> {
+
+        private long hash;
+        private int segment = -1;
+        private long weight;
+
+        /**
+         * Constructor.
+         *
+         * @param owner the associated item
+         * @param hash the hash identifying the item, used to track its access frequency
+         */
+        Node(T owner, long hash) {
+            super(owner);
+            this.hash = hash;
+        }
+
+        public long getHash() {
+            return this.hash;
+        }
+        public void setHash(long hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * Get the evictor-specific segment containing this node, or -1 if not added.
+         */
+        public int getSegment() {
+            return this.segment;
+        }
+        public void setSegment(int segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Get the size of the item in bytes as of when it was last recorded by the evictor.
+         */
+        public long getWeight() {
+            return this.weight;
+        }
+        public void setWeight(long weight) {
+            this.weight = weight;
+        }
+    }
+}
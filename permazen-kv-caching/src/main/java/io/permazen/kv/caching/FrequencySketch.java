@@ -0,0 +1,95 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A count-min sketch of saturating four bit counters, estimating how often items have been accessed recently.
+ *
+ * <p>
+ * This is the frequency histogram used by TinyLFU: it remembers the popularity of items no longer in the cache,
+ * using a small fixed amount of memory. Once the number of recorded accesses reaches ten times the width of the
+ * sketch, all counters are halved, so that old accesses are gradually forgotten.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+class FrequencySketch {
+
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final byte[][] counters = new byte[SEEDS.length][];
+    private final int mask;
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedItems approximate number of distinct items to track
+     * @throws IllegalArgumentException if {@code expectedItems} is not positive
+     */
+    FrequencySketch(int expectedItems) {
+        Preconditions.checkArgument(expectedItems > 0, "expectedItems <= 0");
+        final int width = Math.max(16, Integer.highestOneBit(Math.min(expectedItems, 1 << 24) - 1) << 1);
+        for (int i = 0; i < this.counters.length; i++)
+            this.counters[i] = new byte[width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Estimate the number of recent accesses to the item with the given hash.
+     *
+     * @param hash item hash
+     * @return estimated frequency, at most {@link #MAX_FREQUENCY}
+     */
+    public int frequency(long hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < this.counters.length; i++)
+            frequency = Math.min(frequency, this.counters[i][this.index(hash, i)]);
+        return frequency;
+    }
+
+    /**
+     * Record an access to the item with the given hash.
+     *
+     * @param hash item hash
+     */
+    public void increment(long hash) {
+        boolean added = false;
+        for (int i = 0; i < this.counters.length; i++) {
+            final int index = this.index(hash, i);
+            if (this.counters[i][index] < MAX_FREQUENCY) {
+                this.counters[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++this.additions >= this.sampleSize)
+            this.age();
+    }
+
+    // Halve all counters
+    private void age() {
+        for (byte[] row : this.counters) {
+            for (int i = 0; i < row.length; i++)
+                row[i] >>= 1;
+        }
+        this.additions /= 2;
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 32;
+        return (int)h & this.mask;
+    }
+}
@@ -0,0 +1,62 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link Evictor} implementing {@link EvictionPolicy#LRU}: the least recently used item is always discarded first.
+ *
+ * @param <T> cached item type
+ */
+class LruEvictor<T> extends Evictor<T> {
+
+    private final RingEntry<T> lru = new RingEntry<>(null);                 // items ordered MRU first, LRU last
+
+    LruEvictor(ToLongFunction<? super T> weigher) {
+        super(weigher);
+    }
+
+    @Override
+    public void add(Node<T> node) {
+        node.attachAfter(this.lru);
+        node.setSegment(0);
+    }
+
+    @Override
+    public void touch(Node<T> node, long hash) {
+        assert node.getSegment() == 0;
+        node.attachAfter(this.lru);
+    }
+
+    @Override
+    public void remove(Node<T> node) {
+        node.detach();
+        node.setSegment(-1);
+    }
+
+    @Override
+    public void merge(Node<T> node1, Node<T> node2, Node<T> merged) {
+        this.remove(node1);
+        this.remove(node2);
+        this.add(merged);
+    }
+
+    @Override
+    public T victim() {
+        return this.lru.prev().getOwner();
+    }
+
+    @Override
+    public List<T> getItems() {
+        final ArrayList<T> list = new ArrayList<>();
+        for (RingEntry<T> entry = this.lru.next(); entry.getOwner() != null; entry = entry.next())
+            list.add(entry.getOwner());
+        return list;
+    }
+}
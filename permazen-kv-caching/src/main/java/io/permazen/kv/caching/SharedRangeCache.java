@@ -0,0 +1,343 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A database-wide cache of committed key/value ranges, shared by the transactions of a {@link CachingKVDatabase}.
+ *
+ * <p>
+ * Each entry is a contiguous key range along with all of its key/value pairs, tagged with the version of this cache
+ * as of which the data is known to be current. The version is incremented whenever a transaction that modifies the
+ * database starts or finishes committing, and whenever a watch reports a possible external change. Entries affected
+ * by a commit are removed as soon as the commit starts, so a transaction that started at version {@code V} may use
+ * any entry whose version is at most {@code V}: such an entry still reflects the database as of {@code V}.
+ *
+ * <p>
+ * Transactions publish the ranges they loaded when they commit, but only if the version has not changed since they
+ * started and no commit is in progress; otherwise, their data may already be out of date. When supported by the
+ * underlying database, a {@linkplain KVTransaction#watchRange watch} is registered on each published range so that
+ * external modifications also remove it.
+ *
+ * <p>
+ * Entries are discarded on a least-recently-used basis once the configured total size is exceeded.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+class SharedRangeCache {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final TreeMap<byte[], Entry> entries = new TreeMap<>(ByteUtil.COMPARATOR);     // entries keyed by range minimum
+    private final RingEntry<Entry> lru = new RingEntry<>(null);                          // entries ordered MRU first, LRU last
+    private final long maxBytes;
+
+    private long totalBytes;
+    private long version;
+    private int commitsInProgress;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes maximum total bytes of key and value data to cache
+     * @throws IllegalArgumentException if {@code maxBytes} is not positive
+     */
+    SharedRangeCache(long maxBytes) {
+        Preconditions.checkArgument(maxBytes > 0, "maxBytes <= 0");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the current version.
+     *
+     * @return current version
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Get the total bytes of key and value data currently cached.
+     *
+     * @return cached bytes
+     */
+    public synchronized long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * Determine whether data read by a transaction that started at the given version may be published.
+     *
+     * @param startVersion version at the start of the transaction
+     * @return true if nothing has been committed since {@code startVersion}
+     */
+    public synchronized boolean isPublishable(long startVersion) {
+        return this.version == startVersion && this.commitsInProgress == 0;
+    }
+
+    /**
+     * Find the entry that contains the starting point of a search and that is usable at the given version, if any.
+     *
+     * @param start search start: inclusive lower bound if forward, exclusive upper bound (null for infinity) if reverse
+     * @param reverse true if the search is in the reverse direction
+     * @param startVersion version at the start of the searching transaction
+     * @return matching entry, or null if none found
+     */
+    public synchronized Entry find(byte[] start, boolean reverse, long startVersion) {
+        final Map.Entry<byte[], Entry> mapEntry = reverse ?
+          (start != null ? this.entries.lowerEntry(start) : this.entries.lastEntry()) :
+          this.entries.floorEntry(start);
+        if (mapEntry == null)
+            return null;
+        final Entry entry = mapEntry.getValue();
+        if (reverse ? KeyRange.compare(entry.getMax(), start) < 0 : KeyRange.compare(start, entry.getMax()) >= 0)
+            return null;
+        if (entry.getVersion() > startVersion)
+            return null;
+        entry.lruEntry.attachAfter(this.lru);
+        return entry;
+    }
+
+    /**
+     * Record that a transaction is about to commit the given mutations.
+     *
+     * <p>
+     * All entries affected by the mutations are removed. This must be followed by {@link #commitFinished},
+     * whether or not the commit succeeds.
+     *
+     * @param writes the mutations about to be committed
+     */
+    public synchronized void commitStarting(Writes writes) {
+        this.version++;
+        this.commitsInProgress++;
+        for (Entry entry : new ArrayList<>(this.entries.values())) {
+            if (CachingKVStore.intersects(writes, entry.getMin(), entry.getMax()))
+                this.remove(entry);
+        }
+    }
+
+    /**
+     * Record that a commit previously reported to {@link #commitStarting commitStarting()} has finished.
+     */
+    public synchronized void commitFinished() {
+        Preconditions.checkState(this.commitsInProgress > 0, "no commit in progress");
+        this.version++;
+        this.commitsInProgress--;
+    }
+
+    /**
+     * Publish ranges loaded by a transaction that started at the given version.
+     *
+     * <p>
+     * If anything has been committed since {@code startVersion}, the entries are discarded instead.
+     *
+     * @param startVersion version at the start of the transaction, which must also be the version of each entry
+     * @param published the ranges to publish, which must not overlap each other
+     */
+    public synchronized void publish(long startVersion, List<Entry> published) {
+        if (!this.isPublishable(startVersion)) {
+            for (Entry entry : published)
+                entry.cancelWatch();
+            return;
+        }
+        for (Entry entry : published) {
+            assert entry.getVersion() == startVersion;
+
+            // Remove overlapping entries, which contain either the same or older data
+            final Map.Entry<byte[], Entry> lower = this.entries.lowerEntry(entry.getMin());
+            if (lower != null && KeyRange.compare(lower.getValue().getMax(), entry.getMin()) > 0)
+                this.remove(lower.getValue());
+            final Map<byte[], Entry> higher = entry.getMax() != null ?
+              this.entries.subMap(entry.getMin(), true, entry.getMax(), false) : this.entries.tailMap(entry.getMin(), true);
+            for (Entry overlap : new ArrayList<>(higher.values()))
+                this.remove(overlap);
+
+            // Add entry
+            this.entries.put(entry.getMin(), entry);
+            entry.lruEntry.attachAfter(this.lru);
+            this.totalBytes += entry.getTotalBytes();
+            if (this.log.isTraceEnabled())
+                this.log.trace("published " + entry);
+            this.listen(entry);
+        }
+        this.scrub();
+    }
+
+    /**
+     * Discard all entries.
+     */
+    public synchronized void clear() {
+        for (Entry entry : new ArrayList<>(this.entries.values()))
+            this.remove(entry);
+        this.version++;
+    }
+
+    // Remove the entry if its watch fires
+    @SuppressWarnings("unchecked")
+    private void listen(Entry entry) {
+        assert Thread.holdsLock(this);
+        final Future<Void> watch = entry.watch;
+        if (watch instanceof ListenableFuture)
+            ((ListenableFuture<Void>)watch).addListener(() -> this.watchFired(entry), MoreExecutors.directExecutor());
+        else if (watch instanceof CompletableFuture)
+            ((CompletableFuture<Void>)watch).whenComplete((result, e) -> this.watchFired(entry));
+        else
+            entry.cancelWatch();                                        // we can't be notified, so don't bother
+    }
+
+    private synchronized void watchFired(Entry entry) {
+        if (this.entries.get(entry.getMin()) != entry)                  // entry was already removed
+            return;
+        if (this.log.isTraceEnabled())
+            this.log.trace("watch fired for " + entry);
+        this.version++;                                                 // any open transactions may have stale data
+        this.remove(entry);
+    }
+
+    private void scrub() {
+        assert Thread.holdsLock(this);
+        while (this.totalBytes > this.maxBytes) {
+            final Entry entry = this.lru.prev().getOwner();
+            if (entry == null)
+                break;
+            this.remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        assert Thread.holdsLock(this);
+        final Entry removed = this.entries.remove(entry.getMin());
+        assert removed == entry;
+        entry.lruEntry.detach();
+        this.totalBytes -= entry.getTotalBytes();
+        entry.cancelWatch();
+    }
+
+// Entry
+
+    /**
+     * A cached range of key/value pairs.
+     */
+    static final class Entry {
+
+        private final RingEntry<Entry> lruEntry = new RingEntry<>(this);
+        private final byte[] min;
+        private final byte[] max;
+        private final byte[][] keys;
+        private final byte[][] vals;
+        private final long version;
+        private final long totalBytes;
+
+        private Future<Void> watch;
+
+        /**
+         * Constructor.
+         *
+         * @param min minimum key (inclusive)
+         * @param max maximum key (exclusive), or null for infinity
+         * @param keys sorted keys in the range; must not be modified
+         * @param vals corresponding values; must not be modified
+         * @param version version as of which this data is current
+         */
+        Entry(byte[] min, byte[] max, byte[][] keys, byte[][] vals, long version) {
+            Preconditions.checkArgument(min != null, "null min");
+            Preconditions.checkArgument(KeyRange.compare(min, max) < 0, "empty range");
+            Preconditions.checkArgument(keys.length == vals.length, "keys/vals length mismatch");
+            this.min = min;
+            this.max = max;
+            this.keys = keys;
+            this.vals = vals;
+            this.version = version;
+            long bytes = 0;
+            for (int i = 0; i < keys.length; i++)
+                bytes += keys[i].length + vals[i].length;
+            this.totalBytes = bytes;
+        }
+
+        public byte[] getMin() {
+            return this.min;
+        }
+
+        public byte[] getMax() {
+            return this.max;
+        }
+
+        public KeyRange getKeyRange() {
+            return new KeyRange(this.min, this.max);
+        }
+
+        /**
+         * Get the keys in this range in sorted order. The returned array must not be modified.
+         */
+        public byte[][] getKeys() {
+            return this.keys;
+        }
+
+        /**
+         * Get the values corresponding to {@link #getKeys}. The returned array must not be modified.
+         */
+        public byte[][] getVals() {
+            return this.vals;
+        }
+
+        public long getVersion() {
+            return this.version;
+        }
+
+        public long getTotalBytes() {
+            return this.totalBytes;
+        }
+
+        /**
+         * Configure a watch that fires when this range may have been modified.
+         *
+         * @param watch watch future, or null for none
+         */
+        public synchronized void setWatch(Future<Void> watch) {
+            this.watch = watch;
+        }
+
+        /**
+         * Cancel this entry's watch, if any.
+         */
+        public synchronized void cancelWatch() {
+            if (this.watch != null) {
+                this.watch.cancel(false);
+                this.watch = null;
+            }
+        }
+
+    // Object
+
+        @Override
+        public String toString() {
+            return "Entry"
+              + "[min=" + ByteUtil.toString(this.min)
+              + ",max=" + ByteUtil.toString(this.max)
+              + ",size=" + this.keys.length
+              + ",version=" + this.version
+              + "]";
+        }
+    }
+}
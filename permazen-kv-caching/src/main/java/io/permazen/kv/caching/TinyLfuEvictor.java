@@ -0,0 +1,231 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link Evictor} implementing {@link EvictionPolicy#TINY_LFU}, a variant of W-TinyLFU.
+ *
+ * <p>
+ * New items enter a small LRU "window", which is limited to a small fraction of both the items and the bytes in the
+ * cache. The item pushed out of the window by each new item, or by growing, becomes the admission candidate and enters
+ * the "probation" segment of a segmented LRU main area; items are promoted to its "protected" segment, which is limited
+ * to most of the cache, when used again. When the cache next exceeds its limits, the candidate competes with the main
+ * area's victim: whichever has the lower estimated access frequency per byte, according to a {@link FrequencySketch},
+ * is discarded. So items touched only once by a scan are discarded before frequently used items, even if the frequently
+ * used items have recently been discarded themselves.
+ *
+ * <p>
+ * Because items vary widely in size, the main area's victim is whichever of the least recently used probation and
+ * protected items has the lower frequency per byte, so that a large item that is used often only because it contains
+ * one popular key does not crowd out many smaller items.
+ *
+ * <p>
+ * Each use of an item is recorded against both the item and the key used, so that when an item is discarded, the keys
+ * it was used by are still known to be popular if they are cached again.
+ *
+ * @param <T> cached item type
+ */
+class TinyLfuEvictor<T> extends Evictor<T> {
+
+    // Segments, in increasing order of value
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final double PROTECTED_FRACTION = 0.80;
+    private static final int SKETCH_ITEMS_FACTOR = 8;
+
+    private final List<RingEntry<T>> segments = Arrays.asList(  // each ordered MRU first, LRU last
+      new RingEntry<>(null), new RingEntry<>(null), new RingEntry<>(null));
+    private final int[] counts = new int[this.segments.size()];
+    private final long[] bytes = new long[this.segments.size()];            // as of when each item was last moved
+
+    private FrequencySketch sketch;
+    private int maxWindowItems;
+    private long maxWindowBytes;
+    private int maxProtectedItems;
+    private long maxProtectedBytes;
+    private Node<T> candidate;                                              // item most recently pushed out of window
+
+    TinyLfuEvictor(ToLongFunction<? super T> weigher) {
+        super(weigher);
+        this.configure(this.maxItems, this.maxBytes);
+    }
+
+    @Override
+    public void configure(int maxItems, long maxBytes) {
+        super.configure(maxItems, maxBytes);
+        this.maxWindowItems = Math.max(1, (int)(maxItems * WINDOW_FRACTION));
+        this.maxWindowBytes = Math.max(1, (long)(maxBytes * WINDOW_FRACTION));
+        this.maxProtectedItems = Math.max(1, (int)(maxItems * PROTECTED_FRACTION));
+        this.maxProtectedBytes = Math.max(1, (long)(maxBytes * PROTECTED_FRACTION));
+        final int sketchItems = (int)Math.min((long)maxItems * SKETCH_ITEMS_FACTOR, Integer.MAX_VALUE);
+        this.sketch = new FrequencySketch(sketchItems);
+    }
+
+    @Override
+    public void add(Node<T> node) {
+        this.sketch.increment(node.getHash());
+        this.move(node, WINDOW);
+        while (this.counts[WINDOW] > this.maxWindowItems) {
+            this.candidate = this.lru(WINDOW);
+            this.move(this.candidate, PROBATION);
+        }
+    }
+
+    @Override
+    public void touch(Node<T> node, long hash) {
+
+        // Record the use of both the key, in case it's cached again later, and the item
+        this.sketch.increment(hash);
+        if (hash != node.getHash())
+            this.sketch.increment(node.getHash());
+
+        // Update segments
+        switch (node.getSegment()) {
+        case WINDOW:
+            this.move(node, WINDOW);
+            break;
+        case PROBATION:
+        case PROTECTED:
+            if (node == this.candidate)
+                this.candidate = null;
+            this.move(node, PROTECTED);
+            while (this.counts[PROTECTED] > 1
+              && (this.counts[PROTECTED] > this.maxProtectedItems || this.bytes[PROTECTED] > this.maxProtectedBytes))
+                this.move(this.lru(PROTECTED), PROBATION);
+            break;
+        default:
+            throw new IllegalArgumentException("node not added");
+        }
+    }
+
+    @Override
+    public void remove(Node<T> node) {
+        final int segment = node.getSegment();
+        if (segment == -1)
+            return;
+        if (node == this.candidate)
+            this.candidate = null;
+        this.counts[segment]--;
+        this.bytes[segment] -= node.getWeight();
+        node.detach();
+        node.setSegment(-1);
+    }
+
+    @Override
+    public void merge(Node<T> node1, Node<T> node2, Node<T> merged) {
+
+        // The merged item takes the identity of the more frequently used item, and the place of the more valuable item
+        final long hash1 = node1.getHash();
+        final long hash2 = node2.getHash();
+        merged.setHash(this.sketch.frequency(hash1) >= this.sketch.frequency(hash2) ? hash1 : hash2);
+        final Node<T> keeper = node2.getSegment() > node1.getSegment() ? node2 : node1;
+        final int segment = keeper.getSegment();
+        if (segment == -1) {
+            this.add(merged);
+            return;
+        }
+        merged.attachAfter(keeper);
+        merged.setSegment(segment);
+        merged.setWeight(this.weigher.applyAsLong(merged.getOwner()));
+        this.counts[segment]++;
+        this.bytes[segment] += merged.getWeight();
+        this.remove(node1);
+        this.remove(node2);
+    }
+
+    @Override
+    public T victim() {
+
+        // Get the main area victim, choosing between the probation and protected segments; if none, use the window
+        Node<T> victim = this.lru(PROBATION);
+        final Node<T> other = this.lru(PROTECTED);
+        if (victim == null || (other != null && this.density(other, victim) < this.density(victim, other)))
+            victim = other;
+        if (victim == null) {
+            final Node<T> node = this.lru(WINDOW);
+            return node != null ? node.getOwner() : null;
+        }
+
+        // If there's no pending admission candidate, but items in the window have grown too large, push one out
+        if (this.candidate == null && this.lru(WINDOW) != null && this.windowBytes() > this.maxWindowBytes) {
+            this.candidate = this.lru(WINDOW);
+            this.move(this.candidate, PROBATION);
+        }
+
+        // If there's a pending admission candidate, keep it only if it's used more frequently per byte than the victim
+        final Node<T> node = this.candidate;
+        this.candidate = null;
+        if (node != null && node != victim && this.density(node, victim) <= this.density(victim, node))
+            return node.getOwner();
+        return victim.getOwner();
+    }
+
+    @Override
+    public List<T> getItems() {
+        final ArrayList<T> list = new ArrayList<>();
+        for (RingEntry<T> head : this.segments) {
+            for (RingEntry<T> entry = head.next(); entry != head; entry = entry.next())
+                list.add(entry.getOwner());
+        }
+        return list;
+    }
+
+    /**
+     * Get the number of items in the given segment.
+     *
+     * @param segment {@link #WINDOW}, {@link #PROBATION}, or {@link #PROTECTED}
+     * @return number of items
+     */
+    int getCount(int segment) {
+        return this.counts[segment];
+    }
+
+// Internal methods
+
+    // Move node to the MRU end of the given segment
+    private void move(Node<T> node, int segment) {
+        final int oldSegment = node.getSegment();
+        if (oldSegment != -1) {
+            this.counts[oldSegment]--;
+            this.bytes[oldSegment] -= node.getWeight();
+        }
+        node.attachAfter(this.segments.get(segment));
+        node.setSegment(segment);
+        node.setWeight(this.weigher.applyAsLong(node.getOwner()));
+        this.counts[segment]++;
+        this.bytes[segment] += node.getWeight();
+    }
+
+    // Get the current size of the items in the window, which may have grown since they were added
+    private long windowBytes() {
+        final RingEntry<T> head = this.segments.get(WINDOW);
+        long total = 0;
+        for (RingEntry<T> entry = head.next(); entry != head; entry = entry.next())
+            total += this.weigher.applyAsLong(entry.getOwner());
+        return total;
+    }
+
+    // Get the frequency of node1 scaled by the size of node2, for comparing frequency per byte
+    private long density(Node<T> node1, Node<T> node2) {
+        return this.sketch.frequency(node1.getHash()) * Math.max(1, this.weigher.applyAsLong(node2.getOwner()));
+    }
+
+    // Get the LRU node in the given segment, or null if empty
+    @SuppressWarnings("unchecked")
+    private Node<T> lru(int segment) {
+        final RingEntry<T> head = this.segments.get(segment);
+        final RingEntry<T> entry = head.prev();
+        return entry != head ? (Node<T>)entry : null;
+    }
+}
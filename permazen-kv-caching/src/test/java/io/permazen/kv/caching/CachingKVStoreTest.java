@@ -0,0 +1,206 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.test.KVTestSupport;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CachingKVStoreTest extends KVTestSupport {
+
+    @Test
+    public void testMutations() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            // Populate underlying store
+            final NavigableMapKVStore underlying = new NavigableMapKVStore();
+            for (int i = 0; i < 200; i++)
+                underlying.put(this.key(this.random.nextInt(0x10000)), this.randomValue());
+            underlying.put(b("8000"), underlying.encodeCounter(100));
+            final NavigableMapKVStore expected = underlying.clone();
+
+            // Create caching layer
+            final CachingKVStore kv = new CachingKVStore(underlying, executor, 1000000L);
+            kv.setMaxRanges(8);
+            kv.setEvictionPolicy(EvictionPolicy.values()[this.random.nextInt(EvictionPolicy.values().length)]);
+
+            // Mix reads and writes, flushing periodically
+            for (int round = 0; round < 40; round++) {
+                for (int i = 0; i < 25; i++) {
+                    final int keyValue = this.random.nextInt(0x10000);
+                    final byte[] key = this.key(keyValue);
+                    switch (this.random.nextInt(8)) {
+                    case 0:
+                        kv.remove(key);
+                        expected.remove(key);
+                        break;
+                    case 1:
+                        final byte[] maxKey = this.key(Math.min(0xffff, keyValue + this.random.nextInt(0x400)));
+                        kv.removeRange(key, maxKey);
+                        expected.removeRange(key, maxKey);
+                        break;
+                    case 2:
+                        kv.adjustCounter(b("8000"), 3);
+                        expected.adjustCounter(b("8000"), 3);
+                        break;
+                    case 3:
+                    case 4:
+                        final byte[] value = this.randomValue();
+                        kv.put(key, value);
+                        expected.put(key, value);
+                        break;
+                    default:
+                        Assert.assertEquals(kv.get(key), expected.get(key));
+                        break;
+                    }
+                }
+
+                // Verify read-your-writes
+                this.verifySame(kv, expected);
+
+                // Flush and verify the mutations reached the underlying store
+                if (this.random.nextBoolean()) {
+                    final Writes writes = kv.flush();
+                    Assert.assertNotNull(writes);
+                    Assert.assertNull(kv.flush());
+                    this.verifySame(underlying, expected);
+                    this.verifySame(kv, expected);
+                }
+            }
+            kv.flush();
+            this.verifySame(underlying, expected);
+
+            // Verify statistics
+            final CachingStatistics stats = kv.getStatistics();
+            Assert.assertTrue(stats.getHits() + stats.getMisses() > 0, "" + stats);
+            Assert.assertTrue(stats.getHitRatio() >= 0.0 && stats.getHitRatio() <= 1.0, "" + stats);
+            kv.close();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedFlush() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            // Underlying store that fails after applying mutations, i.e., was partially modified as far as we know
+            final NavigableMapKVStore underlying = new NavigableMapKVStore() {
+                @Override
+                public void apply(Mutations mutations) {
+                    super.apply(mutations);
+                    throw new RuntimeException("simulated failure");
+                }
+            };
+            underlying.put(b("8000"), underlying.encodeCounter(100));
+            final CachingKVStore kv = new CachingKVStore(underlying, executor, 1000000L);
+            Assert.assertEquals(kv.decodeCounter(kv.get(b("8000"))), 100);
+
+            // Adjust a counter and flush
+            kv.adjustCounter(b("8000"), 5);
+            kv.put(b("9000"), b("01"));
+            try {
+                kv.flush();
+                Assert.fail("expected exception");
+            } catch (RuntimeException e) {
+                Assert.assertEquals(e.getMessage(), "simulated failure");
+            }
+
+            // The mutations must not be applied again, and reads must reflect the underlying store
+            Assert.assertNull(kv.flush());
+            Assert.assertEquals(underlying.decodeCounter(underlying.get(b("8000"))), 105);
+            Assert.assertEquals(kv.decodeCounter(kv.get(b("8000"))), 105);
+            Assert.assertEquals(kv.get(b("9000")), b("01"));
+            kv.close();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadDuringFlush() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+        try {
+
+            // Underlying store that has a concurrent reader read back through the cache after applying mutations
+            final AtomicReference<Callable<List<String>>> reader = new AtomicReference<>();
+            final ArrayList<List<String>> reads = new ArrayList<>();
+            final NavigableMapKVStore underlying = new NavigableMapKVStore() {
+                @Override
+                public void apply(Mutations mutations) {
+                    super.apply(mutations);
+                    try {
+                        reads.add(readerExecutor.submit(reader.get()).get());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            underlying.put(b("8000"), underlying.encodeCounter(100));
+            underlying.put(b("9000"), b("01"));
+            final CachingKVStore kv = new CachingKVStore(underlying, executor, 1000000L);
+            reader.set(() -> Arrays.asList(
+              String.valueOf(kv.decodeCounter(kv.get(b("8000")))),
+              this.read(kv, false).toString()));
+
+            // Adjust a counter and flush; the reader must see the adjustment exactly once
+            kv.adjustCounter(b("8000"), 5);
+            kv.remove(b("9000"));
+            final List<String> expected = Arrays.asList("105", "[" + this.s(new KVPair(b("8000"), kv.encodeCounter(105))) + "]");
+            kv.flush();
+            Assert.assertEquals(reads, Collections.singletonList(expected));
+            Assert.assertEquals(reader.get().call(), expected);
+            Assert.assertEquals(underlying.decodeCounter(underlying.get(b("8000"))), 105);
+            kv.close();
+        } finally {
+            readerExecutor.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    private void verifySame(KVStore actual, KVStore expected) {
+        final boolean reverse = this.random.nextBoolean();
+        Assert.assertEquals(this.read(actual, reverse), this.read(expected, reverse));
+    }
+
+    private List<String> read(KVStore kv, boolean reverse) {
+        final ArrayList<String> list = new ArrayList<>();
+        try (CloseableIterator<KVPair> i = kv.getRange(null, null, reverse)) {
+            i.forEachRemaining(pair -> list.add(this.s(pair)));
+        }
+        return list;
+    }
+
+    private byte[] key(int value) {
+        return ByteUtil.parse(String.format("%04x", value));
+    }
+
+    private byte[] randomValue() {
+        final byte[] value = new byte[this.random.nextInt(6)];
+        this.random.nextBytes(value);
+        return value;
+    }
+}
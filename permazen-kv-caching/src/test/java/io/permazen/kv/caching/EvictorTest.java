@@ -0,0 +1,138 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import io.permazen.test.TestSupport;
+
+import java.util.HashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class EvictorTest extends TestSupport {
+
+    private static final int MAX_ITEMS = 100;
+    private static final long ITEM_BYTES = 10;
+    private static final int HOT_ITEMS = 20;
+
+    @Test
+    public void testFrequencySketch() throws Exception {
+        final FrequencySketch sketch = new FrequencySketch(1000);
+        Assert.assertEquals(sketch.frequency(123), 0);
+        for (int i = 0; i < 5; i++)
+            sketch.increment(123);
+        Assert.assertTrue(sketch.frequency(123) >= 5);
+        for (int i = 0; i < 100; i++)
+            sketch.increment(456);
+        Assert.assertEquals(sketch.frequency(456), FrequencySketch.MAX_FREQUENCY);
+
+        // Many other accesses should eventually age out old ones
+        for (int i = 0; i < 100000; i++)
+            sketch.increment(this.random.nextLong());
+        Assert.assertTrue(sketch.frequency(456) < FrequencySketch.MAX_FREQUENCY);
+    }
+
+    @Test
+    public void testScanResistance() throws Exception {
+
+        // With LRU, scans of more items than fit in the cache flush all of the hot items
+        final Cache lru = new Cache(EvictionPolicy.LRU);
+        this.replay(lru, ITEM_BYTES);
+        Assert.assertEquals(lru.hits, 0);
+
+        // With TinyLFU, the hot items are protected from items used only once
+        final Cache tinyLfu = new Cache(EvictionPolicy.TINY_LFU);
+        this.replay(tinyLfu, ITEM_BYTES);
+        Assert.assertTrue(tinyLfu.hits > tinyLfu.misses, "hits=" + tinyLfu.hits + " misses=" + tinyLfu.misses);
+
+        // Items that are too large for the window must compete with the hot items and lose
+        final Cache bigScan = new Cache(EvictionPolicy.TINY_LFU);
+        this.replay(bigScan, ITEM_BYTES * HOT_ITEMS);
+        Assert.assertTrue(bigScan.hits > bigScan.misses, "hits=" + bigScan.hits + " misses=" + bigScan.misses);
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            final Cache cache = new Cache(policy);
+            for (int i = 0; i < 10000; i++) {
+                cache.access(this.random.nextInt(1000), 1 + this.random.nextInt((int)ITEM_BYTES * 2));
+                Assert.assertTrue(cache.items.size() <= MAX_ITEMS);
+                Assert.assertTrue(cache.totalBytes <= MAX_ITEMS * ITEM_BYTES);
+                Assert.assertEquals(cache.evictor.getItems().size(), cache.items.size());
+            }
+        }
+    }
+
+    // Alternate between reading the hot items, which are counted, and scanning through never-repeated items
+    private void replay(Cache cache, long scanItemBytes) {
+        int nextScanItem = HOT_ITEMS;
+        for (int round = 0; round < 50; round++) {
+            final boolean counted = round >= 10;
+            for (int i = 0; i < HOT_ITEMS; i++)
+                cache.access(i, ITEM_BYTES, counted);
+            for (int i = 0; i < MAX_ITEMS * 2; i++)
+                cache.access(nextScanItem++, scanItemBytes, false);
+        }
+    }
+
+// Cache
+
+    private static final class Cache {
+
+        final Evictor<Item> evictor;
+        final HashMap<Integer, Item> items = new HashMap<>();
+        long totalBytes;
+        int hits;
+        int misses;
+
+        Cache(EvictionPolicy policy) {
+            this.evictor = policy.createEvictor(item -> item.bytes);
+            this.evictor.configure(MAX_ITEMS, MAX_ITEMS * ITEM_BYTES);
+        }
+
+        void access(int id, long bytes) {
+            this.access(id, bytes, false);
+        }
+
+        void access(int id, long bytes, boolean counted) {
+            final Item existing = this.items.get(id);
+            if (existing != null) {
+                this.evictor.touch(existing.node, existing.hash);
+                if (counted)
+                    this.hits++;
+                return;
+            }
+            if (counted)
+                this.misses++;
+            final Item item = new Item(id, bytes);
+            this.items.put(id, item);
+            this.totalBytes += bytes;
+            this.evictor.add(item.node);
+            while (this.items.size() > MAX_ITEMS || this.totalBytes > MAX_ITEMS * ITEM_BYTES) {
+                final Item victim = this.evictor.victim();
+                this.evictor.remove(victim.node);
+                this.items.remove(victim.id);
+                this.totalBytes -= victim.bytes;
+            }
+        }
+    }
+
+    private static final class Item {
+
+        final int id;
+        final long bytes;
+        final long hash;
+        final Evictor.Node<Item> node;
+
+        Item(int id, long bytes) {
+            this.id = id;
+            this.bytes = bytes;
+            this.hash = Evictor.hash(new byte[] { (byte)(id >> 24), (byte)(id >> 16), (byte)(id >> 8), (byte)id });
+            this.node = new Evictor.Node<>(this, this.hash);
+        }
+    }
+}
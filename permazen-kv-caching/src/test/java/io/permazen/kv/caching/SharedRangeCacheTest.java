@@ -0,0 +1,134 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.array.ArrayKVDatabase;
+import io.permazen.kv.array.AtomicArrayKVStore;
+import io.permazen.kv.test.KVTestSupport;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SharedRangeCacheTest extends KVTestSupport {
+
+    @Test
+    public void testSharedCache() throws Exception {
+
+        // Setup databases
+        final File dir = File.createTempFile("SharedRangeCacheTest", null);
+        Assert.assertTrue(dir.delete());
+        Assert.assertTrue(dir.mkdirs());
+        dir.deleteOnExit();
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+        kvstore.setDirectory(dir);
+        final ArrayKVDatabase arrayKV = new ArrayKVDatabase();
+        arrayKV.setKVStore(kvstore);
+        final CachingKVDatabase kvdb = new CachingKVDatabase(arrayKV);
+        kvdb.setSharedCacheMaxBytes(1024 * 1024);
+        kvdb.start();
+        try {
+            final SharedRangeCache sharedCache = kvdb.getSharedCache();
+            Assert.assertNotNull(sharedCache);
+
+            // Populate database; mutating transactions don't publish anything
+            CachingKVTransaction tx = kvdb.createTransaction();
+            final ArrayList<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                tx.put(this.key(i), this.key(i));
+                expected.add(this.s(new KVPair(this.key(i), this.key(i))));
+            }
+            tx.commit();
+            Assert.assertEquals(sharedCache.getTotalBytes(), 0);
+
+            // A read-only transaction publishes what it reads
+            tx = kvdb.createTransaction();
+            tx.setReadOnly(true);
+            Assert.assertEquals(this.read(tx), expected);
+            tx.commit();
+            Assert.assertTrue(sharedCache.getTotalBytes() > 0);
+
+            // The next read-only transaction reads from the shared cache, after which it can't become read-write
+            tx = kvdb.createTransaction();
+            tx.setReadOnly(true);
+            Assert.assertEquals(this.read(tx), expected);
+            try {
+                tx.setReadOnly(false);
+                assert false : "expected IllegalStateException";
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            tx.commit();
+
+            // A local commit invalidates the affected shared ranges
+            tx = kvdb.createTransaction();
+            tx.put(this.key(50), b("ee"));
+            tx.commit();
+            expected.set(50, this.s(new KVPair(this.key(50), b("ee"))));
+            Assert.assertEquals(sharedCache.getTotalBytes(), 0);
+            tx = kvdb.createTransaction();
+            tx.setReadOnly(true);
+            Assert.assertEquals(this.read(tx), expected);
+            tx.commit();
+            Assert.assertTrue(sharedCache.getTotalBytes() > 0);
+
+            // A transaction that started before a commit doesn't publish
+            final long version = sharedCache.getVersion();
+            final CachingKVTransaction tx2 = kvdb.createTransaction();
+            tx2.setReadOnly(true);
+            tx = kvdb.createTransaction();
+            tx.put(this.key(60), b("ff"));
+            tx.commit();
+            expected.set(60, this.s(new KVPair(this.key(60), b("ff"))));
+            Assert.assertTrue(sharedCache.getVersion() > version);
+            Assert.assertEquals(this.read(tx2), expected);
+            tx2.commit();
+            Assert.assertEquals(sharedCache.getTotalBytes(), 0);
+
+            // Re-publish
+            tx = kvdb.createTransaction();
+            tx.setReadOnly(true);
+            Assert.assertEquals(this.read(tx), expected);
+            tx.commit();
+            Assert.assertTrue(sharedCache.getTotalBytes() > 0);
+
+            // Modifications made directly to the underlying database trigger the range watch
+            final KVTransaction innerTx = arrayKV.createTransaction();
+            innerTx.put(this.key(10), b("dd"));
+            innerTx.commit();
+            expected.set(10, this.s(new KVPair(this.key(10), b("dd"))));
+            for (int i = 0; i < 50 && sharedCache.getTotalBytes() > 0; i++)
+                Thread.sleep(100);
+            Assert.assertEquals(sharedCache.getTotalBytes(), 0);
+            tx = kvdb.createTransaction();
+            tx.setReadOnly(true);
+            Assert.assertEquals(this.read(tx), expected);
+            tx.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    private List<String> read(KVStore kv) {
+        final ArrayList<String> list = new ArrayList<>();
+        try (CloseableIterator<KVPair> i = kv.getRange(null, null, false)) {
+            i.forEachRemaining(pair -> list.add(this.s(pair)));
+        }
+        return list;
+    }
+
+    private byte[] key(int value) {
+        return ByteUtil.parse(String.format("%04x", value));
+    }
+}
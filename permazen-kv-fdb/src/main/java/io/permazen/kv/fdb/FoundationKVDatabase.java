@@ -16,6 +16,7 @@ import io.permazen.kv.KVDatabaseException;
 
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -41,6 +42,7 @@ public class FoundationKVDatabase implements KVDatabase {
     private byte[] databaseName = new byte[] { (byte)'D', (byte)'B' };
     private byte[] keyPrefix;
     private Executor executor;
+    private Executor callbackExecutor = ForkJoinPool.commonPool();
 
     private Database database;
     private boolean started;                                // FDB can only be started up once
@@ -76,6 +78,33 @@ public class FoundationKVDatabase implements KVDatabase {
         this.executor = executor;
     }
 
+    /**
+     * Get the {@link Executor} used to complete the futures returned by asynchronous reads.
+     *
+     * @return executor for asynchronous read completions
+     */
+    public synchronized Executor getCallbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    /**
+     * Configure the {@link Executor} used to complete the futures returned by asynchronous reads.
+     *
+     * <p>
+     * FoundationDB reports read results on its networking thread, which must never block; completing futures
+     * from this executor instead ensures that callers' continuations never run on that thread.
+     *
+     * <p>
+     * By default, {@link ForkJoinPool#commonPool} is used.
+     *
+     * @param callbackExecutor executor for asynchronous read completions
+     * @throws IllegalArgumentException if {@code callbackExecutor} is null
+     */
+    public synchronized void setCallbackExecutor(Executor callbackExecutor) {
+        Preconditions.checkArgument(callbackExecutor != null, "null callbackExecutor");
+        this.callbackExecutor = callbackExecutor;
+    }
+
     /**
      * Configure the cluster file path. Default is null, which results in the default fdb.cluster file being used.
      *
@@ -13,6 +13,7 @@ import com.foundationdb.Range;
 import com.foundationdb.ReadTransaction;
 import com.foundationdb.Transaction;
 import com.foundationdb.async.AsyncIterator;
+import com.foundationdb.async.PartialFuture;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Bytes;
@@ -30,7 +31,14 @@ import io.permazen.util.ByteWriter;
 import io.permazen.util.CloseableIterator;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * FoundationDB transaction.
@@ -43,6 +51,7 @@ public class FoundationKVTransaction implements KVTransaction {
     private final FoundationKVDatabase store;
     private final Transaction tx;
     private final byte[] keyPrefix;
+    private final Executor callbackExecutor;
 
     private volatile boolean stale;
     private volatile boolean canceled;
@@ -55,6 +64,7 @@ public class FoundationKVTransaction implements KVTransaction {
         this.store = store;
         this.tx = this.store.getDatabase().createTransaction();
         this.keyPrefix = keyPrefix;
+        this.callbackExecutor = this.store.getCallbackExecutor();
     }
 
 // KVTransaction
@@ -103,6 +113,33 @@ public class FoundationKVTransaction implements KVTransaction {
         }
     }
 
+    /**
+     * Get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * This implementation issues all of the reads before waiting on any of them, so they are pipelined
+     * to the FoundationDB cluster rather than incurring one round trip per key.
+     */
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        for (byte[] key : keys)
+            Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
+        try {
+            final ArrayList<com.foundationdb.async.Future<byte[]>> futures = new ArrayList<>(keys.size());
+            for (byte[] key : keys)
+                futures.add(this.tx.get(this.addPrefix(key)));
+            final ArrayList<byte[]> values = new ArrayList<>(futures.size());
+            for (com.foundationdb.async.Future<byte[]> future : futures)
+                values.add(future.get());
+            return values;
+        } catch (FDBException e) {
+            throw this.wrapException(e);
+        }
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         if (this.stale)
@@ -157,6 +194,104 @@ public class FoundationKVTransaction implements KVTransaction {
         }
     }
 
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
+        return this.async(() -> this.tx.get(this.addPrefix(key)), value -> value);
+    }
+
+    @Override
+    public CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        for (byte[] key : keys)
+            Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
+        final ArrayList<CompletableFuture<byte[]>> futures = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            futures.add(this.async(() -> this.tx.get(this.addPrefix(key)), value -> value));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(ignore -> {
+            final ArrayList<byte[]> values = new ArrayList<>(futures.size());
+            for (CompletableFuture<byte[]> future : futures)
+                values.add(future.join());
+            return values;
+        });
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        if (minKey != null && minKey.length > 0 && minKey[0] == (byte)0xff)
+            return CompletableFuture.completedFuture(null);
+        if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+            return CompletableFuture.completedFuture(null);
+        return this.async(() -> this.tx.getRange(this.addPrefix(minKey, maxKey), 1, false).asList(),
+          list -> list.isEmpty() ? null : new KVPair(this.removePrefix(list.get(0).getKey()), list.get(0).getValue()));
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        final byte[] maxKey2 = maxKey != null && maxKey.length > 0 && maxKey[0] == (byte)0xff ? null : maxKey;
+        if (minKey != null && maxKey2 != null && ByteUtil.compare(minKey, maxKey2) >= 0)
+            return CompletableFuture.completedFuture(null);
+        return this.async(() -> this.tx.getRange(this.addPrefix(minKey, maxKey2), 1, true).asList(),
+          list -> list.isEmpty() ? null : new KVPair(this.removePrefix(list.get(0).getKey()), list.get(0).getValue()));
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit <= 0");
+        final byte[] minKey2 = minKey != null && minKey.length > 0 && minKey[0] == (byte)0xff ? MAX_KEY : minKey;
+        final byte[] maxKey2 = maxKey != null && maxKey.length > 0 && maxKey[0] == (byte)0xff ? null : maxKey;
+        Preconditions.checkArgument(minKey2 == null || maxKey2 == null || ByteUtil.compare(minKey2, maxKey2) <= 0,
+          "minKey > maxKey");
+        return this.async(() -> this.tx.getRange(this.addPrefix(minKey2, maxKey2), limit, reverse).asList(), list -> {
+            final ArrayList<KVPair> batch = new ArrayList<>(list.size());
+            for (KeyValue kv : list)
+                batch.add(new KVPair(this.removePrefix(kv.getKey()), kv.getValue()));
+            return batch;
+        });
+    }
+
+    /**
+     * Issue an asynchronous FoundationDB read and adapt the result into a {@link CompletableFuture}.
+     *
+     * <p>
+     * Any exception, whether thrown immediately or reported by FoundationDB later, is reported via the returned future,
+     * with {@link FDBException}s wrapped via {@link #wrapException wrapException()}. The returned future is completed
+     * using the database's {@linkplain FoundationKVDatabase#setCallbackExecutor callback executor}, never on the
+     * FoundationDB networking thread.
+     */
+    private <T, R> CompletableFuture<R> async(Supplier<? extends PartialFuture<T>> request,
+      Function<? super T, ? extends R> mapper) {
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        final PartialFuture<T> future;
+        try {
+            if (this.stale)
+                throw new StaleTransactionException(this);
+            future = request.get();
+        } catch (FDBException e) {
+            result.completeExceptionally(this.wrapException(e));
+            return result;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        future.onReady(() -> {
+            try {
+                this.callbackExecutor.execute(() -> {
+                    try {
+                        result.complete(mapper.apply(future.get()));
+                    } catch (FDBException e) {
+                        result.completeExceptionally(this.wrapException(e));
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         if (this.stale)
@@ -10,14 +10,17 @@ import com.google.common.base.Preconditions;
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 import io.permazen.util.CloseableTracker;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Range;
 import org.iq80.leveldb.ReadOptions;
 import org.iq80.leveldb.WriteBatch;
 import org.slf4j.Logger;
@@ -31,6 +34,12 @@ import org.slf4j.LoggerFactory;
  */
 public class LevelDBKVStore extends AbstractKVStore implements CloseableKVStore {
 
+    // LevelDB ranges require an upper limit; this is greater than any key we're likely to see
+    private static final byte[] MAX_RANGE_LIMIT = new byte[256];
+    static {
+        Arrays.fill(MAX_RANGE_LIMIT, (byte)0xff);
+    }
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final CloseableTracker cursorTracker = new CloseableTracker();
     private final ReadOptions readOptions;
@@ -91,6 +100,27 @@ public class LevelDBKVStore extends AbstractKVStore implements CloseableKVStore
         return this.createIterator(this.readOptions, minKey, maxKey, reverse);
     }
 
+    /**
+     * Estimate the size of a key range.
+     *
+     * <p>
+     * This implementation uses {@link DB#getApproximateSizes DB.getApproximateSizes()}, which reports the approximate
+     * on-disk (i.e., possibly compressed) size of the range, without regard to any snapshot or uncommitted writes.
+     * The number of keys is not known.
+     */
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        Preconditions.checkState(!this.closed, "closed");
+        this.cursorTracker.poll();
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        if (maxKey == null)
+            maxKey = LevelDBKVStore.MAX_RANGE_LIMIT;
+        if (ByteUtil.compare(minKey, maxKey) >= 0)
+            return SizeEstimate.EMPTY;
+        return new SizeEstimate(-1, this.db.getApproximateSizes(new Range(minKey, maxKey))[0], false);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         key.getClass();
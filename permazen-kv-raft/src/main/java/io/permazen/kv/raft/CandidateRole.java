@@ -12,6 +12,7 @@ import io.permazen.kv.raft.msg.InstallSnapshot;
 import io.permazen.kv.raft.msg.RequestVote;
 
 import java.util.HashSet;
+import java.util.List;
 
 import javax.annotation.concurrent.GuardedBy;
 
@@ -130,12 +131,12 @@ public class CandidateRole extends NonLeaderRole {
 // MessageSwitch
 
     @Override
-    void caseAppendRequest(AppendRequest msg, NewLogEntry newLogEntry) {
+    void caseAppendRequest(AppendRequest msg, List<NewLogEntry> newLogEntries) {
         assert Thread.holdsLock(this.raft);
         if (this.log.isDebugEnabled())
             this.debug("rec'd " + msg + " in " + this + "; reverting to follower");
         this.raft.changeRole(new FollowerRole(this.raft, msg.getSenderId(), this.raft.returnAddress));
-        this.raft.receiveMessage(this.raft.returnAddress, msg, -1, newLogEntry);
+        this.raft.receiveMessage(this.raft.returnAddress, msg, -1, newLogEntries);
     }
 
 // MessageSwitch
@@ -5,6 +5,7 @@
 
 package io.permazen.kv.raft;
 
+import java.util.ArrayDeque;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.NavigableSet;
@@ -39,6 +40,12 @@ public class Follower {
     @GuardedBy("raft")
     private final TreeSet<Timestamp> commitLeaseTimeouts = new TreeSet<>();
 
+    // AppendRequests containing log entries that have been sent but not yet acknowledged, in the order sent
+    @GuardedBy("raft")
+    private final ArrayDeque<InFlightAppend> inFlightAppends = new ArrayDeque<>();
+    @GuardedBy("raft")
+    private long inFlightAppendBytes;                   // total mutation data in inFlightAppends
+
     @GuardedBy("raft")
     private long nextIndex;                             // index of the next log entry to send to peer
     @GuardedBy("raft")
@@ -185,6 +192,30 @@ public class Follower {
         this.synced = synced;
     }
 
+    /**
+     * Get the number of {@link io.permazen.kv.raft.msg.AppendRequest}s containing log entries that have been sent
+     * to this follower but not yet acknowledged.
+     *
+     * @return number of in-flight requests
+     */
+    public int getInFlightAppends() {
+        synchronized (this.raft) {
+            return this.inFlightAppends.size();
+        }
+    }
+
+    /**
+     * Get the total size of the log entry data in the {@link io.permazen.kv.raft.msg.AppendRequest}s that have been sent
+     * to this follower but not yet acknowledged.
+     *
+     * @return number of in-flight bytes
+     */
+    public long getInFlightAppendBytes() {
+        synchronized (this.raft) {
+            return this.inFlightAppendBytes;
+        }
+    }
+
     /**
      * Determine whether this follower is currently being sent a whole database snapshot download.
      *
@@ -231,6 +262,35 @@ public class Follower {
         this.updateTimer = updateTimer;
     }
 
+    void addInFlightAppend(Timestamp leaderTimestamp, long bytes) {
+        assert Thread.holdsLock(this.raft);
+        this.inFlightAppends.add(new InFlightAppend(leaderTimestamp, bytes));
+        this.inFlightAppendBytes += bytes;
+    }
+
+    // Responses are sent in the order requests are received, so a response acknowledges every request sent before it
+    boolean acknowledgeInFlightAppends(Timestamp leaderTimestamp) {
+        assert Thread.holdsLock(this.raft);
+        boolean acknowledged = false;
+        while (!this.inFlightAppends.isEmpty()
+          && this.inFlightAppends.peek().getLeaderTimestamp().compareTo(leaderTimestamp) <= 0) {
+            this.inFlightAppendBytes -= this.inFlightAppends.remove().getBytes();
+            acknowledged = true;
+        }
+        return acknowledged;
+    }
+
+    Timestamp getFirstInFlightAppendTimestamp() {
+        assert Thread.holdsLock(this.raft);
+        return !this.inFlightAppends.isEmpty() ? this.inFlightAppends.peek().getLeaderTimestamp() : null;
+    }
+
+    void clearInFlightAppends() {
+        assert Thread.holdsLock(this.raft);
+        this.inFlightAppends.clear();
+        this.inFlightAppendBytes = 0;
+    }
+
     void updateNow() {
         assert Thread.holdsLock(this.raft);
         this.updateTimer.timeoutNow();
@@ -243,6 +303,7 @@ public class Follower {
             this.snapshotTransmit.close();
             this.snapshotTransmit = null;
             this.synced = false;
+            this.clearInFlightAppends();
         }
     }
 
@@ -267,9 +328,32 @@ public class Follower {
               + (this.leaderTimestamp != null ?
                 ",leaderTimestamp=" + String.format("%+dms", this.leaderTimestamp.offsetFromNow()) : "")
               + ",synced=" + this.synced
+              + (!this.inFlightAppends.isEmpty() ?
+                ",inFlight=" + this.inFlightAppends.size() + "/" + this.inFlightAppendBytes + "b" : "")
               + (!this.skipDataLogEntries.isEmpty() ? ",skipDataLogEntries=" + this.skipDataLogEntries : "")
               + (this.snapshotTransmit != null ? ",snapshotTransmit=" + this.snapshotTransmit : "")
               + "]";
         }
     }
+
+// InFlightAppend
+
+    private static final class InFlightAppend {
+
+        private final Timestamp leaderTimestamp;
+        private final long bytes;
+
+        InFlightAppend(Timestamp leaderTimestamp, long bytes) {
+            this.leaderTimestamp = leaderTimestamp;
+            this.bytes = bytes;
+        }
+
+        Timestamp getLeaderTimestamp() {
+            return this.leaderTimestamp;
+        }
+
+        long getBytes() {
+            return this.bytes;
+        }
+    }
 }
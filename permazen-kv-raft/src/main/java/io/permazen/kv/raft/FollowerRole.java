@@ -20,7 +20,6 @@ import io.permazen.kv.raft.msg.PingRequest;
 import io.permazen.kv.raft.msg.PingResponse;
 import io.permazen.kv.raft.msg.RequestVote;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -191,7 +190,6 @@ public class FollowerRole extends NonLeaderRole {
 
         // Cleanup pending requests and commit writes
         this.commitRequests.clear();
-        this.pendingWrites.values().forEach(PendingWrite::cleanup);
         this.pendingWrites.clear();
 
         // Proceed
@@ -360,6 +358,8 @@ public class FollowerRole extends NonLeaderRole {
             } catch (Exception e) {
                 throw new KVTransactionException(tx, "error attempting to persist transaction", e);
             }
+            if (!this.raft.syncLog())
+                throw new KVTransactionException(tx, "error attempting to persist transaction");
             if (this.log.isDebugEnabled())
                 this.debug("added log entry " + logEntry + " for local transaction " + tx);
             assert logEntry.getTerm() == 1;
@@ -418,37 +418,12 @@ public class FollowerRole extends NonLeaderRole {
             assert !readsData.hasRemaining();
             readsData.flip();
 
-            // Serialize mutations into a temporary file (but do not close or durably persist yet)
+            // Serialize mutations
             final Writes writes = tx.view.getWrites();          // synchronization not req'd here because tx is COMMIT_READY
-            final File file = new File(this.raft.logDir,
-              String.format("%s%019d%s", RaftKVDatabase.TX_FILE_PREFIX, tx.txId, RaftKVDatabase.TEMP_FILE_SUFFIX));
-            final FileWriter fileWriter;
-            try {
-                fileWriter = new FileWriter(file, this.raft.disableSync);
-            } catch (IOException e) {
-                throw new KVTransactionException(tx, "error saving transaction mutations to temporary file", e);
-            }
-            try {
-                LogEntry.writeData(fileWriter, new LogEntry.Data(writes, tx.getConfigChange()));
-                fileWriter.flush();
-            } catch (IOException e) {
-                Util.closeIfPossible(fileWriter);
-                this.raft.deleteFile(fileWriter.getFile(), "pending write temp file");
-                throw new KVTransactionException(tx, "error saving transaction mutations to temporary file", e);
-            }
+            mutationData = NewLogEntry.serialize(new LogEntry.Data(writes, tx.getConfigChange()));
 
-            // Load serialized writes from file
-            final long writeLength = fileWriter.getLength();
-            try {
-                mutationData = Util.readFile(fileWriter.getFile(), writeLength);
-            } catch (IOException e) {
-                Util.closeIfPossible(fileWriter);
-                this.raft.deleteFile(fileWriter.getFile(), "pending write temp file");
-                throw new KVTransactionException(tx, "error reading transaction mutations from temporary file", e);
-            }
-
-            // Record pending commit write with temporary file
-            final PendingWrite pendingWrite = new PendingWrite(tx, fileWriter);
+            // Record pending commit write with serialized mutations
+            final PendingWrite pendingWrite = new PendingWrite(tx, mutationData.asReadOnlyBuffer());
             this.pendingWrites.put(tx.txId, pendingWrite);
         }
 
@@ -473,9 +448,7 @@ public class FollowerRole extends NonLeaderRole {
     void cleanupForTransaction(RaftKVTransaction tx) {
         assert Thread.holdsLock(this.raft);
         this.commitRequests.remove(tx);
-        final PendingWrite pendingWrite = this.pendingWrites.remove(tx.txId);
-        if (pendingWrite != null)
-            pendingWrite.cleanup();
+        this.pendingWrites.remove(tx.txId);
         super.cleanupForTransaction(tx);
     }
 
@@ -496,7 +469,7 @@ public class FollowerRole extends NonLeaderRole {
     }
 
     @Override
-    void caseAppendRequest(AppendRequest msg, NewLogEntry newLogEntry) {
+    void caseAppendRequest(AppendRequest msg, List<NewLogEntry> newLogEntries) {
         assert Thread.holdsLock(this.raft);
 
         // Cancel probing
@@ -529,8 +502,6 @@ public class FollowerRole extends NonLeaderRole {
         final long leaderCommitIndex = msg.getLeaderCommit();
         final long leaderPrevTerm = msg.getPrevLogTerm();
         final long leaderPrevIndex = msg.getPrevLogIndex();
-        final long logTerm = msg.getLogEntryTerm();
-        final long logIndex = leaderPrevIndex + 1;
 
         // Update timestamp last heard from leader
         this.lastLeaderMessageTime = new Timestamp();
@@ -571,9 +542,20 @@ public class FollowerRole extends NonLeaderRole {
             return;
         }
 
-        // Check whether the message actually contains a log entry we can append; if so, append it
+        // Append the log entries contained in the message, if any, stopping at the first one we can't append
         boolean success = true;
-        if (leaderPrevIndex >= this.raft.lastAppliedIndex && !msg.isProbe()) {
+        boolean appended = false;
+        int numMatched = 0;
+        while (success && numMatched < msg.getNumLogEntries()) {
+            final long logTerm = msg.getLogEntryTerm(numMatched);
+            final long logIndex = leaderPrevIndex + 1 + numMatched;
+            final NewLogEntry newLogEntry = newLogEntries != null ? newLogEntries.get(numMatched) : null;
+
+            // Log entries already applied to our state machine are guaranteed to match
+            if (logIndex <= this.raft.lastAppliedIndex) {
+                numMatched++;
+                continue;
+            }
 
             // Check for a conflicting (i.e., never committed, then overwritten) log entry that we need to clear away first
             if (logIndex <= lastLogIndex && logTerm != this.raft.getLogTermAtIndex(logIndex)) {
@@ -584,12 +566,11 @@ public class FollowerRole extends NonLeaderRole {
                 for (LogEntry logEntry : conflictList) {
                     if (this.log.isDebugEnabled())
                         this.debug("deleting log entry " + logEntry + " overrwritten by " + msg);
-                    this.raft.deleteFile(logEntry.getFile(), "overwritten log file");
                 }
                 try {
-                    this.raft.logDirChannel.force(true);
+                    this.raft.segmentedLog.truncate(conflictList.get(0));
                 } catch (IOException e) {
-                    this.warn("errory fsync()'ing log directory " + this.raft.logDir, e);
+                    this.warn("error truncating log in " + this.raft.logDir, e);
                 }
                 conflictList.clear();
 
@@ -635,22 +616,11 @@ public class FollowerRole extends NonLeaderRole {
                         final RaftKVTransaction tx = pendingWrite.getTx();
                         this.pendingWrites.remove(tx.txId);
 
-                        // Close and durably persist the associated temporary file
+                        // Append a new log entry using the serialized mutations
                         try {
-                            pendingWrite.getFileWriter().close();
-                        } catch (IOException e) {
-                            this.error("error closing temporary transaction file for " + tx, e);
-                            pendingWrite.cleanup();
-                            break;
-                        }
-
-                        // Append a new log entry using temporary file
-                        try {
-                            logEntry = this.raft.appendLogEntry(logTerm,
-                              new NewLogEntry(tx, pendingWrite.getFileWriter().getFile()));
+                            logEntry = this.raft.appendLogEntry(logTerm, new NewLogEntry(tx, pendingWrite.getMutationData()));
                         } catch (Exception e) {
                             this.error("error appending new log entry for " + tx, e);
-                            pendingWrite.cleanup();
                             break;
                         }
 
@@ -677,16 +647,24 @@ public class FollowerRole extends NonLeaderRole {
 
                 // Success?
                 success = logEntry != null;
-
-                // Rebase transactions
-                if (success)
-                    this.rebaseTransactions();
+                appended |= success;
 
                 // Update last log entry index
                 lastLogIndex = this.raft.getLastLogIndex();
             }
+
+            // Advance to the next log entry
+            if (success)
+                numMatched++;
         }
 
+        // Rebase transactions
+        if (appended)
+            this.rebaseTransactions();
+
+        // If we were able to append some, but not all, of the log entries, report the ones we did append
+        success |= numMatched > 0;
+
         // Update my commit index
         final long newCommitIndex = Math.min(Math.max(leaderCommitIndex, this.raft.commitIndex), lastLogIndex);
         if (newCommitIndex > this.raft.commitIndex) {
@@ -709,11 +687,14 @@ public class FollowerRole extends NonLeaderRole {
               + " log=" + this.raft.raftLog);
         }
 
+        // Durably persist our log before acknowledging any of it
+        if (success && !this.raft.syncLog())
+            success = false;
+
         // Send reply
         if (success) {
             this.raft.sendMessage(new AppendResponse(this.raft.clusterId, this.raft.identity, msg.getSenderId(),
-              this.raft.currentTerm, msg.getLeaderTimestamp(), true, msg.isProbe() ? logIndex - 1 : logIndex,
-              this.raft.getLastLogIndex()));
+              this.raft.currentTerm, msg.getLeaderTimestamp(), true, leaderPrevIndex + numMatched, this.raft.getLastLogIndex()));
         } else {
             this.raft.sendMessage(new AppendResponse(this.raft.clusterId, this.raft.identity, msg.getSenderId(),
               this.raft.currentTerm, msg.getLeaderTimestamp(), false, this.raft.lastAppliedIndex, this.raft.getLastLogIndex()));
@@ -1064,7 +1045,6 @@ public class FollowerRole extends NonLeaderRole {
             final RaftKVTransaction tx = pendingWrite.getTx();
             assert txId == tx.txId;
             assert tx.getState().equals(TxState.COMMIT_READY) || tx.getState().equals(TxState.COMMIT_WAITING);
-            assert pendingWrite.getFileWriter().getFile().exists();
         }
         return true;
     }
@@ -1091,29 +1071,24 @@ public class FollowerRole extends NonLeaderRole {
 // PendingWrite
 
     // Represents a read-write transaction in COMMIT_READY or COMMIT_WAITING for which the server's AppendRequest
-    // will have null mutationData, because we will already have the data on hand waiting in a temporary file. This
-    // is a simple optimization to avoid sending the same data from leader -> follower just sent from follower -> leader.
+    // will have null mutationData, because we will already have the serialized data on hand. This is a simple
+    // optimization to avoid sending the same data from leader -> follower just sent from follower -> leader.
     private static class PendingWrite {
 
         private final RaftKVTransaction tx;
-        private final FileWriter fileWriter;
+        private final ByteBuffer mutationData;
 
-        PendingWrite(RaftKVTransaction tx, FileWriter fileWriter) {
+        PendingWrite(RaftKVTransaction tx, ByteBuffer mutationData) {
             this.tx = tx;
-            this.fileWriter = fileWriter;
+            this.mutationData = mutationData;
         }
 
         public RaftKVTransaction getTx() {
             return this.tx;
         }
 
-        public FileWriter getFileWriter() {
-            return this.fileWriter;
-        }
-
-        public void cleanup() {
-            Util.closeIfPossible(this.fileWriter);
-            this.tx.raft.deleteFile(this.fileWriter.getFile(), "pending write temp file");
+        public ByteBuffer getMutationData() {
+            return this.mutationData.duplicate();
         }
     }
 }
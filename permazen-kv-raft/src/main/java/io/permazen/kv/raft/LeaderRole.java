@@ -9,6 +9,7 @@ import com.google.common.base.Preconditions;
 
 import io.permazen.kv.KVTransactionException;
 import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Reads;
 import io.permazen.kv.mvcc.Writes;
 import io.permazen.kv.raft.msg.AppendRequest;
@@ -52,6 +53,10 @@ public class LeaderRole extends Role {
     @GuardedBy("raft")
     private Timestamp leaseTimeout;
 
+    // Read-write transactions from followers waiting to be merged into a single log entry
+    @GuardedBy("raft")
+    private final ArrayList<PendingCommit> pendingCommits = new ArrayList<>();
+
     // Service tasks
     private final Service updateLeaderCommitIndexService = new Service(this, "update leader commitIndex") {
         @Override
@@ -83,6 +88,12 @@ public class LeaderRole extends Role {
             LeaderRole.this.scrubTimestamps();
         }
     });
+    private final Timer commitBatchTimer = new Timer(this.raft, "commit batch", new Service(this, "commit batch") {
+        @Override
+        public void run() {
+            LeaderRole.this.commitPendingBatch();
+        }
+    });
 
 // Constructors
 
@@ -167,7 +178,7 @@ public class LeaderRole extends Role {
         // waiting indefinitely for its log entry with a prior term number to be committed.
         final LogEntry logEntry;
         try {
-            logEntry = this.applyNewLogEntry(new NewLogEntry(this.raft, new LogEntry.Data(new Writes(), null)));
+            logEntry = this.applyNewLogEntry(new NewLogEntry(new LogEntry.Data(new Writes(), null)));
         } catch (Exception e) {
             this.error("error attempting to apply initial log entry", e);
             return;
@@ -193,6 +204,10 @@ public class LeaderRole extends Role {
           .forEach(Follower::cleanup);
         this.checkApplyTimer.cancel();
         this.timestampScrubTimer.cancel();
+        this.commitBatchTimer.cancel();
+        for (PendingCommit commit : this.pendingCommits)
+            this.sendCommitFailure(commit.getMessage(), "leader stepped down before transaction could be committed");
+        this.pendingCommits.clear();
         super.shutdown();
     }
 
@@ -297,6 +312,10 @@ public class LeaderRole extends Role {
     private void updateLeaderCommitIndex() {
         assert Thread.holdsLock(this.raft);
 
+        // Durably persist my log before counting myself as having any of it; this persists all new log entries together
+        if (!this.raft.syncLog())
+            return;
+
         // Find highest index for which a majority of cluster members have ack'd the corresponding log entry from my term
         final int totalCount = this.raft.currentConfig.size();                          // total possible nodes
         final int requiredCount = totalCount / 2 + 1;                                   // require a majority
@@ -454,6 +473,12 @@ public class LeaderRole extends Role {
                     this.debug("scrubbing " + follower + " snapshot timestamp " + snapshotTimestamp);
                 follower.setSnapshotTimestamp(null);
             }
+            final Timestamp inFlightTimestamp = follower.getFirstInFlightAppendTimestamp();
+            if (inFlightTimestamp != null && inFlightTimestamp.isRolloverDanger()) {
+                if (this.log.isDebugEnabled())
+                    this.debug("scrubbing " + follower + " in-flight append timestamp " + inFlightTimestamp);
+                follower.clearInFlightAppends();
+            }
             for (Iterator<Timestamp> i = follower.getCommitLeaseTimeouts().iterator(); i.hasNext(); ) {
                 final Timestamp leaseTimestamp = i.next();
                 if (leaseTimestamp.isRolloverDanger()) {
@@ -541,6 +566,7 @@ public class LeaderRole extends Role {
      *  <li>After receiving an {@link AppendResponse} that caused the follower's
      *      {@linkplain Follower#getNextIndex next index} to change</li>
      *  <li>After receiving the first positive {@link AppendResponse} to a probe</li>
+     *  <li>After receiving an {@link AppendResponse} that acknowledges one or more in-flight {@link AppendRequest}s</li>
      *  <li>After our {@code commitIndex} has advanced (all followers)</li>
      *  <li>After our {@code leaseTimeout} has advanced past one or more of a follower's
      *      {@linkplain Follower#getCommitLeaseTimeouts commit lease timeouts} (with update timer reset)</li>
@@ -611,7 +637,8 @@ public class LeaderRole extends Role {
         }
 
         // Are we still waiting for the update timer to expire?
-        if (!follower.getUpdateTimer().pollForTimeout()) {
+        final boolean timerExpired = follower.getUpdateTimer().pollForTimeout();
+        if (!timerExpired) {
             boolean waitForTimerToExpire = true;
 
             // Don't wait for the update timer to expire if:
@@ -640,6 +667,7 @@ public class LeaderRole extends Role {
         // If follower is too far behind, we must do a snapshot install
         if (nextIndex <= this.raft.lastAppliedIndex) {
             final MostRecentView view = new MostRecentView(this.raft, this.raft.commitIndex);
+            follower.clearInFlightAppends();
             follower.setSnapshotTransmit(new SnapshotTransmit(view.getTerm(),
               view.getIndex(), view.getConfig(), view.getSnapshot(), view.getView()));
             if (this.log.isDebugEnabled())
@@ -648,46 +676,81 @@ public class LeaderRole extends Role {
             return;
         }
 
+        // If we have log entries to send, but too many requests or too much data are already in flight to the follower,
+        // then hold off until the follower acknowledges some of them; but still send a probe when a heartbeat is due.
+        final boolean haveLogEntries = follower.isSynced() && nextIndex <= this.raft.getLastLogIndex();
+        final boolean windowFull = haveLogEntries
+          && follower.getInFlightAppends() > 0
+          && (follower.getInFlightAppends() >= this.raft.maxInFlightAppends
+           || follower.getInFlightAppendBytes() >= this.raft.maxUnappliedLogMemory);
+        if (windowFull && !timerExpired) {
+            if (this.log.isTraceEnabled())
+                this.trace("no update for \"" + peer + "\": waiting for acknowledgement of in-flight log entries");
+            return;
+        }
+
         // Restart update timer here (to avoid looping if an error occurs below)
         follower.getUpdateTimer().timeoutAfter(this.raft.heartbeatTimeout);
 
-        // Send actual data if follower is synced and there is a log entry to send; otherwise, just send a probe
+        // Send actual data if follower is synced and there are log entries we may send; otherwise, just send a probe
         final AppendRequest msg;
-        if (!follower.isSynced() || nextIndex > this.raft.getLastLogIndex()) {
+        long numBytes = 0;
+        if (!haveLogEntries || windowFull) {
 
             // Create probe-only message
             msg = new AppendRequest(this.raft.clusterId, this.raft.identity, peer, this.raft.currentTerm, new Timestamp(),
               this.leaseTimeout, this.raft.commitIndex, this.raft.getLogTermAtIndex(nextIndex - 1), nextIndex - 1);
         } else {
 
-            // Get log entry to send
-            final LogEntry logEntry = this.raft.getLogEntryAtIndex(nextIndex);
-
-            // If the log entry correspond's to follower's transaction, don't send the data because follower already has it.
-            // But only do this optimization the first time, in case something goes wrong on the follower's end.
-            ByteBuffer mutationData = null;
-            if (!follower.getSkipDataLogEntries().remove(logEntry)) {
-                try {
-                    mutationData = logEntry.getContent();
-                } catch (IOException e) {
-                    this.error("error reading log file " + logEntry.getFile(), e);
-                    return;
+            // Send as many consecutive log entries as we can, up to the batch size limit, but always at least one.
+            // The follower may be far behind, so size the arrays by what's actually sent, not by what could be sent.
+            final long maxLogEntries = this.raft.isAppendBatchingSupported(peer) ?
+              this.raft.getLastLogIndex() - nextIndex + 1 : 1;
+            final long maxBytes = Math.min(this.raft.maxAppendBatchSize,
+              this.raft.maxUnappliedLogMemory - follower.getInFlightAppendBytes());
+            final ArrayList<LogEntry> logEntries = new ArrayList<>();
+            final ArrayList<ByteBuffer> mutationData = new ArrayList<>();
+            while (logEntries.size() < maxLogEntries) {
+
+                // Get log entry to send
+                final LogEntry logEntry = this.raft.getLogEntryAtIndex(nextIndex + logEntries.size());
+
+                // If the log entry correspond's to follower's transaction, don't send the data because follower already has it.
+                // But only do this optimization the first time, in case something goes wrong on the follower's end.
+                final boolean skipData = follower.getSkipDataLogEntries().contains(logEntry);
+                final long size = skipData ? 0 : logEntry.getFileSize();
+                if (!logEntries.isEmpty() && numBytes + size > maxBytes)
+                    break;
+                follower.getSkipDataLogEntries().remove(logEntry);
+                ByteBuffer content = null;
+                if (!skipData) {
+                    try {
+                        content = logEntry.getContent();
+                    } catch (IOException e) {
+                        this.error("error reading log file " + logEntry.getFile(), e);
+                        return;
+                    }
                 }
+                logEntries.add(logEntry);
+                mutationData.add(content);
+                numBytes += size;
             }
 
             // Create message
             msg = new AppendRequest(this.raft.clusterId, this.raft.identity, peer, this.raft.currentTerm, new Timestamp(),
               this.leaseTimeout, this.raft.commitIndex, this.raft.getLogTermAtIndex(nextIndex - 1), nextIndex - 1,
-              logEntry.getTerm(), mutationData);
+              logEntries.stream().mapToLong(LogEntry::getTerm).toArray(),
+              mutationData.toArray(new ByteBuffer[mutationData.size()]));
         }
 
         // Send update
         final boolean sent = this.raft.sendMessage(msg);
 
-        // Advance next index if a log entry was sent; we allow pipelining log entries when synchronized
+        // Advance next index past the log entries sent, if any; we allow pipelining log entries when synchronized
         if (sent && !msg.isProbe()) {
             assert follower.isSynced();
-            follower.setNextIndex(Math.min(follower.getNextIndex(), this.raft.getLastLogIndex()) + 1);
+            follower.setNextIndex(nextIndex + msg.getNumLogEntries());
+            follower.addInFlightAppend(msg.getLeaderTimestamp(), numBytes);
         }
 
         // Update the leaderCommit we sent to the follower
@@ -833,7 +896,7 @@ public class LeaderRole extends Role {
 // Message
 
     @Override
-    void caseAppendRequest(AppendRequest msg, NewLogEntry newLogEntry) {
+    void caseAppendRequest(AppendRequest msg, List<NewLogEntry> newLogEntries) {
         assert Thread.holdsLock(this.raft);
         this.failDuplicateLeader(msg);
     }
@@ -867,8 +930,8 @@ public class LeaderRole extends Role {
             return;
         }
 
-        // Flag indicating we might want to update follower when done
-        boolean updateFollowerAgain = false;
+        // Acknowledge in-flight requests; if any were acknowledged, there may be room to send more log entries
+        boolean updateFollowerAgain = follower.acknowledgeInFlightAppends(msg.getLeaderTimestamp());
 
         // Update follower's match index
         if (msg.getMatchIndex() > follower.getMatchIndex()) {
@@ -881,8 +944,10 @@ public class LeaderRole extends Role {
         // Check result and update follower's next index
         final boolean wasSynced = follower.isSynced();
         final long previousNextIndex = follower.getNextIndex();
-        if (!msg.isSuccess())
+        if (!msg.isSuccess()) {
             follower.setNextIndex(Math.max(follower.getNextIndex() - 1, 1));
+            follower.clearInFlightAppends();                // any requests still in flight will also fail
+        }
         follower.setSynced(msg.isSuccess());
         if (follower.isSynced() != wasSynced) {
             if (this.log.isDebugEnabled()) {
@@ -921,10 +986,10 @@ public class LeaderRole extends Role {
 
         // Decode reads, if any, and check for conflicts
         final ByteBuffer readsData = msg.getReadsData();
+        Reads reads = null;
         if (readsData != null) {
 
             // Decode reads
-            final Reads reads;
             try {
                 reads = new Reads(new ByteBufferInputStream(msg.getReadsData()));
             } catch (Exception e) {
@@ -974,6 +1039,16 @@ public class LeaderRole extends Role {
             // delay our response until it completes, but that's not worth the trouble. Instead, applyNewLogEntry() will
             // throw an exception and the client will just just have to retry the transaction. Config changes are rare.
 
+            // If commit batching is enabled, add the transaction to the current batch instead of committing it by itself
+            if (this.raft.maxCommitBatchSize > 1 && newLogEntry.getData().getConfigChange() == null) {
+                this.pendingCommits.add(new PendingCommit(follower, msg, reads, newLogEntry, this.raft.getLastLogIndex()));
+                if (this.pendingCommits.size() >= this.raft.maxCommitBatchSize)
+                    this.commitPendingBatch();
+                else if (!this.commitBatchTimer.isRunning())
+                    this.commitBatchTimer.timeoutAfter(this.raft.commitBatchDelay);
+                return;
+            }
+
             // Commit mutations as a new log entry
             final LogEntry logEntry;
             try {
@@ -1002,6 +1077,111 @@ public class LeaderRole extends Role {
         }
     }
 
+    /**
+     * Commit the current batch of read-write transactions received from followers as a single log entry.
+     *
+     * <p>
+     * Each transaction was checked for conflicts against the log when it arrived; here it is also checked against
+     * any log entries added since then, and against the writes of the transactions ahead of it in the batch.
+     * The transactions that don't conflict are committed together, in the order they arrived.
+     */
+    private void commitPendingBatch() {
+        assert Thread.holdsLock(this.raft);
+
+        // Grab the current batch
+        this.commitBatchTimer.cancel();
+        if (this.pendingCommits.isEmpty())
+            return;
+        final ArrayList<PendingCommit> batch = new ArrayList<>(this.pendingCommits);
+        this.pendingCommits.clear();
+
+        // Check for conflicts and merge the mutations of the transactions that don't conflict
+        final MutableView batchView = new MutableView(this.raft.kv, null, new Writes());
+        final ArrayList<PendingCommit> commits = new ArrayList<>(batch.size());
+        for (PendingCommit commit : batch) {
+            final String conflictMsg = this.checkBatchConflicts(commit, batchView.getWrites());
+            if (conflictMsg != null) {
+                if (this.log.isDebugEnabled())
+                    this.debug("commit request " + commit.getMessage() + " failed due to conflict: " + conflictMsg);
+                this.sendCommitFailure(commit.getMessage(), conflictMsg);
+                continue;
+            }
+            batchView.apply(commit.getNewLogEntry().getData().getWrites());
+            commits.add(commit);
+        }
+        if (commits.isEmpty())
+            return;
+
+        // A batch of one is committed just like an unbatched transaction
+        final NewLogEntry newLogEntry = commits.size() == 1 ?
+          commits.get(0).getNewLogEntry() : new NewLogEntry(new LogEntry.Data(batchView.getWrites(), null));
+
+        // Commit mutations as a new log entry
+        final LogEntry logEntry;
+        try {
+            logEntry = this.applyNewLogEntry(newLogEntry);
+        } catch (Exception e) {
+            this.error("error appending new log entry for batch of " + commits.size() + " commit request(s)", e);
+            for (PendingCommit commit : commits)
+                this.sendCommitFailure(commit.getMessage(), e.getMessage() != null ? e.getMessage() : "" + e);
+            return;
+        }
+        if (this.log.isDebugEnabled())
+            this.debug("added log entry " + logEntry + " for batch of " + commits.size() + " commit request(s)");
+
+        // Rebase transactions
+        this.rebaseTransactions();
+
+        // Follower transaction data optimization (only possible if the log entry contains exactly one transaction)
+        if (commits.size() == 1)
+            commits.get(0).getFollower().getSkipDataLogEntries().add(logEntry);
+
+        // Send responses; every transaction in the batch commits at the same log entry
+        for (PendingCommit commit : commits) {
+            final CommitRequest msg = commit.getMessage();
+            this.raft.sendMessage(new CommitResponse(this.raft.clusterId, this.raft.identity, msg.getSenderId(),
+              this.raft.currentTerm, msg.getTxId(), logEntry.getTerm(), logEntry.getIndex()));
+        }
+    }
+
+    // Check a batched transaction for conflicts with log entries added since it arrived, and with earlier batch members
+    private String checkBatchConflicts(PendingCommit commit, Writes batchWrites) {
+        assert Thread.holdsLock(this.raft);
+
+        // Any transaction that has no reads can't conflict
+        final Reads reads = commit.getReads();
+        if (reads == null)
+            return null;
+
+        // Check log entries added since the transaction arrived; if any have already been applied, give up
+        final long minIndex = commit.getLastLogIndex() + 1;
+        final long maxIndex = this.raft.getLastLogIndex();
+        if (minIndex <= this.raft.lastAppliedIndex) {
+            return "transaction is too old: log index " + minIndex + " <= last applied log index "
+              + this.raft.lastAppliedIndex + " before transaction could be committed";
+        }
+        for (long index = minIndex; index <= maxIndex; index++) {
+            if (reads.isConflict(this.raft.getLogEntryAtIndex(index).getWrites())) {
+                return "writes of committed transaction at index " + index
+                  + " conflict with transaction reads from transaction base index " + commit.getMessage().getBaseIndex();
+            }
+        }
+
+        // Check transactions ahead of this one in the batch
+        if (reads.isConflict(batchWrites))
+            return "writes of another transaction in the same commit batch conflict with transaction reads";
+
+        // No conflict
+        return null;
+    }
+
+    // Reply in the term of the request, which was our term when we received it; when invoked from shutdown(), our current
+    // term may have already advanced, and a reply in the new term would make the follower think we are its leader.
+    private void sendCommitFailure(CommitRequest msg, String errorMessage) {
+        this.raft.sendMessage(new CommitResponse(this.raft.clusterId, this.raft.identity, msg.getSenderId(),
+          msg.getTerm(), msg.getTxId(), errorMessage));
+    }
+
     @Override
     void caseCommitResponse(CommitResponse msg) {
         assert Thread.holdsLock(this.raft);
@@ -1051,6 +1231,7 @@ public class LeaderRole extends Role {
         synchronized (this.raft) {
             return this.toStringPrefix()
               + ",followerMap=" + this.followerMap
+              + (!this.pendingCommits.isEmpty() ? ",pendingCommits=" + this.pendingCommits.size() : "")
               + "]";
         }
     }
@@ -1068,6 +1249,8 @@ public class LeaderRole extends Role {
             assert follower.getUpdateTimer().isRunning() || follower.getSnapshotTransmit() != null;
         }
         assert this.timestampScrubTimer.isRunning();
+        for (PendingCommit commit : this.pendingCommits)
+            assert commit.getLastLogIndex() <= this.raft.getLastLogIndex();
         return true;
     }
 
@@ -1192,5 +1375,47 @@ public class LeaderRole extends Role {
             this.warn("rec'd " + msg + " from unknown follower \"" + msg.getSenderId() + "\", ignoring");
         return follower;
     }
+
+// PendingCommit
+
+    // Represents a read-write transaction from a follower that has been checked for conflicts against the log
+    // as of its arrival, and is waiting to be committed as part of the current commit batch.
+    private static class PendingCommit {
+
+        private final Follower follower;
+        private final CommitRequest msg;
+        private final Reads reads;
+        private final NewLogEntry newLogEntry;
+        private final long lastLogIndex;
+
+        PendingCommit(Follower follower, CommitRequest msg, Reads reads, NewLogEntry newLogEntry, long lastLogIndex) {
+            this.follower = follower;
+            this.msg = msg;
+            this.reads = reads;
+            this.newLogEntry = newLogEntry;
+            this.lastLogIndex = lastLogIndex;
+        }
+
+        public Follower getFollower() {
+            return this.follower;
+        }
+
+        public CommitRequest getMessage() {
+            return this.msg;
+        }
+
+        public Reads getReads() {
+            return this.reads;
+        }
+
+        public NewLogEntry getNewLogEntry() {
+            return this.newLogEntry;
+        }
+
+        // The last log index when conflicts were checked on arrival
+        public long getLastLogIndex() {
+            return this.lastLogIndex;
+        }
+    }
 }
 
@@ -9,18 +9,15 @@ import com.google.common.base.Preconditions;
 
 import io.permazen.kv.mvcc.Writes;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Comparator;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -33,6 +30,7 @@ public class LogEntry {
      */
     public static final Comparator<LogEntry> SORT_BY_INDEX = Comparator.comparingLong(LogEntry::getIndex);
 
+    // Log files written by older versions, which stored each log entry in its own file
     static final String LOG_FILE_PREFIX = "log-";
     static final String LOG_FILE_SUFFIX = ".bin";
     static final Pattern LOG_FILE_PATTERN = Pattern.compile(
@@ -43,10 +41,9 @@ public class LogEntry {
     private final long index;
     private final Writes writes;
     private final String[] configChange;
-    private final long fileSize;
-    private final File file;
-
-    private ByteBuffer content;
+    private final SegmentedLog.Segment segment;
+    private final long offset;
+    private final int length;
 
 // Constructors
 
@@ -55,23 +52,25 @@ public class LogEntry {
      *
      * @param term log entry term
      * @param index log entry index
-     * @param logDir directory containing log files
      * @param data log entry data
-     * @param fileSize the size of the file
+     * @param segment log segment containing the serialized log entry data
+     * @param offset offset of the serialized data in {@code segment}
+     * @param length length of the serialized data
      */
-    LogEntry(long term, long index, File logDir, Data data, long fileSize) {
+    LogEntry(long term, long index, Data data, SegmentedLog.Segment segment, long offset, int length) {
         Preconditions.checkArgument(term > 0, "bogus term");
         Preconditions.checkArgument(index > 0, "bogus index");
-        Preconditions.checkArgument(logDir != null, "null logDir");
         Preconditions.checkArgument(data != null, "null data");
-        Preconditions.checkArgument(fileSize > 0, "invalid fileSize");
+        Preconditions.checkArgument(segment != null, "null segment");
+        Preconditions.checkArgument(offset > 0, "invalid offset");
+        Preconditions.checkArgument(length > 0, "invalid length");
         this.term = term;
         this.index = index;
         this.writes = data.getWrites();
         this.configChange = data.getConfigChange();
-        this.fileSize = fileSize;
-        this.file = new File(logDir,
-          String.format("%s%019d-%019d%s", LOG_FILE_PREFIX, this.getIndex(), this.getTerm(), LOG_FILE_SUFFIX));
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
     }
 
 // Properties
@@ -140,63 +139,41 @@ public class LogEntry {
     }
 
     /**
-     * Get the size of the on-disk file for this log entry.
+     * Get the size of this log entry's serialized data on disk.
      *
-     * @return log entry file size
+     * @return log entry data size
      */
     public long getFileSize() {
-        return this.fileSize;
+        return this.length;
     }
 
     /**
-     * Get the on-disk file for this log entry.
+     * Get the on-disk log segment file containing this log entry.
+     *
+     * <p>
+     * A segment file contains multiple log entries and is reused after all of them have been applied.
      *
-     * @return log entry file
+     * @return log segment file
      */
     public File getFile() {
-        return this.file;
+        return this.segment.getFile();
     }
 
-// File I/O
+    SegmentedLog.Segment getSegment() {
+        return this.segment;
+    }
 
-    /**
-     * Get the serialized contents of this log entry by reading the file.
-     */
-    ByteBuffer getContent() throws IOException {
-        if (this.content == null)
-            this.content = Util.readFile(this.getFile(), this.fileSize);
-        return this.content.asReadOnlyBuffer();
+    long getOffset() {
+        return this.offset;
     }
 
+// File I/O
+
     /**
-     * Create a {@link LogEntry} from the specified file.
-     *
-     * @param file log file
-     * @return {@link LogEntry} instance, or null if {@code file} or {@code file}'s name is invalid
-     * @throws NullPointerException if {@code file} is null
-     * @throws IOException if an I/O error occurs
-     * @throws IOException if file contains invalid data
+     * Get the serialized contents of this log entry, which are memory mapped from its segment file.
      */
-    static LogEntry fromFile(File file) throws IOException {
-
-        // Parse file name
-        final Matcher matcher = LOG_FILE_PATTERN.matcher(file.getName());
-        if (!matcher.matches())
-            throw new IOException("invalid log file name `" + file.getName() + "'");
-        final long index = Long.parseLong(matcher.group(1), 10);
-        final long term = Long.parseLong(matcher.group(2), 10);
-
-        // Get file length
-        final long fileLength = Util.getLength(file);
-
-        // Decode log entry
-        final Data data;
-        try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(file), 4096)) {
-            data = LogEntry.readData(input);
-        }
-
-        // Done
-        return new LogEntry(term, index, file.getParentFile(), data, fileLength);
+    ByteBuffer getContent() throws IOException {
+        return this.segment.read(this.offset, this.length);
     }
 
     /**
@@ -5,97 +5,80 @@
 
 package io.permazen.kv.raft;
 
-import com.google.common.base.Preconditions;
-
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Contains the information required to commit a new entry to the log.
- *
- * <p>
- * Instances must be {@link #close}'ed when no longer needed to ensure the temporary file is deleted if not used.
  */
 class NewLogEntry {
 
     private final LogEntry.Data data;
-    private final File tempFile;
-
-    private boolean tempFileReset;
+    private final ByteBuffer content;
 
     /**
-     * Create an instance from a local transaction and an existing temporary file.
+     * Create an instance from a local transaction and its already serialized mutations.
      *
      * @param tx local transaction
-     * @param tempFile temporary file containing serialized mutations
+     * @param content serialized mutations
      */
-    NewLogEntry(RaftKVTransaction tx, File tempFile) throws IOException {
-        this(new LogEntry.Data(tx.view.getWrites(), tx.getConfigChange()), tempFile);
+    NewLogEntry(RaftKVTransaction tx, ByteBuffer content) {
+        this(new LogEntry.Data(tx.view.getWrites(), tx.getConfigChange()), content);
     }
 
     /**
-     * Create an instance from a local transaction. A corresponding temporary file will be created automatically.
+     * Create an instance from a local transaction.
      *
      * @param tx local transaction
      */
-    NewLogEntry(RaftKVTransaction tx) throws IOException {
-        this(tx.raft, new LogEntry.Data(tx.view.getWrites(), tx.getConfigChange()));
+    NewLogEntry(RaftKVTransaction tx) {
+        this(new LogEntry.Data(tx.view.getWrites(), tx.getConfigChange()));
     }
 
     /**
-     * Create an instance from a {@link LogEntry.Data} object. A corresponding temporary file will be created automatically.
+     * Create an instance from a {@link LogEntry.Data} object, which will be serialized automatically.
      *
-     * @param raft database
      * @param data mutation data
-     * @throws IOException if an I/O error occurs
      */
-    NewLogEntry(RaftKVDatabase raft, LogEntry.Data data) throws IOException {
-        this(data, NewLogEntry.writeDataToFile(data, raft, raft.disableSync));
+    NewLogEntry(LogEntry.Data data) {
+        this(data, NewLogEntry.serialize(data));
     }
 
     /**
-     * Create an instance from a {@link LogEntry.Data} object and an existing temporary file.
+     * Create an instance from a {@link LogEntry.Data} object and its serialized form.
      *
      * @param data mutation data
-     * @param tempFile temporary file containing serialized mutations
+     * @param content serialized mutation data
      */
-    NewLogEntry(LogEntry.Data data, File tempFile) {
+    NewLogEntry(LogEntry.Data data, ByteBuffer content) {
         assert data != null;
-        assert tempFile != null;
+        assert content != null;
         this.data = data;
-        this.tempFile = tempFile;
+        this.content = content.asReadOnlyBuffer();
     }
 
     public LogEntry.Data getData() {
         return this.data;
     }
 
-    public File getTempFile() {
-        Preconditions.checkState(!this.tempFileReset);
-        return this.tempFile;
-    }
-
-    public void resetTempFile() {
-        assert !this.tempFile.exists();
-        this.tempFileReset = true;
-    }
-
-    public void cleanup(RaftKVDatabase raft) {
-        if (!this.tempFileReset)
-            raft.deleteFile(this.tempFile, "new log entry temp file");
+    public ByteBuffer getContent() {
+        return this.content.duplicate();
     }
 
-    private static File writeDataToFile(LogEntry.Data data, RaftKVDatabase raft, boolean disableSync) throws IOException {
-        final File tempFile = raft.getTempFile();
-        boolean success = false;
-        try (FileWriter output = new FileWriter(tempFile, disableSync)) {
+    /**
+     * Serialize log entry data.
+     *
+     * @param data mutation data
+     * @return serialized mutation data
+     */
+    static ByteBuffer serialize(LogEntry.Data data) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
             LogEntry.writeData(output, data);
-            success = true;
-        } finally {
-            if (!success)
-                raft.deleteFile(tempFile, "new log entry temp file");
+        } catch (IOException e) {
+            throw new RuntimeException("unexpected exception", e);
         }
-        return tempFile;
+        return ByteBuffer.wrap(output.toByteArray());
     }
 }
-
@@ -44,7 +44,6 @@ import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,6 +56,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
@@ -64,6 +64,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
@@ -264,7 +265,8 @@ import org.slf4j.LoggerFactory;
  * <p><b>Key Watches</b></p>
  *
  * <p>
- * {@linkplain RaftKVTransaction#watchKey Key watches} are supported.
+ * {@linkplain RaftKVTransaction#watchKey Key watches} and {@linkplain RaftKVTransaction#watchRange range watches}
+ * are supported.
  *
  * <p><b>Mutable Snapshots</b></p>
  *
@@ -356,6 +358,13 @@ public class RaftKVDatabase implements KVDatabase {
      */
     public static final int DEFAULT_MAX_UNAPPLIED_LOG_ENTRIES = 64;
 
+    /**
+     * Default size of each Raft log segment file ({@value DEFAULT_LOG_SEGMENT_SIZE} bytes).
+     *
+     * @see #setLogSegmentSize
+     */
+    public static final int DEFAULT_LOG_SEGMENT_SIZE = 16 * 1024 * 1024;                          // 16MB
+
     /**
      * Default maximum number of heartbeat intervals a leader will wait for a follower to acknowledge receipt of a log entry.
      *
@@ -363,6 +372,36 @@ public class RaftKVDatabase implements KVDatabase {
      */
     public static final int DEFAULT_MAX_FOLLOWER_ACK_HEARTBEATS = 5;
 
+    /**
+     * Default maximum number of unacknowledged {@link AppendRequest}s a leader will send to a follower
+     * ({@value DEFAULT_MAX_IN_FLIGHT_APPENDS}).
+     *
+     * @see #setMaxInFlightAppends
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT_APPENDS = 16;
+
+    /**
+     * Default maximum size of the log entry data in a single {@link AppendRequest} ({@value DEFAULT_MAX_APPEND_BATCH_SIZE} bytes).
+     *
+     * @see #setMaxAppendBatchSize
+     */
+    public static final int DEFAULT_MAX_APPEND_BATCH_SIZE = 1024 * 1024;                          // 1MB
+
+    /**
+     * Default maximum number of follower transactions a leader will merge into a single log entry
+     * ({@value DEFAULT_MAX_COMMIT_BATCH_SIZE}, i.e., no merging).
+     *
+     * @see #setMaxCommitBatchSize
+     */
+    public static final int DEFAULT_MAX_COMMIT_BATCH_SIZE = 1;
+
+    /**
+     * Default commit batch delay in milliseconds ({@value DEFAULT_COMMIT_BATCH_DELAY}).
+     *
+     * @see #setCommitBatchDelay
+     */
+    public static final int DEFAULT_COMMIT_BATCH_DELAY = 0;
+
     /**
      * Default transaction commit timeout ({@value DEFAULT_COMMIT_TIMEOUT}).
      *
@@ -389,7 +428,6 @@ public class RaftKVDatabase implements KVDatabase {
     static final int MAX_APPLIED_TERMS = 128;                           // how many already-applied log entry terms to rememeber
 
     // File prefixes and suffixes
-    static final String TX_FILE_PREFIX = "tx-";
     static final String TEMP_FILE_PREFIX = "temp-";
     static final String TEMP_FILE_SUFFIX = ".tmp";
     static final Pattern TEMP_FILE_PATTERN = Pattern.compile(".*" + Pattern.quote(TEMP_FILE_SUFFIX));
@@ -419,7 +457,12 @@ public class RaftKVDatabase implements KVDatabase {
     int commitTimeout = DEFAULT_COMMIT_TIMEOUT;
     long maxUnappliedLogMemory = DEFAULT_MAX_UNAPPLIED_LOG_MEMORY;
     int maxUnappliedLogEntries = DEFAULT_MAX_UNAPPLIED_LOG_ENTRIES;
+    int logSegmentSize = DEFAULT_LOG_SEGMENT_SIZE;
     int maxFollowerAckHeartbeats = DEFAULT_MAX_FOLLOWER_ACK_HEARTBEATS;
+    int maxInFlightAppends = DEFAULT_MAX_IN_FLIGHT_APPENDS;
+    int maxAppendBatchSize = DEFAULT_MAX_APPEND_BATCH_SIZE;
+    int maxCommitBatchSize = DEFAULT_MAX_COMMIT_BATCH_SIZE;
+    int commitBatchDelay = DEFAULT_COMMIT_BATCH_DELAY;
     boolean followerProbingEnabled;
     boolean disableSync;
     boolean dumpConflicts;
@@ -445,6 +488,7 @@ public class RaftKVDatabase implements KVDatabase {
     // Non-Raft runtime state
     AtomicKVStore kv;
     FileChannel logDirChannel;                                          // null on Windows - no support for sync'ing directories
+    SegmentedLog segmentedLog;                                          // on-disk storage for unapplied log entries
     String returnAddress;                                               // return address for message currently being processed
     IOThread ioThread;                                                  // performs background I/O tasks
     ScheduledExecutorService serviceExecutor;                           // does stuff for us asynchronously
@@ -707,6 +751,36 @@ public class RaftKVDatabase implements KVDatabase {
         return this.maxUnappliedLogEntries;
     }
 
+    /**
+     * Configure the size of each of the preallocated segment files in which the Raft log is stored.
+     *
+     * <p>
+     * Log entries are appended to the current segment file until it is full. Segment files are reused once all of the
+     * log entries they contain have been applied to the state machine. Log entries larger than this size are stored
+     * in their own segment file.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_LOG_SEGMENT_SIZE}.
+     *
+     * @param logSegmentSize log segment file size in bytes
+     * @throws IllegalArgumentException if {@code logSegmentSize} is less than 1024
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setLogSegmentSize(int logSegmentSize) {
+        Preconditions.checkArgument(logSegmentSize >= 1024, "logSegmentSize < 1024");
+        Preconditions.checkState(this.role == null, "already started");
+        this.logSegmentSize = logSegmentSize;
+    }
+
+    /**
+     * Get the configured size of each Raft log segment file.
+     *
+     * @return log segment file size in bytes
+     */
+    public synchronized int getLogSegmentSize() {
+        return this.logSegmentSize;
+    }
+
     /**
      * Configure the maximum number of heartbeat intervals a leader will wait for any follower to acknowledge
      * receipt of a log entry before compacting it.
@@ -738,6 +812,150 @@ public class RaftKVDatabase implements KVDatabase {
         return this.maxFollowerAckHeartbeats;
     }
 
+    /**
+     * Configure the maximum number of {@link AppendRequest}s containing log entries that a leader will send to a
+     * follower before hearing back.
+     *
+     * <p>
+     * Leaders pipeline log entries to followers, i.e., they send new log entries without waiting for earlier ones
+     * to be acknowledged. This limits how far ahead of a follower's acknowledgements the leader may get. Higher values
+     * allow more throughput over high latency links. Independently of this limit, the total size of the log entry data
+     * sent to a follower but not yet acknowledged is limited to the {@linkplain #setMaxUnappliedLogMemory maximum
+     * unapplied log memory}, because the follower can't accept more than that before applying some of it.
+     *
+     * <p>
+     * This value may be changed while this instance is already running.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_MAX_IN_FLIGHT_APPENDS}.
+     *
+     * @param maxInFlightAppends maximum number of unacknowledged requests per follower
+     * @throws IllegalArgumentException if {@code maxInFlightAppends <= 0}
+     */
+    public synchronized void setMaxInFlightAppends(int maxInFlightAppends) {
+        Preconditions.checkArgument(maxInFlightAppends > 0, "maxInFlightAppends <= 0");
+        this.maxInFlightAppends = maxInFlightAppends;
+    }
+
+    /**
+     * Get the configured maximum number of {@link AppendRequest}s containing log entries that a leader will send to a
+     * follower before hearing back.
+     *
+     * @return maximum number of unacknowledged requests per follower
+     */
+    public synchronized int getMaxInFlightAppends() {
+        return this.maxInFlightAppends;
+    }
+
+    /**
+     * Configure the maximum total size of the log entry data that a leader will send to a follower in a single
+     * {@link AppendRequest}.
+     *
+     * <p>
+     * When a follower is behind by more than one log entry, consecutive log entries are sent together in a single
+     * request, up to this size. A request always contains at least one log entry, regardless of its size.
+     * Followers running older code that does not support multiple log entries per request are sent one at a time.
+     *
+     * <p>
+     * This value may be changed while this instance is already running.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_MAX_APPEND_BATCH_SIZE}.
+     *
+     * @param maxAppendBatchSize maximum log entry data per request in bytes
+     * @throws IllegalArgumentException if {@code maxAppendBatchSize <= 0}
+     */
+    public synchronized void setMaxAppendBatchSize(int maxAppendBatchSize) {
+        Preconditions.checkArgument(maxAppendBatchSize > 0, "maxAppendBatchSize <= 0");
+        this.maxAppendBatchSize = maxAppendBatchSize;
+    }
+
+    /**
+     * Get the configured maximum total size of the log entry data that a leader will send to a follower in a single
+     * {@link AppendRequest}.
+     *
+     * @return maximum log entry data per request in bytes
+     */
+    public synchronized int getMaxAppendBatchSize() {
+        return this.maxAppendBatchSize;
+    }
+
+    /**
+     * Configure the maximum number of read-write transactions received from followers that a leader will merge
+     * into a single log entry.
+     *
+     * <p>
+     * Normally each read-write transaction committed via a follower becomes its own log entry. When this value is
+     * greater than one, the leader instead collects concurrently arriving commit requests for up to the
+     * {@linkplain #setCommitBatchDelay commit batch delay}, checks them for conflicts against the log and against
+     * each other, and appends the mutations of those that don't conflict as a single log entry. Each of those
+     * transactions then commits at the same log entry, amortizing the cost of persisting and replicating it.
+     * Transactions whose reads conflict with the writes of an earlier transaction in the same batch fail with a
+     * retryable conflict exception, as if the earlier transaction had been committed first.
+     *
+     * <p>
+     * Transactions that include a configuration change, as well as read-write transactions on the leader itself,
+     * are never batched.
+     *
+     * <p>
+     * This value may be changed while this instance is already running.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_MAX_COMMIT_BATCH_SIZE}, i.e., batching is disabled.
+     *
+     * @param maxCommitBatchSize maximum number of transactions per log entry
+     * @throws IllegalArgumentException if {@code maxCommitBatchSize <= 0}
+     * @see #setCommitBatchDelay
+     */
+    public synchronized void setMaxCommitBatchSize(int maxCommitBatchSize) {
+        Preconditions.checkArgument(maxCommitBatchSize > 0, "maxCommitBatchSize <= 0");
+        this.maxCommitBatchSize = maxCommitBatchSize;
+    }
+
+    /**
+     * Get the configured maximum number of read-write transactions received from followers that a leader will merge
+     * into a single log entry.
+     *
+     * @return maximum number of transactions per log entry
+     */
+    public synchronized int getMaxCommitBatchSize() {
+        return this.maxCommitBatchSize;
+    }
+
+    /**
+     * Configure how long a leader will wait for additional commit requests before appending a batch of
+     * transactions as a single log entry.
+     *
+     * <p>
+     * This only has an effect when the {@linkplain #setMaxCommitBatchSize maximum commit batch size} is greater than one.
+     * A batch is appended as soon as it is full or this delay has elapsed since its first transaction arrived, whichever
+     * comes first. With a delay of zero, a batch contains whatever commit requests arrived before the leader's next
+     * chance to process them.
+     *
+     * <p>
+     * This value may be changed while this instance is already running.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_COMMIT_BATCH_DELAY}.
+     *
+     * @param commitBatchDelay commit batch delay in milliseconds
+     * @throws IllegalArgumentException if {@code commitBatchDelay < 0}
+     * @see #setMaxCommitBatchSize
+     */
+    public synchronized void setCommitBatchDelay(int commitBatchDelay) {
+        Preconditions.checkArgument(commitBatchDelay >= 0, "commitBatchDelay < 0");
+        this.commitBatchDelay = commitBatchDelay;
+    }
+
+    /**
+     * Get the configured commit batch delay.
+     *
+     * @return commit batch delay in milliseconds
+     */
+    public synchronized int getCommitBatchDelay() {
+        return this.commitBatchDelay;
+    }
+
     /**
      * Configure the default transaction commit timeout.
      *
@@ -1056,11 +1274,25 @@ public class RaftKVDatabase implements KVDatabase {
             assert this.random == null;
             this.random = new SecureRandom();
 
-            // Start background I/O thread
+            // Create background I/O thread; it's not started until after any leftover temporary files have been deleted
             assert this.ioThread == null;
             final String ioThreadName = "Raft I/O [" + this.identity + "]";
-            this.ioThread = new IOThread(this.logDir, ioThreadName);
-            this.ioThread.start();
+            this.ioThread = new IOThread(this.logDir, ioThreadName, this.logSegmentSize);
+
+            // Create log segment storage, using preallocated files from the I/O thread
+            assert this.segmentedLog == null;
+            this.segmentedLog = new SegmentedLog(this.logDir, this.logDirChannel, this.logSegmentSize, this.disableSync) {
+
+                @Override
+                File createFile() throws IOException {
+                    return RaftKVDatabase.this.getTempFile();
+                }
+
+                @Override
+                void deleteFile(File file, String description) {
+                    RaftKVDatabase.this.deleteFile(file, description);
+                }
+            };
 
             // Start up service executor thread
             assert this.serviceExecutor == null;
@@ -1110,6 +1342,9 @@ public class RaftKVDatabase implements KVDatabase {
             // Reload outstanding log entries from disk
             this.loadLog();
 
+            // Start background I/O thread
+            this.ioThread.start();
+
             // Show recovered state
             if (this.log.isDebugEnabled()) {
                 this.debug("recovered Raft state:"
@@ -1259,6 +1494,10 @@ public class RaftKVDatabase implements KVDatabase {
             this.ioThread = null;
         }
         this.kv.stop();
+        if (this.segmentedLog != null) {
+            this.segmentedLog.close();
+            this.segmentedLog = null;
+        }
         Util.closeIfPossible(this.logDirChannel);
         this.logDirChannel = null;
         this.raftLog.clear();
@@ -1294,8 +1533,9 @@ public class RaftKVDatabase implements KVDatabase {
         assert Thread.holdsLock(this);
         assert this.raftLog.isEmpty();
 
-        // Scan for log entry files
+        // Scan for leftover temporary files and log entry files written by older versions
         this.raftLog.clear();
+        final ArrayList<File> legacyFiles = new ArrayList<>();
         try (DirectoryStream<Path> files = Files.newDirectoryStream(this.logDir.toPath())) {
             for (Path path : files) {
                 final File file = path.toFile();
@@ -1304,12 +1544,13 @@ public class RaftKVDatabase implements KVDatabase {
                 if (file.isDirectory())
                     continue;
 
-                // Is this a log entry file?
+                // Is this a log segment file?
+                if (SegmentedLog.SEGMENT_FILE_PATTERN.matcher(file.getName()).matches())
+                    continue;
+
+                // Is this a log entry file from an older version?
                 if (LogEntry.LOG_FILE_PATTERN.matcher(file.getName()).matches()) {
-                    if (this.log.isDebugEnabled())
-                        this.debug("recovering log file " + file.getName());
-                    final LogEntry logEntry = LogEntry.fromFile(file);
-                    this.raftLog.add(logEntry);
+                    legacyFiles.add(file);
                     continue;
                 }
 
@@ -1326,27 +1567,32 @@ public class RaftKVDatabase implements KVDatabase {
             }
         }
 
-        // Verify we have a contiguous range of log entries starting from the snapshot index; discard bogus log files
-        Collections.sort(this.raftLog, LogEntry.SORT_BY_INDEX);
-        long lastTermSeen = this.lastAppliedTerm;
-        long expectedIndex = this.lastAppliedIndex + 1;
-        for (Iterator<LogEntry> i = this.raftLog.iterator(); i.hasNext(); ) {
-            final LogEntry logEntry = i.next();
-            String error = null;
-            if (logEntry.getTerm() < lastTermSeen)
-                error = "term " + logEntry.getTerm() + " < last applied term " + lastTermSeen;
-            else if (logEntry.getIndex() < this.lastAppliedIndex)
-                error = "index " + logEntry.getIndex() + " < last applied index " + this.lastAppliedIndex;
-            else if (logEntry.getIndex() != expectedIndex)
-                error = "index " + logEntry.getIndex() + " != expected index " + expectedIndex;
-            if (error != null) {
-                this.warn("deleting bogus log file " + logEntry.getFile().getName() + ": " + error);
-                this.deleteFile(logEntry.getFile(), "bogus log file");
-                i.remove();
-            } else {
-                expectedIndex++;
-                lastTermSeen = logEntry.getTerm();
+        // Recover log entries from log segments
+        this.raftLog.addAll(this.segmentedLog.recover(this.lastAppliedIndex, this.lastAppliedTerm));
+
+        // Migrate any log entry files from an older version into log segments
+        if (!legacyFiles.isEmpty()) {
+            Collections.sort(legacyFiles);                                      // file names sort by index
+            for (File file : legacyFiles) {
+                final Matcher matcher = LogEntry.LOG_FILE_PATTERN.matcher(file.getName());
+                Preconditions.checkState(matcher.matches());
+                final long index = Long.parseLong(matcher.group(1), 10);
+                final long term = Long.parseLong(matcher.group(2), 10);
+                if (index == this.getLastLogIndex() + 1 && term >= this.getLastLogTerm()) {
+                    if (this.log.isDebugEnabled())
+                        this.debug("migrating log file " + file.getName());
+                    final ByteBuffer content = Util.readFile(file, -1);
+                    final LogEntry.Data data;
+                    try (ByteBufferInputStream input = new ByteBufferInputStream(content.duplicate())) {
+                        data = LogEntry.readData(input);
+                    }
+                    this.raftLog.add(this.segmentedLog.append(term, index, data, content));
+                } else if (index > this.lastAppliedIndex)
+                    this.warn("discarding bogus log file " + file.getName() + ": expected index " + (this.getLastLogIndex() + 1));
             }
+            this.segmentedLog.sync();
+            for (File file : legacyFiles)
+                this.deleteFile(file, "migrated log file");
         }
         if (this.log.isDebugEnabled()) {
             this.debug("recovered " + this.raftLog.size() + " log entries: " + this.raftLog
@@ -1384,6 +1630,14 @@ public class RaftKVDatabase implements KVDatabase {
         return this.keyWatchTracker.register(key);
     }
 
+    synchronized ListenableFuture<Void> watchRange(RaftKVTransaction tx, KeyRange range) {
+        Preconditions.checkState(this.role != null, "not started");
+        tx.verifyExecuting();
+        if (this.keyWatchTracker == null)
+            this.keyWatchTracker = new KeyWatchTracker();
+        return this.keyWatchTracker.register(range);
+    }
+
 // Transactions
 
     /**
@@ -1793,17 +2047,9 @@ public class RaftKVDatabase implements KVDatabase {
             return false;
         }
 
-        // Delete all unapplied log files (no longer applicable)
+        // Discard all unapplied log entries (no longer applicable)
         this.raftLog.clear();
-        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.logDir.toPath())) {
-            for (Path path : files) {
-                final File file = path.toFile();
-                if (LogEntry.LOG_FILE_PATTERN.matcher(file.getName()).matches())
-                    this.deleteFile(file, "unapplied log file");
-            }
-        } catch (IOException e) {
-            this.error("error deleting unapplied log files in " + this.logDir + " (ignoring)", e);
-        }
+        this.segmentedLog.clear();
 
         // Update in-memory copy of persistent state
         this.flipflop = !this.flipflop;
@@ -1938,9 +2184,12 @@ public class RaftKVDatabase implements KVDatabase {
     /**
      * Append a log entry to the Raft log.
      *
+     * <p>
+     * The new log entry is not durably persisted until the next {@link #syncLog}; this allows multiple log entries
+     * to be persisted together.
+     *
      * @param term new log entry term
-     * @param entry entry to add; the {@linkplain NewLogEntry#getTempFile temporary file} must be already durably persisted,
-     *  and will be renamed
+     * @param entry entry to add
      * @return new {@link LogEntry}
      * @throws Exception if an error occurs
      */
@@ -1951,23 +2200,11 @@ public class RaftKVDatabase implements KVDatabase {
         assert this.role != null;
         assert newLogEntry != null;
 
-        // Get file length
-        final LogEntry.Data data = newLogEntry.getData();
-        final File tempFile = newLogEntry.getTempFile();
-        final long fileLength = Util.getLength(tempFile);
-
-        // Create new log entry
-        final LogEntry logEntry = new LogEntry(term, this.getLastLogIndex() + 1, this.logDir, data, fileLength);
+        // Append new log entry to the log segment
+        final LogEntry logEntry = this.segmentedLog.append(term,
+          this.getLastLogIndex() + 1, newLogEntry.getData(), newLogEntry.getContent());
         if (this.log.isDebugEnabled())
-            this.debug("adding new log entry " + logEntry + " using " + tempFile.getName());
-
-        // Atomically rename file and fsync() directory to durably persist
-        Files.move(tempFile.toPath(), logEntry.getFile().toPath(), StandardCopyOption.ATOMIC_MOVE);
-        if (this.logDirChannel != null && !this.disableSync)
-            this.logDirChannel.force(true);
-
-        // Temp file no longer exists, so don't try to delete it later
-        newLogEntry.resetTempFile();
+            this.debug("adding new log entry " + logEntry + " to " + logEntry.getFile().getName());
 
         // Add new log entry to in-memory log
         this.raftLog.add(logEntry);
@@ -1980,6 +2217,25 @@ public class RaftKVDatabase implements KVDatabase {
         return logEntry;
     }
 
+    /**
+     * Durably persist all log entries appended so far.
+     *
+     * <p>
+     * This must be invoked before this node acknowledges, or counts itself as having, any log entry.
+     *
+     * @return true if successful, false if an error occurred
+     */
+    boolean syncLog() {
+        assert Thread.holdsLock(this);
+        try {
+            this.segmentedLog.sync();
+        } catch (IOException e) {
+            this.error("error syncing Raft log in " + this.logDir, e);
+            return false;
+        }
+        return true;
+    }
+
     long getLastLogIndex() {
         assert Thread.holdsLock(this);
         return this.lastAppliedIndex + this.raftLog.size();
@@ -2058,48 +2314,29 @@ public class RaftKVDatabase implements KVDatabase {
             return;
         }
 
-        // If message contains serialized mutation data, at some point we are going to need to write that data to a log entry file.
-        // Instead of doing that (slow) operation while holding the lock, do it now, before we acquire the lock.
-        ByteBuffer mutationData =
-          msg instanceof AppendRequest ? ((AppendRequest)msg).getMutationData() :
-          msg instanceof CommitRequest ? ((CommitRequest)msg).getMutationData() : null;
-        final NewLogEntry newLogEntry;
-        if (mutationData != null) {
-            File tempFile = null;
-            try {
-
-                // Write serialized mutation data into temporary file
-                tempFile = this.getTempFile();
-                try (FileWriter output = new FileWriter(tempFile, this.disableSync)) {
-                    final FileChannel channel = output.getFileOutputStream().getChannel();
-                    for (ByteBuffer writeBuf = mutationData.asReadOnlyBuffer(); writeBuf.hasRemaining(); )
-                        channel.write(writeBuf);
+        // If message contains serialized mutation data, deserialize it now, before we acquire the lock
+        final List<ByteBuffer> mutationDataList =
+          msg instanceof AppendRequest ? ((AppendRequest)msg).getAllMutationData() :
+          msg instanceof CommitRequest ? Collections.singletonList(((CommitRequest)msg).getMutationData()) : null;
+        List<NewLogEntry> newLogEntries = null;
+        if (mutationDataList != null && mutationDataList.stream().anyMatch(Objects::nonNull)) {
+            newLogEntries = new ArrayList<>(mutationDataList.size());
+            for (ByteBuffer mutationData : mutationDataList) {
+                if (mutationData == null) {
+                    newLogEntries.add(null);
+                    continue;
                 }
-
-                // Deserialize mutation data and create new log entry instance
-                try (ByteBufferInputStream input = new ByteBufferInputStream(mutationData)) {
-                    newLogEntry = new NewLogEntry(LogEntry.readData(input), tempFile);
+                try (ByteBufferInputStream input = new ByteBufferInputStream(mutationData.asReadOnlyBuffer())) {
+                    newLogEntries.add(new NewLogEntry(LogEntry.readData(input), mutationData));
+                } catch (IOException e) {
+                    this.error("error decoding mutations from " + msg + ", ignoring", e);
+                    return;
                 }
-
-                // Indicate success
-                tempFile = null;
-            } catch (IOException e) {
-                this.error("error persisting mutations from " + msg + ", ignoring", e);
-                return;
-            } finally {
-                if (tempFile != null)
-                    this.deleteFile(tempFile, "new log entry temp file");
             }
-        } else
-            newLogEntry = null;
+        }
 
         // Handle message
-        try {
-            this.receiveMessage(sender, msg, protocolVersion, newLogEntry);
-        } finally {
-            if (newLogEntry != null)
-                newLogEntry.cleanup(this);
-        }
+        this.receiveMessage(sender, msg, protocolVersion, newLogEntries);
     }
 
     private synchronized void outputQueueEmpty(String address) {
@@ -2123,6 +2360,12 @@ public class RaftKVDatabase implements KVDatabase {
         return this.transmitting.contains(address);
     }
 
+    // Determine whether the given peer is known to accept AppendRequests containing more than one log entry
+    boolean isAppendBatchingSupported(String peer) {
+        final Integer protocolVersion = this.protocolVersionMap.get(peer);
+        return protocolVersion != null && AppendRequest.isBatchingSupported(protocolVersion);
+    }
+
 // Messages
 
     synchronized boolean sendMessage(Message msg) {
@@ -2165,10 +2408,11 @@ public class RaftKVDatabase implements KVDatabase {
         return false;
     }
 
-    synchronized void receiveMessage(String address, Message msg, int protocolVersion, final NewLogEntry newLogEntry) {
+    // The newLogEntries contains one element per log entry in an AppendRequest, or one element for a CommitRequest
+    synchronized void receiveMessage(String address, Message msg, int protocolVersion, final List<NewLogEntry> newLogEntries) {
 
-        // Sanity check newLogEntry
-        assert newLogEntry == null || (msg instanceof AppendRequest || msg instanceof CommitRequest);
+        // Sanity check newLogEntries
+        assert newLogEntries == null || (msg instanceof AppendRequest || msg instanceof CommitRequest);
 
         // Sanity check
         assert Thread.holdsLock(this);
@@ -2253,7 +2497,7 @@ public class RaftKVDatabase implements KVDatabase {
             msg.visit(new MessageSwitch() {
                 @Override
                 public void caseAppendRequest(AppendRequest msg) {
-                    RaftKVDatabase.this.role.caseAppendRequest(msg, newLogEntry);
+                    RaftKVDatabase.this.role.caseAppendRequest(msg, newLogEntries);
                 }
                 @Override
                 public void caseAppendResponse(AppendResponse msg) {
@@ -2261,7 +2505,7 @@ public class RaftKVDatabase implements KVDatabase {
                 }
                 @Override
                 public void caseCommitRequest(CommitRequest msg) {
-                    RaftKVDatabase.this.role.caseCommitRequest(msg, newLogEntry);
+                    RaftKVDatabase.this.role.caseCommitRequest(msg, newLogEntries != null ? newLogEntries.get(0) : null);
                 }
                 @Override
                 public void caseCommitResponse(CommitResponse msg) {
@@ -2303,6 +2547,7 @@ public class RaftKVDatabase implements KVDatabase {
         this.ioThread.deleteFile(file, description);
     }
 
+    // Get a new temporary file in the log directory, preallocated (if possible) to the log segment size
     synchronized File getTempFile() throws IOException {
         if (this.ioThread == null)
             throw new IOException("instance is shutdown");
@@ -2312,11 +2557,12 @@ public class RaftKVDatabase implements KVDatabase {
     private static final class IOThread extends Thread {
 
         private static final long MAX_WAIT_SECONDS = 1;
-        private static final int MAX_TEMP_FILES = 10;
+        private static final int MAX_TEMP_FILES = 1;
         private static final int MAX_DELETE_FILES = 1000;
 
         private final Logger log = LoggerFactory.getLogger(this.getClass());
         private final File tempDir;
+        private final long tempFileSize;
         private final ArrayBlockingQueue<FileInfo> availableTempFiles = new ArrayBlockingQueue<>(MAX_TEMP_FILES);
         private final ArrayBlockingQueue<FileInfo> filesToDelete = new ArrayBlockingQueue<>(MAX_DELETE_FILES);
 
@@ -2324,10 +2570,11 @@ public class RaftKVDatabase implements KVDatabase {
         private boolean didWarnDelete;
         private boolean didWarnTempFile;
 
-        private IOThread(File tempDir, String threadName) {
+        private IOThread(File tempDir, String threadName, long tempFileSize) {
             super(threadName);
             Preconditions.checkArgument(tempDir != null);
             this.tempDir = tempDir;
+            this.tempFileSize = tempFileSize;
         }
 
         public synchronized void shutdown() {
@@ -2388,12 +2635,16 @@ public class RaftKVDatabase implements KVDatabase {
                     if (!this.filesToDelete.isEmpty())
                         this.deleteFiles(this.filesToDelete, true);
 
-                    // Create a new temporary file, if needed
+                    // Create a new preallocated temporary file, if needed
                     if (this.availableTempFiles.remainingCapacity() > 0) {
+                        File file = null;
                         try {
-                            this.availableTempFiles.add(new FileInfo(
-                              File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, this.tempDir), "ready temporary file"));
+                            file = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, this.tempDir);
+                            Util.preallocate(file, this.tempFileSize);
+                            this.availableTempFiles.add(new FileInfo(file, "ready temporary file"));
                         } catch (IOException e) {
+                            if (file != null)
+                                Util.delete(file, "temporary file");
                             if (!this.didWarnTempFile) {
                                 this.log.error("error creating temporary file in "
                                   + this.tempDir + " (suppressing further warnings)", e);
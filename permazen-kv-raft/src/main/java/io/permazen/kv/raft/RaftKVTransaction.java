@@ -14,6 +14,8 @@ import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KVTransactionException;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
@@ -23,6 +25,7 @@ import io.permazen.kv.util.CloseableForwardingKVStore;
 import io.permazen.util.CloseableIterator;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -426,6 +429,12 @@ public class RaftKVTransaction implements KVTransaction {
         return this.view.get(key);
     }
 
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        this.fastVerifyExecuting();
+        return this.view.getMany(keys);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         this.fastVerifyExecuting();
@@ -444,6 +453,12 @@ public class RaftKVTransaction implements KVTransaction {
         return this.view.getRange(minKey, maxKey, reverse);
     }
 
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        this.fastVerifyExecuting();
+        return this.view.estimateSize(minKey, maxKey);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.fastVerifyExecuting();
@@ -552,6 +567,30 @@ public class RaftKVTransaction implements KVTransaction {
         return this.raft.watchKey(this, key);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Range watches are supported by {@link RaftKVTransaction}, with the same {@link Consistency} guarantees as key watches.
+     *
+     * <p>
+     * Listeners registered on the returned {@link ListenableFuture} must not perform any long running
+     * or blocking operations.
+     *
+     * @param range {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws StaleTransactionException {@inheritDoc}
+     * @throws io.permazen.kv.RetryTransactionException {@inheritDoc}
+     * @throws io.permazen.kv.KVDatabaseException {@inheritDoc}
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    @Override
+    public ListenableFuture<Void> watchRange(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        return this.raft.watchRange(this, range);
+    }
+
     @Override
     public void commit() {
         this.raft.commit(this);
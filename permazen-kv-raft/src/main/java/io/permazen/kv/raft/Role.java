@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -221,10 +222,12 @@ public abstract class Role {
             logEntry.applyConfigChange(this.raft.lastAppliedConfig);
             assert this.raft.currentConfig.equals(this.raft.buildCurrentConfig());
 
-            // Delete the log entry
+            // Discard the log entry
             this.raft.raftLog.remove(0);
-            this.raft.deleteFile(logEntry.getFile(), "applied log file");
         }
+
+        // Recycle log segments no longer needed
+        this.raft.segmentedLog.release(this.raft.lastAppliedIndex);
     }
 
     // Assertion check
@@ -753,7 +756,7 @@ public abstract class Role {
 // Messages
 
     // This is a package access version of "implements MessageSwitch"
-    abstract void caseAppendRequest(AppendRequest msg, NewLogEntry newLogEntry);
+    abstract void caseAppendRequest(AppendRequest msg, List<NewLogEntry> newLogEntries);
     abstract void caseAppendResponse(AppendResponse msg);
     abstract void caseCommitRequest(CommitRequest msg, NewLogEntry newLogEntry);
     abstract void caseCommitResponse(CommitResponse msg);
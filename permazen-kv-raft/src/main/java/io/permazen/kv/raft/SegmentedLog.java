@@ -0,0 +1,623 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.raft;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.dellroad.stuff.io.ByteBufferInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the Raft log on disk as records appended to a sequence of preallocated segment files.
+ *
+ * <p>
+ * Each segment file starts with a header containing a sequence number, which orders the segments, and the index
+ * of the segment's first log entry. Log entries follow as records containing the entry's term, index, length, and
+ * a checksum over the entry's data, which is salted with the segment's sequence number so that records left over from
+ * a previous use of a recycled segment are never mistaken for current ones. The last record is followed by an end marker.
+ *
+ * <p>
+ * Appending a log entry does not make it durable; instead, {@link #sync} durably persists all appended entries with one
+ * {@code fsync()} per modified segment, so multiple entries may be persisted together. Entry data is read back through
+ * memory mappings of the segment files. Once all of the entries in a segment have been applied to the state machine,
+ * the segment is recycled for future use, so in steady state no files are created, deleted, or renamed.
+ *
+ * <p>
+ * On startup, {@link #recover recover()} reads the segment headers, chains together the segments that contain unapplied
+ * log entries, and validates their records, discarding any torn or otherwise invalid tail.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+class SegmentedLog {
+
+    static final String SEGMENT_FILE_PREFIX = "segment-";
+    static final String SEGMENT_FILE_SUFFIX = ".log";
+    static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile(
+      Pattern.quote(SEGMENT_FILE_PREFIX) + "[0-9]{19}" + Pattern.quote(SEGMENT_FILE_SUFFIX));
+
+    static final int HEADER_SIZE = 32;                                  // magic, version, sequence, first index, CRC, padding
+    static final int RECORD_HEADER_SIZE = 24;                           // length, term, index, CRC
+    static final int END_MARKER_SIZE = 4;                               // zero length
+
+    private static final int MAGIC = 0x52616674;                        // "Raft"
+    private static final int VERSION = 1;
+    private static final int MAX_SPARE_SEGMENTS = 2;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final File dir;
+    private final FileChannel dirChannel;
+    private final int segmentSize;
+    private final boolean disableSync;
+    private final ArrayList<Segment> segments = new ArrayList<>();     // in log order; the last one is appended to
+    private final ArrayDeque<File> spares = new ArrayDeque<>();         // recycled segment files available for reuse
+
+    private long nextSequence = 1;
+
+// Constructors
+
+    /**
+     * Constructor.
+     *
+     * @param dir log directory
+     * @param dirChannel open channel for {@code dir}, used to {@code fsync()} the directory, or null if not supported
+     * @param segmentSize size of each segment file
+     * @param disableSync true to disable data sync
+     * @throws IllegalArgumentException if {@code dir} is null
+     * @throws IllegalArgumentException if {@code segmentSize} is too small
+     */
+    SegmentedLog(File dir, FileChannel dirChannel, int segmentSize, boolean disableSync) {
+        Preconditions.checkArgument(dir != null, "null dir");
+        Preconditions.checkArgument(segmentSize > HEADER_SIZE + RECORD_HEADER_SIZE + END_MARKER_SIZE, "segmentSize too small");
+        this.dir = dir;
+        this.dirChannel = dirChannel;
+        this.segmentSize = segmentSize;
+        this.disableSync = disableSync;
+    }
+
+// Public methods
+
+    /**
+     * Recover the log from the segment files in the log directory.
+     *
+     * <p>
+     * Segments containing only log entries that have already been applied are recycled, and any invalid or non-contiguous
+     * log entries are discarded.
+     *
+     * @param lastAppliedIndex index of the last log entry applied to the state machine
+     * @param lastAppliedTerm term of the last log entry applied to the state machine
+     * @return recovered unapplied log entries, in order starting with {@code lastAppliedIndex + 1}
+     * @throws IllegalStateException if this instance has already been used
+     * @throws IOException if an I/O error occurs
+     */
+    public List<LogEntry> recover(long lastAppliedIndex, long lastAppliedTerm) throws IOException {
+        Preconditions.checkState(this.segments.isEmpty() && this.spares.isEmpty(), "already recovered");
+
+        // Read segment headers
+        final ArrayList<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir.toPath())) {
+            for (Path path : files) {
+                final File file = path.toFile();
+                if (!SEGMENT_FILE_PATTERN.matcher(file.getName()).matches() || file.isDirectory())
+                    continue;
+                final Segment segment = Segment.open(file);
+                if (segment == null) {
+                    if (this.log.isDebugEnabled())
+                        this.log.debug("found unused log segment " + file.getName());
+                    this.recycle(file);
+                    continue;
+                }
+                found.add(segment);
+                this.nextSequence = Math.max(this.nextSequence, segment.getSequence() + 1);
+            }
+        }
+        found.sort(Comparator.comparingLong(Segment::getSequence));
+
+        // Skip segments preceding the one that contains the first unapplied log entry
+        int start = 0;
+        for (int i = 0; i < found.size(); i++) {
+            if (found.get(i).getFirstIndex() <= lastAppliedIndex + 1)
+                start = i;
+        }
+        for (Segment segment : found.subList(0, start))
+            this.discard(segment, false);
+
+        // Read log entries from each segment in order, stopping where they are no longer contiguous
+        final ArrayList<LogEntry> entries = new ArrayList<>();
+        long lastTerm = 0;
+        for (Segment segment : found.subList(start, found.size())) {
+            if (!this.segments.isEmpty() && segment.getFirstIndex() != this.getLastSegment().getLastIndex() + 1) {
+                this.log.warn("discarding non-contiguous log segment " + segment);
+                this.discard(segment, true);
+                continue;
+            }
+            lastTerm = segment.scan(entries, lastTerm);
+            this.segments.add(segment);
+            if (this.log.isDebugEnabled())
+                this.log.debug("recovered log segment " + segment);
+        }
+
+        // Verify we have a contiguous range of unapplied log entries starting after the last applied log entry
+        final ArrayList<LogEntry> unapplied = new ArrayList<>();
+        long lastTermSeen = lastAppliedTerm;
+        long expectedIndex = lastAppliedIndex + 1;
+        for (LogEntry logEntry : entries) {
+            if (logEntry.getIndex() <= lastAppliedIndex)
+                continue;
+            String error = null;
+            if (logEntry.getTerm() < lastTermSeen)
+                error = "term " + logEntry.getTerm() + " < last applied term " + lastTermSeen;
+            else if (logEntry.getIndex() != expectedIndex)
+                error = "index " + logEntry.getIndex() + " != expected index " + expectedIndex;
+            if (error != null) {
+                this.log.warn("discarding bogus log entry " + logEntry + " and all subsequent entries: " + error);
+                this.truncate(logEntry);
+                break;
+            }
+            unapplied.add(logEntry);
+            expectedIndex++;
+            lastTermSeen = logEntry.getTerm();
+        }
+
+        // If the log does not reach the last applied log entry, start over; otherwise recycle segments no longer needed
+        if (unapplied.isEmpty() && !this.segments.isEmpty() && this.getLastSegment().getLastIndex() != lastAppliedIndex)
+            this.clear();
+        this.release(lastAppliedIndex);
+
+        // Done
+        return unapplied;
+    }
+
+    /**
+     * Append a log entry.
+     *
+     * <p>
+     * The log entry is not durably persisted until the next {@link #sync}.
+     *
+     * @param term log entry term
+     * @param index log entry index; must be the index following the last log entry, if any
+     * @param data log entry data
+     * @param content serialized log entry data
+     * @return new log entry
+     * @throws IllegalArgumentException if {@code index} does not follow the last log entry
+     * @throws IllegalArgumentException if {@code content} is empty
+     * @throws IOException if an I/O error occurs
+     */
+    public LogEntry append(long term, long index, LogEntry.Data data, ByteBuffer content) throws IOException {
+        Preconditions.checkArgument(content != null && content.hasRemaining(), "empty content");
+        Preconditions.checkArgument(this.segments.isEmpty() || index == this.getLastSegment().getLastIndex() + 1,
+          "non-contiguous index");
+
+        // Start a new segment if the record won't fit in the current one
+        final int length = content.remaining();
+        final long recordSize = RECORD_HEADER_SIZE + (long)length;
+        Segment segment = this.segments.isEmpty() ? null : this.getLastSegment();
+        if (segment == null || segment.getPosition() + recordSize + END_MARKER_SIZE > segment.getSize())
+            segment = this.startSegment(index, recordSize);
+
+        // Write record
+        return segment.append(term, index, data, content);
+    }
+
+    /**
+     * Durably persist all previously appended log entries.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void sync() throws IOException {
+        for (Segment segment : this.segments)
+            segment.sync(this.disableSync);
+    }
+
+    /**
+     * Discard the given log entry and all log entries that follow it.
+     *
+     * @param logEntry first log entry to discard
+     * @throws IllegalArgumentException if {@code logEntry} is not in this log
+     * @throws IOException if an I/O error occurs
+     */
+    public void truncate(LogEntry logEntry) throws IOException {
+        final int segmentIndex = this.segments.indexOf(logEntry.getSegment());
+        Preconditions.checkArgument(segmentIndex != -1, "log entry not found");
+        while (this.segments.size() > segmentIndex + 1)
+            this.discard(this.segments.remove(this.segments.size() - 1), true);
+        logEntry.getSegment().truncate(logEntry);
+    }
+
+    /**
+     * Recycle segments containing only log entries that have been applied to the state machine.
+     *
+     * <p>
+     * The last segment is always retained, because it is where the next log entry will be appended.
+     *
+     * @param lastAppliedIndex index of the last log entry applied to the state machine
+     */
+    public void release(long lastAppliedIndex) {
+        while (this.segments.size() > 1 && this.segments.get(0).getLastIndex() <= lastAppliedIndex)
+            this.discard(this.segments.remove(0), false);
+    }
+
+    /**
+     * Discard all log entries, for example, because a snapshot has been installed.
+     *
+     * <p>
+     * The next log entry appended may have any index.
+     */
+    public void clear() {
+        while (!this.segments.isEmpty())
+            this.discard(this.segments.remove(this.segments.size() - 1), true);
+    }
+
+    /**
+     * Close this instance.
+     *
+     * <p>
+     * Log entries that have not been {@linkplain #sync synced} may be lost.
+     */
+    public void close() {
+        for (Segment segment : this.segments)
+            segment.close();
+        this.segments.clear();
+        this.spares.clear();
+    }
+
+    /**
+     * Get the segment files that contain log entries.
+     *
+     * @return segment files, in log order
+     */
+    public List<File> getSegmentFiles() {
+        final ArrayList<File> files = new ArrayList<>(this.segments.size());
+        for (Segment segment : this.segments)
+            files.add(segment.getFile());
+        return files;
+    }
+
+// Subclass hooks
+
+    /**
+     * Create a new file in the log directory for use as a segment.
+     *
+     * <p>
+     * The file may be preallocated to the segment size. The implementation in {@link SegmentedLog} creates an empty file.
+     *
+     * @return new file
+     * @throws IOException if an I/O error occurs
+     */
+    File createFile() throws IOException {
+        return File.createTempFile(RaftKVDatabase.TEMP_FILE_PREFIX, RaftKVDatabase.TEMP_FILE_SUFFIX, this.dir);
+    }
+
+    /**
+     * Delete a segment file that is no longer needed.
+     *
+     * <p>
+     * The implementation in {@link SegmentedLog} deletes the file immediately.
+     *
+     * @param file file to delete
+     * @param description short description of what file is
+     */
+    void deleteFile(File file, String description) {
+        Util.delete(file, description);
+    }
+
+// Internal methods
+
+    private Segment getLastSegment() {
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+    private Segment startSegment(long index, long recordSize) throws IOException {
+
+        // An empty segment is not worth keeping
+        if (!this.segments.isEmpty() && this.getLastSegment().isEmpty())
+            this.discard(this.segments.remove(this.segments.size() - 1), false);
+
+        // Reuse a recycled segment file if possible; records too large for a normal segment get their own file
+        final long size = Math.max(this.segmentSize, HEADER_SIZE + recordSize + END_MARKER_SIZE);
+        Preconditions.checkArgument(size == (int)size, "log entry is too large");
+        final long sequence = this.nextSequence++;
+        File file = size == this.segmentSize ? this.spares.poll() : null;
+        if (file == null) {
+            final File tempFile = this.createFile();
+            file = new File(this.dir, String.format("%s%019d%s", SEGMENT_FILE_PREFIX, sequence, SEGMENT_FILE_SUFFIX));
+            try {
+                try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                    if (channel.size() < size)
+                        channel.write(ByteBuffer.allocate(1), size - 1);
+                }
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                this.deleteFile(tempFile, "new log segment temp file");
+                throw e;
+            }
+            if (this.dirChannel != null && !this.disableSync)
+                this.dirChannel.force(true);
+        }
+
+        // Initialize segment
+        final Segment segment = Segment.create(file, sequence, index);
+        this.segments.add(segment);
+        if (this.log.isDebugEnabled())
+            this.log.debug("started new log segment " + segment);
+        return segment;
+    }
+
+    // Invalidate segment and make it available for reuse (or delete it)
+    private void discard(Segment segment, boolean syncNow) {
+        try {
+            segment.invalidate(syncNow && !this.disableSync);
+        } catch (IOException e) {
+            this.log.warn("error invalidating log segment " + segment.getFile() + " (proceeding anyway)", e);
+        }
+        segment.close();
+        if (segment.getSize() == this.segmentSize)
+            this.recycle(segment.getFile());
+        else
+            this.deleteFile(segment.getFile(), "log segment");
+    }
+
+    private void recycle(File file) {
+        if (this.spares.size() < MAX_SPARE_SEGMENTS && file.length() == this.segmentSize)
+            this.spares.add(file);
+        else
+            this.deleteFile(file, "log segment");
+    }
+
+    // Compute a record's checksum
+    private static int checksum(long sequence, int length, long term, long index, ByteBuffer content) {
+        final ByteBuffer header = ByteBuffer.allocate(28);
+        header.putLong(sequence).putInt(length).putLong(term).putLong(index).flip();
+        final CRC32 crc = new CRC32();
+        crc.update(header);
+        crc.update(content.duplicate());
+        return (int)crc.getValue();
+    }
+
+// Segment
+
+    /**
+     * One segment file.
+     */
+    static final class Segment {
+
+        private final File file;
+        private final FileChannel channel;
+        private final int size;
+        private final long sequence;
+        private final long firstIndex;
+
+        private MappedByteBuffer map;
+        private long lastIndex;
+        private int position;                                   // where the next record will be written
+        private boolean dirty;
+
+        private Segment(File file, FileChannel channel, long sequence, long firstIndex) throws IOException {
+            final long fileSize = channel.size();
+            if (fileSize != (int)fileSize)
+                throw new IOException("log segment " + file + " is too large");
+            this.file = file;
+            this.channel = channel;
+            this.size = (int)fileSize;
+            this.sequence = sequence;
+            this.firstIndex = firstIndex;
+            this.lastIndex = firstIndex - 1;
+            this.position = HEADER_SIZE;
+        }
+
+        /**
+         * Open an existing segment file and read its header.
+         *
+         * @return segment, or null if the file does not contain a valid segment header
+         */
+        static Segment open(File file) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean success = false;
+            try {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header, header.position()) != -1)
+                    ;
+                header.flip();
+                if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                    return null;
+                final long sequence = header.getLong(8);
+                final long firstIndex = header.getLong(16);
+                final CRC32 crc = new CRC32();
+                crc.update(header.array(), 0, 24);
+                if (sequence <= 0 || firstIndex <= 0 || header.getInt(24) != (int)crc.getValue())
+                    return null;
+                final Segment segment = new Segment(file, channel, sequence, firstIndex);
+                success = true;
+                return segment;
+            } finally {
+                if (!success)
+                    channel.close();
+            }
+        }
+
+        /**
+         * Initialize a new or recycled segment file, which must be at least {@link #HEADER_SIZE} bytes long.
+         */
+        static Segment create(File file, long sequence, long firstIndex) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean success = false;
+            try {
+                final Segment segment = new Segment(file, channel, sequence, firstIndex);
+                segment.writeHeader(sequence, firstIndex);
+                segment.write(segment.position, ByteBuffer.allocate(END_MARKER_SIZE));
+                success = true;
+                return segment;
+            } finally {
+                if (!success)
+                    channel.close();
+            }
+        }
+
+        public File getFile() {
+            return this.file;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public long getSequence() {
+            return this.sequence;
+        }
+
+        public long getFirstIndex() {
+            return this.firstIndex;
+        }
+
+        public long getLastIndex() {
+            return this.lastIndex;
+        }
+
+        public int getPosition() {
+            return this.position;
+        }
+
+        public boolean isEmpty() {
+            return this.lastIndex < this.firstIndex;
+        }
+
+        /**
+         * Read log entries from this segment, stopping at the end marker or the first invalid record.
+         *
+         * @param entries list to which recovered log entries are added
+         * @param lastTerm term of the previous log entry, if any, otherwise zero
+         * @return term of the last log entry recovered, or {@code lastTerm} if none
+         */
+        long scan(List<LogEntry> entries, long lastTerm) throws IOException {
+            final ByteBuffer buf = this.getMap();
+            long index = this.firstIndex;
+            while (this.position + RECORD_HEADER_SIZE + END_MARKER_SIZE <= this.size) {
+
+                // Read and check record header
+                final int length = buf.getInt(this.position);
+                final long term = buf.getLong(this.position + 4);
+                if (length <= 0 || length > this.size - this.position - RECORD_HEADER_SIZE - END_MARKER_SIZE
+                  || term < lastTerm || buf.getLong(this.position + 12) != index)
+                    break;
+
+                // Verify checksum
+                final ByteBuffer content = this.read(this.position + RECORD_HEADER_SIZE, length);
+                if (buf.getInt(this.position + 20) != SegmentedLog.checksum(this.sequence, length, term, index, content))
+                    break;
+
+                // Decode log entry
+                final LogEntry.Data data;
+                try (ByteBufferInputStream input = new ByteBufferInputStream(content.duplicate())) {
+                    data = LogEntry.readData(input);
+                } catch (IOException e) {
+                    break;
+                }
+                entries.add(new LogEntry(term, index, data, this, this.position + RECORD_HEADER_SIZE, length));
+                this.position += RECORD_HEADER_SIZE + length;
+                this.lastIndex = index++;
+                lastTerm = term;
+            }
+            return lastTerm;
+        }
+
+        LogEntry append(long term, long index, LogEntry.Data data, ByteBuffer content) throws IOException {
+            assert index == this.lastIndex + 1;
+            final int length = content.remaining();
+            final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            header.putInt(length).putLong(term).putLong(index)
+              .putInt(SegmentedLog.checksum(this.sequence, length, term, index, content)).flip();
+            this.write(this.position, header, content.duplicate(), ByteBuffer.allocate(END_MARKER_SIZE));
+            final LogEntry logEntry = new LogEntry(term, index, data, this, this.position + RECORD_HEADER_SIZE, length);
+            this.position += RECORD_HEADER_SIZE + length;
+            this.lastIndex = index;
+            return logEntry;
+        }
+
+        void truncate(LogEntry logEntry) throws IOException {
+            assert logEntry.getSegment() == this;
+            assert logEntry.getIndex() >= this.firstIndex && logEntry.getIndex() <= this.lastIndex;
+            final int newPosition = (int)logEntry.getOffset() - RECORD_HEADER_SIZE;
+            this.write(newPosition, ByteBuffer.allocate(END_MARKER_SIZE));
+            this.position = newPosition;
+            this.lastIndex = logEntry.getIndex() - 1;
+        }
+
+        ByteBuffer read(long offset, int length) throws IOException {
+            assert offset >= HEADER_SIZE && offset + length <= this.size;
+            final ByteBuffer buf = this.getMap().duplicate();
+            buf.limit((int)offset + length).position((int)offset);
+            return buf.slice().asReadOnlyBuffer();
+        }
+
+        void sync(boolean disableSync) throws IOException {
+            if (!this.dirty)
+                return;
+            if (!disableSync)
+                this.channel.force(false);
+            this.dirty = false;
+        }
+
+        // Overwrite the header so this segment is no longer recognized
+        void invalidate(boolean syncNow) throws IOException {
+            this.writeHeader(0, 0);
+            if (syncNow)
+                this.channel.force(false);
+        }
+
+        void close() {
+            Util.closeIfPossible(this.channel);
+            this.map = null;
+        }
+
+        private MappedByteBuffer getMap() throws IOException {
+            if (this.map == null)
+                this.map = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+            return this.map;
+        }
+
+        private void writeHeader(long sequence, long firstIndex) throws IOException {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sequence).putLong(firstIndex);
+            final CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, 24);
+            header.putInt((int)crc.getValue()).clear();
+            this.write(0, header);
+        }
+
+        private void write(long offset, ByteBuffer... bufs) throws IOException {
+            for (ByteBuffer buf : bufs) {
+                while (buf.hasRemaining())
+                    offset += this.channel.write(buf, offset);
+            }
+            this.dirty = true;
+        }
+
+    // Object
+
+        @Override
+        public String toString() {
+            return this.file.getName() + "[seq=" + this.sequence + ",entries=" + this.firstIndex + "-" + this.lastIndex + "]";
+        }
+    }
+}
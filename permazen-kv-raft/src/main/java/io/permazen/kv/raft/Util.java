@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 import org.slf4j.LoggerFactory;
 
@@ -105,6 +106,28 @@ final class Util {
         }
     }
 
+    /**
+     * Extend a file to the given length by writing zeroes, so that its disk space is actually allocated.
+     *
+     * <p>
+     * Files already at least {@code length} bytes long are not modified.
+     *
+     * @param file file to extend
+     * @param length desired file length
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code file} is null
+     */
+    public static void preallocate(File file, long length) throws IOException {
+        Preconditions.checkArgument(file != null, "null file");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            final ByteBuffer zeroes = ByteBuffer.allocate(64 * 1024);
+            for (long position = channel.size(); position < length; ) {
+                zeroes.clear().limit((int)Math.min(zeroes.capacity(), length - position));
+                position += channel.write(zeroes, position);
+            }
+        }
+    }
+
     /**
      * Delete a file. If the operation fails, log an error.
      *
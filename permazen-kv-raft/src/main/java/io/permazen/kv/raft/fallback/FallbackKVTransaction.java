@@ -11,11 +11,14 @@ import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVDatabase;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.RetryTransactionException;
 import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.util.ForwardingKVStore;
 
 import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * A {@link KVTransaction} associated with a {@link FallbackKVDatabase}.
@@ -69,6 +72,15 @@ public class FallbackKVTransaction extends ForwardingKVStore implements KVTransa
 
     @Override
     public ListenableFuture<Void> watchKey(byte[] key) {
+        return this.watch(() -> this.kvt.watchKey(key));
+    }
+
+    @Override
+    public ListenableFuture<Void> watchRange(KeyRange range) {
+        return this.watch(() -> this.kvt.watchRange(range));
+    }
+
+    private ListenableFuture<Void> watch(Supplier<Future<Void>> watcher) {
 
         // Check freshness
         synchronized (this.db) {
@@ -79,7 +91,7 @@ public class FallbackKVTransaction extends ForwardingKVStore implements KVTransa
         // Get target's future - it must be a ListenableFuture or we can't do this
         final ListenableFuture<Void> innerFuture;
         try {
-            innerFuture = (ListenableFuture<Void>)this.kvt.watchKey(key);
+            innerFuture = (ListenableFuture<Void>)watcher.get();
         } catch (ClassCastException e) {
             throw new UnsupportedOperationException("nested transaction does not support ListenableFuture's", e);
         }
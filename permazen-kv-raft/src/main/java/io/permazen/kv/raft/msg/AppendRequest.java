@@ -9,16 +9,23 @@ import com.google.common.base.Preconditions;
 
 import io.permazen.kv.raft.Timestamp;
 import io.permazen.util.LongEncoder;
+import io.permazen.util.UnsignedIntEncoder;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Sent from leaders to followers to probe the follower's log state and/or append an entry to their log.
+ * Sent from leaders to followers to probe the follower's log state and/or append one or more entries to their log.
  *
  * <p>
  * Instances also provide the {@linkplain #getLeaderLeaseTimeout leader's lease timeout} value (if any),
  * which is used to commit read-only transactions, as well as a {@linkplain #getLeaderTimestamp leader timestamp}
  * which should be reflected back in the corresponding {@link AppendResponse}.
+ *
+ * <p>
+ * Requests containing more than one log entry are only supported by {@linkplain #isBatchingSupported protocol version 4}
+ * and later.
  */
 public class AppendRequest extends Message {
 
@@ -27,9 +34,9 @@ public class AppendRequest extends Message {
     private final long leaderCommit;                // index of highest log entry known to be committed
     private final long prevLogTerm;                 // term of previous log entry
     private final long prevLogIndex;                // index of previous log entry
-    private final long logEntryTerm;                // term corresponding to log entry, or zero if this is a "probe"
+    private final long[] logEntryTerms;             // terms corresponding to log entries, or empty if this is a "probe"
 
-    private ByteBuffer mutationData;                // serialized mutations, if not a probe and not from follower transaction
+    private ByteBuffer[] mutationData;              // serialized mutations, or null elements if from follower transaction
     private boolean mutationDataInvalid;            // mutationData has already been grabbed
 
 // Constructors
@@ -54,7 +61,7 @@ public class AppendRequest extends Message {
     public AppendRequest(int clusterId, String senderId, String recipientId, long term,
       Timestamp leaderTimestamp, Timestamp leaderLeaseTimeout, long leaderCommit, long prevLogTerm, long prevLogIndex) {
         this(clusterId, senderId, recipientId, term, leaderTimestamp, leaderLeaseTimeout, Math.min(leaderCommit, prevLogIndex),
-          prevLogTerm, prevLogIndex, 0, null);
+          prevLogTerm, prevLogIndex, new long[0], new ByteBuffer[0]);
     }
 
     /**
@@ -75,14 +82,40 @@ public class AppendRequest extends Message {
     public AppendRequest(int clusterId, String senderId, String recipientId, long term, Timestamp leaderTimestamp,
       Timestamp leaderLeaseTimeout, long leaderCommit, long prevLogTerm, long prevLogIndex, long logEntryTerm,
       ByteBuffer mutationData) {
+        this(clusterId, senderId, recipientId, term, leaderTimestamp, leaderLeaseTimeout, leaderCommit, prevLogTerm,
+          prevLogIndex, logEntryTerm != 0 ? new long[] { logEntryTerm } : new long[0],
+          logEntryTerm != 0 || mutationData != null ? new ByteBuffer[] { mutationData } : new ByteBuffer[0]);
+    }
+
+    /**
+     * Constructor for a request that contains one or more consecutive log entries.
+     *
+     * @param clusterId cluster ID
+     * @param senderId identity of sender
+     * @param recipientId identity of recipient
+     * @param term sender's current term
+     * @param leaderTimestamp leader's timestamp for this request
+     * @param leaderLeaseTimeout earliest leader timestamp at which leader could be deposed (or null)
+     * @param leaderCommit current commit index for sender
+     * @param prevLogTerm term of the log entry just prior to the first log entry
+     * @param prevLogIndex index of the log entry just prior to the first log entry
+     * @param logEntryTerms terms of the log entries
+     * @param mutationData serialized mutations for each log entry, with null elements for log entries
+     *  whose data the follower should have already
+     */
+    public AppendRequest(int clusterId, String senderId, String recipientId, long term, Timestamp leaderTimestamp,
+      Timestamp leaderLeaseTimeout, long leaderCommit, long prevLogTerm, long prevLogIndex, long[] logEntryTerms,
+      ByteBuffer[] mutationData) {
         super(Message.APPEND_REQUEST_TYPE, clusterId, senderId, recipientId, term);
+        Preconditions.checkArgument(logEntryTerms != null, "null logEntryTerms");
+        Preconditions.checkArgument(mutationData != null, "null mutationData");
         this.leaderTimestamp = leaderTimestamp;
         this.leaderLeaseTimeout = leaderLeaseTimeout;
         this.leaderCommit = leaderCommit;
         this.prevLogTerm = prevLogTerm;
         this.prevLogIndex = prevLogIndex;
-        this.logEntryTerm = logEntryTerm;
-        this.mutationData = mutationData;
+        this.logEntryTerms = logEntryTerms.clone();
+        this.mutationData = mutationData.clone();
         this.checkArguments();
     }
 
@@ -93,8 +126,24 @@ public class AppendRequest extends Message {
         this.leaderCommit = LongEncoder.read(buf);
         this.prevLogTerm = LongEncoder.read(buf);
         this.prevLogIndex = LongEncoder.read(buf);
-        this.logEntryTerm = LongEncoder.read(buf);
-        this.mutationData = this.logEntryTerm != 0 && Message.getBoolean(buf) ? Message.getByteBuffer(buf) : null;
+        final long logEntryTerm = LongEncoder.read(buf);
+        if (logEntryTerm == 0) {
+            this.logEntryTerms = new long[0];
+            this.mutationData = new ByteBuffer[0];
+        } else {
+            final ByteBuffer firstMutationData = Message.getBoolean(buf) ? Message.getByteBuffer(buf) : null;
+            final int numMore = version >= Message.VERSION_4 ? UnsignedIntEncoder.read(buf) : 0;
+            if (numMore > buf.remaining())
+                throw new IllegalArgumentException("bogus log entry count " + numMore);
+            this.logEntryTerms = new long[1 + numMore];
+            this.mutationData = new ByteBuffer[1 + numMore];
+            this.logEntryTerms[0] = logEntryTerm;
+            this.mutationData[0] = firstMutationData;
+            for (int i = 1; i <= numMore; i++) {
+                this.logEntryTerms[i] = LongEncoder.read(buf);
+                this.mutationData[i] = Message.getBoolean(buf) ? Message.getByteBuffer(buf) : null;
+            }
+        }
         this.checkArguments();
     }
 
@@ -105,8 +154,13 @@ public class AppendRequest extends Message {
         Preconditions.checkArgument(this.leaderCommit >= 0);
         Preconditions.checkArgument(this.prevLogTerm >= 0);
         Preconditions.checkArgument(this.prevLogIndex >= 0);
-        Preconditions.checkArgument(this.logEntryTerm >= 0);
-        Preconditions.checkArgument(this.mutationData == null || this.logEntryTerm > 0);
+        Preconditions.checkArgument(this.mutationData.length == this.logEntryTerms.length);
+        long previousTerm = 0;
+        for (long logEntryTerm : this.logEntryTerms) {
+            Preconditions.checkArgument(logEntryTerm > 0);
+            Preconditions.checkArgument(logEntryTerm >= previousTerm);
+            previousTerm = logEntryTerm;
+        }
     }
 
 // Properties
@@ -140,31 +194,84 @@ public class AppendRequest extends Message {
     }
 
     public boolean isProbe() {
-        return this.logEntryTerm == 0;
+        return this.logEntryTerms.length == 0;
+    }
+
+    /**
+     * Get the number of log entries contained in this request.
+     *
+     * @return number of log entries, or zero if this is a probe
+     */
+    public int getNumLogEntries() {
+        return this.logEntryTerms.length;
     }
 
+    /**
+     * Get the term of the first log entry contained in this request.
+     *
+     * @return first log entry term, or zero if this is a probe
+     */
     public long getLogEntryTerm() {
-        return this.logEntryTerm;
+        return this.logEntryTerms.length > 0 ? this.logEntryTerms[0] : 0;
     }
 
     /**
-     * Get the serialized data for the log entry, if any.
+     * Get the term of the log entry at the given offset in this request.
+     *
+     * @param offset offset of the log entry, i.e., its index minus {@code getPrevLogIndex() + 1}
+     * @return log entry term
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public long getLogEntryTerm(int offset) {
+        return this.logEntryTerms[offset];
+    }
+
+    /**
+     * Get the serialized data for the first log entry, if any.
      * Returns null if this is a probe or follower is expected to already have the data from a transaction.
      *
      * <p>
-     * This method may only be invoked once.
+     * This method, or {@link #getAllMutationData}, may only be invoked once.
      *
      * @return log entry serialized mutations, or null if this message does not contain data
-     * @throws IllegalStateException if this method has already been invoked
+     * @throws IllegalStateException if this method or {@link #getAllMutationData} has already been invoked
      */
     public ByteBuffer getMutationData() {
+        final List<ByteBuffer> list = this.getAllMutationData();
+        return !list.isEmpty() ? list.get(0) : null;
+    }
+
+    /**
+     * Get the serialized data for all of the log entries in this request.
+     *
+     * <p>
+     * The returned list contains one element per log entry; an element is null if the follower is expected to
+     * already have the data for that log entry from a transaction.
+     *
+     * <p>
+     * This method, or {@link #getMutationData}, may only be invoked once.
+     *
+     * @return log entry serialized mutations, empty if this is a probe
+     * @throws IllegalStateException if this method or {@link #getMutationData} has already been invoked
+     */
+    public List<ByteBuffer> getAllMutationData() {
         Preconditions.checkState(!this.mutationDataInvalid);
-        final ByteBuffer result = this.mutationData;
+        final List<ByteBuffer> result = Arrays.asList(this.mutationData);
         this.mutationData = null;
         this.mutationDataInvalid = true;
         return result;
     }
 
+    /**
+     * Determine whether requests containing more than one log entry can be encoded using the given protocol version.
+     *
+     * @param version protocol encoding version
+     * @return true if {@code version} supports multiple log entries per request
+     */
+    public static boolean isBatchingSupported(int version) {
+        return version >= Message.VERSION_4;
+    }
+
 // Message
 
     @Override
@@ -180,6 +287,7 @@ public class AppendRequest extends Message {
     @Override
     public void writeTo(ByteBuffer dest, int version) {
         Preconditions.checkState(!this.mutationDataInvalid);
+        this.checkVersionSupportsBatch(version);
         super.writeTo(dest, version);
         Message.putTimestamp(dest, this.leaderTimestamp, version);
         Message.putBoolean(dest, this.leaderLeaseTimeout != null);
@@ -188,18 +296,24 @@ public class AppendRequest extends Message {
         LongEncoder.write(dest, this.leaderCommit);
         LongEncoder.write(dest, this.prevLogTerm);
         LongEncoder.write(dest, this.prevLogIndex);
-        LongEncoder.write(dest, this.logEntryTerm);
-        if (this.logEntryTerm != 0) {
-            Message.putBoolean(dest, this.mutationData != null);
-            if (this.mutationData != null)
-                Message.putByteBuffer(dest, this.mutationData);
+        LongEncoder.write(dest, this.getLogEntryTerm());
+        if (this.logEntryTerms.length == 0)
+            return;
+        AppendRequest.writeMutationData(dest, this.mutationData[0]);
+        if (version < Message.VERSION_4)
+            return;
+        UnsignedIntEncoder.write(dest, this.logEntryTerms.length - 1);
+        for (int i = 1; i < this.logEntryTerms.length; i++) {
+            LongEncoder.write(dest, this.logEntryTerms[i]);
+            AppendRequest.writeMutationData(dest, this.mutationData[i]);
         }
     }
 
     @Override
     protected int calculateSize(int version) {
         Preconditions.checkState(!this.mutationDataInvalid);
-        return super.calculateSize(version)
+        this.checkVersionSupportsBatch(version);
+        int size = super.calculateSize(version)
           + Message.calculateSize(this.leaderTimestamp, version)
           + 1
           + (this.leaderLeaseTimeout != null ?
@@ -207,8 +321,35 @@ public class AppendRequest extends Message {
           + LongEncoder.encodeLength(this.leaderCommit)
           + LongEncoder.encodeLength(this.prevLogTerm)
           + LongEncoder.encodeLength(this.prevLogIndex)
-          + LongEncoder.encodeLength(this.logEntryTerm)
-          + (this.logEntryTerm != 0 ? 1 + (this.mutationData != null ? Message.calculateSize(this.mutationData) : 0) : 0);
+          + LongEncoder.encodeLength(this.getLogEntryTerm());
+        if (this.logEntryTerms.length == 0)
+            return size;
+        size += AppendRequest.calculateMutationDataSize(this.mutationData[0]);
+        if (version < Message.VERSION_4)
+            return size;
+        size += UnsignedIntEncoder.encodeLength(this.logEntryTerms.length - 1);
+        for (int i = 1; i < this.logEntryTerms.length; i++) {
+            size += LongEncoder.encodeLength(this.logEntryTerms[i])
+              + AppendRequest.calculateMutationDataSize(this.mutationData[i]);
+        }
+        return size;
+    }
+
+    private void checkVersionSupportsBatch(int version) {
+        if (this.logEntryTerms.length > 1 && !AppendRequest.isBatchingSupported(version)) {
+            throw new IllegalArgumentException("can't encode " + this.logEntryTerms.length
+              + " log entries in a single message using protocol version " + version);
+        }
+    }
+
+    private static void writeMutationData(ByteBuffer dest, ByteBuffer mutationData) {
+        Message.putBoolean(dest, mutationData != null);
+        if (mutationData != null)
+            Message.putByteBuffer(dest, mutationData);
+    }
+
+    private static int calculateMutationDataSize(ByteBuffer mutationData) {
+        return 1 + (mutationData != null ? Message.calculateSize(mutationData) : 0);
     }
 
 // Object
@@ -224,10 +365,18 @@ public class AppendRequest extends Message {
             ",leaderLeaseTimeout=" + String.format("%+dms", this.leaderLeaseTimeout.offsetFrom(this.leaderTimestamp)) : "")
           + ",leaderCommit=" + this.leaderCommit
           + ",prevLog=" + this.prevLogIndex + "t" + this.prevLogTerm
-          + (this.logEntryTerm != 0 ? ",logEntryTerm=" + this.logEntryTerm : "")
-          + (this.mutationData != null ?
-            ",mutationData=" + this.describe(this.mutationData) : this.mutationDataInvalid ? ",mutationData=invalid" : "")
+          + (this.logEntryTerms.length == 1 ? ",logEntryTerm=" + this.logEntryTerms[0] : "")
+          + (this.logEntryTerms.length > 1 ? ",logEntryTerms=" + Arrays.toString(this.logEntryTerms) : "")
+          + (this.mutationDataInvalid ? ",mutationData=invalid" : this.describeMutationData())
           + "]";
     }
-}
 
+    private String describeMutationData() {
+        if (this.logEntryTerms.length == 1)
+            return this.mutationData[0] != null ? ",mutationData=" + this.describe(this.mutationData[0]) : "";
+        long total = 0;
+        for (ByteBuffer data : this.mutationData)
+            total += data != null ? data.remaining() : 0;
+        return total > 0 ? ",mutationData=" + total + " bytes" : "";
+    }
+}
@@ -0,0 +1,218 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.raft;
+
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.array.AtomicArrayKVStore;
+import io.permazen.kv.test.KVTestSupport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests leader-side merging of concurrent follower commits into a single log entry.
+ */
+public class RaftCommitBatchTest extends KVTestSupport {
+
+    private static final int NUM_NODES = 3;
+    private static final int COMMIT_BATCH_DELAY = 500;
+
+    private RaftKVDatabase[] rafts;
+    private TestNetwork[] raftNetworks;
+    private File topRaftDir;
+
+    @BeforeClass
+    public void setupRafts() throws Exception {
+        this.raftNetworks = new TestNetwork[NUM_NODES];
+        this.rafts = new RaftKVDatabase[NUM_NODES];
+        this.topRaftDir = Files.createTempDirectory("RaftCommitBatchTest").toFile();
+        for (int i = 0; i < NUM_NODES; i++) {
+            final String name = "node" + i;
+            final File dir = new File(this.topRaftDir, name);
+            final File kvdir = new File(dir, "kvstore");
+            kvdir.mkdirs();
+            final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+            kvstore.setDirectory(kvdir);
+            this.raftNetworks[i] = new TestNetwork(name, 5, 0.0f);
+            this.rafts[i] = new RaftKVDatabase();
+            this.rafts[i].setKVStore(kvstore);
+            this.rafts[i].setLogDirectory(dir);
+            this.rafts[i].setNetwork(this.raftNetworks[i]);
+            this.rafts[i].setIdentity(name);
+            this.rafts[i].setMaxCommitBatchSize(16);
+            this.rafts[i].setCommitBatchDelay(COMMIT_BATCH_DELAY);
+        }
+        for (RaftKVDatabase raft : this.rafts)
+            raft.start();
+        for (int i = 0; i < NUM_NODES; i++) {
+            final String node = this.rafts[i].getIdentity();
+            this.tryNtimes(this.rafts[0], tx -> ((RaftKVTransaction)tx).configChange(node, node));
+        }
+
+        // Wait for every node to learn the complete configuration
+        for (RaftKVDatabase raft : this.rafts) {
+            for (int i = 0; raft.getCurrentConfig().size() < NUM_NODES; i++) {
+                Assert.assertTrue(i < 100, "node " + raft.getIdentity() + " not configured");
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @AfterClass
+    public void teardownRafts() throws Exception {
+        if (this.rafts == null)
+            return;
+        for (RaftKVDatabase raft : this.rafts)
+            raft.stop();
+        for (TestNetwork network : this.raftNetworks)
+            network.stop();
+        Files.walkFileTree(this.topRaftDir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (RaftKVDatabase raft : this.rafts) {
+            final Throwable t = raft.getLastInternalError();
+            if (t != null)
+                throw new Exception("internal error in " + raft, t);
+        }
+    }
+
+    @Test
+    public void testConflictWithinBatch() throws Exception {
+        final List<RaftKVDatabase> followers = this.reset(tx -> tx.put(b("10"), b("00")));
+
+        // Two transactions on different followers both read and then write the same key
+        final ArrayList<RaftKVTransaction> txs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final RaftKVTransaction tx = followers.get(i).createTransaction();
+            Assert.assertEquals(tx.get(b("10")), b("00"));
+            tx.put(b("10"), new byte[] { (byte)(i + 1) });
+            txs.add(tx);
+        }
+
+        // Exactly one of them must commit; the other must conflict with it within the same batch
+        final Throwable[] errors = this.commitConcurrently(txs);
+        final int winner = errors[0] == null ? 0 : 1;
+        final Throwable error = errors[1 - winner];
+        Assert.assertNull(errors[winner], "both transactions failed");
+        Assert.assertTrue(error instanceof RetryTransactionException, "wrong failure: " + error);
+        Assert.assertTrue(error.getMessage().contains("same commit batch"), "wrong failure: " + error);
+
+        // Verify the winner's write
+        final byte[] value = this.tryNtimesWithResult(this.findLeader(), tx -> tx.get(b("10")));
+        Assert.assertEquals(value, new byte[] { (byte)(winner + 1) });
+    }
+
+    @Test
+    public void testBatchedCounterAdjustments() throws Exception {
+        final List<RaftKVDatabase> followers = this.reset(tx -> tx.put(b("20"), tx.encodeCounter(0)));
+
+        // Several transactions spread over the followers adjust the same counter and write their own keys
+        final int numTransactions = 6;
+        final ArrayList<RaftKVTransaction> txs = new ArrayList<>();
+        for (int i = 0; i < numTransactions; i++) {
+            final RaftKVTransaction tx = followers.get(i % followers.size()).createTransaction();
+            tx.adjustCounter(b("20"), i + 1);
+            tx.put(new byte[] { 0x30, (byte)i }, b("01"));
+            txs.add(tx);
+        }
+
+        // None of them conflict, so all must commit, and in the same log entry
+        final Throwable[] errors = this.commitConcurrently(txs);
+        for (int i = 0; i < numTransactions; i++)
+            Assert.assertNull(errors[i], "transaction #" + i + " failed: " + errors[i]);
+        for (RaftKVTransaction tx : txs) {
+            Assert.assertEquals(tx.getCommitTerm(), txs.get(0).getCommitTerm());
+            Assert.assertEquals(tx.getCommitIndex(), txs.get(0).getCommitIndex());
+        }
+
+        // Verify all adjustments and writes were applied
+        final long counter = this.tryNtimesWithResult(this.findLeader(), tx -> tx.decodeCounter(tx.get(b("20"))));
+        Assert.assertEquals(counter, (long)(numTransactions * (numTransactions + 1) / 2));
+        for (RaftKVDatabase raft : this.rafts) {
+            for (int i = 0; i < numTransactions; i++) {
+                final byte[] key = new byte[] { 0x30, (byte)i };
+                Assert.assertEquals(this.tryNtimesWithResult(raft, tx -> tx.get(key)), b("01"));
+            }
+        }
+    }
+
+// Internal methods
+
+    // Clear the database, apply the given setup, and return the followers after they have caught up
+    private List<RaftKVDatabase> reset(Consumer<KVTransaction> setup) {
+        final RaftKVDatabase leader = this.findLeader();
+        this.tryNtimes(leader, tx -> {
+            tx.removeRange(null, null);
+            setup.accept(tx);
+        });
+        final ArrayList<RaftKVDatabase> followers = new ArrayList<>();
+        for (RaftKVDatabase raft : this.rafts) {
+            if (raft == leader)
+                continue;
+            this.tryNtimes(raft, tx -> tx.get(b("00")));            // ensure the follower has the setup changes
+            followers.add(raft);
+        }
+        return followers;
+    }
+
+    private RaftKVDatabase findLeader() {
+        for (int i = 0; i < 100; i++) {
+            for (RaftKVDatabase raft : this.rafts) {
+                if (raft.getCurrentRole() instanceof LeaderRole)
+                    return raft;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        throw new AssertionError("no leader found");
+    }
+
+    // Commit the given transactions in parallel and return their errors, if any
+    private Throwable[] commitConcurrently(List<RaftKVTransaction> txs) throws InterruptedException {
+        final Throwable[] errors = new Throwable[txs.size()];
+        final Thread[] threads = new Thread[txs.size()];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    txs.get(index).commit();
+                } catch (Throwable t) {
+                    errors[index] = t;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        return errors;
+    }
+}
@@ -0,0 +1,229 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.raft;
+
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.test.TestSupport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dellroad.stuff.io.ByteBufferInputStream;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SegmentedLogTest extends TestSupport {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() throws IOException {
+        this.dir = Files.createTempDirectory("SegmentedLogTest").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDir() {
+        for (File file : this.dir.listFiles())
+            file.delete();
+        this.dir.delete();
+    }
+
+    @Test
+    public void testAppendRecover() throws Exception {
+
+        // Write enough log entries to span several segments
+        SegmentedLog log = this.newLog();
+        Assert.assertTrue(log.recover(0, 0).isEmpty());
+        this.append(log, 1, 1, 20, 100);
+        Assert.assertTrue(log.getSegmentFiles().size() > 1);
+        log.sync();
+        log.close();
+
+        // Recover all of them
+        log = this.newLog();
+        List<LogEntry> entries = log.recover(0, 0);
+        this.check(entries, 1, 20, 100);
+        log.close();
+
+        // Recover only those not yet applied
+        log = this.newLog();
+        entries = log.recover(12, 1);
+        this.check(entries, 13, 20, 100);
+
+        // Continue appending
+        this.append(log, 2, 21, 25, 100);
+        log.sync();
+        log.close();
+        log = this.newLog();
+        entries = log.recover(12, 1);
+        this.check(entries, 13, 25, 100);
+        Assert.assertEquals(entries.get(entries.size() - 1).getTerm(), 2);
+        log.close();
+    }
+
+    @Test
+    public void testTornWrite() throws Exception {
+        SegmentedLog log = this.newLog();
+        log.recover(0, 0);
+        final List<LogEntry> appended = this.append(log, 1, 1, 5, 50);
+        log.sync();
+        log.close();
+
+        // Corrupt the content of the last log entry
+        final LogEntry last = appended.get(appended.size() - 1);
+        try (RandomAccessFile file = new RandomAccessFile(last.getFile(), "rw")) {
+            file.seek(last.getOffset() + last.getFileSize() - 1);
+            final int b = file.read();
+            file.seek(last.getOffset() + last.getFileSize() - 1);
+            file.write(b ^ 0xff);
+        }
+
+        // It should be discarded
+        log = this.newLog();
+        final List<LogEntry> entries = log.recover(0, 0);
+        this.check(entries, 1, 4, 50);
+
+        // We should be able to append in its place
+        this.append(log, 1, 5, 6, 50);
+        log.sync();
+        log.close();
+        log = this.newLog();
+        this.check(log.recover(0, 0), 1, 6, 50);
+        log.close();
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        SegmentedLog log = this.newLog();
+        log.recover(0, 0);
+        final List<LogEntry> appended = this.append(log, 1, 1, 20, 100);
+        final int numSegments = log.getSegmentFiles().size();
+        Assert.assertTrue(numSegments > 2);
+
+        // Truncate back into the first segment, then append with a new term
+        log.truncate(appended.get(3));
+        Assert.assertEquals(log.getSegmentFiles().size(), 1);
+        this.append(log, 2, 4, 10, 100);
+        log.sync();
+        log.close();
+
+        // Truncated log entries should not reappear from discarded segments
+        log = this.newLog();
+        final List<LogEntry> entries = log.recover(0, 0);
+        this.check(entries, 1, 10, 100);
+        Assert.assertEquals(entries.get(2).getTerm(), 1);
+        Assert.assertEquals(entries.get(3).getTerm(), 2);
+        log.close();
+    }
+
+    @Test
+    public void testReleaseAndClear() throws Exception {
+        SegmentedLog log = this.newLog();
+        log.recover(0, 0);
+        this.append(log, 1, 1, 30, 100);
+        final int numSegments = log.getSegmentFiles().size();
+
+        // Releasing applied log entries should recycle segment files, keeping a limited number of spares
+        log.release(25);
+        Assert.assertTrue(log.getSegmentFiles().size() < numSegments);
+        Assert.assertTrue(this.countSegmentFiles() <= log.getSegmentFiles().size() + 2);
+
+        // Spare segment files should be reused without being recovered as log entries
+        this.append(log, 1, 31, 50, 100);
+        log.sync();
+        log.close();
+        log = this.newLog();
+        this.check(log.recover(25, 1), 26, 50, 100);
+
+        // Clear the log, e.g., after installing a snapshot, and start over at some unrelated index
+        log.clear();
+        Assert.assertTrue(log.getSegmentFiles().isEmpty());
+        this.append(log, 3, 1000, 1002, 100);
+        log.sync();
+        log.close();
+        log = this.newLog();
+        this.check(log.recover(999, 2), 1000, 1002, 100);
+        log.close();
+
+        // A log that does not reach the last applied index is discarded
+        log = this.newLog();
+        Assert.assertTrue(log.recover(2000, 5).isEmpty());
+        Assert.assertTrue(log.getSegmentFiles().isEmpty());
+        log.close();
+    }
+
+    @Test
+    public void testOversizeEntry() throws Exception {
+        SegmentedLog log = this.newLog();
+        log.recover(0, 0);
+        this.append(log, 1, 1, 2, 100);
+        this.append(log, 1, 3, 3, SEGMENT_SIZE * 3);
+        this.append(log, 1, 4, 5, 100);
+        log.sync();
+        log.close();
+        log = this.newLog();
+        final List<LogEntry> entries = log.recover(0, 0);
+        Assert.assertEquals(entries.size(), 5);
+        Assert.assertEquals(entries.get(2).getContent().remaining(), entries.get(2).getFileSize());
+        Assert.assertTrue(entries.get(2).getFile().length() > SEGMENT_SIZE);
+        Assert.assertEquals(this.valueSize(entries.get(2)), SEGMENT_SIZE * 3);
+        log.close();
+    }
+
+// Internal methods
+
+    private SegmentedLog newLog() {
+        return new SegmentedLog(this.dir, null, SEGMENT_SIZE, true);
+    }
+
+    private List<LogEntry> append(SegmentedLog log, long term, long minIndex, long maxIndex, int valueSize)
+      throws IOException {
+        final ArrayList<LogEntry> list = new ArrayList<>();
+        for (long index = minIndex; index <= maxIndex; index++) {
+            final Writes writes = new Writes();
+            writes.getPuts().put(ByteBuffer.allocate(8).putLong(index).array(), new byte[valueSize]);
+            final LogEntry.Data data = new LogEntry.Data(writes, null);
+            list.add(log.append(term, index, data, NewLogEntry.serialize(data)));
+        }
+        return list;
+    }
+
+    private void check(List<LogEntry> entries, long minIndex, long maxIndex, int valueSize) throws IOException {
+        Assert.assertEquals(entries.size(), (int)(maxIndex - minIndex + 1), "wrong entries: " + entries);
+        for (int i = 0; i < entries.size(); i++) {
+            final LogEntry logEntry = entries.get(i);
+            Assert.assertEquals(logEntry.getIndex(), minIndex + i);
+            Assert.assertEquals(this.valueSize(logEntry), valueSize);
+        }
+    }
+
+    private int valueSize(LogEntry logEntry) throws IOException {
+        final LogEntry.Data data;
+        try (ByteBufferInputStream input = new ByteBufferInputStream(logEntry.getContent())) {
+            data = LogEntry.readData(input);
+        }
+        Assert.assertEquals(data.getWrites().getPuts().size(), 1);
+        return data.getWrites().getPuts().values().iterator().next().length;
+    }
+
+    private int countSegmentFiles() {
+        int count = 0;
+        for (File file : this.dir.listFiles()) {
+            if (SegmentedLog.SEGMENT_FILE_PATTERN.matcher(file.getName()).matches())
+                count++;
+        }
+        return count;
+    }
+}
@@ -26,6 +26,16 @@ public class MessageTest extends TestSupport {
     @Test(dataProvider = "msgs")
     public void testMessage(Message msg1) {
         for (int version = 1; version <= Message.getCurrentProtocolVersion(); version++) {
+            if (msg1 instanceof AppendRequest
+              && ((AppendRequest)msg1).getNumLogEntries() > 1 && !AppendRequest.isBatchingSupported(version)) {
+                try {
+                    msg1.encode(version);
+                    assert false : "encoded batch using version " + version;
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+                continue;
+            }
             final ByteBuffer buf1 = msg1.encode(version);
             final ByteBuffer buf1b = buf1.duplicate();
             final int decodedVersion = Message.decodeProtocolVersion(buf1b);
@@ -64,6 +74,9 @@ public class MessageTest extends TestSupport {
               123, new Timestamp(), new Timestamp(), Long.MAX_VALUE, 1 << 50, 1 << 13, 1 << 15, null) },
             { new AppendRequest(123, "foobar", "Dest",
               123, new Timestamp(), new Timestamp(), Long.MAX_VALUE, 1 << 50, 1 << 13, 1 << 15, ByteBuffer.wrap(writesData)) },
+            { new AppendRequest(123, "foobar", "Dest", 123, new Timestamp(), null, 456, 1 << 50, 1 << 13,
+              new long[] { 1 << 15, 1 << 15, (1 << 15) + 1 },
+              new ByteBuffer[] { ByteBuffer.wrap(writesData), null, ByteBuffer.wrap(writesData) }) },
             { new AppendResponse(123, "foobar", "Dest", 99, new Timestamp(123), false, 123123, 4544253) },
             { new AppendResponse(123, "foobar", "Dest", 99, new Timestamp(0x7fffffff), true, 34234, 4544253) },
             { new CommitRequest(123, "@#$Q@$%@\u0000\uffff!", "Dest", 123123, 123123, 3343, 34343,
@@ -7,19 +7,23 @@ package io.permazen.kv.rocksdb;
 
 import com.google.common.base.Preconditions;
 
+import io.permazen.kv.KVPair;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.util.BulkLoader;
 import io.permazen.kv.util.ForwardingKVStore;
 import io.permazen.util.ByteUtil;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
+import org.rocksdb.FlushOptions;
 import org.rocksdb.InfoLogLevel;
 import org.rocksdb.Options;
 import org.rocksdb.ReadOptions;
@@ -272,6 +276,50 @@ public class RocksDBAtomicKVStore extends ForwardingKVStore implements AtomicKVS
         }
     }
 
+    /**
+     * Load a sorted stream of key/value pairs directly into this instance.
+     *
+     * <p>
+     * The implementation in {@link RocksDBAtomicKVStore} writes the pairs in batches of approximately
+     * {@link BulkLoader#DEFAULT_BATCH_SIZE} bytes with the write-ahead log disabled, then flushes the memtable
+     * so that the loaded data is durably persisted in SST files.
+     * The load is not atomic: if this method throws an exception, some of the pairs may have been loaded and some not.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     */
+    @Override
+    public synchronized void bulkLoad(Iterator<? extends KVPair> pairs) {
+        Preconditions.checkState(this.db != null, "closed");
+        final BulkLoader.SortedIterator i = new BulkLoader.SortedIterator(pairs);
+        if (!i.hasNext())
+            return;
+        try (final WriteOptions writeOptions = new WriteOptions().setDisableWAL(true)) {
+
+            // Write batches
+            while (i.hasNext()) {
+                try (final WriteBatch batch = new WriteBatch()) {
+                    long batchBytes = 0;
+                    while (i.hasNext() && batchBytes < BulkLoader.DEFAULT_BATCH_SIZE) {
+                        final KVPair pair = i.next();
+                        batch.put(pair.getKey(), pair.getValue());
+                        batchBytes += pair.getKey().length + pair.getValue().length;
+                    }
+                    this.db.write(writeOptions, batch);
+                }
+            }
+
+            // Because we bypassed the write-ahead log, flush memtable to persist the data
+            try (final FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                this.db.flush(flushOptions);
+            }
+        } catch (RocksDBException e) {
+            throw new RuntimeException("error bulk loading data into RocksDB", e);
+        }
+    }
+
 // Object
 
     /**
@@ -10,11 +10,16 @@ import com.google.common.base.Preconditions;
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.kv.util.SizeEstimates;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 import io.permazen.util.CloseableTracker;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import org.rocksdb.ReadOptions;
@@ -33,6 +38,8 @@ import org.slf4j.LoggerFactory;
  */
 public class RocksDBKVStore extends AbstractKVStore implements CloseableKVStore {
 
+    private static final int ESTIMATE_SAMPLE_LIMIT = 1000;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final CloseableTracker cursorTracker = new CloseableTracker();
     private final ReadOptions readOptions;
@@ -109,11 +116,53 @@ public class RocksDBKVStore extends AbstractKVStore implements CloseableKVStore
         }
     }
 
+    /**
+     * Get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * This implementation retrieves all of the values via a single invocation of {@link RocksDB#multiGet RocksDB.multiGet()}.
+     */
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        for (byte[] key : keys)
+            key.getClass();
+        Preconditions.checkState(!this.closed, "closed");
+        assert RocksDBUtil.isInitialized(this.db);
+        assert RocksDBUtil.isInitialized(this.readOptions);
+        this.cursorTracker.poll();
+        final Map<byte[], byte[]> valueMap;
+        try {
+            valueMap = this.db.multiGet(this.readOptions, keys);
+        } catch (RocksDBException e) {
+            throw new RuntimeException("RocksDB error", e);
+        }
+
+        // The returned map is keyed by the identical key arrays we passed in
+        final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            values.add(valueMap.get(key));
+        return values;
+    }
+
     @Override
     public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
         return this.createIterator(this.readOptions, minKey, maxKey, reverse);
     }
 
+    /**
+     * Estimate the size of a key range.
+     *
+     * <p>
+     * The RocksDB Java API does not expose {@code GetApproximateSizes()}, so this implementation
+     * {@linkplain SizeEstimates#sample samples} up to the first 1000 keys in the range and extrapolates.
+     */
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        Preconditions.checkState(!this.closed, "closed");
+        return SizeEstimates.sample(this, minKey, maxKey, ESTIMATE_SAMPLE_LIMIT);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         key.getClass();
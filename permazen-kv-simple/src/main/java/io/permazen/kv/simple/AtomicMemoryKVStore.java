@@ -0,0 +1,586 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.AbstractKVStore;
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVPairIterator;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.kv.mvcc.AtomicKVStore;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.util.SizeEstimates;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory {@link AtomicKVStore} that keeps a chain of versions for each key in a {@link ConcurrentSkipListMap}.
+ *
+ * <p>
+ * Each {@link #mutate mutate()} creates a new database version: the mutations are added to the front of each affected key's
+ * version chain (removals are recorded as "tombstones"), and then the new version is published all at once.
+ * A {@linkplain #snapshot snapshot} simply remembers the version that was current when it was created and reads,
+ * for each key, the newest entry in the key's chain that is no newer than that version. Therefore, reads never acquire
+ * any locks and are never blocked by writers; writers are serialized with respect to each other only.
+ *
+ * <p>
+ * Versions that are no longer visible to any open snapshot are reclaimed by a background garbage collection task that
+ * runs every {@linkplain #setGarbageCollectionInterval garbage collection interval}. As a consequence, open snapshots
+ * that are never {@link CloseableKVStore#close close()}'d prevent the reclamation of old versions.
+ *
+ * <p>
+ * Because this class is purely in-memory, the {@code sync} parameter to {@link #mutate mutate()} is ignored, and the
+ * content of an instance is retained across {@link #stop} and restart.
+ *
+ * <p>
+ * Reads and writes made directly on an instance (rather than a snapshot) see the latest committed version;
+ * each write is applied as a separate, single mutation.
+ *
+ * @see MemoryKVDatabase
+ */
+@ThreadSafe
+public class AtomicMemoryKVStore extends AbstractKVStore implements AtomicKVStore {
+
+    /**
+     * Default garbage collection interval in milliseconds ({@value #DEFAULT_GC_INTERVAL}).
+     */
+    public static final int DEFAULT_GC_INTERVAL = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    // Key version chains; each chain is ordered from newest version to oldest
+    private final ConcurrentSkipListMap<byte[], Version> map = new ConcurrentSkipListMap<>(ByteUtil.COMPARATOR);
+
+    // Serializes writers
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Serializes garbage collection
+    private final Object gcLock = new Object();
+
+    // Versions of open snapshots, mapped to their reference counts
+    @GuardedBy("snapshotVersions")
+    private final TreeMap<Long, Integer> snapshotVersions = new TreeMap<>();
+
+    // Most recently published version
+    private volatile long currentVersion;
+
+    // Whether this instance is started
+    private volatile boolean started;
+
+    // Configuration state
+    @GuardedBy("this")
+    private ScheduledExecutorService scheduledExecutorService;
+    @GuardedBy("this")
+    private int gcInterval = DEFAULT_GC_INTERVAL;
+
+    // Runtime state
+    @GuardedBy("this")
+    private boolean createdExecutorService;
+    @GuardedBy("this")
+    private ScheduledFuture<?> gcFuture;
+    @GuardedBy("gcLock")
+    private long gcVersion;                                             // version up through which garbage has been collected
+
+// Accessors
+
+    /**
+     * Configure the {@link ScheduledExecutorService} used to schedule background garbage collection.
+     *
+     * <p>
+     * If not explicitly configured, a {@link ScheduledExecutorService} will be created automatically during {@link #start}
+     * using {@link Executors#newSingleThreadScheduledExecutor} and shutdown by {@link #stop} (if explicitly configured here,
+     * the configured {@link ScheduledExecutorService} will not be shutdown by {@link #stop}).
+     *
+     * @param scheduledExecutorService scheduled executor service, or null to have one created automatically
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public synchronized void setScheduledExecutorService(ScheduledExecutorService scheduledExecutorService) {
+        Preconditions.checkState(!this.started, "already started");
+        this.scheduledExecutorService = scheduledExecutorService;
+    }
+
+    /**
+     * Get the interval between background garbage collection runs.
+     *
+     * @return garbage collection interval in milliseconds
+     */
+    public synchronized int getGarbageCollectionInterval() {
+        return this.gcInterval;
+    }
+
+    /**
+     * Configure the interval between background garbage collection runs.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_GC_INTERVAL} milliseconds.
+     *
+     * @param gcInterval garbage collection interval in milliseconds
+     * @throws IllegalArgumentException if {@code gcInterval} is not positive
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public synchronized void setGarbageCollectionInterval(int gcInterval) {
+        Preconditions.checkArgument(gcInterval > 0, "gcInterval <= 0");
+        Preconditions.checkState(!this.started, "already started");
+        this.gcInterval = gcInterval;
+    }
+
+    /**
+     * Get the current database version. The version is incremented by each {@link #mutate mutate()}.
+     *
+     * @return current version
+     */
+    public long getCurrentVersion() {
+        return this.currentVersion;
+    }
+
+// Lifecycle
+
+    @Override
+    public synchronized void start() {
+        if (this.started)
+            return;
+        this.createdExecutorService = this.scheduledExecutorService == null;
+        if (this.createdExecutorService) {
+            this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(action -> {
+                final Thread thread = new Thread(action);
+                thread.setName("Garbage collector for " + this);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.gcFuture = this.scheduledExecutorService.scheduleWithFixedDelay(
+          this::backgroundGarbageCollection, this.gcInterval, this.gcInterval, TimeUnit.MILLISECONDS);
+        this.started = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!this.started)
+            return;
+        this.gcFuture.cancel(false);
+        this.gcFuture = null;
+        if (this.createdExecutorService) {
+            this.scheduledExecutorService.shutdown();
+            this.scheduledExecutorService = null;
+            this.createdExecutorService = false;
+        }
+        this.started = false;
+    }
+
+// KVStore
+
+    @Override
+    public byte[] get(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        final long version = this.acquireVersion();
+        try {
+            return this.readValue(key, version);
+        } finally {
+            this.releaseVersion(version);
+        }
+    }
+
+    @Override
+    public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        final long version = this.acquireVersion();
+        try {
+            return this.readFirst(minKey, maxKey, false, version);
+        } finally {
+            this.releaseVersion(version);
+        }
+    }
+
+    @Override
+    public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        final long version = this.acquireVersion();
+        try {
+            return this.readFirst(minKey, maxKey, true, version);
+        } finally {
+            this.releaseVersion(version);
+        }
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        return new KVPairIterator(this, new KeyRange(minKey != null ? minKey : ByteUtil.EMPTY, maxKey), null, reverse);
+    }
+
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return SizeEstimates.sample(this, minKey, maxKey, SizeEstimates.DEFAULT_MEMORY_SAMPLE_LIMIT);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        final Writes writes = new Writes();
+        writes.getPuts().put(key, value);
+        this.mutate(writes, false);
+    }
+
+    @Override
+    public void remove(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        this.removeRange(key, ByteUtil.getNextKey(key));
+    }
+
+    @Override
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        final Writes writes = new Writes();
+        writes.getRemoves().add(new KeyRange(minKey != null ? minKey : ByteUtil.EMPTY, maxKey));
+        this.mutate(writes, false);
+    }
+
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        Preconditions.checkArgument(key != null, "null key");
+        final Writes writes = new Writes();
+        writes.getAdjusts().put(key, amount);
+        this.mutate(writes, false);
+    }
+
+// AtomicKVStore
+
+    @Override
+    public CloseableKVStore snapshot() {
+        return new Snapshot(this.acquireVersion());
+    }
+
+    /**
+     * Apply a set of mutations to this instance atomically.
+     *
+     * <p>
+     * Because this class is purely in-memory, {@code sync} is ignored.
+     *
+     * @param mutations the mutations to apply
+     * @param sync ignored
+     * @throws IllegalArgumentException if {@code mutations} is null
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     */
+    @Override
+    public void mutate(Mutations mutations, boolean sync) {
+        Preconditions.checkArgument(mutations != null, "null mutations");
+        this.writeLock.lock();
+        try {
+            Preconditions.checkState(this.started, "not started");
+
+            // Add new version to each affected key's chain; readers won't see it until we publish it
+            final long version = this.currentVersion + 1;
+            final ArrayList<byte[]> modifiedKeys = new ArrayList<>();
+            boolean success = false;
+            try {
+                for (KeyRange range : mutations.getRemoveRanges()) {
+                    for (Map.Entry<byte[], Version> entry : this.rangeMap(range.getMin(), range.getMax()).entrySet()) {
+                        if (entry.getValue().find(version) != null)
+                            this.addVersion(modifiedKeys, entry.getKey(), version, null);
+                    }
+                }
+                for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs()) {
+                    Preconditions.checkArgument(entry.getKey() != null, "null key");
+                    Preconditions.checkArgument(entry.getValue() != null, "null value");
+                    this.addVersion(modifiedKeys, entry.getKey().clone(), version, entry.getValue().clone());
+                }
+                for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs()) {
+                    final byte[] key = entry.getKey();
+                    final byte[] previous = this.readValue(key, version);
+                    if (previous == null)
+                        continue;
+                    final long oldValue;
+                    try {
+                        oldValue = this.decodeCounter(previous);
+                    } catch (IllegalArgumentException e) {
+                        continue;                               // if previous value is not valid, behavior is undefined
+                    }
+                    this.addVersion(modifiedKeys, key.clone(), version, this.encodeCounter(oldValue + entry.getValue()));
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    for (byte[] key : modifiedKeys)
+                        this.map.computeIfPresent(key, (k, head) -> head.version == version ? head.next : head);
+                }
+            }
+
+            // Publish new version
+            this.currentVersion = version;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+// Garbage Collection
+
+    /**
+     * Discard all versions that are no longer visible to any open snapshot.
+     *
+     * <p>
+     * This is normally done automatically in the background; invoking this method performs garbage collection immediately.
+     */
+    public void collectGarbage() {
+        synchronized (this.gcLock) {
+
+            // Determine the oldest version still visible to anyone
+            final long floor;
+            synchronized (this.snapshotVersions) {
+                floor = this.snapshotVersions.isEmpty() ? this.currentVersion : this.snapshotVersions.firstKey();
+            }
+            if (floor == this.gcVersion)
+                return;
+
+            // Trim each key's chain after the entry visible at that version, and remove keys that are gone for good
+            int trimmed = 0;
+            int removed = 0;
+            for (Map.Entry<byte[], Version> entry : this.map.entrySet()) {
+                final Version head = entry.getValue();
+                Version node = head;
+                while (node != null && node.version > floor)
+                    node = node.next;
+                if (node == null)
+                    continue;
+                if (node == head && node.value == null) {
+                    if (this.map.remove(entry.getKey(), head))
+                        removed++;
+                } else if (node.next != null) {
+                    node.next = null;
+                    trimmed++;
+                }
+            }
+            this.gcVersion = floor;
+            if (this.log.isTraceEnabled())
+                this.log.trace("garbage collected through version " + floor + ": trimmed " + trimmed + " removed " + removed);
+        }
+    }
+
+    private void backgroundGarbageCollection() {
+        try {
+            this.collectGarbage();
+        } catch (Throwable t) {
+            this.log.error("error during garbage collection of " + this, t);
+        }
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[version=" + this.currentVersion
+          + "]";
+    }
+
+// Internal methods
+
+    // Register a reader at the current version, preventing that version from being garbage collected
+    private long acquireVersion() {
+        Preconditions.checkState(this.started, "not started");
+        synchronized (this.snapshotVersions) {
+            final long version = this.currentVersion;
+            this.snapshotVersions.merge(version, 1, Integer::sum);
+            return version;
+        }
+    }
+
+    private void releaseVersion(long version) {
+        synchronized (this.snapshotVersions) {
+            this.snapshotVersions.compute(version, (v, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // Add a new version to the front of the key's chain, or replace the new version if the key was already modified
+    private void addVersion(ArrayList<byte[]> modifiedKeys, byte[] key, long version, byte[] value) {
+        assert this.writeLock.isHeldByCurrentThread();
+        final Version head = this.map.get(key);
+        if (head == null || head.version != version)
+            modifiedKeys.add(key);
+        this.map.compute(key,
+          (k, prev) -> new Version(version, value, prev != null && prev.version == version ? prev.next : prev));
+    }
+
+    private byte[] readValue(byte[] key, long version) {
+        final Version head = this.map.get(key);
+        final byte[] value = head != null ? head.find(version) : null;
+        return value != null ? value.clone() : null;
+    }
+
+    private KVPair readFirst(byte[] minKey, byte[] maxKey, boolean reverse, long version) {
+        if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+            return null;
+        final VersionIterator i = new VersionIterator(minKey, maxKey, reverse, version);
+        return i.hasNext() ? i.next() : null;
+    }
+
+    private NavigableMap<byte[], Version> rangeMap(byte[] minKey, byte[] maxKey) {
+        if (minKey != null && maxKey != null)
+            return this.map.subMap(minKey, true, maxKey, false);
+        if (minKey != null)
+            return this.map.tailMap(minKey, true);
+        if (maxKey != null)
+            return this.map.headMap(maxKey, false);
+        return this.map;
+    }
+
+// Version
+
+    private static final class Version {
+
+        final long version;
+        final byte[] value;                                             // null means the key is removed
+        volatile Version next;                                          // next older version, or null
+
+        Version(long version, byte[] value, Version next) {
+            this.version = version;
+            this.value = value;
+            this.next = next;
+        }
+
+        // Find the value visible at the given version, if any
+        byte[] find(long version) {
+            Version node = this;
+            while (node != null && node.version > version)
+                node = node.next;
+            return node != null ? node.value : null;
+        }
+    }
+
+// VersionIterator
+
+    private class VersionIterator implements CloseableIterator<KVPair> {
+
+        private final Iterator<Map.Entry<byte[], Version>> iterator;
+        private final long version;
+
+        private KVPair next;
+
+        VersionIterator(byte[] minKey, byte[] maxKey, boolean reverse, long version) {
+            final NavigableMap<byte[], Version> rangeMap = AtomicMemoryKVStore.this.rangeMap(minKey, maxKey);
+            this.iterator = (reverse ? rangeMap.descendingMap() : rangeMap).entrySet().iterator();
+            this.version = version;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null && this.iterator.hasNext()) {
+                final Map.Entry<byte[], Version> entry = this.iterator.next();
+                final byte[] value = entry.getValue().find(this.version);
+                if (value != null)
+                    this.next = new KVPair(entry.getKey().clone(), value.clone());
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public KVPair next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            final KVPair pair = this.next;
+            this.next = null;
+            return pair;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+// Snapshot
+
+    private class Snapshot extends AbstractKVStore implements CloseableKVStore {
+
+        private final long version;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Snapshot(long version) {
+            this.version = version;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            Preconditions.checkArgument(key != null, "null key");
+            this.checkOpen();
+            return AtomicMemoryKVStore.this.readValue(key, this.version);
+        }
+
+        @Override
+        public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+            this.checkOpen();
+            return AtomicMemoryKVStore.this.readFirst(minKey, maxKey, false, this.version);
+        }
+
+        @Override
+        public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+            this.checkOpen();
+            return AtomicMemoryKVStore.this.readFirst(minKey, maxKey, true, this.version);
+        }
+
+        @Override
+        public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            this.checkOpen();
+            return new VersionIterator(minKey, maxKey, reverse, this.version);
+        }
+
+        @Override
+        public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+            this.checkOpen();
+            return SizeEstimates.sample(this, minKey, maxKey, SizeEstimates.DEFAULT_MEMORY_SAMPLE_LIMIT);
+        }
+
+        @Override
+        public void remove(byte[] key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeRange(byte[] minKey, byte[] maxKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void adjustCounter(byte[] key, long amount) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (this.closed.compareAndSet(false, true))
+                AtomicMemoryKVStore.this.releaseVersion(this.version);
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName()
+              + "[version=" + this.version
+              + ",closed=" + this.closed.get()
+              + "]";
+        }
+
+        private void checkOpen() {
+            Preconditions.checkState(!this.closed.get(), "snapshot is closed");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.mvcc.SnapshotKVDatabase;
+
+/**
+ * In-memory {@link io.permazen.kv.KVDatabase} implementation based on an {@link AtomicMemoryKVStore}, providing concurrent
+ * transactions and linearizable ACID semantics.
+ *
+ * <p>
+ * Unlike {@link SimpleKVDatabase}, which uses pessimistic range locks, transactions never block each other: each transaction
+ * reads from a lock-free snapshot, and conflicts are detected optimistically at commit time (the losing transaction
+ * throws a {@link io.permazen.kv.RetryTransactionException}). This makes instances well suited to read-mostly workloads
+ * with many concurrent transactions.
+ *
+ * <p>
+ * {@linkplain io.permazen.kv.mvcc.SnapshotKVTransaction#watchKey Key watches} and
+ * {@linkplain io.permazen.kv.KVTransaction#mutableSnapshot mutable snapshots} are supported.
+ *
+ * <p>
+ * Instances are initially empty; the content of an instance is retained across {@link #stop} and restart.
+ *
+ * @see AtomicMemoryKVStore
+ * @see SimpleKVDatabase
+ */
+public class MemoryKVDatabase extends SnapshotKVDatabase {
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Uses an internally constructed {@link AtomicMemoryKVStore}.
+     */
+    public MemoryKVDatabase() {
+        this(new AtomicMemoryKVStore());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param kvstore underlying key/value store
+     */
+    public MemoryKVDatabase(AtomicMemoryKVStore kvstore) {
+        super(kvstore);
+    }
+
+// Properties
+
+    /**
+     * Get the underlying {@link AtomicMemoryKVStore} used by this instance.
+     *
+     * @return underlying key/value store
+     */
+    @Override
+    public AtomicMemoryKVStore getKVStore() {
+        return (AtomicMemoryKVStore)super.getKVStore();
+    }
+
+    /**
+     * Configure the underlying {@link AtomicMemoryKVStore} used by this instance.
+     *
+     * @param kvstore underlying key/value store
+     * @throws IllegalStateException if this instance is already {@link #start}ed
+     */
+    public void setKVStore(AtomicMemoryKVStore kvstore) {
+        super.setKVStore(kvstore);
+    }
+}
@@ -17,7 +17,8 @@ public class MemoryKVImplementation extends KVImplementation {
     @Override
     public String[][] getCommandLineOptions() {
         return new String[][] {
-            { "--mem", "Use an initially empty, in-memory database" }
+            { "--mem", "Use an initially empty, in-memory database" },
+            { "--mem-mvcc", "Use an initially empty, in-memory database with lock-free MVCC transactions" }
         };
     }
 
@@ -27,6 +28,9 @@ public class MemoryKVImplementation extends KVImplementation {
         for (Iterator<String> i = options.iterator(); i.hasNext(); ) {
             final String option = i.next();
             if (option.equals("--mem")) {
+                config = Boolean.FALSE;
+                i.remove();
+            } else if (option.equals("--mem-mvcc")) {
                 config = Boolean.TRUE;
                 i.remove();
             }
@@ -35,12 +39,17 @@ public class MemoryKVImplementation extends KVImplementation {
     }
 
     @Override
-    public SimpleKVDatabase createKVDatabase(Object configuration, KVDatabase kvdb, AtomicKVStore kvstore) {
-        return new SimpleKVDatabase();
+    public KVDatabase createKVDatabase(Object configuration, KVDatabase kvdb, AtomicKVStore kvstore) {
+        return (Boolean)configuration ? new MemoryKVDatabase() : new SimpleKVDatabase();
+    }
+
+    @Override
+    public AtomicKVStore createAtomicKVStore(Object configuration) {
+        return (Boolean)configuration ? new AtomicMemoryKVStore() : super.createAtomicKVStore(configuration);
     }
 
     @Override
     public String getDescription(Object configuration) {
-        return "Memory database";
+        return (Boolean)configuration ? "MVCC memory database" : "Memory database";
     }
 }
@@ -14,6 +14,7 @@ import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.TransactionTimeoutException;
 import io.permazen.kv.mvcc.AtomicKVStore;
@@ -48,6 +49,12 @@ import org.slf4j.LoggerFactory;
  * is thrown. If the hold timeout is exceeded, a {@link TransactionTimeoutException} is thrown.
  *
  * <p>
+ * Transactions acquire locks from the {@link LockManager}, including waiting for contested locks, without holding
+ * this instance's monitor; the monitor is only held briefly while a transaction's own state and the underlying
+ * {@link KVStore} are accessed. Because the {@link LockManager} partitions its locks into stripes by key,
+ * transactions accessing unrelated keys do not contend for locks.
+ *
+ * <p>
  * Instances wrap an underlying {@link KVStore} which provides persistence and from which committed data is read and written.
  * During a transaction, all mutations are recorded internally; if/when the transaction is committed, those mutations are
  * applied to the underlying {@link KVStore} all at once, and this operation is bracketed by calls to
@@ -55,7 +62,8 @@ import org.slf4j.LoggerFactory;
  * is a {@link AtomicKVStore}, then {@link AtomicKVStore#mutate AtomicKVStore.mutate()} is used.
  *
  * <p>
- * {@linkplain SimpleKVTransaction#watchKey Key watches} are supported.
+ * {@linkplain SimpleKVTransaction#watchKey Key watches} and {@linkplain SimpleKVTransaction#watchRange range watches}
+ * are supported.
  *
  * <p>
  * Instances implement {@link Serializable} if the underlying {@link KVStore} is; this is the case when the default
@@ -86,7 +94,7 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
     protected /*final*/ transient Logger log = LoggerFactory.getLogger(this.getClass());
 
-    private /*final*/ transient LockManager lockManager = new LockManager(this);
+    private /*final*/ transient LockManager lockManager = new LockManager();
     private /*final*/ transient KeyWatchTracker keyWatchTracker;
 
     private long waitTimeout;
@@ -219,6 +227,12 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         return this.keyWatchTracker.register(key);
     }
 
+    synchronized ListenableFuture<Void> watchRange(KeyRange range) {
+        if (this.keyWatchTracker == null)
+            this.keyWatchTracker = new KeyWatchTracker();
+        return this.keyWatchTracker.register(range);
+    }
+
 // Subclass hooks
 
     /**
@@ -316,59 +330,82 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
 // SimpleKVTransaction hooks
 
-    synchronized byte[] get(SimpleKVTransaction tx, byte[] key) {
+    // Note: the following methods acquire locks from the LockManager, which may block, without holding this instance's
+    // monitor. Each one first inspects the transaction while synchronized; if a lock is required, it releases the
+    // monitor, acquires the lock, and then tries again, now knowing that the lock is held.
+
+    byte[] get(SimpleKVTransaction tx, byte[] key) {
 
         // Sanity check
         Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
-
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation != null)
-            return mutation instanceof Put ? ((Put)mutation).getValue() : null;
 
-        // Read from underlying store
-        this.getLock(tx, key, ByteUtil.getNextKey(key), false);
-        return this.kv.get(key);
+        // Read, acquiring read lock if needed
+        boolean locked = false;
+        while (true) {
+            synchronized (this) {
+                this.checkUsable(tx);
+                this.checkState(tx);
+
+                // Check transaction mutations
+                final Mutation mutation = tx.findMutation(key);
+                if (mutation != null)
+                    return mutation instanceof Put ? ((Put)mutation).getValue() : null;
+
+                // Read from underlying store
+                if (locked)
+                    return this.kv.get(key);
+            }
+            this.getLock(tx, key, ByteUtil.getNextKey(key), false);
+            locked = true;
+        }
     }
 
-    synchronized KVPair getAtLeast(SimpleKVTransaction tx, byte[] minKey, final byte[] maxKey) {
+    KVPair getAtLeast(SimpleKVTransaction tx, final byte[] originalMinKey, final byte[] maxKey) {
 
         // Realize minKey
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
+        final byte[] realMinKey = originalMinKey != null ? originalMinKey : ByteUtil.EMPTY;
 
-        // Sanity check
-        this.checkUsable(tx);
-        this.checkState(tx);
-        if (maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
-            return null;
-
-        // Save original min key for locking purposes
-        final byte[] originalMinKey = minKey;
-
-        // Look for a mutation starting before minKey but containing it
-        if (minKey.length > 0) {
-            final Mutation overlap = tx.findMutation(minKey);
-            if (overlap != null) {
-                if (overlap instanceof Put) {
-                    final Put put = (Put)overlap;
-                    assert Arrays.equals(put.getKey(), minKey);
-                    return new KVPair(put.getKey(), put.getValue());
-                }
-                assert overlap instanceof Del;
-                final byte[] max = overlap.getMax();
-                if (max == null || (maxKey != null && ByteUtil.compare(max, maxKey) >= 0))
+        // Read, acquiring read lock if needed
+        boolean locked = false;
+        while (true) {
+            synchronized (this) {
+                byte[] minKey = realMinKey;
+
+                // Sanity check
+                this.checkUsable(tx);
+                this.checkState(tx);
+                if (maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
                     return null;
-                minKey = max;
+
+                // Look for a mutation starting before minKey but containing it
+                if (minKey.length > 0) {
+                    final Mutation overlap = tx.findMutation(minKey);
+                    if (overlap != null) {
+                        if (overlap instanceof Put) {
+                            final Put put = (Put)overlap;
+                            assert Arrays.equals(put.getKey(), minKey);
+                            return new KVPair(put.getKey(), put.getValue());
+                        }
+                        assert overlap instanceof Del;
+                        final byte[] max = overlap.getMax();
+                        if (max == null || (maxKey != null && ByteUtil.compare(max, maxKey) >= 0))
+                            return null;
+                        minKey = max;
+                    }
+                }
+
+                // Find first entry, now that we have the read lock
+                if (locked)
+                    return this.findAtLeast(tx, minKey, maxKey);
             }
+            this.getLock(tx, realMinKey, maxKey, false);
+            locked = true;
         }
+    }
 
-        // Get read lock
-        this.getLock(tx, originalMinKey, maxKey, false);
-
-        // Find whichever is first: a transaction Put, or an underlying store entry not covered by a transaction Delete
+    // Find whichever is first: a transaction Put, or an underlying store entry not covered by a transaction Delete
+    private KVPair findAtLeast(SimpleKVTransaction tx, byte[] minKey, final byte[] maxKey) {
+        assert Thread.holdsLock(this);
         SortedSet<Mutation> mutations = maxKey != null ? tx.mutations.headSet(Mutation.key(maxKey)) : tx.mutations;
         while (true) {
 
@@ -398,22 +435,35 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         }
     }
 
-    synchronized KVPair getAtMost(SimpleKVTransaction tx, byte[] maxKey, byte[] minKey) {
+    KVPair getAtMost(SimpleKVTransaction tx, final byte[] maxKey, byte[] minKey) {
 
         // Realize minKey
         if (minKey == null)
             minKey = ByteUtil.EMPTY;
 
-        // Sanity check
-        this.checkUsable(tx);
-        this.checkState(tx);
-        if (maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
-            return null;
+        // Read, acquiring read lock if needed
+        boolean locked = false;
+        while (true) {
+            synchronized (this) {
 
-        // Get read lock
-        this.getLock(tx, minKey, maxKey, false);
+                // Sanity check
+                this.checkUsable(tx);
+                this.checkState(tx);
+                if (maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+                    return null;
 
-        // Find whichever is first: a transaction addition, or an underlying store entry not covered by a transaction deletion
+                // Find last entry, now that we have the read lock
+                if (locked)
+                    return this.findAtMost(tx, maxKey, minKey);
+            }
+            this.getLock(tx, minKey, maxKey, false);
+            locked = true;
+        }
+    }
+
+    // Find whichever is last: a transaction addition, or an underlying store entry not covered by a transaction deletion
+    private KVPair findAtMost(SimpleKVTransaction tx, byte[] maxKey, final byte[] minKey) {
+        assert Thread.holdsLock(this);
         SortedSet<Mutation> mutations = tx.mutations;
         while (true) {
 
@@ -447,132 +497,180 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         }
     }
 
-    synchronized void put(SimpleKVTransaction tx, byte[] key, byte[] value) {
+    // Estimate using the underlying store; no locking is needed because estimates are not transactional
+    synchronized SizeEstimate estimateSize(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey) {
+        this.checkUsable(tx);
+        this.checkState(tx);
+        final SizeEstimate estimate = this.kv.estimateSize(minKey, maxKey);
+        return estimate != null && !tx.mutations.isEmpty() ? estimate.approximate() : estimate;
+    }
+
+    void put(SimpleKVTransaction tx, byte[] key, byte[] value) {
 
         // Sanity check
         if (value == null)
             throw new NullPointerException();
         Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
         final byte[] keyNext = ByteUtil.getNextKey(key);
 
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation instanceof Put) {
-            assert Arrays.equals(((Put)mutation).getKey(), key);
-
-            // Replace Put with new Put
-            tx.mutations.remove(mutation);
-            tx.mutations.add(new Put(key, value));
-        } else if (mutation instanceof Del) {
-
-            // Split [Del] -> [Del*, Put, Del*]  *if needed
-            final Del del = (Del)mutation;
-            final byte[] delMin = del.getMin();
-            final byte[] delMax = del.getMax();
-            tx.mutations.remove(del);
-            if (KeyRange.compare(delMin, key) < 0)
-                tx.mutations.add(new Del(delMin, key));
-            if (KeyRange.compare(keyNext, delMax) < 0)
-                tx.mutations.add(new Del(keyNext, delMax));
-            tx.mutations.add(new Put(key, value));
-        } else {
+        // Write, acquiring write lock if needed
+        boolean locked = false;
+        while (true) {
+            synchronized (this) {
+                this.checkUsable(tx);
+                this.checkState(tx);
+
+                // Check transaction mutations
+                final Mutation mutation = tx.findMutation(key);
+                if (mutation instanceof Put) {
+                    assert Arrays.equals(((Put)mutation).getKey(), key);
+
+                    // Replace Put with new Put
+                    tx.mutations.remove(mutation);
+                    tx.mutations.add(new Put(key, value));
+                    return;
+                }
+                if (mutation instanceof Del) {
 
-            // Add write lock and new tx mutation
+                    // Split [Del] -> [Del*, Put, Del*]  *if needed
+                    final Del del = (Del)mutation;
+                    final byte[] delMin = del.getMin();
+                    final byte[] delMax = del.getMax();
+                    tx.mutations.remove(del);
+                    if (KeyRange.compare(delMin, key) < 0)
+                        tx.mutations.add(new Del(delMin, key));
+                    if (KeyRange.compare(keyNext, delMax) < 0)
+                        tx.mutations.add(new Del(keyNext, delMax));
+                    tx.mutations.add(new Put(key, value));
+                    return;
+                }
+
+                // Add new tx mutation, now that we have the write lock
+                if (locked) {
+                    tx.mutations.add(new Put(key, value));
+                    return;
+                }
+            }
             this.getLock(tx, key, keyNext, true);
-            tx.mutations.add(new Put(key, value));
+            locked = true;
         }
     }
 
-    synchronized void remove(SimpleKVTransaction tx, byte[] key) {
+    void remove(SimpleKVTransaction tx, byte[] key) {
 
         // Sanity check
         Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
         final byte[] keyNext = ByteUtil.getNextKey(key);
 
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation instanceof Put) {
-            assert Arrays.equals(((Put)mutation).getKey(), key);
-
-            // Replace Put with Del
-            tx.mutations.remove(mutation);
-            tx.mutations.add(new Del(key));
-        } else if (mutation == null) {
+        // Write, acquiring write lock if needed
+        boolean locked = false;
+        while (true) {
+            synchronized (this) {
+                this.checkUsable(tx);
+                this.checkState(tx);
+
+                // Check transaction mutations
+                final Mutation mutation = tx.findMutation(key);
+                if (mutation instanceof Put) {
+                    assert Arrays.equals(((Put)mutation).getKey(), key);
+
+                    // Replace Put with Del
+                    tx.mutations.remove(mutation);
+                    tx.mutations.add(new Del(key));
+                    return;
+                }
+                if (mutation != null)
+                    return;
 
-            // Add write lock and new tx mutation
+                // Add new tx mutation, now that we have the write lock
+                if (locked) {
+                    tx.mutations.add(new Del(key));
+                    return;
+                }
+            }
             this.getLock(tx, key, keyNext, true);
-            tx.mutations.add(new Del(key));
+            locked = true;
         }
     }
 
-    synchronized void removeRange(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey) {
+    void removeRange(SimpleKVTransaction tx, final byte[] originalMinKey, final byte[] originalMaxKey) {
 
         // Realize minKey
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
+        final byte[] realMinKey = originalMinKey != null ? originalMinKey : ByteUtil.EMPTY;
 
         // Sanity check
-        int diff = KeyRange.compare(minKey, maxKey);
+        final int diff = KeyRange.compare(realMinKey, originalMaxKey);
         Preconditions.checkArgument(diff <= 0, "minKey > maxKey");
-        this.checkUsable(tx);
-        this.checkState(tx);
-        if (diff == 0)                                                          // range is empty
-            return;
-        final byte[] originalMinKey = minKey;
-        final byte[] originalMaxKey = maxKey;
-
-        // Deal with partial overlap at the left end of the range
-        if (minKey.length > 0) {
-            final Mutation leftMutation = tx.findMutation(minKey);
-            if (leftMutation instanceof Put) {
-                assert Arrays.equals(((Put)leftMutation).getKey(), minKey);
-                tx.mutations.remove(leftMutation);                                          // overwritten by this change
-            } else if (leftMutation instanceof Del) {
-                final Del del = (Del)leftMutation;
-                tx.mutations.remove(del);                                                   // will merge into this change
-                minKey = del.getMin();                                                      // guaranteed to be <= minKey
-                if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
-                    maxKey = del.getMax();
-            }
-        }
 
-        // Deal with partial overlap at the right end of the range
-        if (maxKey != null) {
-            Mutation rightMutation = null;
-            try {
-                rightMutation = minKey != null ?
-                  tx.mutations.subSet(Mutation.key(minKey), Mutation.key(maxKey)).last() :
-                  tx.mutations.headSet(Mutation.key(maxKey)).last();
-            } catch (NoSuchElementException e) {
-                // ignore
-            }
-            if (rightMutation instanceof Put)
-                tx.mutations.remove(rightMutation);                                         // overwritten by this change
-            else if (rightMutation instanceof Del) {
-                final Del del = (Del)rightMutation;
-                tx.mutations.remove(del);                                                   // will merge into this change
-                if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
-                    maxKey = del.getMax();
-            }
-        }
+        // Write, acquiring write lock if needed
+        KeyRange locked = null;
+        while (true) {
+            byte[] minKey = realMinKey;
+            byte[] maxKey = originalMaxKey;
+            synchronized (this) {
+                this.checkUsable(tx);
+                this.checkState(tx);
+                if (diff == 0)                                                  // range is empty
+                    return;
+
+                // Find partial overlap at the left end of the range
+                Mutation leftMutation = null;
+                if (minKey.length > 0) {
+                    leftMutation = tx.findMutation(minKey);
+                    if (leftMutation instanceof Put)
+                        assert Arrays.equals(((Put)leftMutation).getKey(), minKey);
+                    else if (leftMutation instanceof Del) {
+                        final Del del = (Del)leftMutation;
+                        minKey = del.getMin();                                  // guaranteed to be <= minKey
+                        if (KeyRange.compare(del.getMax(), maxKey) > 0)         // get higher of the two maxKeys
+                            maxKey = del.getMax();
+                    }
+                }
 
-        // Remove all mutations in the middle
-        if (originalMinKey.length == 0 && originalMaxKey == null)
-            tx.mutations.clear();
-        else if (originalMinKey.length == 0)
-            tx.mutations.headSet(Mutation.key(originalMaxKey)).clear();
-        else if (originalMaxKey == null)
-            tx.mutations.tailSet(Mutation.key(originalMinKey)).clear();
-        else
-            tx.mutations.subSet(Mutation.key(originalMinKey), Mutation.key(originalMaxKey)).clear();
+                // Find partial overlap at the right end of the range
+                Mutation rightMutation = null;
+                if (maxKey != null) {
+                    try {
+                        rightMutation = minKey != null ?
+                          tx.mutations.subSet(Mutation.key(minKey), Mutation.key(maxKey)).last() :
+                          tx.mutations.headSet(Mutation.key(maxKey)).last();
+                    } catch (NoSuchElementException e) {
+                        // ignore
+                    }
+                    if (rightMutation instanceof Del) {
+                        final Del del = (Del)rightMutation;
+                        if (KeyRange.compare(del.getMax(), maxKey) > 0)         // get higher of the two maxKeys
+                            maxKey = del.getMax();
+                    }
+                }
 
-        // Add write lock and new tx mutation
-        this.getLock(tx, minKey, maxKey, true);
-        tx.mutations.add(new Del(minKey, maxKey));
+                // Make changes, now that we have the write lock
+                if (locked != null && locked.contains(new KeyRange(minKey, maxKey))) {
+
+                    // Remove mutations at the ends, which are either overwritten by, or will merge into, this change
+                    if (leftMutation != null)
+                        tx.mutations.remove(leftMutation);
+                    if (rightMutation != null)
+                        tx.mutations.remove(rightMutation);
+
+                    // Remove all mutations in the middle
+                    if (realMinKey.length == 0 && originalMaxKey == null)
+                        tx.mutations.clear();
+                    else if (realMinKey.length == 0)
+                        tx.mutations.headSet(Mutation.key(originalMaxKey)).clear();
+                    else if (originalMaxKey == null)
+                        tx.mutations.tailSet(Mutation.key(realMinKey)).clear();
+                    else
+                        tx.mutations.subSet(Mutation.key(realMinKey), Mutation.key(originalMaxKey)).clear();
+
+                    // Add new tx mutation
+                    tx.mutations.add(new Del(minKey, maxKey));
+                    return;
+                }
+            }
+            this.getLock(tx, minKey, maxKey, true);
+            locked = new KeyRange(minKey, maxKey);
+        }
     }
 
     synchronized void commit(SimpleKVTransaction tx, boolean readOnly) {
@@ -619,7 +717,8 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
             successful = true;
 
             // Trigger key watches
-            if (this.keyWatchTracker != null && this.keyWatchTracker.getNumKeysWatched() > 0) {
+            if (this.keyWatchTracker != null
+              && (this.keyWatchTracker.getNumKeysWatched() > 0 || this.keyWatchTracker.getNumRangesWatched() > 0)) {
                 for (Mutation mutation : tx.mutations)
                     mutation.trigger(this.keyWatchTracker);
             }
@@ -642,7 +741,9 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
 // Internal methods
 
-    private /*synchronized*/ void getLock(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey, boolean write) {
+    // Invoked without holding our monitor, because acquiring a lock can block
+    private void getLock(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey, boolean write) {
+        assert !Thread.holdsLock(this);
 
         // Attempt to get the lock
         LockManager.LockResult lockResult;
@@ -675,6 +776,6 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
     private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
         input.defaultReadObject();
         this.log = LoggerFactory.getLogger(this.getClass());
-        this.lockManager = new LockManager(this);
+        this.lockManager = new LockManager();
     }
 }
@@ -14,6 +14,7 @@ import io.permazen.kv.KVPair;
 import io.permazen.kv.KVPairIterator;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.mvcc.LockOwner;
 import io.permazen.kv.mvcc.MutableView;
@@ -76,6 +77,12 @@ public class SimpleKVTransaction extends AbstractKVStore implements KVTransactio
         return this.kvdb.watchKey(key);
     }
 
+    @Override
+    public ListenableFuture<Void> watchRange(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        return this.kvdb.watchRange(range);
+    }
+
     @Override
     public byte[] get(byte[] key) {
         return this.kvdb.get(this, key);
@@ -98,6 +105,11 @@ public class SimpleKVTransaction extends AbstractKVStore implements KVTransactio
         return new KVPairIterator(this, new KeyRange(minKey, maxKey), null, reverse);
     }
 
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return this.kvdb.estimateSize(this, minKey, maxKey);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.kvdb.put(this, key, value);
@@ -4,6 +4,10 @@
  */
 
 /**
- * A simple in-memory implementation of the {@link io.permazen.kv.KVDatabase} interface.
+ * Simple in-memory implementations of the {@link io.permazen.kv.KVDatabase} interface.
+ *
+ * <p>
+ * {@link io.permazen.kv.simple.SimpleKVDatabase} uses pessimistic range locks, while
+ * {@link io.permazen.kv.simple.MemoryKVDatabase} uses multi-version concurrency control with lock-free snapshot reads.
  */
 package io.permazen.kv.simple;
@@ -0,0 +1,111 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.AtomicKVStore;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.test.AtomicKVStoreTest;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AtomicMemoryKVStoreTest extends AtomicKVStoreTest {
+
+    @Override
+    protected AtomicMemoryKVStore createAtomicKVStore(File dir) throws Exception {
+        return new AtomicMemoryKVStore();
+    }
+
+    @Override
+    protected void compact(AtomicKVStore kvstore) throws Exception {
+        ((AtomicMemoryKVStore)kvstore).collectGarbage();
+    }
+
+    @Test
+    public void testGarbageCollection() throws Exception {
+        final AtomicMemoryKVStore kvstore = new AtomicMemoryKVStore();
+        kvstore.start();
+
+        // Write some versions
+        kvstore.put(b("10"), b("01"));
+        kvstore.put(b("20"), b("02"));
+        final CloseableKVStore snapshot1 = kvstore.snapshot();
+        kvstore.put(b("10"), b("03"));
+        kvstore.remove(b("20"));
+        final CloseableKVStore snapshot2 = kvstore.snapshot();
+        final Writes writes = new Writes();
+        writes.getRemoves().add(new KeyRange(b(""), null));
+        writes.getPuts().put(b("30"), b("04"));
+        kvstore.mutate(writes, false);
+        Assert.assertEquals(kvstore.getCurrentVersion(), 5);
+
+        // Collect garbage; open snapshots are unaffected
+        kvstore.collectGarbage();
+        Assert.assertEquals(this.contents(snapshot1), buildMap("10", "01", "20", "02"));
+        Assert.assertEquals(this.contents(snapshot2), buildMap("10", "03"));
+        Assert.assertEquals(this.contents(kvstore), buildMap("30", "04"));
+
+        // Close snapshots and collect garbage again
+        snapshot1.close();
+        kvstore.collectGarbage();
+        Assert.assertEquals(this.contents(snapshot2), buildMap("10", "03"));
+        snapshot2.close();
+        kvstore.collectGarbage();
+        Assert.assertEquals(this.contents(kvstore), buildMap("30", "04"));
+
+        // Closed snapshots are unusable
+        try {
+            snapshot1.get(b("10"));
+            assert false;
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        kvstore.stop();
+    }
+
+    @Test
+    public void testFailedMutation() throws Exception {
+        final AtomicMemoryKVStore kvstore = new AtomicMemoryKVStore();
+        kvstore.start();
+        kvstore.put(b("10"), b("01"));
+
+        // A mutation that fails part way through must leave no trace
+        final Writes writes = new Writes();
+        writes.getRemoves().add(new KeyRange(b("10"), b("11")));
+        writes.getPuts().put(b("20"), b("02"));
+        writes.getPuts().put(b("30"), null);
+        try {
+            kvstore.mutate(writes, false);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(this.contents(kvstore), buildMap("10", "01"));
+        kvstore.put(b("40"), b("04"));
+        Assert.assertEquals(this.contents(kvstore), buildMap("10", "01", "40", "04"));
+
+        kvstore.stop();
+    }
+
+    private Map<String, String> contents(KVStore kvstore) {
+        final TreeMap<String, String> map = new TreeMap<>();
+        for (Iterator<KVPair> i = kvstore.getRange(null, null); i.hasNext(); ) {
+            final KVPair pair = i.next();
+            map.put(s(pair.getKey()), s(pair.getValue()));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.util.BinarySerializer;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.test.TestSupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BinaryRestoreTest extends TestSupport {
+
+    @Test(dataProvider = "databases")
+    public void testParallelRestore(KVDatabase kvdb) throws Exception {
+
+        // Build dump
+        final NavigableMapKVStore source = new NavigableMapKVStore();
+        for (int i = 0; i < 5000; i++) {
+            final byte[] key = new byte[2 + this.random.nextInt(10)];
+            this.random.nextBytes(key);
+            key[0] &= 0x7f;
+            final byte[] value = new byte[this.random.nextInt(20)];
+            this.random.nextBytes(value);
+            source.put(key, value);
+        }
+        final BinarySerializer serializer = new BinarySerializer(source);
+        serializer.setChunkSize(2000);
+        serializer.setCompress(true);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final long count = serializer.write(buf, null, null);
+        Assert.assertEquals(count, source.getNavigableMap().size());
+
+        // Restore in parallel
+        kvdb.start();
+        try {
+            Assert.assertEquals(BinarySerializer.restore(kvdb, new ByteArrayInputStream(buf.toByteArray()), 4), count);
+
+            // Verify
+            final KVTransaction tx = kvdb.createTransaction();
+            try {
+                final NavigableMapKVStore copy = new NavigableMapKVStore();
+                final ByteArrayOutputStream buf2 = new ByteArrayOutputStream();
+                new BinarySerializer(tx).write(buf2, null, null);
+                new BinarySerializer(copy).read(new ByteArrayInputStream(buf2.toByteArray()));
+                Assert.assertEquals(copy.getNavigableMap().size(), count);
+                Assert.assertEquals(copy.getNavigableMap().keySet(), source.getNavigableMap().keySet());
+            } finally {
+                tx.rollback();
+            }
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @DataProvider(name = "databases")
+    public Object[][] genDatabases() {
+        return new Object[][] {
+            { new SimpleKVDatabase(new NavigableMapKVStore(), 1000, 5000) },
+            { new MemoryKVDatabase() },
+        };
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.test.KVDatabaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class MemoryKVDatabaseTest extends KVDatabaseTest {
+
+    private MemoryKVDatabase memoryKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("testSimpleKV")
+    public void setTestSimpleKV(@Optional String testSimpleKV) {
+        if (testSimpleKV != null && Boolean.valueOf(testSimpleKV)) {
+            final AtomicMemoryKVStore kvstore = new AtomicMemoryKVStore();
+            kvstore.setGarbageCollectionInterval(50);
+            this.memoryKV = new MemoryKVDatabase(kvstore);
+        }
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.memoryKV;
+    }
+
+    @Test
+    public void testIdleTransactionRebase() throws Exception {
+        if (this.memoryKV == null)
+            return;
+        this.tryNtimes(this.memoryKV, tx -> tx.removeRange(null, null));
+
+        // Open two transactions that each read a key
+        final KVTransaction tx1 = this.memoryKV.createTransaction();
+        final KVTransaction tx2 = this.memoryKV.createTransaction();
+        Assert.assertNull(tx1.get(b("01")));
+        Assert.assertNull(tx2.get(b("02")));
+
+        // Commit a write that conflicts with tx2 only, then enough other commits to force idle transactions to be rebased
+        this.tryNtimes(this.memoryKV, tx -> tx.put(b("02"), b("aa")));
+        for (int i = 0; i < 1500; i++) {
+            final int value = i;
+            this.tryNtimes(this.memoryKV, tx -> tx.put(b("03"), new byte[] { (byte)value }));
+        }
+
+        // tx1 must see the latest data and be able to commit
+        Assert.assertEquals(tx1.get(b("02")), b("aa"));
+        Assert.assertEquals(tx1.get(b("03")), new byte[] { (byte)1499 });
+        tx1.put(b("04"), b("bb"));
+        tx1.commit();
+
+        // tx2 must fail
+        try {
+            tx2.get(b("03"));
+            assert false : "expected conflict";
+        } catch (RetryTransactionException e) {
+            this.log.info("got expected " + e);
+        }
+        tx2.rollback();
+    }
+}
@@ -0,0 +1,98 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.metrics.KVMetrics;
+import io.permazen.kv.metrics.KVOperation;
+import io.permazen.kv.metrics.MetricsKVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+import io.permazen.kv.util.NavigableMapKVStore;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class MetricsSimpleKVDatabaseTest extends KVDatabaseTest {
+
+    private MetricsKVDatabase metricsKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("testSimpleKV")
+    public void setTestSimpleKV(@Optional String testSimpleKV) {
+        if (testSimpleKV != null && Boolean.valueOf(testSimpleKV))
+            this.metricsKV = new MetricsKVDatabase(new SimpleKVDatabase(new NavigableMapKVStore(), 250, 5000));
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.metricsKV;
+    }
+
+    @Test
+    public void testTransactionMetrics() throws Exception {
+        final ObjectName objectName = new ObjectName("io.permazen:type=KVMetrics,name=" + this.getClass().getSimpleName());
+        final MetricsKVDatabase kvdb = new MetricsKVDatabase(new MemoryKVDatabase());
+        kvdb.setObjectName(objectName);
+        kvdb.start();
+        try {
+            final KVMetrics metrics = kvdb.getMetrics();
+            Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "CommitCount"), 0L);
+
+            // Commit
+            final KVTransaction tx1 = kvdb.createTransaction();
+            tx1.put(b("01"), b("02"));
+            tx1.commit();
+            Assert.assertEquals(metrics.getCommitCount(), 1);
+            Assert.assertEquals(metrics.getLatency(KVOperation.COMMIT).getCount(), 1);
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "CommitCount"), 1L);
+
+            // Rollback, only counted once
+            final KVTransaction tx2 = kvdb.createTransaction();
+            tx2.get(b("01"));
+            tx2.rollback();
+            tx2.rollback();
+            Assert.assertEquals(metrics.getRollbackCount(), 1);
+
+            // Retry
+            final KVTransaction tx3 = kvdb.createTransaction();
+            final KVTransaction tx4 = kvdb.createTransaction();
+            tx3.get(b("01"));
+            tx4.get(b("01"));
+            tx3.put(b("01"), b("03"));
+            tx4.put(b("01"), b("04"));
+            tx3.commit();
+            try {
+                tx4.commit();
+                assert false;
+            } catch (RetryTransactionException e) {
+                // expected
+            }
+            Assert.assertEquals(metrics.getRetryCount(), 1);
+            Assert.assertEquals(metrics.getCommitCount(), 2);
+            Assert.assertEquals(metrics.getTransactionDurations().getCount(), 4);
+
+            // Disabled
+            metrics.setEnabled(false);
+            final KVTransaction tx5 = kvdb.createTransaction();
+            tx5.put(b("01"), b("05"));
+            tx5.commit();
+            Assert.assertEquals(metrics.getCommitCount(), 2);
+        } finally {
+            kvdb.stop();
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+}
@@ -26,6 +26,7 @@ import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.util.ForwardingKVStore;
 import io.permazen.util.CloseableIterator;
 
+import java.util.List;
 import java.util.concurrent.Future;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -308,6 +309,16 @@ public class SpannerKVTransaction extends ForwardingKVStore implements KVTransac
         }
     }
 
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        try {
+            return super.getMany(keys);
+        } catch (SpannerException e) {
+            this.rollback();
+            throw this.wrapException(e);
+        }
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         try {
@@ -456,6 +456,25 @@ public class SQLKVDatabase implements KVDatabase {
           + this.quote(this.tableName) + " WHERE " + this.quote(this.keyColumnName) + " = ?";
     }
 
+    /**
+     * Create an SQL statement that reads the key and value columns (in that order) associated with
+     * each of the keys <code>&#63;1</code> through <code>&#63;</code><i>numKeys</i> that exists, in any order.
+     *
+     * @param numKeys number of keys
+     * @return SQL query statement
+     * @throws IllegalArgumentException if {@code numKeys} is not positive
+     */
+    public String createGetManyStatement(int numKeys) {
+        Preconditions.checkArgument(numKeys > 0, "numKeys <= 0");
+        final StringBuilder buf = new StringBuilder();
+        buf.append("SELECT ").append(this.quote(this.keyColumnName)).append(", ").append(this.quote(this.valueColumnName))
+          .append(" FROM ").append(this.quote(this.tableName)).append(" WHERE ").append(this.quote(this.keyColumnName))
+          .append(" IN (");
+        for (int i = 0; i < numKeys; i++)
+            buf.append(i > 0 ? ", ?" : "?");
+        return buf.append(")").toString();
+    }
+
     /**
      * Create an SQL statement that reads the key and value columns (in that order) associated
      * with the smallest key greater than or equal to <code>&#63;1</code>, if any.
@@ -14,10 +14,12 @@ import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KVTransactionException;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.kv.util.ForwardingKVStore;
+import io.permazen.kv.util.SizeEstimates;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
@@ -30,6 +32,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
 import java.util.concurrent.Future;
 import java.util.function.Function;
 
@@ -44,6 +47,8 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
     private static final int MAX_DATA_PER_BATCH = 10 * 1024 * 1024;     // 10 MB
     private static final int MAX_STATEMENTS_PER_BATCH = 1000;
     private static final int BATCH_STATEMENT_OVERHEAD = 8;              // just a guess
+    private static final int MAX_KEYS_PER_GET_MANY = 500;               // stay well under typical bind parameter limits
+    private static final int ESTIMATE_SAMPLE_LIMIT = 1000;              // rows sampled by estimateSize()
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -109,6 +114,39 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         return this.queryBytes(StmtType.GET, this.encodeKey(key));
     }
 
+    private synchronized List<byte[]> getManySQL(List<byte[]> keys) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        Preconditions.checkArgument(keys != null, "null keys");
+
+        // Gather distinct keys
+        final TreeMap<byte[], byte[]> valueMap = new TreeMap<>(ByteUtil.COMPARATOR);
+        for (byte[] key : keys) {
+            Preconditions.checkArgument(key != null, "null key");
+            valueMap.put(key, null);
+        }
+
+        // Query for keys in chunks using "IN (...)"
+        final ArrayList<byte[]> chunk = new ArrayList<>(Math.min(valueMap.size(), MAX_KEYS_PER_GET_MANY));
+        for (byte[] key : valueMap.keySet()) {
+            chunk.add(this.encodeKey(key));
+            if (chunk.size() == MAX_KEYS_PER_GET_MANY) {
+                this.queryMany(chunk, valueMap);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty())
+            this.queryMany(chunk, valueMap);
+
+        // Build result list
+        final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            final byte[] value = valueMap.get(key);
+            values.add(value != null ? value.clone() : null);
+        }
+        return values;
+    }
+
     private synchronized KVPair getAtLeastSQL(byte[] minKey, byte[] maxKey) {
         if (this.stale)
             throw new StaleTransactionException(this);
@@ -376,6 +414,41 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         return result;
     }
 
+    /**
+     * Query for multiple keys using a single {@link SQLKVDatabase#createGetManyStatement createGetManyStatement()} query.
+     *
+     * @param dbkeys encoded keys to query for
+     * @param valueMap map into which to store found (decoded) key/value pairs
+     */
+    protected void queryMany(List<byte[]> dbkeys, Map<byte[], byte[]> valueMap) {
+        assert !dbkeys.isEmpty();
+        final String sql = this.database.createGetManyStatement(dbkeys.size());
+        if (this.log.isTraceEnabled())
+            this.log.trace("preparing SQL statement: " + sql);
+        try (final PreparedStatement preparedStatement = this.connection.prepareStatement(sql,
+          ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, ResultSet.CLOSE_CURSORS_AT_COMMIT)) {
+            for (int i = 0; i < dbkeys.size(); i++) {
+                if (this.log.isTraceEnabled())
+                    this.log.trace("setting ?" + (i + 1) + " = " + ByteUtil.toString(dbkeys.get(i)));
+                preparedStatement.setBytes(i + 1, dbkeys.get(i));
+            }
+            preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
+            if (this.log.isTraceEnabled())
+                this.log.trace("executing SQL query");
+            int count = 0;
+            try (final ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    valueMap.put(this.decodeKey(resultSet.getBytes(1)), resultSet.getBytes(2));
+                    count++;
+                }
+            }
+            if (this.log.isTraceEnabled())
+                this.log.trace("SQL query returned " + count + " of " + dbkeys.size() + " key(s)");
+        } catch (SQLException e) {
+            throw this.handleException(e);
+        }
+    }
+
     protected KVPair queryKVPair(StmtType stmtType, byte[]... params) {
         assert params.length == stmtType.getNumParams();
         final KVPair pair = this.query(stmtType,
@@ -528,6 +601,11 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
             return SQLKVTransaction.this.getSQL(key);
         }
 
+        @Override
+        public List<byte[]> getMany(List<byte[]> keys) {
+            return SQLKVTransaction.this.getManySQL(keys);
+        }
+
         @Override
         public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
 
@@ -612,6 +690,11 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
             return SQLKVTransaction.this.getRangeSQL(minKey, maxKey, reverse);
         }
 
+        @Override
+        public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+            return SizeEstimates.sample(this, minKey, maxKey, ESTIMATE_SAMPLE_LIMIT);
+        }
+
         @Override
         public void put(byte[] key, byte[] value) {
             SQLKVTransaction.this.putSQL(key, value);
@@ -24,6 +24,7 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -206,6 +207,94 @@ public abstract class AtomicKVStoreTest extends KVTestSupport {
         kvstore.stop();
     }
 
+    @Test(dataProvider = "kvstores")
+    public void testBulkLoad(AtomicKVStore kv) throws Exception {
+
+        // Start kvstore
+        kv.start();
+
+        // Start with some existing (possibly uncompacted) data
+        final TreeMap<byte[], byte[]> map = new TreeMap<>(ByteUtil.COMPARATOR);
+        final Writes writes = this.getPuts(0, map);
+        kv.mutate(writes, true);
+        this.compare(this.read(0, kv), map);
+
+        // Bulk load random data
+        final TreeMap<byte[], byte[]> data = new TreeMap<>(ByteUtil.COMPARATOR);
+        data.put(map.firstKey(), VAL3);
+        for (int i = 0; i < 500; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(4)];
+            final byte[] value = new byte[this.random.nextInt(10)];
+            this.random.nextBytes(key);
+            this.random.nextBytes(value);
+            data.put(key, value);
+        }
+        final ArrayList<KVPair> pairs = new ArrayList<>(data.size());
+        data.forEach((key, value) -> pairs.add(new KVPair(key, value)));
+        kv.bulkLoad(pairs.iterator());
+        map.putAll(data);
+        this.compare(this.read(1, kv), map);
+
+        // Subsequent mutations are applied on top
+        final Writes writes2 = new Writes();
+        writes2.getRemoves().add(new KeyRange(data.firstKey()));
+        kv.mutate(writes2, true);
+        map.remove(data.firstKey());
+        this.compare(this.read(2, kv), map);
+
+        // Out-of-order data is rejected
+        try {
+            kv.bulkLoad(Arrays.asList(new KVPair(KEY2, VAL2), new KVPair(KEY1, VAL1)).iterator());
+            assert false : "out-of-order bulk load succeeded";
+        } catch (IllegalArgumentException e) {
+            this.log.debug("got expected " + e);
+        }
+
+        // Stop kvstore
+        kv.stop();
+    }
+
+    @Test(dataProvider = "kvstores")
+    public void testGetMany(AtomicKVStore kv) throws Exception {
+
+        // Start kvstore
+        kv.start();
+
+        // Populate with random data, leaving some of it compacted and some not
+        final TreeMap<byte[], byte[]> map = new TreeMap<>(ByteUtil.COMPARATOR);
+        kv.mutate(this.getPuts(0, map), true);
+        this.compact(kv);
+        kv.mutate(this.getRemoves(1, map), true);
+        kv.mutate(this.getPuts(2, map), true);
+
+        // Query existing, missing, and duplicate keys, both directly and via a snapshot
+        final ArrayList<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            keys.add(new byte[] { (byte)this.random.nextInt(0xff) });
+        keys.add(keys.get(0));
+        keys.add(map.firstKey());
+        Assert.assertEquals(kv.getMany(new ArrayList<>()).size(), 0);
+        this.checkGetMany(kv, keys, map);
+        try (CloseableKVStore snapshot = kv.snapshot()) {
+            kv.mutate(this.getRemoves(3, new TreeMap<>(map)), true);
+            this.checkGetMany(snapshot, keys, map);
+        }
+
+        // Stop kvstore
+        kv.stop();
+    }
+
+    private void checkGetMany(KVStore kv, List<byte[]> keys, TreeMap<byte[], byte[]> map) {
+        final List<byte[]> values = kv.getMany(keys);
+        Assert.assertEquals(values.size(), keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            final byte[] value = values.get(i);
+            final byte[] expected = map.get(keys.get(i));
+            Assert.assertEquals(value != null ? ByteUtil.toString(value) : null,
+              expected != null ? ByteUtil.toString(expected) : null, "wrong value for key " + ByteUtil.toString(keys.get(i)));
+        }
+    }
+
     protected void compact(AtomicKVStore kvstore) throws Exception {
         // Subclass can do something here
     }
@@ -16,6 +16,7 @@ import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.TransactionTimeoutException;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.SnapshotKVDatabase;
 import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
@@ -25,6 +26,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
@@ -357,6 +360,61 @@ public abstract class KVDatabaseTest extends KVTestSupport {
         this.log.info("finished testKeyWatch() on " + store);
     }
 
+    @Test(dataProvider = "kvdbs")
+    public void testRangeWatch(KVDatabase store) throws Exception {
+
+        // Debug
+        this.log.info("starting testRangeWatch() on " + store);
+
+        // Clear database
+        this.log.info("testRangeWatch() on " + store + ": clearing database");
+        this.tryNtimes(store, tx -> tx.removeRange(null, null));
+        this.log.info("testRangeWatch() on " + store + ": done clearing database");
+
+        // Set up the modifications we want to test
+        final ArrayList<Consumer<KVTransaction>> mods = new ArrayList<>();
+        mods.add(tx -> tx.put(b("0123"), b("4567")));
+        mods.add(tx -> tx.put(b("01"), b("89ab")));
+        mods.add(tx -> tx.put(b("01ffff"), tx.encodeCounter(1234)));
+        mods.add(tx -> tx.adjustCounter(b("01ffff"), 99));
+        mods.add(tx -> tx.removeRange(b("0100"), b("0200")));
+        mods.add(tx -> tx.put(b("0145"), b("")));
+        mods.add(tx -> tx.removeRange(b("00"), null));
+
+        // Set watches, perform modifications, and test notifications
+        for (Consumer<KVTransaction> mod : mods) {
+
+            // Set watch
+            this.log.info("testRangeWatch() on " + store + ": creating range watch for " + mod);
+            final Future<Void> watch = this.tryNtimesWithResult(store, tx -> {
+                try {
+                    return tx.watchRange(new KeyRange(b("01"), b("02")));
+                } catch (UnsupportedOperationException e) {
+                    return null;
+                }
+            });
+            if (watch == null) {
+                this.log.info("testRangeWatch() on " + store + ": range watches not supported, bailing out");
+                return;
+            }
+            this.log.info("testRangeWatch() on " + store + ": created range watch: " + watch);
+
+            // Perform modification
+            this.log.info("testRangeWatch() on " + store + ": testing " + mod);
+            this.tryNtimes(store, mod);
+
+            // Get notification
+            this.log.info("testRangeWatch() on " + store + ": waiting for notification");
+            final long start = System.nanoTime();
+            watch.get(1, TimeUnit.SECONDS);
+            this.log.info("testRangeWatch() on " + store + ": got notification in "
+              + ((System.nanoTime() - start) / 1000000) + "ms");
+        }
+
+        // Done
+        this.log.info("finished testRangeWatch() on " + store);
+    }
+
     @Test(dataProvider = "kvdbs")
     public void testConflictingTransactions(KVDatabase store) throws Exception {
 
@@ -523,6 +581,77 @@ public abstract class KVDatabaseTest extends KVTestSupport {
         this.log.info("finished testNonconflictingTransactions() on " + store);
     }
 
+    /**
+     * Verify that a counter put by one transaction and adjusted by a concurrent transaction remains decodable.
+     * On databases that group commits, the two transactions are likely to be committed in the same batch.
+     *
+     * @param store underlying store
+     * @throws Exception if an error occurs
+     */
+    @Test(dataProvider = "kvdbs")
+    public void testConcurrentCounterPutAndAdjust(KVDatabase store) throws Exception {
+        this.log.info("starting testConcurrentCounterPutAndAdjust() on " + store);
+        final byte[] key = b("c0");
+
+        // Widen the commit batch window, if any, so the two transactions get batched together
+        final SnapshotKVDatabase snapshotKV = store instanceof SnapshotKVDatabase ? (SnapshotKVDatabase)store : null;
+        final int previousWindow = snapshotKV != null ? snapshotKV.getCommitBatchWindow() : 0;
+        if (snapshotKV != null)
+            snapshotKV.setCommitBatchWindow(10000);
+        try {
+            for (int count = 0; count < 10; count++) {
+
+                // Clear database
+                this.tryNtimes(store, tx -> tx.removeRange(null, null));
+
+                // One transaction puts the counter, the other adjusts it without reading it
+                final KVTransaction tx1 = this.createKVTransaction(store);
+                final KVTransaction tx2 = this.createKVTransaction(store);
+                try {
+                    tx1.put(key, tx1.encodeCounter(10));
+                    tx2.adjustCounter(key, 5);
+                } catch (RetryTransactionException e) {            // locking databases may not allow both to proceed
+                    this.updateRetryStats(e);
+                    tx1.rollback();
+                    tx2.rollback();
+                    continue;
+                }
+
+                // Commit both concurrently; some databases may fail one of them
+                boolean putCommitted = false;
+                final Future<?> f1 = this.executor.submit(tx1::commit);
+                final Future<?> f2 = this.executor.submit(tx2::commit);
+                for (Future<?> f : new Future<?>[] { f1, f2 }) {
+                    try {
+                        this.numTransactionAttempts.incrementAndGet();
+                        f.get();
+                        putCommitted |= f == f1;
+                    } catch (ExecutionException e) {
+                        if (!(e.getCause() instanceof RetryTransactionException))
+                            throw e;
+                        this.updateRetryStats((RetryTransactionException)e.getCause());
+                    }
+                }
+
+                // The counter is 10 if the adjustment committed first (it had nothing to adjust), otherwise 15. If the put
+                // failed, the counter should not exist; however, some databases (e.g., Raft) may report a failure for a
+                // commit whose outcome is actually unknown, so in that case we only check the value is not corrupted.
+                final Long value = this.tryNtimesWithResult(store, tx -> {
+                    final byte[] bytes = tx.get(key);
+                    return bytes != null ? tx.decodeCounter(bytes) : null;
+                });
+                if (putCommitted)
+                    Assert.assertTrue(value != null && (value == 10 || value == 15), "wrong counter value " + value);
+                else
+                    Assert.assertTrue(value == null || value == 10 || value == 15, "wrong counter value " + value);
+            }
+        } finally {
+            if (snapshotKV != null)
+                snapshotKV.setCommitBatchWindow(previousWindow);
+        }
+        this.log.info("finished testConcurrentCounterPutAndAdjust() on " + store);
+    }
+
     /**
      * This test runs transactions in parallel and verifies there is no "leakage" between them.
      * Database must be configured for linearizable isolation.
@@ -698,6 +827,109 @@ public abstract class KVDatabaseTest extends KVTestSupport {
         this.log.info("finished testApplyMutations() on " + store);
     }
 
+    /**
+     * Test KVStore.getMany() and KVStore.getManyAsync().
+     */
+    @Test(dataProvider = "kvdbs")
+    public void testGetMany(KVDatabase store) throws Exception {
+        this.log.info("starting testGetMany() on " + store);
+
+        // Populate database
+        this.tryNtimes(store, tx -> {
+            tx.removeRange(null, null);
+            tx.put(b("10"), b("01"));
+            tx.put(b("20"), b("02"));
+            tx.put(b("30"), tx.encodeCounter(100));
+            tx.put(b("40"), b("04"));
+        });
+
+        // Compare to individual get()'s, before and after mutations in the same transaction
+        final List<byte[]> keys = Arrays.asList(b("10"), b("15"), b("20"), b("30"), b("40"), b("50"), b("10"));
+        this.tryNtimes(store, tx -> {
+            Assert.assertEquals(tx.getMany(Collections.<byte[]>emptyList()).size(), 0);
+            this.checkGetMany(tx, keys);
+            tx.put(b("15"), b("1515"));
+            tx.remove(b("20"));
+            tx.adjustCounter(b("30"), 5);
+            tx.removeRange(b("40"), b("50"));
+            this.checkGetMany(tx, keys);
+            Assert.assertEquals(tx.decodeCounter(tx.getMany(Collections.singletonList(b("30"))).get(0)), 105);
+
+            // Modifying returned values has no effect
+            tx.getMany(keys).get(0)[0] = (byte)0x99;
+            Assert.assertEquals(tx.get(b("10")), b("01"));
+        });
+        this.log.info("finished testGetMany() on " + store);
+    }
+
+    private void checkGetMany(KVStore kv, List<byte[]> keys) {
+        final List<byte[]> values = kv.getMany(keys);
+        final List<byte[]> asyncValues = kv.getManyAsync(keys).join();
+        Assert.assertEquals(values.size(), keys.size());
+        Assert.assertEquals(asyncValues.size(), keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            final byte[] expected = kv.get(keys.get(i));
+            final String expectedString = expected != null ? ByteUtil.toString(expected) : null;
+            final String message = "wrong value for key " + ByteUtil.toString(keys.get(i));
+            Assert.assertEquals(values.get(i) != null ? ByteUtil.toString(values.get(i)) : null, expectedString, message);
+            Assert.assertEquals(asyncValues.get(i) != null ? ByteUtil.toString(asyncValues.get(i)) : null, expectedString, message);
+        }
+    }
+
+    /**
+     * Test KVDatabase.bulkLoad().
+     */
+    @Test(dataProvider = "kvdbs")
+    public void testBulkLoad(KVDatabase store) throws Exception {
+        this.log.info("starting testBulkLoad() on " + store);
+
+        // Start with some existing data
+        this.tryNtimes(store, tx -> {
+            tx.removeRange(null, null);
+            tx.put(b("10"), b("01"));
+            tx.put(b("20"), b("02"));
+        });
+        final TreeMap<byte[], byte[]> expected = new TreeMap<>(ByteUtil.COMPARATOR);
+        expected.put(b("10"), b("01"));
+        expected.put(b("20"), b("02"));
+
+        // Bulk load random data, overwriting one of the existing keys
+        final TreeMap<byte[], byte[]> data = new TreeMap<>(ByteUtil.COMPARATOR);
+        data.put(b("20"), b("2222"));
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(8)];
+            final byte[] value = new byte[this.random.nextInt(20)];
+            this.random.nextBytes(key);
+            this.random.nextBytes(value);
+            key[0] = (byte)(0x30 + this.random.nextInt(0x80));
+            data.put(key, value);
+        }
+        store.bulkLoad(data.entrySet().stream().map(entry -> new KVPair(entry.getKey(), entry.getValue())).iterator());
+        expected.putAll(data);
+
+        // Verify
+        final TreeMap<byte[], byte[]> actual = this.tryNtimesWithResult(store, tx -> {
+            final TreeMap<byte[], byte[]> map = new TreeMap<>(ByteUtil.COMPARATOR);
+            try (CloseableIterator<KVPair> i = tx.getRange(null, null)) {
+                while (i.hasNext()) {
+                    final KVPair pair = i.next();
+                    map.put(pair.getKey(), pair.getValue());
+                }
+            }
+            return map;
+        });
+        Assert.assertEquals(stringView(actual), stringView(expected));
+
+        // Verify out-of-order input is rejected
+        try {
+            store.bulkLoad(Arrays.asList(new KVPair(b("40"), b("")), new KVPair(b("30"), b(""))).iterator());
+            assert false : "out-of-order bulk load succeeded";
+        } catch (IllegalArgumentException e) {
+            this.log.debug("got expected " + e);
+        }
+        this.log.info("finished testBulkLoad() on " + store);
+    }
+
 // RandomTask
 
     public class RandomTask extends Thread {
@@ -5,6 +5,9 @@
 
 package io.permazen.kv;
 
+import io.permazen.kv.util.BulkLoader;
+
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -57,5 +60,33 @@ public interface KVDatabase {
      * @throws IllegalStateException if this instance is not {@link #start}ed
      */
     KVTransaction createTransaction(Map<String, ?> options);
-}
 
+// Bulk Loading
+
+    /**
+     * Load a sorted stream of key/value pairs directly into this database.
+     *
+     * <p>
+     * This method is intended for initial data loads, and is typically much faster than writing the same data using
+     * normal transactions, because implementations can skip per-key mutation tracking and conflict detection and instead
+     * write the data in its final, sorted form. Keys in {@code pairs} that already exist in the database are overwritten;
+     * other existing keys are unaffected.
+     *
+     * <p>
+     * The load is not necessarily atomic: if this method throws an exception, some of the pairs may have been loaded
+     * and some not. Likewise, depending on the implementation, concurrent transactions may or may not observe a partial load.
+     *
+     * <p>
+     * The implementation in {@link KVDatabase} loads the pairs using a series of ordinary transactions
+     * via {@link BulkLoader#load(KVDatabase, Iterator, int) BulkLoader.load()}.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     * @throws KVDatabaseException if an unexpected error occurs
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     */
+    default void bulkLoad(Iterator<? extends KVPair> pairs) {
+        BulkLoader.load(this, pairs, BulkLoader.DEFAULT_BATCH_SIZE);
+    }
+}
@@ -7,7 +7,7 @@ package io.permazen.kv;
 
 import com.google.common.base.Preconditions;
 
-import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteSlice;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -19,11 +19,21 @@ import java.util.Map;
  * Note: the internal byte arrays are not copied; therefore, values passed to the constructor
  * or returned from the accessor methods must not be modified if instances are to remain immutable.
  * To ensure safety, use {@link #clone}.
+ *
+ * <p>
+ * Instances may also be backed by {@link ByteSlice}s, i.e., views into some larger shared buffer. This allows
+ * {@link KVStore} implementations and wrappers to return key/value pairs without copying. In that case,
+ * {@code byte[]} arrays are only created if and when {@link #getKey} or {@link #getValue} is invoked; callers
+ * that can work with slices directly should use {@link #getKeySlice} and {@link #getValueSlice} instead.
+ * Subclasses may also load the value lazily by overriding {@link #loadValue}.
  */
 public class KVPair implements Cloneable {
 
-    private /*final*/ byte[] key;
-    private /*final*/ byte[] value;
+    // Arrays and slices are computed from each other on demand; a missing value comes from loadValue()
+    private byte[] key;
+    private byte[] value;
+    private ByteSlice keySlice;
+    private ByteSlice valueSlice;
 
     /**
      * Constructor. The given arrays are copied.
@@ -53,24 +63,101 @@ public class KVPair implements Cloneable {
         Preconditions.checkArgument(this.value != null, "null value");
     }
 
+    /**
+     * Constructor taking slices. No data is copied.
+     *
+     * @param key key
+     * @param value value
+     * @throws IllegalArgumentException if {@code key} or {@code value} is null
+     */
+    public KVPair(ByteSlice key, ByteSlice value) {
+        Preconditions.checkArgument(key != null, "null key");
+        Preconditions.checkArgument(value != null, "null value");
+        this.keySlice = key;
+        this.valueSlice = value;
+    }
+
+    /**
+     * Constructor for subclasses that load the value lazily using {@link #loadValue}.
+     *
+     * @param key key
+     * @throws IllegalArgumentException if {@code key} is null
+     */
+    protected KVPair(ByteSlice key) {
+        Preconditions.checkArgument(key != null, "null key");
+        this.keySlice = key;
+    }
+
     /**
      * Get the key.
      *
+     * <p>
+     * If this instance is backed by a slice, the key is copied into a new array the first time this method is invoked.
+     *
      * @return the key
      */
     public byte[] getKey() {
+        if (this.key == null)
+            this.key = this.keySlice.toByteArray();
         return this.key;
     }
 
     /**
      * Get the value.
      *
+     * <p>
+     * If this instance is backed by a slice, the value is copied into a new array the first time this method is invoked.
+     *
      * @return the value
      */
     public byte[] getValue() {
+        if (this.value == null)
+            this.value = this.getValueSlice().toByteArray();
         return this.value;
     }
 
+    /**
+     * Get the key as a {@link ByteSlice}. No data is copied.
+     *
+     * @return the key
+     */
+    public ByteSlice getKeySlice() {
+        if (this.keySlice == null)
+            this.keySlice = new ByteSlice(this.key);
+        return this.keySlice;
+    }
+
+    /**
+     * Get the value as a {@link ByteSlice}. No data is copied, unless the value must be {@linkplain #loadValue loaded}.
+     *
+     * @return the value
+     */
+    public ByteSlice getValueSlice() {
+        if (this.valueSlice == null) {
+            if (this.value != null)
+                this.valueSlice = new ByteSlice(this.value);
+            else {
+                this.valueSlice = this.loadValue();
+                Preconditions.checkState(this.valueSlice != null, "loadValue() returned null");
+            }
+        }
+        return this.valueSlice;
+    }
+
+    /**
+     * Load the value.
+     *
+     * <p>
+     * This method is invoked at most once, and only for instances created via {@link #KVPair(ByteSlice)},
+     * the first time the value is accessed. The implementation in {@link KVPair} always throws
+     * {@link UnsupportedOperationException}.
+     *
+     * @return the value, never null
+     */
+    protected ByteSlice loadValue() {
+        throw new UnsupportedOperationException();
+    }
+
 // Cloneable
 
     /**
@@ -86,8 +173,10 @@ public class KVPair implements Cloneable {
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
-        clone.key = clone.key.clone();
-        clone.value = clone.value.clone();
+        clone.key = this.getKey().clone();
+        clone.value = this.getValue().clone();
+        clone.keySlice = null;
+        clone.valueSlice = null;
         return clone;
     }
 
@@ -95,7 +184,7 @@ public class KVPair implements Cloneable {
 
     @Override
     public String toString() {
-        return "{" + ByteUtil.toString(this.key) + "," + ByteUtil.toString(this.value) + "}";
+        return "{" + this.getKeySlice() + "," + this.getValueSlice() + "}";
     }
 
     /**
@@ -111,10 +200,10 @@ public class KVPair implements Cloneable {
     public boolean equals(Object obj) {
         if (obj == this)
             return true;
-        if (obj == null || obj.getClass() != this.getClass())
+        if (!(obj instanceof KVPair))
             return false;
         final KVPair that = (KVPair)obj;
-        return Arrays.equals(this.key, that.key) && Arrays.equals(this.value, that.value);
+        return this.getKeySlice().equals(that.getKeySlice()) && this.getValueSlice().equals(that.getValueSlice());
     }
 
     /**
@@ -128,7 +217,7 @@ public class KVPair implements Cloneable {
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.key) ^ Arrays.hashCode(this.value);
+        return this.getKeySlice().hashCode() ^ this.getValueSlice().hashCode();
     }
 }
 
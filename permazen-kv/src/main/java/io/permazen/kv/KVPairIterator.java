@@ -7,6 +7,7 @@ package io.permazen.kv;
 
 import com.google.common.base.Preconditions;
 
+import io.permazen.util.ByteSlice;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
@@ -52,7 +53,7 @@ public class KVPairIterator implements CloseableIterator<KVPair> {
 
     private KVPair currPair;            // cached value to return from next()
     private byte[] nextKey;             // next key lower/upper bound to go fetch, or null to start at the beginning
-    private byte[] removeKey;           // next key to remove if remove() invoked
+    private ByteSlice removeKey;        // next key to remove if remove() invoked
     private boolean finished;
 
 // Constructors
@@ -244,10 +245,9 @@ public class KVPairIterator implements CloseableIterator<KVPair> {
                 this.finished = true;
                 return false;
             }
-            final byte[] key = pair.getKey();
 
             // Check key range
-            if (this.keyRange != null && !this.keyRange.contains(key)) {
+            if (this.keyRange != null && !this.keyRange.contains(pair.getKeySlice())) {
                 this.finished = true;
                 return false;
             }
@@ -255,6 +255,7 @@ public class KVPairIterator implements CloseableIterator<KVPair> {
             // Check key filter; if going forward, avoid redundant call to seekHigher()
             if (this.keyFilter == null)
                 break;
+            final byte[] key = pair.getKey();
             if (!this.reverse) {
                 final byte[] nextHigher = this.keyFilter.seekHigher(key);
                 if (nextHigher != null && Arrays.equals(nextHigher, key))
@@ -288,11 +289,11 @@ public class KVPairIterator implements CloseableIterator<KVPair> {
 
         // Get next element
         final KVPair pair = this.currPair;
-        final byte[] key = pair.getKey().clone();
+        final ByteSlice key = pair.getKeySlice();
         this.removeKey = key;
 
-        // Set up next advance
-        this.nextKey = this.reverse ? key : ByteUtil.getNextKey(key);
+        // Set up next advance; avoid materializing the key as a byte[] when going forward
+        this.nextKey = this.reverse ? key.toByteArray() : ByteUtil.getNextKey(key);
         this.currPair = null;
 
         // Done
@@ -301,13 +302,13 @@ public class KVPairIterator implements CloseableIterator<KVPair> {
 
     @Override
     public void remove() {
-        final byte[] removeKeyCopy;
+        final ByteSlice removeKeyCopy;
         synchronized (this) {
             if ((removeKeyCopy = this.removeKey) == null)
                 throw new IllegalStateException();
             this.removeKey = null;
         }
-        this.kv.remove(removeKeyCopy);
+        this.kv.remove(removeKeyCopy.toByteArray());
     }
 
 // Closeable
@@ -11,7 +11,10 @@ import io.permazen.kv.mvcc.Mutations;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * General API into a key/value store where the keys are sorted lexicographically as unsigned bytes.
@@ -40,6 +43,13 @@ import java.util.Map;
  * How counters are encoded is specific to the implementation. Clients needing to read or write counter values directly
  * should use {@link #decodeCounter decodeCounter()} and {@link #encodeCounter encodeCounter()}, respectively.
  * Counters are removed using the normal methods (i.e., {@link #remove remove()} and {@link #removeRange removeRange()}).
+ *
+ * <p><b>Asynchronous Reads</b></p>
+ *
+ * <p>
+ * Each read method has an asynchronous counterpart returning a {@link CompletableFuture}, allowing a single thread
+ * to have many independent reads outstanding at once. By default these are performed synchronously, but implementations
+ * backed by natively asynchronous stores are encouraged to override them with non-blocking versions.
  */
 public interface KVStore {
 
@@ -58,6 +68,39 @@ public interface KVStore {
      */
     byte[] get(byte[] key);
 
+    /**
+     * Get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * The returned list has the same size as {@code keys}, and each element is the value associated with the
+     * corresponding key, or null if not found. Duplicate keys are allowed.
+     *
+     * <p>
+     * Implementations that incur a round trip per {@link #get get()} invocation should override this method
+     * to fetch all of the values in a single round trip, or at least concurrently.
+     *
+     * <p>
+     * Modifications to the returned {@code byte[]} arrays do not affect this instance.
+     *
+     * <p>
+     * The implementation in {@link KVStore} simply invokes {@link #get get()} for each key.
+     *
+     * @param keys keys to retrieve
+     * @return list of values associated with {@code keys}, with null for keys not found
+     * @throws IllegalArgumentException if any key starts with {@code 0xff} and such keys are not supported
+     * @throws IllegalArgumentException if {@code keys} is null
+     * @throws StaleTransactionException if an underlying transaction is no longer usable
+     * @throws RetryTransactionException if an underlying transaction must be retried and is no longer usable
+     * @throws NullPointerException if any key in {@code keys} is null
+     */
+    default List<byte[]> getMany(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            values.add(this.get(key));
+        return values;
+    }
+
     /**
      * Get the key/value pair having the smallest key greater than or equal to the given minimum, if any.
      *
@@ -177,6 +220,143 @@ public interface KVStore {
         return this.getRange(range.getMin(), range.getMax(), false);
     }
 
+    /**
+     * Estimate the number of keys in, and the total size of, the specified range, without iterating it.
+     *
+     * <p>
+     * This method is optional: implementations that cannot produce an estimate cheaply return null.
+     * When an estimate is returned, it should be considerably cheaper to compute than iterating the range
+     * (with the exception of in-memory implementations, which may count exactly).
+     *
+     * <p>
+     * Estimates are not transactional: they may or may not reflect uncommitted changes, and reading them
+     * does not create any conflicts with other transactions.
+     *
+     * <p>
+     * The implementation in {@link KVStore} always returns null.
+     *
+     * @param minKey minimum key (inclusive), or null for no minimum
+     * @param maxKey maximum key (exclusive), or null for no maximum
+     * @return estimated size of the range, or null if no estimate is available
+     * @throws StaleTransactionException if an underlying transaction is no longer usable
+     * @see io.permazen.kv.util.KeyRangeSplitter
+     */
+    default SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return null;
+    }
+
+    /**
+     * Asynchronously get the value associated with the given key, if any.
+     *
+     * <p>
+     * This is the asynchronous version of {@link #get get()}; any exception that {@link #get get()} would throw
+     * is instead reported via the returned future.
+     *
+     * <p>
+     * The implementation in {@link KVStore} invokes {@link #get get()} synchronously and returns a completed future.
+     *
+     * @param key key
+     * @return future value associated with key, or null if not found
+     * @throws NullPointerException if {@code key} is null
+     */
+    default CompletableFuture<byte[]> getAsync(byte[] key) {
+        key.getClass();
+        return CompletableFuture.supplyAsync(() -> this.get(key), Runnable::run);
+    }
+
+    /**
+     * Asynchronously get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * This is the asynchronous version of {@link #getMany getMany()}; any exception that {@link #getMany getMany()}
+     * would throw is instead reported via the returned future.
+     *
+     * <p>
+     * The implementation in {@link KVStore} invokes {@link #getMany getMany()} synchronously and returns a completed future.
+     *
+     * @param keys keys to retrieve
+     * @return future list of values associated with {@code keys}, with null for keys not found
+     * @throws IllegalArgumentException if {@code keys} is null
+     */
+    default CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        return CompletableFuture.supplyAsync(() -> this.getMany(keys), Runnable::run);
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the smallest key greater than or equal to the given minimum, if any.
+     *
+     * <p>
+     * This is the asynchronous version of {@link #getAtLeast getAtLeast()}; any exception that
+     * {@link #getAtLeast getAtLeast()} would throw is instead reported via the returned future.
+     *
+     * <p>
+     * The implementation in {@link KVStore} invokes {@link #getAtLeast getAtLeast()} synchronously and returns a completed future.
+     *
+     * @param minKey minimum key (inclusive), or null for no minimum (get the smallest key)
+     * @param maxKey maximum key (exclusive), or null for no maximum (no upper bound)
+     * @return future smallest key/value pair with {@code key >= minKey} and {@code key < maxKey}, or null if none exists
+     */
+    default CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        return CompletableFuture.supplyAsync(() -> this.getAtLeast(minKey, maxKey), Runnable::run);
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the largest key strictly less than the given maximum, if any.
+     *
+     * <p>
+     * This is the asynchronous version of {@link #getAtMost getAtMost()}; any exception that
+     * {@link #getAtMost getAtMost()} would throw is instead reported via the returned future.
+     *
+     * <p>
+     * The implementation in {@link KVStore} invokes {@link #getAtMost getAtMost()} synchronously and returns a completed future.
+     *
+     * @param maxKey maximum key (exclusive), or null for no maximum (get the largest key)
+     * @param minKey minimum key (inclusive), or null for no minimum (no lower bound)
+     * @return future largest key/value pair with {@code key < maxKey} and {@code key >= minKey}, or null if none exists
+     */
+    default CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        return CompletableFuture.supplyAsync(() -> this.getAtMost(maxKey, minKey), Runnable::run);
+    }
+
+    /**
+     * Asynchronously retrieve a batch of key/value pairs from the specified range.
+     *
+     * <p>
+     * The returned future will contain the first (or last, if {@code reverse} is true) key/value pairs in the range,
+     * up to at most {@code limit} pairs. If fewer than {@code limit} pairs are returned, the range has been exhausted;
+     * otherwise, the next batch may be retrieved by invoking this method again with the range starting just past
+     * the last key returned (i.e., {@link io.permazen.util.ByteUtil#getNextKey ByteUtil.getNextKey()} of the last key
+     * as the new {@code minKey} in the forward case, or the last key as the new {@code maxKey} in the reverse case).
+     *
+     * <p>
+     * Any exception that {@link #getRange(byte[], byte[], boolean) getRange()} would throw is instead reported
+     * via the returned future.
+     *
+     * <p>
+     * The implementation in {@link KVStore} iterates the range synchronously via {@link #getRange(byte[], byte[], boolean)
+     * getRange()} and returns a completed future.
+     *
+     * @param minKey minimum key (inclusive), or null for no minimum (start at the smallest key)
+     * @param maxKey maximum key (exclusive), or null for no maximum (end at the largest key)
+     * @param reverse true to return key/value pairs in reverse order (i.e., keys descending)
+     * @param limit maximum number of key/value pairs to return
+     * @return future batch of at most {@code limit} key/value pairs in the range {@code minKey} (inclusive)
+     *  to {@code maxKey} (exclusive)
+     * @throws IllegalArgumentException if {@code limit} is not positive
+     */
+    default CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit <= 0");
+        return CompletableFuture.supplyAsync(() -> {
+            final ArrayList<KVPair> batch = new ArrayList<>(Math.min(limit, 1000));
+            try (final CloseableIterator<KVPair> i = this.getRange(minKey, maxKey, reverse)) {
+                while (batch.size() < limit && i.hasNext())
+                    batch.add(i.next());
+            }
+            return batch;
+        }, Runnable::run);
+    }
+
     /**
      * Set the value associated with the given key.
      *
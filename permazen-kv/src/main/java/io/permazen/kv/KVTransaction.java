@@ -5,6 +5,8 @@
 
 package io.permazen.kv;
 
+import com.google.common.base.Preconditions;
+
 import java.util.concurrent.Future;
 
 /**
@@ -166,6 +168,41 @@ public interface KVTransaction extends KVStore {
      */
     Future<Void> watchKey(byte[] key);
 
+    /**
+     * Watch a range of keys for changes in their values.
+     *
+     * <p>
+     * This method is the range analogue of {@link #watchKey watchKey()}: the returned {@link Future} completes if and when
+     * a different value for any key in {@code range} is subsequently committed by some transaction, including possibly this one.
+     * This includes creation or deletion of any key in the range. A single range watch is typically much cheaper than
+     * watching each key in the range individually, and it also detects the creation of keys that do not exist yet.
+     *
+     * <p>
+     * All of the semantics and caveats described for {@link #watchKey watchKey()} apply here as well.
+     * In addition, implementations may generate spurious notifications more often for range watches than for key watches.
+     *
+     * <p>
+     * The implementation in {@link KVTransaction} delegates to {@link #watchKey watchKey()} if {@code range}
+     * {@linkplain KeyRange#isSingleKey contains a single key}, otherwise it throws {@link UnsupportedOperationException}.
+     *
+     * @param range the range of keys to watch
+     * @return a {@link Future} that completes when the value associated with any key in {@code range} is modified
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws RetryTransactionException if this transaction must be retried and is no longer usable
+     * @throws KVDatabaseException if an unexpected error occurs
+     * @throws UnsupportedOperationException if this instance does not support range watches
+     * @throws IllegalArgumentException if {@code range} is null
+     * @see #watchKey watchKey()
+     * @see io.permazen.core.Transaction#watchObject Transaction.watchObject()
+     * @see io.permazen.core.Transaction#watchIndex Transaction.watchIndex()
+     */
+    default Future<Void> watchRange(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        if (range.isSingleKey())
+            return this.watchKey(range.getMin());
+        throw new UnsupportedOperationException("range watches are not supported");
+    }
+
     /**
      * Commit this transaction.
      *
@@ -8,6 +8,7 @@ package io.permazen.kv;
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Bytes;
 
+import io.permazen.util.ByteSlice;
 import io.permazen.util.ByteUtil;
 
 import java.util.Arrays;
@@ -165,6 +166,18 @@ public class KeyRange {
         return this.compareTo(key) == 0;
     }
 
+    /**
+     * Determine whether this instance contains the given key, provided as a {@link ByteSlice}.
+     *
+     * @param key key to test
+     * @return true if {@code key} is within this range, otherwise false
+     * @throws IllegalArgumentException if {@code key} is null
+     */
+    public boolean contains(ByteSlice key) {
+        Preconditions.checkArgument(key != null, "null key");
+        return key.compareTo(this.min) >= 0 && (this.max == null || key.compareTo(this.max) < 0);
+    }
+
     /**
      * Determine whether this instance contains the full range covering all keys.
      *
@@ -0,0 +1,134 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An estimate of the number of keys in, and the total size of, some key range in a {@link KVStore}.
+ *
+ * <p>
+ * Either quantity may be unknown, in which case it is reported as -1. Estimates are only {@linkplain #isExact exact}
+ * if both quantities are known and were computed without approximation.
+ *
+ * <p>
+ * Instances are immutable.
+ *
+ * @see KVStore#estimateSize KVStore.estimateSize()
+ */
+public class SizeEstimate {
+
+    /**
+     * Exact estimate for an empty range.
+     */
+    public static final SizeEstimate EMPTY = new SizeEstimate(0, 0, true);
+
+    private final long numKeys;
+    private final long numBytes;
+    private final boolean exact;
+
+    /**
+     * Constructor.
+     *
+     * @param numKeys estimated number of keys, or -1 if unknown
+     * @param numBytes estimated total size of the keys and values in bytes, or -1 if unknown
+     * @param exact whether the estimate is exact
+     * @throws IllegalArgumentException if {@code numKeys} or {@code numBytes} is less than -1
+     * @throws IllegalArgumentException if {@code exact} is true but either quantity is unknown
+     */
+    public SizeEstimate(long numKeys, long numBytes, boolean exact) {
+        Preconditions.checkArgument(numKeys >= -1, "invalid numKeys");
+        Preconditions.checkArgument(numBytes >= -1, "invalid numBytes");
+        Preconditions.checkArgument(!exact || (numKeys != -1 && numBytes != -1), "exact estimate with unknown quantity");
+        this.numKeys = numKeys;
+        this.numBytes = numBytes;
+        this.exact = exact;
+    }
+
+    /**
+     * Get the estimated number of keys.
+     *
+     * @return estimated number of keys, or -1 if unknown
+     */
+    public long getNumKeys() {
+        return this.numKeys;
+    }
+
+    /**
+     * Get the estimated total size of the keys and values.
+     *
+     * <p>
+     * Depending on the implementation, this may be measured in terms of on-disk storage, which may be compressed,
+     * and may include overhead.
+     *
+     * @return estimated size in bytes, or -1 if unknown
+     */
+    public long getNumBytes() {
+        return this.numBytes;
+    }
+
+    /**
+     * Determine whether this estimate is exact.
+     *
+     * @return true if exact, false if approximate
+     */
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    /**
+     * Combine this estimate with the estimate for some other, disjoint key range.
+     *
+     * <p>
+     * A quantity in the result is unknown if it is unknown in either estimate.
+     *
+     * @param that other estimate
+     * @return estimate for the union of both ranges
+     * @throws IllegalArgumentException if {@code that} is null
+     */
+    public SizeEstimate add(SizeEstimate that) {
+        Preconditions.checkArgument(that != null, "null that");
+        return new SizeEstimate(
+          this.numKeys != -1 && that.numKeys != -1 ? this.numKeys + that.numKeys : -1,
+          this.numBytes != -1 && that.numBytes != -1 ? this.numBytes + that.numBytes : -1,
+          this.exact && that.exact);
+    }
+
+    /**
+     * Get an approximate version of this estimate.
+     *
+     * @return this estimate, marked as not exact
+     */
+    public SizeEstimate approximate() {
+        return this.exact ? new SizeEstimate(this.numKeys, this.numBytes, false) : this;
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[keys=" + this.numKeys
+          + ",bytes=" + this.numBytes
+          + (this.exact ? ",exact" : "")
+          + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final SizeEstimate that = (SizeEstimate)obj;
+        return this.numKeys == that.numKeys && this.numBytes == that.numBytes && this.exact == that.exact;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.numKeys) ^ Long.hashCode(this.numBytes) * 31 ^ (this.exact ? 1 : 0);
+    }
+}
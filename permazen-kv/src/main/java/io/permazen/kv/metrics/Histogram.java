@@ -0,0 +1,173 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative {@code long} values using exponentially sized buckets.
+ *
+ * <p>
+ * Bucket zero holds the value zero, and bucket <i>N</i> &gt; 0 holds values in the range 2<sup><i>N</i>-1</sup>
+ * to 2<sup><i>N</i></sup>-1. Percentiles are therefore only accurate to within a factor of two, which is
+ * plenty for spotting outliers, while recording a value costs a few atomic increments and never allocates.
+ *
+ * <p>
+ * Instances are thread safe. Reads are not atomic with respect to concurrent updates, so the various
+ * statistics may be slightly inconsistent with each other while values are being recorded.
+ */
+public class Histogram {
+
+    /**
+     * The number of buckets.
+     */
+    public static final int NUM_BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value.
+     *
+     * <p>
+     * Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        this.buckets.incrementAndGet(Histogram.bucketOf(value));
+        this.count.increment();
+        this.total.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Get the number of values recorded.
+     *
+     * @return number of values
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Get the sum of all values recorded.
+     *
+     * @return sum of values
+     */
+    public long getTotal() {
+        return this.total.sum();
+    }
+
+    /**
+     * Get the largest value recorded.
+     *
+     * @return largest value, or zero if no values have been recorded
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the mean of all values recorded.
+     *
+     * @return mean value, or zero if no values have been recorded
+     */
+    public double getMean() {
+        final long n = this.count.sum();
+        return n > 0 ? (double)this.total.sum() / n : 0.0;
+    }
+
+    /**
+     * Estimate the given percentile.
+     *
+     * <p>
+     * The returned value is the upper bound of the bucket containing the percentile, capped at {@link #getMax}.
+     *
+     * @param percentile percentile, from zero (exclusive) to 100 (inclusive)
+     * @return estimated percentile value, or zero if no values have been recorded
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    public long getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0.0 && percentile <= 100.0, "invalid percentile");
+        final long[] counts = this.getBucketCounts();
+        long n = 0;
+        for (long bucketCount : counts)
+            n += bucketCount;
+        if (n == 0)
+            return 0;
+        final long threshold = (long)Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            if ((seen += counts[bucket]) >= threshold)
+                return Math.min(Histogram.upperBound(bucket), this.getMax());
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Get the number of values recorded in each bucket.
+     *
+     * @return array of length {@link #NUM_BUCKETS} containing bucket counts
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[NUM_BUCKETS];
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+            counts[bucket] = this.buckets.get(bucket);
+        return counts;
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+            this.buckets.set(bucket, 0);
+        this.count.reset();
+        this.total.reset();
+        this.max.reset();
+    }
+
+    /**
+     * Get the bucket that holds the given value.
+     *
+     * @param value non-negative value
+     * @return bucket index
+     */
+    static int bucketOf(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Get the largest value that belongs in the given bucket.
+     *
+     * @param bucket bucket index
+     * @return bucket's largest value
+     */
+    static long upperBound(int bucket) {
+        return bucket < NUM_BUCKETS - 1 ? (1L << bucket) - 1 : Long.MAX_VALUE;
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[count=" + this.getCount()
+          + ",mean=" + String.format("%.1f", this.getMean())
+          + ",p99=" + (this.getCount() > 0 ? this.getPercentile(99) : 0)
+          + ",max=" + this.getMax()
+          + "]";
+    }
+}
@@ -0,0 +1,290 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects key/value store metrics recorded by {@link MetricsKVStore}, {@link MetricsKVTransaction},
+ * and {@link MetricsKVDatabase}.
+ *
+ * <p>
+ * Recorded metrics include:
+ * <ul>
+ *  <li>A count and {@linkplain Histogram latency histogram} for each {@link KVOperation}</li>
+ *  <li>The total length of all keys and values read and written</li>
+ *  <li>A histogram of range scan lengths, i.e., the number of key/value pairs iterated per range scan</li>
+ *  <li>The number of transactions committed, rolled back, retried, and failed</li>
+ *  <li>A histogram of transaction durations</li>
+ * </ul>
+ *
+ * <p>
+ * Individual measurements may also be delivered to {@linkplain #addListener registered listeners}.
+ *
+ * <p>
+ * Recording may be {@linkplain #setEnabled disabled}; while disabled, instrumented stores simply forward all operations
+ * without taking any measurements or allocating any objects. Recording a measurement does not allocate any objects either,
+ * except when iterating a range of keys, which requires a wrapper iterator.
+ *
+ * <p>
+ * Metrics are visible via JMX through the {@link KVMetricsMXBean} interface. Instances are thread safe.
+ */
+public class KVMetrics implements KVMetricsMXBean {
+
+    private static final KVMetricsListener[] NO_LISTENERS = new KVMetricsListener[0];
+
+    private final Histogram[] latencies = new Histogram[KVOperation.values().length];
+    private final Histogram rangeScanLengths = new Histogram();
+    private final Histogram transactionDurations = new Histogram();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder[] outcomes = new LongAdder[TransactionOutcome.values().length];
+
+    private volatile boolean enabled = true;
+    private volatile KVMetricsListener[] listeners = NO_LISTENERS;
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Instances are initially enabled.
+     */
+    public KVMetrics() {
+        for (int i = 0; i < this.latencies.length; i++)
+            this.latencies[i] = new Histogram();
+        for (int i = 0; i < this.outcomes.length; i++)
+            this.outcomes[i] = new LongAdder();
+    }
+
+// Listeners
+
+    /**
+     * Add a listener.
+     *
+     * @param listener the listener to add
+     * @throws IllegalArgumentException if {@code listener} is null
+     */
+    public synchronized void addListener(KVMetricsListener listener) {
+        Preconditions.checkArgument(listener != null, "null listener");
+        final KVMetricsListener[] newListeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        newListeners[this.listeners.length] = listener;
+        this.listeners = newListeners;
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * <p>
+     * Does nothing if {@code listener} is not registered.
+     *
+     * @param listener the listener to remove
+     */
+    public synchronized void removeListener(KVMetricsListener listener) {
+        final int index = Arrays.asList(this.listeners).indexOf(listener);
+        if (index == -1)
+            return;
+        final KVMetricsListener[] newListeners = new KVMetricsListener[this.listeners.length - 1];
+        System.arraycopy(this.listeners, 0, newListeners, 0, index);
+        System.arraycopy(this.listeners, index + 1, newListeners, index, newListeners.length - index);
+        this.listeners = newListeners;
+    }
+
+// Accessors
+
+    /**
+     * Get the latency histogram for the specified operation.
+     *
+     * @param operation key/value operation
+     * @return histogram of latencies in nanoseconds
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public Histogram getLatency(KVOperation operation) {
+        Preconditions.checkArgument(operation != null, "null operation");
+        return this.latencies[operation.ordinal()];
+    }
+
+    /**
+     * Get the histogram of range scan lengths.
+     *
+     * @return histogram of the number of key/value pairs iterated per range scan
+     */
+    public Histogram getRangeScanLengths() {
+        return this.rangeScanLengths;
+    }
+
+    /**
+     * Get the histogram of transaction durations.
+     *
+     * @return histogram of transaction lifetimes in nanoseconds
+     */
+    public Histogram getTransactionDurations() {
+        return this.transactionDurations;
+    }
+
+    /**
+     * Get the number of transactions that completed in the specified way.
+     *
+     * @param outcome transaction outcome
+     * @return number of transactions
+     * @throws IllegalArgumentException if {@code outcome} is null
+     */
+    public long getTransactionCount(TransactionOutcome outcome) {
+        Preconditions.checkArgument(outcome != null, "null outcome");
+        return this.outcomes[outcome.ordinal()].sum();
+    }
+
+// KVMetricsMXBean
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return this.buildLatencyMap(Histogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencies() {
+        final LinkedHashMap<String, Double> map = new LinkedHashMap<>();
+        for (KVOperation operation : KVOperation.values())
+            map.put(operation.name(), this.getLatency(operation).getMean() / 1000.0);
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getLatencies99thPercentile() {
+        return this.buildLatencyMap(histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99)));
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencies() {
+        return this.buildLatencyMap(histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    @Override
+    public double getMeanRangeScanLength() {
+        return this.rangeScanLengths.getMean();
+    }
+
+    @Override
+    public long getMaxRangeScanLength() {
+        return this.rangeScanLengths.getMax();
+    }
+
+    @Override
+    public long getCommitCount() {
+        return this.getTransactionCount(TransactionOutcome.COMMITTED);
+    }
+
+    @Override
+    public long getRollbackCount() {
+        return this.getTransactionCount(TransactionOutcome.ROLLED_BACK);
+    }
+
+    @Override
+    public long getRetryCount() {
+        return this.getTransactionCount(TransactionOutcome.RETRY);
+    }
+
+    @Override
+    public long getFailureCount() {
+        return this.getTransactionCount(TransactionOutcome.FAILED);
+    }
+
+    @Override
+    public double getMeanTransactionDuration() {
+        return this.transactionDurations.getMean() / 1000000.0;
+    }
+
+    @Override
+    public double getTransactionDuration99thPercentile() {
+        return this.transactionDurations.getCount() > 0 ? this.transactionDurations.getPercentile(99) / 1000000.0 : 0.0;
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : this.latencies)
+            histogram.reset();
+        this.rangeScanLengths.reset();
+        this.transactionDurations.reset();
+        this.bytesRead.reset();
+        this.bytesWritten.reset();
+        for (LongAdder outcome : this.outcomes)
+            outcome.reset();
+    }
+
+    private Map<String, Long> buildLatencyMap(ToLongFunction<? super Histogram> function) {
+        final LinkedHashMap<String, Long> map = new LinkedHashMap<>();
+        for (KVOperation operation : KVOperation.values())
+            map.put(operation.name(), function.applyAsLong(this.getLatency(operation)));
+        return map;
+    }
+
+// Recording
+
+    void recordOperation(MetricsKVStore store, KVOperation operation, long nanos, long numBytesRead, long numBytesWritten) {
+        this.latencies[operation.ordinal()].record(nanos);
+        if (numBytesRead > 0)
+            this.bytesRead.add(numBytesRead);
+        if (numBytesWritten > 0)
+            this.bytesWritten.add(numBytesWritten);
+        for (KVMetricsListener listener : this.listeners)
+            listener.operationCompleted(store, operation, nanos, numBytesRead, numBytesWritten);
+    }
+
+    void recordRangeScan(MetricsKVStore store, long pairs, long numBytesRead) {
+        this.rangeScanLengths.record(pairs);
+        if (numBytesRead > 0)
+            this.bytesRead.add(numBytesRead);
+        for (KVMetricsListener listener : this.listeners)
+            listener.rangeScanCompleted(store, pairs, numBytesRead);
+    }
+
+    void recordTransaction(MetricsKVTransaction tx, TransactionOutcome outcome, long nanos) {
+        this.outcomes[outcome.ordinal()].increment();
+        this.transactionDurations.record(nanos);
+        for (KVMetricsListener listener : this.listeners)
+            listener.transactionCompleted(tx, outcome, nanos);
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[enabled=" + this.enabled
+          + ",bytesRead=" + this.getBytesRead()
+          + ",bytesWritten=" + this.getBytesWritten()
+          + ",commits=" + this.getCommitCount()
+          + ",rollbacks=" + this.getRollbackCount()
+          + ",retries=" + this.getRetryCount()
+          + "]";
+    }
+}
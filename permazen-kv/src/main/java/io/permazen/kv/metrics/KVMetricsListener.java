@@ -0,0 +1,69 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+/**
+ * Callback interface for receiving individual measurements from a {@link KVMetrics} instance.
+ *
+ * <p>
+ * Listeners are invoked synchronously, in the thread performing the operation, and only while the
+ * associated {@link KVMetrics} is {@linkplain KVMetrics#isEnabled enabled}. Therefore, listeners must be thread safe
+ * and must not perform any long running or blocking operations. Exceptions thrown by listeners are propagated
+ * to the caller of the operation being measured.
+ *
+ * <p>
+ * A typical use is attributing storage load to individual transactions: a listener's
+ * {@link #transactionCompleted transactionCompleted()} method can inspect the per-transaction totals available from
+ * {@link MetricsKVTransaction} and log the transactions that exceed some threshold.
+ *
+ * @see KVMetrics#addListener
+ */
+public interface KVMetricsListener {
+
+    /**
+     * Receive notification that a key/value operation has completed successfully.
+     *
+     * <p>
+     * The implementation in {@link KVMetricsListener} does nothing.
+     *
+     * @param store the store on which the operation was performed
+     * @param operation the operation
+     * @param nanos duration of the operation in nanoseconds
+     * @param bytesRead total length of the keys and values returned
+     * @param bytesWritten total length of the keys and values written
+     */
+    default void operationCompleted(MetricsKVStore store, KVOperation operation, long nanos, long bytesRead, long bytesWritten) {
+    }
+
+    /**
+     * Receive notification that an iteration over a range of keys has completed.
+     *
+     * <p>
+     * A range scan completes when its iterator is exhausted or closed, whichever happens first.
+     *
+     * <p>
+     * The implementation in {@link KVMetricsListener} does nothing.
+     *
+     * @param store the store on which the range scan was performed
+     * @param pairs number of key/value pairs iterated
+     * @param bytesRead total length of the keys and values iterated
+     */
+    default void rangeScanCompleted(MetricsKVStore store, long pairs, long bytesRead) {
+    }
+
+    /**
+     * Receive notification that a transaction has completed.
+     *
+     * <p>
+     * The implementation in {@link KVMetricsListener} does nothing.
+     *
+     * @param tx the transaction
+     * @param outcome how the transaction completed
+     * @param nanos lifetime of the transaction in nanoseconds
+     */
+    default void transactionCompleted(MetricsKVTransaction tx, TransactionOutcome outcome, long nanos) {
+    }
+}
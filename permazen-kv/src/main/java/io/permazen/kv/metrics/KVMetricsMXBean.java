@@ -0,0 +1,136 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface for {@link KVMetrics}.
+ *
+ * <p>
+ * Maps are keyed by {@link KVOperation} name; latencies are reported in microseconds.
+ *
+ * @see MetricsKVDatabase#setObjectName
+ */
+public interface KVMetricsMXBean {
+
+    /**
+     * Determine whether metrics are being recorded.
+     *
+     * @return true if enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Enable or disable the recording of metrics.
+     *
+     * @param enabled true to enable
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Get the number of times each operation has been performed.
+     *
+     * @return mapping from operation name to count
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Get the mean latency of each operation.
+     *
+     * @return mapping from operation name to mean latency in microseconds
+     */
+    Map<String, Double> getMeanLatencies();
+
+    /**
+     * Get the 99th percentile latency of each operation.
+     *
+     * @return mapping from operation name to approximate 99th percentile latency in microseconds
+     */
+    Map<String, Long> getLatencies99thPercentile();
+
+    /**
+     * Get the maximum latency of each operation.
+     *
+     * @return mapping from operation name to maximum latency in microseconds
+     */
+    Map<String, Long> getMaxLatencies();
+
+    /**
+     * Get the total length of all keys and values read.
+     *
+     * @return bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Get the total length of all keys and values written.
+     *
+     * @return bytes written
+     */
+    long getBytesWritten();
+
+    /**
+     * Get the mean number of key/value pairs iterated per range scan.
+     *
+     * @return mean range scan length
+     */
+    double getMeanRangeScanLength();
+
+    /**
+     * Get the maximum number of key/value pairs iterated in a single range scan.
+     *
+     * @return maximum range scan length
+     */
+    long getMaxRangeScanLength();
+
+    /**
+     * Get the number of transactions successfully committed.
+     *
+     * @return commit count
+     */
+    long getCommitCount();
+
+    /**
+     * Get the number of transactions rolled back.
+     *
+     * @return rollback count
+     */
+    long getRollbackCount();
+
+    /**
+     * Get the number of transactions whose commit failed with a {@link io.permazen.kv.RetryTransactionException}.
+     *
+     * @return retry count
+     */
+    long getRetryCount();
+
+    /**
+     * Get the number of transactions whose commit failed with some other exception.
+     *
+     * @return failure count
+     */
+    long getFailureCount();
+
+    /**
+     * Get the mean lifetime of completed transactions.
+     *
+     * @return mean transaction duration in milliseconds
+     */
+    double getMeanTransactionDuration();
+
+    /**
+     * Get the 99th percentile lifetime of completed transactions.
+     *
+     * @return approximate 99th percentile transaction duration in milliseconds
+     */
+    double getTransactionDuration99thPercentile();
+
+    /**
+     * Discard all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,76 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+/**
+ * The key/value operations measured by {@link KVMetrics}.
+ */
+public enum KVOperation {
+
+    /**
+     * {@link io.permazen.kv.KVStore#get KVStore.get()}.
+     */
+    GET,
+
+    /**
+     * {@link io.permazen.kv.KVStore#getMany KVStore.getMany()}.
+     */
+    GET_MANY,
+
+    /**
+     * {@link io.permazen.kv.KVStore#getAtLeast KVStore.getAtLeast()}.
+     */
+    GET_AT_LEAST,
+
+    /**
+     * {@link io.permazen.kv.KVStore#getAtMost KVStore.getAtMost()}.
+     */
+    GET_AT_MOST,
+
+    /**
+     * {@link io.permazen.kv.KVStore#getRange(byte[], byte[], boolean) KVStore.getRange()}.
+     *
+     * <p>
+     * The measured latency is the time to create the iterator; the number of key/value pairs
+     * actually iterated is measured separately by {@link KVMetrics#getRangeScanLengths}.
+     */
+    GET_RANGE,
+
+    /**
+     * {@link io.permazen.kv.KVStore#put KVStore.put()}.
+     */
+    PUT,
+
+    /**
+     * {@link io.permazen.kv.KVStore#remove KVStore.remove()}.
+     */
+    REMOVE,
+
+    /**
+     * {@link io.permazen.kv.KVStore#removeRange(byte[], byte[]) KVStore.removeRange()}.
+     */
+    REMOVE_RANGE,
+
+    /**
+     * {@link io.permazen.kv.KVStore#adjustCounter KVStore.adjustCounter()}.
+     */
+    ADJUST_COUNTER,
+
+    /**
+     * {@link io.permazen.kv.KVStore#apply KVStore.apply()}.
+     */
+    APPLY,
+
+    /**
+     * {@link io.permazen.kv.KVTransaction#commit KVTransaction.commit()}.
+     */
+    COMMIT,
+
+    /**
+     * {@link io.permazen.kv.KVTransaction#rollback KVTransaction.rollback()}.
+     */
+    ROLLBACK;
+}
@@ -0,0 +1,228 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseException;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A wrapper around an inner {@link KVDatabase} that records key/value operation metrics.
+ *
+ * <p>
+ * Transactions are wrapped in a {@link MetricsKVTransaction}, which records per-operation counts and latencies,
+ * bytes read and written, range scan lengths, and transaction outcomes and durations into a {@link KVMetrics}
+ * instance. See {@link KVMetrics} for details.
+ *
+ * <p>
+ * If an {@linkplain #setObjectName object name} is configured, the {@link KVMetrics} instance is registered with the
+ * platform {@link MBeanServer} on {@link #start} and unregistered on {@link #stop}.
+ *
+ * <p>
+ * Measurement can be switched on and off at any time via {@link KVMetrics#setEnabled KVMetrics.setEnabled()}
+ * (including via JMX); while disabled, the only overhead is one extra object per transaction.
+ *
+ * @see KVMetrics
+ * @see KVMetricsListener
+ */
+public class MetricsKVDatabase implements KVDatabase {
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final KVMetrics metrics;
+
+    private KVDatabase inner;
+    private ObjectName objectName;
+    private boolean started;
+    private boolean registered;
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Instances must be configured with an inner {@link KVDatabase} before starting.
+     */
+    public MetricsKVDatabase() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inner inner {@link KVDatabase}
+     */
+    public MetricsKVDatabase(KVDatabase inner) {
+        this(inner, new KVMetrics());
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * <p>
+     * Multiple instances may share the same {@link KVMetrics}.
+     *
+     * @param inner inner {@link KVDatabase}
+     * @param metrics where to record metrics
+     * @throws IllegalArgumentException if {@code metrics} is null
+     */
+    public MetricsKVDatabase(KVDatabase inner, KVMetrics metrics) {
+        Preconditions.checkArgument(metrics != null, "null metrics");
+        this.inner = inner;
+        this.metrics = metrics;
+    }
+
+// Accessors
+
+    /**
+     * Get the {@link KVMetrics} associated with this instance.
+     *
+     * @return associated metrics
+     */
+    public KVMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the inner {@link KVDatabase}.
+     *
+     * @return the underlying {@link KVDatabase}
+     */
+    public synchronized KVDatabase getKVDatabase() {
+        return this.inner;
+    }
+
+    /**
+     * Configure the underlying {@link KVDatabase}.
+     *
+     * @param inner the underlying {@link KVDatabase}
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setKVDatabase(KVDatabase inner) {
+        Preconditions.checkState(!this.started, "already started");
+        this.inner = inner;
+    }
+
+    /**
+     * Get the JMX object name under which the associated {@link KVMetrics} is registered.
+     *
+     * @return JMX object name, or null for none
+     */
+    public synchronized ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Configure the JMX object name under which to register the associated {@link KVMetrics}.
+     *
+     * <p>
+     * Default is null, meaning the {@link KVMetrics} is not registered.
+     *
+     * @param objectName JMX object name, or null for none
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setObjectName(ObjectName objectName) {
+        Preconditions.checkState(!this.started, "already started");
+        this.objectName = objectName;
+    }
+
+// Lifecycle
+
+    @Override
+    @PostConstruct
+    public synchronized void start() {
+        Preconditions.checkState(this.inner != null, "no inner KVDatabase configured");
+        if (this.started)
+            return;
+        this.inner.start();
+        try {
+            if (this.objectName != null) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this.metrics, this.objectName);
+                this.registered = true;
+            }
+            this.started = true;
+        } catch (JMException e) {
+            throw new KVDatabaseException(this, "error registering MBean " + this.objectName, e);
+        } finally {
+            if (!this.started)
+                this.inner.stop();
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void stop() {
+        if (!this.started)
+            return;
+        if (this.registered) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(this.objectName);
+            } catch (JMException e) {
+                this.log.warn("error unregistering MBean " + this.objectName + " (ignoring)", e);
+            }
+            this.registered = false;
+        }
+        this.inner.stop();
+        this.started = false;
+    }
+
+// Transactions
+
+    @Override
+    public MetricsKVTransaction createTransaction() {
+        return this.createTransaction(this.getStartedKVDatabase().createTransaction());
+    }
+
+    @Override
+    public MetricsKVTransaction createTransaction(Map<String, ?> options) {
+        return this.createTransaction(this.getStartedKVDatabase().createTransaction(options));
+    }
+
+    /**
+     * Create a {@link MetricsKVTransaction} wrapping the given inner transaction.
+     *
+     * @param tx inner transaction
+     * @return wrapped transaction
+     */
+    protected MetricsKVTransaction createTransaction(KVTransaction tx) {
+        return new MetricsKVTransaction(this, tx);
+    }
+
+// Bulk Loading
+
+    /**
+     * Load a sorted stream of key/value pairs into the inner {@link KVDatabase}.
+     *
+     * <p>
+     * The implementation in {@link MetricsKVDatabase} delegates to the inner {@link KVDatabase};
+     * bulk loads are not included in the collected metrics.
+     */
+    @Override
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+        this.getStartedKVDatabase().bulkLoad(pairs);
+    }
+
+    private synchronized KVDatabase getStartedKVDatabase() {
+        Preconditions.checkState(this.started, "not started");
+        return this.inner;
+    }
+}
@@ -0,0 +1,319 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.util.ForwardingKVStore;
+import io.permazen.util.CloseableIterator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A {@link ForwardingKVStore} that records the latency and size of each operation in a {@link KVMetrics} instance.
+ *
+ * <p>
+ * In addition to updating the associated {@link KVMetrics}, each instance keeps its own running totals of the number
+ * of operations performed and the number of bytes read and written, which allows attributing load to individual stores
+ * or transactions (see {@link KVMetricsListener}).
+ *
+ * <p>
+ * While the associated {@link KVMetrics} is {@linkplain KVMetrics#isEnabled disabled}, operations are forwarded directly
+ * to the underlying {@link KVStore} without any measurement.
+ *
+ * <p>
+ * Range scans are measured by wrapping the returned iterator; the scan is recorded when the iterator is exhausted or
+ * {@linkplain CloseableIterator#close closed}, so iterators that are abandoned part way through without being closed
+ * are not counted.
+ */
+public class MetricsKVStore extends ForwardingKVStore {
+
+    private static final AtomicLongFieldUpdater<MetricsKVStore> OPERATIONS_UPDATER
+      = AtomicLongFieldUpdater.newUpdater(MetricsKVStore.class, "operations");
+    private static final AtomicLongFieldUpdater<MetricsKVStore> BYTES_READ_UPDATER
+      = AtomicLongFieldUpdater.newUpdater(MetricsKVStore.class, "bytesRead");
+    private static final AtomicLongFieldUpdater<MetricsKVStore> BYTES_WRITTEN_UPDATER
+      = AtomicLongFieldUpdater.newUpdater(MetricsKVStore.class, "bytesWritten");
+
+    private static final int COUNTER_LENGTH = 8;
+
+    /**
+     * The associated metrics.
+     */
+    protected final KVMetrics metrics;
+
+    private final KVStore kvstore;
+
+    private volatile long operations;
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+
+    /**
+     * Constructor.
+     *
+     * @param kvstore underlying {@link KVStore}
+     * @param metrics where to record metrics
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public MetricsKVStore(KVStore kvstore, KVMetrics metrics) {
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(metrics != null, "null metrics");
+        this.kvstore = kvstore;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the {@link KVMetrics} associated with this instance.
+     *
+     * @return associated metrics
+     */
+    public KVMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the number of operations measured by this instance.
+     *
+     * @return number of operations
+     */
+    public long getOperationCount() {
+        return this.operations;
+    }
+
+    /**
+     * Get the total length of all keys and values read via this instance while measurement was enabled.
+     *
+     * @return bytes read
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    /**
+     * Get the total length of all keys and values written via this instance while measurement was enabled.
+     *
+     * @return bytes written
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+// ForwardingKVStore
+
+    @Override
+    protected KVStore delegate() {
+        return this.kvstore;
+    }
+
+// KVStore
+
+    @Override
+    public byte[] get(byte[] key) {
+        if (!this.metrics.isEnabled())
+            return this.kvstore.get(key);
+        final long startTime = System.nanoTime();
+        final byte[] value = this.kvstore.get(key);
+        this.recordOperation(KVOperation.GET, startTime, MetricsKVStore.length(value), 0);
+        return value;
+    }
+
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        if (!this.metrics.isEnabled())
+            return this.kvstore.getMany(keys);
+        final long startTime = System.nanoTime();
+        final List<byte[]> values = this.kvstore.getMany(keys);
+        long length = 0;
+        for (int i = 0; i < values.size(); i++)
+            length += MetricsKVStore.length(values.get(i));
+        this.recordOperation(KVOperation.GET_MANY, startTime, length, 0);
+        return values;
+    }
+
+    @Override
+    public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        if (!this.metrics.isEnabled())
+            return this.kvstore.getAtLeast(minKey, maxKey);
+        final long startTime = System.nanoTime();
+        final KVPair pair = this.kvstore.getAtLeast(minKey, maxKey);
+        this.recordOperation(KVOperation.GET_AT_LEAST, startTime, MetricsKVStore.length(pair), 0);
+        return pair;
+    }
+
+    @Override
+    public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        if (!this.metrics.isEnabled())
+            return this.kvstore.getAtMost(maxKey, minKey);
+        final long startTime = System.nanoTime();
+        final KVPair pair = this.kvstore.getAtMost(maxKey, minKey);
+        this.recordOperation(KVOperation.GET_AT_MOST, startTime, MetricsKVStore.length(pair), 0);
+        return pair;
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        if (!this.metrics.isEnabled())
+            return this.kvstore.getRange(minKey, maxKey, reverse);
+        final long startTime = System.nanoTime();
+        final CloseableIterator<KVPair> iterator = this.kvstore.getRange(minKey, maxKey, reverse);
+        this.recordOperation(KVOperation.GET_RANGE, startTime, 0, 0);
+        return new ScanIterator(iterator);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        if (!this.metrics.isEnabled()) {
+            this.kvstore.put(key, value);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        this.kvstore.put(key, value);
+        this.recordOperation(KVOperation.PUT, startTime, 0, key.length + value.length);
+    }
+
+    @Override
+    public void remove(byte[] key) {
+        if (!this.metrics.isEnabled()) {
+            this.kvstore.remove(key);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        this.kvstore.remove(key);
+        this.recordOperation(KVOperation.REMOVE, startTime, 0, key.length);
+    }
+
+    @Override
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        if (!this.metrics.isEnabled()) {
+            this.kvstore.removeRange(minKey, maxKey);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        this.kvstore.removeRange(minKey, maxKey);
+        this.recordOperation(KVOperation.REMOVE_RANGE, startTime, 0, MetricsKVStore.length(minKey) + MetricsKVStore.length(maxKey));
+    }
+
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        if (!this.metrics.isEnabled()) {
+            this.kvstore.adjustCounter(key, amount);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        this.kvstore.adjustCounter(key, amount);
+        this.recordOperation(KVOperation.ADJUST_COUNTER, startTime, 0, key.length + COUNTER_LENGTH);
+    }
+
+    @Override
+    public void apply(Mutations mutations) {
+        if (!this.metrics.isEnabled()) {
+            this.kvstore.apply(mutations);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        this.kvstore.apply(mutations);
+        long length = 0;
+        for (KeyRange range : mutations.getRemoveRanges())
+            length += MetricsKVStore.length(range.getMin()) + MetricsKVStore.length(range.getMax());
+        for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs())
+            length += entry.getKey().length + entry.getValue().length;
+        for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs())
+            length += entry.getKey().length + COUNTER_LENGTH;
+        this.recordOperation(KVOperation.APPLY, startTime, 0, length);
+    }
+
+// Recording
+
+    /**
+     * Record a completed operation.
+     *
+     * @param operation the operation
+     * @param startTime {@link System#nanoTime} when the operation started
+     * @param numBytesRead number of bytes read
+     * @param numBytesWritten number of bytes written
+     */
+    protected void recordOperation(KVOperation operation, long startTime, long numBytesRead, long numBytesWritten) {
+        final long nanos = System.nanoTime() - startTime;
+        OPERATIONS_UPDATER.incrementAndGet(this);
+        if (numBytesRead > 0)
+            BYTES_READ_UPDATER.addAndGet(this, numBytesRead);
+        if (numBytesWritten > 0)
+            BYTES_WRITTEN_UPDATER.addAndGet(this, numBytesWritten);
+        this.metrics.recordOperation(this, operation, nanos, numBytesRead, numBytesWritten);
+    }
+
+    private void recordRangeScan(long pairs, long numBytesRead) {
+        if (numBytesRead > 0)
+            BYTES_READ_UPDATER.addAndGet(this, numBytesRead);
+        this.metrics.recordRangeScan(this, pairs, numBytesRead);
+    }
+
+    private static long length(byte[] data) {
+        return data != null ? data.length : 0;
+    }
+
+    private static long length(KVPair pair) {
+        return pair != null ? pair.getKey().length + pair.getValue().length : 0;
+    }
+
+// ScanIterator
+
+    private class ScanIterator implements CloseableIterator<KVPair> {
+
+        private final CloseableIterator<KVPair> iterator;
+
+        private long pairs;
+        private long length;
+        private boolean recorded;
+
+        ScanIterator(CloseableIterator<KVPair> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final boolean hasNext = this.iterator.hasNext();
+            if (!hasNext)
+                this.record();
+            return hasNext;
+        }
+
+        @Override
+        public KVPair next() {
+            final KVPair pair = this.iterator.next();
+            this.pairs++;
+            this.length += MetricsKVStore.length(pair);
+            return pair;
+        }
+
+        @Override
+        public void remove() {
+            this.iterator.remove();
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.iterator.close();
+            } finally {
+                this.record();
+            }
+        }
+
+        private synchronized void record() {
+            if (this.recorded)
+                return;
+            this.recorded = true;
+            MetricsKVStore.this.recordRangeScan(this.pairs, this.length);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.util.CloseableForwardingKVStore;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * {@link MetricsKVDatabase} transaction.
+ *
+ * <p>
+ * Records the metrics of each operation, as well as the outcome and duration of the transaction itself, in the
+ * associated {@link KVMetrics}. The duration of a transaction is measured from its creation to the completion of
+ * its first {@link #commit} or {@link #rollback}.
+ *
+ * <p>
+ * {@linkplain #mutableSnapshot Mutable snapshots} are also instrumented, but their activity is not included
+ * in this transaction's {@linkplain #getOperationCount per-transaction totals}.
+ */
+public class MetricsKVTransaction extends MetricsKVStore implements KVTransaction {
+
+    private static final AtomicIntegerFieldUpdater<MetricsKVTransaction> COMPLETED_UPDATER
+      = AtomicIntegerFieldUpdater.newUpdater(MetricsKVTransaction.class, "completed");
+
+    private final MetricsKVDatabase db;
+    private final KVTransaction tx;
+    private final long creationTime;
+
+    private volatile int completed;
+
+    /**
+     * Constructor.
+     *
+     * @param db associated database
+     * @param tx underlying transaction
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    protected MetricsKVTransaction(MetricsKVDatabase db, KVTransaction tx) {
+        super(tx, db != null ? db.getMetrics() : null);
+        this.db = db;
+        this.tx = tx;
+        this.creationTime = System.nanoTime();
+    }
+
+    /**
+     * Get the underlying transaction.
+     *
+     * @return underlying transaction
+     */
+    public KVTransaction getInnerTransaction() {
+        return this.tx;
+    }
+
+// KVTransaction
+
+    @Override
+    public MetricsKVDatabase getKVDatabase() {
+        return this.db;
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.tx.setTimeout(timeout);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.tx.isReadOnly();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        this.tx.setReadOnly(readOnly);
+    }
+
+    @Override
+    public Future<Void> watchKey(byte[] key) {
+        return this.tx.watchKey(key);
+    }
+
+    @Override
+    public Future<Void> watchRange(KeyRange range) {
+        return this.tx.watchRange(range);
+    }
+
+    @Override
+    public void commit() {
+        if (!this.metrics.isEnabled()) {
+            this.completed = 1;
+            this.tx.commit();
+            return;
+        }
+        final long startTime = System.nanoTime();
+        TransactionOutcome outcome = TransactionOutcome.FAILED;
+        try {
+            this.tx.commit();
+            outcome = TransactionOutcome.COMMITTED;
+        } catch (RetryTransactionException e) {
+            outcome = TransactionOutcome.RETRY;
+            throw e;
+        } finally {
+            this.complete(KVOperation.COMMIT, startTime, outcome);
+        }
+    }
+
+    @Override
+    public void rollback() {
+        if (!this.metrics.isEnabled()) {
+            this.completed = 1;
+            this.tx.rollback();
+            return;
+        }
+        final long startTime = System.nanoTime();
+        try {
+            this.tx.rollback();
+        } finally {
+            this.complete(KVOperation.ROLLBACK, startTime, TransactionOutcome.ROLLED_BACK);
+        }
+    }
+
+    @Override
+    public CloseableKVStore mutableSnapshot() {
+        final CloseableKVStore snapshot = this.tx.mutableSnapshot();
+        return new CloseableForwardingKVStore(new MetricsKVStore(snapshot, this.metrics), snapshot);
+    }
+
+    private void complete(KVOperation operation, long startTime, TransactionOutcome outcome) {
+        if (!COMPLETED_UPDATER.compareAndSet(this, 0, 1))
+            return;
+        this.recordOperation(operation, startTime, 0, 0);
+        this.metrics.recordTransaction(this, outcome, System.nanoTime() - this.creationTime);
+    }
+}
@@ -0,0 +1,34 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+/**
+ * The ways in which a {@link MetricsKVTransaction} can complete.
+ *
+ * @see KVMetricsListener#transactionCompleted
+ */
+public enum TransactionOutcome {
+
+    /**
+     * The transaction was successfully committed.
+     */
+    COMMITTED,
+
+    /**
+     * The transaction was rolled back.
+     */
+    ROLLED_BACK,
+
+    /**
+     * The commit failed with a {@link io.permazen.kv.RetryTransactionException}.
+     */
+    RETRY,
+
+    /**
+     * The commit failed with some other exception.
+     */
+    FAILED;
+}
@@ -0,0 +1,18 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * Instrumentation for the {@link io.permazen.kv.KVDatabase} and {@link io.permazen.kv.KVStore} interfaces.
+ *
+ * <p>
+ * Wrap any {@link io.permazen.kv.KVDatabase} in a {@link io.permazen.kv.metrics.MetricsKVDatabase} (or any
+ * {@link io.permazen.kv.KVStore} in a {@link io.permazen.kv.metrics.MetricsKVStore}) to record operation counts,
+ * latency histograms, bytes read and written, range scan lengths, and transaction outcomes and durations
+ * in a {@link io.permazen.kv.metrics.KVMetrics}, which is accessible via JMX and a listener interface.
+ *
+ * @see io.permazen.kv.metrics.MetricsKVDatabase
+ * @see io.permazen.kv.metrics.KVMetrics
+ */
+package io.permazen.kv.metrics;
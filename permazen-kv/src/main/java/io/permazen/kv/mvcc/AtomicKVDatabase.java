@@ -20,6 +20,8 @@ import io.permazen.kv.util.ForwardingKVStore;
 import io.permazen.kv.util.UnmodifiableKVStore;
 import io.permazen.util.ByteUtil;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -61,6 +63,11 @@ public class AtomicKVDatabase extends AbstractKVStore implements AtomicKVStore {
         return this.computeInTransaction(kv -> kv.get(key));
     }
 
+    @Override
+    public List<byte[]> getMany(final List<byte[]> keys) {
+        return this.computeInTransaction(kv -> kv.getMany(keys));
+    }
+
     @Override
     public KVPair getAtLeast(final byte[] minKey, final byte[] maxKey) {
         return this.computeInTransaction(kv -> kv.getAtLeast(minKey, maxKey));
@@ -145,6 +152,11 @@ public class AtomicKVDatabase extends AbstractKVStore implements AtomicKVStore {
         this.doInTransaction(kv -> kv.apply(mutations));
     }
 
+    @Override
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+        this.kvdb.bulkLoad(pairs);
+    }
+
 // Object
 
     @Override
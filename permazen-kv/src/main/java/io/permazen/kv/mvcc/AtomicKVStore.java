@@ -6,7 +6,11 @@
 package io.permazen.kv.mvcc;
 
 import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.util.BulkLoader;
+
+import java.util.Iterator;
 
 /**
  * Extension of the {@link KVStore} interface for implementations that support atomic, batched reads and writes.
@@ -87,5 +91,31 @@ public interface AtomicKVStore extends KVStore {
      * @throws IllegalStateException if this instance is not {@link #start}ed
      */
     void mutate(Mutations mutations, boolean sync);
-}
 
+    /**
+     * Load a sorted stream of key/value pairs directly into this instance.
+     *
+     * <p>
+     * This method is intended for initial data loads. Implementations that store data in sorted form can typically
+     * ingest the pairs directly, bypassing the per-key overhead of {@link #mutate mutate()}.
+     * Keys in {@code pairs} that already exist are overwritten; other existing keys are unaffected.
+     * When this method returns normally, the loaded data has been durably persisted.
+     *
+     * <p>
+     * The load is not necessarily atomic: if this method throws an exception, some of the pairs may have been loaded
+     * and some not. Likewise, depending on the implementation, concurrent {@linkplain #snapshot snapshots}
+     * may or may not observe a partial load.
+     *
+     * <p>
+     * The implementation in {@link AtomicKVStore} loads the pairs using a series of {@link #mutate mutate()} operations
+     * via {@link BulkLoader#load(AtomicKVStore, Iterator, int) BulkLoader.load()}.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     */
+    default void bulkLoad(Iterator<? extends KVPair> pairs) {
+        BulkLoader.load(this, pairs, BulkLoader.DEFAULT_BATCH_SIZE);
+    }
+}
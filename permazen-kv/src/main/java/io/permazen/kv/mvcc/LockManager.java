@@ -7,18 +7,16 @@ package io.permazen.kv.mvcc;
 
 import com.google.common.base.Preconditions;
 
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
-import io.permazen.util.ByteUtil;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.NavigableSet;
 import java.util.TreeSet;
-
-import org.dellroad.stuff.java.Predicate;
-import org.dellroad.stuff.java.TimedWait;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manager of read/write locks on {@code byte[]} key ranges that ensures isolation and serialization while allowing concurrent
@@ -29,8 +27,17 @@ import org.dellroad.stuff.java.TimedWait;
  * by the same owner remain in force until all are {@linkplain #release released} at the same time.
  *
  * <p>
- * Instances are configured with a monitor object which is used for all internal locking and inter-thread wait/notify
- * handshaking (by default, this instance). A user-supplied monitor object may be provided via the constructor.
+ * <b>Lock Striping</b>
+ *
+ * <p>
+ * To allow threads locking unrelated keys to proceed in parallel, the key space is partitioned into
+ * {@linkplain #getNumStripes stripes}, each with its own mutex, lock set, and wait condition. Keys are assigned
+ * to stripes by hashing their first {@value #PREFIX_LENGTH} bytes, so keys sharing a common prefix shorter than that
+ * are still spread across stripes. Each lock is recorded in every stripe containing some key in its range; two locks
+ * overlap only if they share a key, and therefore a stripe, so conflicts can be detected by examining just those stripes.
+ * A lock on a single key, or a short range, involves one (or a few) stripes, while a lock on a wide range involves all
+ * of them. When a lock involves multiple stripes, their mutexes are always acquired in ascending order. A thread that
+ * must wait for a conflicting lock waits only on the stripe where that conflict was found.
  *
  * <p>
  * Two timeout values are supported:
@@ -48,37 +55,62 @@ import org.dellroad.stuff.java.TimedWait;
  */
 public class LockManager {
 
-    private static final long TEN_YEARS_MILLIS = 10L * 365L * 24L * 60L * 60L * 1000L;
+    /**
+     * Default number of stripes ({@value #DEFAULT_NUM_STRIPES}).
+     */
+    public static final int DEFAULT_NUM_STRIPES = 32;
 
-    private final Object lockObject;
+    /**
+     * Maximum number of stripes ({@value #MAX_NUM_STRIPES}).
+     */
+    public static final int MAX_NUM_STRIPES = 64;
+
+    /**
+     * Number of leading key bytes that determine a key's stripe ({@value #PREFIX_LENGTH}).
+     */
+    public static final int PREFIX_LENGTH = 8;
+
+    private static final long TEN_YEARS_MILLIS = 10L * 365L * 24L * 60L * 60L * 1000L;
 
-    // Contains each owner's lock time, or null if hold timeout has expired.
-    // Invariant: if owner has any locks, then owner is a key in this map and value is not null.
-    // In the case owner's hold timeout expired and another owner forced it to release all of its locks, the expired
-    // owner will own no locks but still exist in this map (with a null value), until its next lock() or release().
-    private final HashMap<LockOwner, Long> lockTimes = new HashMap<>();
+    // Orders the locks within a stripe; unlike Lock.MIN_COMPARATOR, distinguishes locks having different max's and owners
+    private static final Comparator<Lock> STRIPE_COMPARATOR = Lock.MIN_COMPARATOR
+      .thenComparing(Lock::getMax, KeyRange::compare)
+      .thenComparingLong(lock -> lock.owner.id);
 
-    private final TreeSet<Lock> locksByMin = new TreeSet<>(Lock.MIN_COMPARATOR);            // locks ordered by minimum
-    private final TreeSet<Lock> locksByMax = new TreeSet<>(Lock.MAX_COMPARATOR);            // locks ordered by maximum
+    private final Stripe[] stripes;
+    private final long allStripes;
     private final long nanoBasis = System.nanoTime();
 
-    private long holdTimeout;
+    private volatile long holdTimeout;
 
     /**
-     * Convenience constructor. Equivalent to <code>LockManager(null)</code>.
+     * Default constructor. Uses {@link #DEFAULT_NUM_STRIPES} stripes.
      */
     public LockManager() {
-        this(null);
+        this(DEFAULT_NUM_STRIPES);
     }
 
     /**
      * Primary constructor.
      *
-     * @param lockObject Java object used to synchronize field access and inter-thread wait/notify handshake,
-     *  or null to use this instance
+     * @param numStripes number of stripes into which the key space is partitioned
+     * @throws IllegalArgumentException if {@code numStripes} is less than one or greater than {@link #MAX_NUM_STRIPES}
      */
-    public LockManager(Object lockObject) {
-        this.lockObject = lockObject != null ? lockObject : this;
+    public LockManager(int numStripes) {
+        Preconditions.checkArgument(numStripes > 0 && numStripes <= MAX_NUM_STRIPES, "invalid numStripes");
+        this.stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++)
+            this.stripes[i] = new Stripe();
+        this.allStripes = numStripes == Long.SIZE ? ~0L : (1L << numStripes) - 1;
+    }
+
+    /**
+     * Get the number of stripes into which the key space is partitioned.
+     *
+     * @return number of stripes
+     */
+    public int getNumStripes() {
+        return this.stripes.length;
     }
 
     /**
@@ -91,9 +123,7 @@ public class LockManager {
      * @return hold timeout in milliseconds
      */
     public long getHoldTimeout() {
-        synchronized (this.lockObject) {
-            return this.holdTimeout;
-        }
+        return this.holdTimeout;
     }
 
     /**
@@ -105,9 +135,7 @@ public class LockManager {
      */
     public void setHoldTimeout(long holdTimeout) {
         Preconditions.checkArgument(holdTimeout >= 0, "holdTimeout < 0");
-        synchronized (this.lockObject) {
-            this.holdTimeout = Math.min(holdTimeout, TEN_YEARS_MILLIS);             // limit to 10 years to avoid overflow
-        }
+        this.holdTimeout = Math.min(holdTimeout, TEN_YEARS_MILLIS);                 // limit to 10 years to avoid overflow
     }
 
     /**
@@ -116,7 +144,6 @@ public class LockManager {
      * <p>
      * This method will block for up to {@code waitTimeout} milliseconds if the lock is held by
      * another thread, after which point {@link LockResult#WAIT_TIMEOUT_EXPIRED} is returned.
-     * The configured locking object will be used for inter-thread wait/notify handshaking.
      *
      * <p>
      * If {@code owner} already holds one or more locks, but the {@linkplain #getHoldTimeout hold timeout} has expired,
@@ -140,63 +167,70 @@ public class LockManager {
      */
     public LockResult lock(LockOwner owner, byte[] minKey, byte[] maxKey, boolean write, long waitTimeout)
       throws InterruptedException {
-        synchronized (this.lockObject) {
 
-            // Sanity check
-            Preconditions.checkArgument(owner != null, "null owner");
-            Preconditions.checkArgument(waitTimeout >= 0, "waitTimeout < 0");
-            waitTimeout = Math.min(waitTimeout, TEN_YEARS_MILLIS);                  // limit to 10 years to avoid overflow
+        // Sanity check
+        Preconditions.checkArgument(owner != null, "null owner");
+        Preconditions.checkArgument(waitTimeout >= 0, "waitTimeout < 0");
+        waitTimeout = Math.min(waitTimeout, TEN_YEARS_MILLIS);                      // limit to 10 years to avoid overflow
+        final long waitDeadline = System.nanoTime() + waitTimeout * 1000000L;
+
+        // Create lock and find the stripes it involves
+        final Lock lock = new Lock(owner, minKey, maxKey, write);
+        final long mask = this.getStripeMask(minKey, maxKey);
+
+        // Try to acquire lock; if there's a conflict, wait for a change in the conflicting stripe and try again
+        final Conflict conflict = new Conflict();
+        while (true) {
 
             // Check hold timeout
             final long lockerRemaining = this.checkHoldTimeout(owner);
             if (lockerRemaining == -1)
                 return LockResult.HOLD_TIMEOUT_EXPIRED;
 
-            // Create lock
-            Lock lock = new Lock(owner, minKey, maxKey, write);
+            // Look for conflicts, and add the lock if there are none
+            final boolean conflicted;
+            boolean added = false;
+            this.lockStripes(mask);
+            try {
+                conflicted = this.findConflict(lock, mask, conflict);
+                if (!conflicted)
+                    added = this.addLock(lock, mask, conflict.mergers);
+            } finally {
+                this.unlockStripes(mask);
+            }
+            if (!conflicted) {
+                if (added)
+                    return LockResult.SUCCESS;
+                this.doRelease(owner);                                  // our hold timeout expired in the meantime
+                return LockResult.HOLD_TIMEOUT_EXPIRED;
+            }
 
             // Wait for lockability, until the first one of:
             //  - Wait timeout
             //  - Locker's hold timeout
             //  - Lock owner's hold timeout
-            final LockChecker lockChecker = new LockChecker(lock);
-            if (!lockChecker.test()) {
-                long timeToWait = Math.min(waitTimeout, lockChecker.getTimeRemaining());
-                if (lockerRemaining != 0)
-                    timeToWait = Math.min(timeToWait, lockerRemaining);
-                if (!TimedWait.wait(this.lockObject, timeToWait, lockChecker))
+            long waitNanos = Long.MAX_VALUE;
+            if (waitTimeout != 0) {
+                waitNanos = waitDeadline - System.nanoTime();
+                if (waitNanos <= 0)
                     return LockResult.WAIT_TIMEOUT_EXPIRED;
             }
-
-            // Check hold timeout again
-            if (this.checkHoldTimeout(owner) == -1)
-                return LockResult.HOLD_TIMEOUT_EXPIRED;
-
-            // Merge the lock with other locks it can merge with, removing those locks in the process
-            for (Lock that : lockChecker.getMergers()) {
-                final Lock mergedLock = lock.mergeWith(that);
-                if (mergedLock != null) {
-                    this.locksByMin.remove(that);
-                    this.locksByMax.remove(that);
-                    owner.locks.remove(that);
-                    lock = mergedLock;
+            if (lockerRemaining != 0)
+                waitNanos = Math.min(waitNanos, lockerRemaining * 1000000L);
+            if (conflict.remaining != 0)
+                waitNanos = Math.min(waitNanos, conflict.remaining * 1000000L);
+            final Stripe stripe = this.stripes[conflict.stripe];
+            stripe.mutex.lockInterruptibly();
+            try {
+                if (stripe.version == conflict.version) {
+                    if (waitNanos == Long.MAX_VALUE)
+                        stripe.released.await();
+                    else
+                        stripe.released.awaitNanos(waitNanos);
                 }
+            } finally {
+                stripe.mutex.unlock();
             }
-
-            // Add lock
-            this.locksByMin.add(lock);
-            this.locksByMax.add(lock);
-            owner.locks.add(lock);
-
-            // Set hold timeout (if not already set)
-            if (!this.lockTimes.containsKey(owner)) {
-                final long currentTime = System.nanoTime() - this.nanoBasis;
-                this.lockTimes.put(owner, currentTime);
-            } else
-                assert this.lockTimes.get(owner) != null;
-
-            // Done
-            return LockResult.SUCCESS;
         }
     }
 
@@ -210,16 +244,18 @@ public class LockManager {
      * @return true if the range is locked for writes by {@code owner}
      */
     public boolean isLocked(LockOwner owner, byte[] minKey, byte[] maxKey, boolean write) {
-        synchronized (this.lockObject) {
-            Preconditions.checkArgument(owner != null, "null owner");
-            KeyRanges ranges = new KeyRanges(minKey, maxKey);
+        Preconditions.checkArgument(owner != null, "null owner");
+        final KeyRanges ranges = new KeyRanges(minKey, maxKey);
+        synchronized (owner) {
+            if (owner.expired)
+                return ranges.isEmpty();
             for (Lock lock : owner.locks) {
                 if (write && !lock.write)
                     continue;
                 ranges.remove(lock);
             }
-            return ranges.isEmpty();
         }
+        return ranges.isEmpty();
     }
 
     /**
@@ -238,21 +274,20 @@ public class LockManager {
      */
     public boolean release(LockOwner owner) {
         Preconditions.checkArgument(owner != null, "null owner");
-        synchronized (this.lockObject) {
 
-            // Check if hold timeout has alread expired; in any case, remove lock time
-            if (this.lockTimes.containsKey(owner)) {
-                final Long lockTime = this.lockTimes.remove(owner);
-                if (lockTime == null)
-                    return false;
-            }
+        // Check if hold timeout has alread expired; in any case, reset lock time
+        final boolean expired;
+        synchronized (owner) {
+            expired = owner.expired;
+            owner.expired = false;
+            owner.locked = false;
+        }
 
-            // Release all locks
-            this.doRelease(owner);
+        // Release all locks
+        this.doRelease(owner);
 
-            // Done
-            return true;
-        }
+        // Done
+        return !expired;
     }
 
     /**
@@ -269,97 +304,194 @@ public class LockManager {
      * @throws IllegalArgumentException if {@code owner} is null
      */
     public long checkHoldTimeout(LockOwner owner) {
-        synchronized (this.lockObject) {
-            if (this.holdTimeout == 0)
-                return 0;
-            if (!this.lockTimes.containsKey(owner))
+        Preconditions.checkArgument(owner != null, "null owner");
+        final long remaining = this.getHoldRemaining(owner);
+        if (remaining == -1)
+            this.doRelease(owner);
+        return remaining;
+    }
+
+// Internal methods
+
+    // Get owner's remaining hold time, marking it expired if necessary. Does not release the owner's locks.
+    private long getHoldRemaining(LockOwner owner) {
+        final long holdTimeout = this.holdTimeout;
+        if (holdTimeout == 0)
+            return 0;
+        synchronized (owner) {
+            if (!owner.locked)
                 return 0;
-            final Long lockTime = this.lockTimes.get(owner);
-            if (lockTime == null)
+            if (owner.expired)
                 return -1;
             final long currentTime = System.nanoTime() - this.nanoBasis;
-            final long holdDeadline = lockTime + this.holdTimeout * 1000000L;
+            final long holdDeadline = owner.lockTime + holdTimeout * 1000000L;
             final long remaining = holdDeadline - currentTime;
             if (remaining <= 0) {
-                this.lockTimes.put(owner, null);
-                this.doRelease(owner);
+                owner.expired = true;
                 return -1;
             }
             return (remaining + 999999L) / 1000000L;
         }
     }
 
-    // Release all locks held by owner. Assumes synchronized already on this.lockObject.
+    // Remove all of owner's locks from their stripes and wake up any waiters. Assumes no stripe mutexes are held.
     private void doRelease(LockOwner owner) {
-        for (Lock lock : owner.locks) {
-            this.locksByMin.remove(lock);
-            this.locksByMax.remove(lock);
+
+        // Grab owner's locks
+        final ArrayList<Lock> locks;
+        synchronized (owner) {
+            if (owner.locks.isEmpty())
+                return;
+            locks = new ArrayList<>(owner.locks);
+            owner.locks.clear();
         }
-        owner.locks.clear();
-        this.lockObject.notifyAll();
-    }
 
-    // Check whether we can lock, and fill the list of mergers and return zero if so. If not, return time remaining.
-    // Assumes synchronized already on this.lockObject.
-    private long checkLock(Lock lock, List<Lock> mergers) {
+        // Remove them from each stripe, one stripe at a time
+        long mask = 0;
+        for (Lock lock : locks)
+            mask |= this.getStripeMask(lock.getMin(), lock.getMax());
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            final Stripe stripe = this.stripes[Long.numberOfTrailingZeros(bits)];
+            stripe.mutex.lock();
+            try {
+                boolean removed = false;
+                for (Lock lock : locks)
+                    removed |= stripe.locks.remove(lock);
+                if (removed) {
+                    stripe.version++;
+                    stripe.released.signalAll();
+                }
+            } finally {
+                stripe.mutex.unlock();
+            }
+        }
+    }
 
-        // Get lock's min & max
-        final byte[] lockMin = lock.getMin();
+    // Look for a lock that conflicts with the given lock. If found, fill in conflict info and return true;
+    // otherwise, gather up the owner's overlapping locks as merge candidates and return false.
+    // Assumes the mutexes for all stripes in mask are held.
+    private boolean findConflict(Lock lock, long mask, Conflict conflict) {
         final byte[] lockMax = lock.getMax();
-
-    startOver:
-        while (true) {
+        conflict.mergers.clear();
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            final int index = Long.numberOfTrailingZeros(bits);
+            final Stripe stripe = this.stripes[index];
 
             // Get locks whose min is < lockMax
-            final NavigableSet<Lock> lhs = lockMax == null ? this.locksByMin :
-              this.locksByMin.headSet(Lock.getMinKey(lockMax, false), false);
-
-            // Get locks whose max is > lockMin
-            final NavigableSet<Lock> rhs = this.locksByMax.tailSet(Lock.getMaxKey(ByteUtil.getNextKey(lockMin), false), true);
+            final NavigableSet<Lock> lhs = lockMax == null ? stripe.locks :
+              stripe.locks.headSet(Lock.getMinKey(lockMax, false), false);
 
             // Find overlapping locks and check for conflicts
-            final HashSet<Lock> overlaps = new HashSet<>();
-            for (Lock other : lhs) {
+            for (Iterator<Lock> i = lhs.iterator(); i.hasNext(); ) {
+                final Lock other = i.next();
+                if (!lock.overlaps(other))
+                    continue;
 
-                // Does this lock overlap?
-                if (!rhs.contains(other))
+                // Our own locks are candidates for merging
+                if (other.owner == lock.owner) {
+                    conflict.mergers.add(other);
                     continue;
+                }
 
                 // Do this lock & other lock conflict?
-                if (lock.conflictsWith(other)) {
-
-                    // See if other lock's owner's hold timeout has expired
-                    assert this.lockTimes.containsKey(other.owner);
-                    final long remaining = this.checkHoldTimeout(other.owner);
-                    if (remaining == -1)
-                        continue startOver;
+                if (!lock.write && !other.write)
+                    continue;
 
-                    // Return time remaining until conflicting owner's hold timeout
-                    return Math.max(remaining, 1);
+                // See if other lock's owner's hold timeout has expired; if so, discard its lock from this stripe
+                final long remaining = this.getHoldRemaining(other.owner);
+                if (remaining == -1) {
+                    i.remove();
+                    stripe.version++;
+                    stripe.released.signalAll();
+                    continue;
                 }
 
-                // Add overlap
-                overlaps.add(other);
+                // Record conflict
+                conflict.stripe = index;
+                conflict.version = stripe.version;
+                conflict.remaining = remaining;
+                return true;
             }
+        }
+        return false;
+    }
 
-            //System.out.println(Thread.currentThread().getName() + ": LockChecker: BEFORE: lock = " + lock + "\n"
-            //+ "  lockByMin = " + this.locksByMin + "\n"
-            //+ "  lockByMax = " + this.locksByMax + "\n"
-            //+ "   overlaps = " + overlaps + "\n");
+    // Add lock, merging it with any mergers whose stripes are all held. Returns false if owner's hold timeout has expired.
+    // Assumes the mutexes for all stripes in mask are held.
+    private boolean addLock(Lock lock, long mask, ArrayList<Lock> mergers) {
+        final LockOwner owner = lock.owner;
+        synchronized (owner) {
 
-            // Find overlaps we can merge with
-            overlaps.stream()
-              .filter(other -> lock.mergeWith(other) != null)
-              .forEach(mergers::add);
+            // Check hold timeout again
+            if (owner.expired)
+                return false;
 
-            //System.out.println(Thread.currentThread().getName() + ": LockChecker: AFTER: lock = " + lock + "\n"
-            //+ "  lockByMin = " + this.locksByMin + "\n"
-            //+ "  lockByMax = " + this.locksByMax + "\n"
-            //+ "    mergers = " + mergers + "\n");
+            // Merge the lock with other locks it can merge with, removing those locks in the process
+            for (Lock that : mergers) {
+                if (!owner.locks.contains(that))                            // already merged (seen in multiple stripes)
+                    continue;
+                final Lock mergedLock = lock.mergeWith(that);
+                if (mergedLock == null)
+                    continue;
+                final long mergedMask = this.getStripeMask(mergedLock.getMin(), mergedLock.getMax());
+                if ((mergedMask & ~mask) != 0)                              // merged lock would involve other stripes
+                    continue;
+                for (long bits = mergedMask; bits != 0; bits &= bits - 1)
+                    this.stripes[Long.numberOfTrailingZeros(bits)].locks.remove(that);
+                owner.locks.remove(that);
+                lock = mergedLock;
+            }
 
-            // Done
-            return 0;
+            // Add lock
+            final long lockMask = this.getStripeMask(lock.getMin(), lock.getMax());
+            for (long bits = lockMask; bits != 0; bits &= bits - 1)
+                this.stripes[Long.numberOfTrailingZeros(bits)].locks.add(lock);
+            owner.locks.add(lock);
+
+            // Set hold timeout (if not already set)
+            if (!owner.locked) {
+                owner.lockTime = System.nanoTime() - this.nanoBasis;
+                owner.locked = true;
+            }
+        }
+        return true;
+    }
+
+    private void lockStripes(long mask) {
+        for (long bits = mask; bits != 0; bits &= bits - 1)
+            this.stripes[Long.numberOfTrailingZeros(bits)].mutex.lock();
+    }
+
+    private void unlockStripes(long mask) {
+        for (long bits = mask; bits != 0; bits &= bits - 1)
+            this.stripes[Long.numberOfTrailingZeros(bits)].mutex.unlock();
+    }
+
+    // Get the stripes containing any key in the range [minKey, maxKey) as a bit mask
+    private long getStripeMask(byte[] minKey, byte[] maxKey) {
+        final long minPrefix = LockManager.getPrefix(minKey);
+        final long maxPrefix = maxKey != null ? LockManager.getPrefix(maxKey) : ~0L;
+        if (Long.compareUnsigned(maxPrefix - minPrefix, this.stripes.length) >= 0)
+            return this.allStripes;
+        long mask = 0;
+        for (long prefix = minPrefix; ; prefix++) {
+            mask |= 1L << this.getStripe(prefix);
+            if (prefix == maxPrefix)
+                break;
         }
+        return mask;
+    }
+
+    private int getStripe(long prefix) {
+        return (int)(((prefix * 0x9e3779b97f4a7c15L) >>> 32) % this.stripes.length);
+    }
+
+    // Get the first PREFIX_LENGTH bytes of key, zero-padded, as an unsigned value; this is monotonic in key
+    private static long getPrefix(byte[] key) {
+        long prefix = 0;
+        for (int i = 0; i < PREFIX_LENGTH; i++)
+            prefix = (prefix << 8) | (i < key.length ? key[i] & 0xff : 0);
+        return prefix;
     }
 
 // LockResult
@@ -385,37 +517,25 @@ public class LockManager {
         HOLD_TIMEOUT_EXPIRED;
     }
 
-// LockChecker predicate
-
-    private class LockChecker implements Predicate {
-
-        private final Lock lock;
-        private final ArrayList<Lock> mergers = new ArrayList<>();
+// Stripe
 
-        private long timeRemaining;
+    private static final class Stripe {
 
-        LockChecker(Lock lock) {
-            this.lock = lock;
-        }
+        final ReentrantLock mutex = new ReentrantLock();
+        final Condition released = this.mutex.newCondition();
+        final TreeSet<Lock> locks = new TreeSet<>(STRIPE_COMPARATOR);
 
-        public List<Lock> getMergers() {
-            return this.mergers;
-        }
+        long version;                                                       // incremented when any lock is removed
+    }
 
-        public long getTimeRemaining() {
-            return this.timeRemaining;
-        }
+// Conflict
 
-        @Override
-        public boolean test() {
+    private static final class Conflict {
 
-            // Reset state
-            this.mergers.clear();
+        final ArrayList<Lock> mergers = new ArrayList<>();
 
-            // See if we can lock
-            this.timeRemaining = LockManager.this.checkLock(this.lock, this.mergers);
-            return this.timeRemaining == 0;
-        }
+        int stripe;                                                         // stripe where conflict was found
+        long version;                                                       // that stripe's version at the time
+        long remaining;                                                     // conflicting owner's remaining hold time
     }
 }
-
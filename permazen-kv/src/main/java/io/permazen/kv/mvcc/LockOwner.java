@@ -6,6 +6,7 @@
 package io.permazen.kv.mvcc;
 
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the owner of a {@link Lock} managed by a {@link LockManager}.
@@ -17,7 +18,16 @@ import java.util.HashSet;
  */
 public final class LockOwner {
 
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    // Unique ID; used to order otherwise identical locks having different owners
+    final long id = NEXT_ID.getAndIncrement();
+
+    // The following fields are protected by this instance's monitor
     final HashSet<Lock> locks = new HashSet<>();
+    boolean locked;                                                         // true if lockTime is valid
+    boolean expired;                                                        // true if hold timeout has expired
+    long lockTime;                                                          // time of first lock (relative to nanoBasis)
 
     /**
      * Constructor.
@@ -25,4 +35,3 @@ public final class LockOwner {
     public LockOwner() {
     }
 }
-
@@ -12,12 +12,18 @@ import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
@@ -191,11 +197,173 @@ public class MutableView extends AbstractKVStore implements Cloneable {
         return value;
     }
 
+    /**
+     * Get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * Keys that intersect a previous write are resolved locally; all other keys are read from the underlying
+     * {@link KVStore} using a single invocation of {@link KVStore#getMany getMany()}, and recorded as reads
+     * exactly as {@link #get get()} would record them.
+     */
+    @Override
+    public synchronized List<byte[]> getMany(List<byte[]> keys) {
+
+        // Sanity check
+        Preconditions.checkArgument(keys != null, "null keys");
+
+        // Resolve keys from writes where possible, and gather the rest
+        final ArrayList<byte[]> readKeys = new ArrayList<>();
+        final int[] readIndexes = new int[keys.size()];
+        final ArrayList<byte[]> values = this.resolveFromWrites(keys, readKeys, readIndexes);
+        if (readKeys.isEmpty())
+            return values;
+
+        // Read from underlying k/v store
+        final List<byte[]> readValues = this.kv.getMany(readKeys);
+
+        // Record the reads
+        for (byte[] key : readKeys)
+            this.recordReads(key, ByteUtil.getNextKey(key));
+
+        // Apply counter adjustments
+        this.applyReadValues(values, readKeys, readIndexes, readValues);
+
+        // Done
+        return values;
+    }
+
+    /**
+     * Asynchronously get the value associated with the given key, if any.
+     *
+     * <p>
+     * If the key intersects a previous write, an already completed future is returned; otherwise, the read
+     * is passed through to the underlying {@link KVStore}'s {@link KVStore#getAsync getAsync()} method,
+     * and recorded immediately.
+     */
+    @Override
+    public synchronized CompletableFuture<byte[]> getAsync(byte[] key) {
+
+        // Check puts
+        final byte[] value = this.writes.getPuts().get(key);
+        if (value != null)
+            return CompletableFuture.completedFuture(this.applyCounterAdjustment(key, value).clone());
+
+        // Check removes
+        if (this.writes.getRemoves().contains(key))
+            return CompletableFuture.completedFuture(null);
+
+        // Record the read
+        this.recordReads(key, ByteUtil.getNextKey(key));
+
+        // Read from underlying k/v store and apply counter adjustments
+        return this.kv.getAsync(key).thenApply(readValue ->
+          readValue != null ? this.applyCounterAdjustment(key, readValue).clone() : null);
+    }
+
+    /**
+     * Asynchronously get the values associated with each of the given keys, if any.
+     *
+     * <p>
+     * Keys that intersect a previous write are resolved locally; all other keys are read from the underlying
+     * {@link KVStore} using a single invocation of {@link KVStore#getManyAsync getManyAsync()}, and recorded
+     * immediately.
+     */
+    @Override
+    public synchronized CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+
+        // Sanity check
+        Preconditions.checkArgument(keys != null, "null keys");
+
+        // Resolve keys from writes where possible, and gather the rest
+        final ArrayList<byte[]> readKeys = new ArrayList<>();
+        final int[] readIndexes = new int[keys.size()];
+        final ArrayList<byte[]> values = this.resolveFromWrites(keys, readKeys, readIndexes);
+        if (readKeys.isEmpty())
+            return CompletableFuture.completedFuture(values);
+
+        // Record the reads
+        for (byte[] key : readKeys)
+            this.recordReads(key, ByteUtil.getNextKey(key));
+
+        // Read from underlying k/v store and apply counter adjustments
+        return this.kv.getManyAsync(readKeys).thenApply(readValues -> {
+            this.applyReadValues(values, readKeys, readIndexes, readValues);
+            return values;
+        });
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the smallest key greater than or equal to the given minimum, if any.
+     *
+     * <p>
+     * This is equivalent to {@link #getRangeAsync getRangeAsync()} with a limit of one.
+     */
+    @Override
+    public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+            return CompletableFuture.completedFuture(null);
+        return this.getRangeAsync(minKey, maxKey, false, 1).thenApply(batch -> batch.isEmpty() ? null : batch.get(0));
+    }
+
+    /**
+     * Asynchronously get the key/value pair having the largest key strictly less than the given maximum, if any.
+     *
+     * <p>
+     * This is equivalent to {@link #getRangeAsync getRangeAsync()} in reverse with a limit of one.
+     */
+    @Override
+    public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) >= 0)
+            return CompletableFuture.completedFuture(null);
+        return this.getRangeAsync(minKey, maxKey, true, 1).thenApply(batch -> batch.isEmpty() ? null : batch.get(0));
+    }
+
+    /**
+     * Asynchronously retrieve a batch of key/value pairs from the specified range.
+     *
+     * <p>
+     * Pairs are read from the underlying {@link KVStore} using {@link KVStore#getRangeAsync getRangeAsync()} and merged
+     * with previous writes; if removed keys leave the batch short, more are read. The portion of the range actually
+     * covered is recorded as each underlying batch arrives.
+     */
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit <= 0");
+        return this.readRangeAsync(minKey != null ? minKey : ByteUtil.EMPTY, maxKey, reverse, limit, new ArrayList<>(1));
+    }
+
     @Override
     public synchronized CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
         return new RangeIterator(minKey, maxKey, reverse);
     }
 
+    /**
+     * Estimate the size of the specified range.
+     *
+     * <p>
+     * The estimate is derived from the underlying {@link KVStore}'s estimate; if there are any outstanding writes,
+     * puts within the range are added in and the result is marked as approximate. Reads are not recorded.
+     */
+    @Override
+    public synchronized SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+
+        // Get underlying estimate
+        final SizeEstimate estimate = this.kv.estimateSize(minKey, maxKey);
+        if (estimate == null || this.writes.isEmpty())
+            return estimate;
+
+        // Add in puts; we don't know which keys they overwrite or how many keys have been removed
+        NavigableMap<byte[], byte[]> puts = this.writes.getPuts();
+        if (minKey != null)
+            puts = puts.tailMap(minKey, true);
+        if (maxKey != null)
+            puts = puts.headMap(maxKey, false);
+        long numBytes = 0;
+        for (Map.Entry<byte[], byte[]> entry : puts.entrySet())
+            numBytes += entry.getKey().length + entry.getValue().length;
+        return estimate.add(new SizeEstimate(puts.size(), numBytes, false));
+    }
+
     @Override
     public synchronized void put(byte[] key, byte[] value) {
 
@@ -371,6 +539,120 @@ public class MutableView extends AbstractKVStore implements Cloneable {
         return adjustedValue;
     }
 
+    // Resolve the given keys from writes where possible; gather the other keys (and their indexes) into readKeys and readIndexes
+    private synchronized ArrayList<byte[]> resolveFromWrites(List<byte[]> keys, List<byte[]> readKeys, int[] readIndexes) {
+        final int numKeys = keys.size();
+        final ArrayList<byte[]> values = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            final byte[] key = keys.get(i);
+
+            // Check puts
+            final byte[] value = this.writes.getPuts().get(key);
+            if (value != null) {
+                values.add(this.applyCounterAdjustment(key, value).clone());
+                continue;
+            }
+
+            // Check removes
+            values.add(null);
+            if (this.writes.getRemoves().contains(key))
+                continue;
+
+            // Defer to underlying k/v store
+            readIndexes[readKeys.size()] = i;
+            readKeys.add(key);
+        }
+        return values;
+    }
+
+    // Store values read from the underlying k/v store into their corresponding slots, applying any counter adjustments
+    private synchronized void applyReadValues(List<byte[]> values,
+      List<byte[]> readKeys, int[] readIndexes, List<byte[]> readValues) {
+        assert readValues.size() == readKeys.size();
+        for (int i = 0; i < readKeys.size(); i++) {
+            final byte[] value = readValues.get(i);
+            if (value != null)                                      // we can ignore adjustments of missing values
+                values.set(readIndexes[i], this.applyCounterAdjustment(readKeys.get(i), value).clone());
+        }
+    }
+
+    // Read [minKey, maxKey) from the underlying k/v store and merge with writes into "batch", repeating until it's full
+    private CompletableFuture<List<KVPair>> readRangeAsync(byte[] minKey, byte[] maxKey,
+      boolean reverse, int limit, ArrayList<KVPair> batch) {
+        final int remaining = limit - batch.size();
+        final KVStore kvstore;
+        synchronized (this) {
+            kvstore = this.kv;
+        }
+        return kvstore.getRangeAsync(minKey, maxKey, reverse, remaining).thenCompose(pairs -> {
+
+            // Determine the portion of the range covered by the underlying batch
+            final boolean exhausted = pairs.size() < remaining;
+            final byte[] lastKey = !exhausted ? pairs.get(pairs.size() - 1).getKey() : null;
+            final byte[] coveredMin = reverse && !exhausted ? lastKey : minKey;
+            final byte[] coveredMax = !reverse && !exhausted ? ByteUtil.getNextKey(lastKey) : maxKey;
+
+            // Merge with writes; if there's still room, continue with the rest of the range
+            if (this.mergeRange(pairs, coveredMin, coveredMax, reverse, limit, batch) || exhausted)
+                return CompletableFuture.completedFuture(batch);
+            return reverse ?
+              this.readRangeAsync(minKey, coveredMin, true, limit, batch) :
+              this.readRangeAsync(coveredMax, maxKey, false, limit, batch);
+        });
+    }
+
+    // Merge underlying k/v pairs covering [minKey, maxKey) with writes into "batch" and record the reads; return true if full
+    private synchronized boolean mergeRange(List<KVPair> pairs, byte[] minKey, byte[] maxKey,
+      boolean reverse, int limit, List<KVPair> batch) {
+
+        // Get the puts in the covered range, in iteration order
+        NavigableMap<byte[], byte[]> puts = maxKey != null ?
+          this.writes.getPuts().subMap(minKey, true, maxKey, false) : this.writes.getPuts().tailMap(minKey, true);
+        if (reverse)
+            puts = puts.descendingMap();
+        final Iterator<Map.Entry<byte[], byte[]>> putIterator = puts.entrySet().iterator();
+        Map.Entry<byte[], byte[]> put = putIterator.hasNext() ? putIterator.next() : null;
+
+        // Merge, skipping removed k/v pairs; if there's a tie, the put wins
+        final KeyRanges removes = this.writes.getRemoves();
+        int index = 0;
+        while (batch.size() < limit) {
+            while (index < pairs.size() && removes.contains(pairs.get(index).getKey()))
+                index++;
+            final KVPair kvpair = index < pairs.size() ? pairs.get(index) : null;
+            if (kvpair == null && put == null)
+                break;
+            final int diff = kvpair == null ? -1 : put == null ? 1 : reverse ?
+              ByteUtil.compare(kvpair.getKey(), put.getKey()) : ByteUtil.compare(put.getKey(), kvpair.getKey());
+            if (diff <= 0) {
+                batch.add(new KVPair(put.getKey().clone(), this.applyCounterAdjustment(put.getKey(), put.getValue()).clone()));
+                put = putIterator.hasNext() ? putIterator.next() : null;
+                if (diff == 0)
+                    index++;                                    // the kvstore key was overridden by the put key
+            } else {
+                final byte[] value = kvpair.getValue();
+                final byte[] adjustedValue = this.applyCounterAdjustment(kvpair.getKey(), value);
+                batch.add(adjustedValue != value ? new KVPair(kvpair.getKey(), adjustedValue) : kvpair);
+                index++;
+            }
+        }
+
+        // Record that we read everything up through the last pair returned, or the entire covered range
+        final boolean full = batch.size() == limit;
+        byte[] readMin = minKey;
+        byte[] readMax = maxKey;
+        if (full) {
+            final byte[] lastKey = batch.get(batch.size() - 1).getKey();
+            if (reverse)
+                readMin = lastKey;
+            else
+                readMax = ByteUtil.getNextKey(lastKey);
+        }
+        if (readMax == null || ByteUtil.compare(readMin, readMax) < 0)
+            this.recordReads(readMin, readMax);
+        return full;
+    }
+
     // Record that keys were read in the range [minKey, maxKey)
     private synchronized void recordReads(byte[] minKey, byte[] maxKey) {
 
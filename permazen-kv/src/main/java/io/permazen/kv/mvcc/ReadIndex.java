@@ -0,0 +1,270 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvcc;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * An interval index over the key ranges read by a set of owners (typically, open transactions), supporting
+ * efficient lookup of the owners whose reads overlap a set of {@link Mutations} or a {@link KeyRange}.
+ *
+ * <p>
+ * Each owner's key ranges are stored in a treap ordered by minimum key, where each node is augmented with the
+ * maximum upper bound in its subtree. Adding or removing a range takes O(log n) expected time, and finding
+ * all of the ranges that overlap a given range takes O(k + log n) expected time, where n is the total number of
+ * ranges and k is the number of overlapping ranges.
+ *
+ * <p>
+ * The index is conservative: an owner's ranges may overlap, and ranges are only removed when the owner is removed.
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @param <T> owner type
+ */
+@NotThreadSafe
+public class ReadIndex<T> {
+
+    private final HashMap<T, ArrayList<Node<T>>> ownerNodes = new HashMap<>();
+    private final Random random = new Random();
+
+    private Node<T> root;
+    private long nextSeq;
+    private int size;
+
+    /**
+     * Get the total number of key ranges in this index.
+     *
+     * @return number of ranges
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of owners having at least one key range in this index.
+     *
+     * @return number of owners
+     */
+    public int getNumOwners() {
+        return this.ownerNodes.size();
+    }
+
+    /**
+     * Add the given key ranges to this index on behalf of the given owner.
+     *
+     * @param owner owner of the ranges
+     * @param ranges key ranges
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void add(T owner, KeyRanges ranges) {
+        Preconditions.checkArgument(owner != null, "null owner");
+        Preconditions.checkArgument(ranges != null, "null ranges");
+        for (KeyRange range : ranges) {
+            if (range.isEmpty())
+                continue;
+            final Node<T> node = new Node<>(owner, range.getMin(), range.getMax(), this.nextSeq++, this.random.nextInt());
+            this.root = this.insert(this.root, node);
+            this.ownerNodes.computeIfAbsent(owner, o -> new ArrayList<>(1)).add(node);
+            this.size++;
+        }
+    }
+
+    /**
+     * Remove all key ranges associated with the given owner from this index.
+     *
+     * @param owner owner of the ranges
+     * @throws IllegalArgumentException if {@code owner} is null
+     */
+    public void remove(T owner) {
+        Preconditions.checkArgument(owner != null, "null owner");
+        final ArrayList<Node<T>> nodes = this.ownerNodes.remove(owner);
+        if (nodes == null)
+            return;
+        for (Node<T> node : nodes) {
+            this.root = this.delete(this.root, node);
+            this.size--;
+        }
+    }
+
+    /**
+     * Remove all key ranges from this index.
+     */
+    public void clear() {
+        this.ownerNodes.clear();
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Find all owners having at least one key range that intersects the given key range.
+     *
+     * @param range key range to check
+     * @param owners set to which matching owners are added
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void findOverlaps(KeyRange range, Set<T> owners) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(owners != null, "null owners");
+        if (this.root != null && !range.isEmpty())
+            this.findOverlaps(this.root, range.getMin(), range.getMax(), owners);
+    }
+
+    /**
+     * Find all owners having at least one key range that intersects the keys affected by the given {@link Mutations}.
+     *
+     * @param mutations mutations to check
+     * @param owners set to which matching owners are added
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void findOverlaps(Mutations mutations, Set<T> owners) {
+        Preconditions.checkArgument(mutations != null, "null mutations");
+        Preconditions.checkArgument(owners != null, "null owners");
+        if (this.root == null)
+            return;
+        for (KeyRange remove : mutations.getRemoveRanges())
+            this.findOverlaps(this.root, remove.getMin(), remove.getMax(), owners);
+        for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs())
+            this.findOverlaps(this.root, entry.getKey(), ByteUtil.getNextKey(entry.getKey()), owners);
+        for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs())
+            this.findOverlaps(this.root, entry.getKey(), ByteUtil.getNextKey(entry.getKey()), owners);
+    }
+
+// Internal methods
+
+    // Find all ranges in the subtree that intersect [min, max)
+    private void findOverlaps(Node<T> node, byte[] min, byte[] max, Set<T> owners) {
+        while (node != null) {
+
+            // If nothing in this subtree extends past min, there are no overlaps here
+            if (KeyRange.compare(node.subtreeMax, min) <= 0)
+                return;
+
+            // Search left subtree
+            this.findOverlaps(node.left, min, max, owners);
+
+            // If this node starts at or after max, so does everything in the right subtree
+            if (KeyRange.compare(node.min, max) >= 0)
+                return;
+
+            // Check this node
+            if (KeyRange.compare(node.max, min) > 0)
+                owners.add(node.owner);
+
+            // Search right subtree
+            node = node.right;
+        }
+    }
+
+    private Node<T> insert(Node<T> parent, Node<T> node) {
+        if (parent == null)
+            return node;
+        if (node.compareTo(parent) < 0) {
+            parent.left = this.insert(parent.left, node);
+            if (parent.left.priority > parent.priority)
+                parent = this.rotateRight(parent);
+        } else {
+            parent.right = this.insert(parent.right, node);
+            if (parent.right.priority > parent.priority)
+                parent = this.rotateLeft(parent);
+        }
+        parent.update();
+        return parent;
+    }
+
+    private Node<T> delete(Node<T> parent, Node<T> node) {
+        assert parent != null;
+        if (parent == node) {
+            if (node.left == null)
+                return node.right;
+            if (node.right == null)
+                return node.left;
+            if (node.left.priority > node.right.priority) {
+                parent = this.rotateRight(node);
+                parent.right = this.delete(parent.right, node);
+            } else {
+                parent = this.rotateLeft(node);
+                parent.left = this.delete(parent.left, node);
+            }
+        } else if (node.compareTo(parent) < 0)
+            parent.left = this.delete(parent.left, node);
+        else
+            parent.right = this.delete(parent.right, node);
+        parent.update();
+        return parent;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        final Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        final Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+// Node
+
+    private static final class Node<T> implements Comparable<Node<T>> {
+
+        final T owner;
+        final byte[] min;
+        final byte[] max;                               // null means +infinity
+        final long seq;                                 // breaks ties between equal minimums
+        final int priority;
+
+        Node<T> left;
+        Node<T> right;
+        byte[] subtreeMax;                              // maximum of all max's in this subtree; null means +infinity
+
+        Node(T owner, byte[] min, byte[] max, long seq, int priority) {
+            this.owner = owner;
+            this.min = min;
+            this.max = max;
+            this.seq = seq;
+            this.priority = priority;
+            this.subtreeMax = max;
+        }
+
+        void update() {
+            byte[] subtreeMax = this.max;
+            if (this.left != null && KeyRange.compare(this.left.subtreeMax, subtreeMax) > 0)
+                subtreeMax = this.left.subtreeMax;
+            if (this.right != null && KeyRange.compare(this.right.subtreeMax, subtreeMax) > 0)
+                subtreeMax = this.right.subtreeMax;
+            this.subtreeMax = subtreeMax;
+        }
+
+        @Override
+        public int compareTo(Node<T> that) {
+            final int diff = ByteUtil.compare(this.min, that.min);
+            if (diff != 0)
+                return diff;
+            return Long.compare(this.seq, that.seq);
+        }
+    }
+}
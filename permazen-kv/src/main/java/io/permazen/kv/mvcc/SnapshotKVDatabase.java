@@ -10,16 +10,24 @@ import com.google.common.util.concurrent.ListenableFuture;
 
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVException;
+import io.permazen.kv.KVPair;
 import io.permazen.kv.KVTransactionException;
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.RetryTransactionException;
 import io.permazen.kv.StaleTransactionException;
+import io.permazen.kv.util.BulkLoader;
 import io.permazen.kv.util.CloseableForwardingKVStore;
 import io.permazen.kv.util.KeyWatchTracker;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -47,7 +55,33 @@ import org.slf4j.LoggerFactory;
  * the transaction load supported by this class is limited to what can fit in memory.
  *
  * <p>
- * {@linkplain SnapshotKVTransaction#watchKey Key watches} are supported.
+ * To keep commits fast when there are many open transactions, the keys read by open transactions are tracked in a
+ * shared interval index, so that a commit only needs to perform a full conflict check against transactions whose
+ * reads actually overlap the committed writes. Other open transactions are not visited by the commit at all; instead,
+ * each one checks any reads it has made since it was last checked against the intervening commits, and moves on
+ * to the new version, the next time it is accessed. A transaction that stays idle while many other transactions commit
+ * is eventually brought up to date by a commit, so that the commits it has not yet seen need not be retained forever.
+ *
+ * <p>
+ * {@linkplain SnapshotKVTransaction#watchKey Key watches} and {@linkplain SnapshotKVTransaction#watchRange range watches}
+ * are supported.
+ *
+ * <p><b>Group Commit</b></p>
+ *
+ * <p>
+ * Each commit that contains mutations requires a {@linkplain AtomicKVStore#mutate synchronous write} to the underlying
+ * key/value store, which typically implies an {@code fsync()}. To avoid one sync per transaction under concurrent write load,
+ * transactions that commit at about the same time are grouped together: while one thread is writing a batch, other
+ * committing threads queue up behind it, and the next batch combines all of their mutations into a single synchronous write.
+ * No transaction's {@link SnapshotKVTransaction#commit commit()} returns until its batch has been written.
+ * Conflict detection is unaffected: the transactions within a batch are checked in order, exactly as if they had been
+ * committed one at a time.
+ *
+ * <p>
+ * By default, a batch contains whatever transactions are waiting when the previous batch completes. Optionally, the
+ * {@linkplain #setCommitBatchWindow commit batch window} may be set to wait a short time for more transactions to arrive
+ * before each batch is written, trading commit latency for fewer syncs. The number of transactions in a batch is
+ * limited by the {@linkplain #setMaxCommitBatchSize maximum commit batch size}.
  *
  * @see AtomicKVDatabase
  */
@@ -55,6 +89,24 @@ import org.slf4j.LoggerFactory;
 public abstract class SnapshotKVDatabase implements KVDatabase {
 
 // Locking order: (1) SnapshotKVTransaction, (2) SnapshotKVDatabase, (3) MutableView
+// The commit queue lock is never held while acquiring any other lock
+
+    /**
+     * Default maximum number of transactions written together in one batch.
+     *
+     * @see #setMaxCommitBatchSize
+     */
+    public static final int DEFAULT_MAX_COMMIT_BATCH_SIZE = 256;
+
+    /**
+     * Default commit batch window in microseconds.
+     *
+     * @see #setCommitBatchWindow
+     */
+    public static final int DEFAULT_COMMIT_BATCH_WINDOW = 0;
+
+    // Maximum number of commits kept for transactions that have not been rebased since
+    private static final int MAX_COMMIT_HISTORY = 1024;
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -64,13 +116,17 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
    of the underlying key/value store on which all of these open transactions are based. Each transaction has its
    own MutableView of this.snapshot.
 
-   this.snapshot has one reference for being non-null; this reference is shared by all open transactions (if any).
-   It also has one reference for each mutableSnapshot() based on it (see createMutableSnapshot()); these references are
-   the responsibility of whoever called mutableSnapshot().
+   this.snapshot has one reference for being non-null, plus one reference for each open transaction whose MutableView
+   is currently based on it (see SnapshotKVTransaction.viewSnapshot). It also has one reference for each mutableSnapshot()
+   based on it (see createMutableSnapshot()); these references are the responsibility of whoever called mutableSnapshot().
 
-   When a transaction is committed, the mutations are applied to the key/value store and this.snapshot is discarded
-   and replaced with a new snapshot of the key/value store, and the MutableView's associated with all other open
-   (and non-conflicting) transactions are updated with the new snapshot.
+   When a transaction is committed, the mutations are applied to the key/value store and this.snapshot is discarded;
+   a new snapshot of the key/value store will be created on demand. Open transactions whose indexed reads overlap the
+   committed writes are checked for conflicts immediately; all other open transactions are only checked and "rebased"
+   onto the new snapshot lazily, the next time they are accessed (or commit). Until then, they continue to read from
+   their old snapshot, which remains valid because they still hold a reference to it. To make this possible, the
+   commits since the oldest version on which any open transaction's view is based are kept in this.commitHistory.
+   If that history grows too long, the transactions holding it back are rebased eagerly.
 
 */
 
@@ -78,17 +134,32 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
     private final HashSet<SnapshotKVTransaction> transactions = new HashSet<>();
     @GuardedBy("this")
     private SnapshotRefs snapshot;                                          // created on-demand for each new version
+    @GuardedBy("this")
+    private final ReadIndex<SnapshotKVTransaction> readIndex = new ReadIndex<>();   // indexed reads of open transactions
+    @GuardedBy("this")
+    private final TreeMap<Long, HashSet<SnapshotKVTransaction>> viewVersions = new TreeMap<>();  // open tx's by view version
+    @GuardedBy("this")
+    private final ArrayDeque<PendingCommit> commitHistory = new ArrayDeque<>(); // commits not yet seen by some open tx's
 
     @GuardedBy("this")
     private AtomicKVStore kvstore;
     @GuardedBy("this")
     private KeyWatchTracker keyWatchTracker;
     @GuardedBy("this")
-    private long currentVersion;
+    volatile long currentVersion;                                           // also read without locking by SnapshotKVTransaction
     @GuardedBy("this")
     private boolean started;
     @GuardedBy("this")
     private boolean stopping;
+    @GuardedBy("this")
+    private int maxCommitBatchSize = DEFAULT_MAX_COMMIT_BATCH_SIZE;
+    @GuardedBy("this")
+    private int commitBatchWindow = DEFAULT_COMMIT_BATCH_WINDOW;
+
+    @GuardedBy("commitQueue")
+    private final ArrayDeque<PendingCommit> commitQueue = new ArrayDeque<>();
+    @GuardedBy("commitQueue")
+    private boolean committing;                                             // some thread is writing a commit batch
 
 // Constructors
 
@@ -135,6 +206,60 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         this.kvstore = kvstore;
     }
 
+    /**
+     * Get the maximum number of transactions that may be written together in a single batch.
+     *
+     * @return maximum commit batch size
+     */
+    public synchronized int getMaxCommitBatchSize() {
+        return this.maxCommitBatchSize;
+    }
+
+    /**
+     * Configure the maximum number of transactions that may be written together in a single batch.
+     *
+     * <p>
+     * Setting this property to one disables group commit, so that every transaction is synchronously written separately.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_MAX_COMMIT_BATCH_SIZE}.
+     *
+     * @param maxCommitBatchSize maximum commit batch size
+     * @throws IllegalArgumentException if {@code maxCommitBatchSize} is less than one
+     */
+    public synchronized void setMaxCommitBatchSize(int maxCommitBatchSize) {
+        Preconditions.checkArgument(maxCommitBatchSize > 0, "maxCommitBatchSize <= 0");
+        this.maxCommitBatchSize = maxCommitBatchSize;
+    }
+
+    /**
+     * Get the commit batch window in microseconds.
+     *
+     * @return commit batch window in microseconds
+     */
+    public synchronized int getCommitBatchWindow() {
+        return this.commitBatchWindow;
+    }
+
+    /**
+     * Configure the commit batch window in microseconds.
+     *
+     * <p>
+     * This is the maximum amount of time to wait for additional committing transactions to arrive before writing
+     * a batch, unless the batch fills up first. A value of zero means batches contain only those transactions that
+     * queued up while the previous batch was being written, so no additional commit latency is introduced.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_COMMIT_BATCH_WINDOW}.
+     *
+     * @param commitBatchWindow commit batch window in microseconds
+     * @throws IllegalArgumentException if {@code commitBatchWindow} is negative
+     */
+    public synchronized void setCommitBatchWindow(int commitBatchWindow) {
+        Preconditions.checkArgument(commitBatchWindow >= 0, "commitBatchWindow < 0");
+        this.commitBatchWindow = commitBatchWindow;
+    }
+
     /**
      * Get the current MVCC version number.
      *
@@ -178,6 +303,7 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
                 this.snapshot.unref();
                 this.snapshot = null;
             }
+            this.commitHistory.clear();
             this.kvstore.stop();
             if (this.keyWatchTracker != null) {
                 this.keyWatchTracker.close();
@@ -206,10 +332,12 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         Preconditions.checkState(!this.stopping, "stopping");
 
         // Create new transaction
-        final MutableView view = new MutableView(this.getCurrentSnapshot().getKVStore());
+        final SnapshotRefs snapshotRefs = this.getCurrentSnapshot();
+        final MutableView view = new MutableView(snapshotRefs.getKVStore(), new IndexedReads(), new Writes());
         final SnapshotKVTransaction tx = this.createSnapshotKVTransaction(view, this.currentVersion);
         assert !this.transactions.contains(tx);
         this.transactions.add(tx);
+        this.attachView(tx, snapshotRefs);
         if (this.log.isTraceEnabled())
             this.log.trace("created new transaction " + tx + " (new total " + this.transactions.size() + ")");
 
@@ -226,6 +354,13 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         return this.keyWatchTracker.register(key);
     }
 
+    synchronized ListenableFuture<Void> watchRange(KeyRange range) {
+        Preconditions.checkState(this.started, "not started");
+        if (this.keyWatchTracker == null)
+            this.keyWatchTracker = new KeyWatchTracker();
+        return this.keyWatchTracker.register(range);
+    }
+
 // Object
 
     @Override
@@ -300,13 +435,38 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
     /**
      * Commit a transaction.
      */
-    synchronized void commit(SnapshotKVTransaction tx, boolean readOnly) {
+    void commit(SnapshotKVTransaction tx, boolean readOnly) {
         assert Thread.holdsLock(tx);
         try {
-            this.doCommit(tx, readOnly);
+
+            // Prepare transaction for commit; if there's nothing to write, we're done
+            final PendingCommit pending;
+            final int maxBatchSize;
+            final int batchWindow;
+            synchronized (this) {
+                if ((pending = this.prepareCommit(tx, readOnly)) == null)
+                    return;
+                maxBatchSize = this.maxCommitBatchSize;
+                batchWindow = this.commitBatchWindow;
+            }
+
+            // Wait for our batch to be written, writing it ourselves if nobody else is
+            this.groupCommit(pending, maxBatchSize, batchWindow);
+
+            // Check result
+            if (pending.error != null)
+                throw pending.error instanceof KVException ? ((KVException)pending.error).duplicate() : pending.error;
+            if (!pending.committed) {
+                synchronized (this) {
+                    tx.throwErrorIfAny();
+                    throw this.logException(new StaleTransactionException(tx));
+                }
+            }
         } finally {
-            tx.error = null;                                // from this point on, throw a StaleTransactionException if accessed
-            this.cleanupTransaction(tx);
+            synchronized (this) {
+                tx.error = null;                            // from this point on, throw a StaleTransactionException if accessed
+                this.cleanupTransaction(tx);
+            }
         }
     }
 
@@ -323,6 +483,20 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
 // SnapshotKVTransaction Methods
 
+    /**
+     * Rebase a transaction whose view is based on an older version, if it's still open.
+     *
+     * @throws RetryTransactionException if the transaction conflicts with a commit made since
+     */
+    synchronized void rebaseIfStale(SnapshotKVTransaction tx) {
+        assert Thread.holdsLock(tx);
+        if (tx.error != null || !this.transactions.contains(tx))
+            return;
+        if (!this.rebase(tx, false))
+            tx.throwErrorIfAny();
+        this.trimHistory();
+    }
+
     synchronized CloseableKVStore createMutableSnapshot(Writes writes) {
         final SnapshotRefs snapshotRefs = this.getCurrentSnapshot();
         snapshotRefs.ref();
@@ -332,7 +506,8 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
 // Internal methods
 
-    private synchronized void doCommit(SnapshotKVTransaction tx, boolean readOnly) {
+    // Prepare transaction for commit, returning null if there are no mutations to write
+    private PendingCommit prepareCommit(SnapshotKVTransaction tx, boolean readOnly) {
 
         // Sanity checks
         assert Thread.holdsLock(tx);
@@ -344,19 +519,17 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
               + tx.baseVersion + " (current version is " + this.currentVersion + ")");
         }
 
-        // Remove transaction; if not there, it's already been invalidated
-        if (!this.transactions.remove(tx)) {
+        // Check transaction is still open; if not, it's already been invalidated
+        if (!this.transactions.contains(tx)) {
             tx.throwErrorIfAny();
             throw this.logException(new StaleTransactionException(tx));
         }
         assert tx.error == null;
-        assert this.snapshot != null;
 
-        // Grab transaction reads & writes, set to immutable
+        // Grab transaction writes, set to immutable
         final Writes txWrites;
         synchronized (tx.view) {
             txWrites = tx.getMutableView().getWrites();
-            tx.view.disableReadTracking();
             tx.view.setReadOnly();
         }
 
@@ -364,64 +537,378 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         if (readOnly || txWrites.isEmpty()) {
             if (this.log.isTraceEnabled())
                 this.log.trace("no mutations in " + tx + ", staying at version " + this.currentVersion);
-            return;
-        }
+            synchronized (tx.view) {
 
-        // Apply the transaction's mutations
-        if (this.log.isTraceEnabled()) {
-            this.log.trace("applying " + tx + " mutations and advancing version from "
-              + this.currentVersion + " -> " + (this.currentVersion + 1));
+                // The transaction may not have been checked against the most recent commits yet
+                final long conflictVersion = this.findLaggingConflict(tx, false);
+                if (conflictVersion != -1) {
+                    this.invalidate(tx, conflictVersion);
+                    tx.throwErrorIfAny();
+                }
+                tx.view.disableReadTracking();
+            }
+            this.transactions.remove(tx);
+            this.releaseView(tx);
+            return null;
         }
-        this.kvstore.mutate(txWrites, true);
-
-        // Discard the obsolete snapshot and advance the database version
-        final SnapshotRefs oldSnapshot = this.snapshot;
-        this.snapshot = null;
-        this.currentVersion++;
-
-        // Check concurrent transactions and invalidate any that have conflicts, or rebase them on the new version
-        int numTx = this.transactions.size();                                                       // only used for logging
-        for (Iterator<SnapshotKVTransaction> i = this.transactions.iterator(); i.hasNext(); ) {
-            final SnapshotKVTransaction victim = i.next();
-            assert victim.error == null;
-            synchronized (victim.view) {
-
-                // Check for conflict
-                final boolean conflict = victim.view.getReads().isConflict(txWrites);
-                if (this.log.isTraceEnabled()) {
-                    this.log.trace("ordering " + victim + " after " + tx + " writes in version " + this.currentVersion
-                      + " results in " + (conflict ? "" : "no ") + "conflict");
-//                    if (conflict)
-//                        this.log.trace("conflicts: {}", victim.view.getReads().getConflicts(txWrites));
+
+        // Transaction remains open (and subject to invalidation by conflicting commits) until its batch is written
+        return new PendingCommit(tx, txWrites);
+    }
+
+    // Enqueue commit and wait for it to be written; if no other thread is currently writing a batch, write batches ourselves
+    private void groupCommit(PendingCommit pending, int maxBatchSize, int batchWindow) {
+        boolean interrupted = false;
+        try {
+            synchronized (this.commitQueue) {
+
+                // Add to queue
+                this.commitQueue.add(pending);
+                if (this.commitQueue.size() >= maxBatchSize)
+                    this.commitQueue.notifyAll();
+
+                // Wait for some other thread to write our batch, or until we can become the batch writer
+                while (this.committing && !pending.done) {
+                    try {
+                        this.commitQueue.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
                 }
-                if (conflict) {
+                if (pending.done)
+                    return;
+                this.committing = true;
+            }
 
-                    // Mark transaction for failure
-                    i.remove();
-                    victim.error = new RetryTransactionException(victim, "transaction is based on version "
-                      + victim.baseVersion + " but the transaction committed at version "
-                      + this.currentVersion + " contains conflicting writes");
-                    if (this.log.isTraceEnabled())
-                        this.log.trace("removed conflicting transaction " + victim + " (new total " + --numTx + ")");
+            // Write batches until ours has been written
+            try {
+                while (true) {
+
+                    // Wait for batch window to expire, or batch to fill up, then grab the next batch
+                    final ArrayList<PendingCommit> batch = new ArrayList<>();
+                    synchronized (this.commitQueue) {
+                        if (pending.done)
+                            break;
+                        final long deadline = System.nanoTime() + batchWindow * 1000L;
+                        long remain;
+                        while (this.commitQueue.size() < maxBatchSize && (remain = deadline - System.nanoTime()) > 0) {
+                            try {
+                                this.commitQueue.wait(remain / 1000000L, (int)(remain % 1000000L));
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                        while (batch.size() < maxBatchSize && !this.commitQueue.isEmpty())
+                            batch.add(this.commitQueue.remove());
+                    }
+
+                    // Write the batch
+                    try {
+                        synchronized (this) {
+                            this.commitBatch(batch);
+                        }
+                    } catch (RuntimeException e) {
+                        for (PendingCommit commit : batch) {
+                            if (!commit.committed && commit.error == null && commit.tx.error == null)
+                                commit.error = e;
+                        }
+                    } finally {
+                        synchronized (this.commitQueue) {
+                            for (PendingCommit commit : batch)
+                                commit.done = true;
+                            this.commitQueue.notifyAll();
+                        }
+                    }
+                }
+            } finally {
+                synchronized (this.commitQueue) {
+                    this.committing = false;
+                    this.commitQueue.notifyAll();
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    // Check conflicts for, and then write, a batch of transactions using a single synchronous write
+    private void commitBatch(List<PendingCommit> batch) {
 
-                    // This looks weird. What it's really doing is ensuring that any subsequent attempt to access the
-                    // data in the transaction via iterators that have already been created will "fail fast" and throw the
-                    // RetryTransactionException created above. This happens because those accesses go through victim.delegate().
-                    victim.view.setKVStore(victim);
+        // Sanity checks
+        assert Thread.holdsLock(this);
+        assert !batch.isEmpty();
+
+        // Determine which transactions in the batch can commit; each must not conflict with those ordered before it.
+        // Note the views of the transactions in the batch can no longer change, because their threads are waiting on us.
+        final long firstVersion = this.currentVersion + 1;
+        final ArrayList<PendingCommit> commits = new ArrayList<>(batch.size());
+        for (PendingCommit pending : batch) {
+            final SnapshotKVTransaction tx = pending.tx;
+
+            // Remove transaction; if not there, it's been invalidated since it was enqueued
+            if (!this.transactions.contains(tx))
+                continue;
+            assert tx.error == null;
+            synchronized (tx.view) {
+
+                // Check against any commits the transaction has not been checked against yet, then those earlier in this batch
+                long conflictVersion = this.findLaggingConflict(tx, false);
+                if (conflictVersion == -1)
+                    conflictVersion = this.findConflict(tx, tx.view.getReads(), commits, this.currentVersion);
+                this.transactions.remove(tx);
+                this.releaseView(tx);
+                tx.view.disableReadTracking();
+                if (conflictVersion != -1) {
+                    tx.error = new RetryTransactionException(tx, "transaction is based on version "
+                      + tx.baseVersion + " but the transaction committed at version "
+                      + conflictVersion + " contains conflicting writes");
+                    if (this.log.isTraceEnabled())
+                        this.log.trace("removed conflicting transaction " + tx + " from commit batch");
                     continue;
                 }
-
-                // There was no conflict, so we can safely "rebase" this transaction on the new snapshot
-                victim.view.setKVStore(this.getCurrentSnapshot().getKVStore());
             }
+            pending.version = firstVersion + commits.size();
+            commits.add(pending);
+        }
+        if (commits.isEmpty())
+            return;
+
+        // Combine mutations, unless there is only one transaction. The underlying key/value store is never modified
+        // by the combining view, but its counter encoding is needed to fold counter adjustments into earlier puts.
+        final Writes writes;
+        if (commits.size() == 1)
+            writes = commits.get(0).writes;
+        else {
+            final MutableView combined = new MutableView(this.kvstore, null, new Writes());
+            for (PendingCommit pending : commits)
+                combined.apply(pending.writes);
+            writes = combined.getWrites();
+        }
+
+        // Apply the mutations
+        if (this.log.isTraceEnabled()) {
+            this.log.trace("applying mutations of " + commits.size() + " transaction(s) and advancing version from "
+              + this.currentVersion + " -> " + (this.currentVersion + commits.size()));
         }
+        this.kvstore.mutate(writes, true);
+        for (PendingCommit pending : commits)
+            pending.committed = true;
+
+        // Advance version and update open transactions
+        this.advanceVersion(commits, firstVersion);
+    }
+
+    // Advance the database version past the given (already applied) commits, invalidating or rebasing open transactions
+    // whose reads overlap the commits; all other open transactions will be rebased lazily.
+    private void advanceVersion(List<PendingCommit> commits, long firstVersion) {
+
+        // Sanity checks
+        assert Thread.holdsLock(this);
+        assert firstVersion == this.currentVersion + 1;
 
-        // Close the old snapshot (but only after rebasing remaining transactions)
-        oldSnapshot.unref();
+        // Discard the obsolete snapshot (open transactions based on it hold their own references) and advance the version
+        if (this.snapshot != null) {
+            this.snapshot.unref();
+            this.snapshot = null;
+        }
+        this.currentVersion += commits.size();
+
+        // Remember the commits until every open transaction has been checked against them
+        if (!this.transactions.isEmpty())
+            this.commitHistory.addAll(commits);
+
+        // Find transactions whose previously indexed reads overlap the committed writes
+        final HashSet<SnapshotKVTransaction> overlaps = new HashSet<>();
+        for (PendingCommit pending : commits)
+            this.readIndex.findOverlaps(pending.writes, overlaps);
+
+        // Check those transactions now and invalidate any that have conflicts, so they fail fast. We don't need to visit
+        // the other transactions: they can only conflict through reads not yet indexed, which are checked when rebased.
+        for (SnapshotKVTransaction victim : overlaps) {
+            if (this.transactions.contains(victim))
+                this.rebase(victim, true);
+        }
+        this.trimHistory();
 
         // Notify watches
-        if (this.keyWatchTracker != null)
-            this.keyWatchTracker.trigger(txWrites);
+        if (this.keyWatchTracker != null) {
+            for (PendingCommit pending : commits)
+                this.keyWatchTracker.trigger(pending.writes);
+        }
+    }
+
+    // Check an open transaction against the commits since its view's version, then rebase it on the current version.
+    // If "overlapping" is false, the transaction's indexed reads are known not to overlap the writes of those commits.
+    // Returns false if the transaction was invalidated due to a conflict.
+    private boolean rebase(SnapshotKVTransaction tx, boolean overlapping) {
+        assert Thread.holdsLock(this);
+        assert this.transactions.contains(tx);
+        assert tx.error == null;
+        if (tx.viewVersion == this.currentVersion)
+            return true;
+        synchronized (tx.view) {
+
+            // Check for conflict
+            final long conflictVersion = this.findLaggingConflict(tx, overlapping);
+            if (conflictVersion != -1) {
+                this.invalidate(tx, conflictVersion);
+                return false;
+            }
+
+            // Index any new reads
+            final Reads reads = tx.view.getReads();
+            if (reads instanceof IndexedReads) {
+                final Reads unindexed = ((IndexedReads)reads).unindexed;
+                if (!unindexed.isEmpty()) {
+                    this.readIndex.add(tx, unindexed);
+                    unindexed.clear();
+                }
+            }
+
+            // There was no conflict, so we can safely "rebase" this transaction on the current snapshot
+            final SnapshotRefs snapshotRefs = this.getCurrentSnapshot();
+            tx.view.setKVStore(snapshotRefs.getKVStore());
+            this.releaseView(tx);
+            this.attachView(tx, snapshotRefs);
+        }
+        return true;
+    }
+
+    // Find the version of the first commit since the transaction's view was last rebased that conflicts with its reads,
+    // or -1 if none. If "overlapping" is false, only reads not yet indexed need to be checked.
+    private long findLaggingConflict(SnapshotKVTransaction tx, boolean overlapping) {
+        assert Thread.holdsLock(this);
+        assert Thread.holdsLock(tx.view);
+        if (tx.viewVersion == this.currentVersion)
+            return -1;
+        final Reads reads = tx.view.getReads();
+        if (reads == null)
+            return -1;
+        if (overlapping || !(reads instanceof IndexedReads))
+            return this.findConflict(tx, reads, this.commitHistory, tx.viewVersion);
+        final Reads unindexed = ((IndexedReads)reads).unindexed;
+        return !unindexed.isEmpty() ? this.findConflict(tx, unindexed, this.commitHistory, tx.viewVersion) : -1;
+    }
+
+    // Mark a conflicting open transaction for failure
+    private void invalidate(SnapshotKVTransaction tx, long conflictVersion) {
+        assert Thread.holdsLock(this);
+        assert Thread.holdsLock(tx.view);
+        this.transactions.remove(tx);
+        this.readIndex.remove(tx);
+        tx.error = new RetryTransactionException(tx, "transaction is based on version "
+          + tx.baseVersion + " but the transaction committed at version "
+          + conflictVersion + " contains conflicting writes");
+        if (this.log.isTraceEnabled())
+            this.log.trace("removed conflicting transaction " + tx + " (new total " + this.transactions.size() + ")");
+
+        // This looks weird. What it's really doing is ensuring that any subsequent attempt to access the
+        // data in the transaction via iterators that have already been created will "fail fast" and throw the
+        // RetryTransactionException created above. This happens because those accesses go through tx.delegate().
+        tx.view.setKVStore(tx);
+        this.releaseView(tx);
+    }
+
+    // Base an open transaction's view on the given snapshot of the current version
+    private void attachView(SnapshotKVTransaction tx, SnapshotRefs snapshotRefs) {
+        assert Thread.holdsLock(this);
+        assert tx.viewSnapshot == null;
+        snapshotRefs.ref();
+        tx.viewSnapshot = snapshotRefs;
+        tx.viewVersion = this.currentVersion;
+        this.viewVersions.computeIfAbsent(tx.viewVersion, version -> new HashSet<>()).add(tx);
+    }
+
+    // Release a transaction's reference to the snapshot its view is based on, if not already released
+    private void releaseView(SnapshotKVTransaction tx) {
+        assert Thread.holdsLock(this);
+        if (tx.viewSnapshot == null)
+            return;
+        final HashSet<SnapshotKVTransaction> txs = this.viewVersions.get(tx.viewVersion);
+        txs.remove(tx);
+        if (txs.isEmpty())
+            this.viewVersions.remove(tx.viewVersion);
+        tx.viewSnapshot.unref();
+        tx.viewSnapshot = null;
+    }
+
+    // Discard commits that every open transaction has been checked against. If too many commits remain, rebase the
+    // transactions based on the oldest version(s) until they don't, so idle transactions can't pin history indefinitely.
+    private void trimHistory() {
+        assert Thread.holdsLock(this);
+        while (true) {
+            final Map.Entry<Long, HashSet<SnapshotKVTransaction>> oldest = this.viewVersions.firstEntry();
+            final long oldestVersion = oldest != null ? oldest.getKey() : this.currentVersion;
+            while (!this.commitHistory.isEmpty() && this.commitHistory.peekFirst().version <= oldestVersion)
+                this.commitHistory.removeFirst();
+            if (this.commitHistory.size() <= MAX_COMMIT_HISTORY)
+                break;
+            for (SnapshotKVTransaction tx : new ArrayList<>(oldest.getValue()))
+                this.rebase(tx, false);
+        }
+    }
+
+// Bulk Loading
+
+    /**
+     * Load a sorted stream of key/value pairs directly into the underlying {@link AtomicKVStore}.
+     *
+     * <p>
+     * The implementation in {@link SnapshotKVDatabase} hands the pairs to {@link AtomicKVStore#bulkLoad AtomicKVStore.bulkLoad()}
+     * while holding this instance's lock, so no transactions can be created or committed until the load completes.
+     * Afterwards, the database version is advanced and open transactions are checked for conflicts as if a single
+     * transaction had overwritten every key in the range spanned by the loaded keys: open transactions that read from
+     * that range will fail with a {@link RetryTransactionException}, and the others are rebased on the new version.
+     *
+     * @throws IllegalStateException if not {@link #start}ed or {@link #stop}ing
+     */
+    @Override
+    public synchronized void bulkLoad(Iterator<? extends KVPair> pairs) {
+
+        // Sanity check
+        Preconditions.checkState(this.started, "not started");
+        Preconditions.checkState(!this.stopping, "stopping");
+
+        // Load the data; the key range is tracked even if the load fails partway through
+        final BulkLoader.SortedIterator sortedPairs = new BulkLoader.SortedIterator(pairs);
+        try {
+            this.kvstore.bulkLoad(sortedPairs);
+        } finally {
+            final KeyRange range = sortedPairs.getKeyRange();
+            if (range != null) {
+
+                // Treat the loaded range as if it had been overwritten by a single transaction
+                final Writes writes = new Writes();
+                writes.getRemoves().add(range);
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("bulk loaded " + sortedPairs.getCount() + " key/value pair(s) in " + range
+                      + "; advancing version from " + this.currentVersion + " -> " + (this.currentVersion + 1));
+                }
+                final PendingCommit pending = new PendingCommit(null, writes);
+                pending.version = this.currentVersion + 1;
+                this.advanceVersion(Collections.singletonList(pending), pending.version);
+            }
+        }
+    }
+
+    // Find the version of the first of the given commits after sinceVersion whose writes conflict with the given reads,
+    // or -1 if none. The commits must be in version order.
+    private long findConflict(SnapshotKVTransaction tx, Reads reads, Iterable<PendingCommit> commits, long sinceVersion) {
+        assert Thread.holdsLock(this);
+        assert Thread.holdsLock(tx.view);
+        for (PendingCommit pending : commits) {
+            if (pending.version <= sinceVersion)
+                continue;
+            final boolean conflict = reads.isConflict(pending.writes);
+            if (this.log.isTraceEnabled()) {
+                this.log.trace("ordering " + tx + " after " + (pending.tx != null ? pending.tx : "bulk load")
+                  + " writes in version " + pending.version + " results in " + (conflict ? "" : "no ") + "conflict");
+            }
+            if (conflict)
+                return pending.version;
+        }
+        return -1;
     }
 
     private void cleanupTransaction(SnapshotKVTransaction tx) {
@@ -434,6 +921,11 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         // Remove open transaction from version
         if (this.transactions.remove(tx) && this.log.isTraceEnabled())
             this.log.trace("removed transaction " + tx + " (new total " + this.transactions.size() + ")");
+
+        // Remove its reads from the index and release its snapshot
+        this.readIndex.remove(tx);
+        this.releaseView(tx);
+        this.trimHistory();
     }
 
     // Get current k/v snapshot, creating on demand if necessary
@@ -446,5 +938,50 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         }
         return this.snapshot;
     }
-}
 
+// IndexedReads
+
+    // Reads that also remembers which ranges have been recorded since they were last added to the read index
+    private static class IndexedReads extends Reads {
+
+        final Reads unindexed = new Reads();
+
+        @Override
+        public void add(KeyRange range) {
+            if (this.contains(range))
+                return;
+            super.add(range);
+            this.unindexed.add(range);
+        }
+
+        @Override
+        public Reads clone() {
+            return new Reads(this);
+        }
+
+        @Override
+        public Reads immutableSnapshot() {
+            return new Reads(this).immutableSnapshot();
+        }
+    }
+
+// PendingCommit
+
+    // A transaction waiting to be written as part of a commit batch (or, if tx is null, the range written by a bulk load)
+    private static class PendingCommit {
+
+        final SnapshotKVTransaction tx;
+        final Writes writes;
+        long version;                                                   // assigned version, once known to commit
+
+        @GuardedBy("commitQueue")
+        boolean done;                                                   // batch containing this transaction has been handled
+        volatile boolean committed;                                     // transaction was successfully written
+        volatile RuntimeException error;                                // error writing the batch, if any
+
+        PendingCommit(SnapshotKVTransaction tx, Writes writes) {
+            this.tx = tx;
+            this.writes = writes;
+        }
+    }
+}
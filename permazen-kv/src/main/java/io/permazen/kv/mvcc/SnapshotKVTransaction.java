@@ -12,6 +12,7 @@ import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KVTransactionException;
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.StaleTransactionException;
 import io.permazen.kv.TransactionTimeoutException;
 import io.permazen.kv.util.ForwardingKVStore;
@@ -46,6 +47,12 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
     @GuardedBy("kvdb")
     volatile KVTransactionException error;
 
+    // Invariant: viewSnapshot != null iff db.transactions.contains(this)
+    @GuardedBy("kvdb")
+    volatile long viewVersion;                                  // database version on which this.view is currently based
+    @GuardedBy("kvdb")
+    SnapshotRefs viewSnapshot;                                  // the corresponding snapshot, which we hold a reference to
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final AtomicBoolean closed = new AtomicBoolean();   // used to detect whether commit() or rollback() has been invoked
 
@@ -96,15 +103,17 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
      * Get the underlying {@link KVStore}.
      *
      * <p>
-     * The implementation in {@link SnapshotKVTransaction} returns the {@link MutableView} associated with this instance.
+     * The implementation in {@link SnapshotKVTransaction} returns the {@link MutableView} associated with this instance,
+     * after first rebasing it on the current database version if any transactions have committed since it was last rebased.
      *
      * @return the underlying {@link KVStore}
      * @throws StaleTransactionException if this transaction is no longer valid
      * @throws TransactionTimeoutException if this transaction has timed out
+     * @throws io.permazen.kv.RetryTransactionException if this transaction conflicts with a transaction committed since
      */
     @Override
     protected synchronized KVStore delegate() {
-        this.checkAlive();
+        this.checkCurrent();
         return this.view;
     }
 
@@ -138,6 +147,13 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
         return this.kvdb.watchKey(key);
     }
 
+    @Override
+    public synchronized ListenableFuture<Void> watchRange(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        this.checkAlive();
+        return this.kvdb.watchRange(range);
+    }
+
     @Override
     public synchronized boolean isReadOnly() {
         return this.readOnly;
@@ -166,7 +182,7 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
     public CloseableKVStore mutableSnapshot() {
         final Writes writes;
         synchronized (this) {
-            this.checkAlive();
+            this.checkCurrent();
             synchronized (this.view) {
                 writes = this.view.getWrites().clone();
             }
@@ -221,6 +237,13 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
 
 // Internal methods
 
+    private void checkCurrent() {
+        assert Thread.holdsLock(this);
+        this.checkAlive();
+        if (this.viewVersion != this.kvdb.currentVersion)
+            this.kvdb.rebaseIfStale(this);
+    }
+
     private void checkAlive() {
         assert Thread.holdsLock(this);
 
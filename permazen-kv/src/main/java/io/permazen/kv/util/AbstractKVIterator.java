@@ -151,7 +151,7 @@ public abstract class AbstractKVIterator<E> implements CloseableIterator<E> {
         final KVPair pair = this.pairIterator.next();
 
         // Decode key/value pair
-        final ByteReader keyReader = new ByteReader(pair.getKey());
+        final ByteReader keyReader = pair.getKeySlice().newReader();
         final E value = this.decodePair(pair, keyReader);
         if (!this.prefixMode && keyReader.remain() > 0) {
             final String msg = this.getClass().getName() + "@"
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.Spliterator;
 
 /**
  * {@link java.util.NavigableMap} support superclass for maps backed by keys and values encoded as {@code byte[]}
@@ -70,6 +71,8 @@ import java.util.Set;
  *          this instance's {@link #put put()} method (but only when the {@link java.util.Map.Entry} is still contained in the map).
  *      <li>The {@link Set#clear clear()} method delegates to this instance's {@link #clear} method.</li>
  *  </ul>
+ *  <li>Both of the above sets return {@link Spliterator}s that split along key boundaries found by probing the
+ *      underlying {@link KVStore} (see {@link KeyRangeSplitter}), so that parallel streams scan disjoint key ranges.
  * </ul>
  *
  * <p><b>Prefix Mode</b></p>
@@ -492,6 +495,18 @@ public abstract class AbstractKVNavigableMap<K, V> extends AbstractNavigableMap<
             };
         }
 
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new KVSpliterator<Map.Entry<K, V>>(AbstractKVNavigableMap.this.kv, AbstractKVNavigableMap.this.prefixMode,
+              AbstractKVNavigableMap.this.reversed, AbstractKVNavigableMap.this.keyRange, AbstractKVNavigableMap.this.keyFilter,
+              Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.CONCURRENT, null,
+              AbstractKVNavigableMap.this::decodeKey, (pair, keyReader) -> {
+                final K key = AbstractKVNavigableMap.this.decodeKey(keyReader);
+                final V value = AbstractKVNavigableMap.this.decodeValue(pair);
+                return new MapEntry(key, value);
+              });
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public boolean contains(Object obj) {
@@ -21,6 +21,7 @@ import io.permazen.util.CloseableIterator;
 
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 /**
  * {@link java.util.NavigableSet} support superclass for sets backed by elements encoded as {@code byte[]}
@@ -50,6 +51,8 @@ import java.util.NoSuchElementException;
  * <ul>
  *  <li>{@link #iterator} returns an {@link java.util.Iterator} whose {@link java.util.Iterator#remove Iterator.remove()}
  *      method delegates to this instance's {@link #remove remove()} method.
+ *  <li>{@link #spliterator} returns a {@link Spliterator} that splits along key boundaries found by probing the
+ *      underlying {@link KVStore} (see {@link KeyRangeSplitter}), so that parallel streams scan disjoint key ranges.
  * </ul>
  *
  * <p><b>Prefix Mode</b></p>
@@ -181,7 +184,7 @@ public abstract class AbstractKVNavigableSet<E> extends AbstractNavigableSet<E>
         final KVPair pair = this.firstPair();
         if (pair == null)
             throw new NoSuchElementException();
-        return this.decode(new ByteReader(pair.getKey()));
+        return this.decode(pair.getKeySlice().newReader());
     }
 
     @Override
@@ -189,7 +192,7 @@ public abstract class AbstractKVNavigableSet<E> extends AbstractNavigableSet<E>
         final KVPair pair = this.lastPair();
         if (pair == null)
             throw new NoSuchElementException();
-        return this.decode(new ByteReader(pair.getKey()));
+        return this.decode(pair.getKeySlice().newReader());
     }
 
     @Override
@@ -333,6 +336,24 @@ public abstract class AbstractKVNavigableSet<E> extends AbstractNavigableSet<E>
         };
     }
 
+    /**
+     * Create a {@link Spliterator} over the elements in this set.
+     *
+     * <p>
+     * The returned {@link Spliterator} splits by dividing this set's key range into sub-ranges as described in
+     * {@link KeyRangeSplitter}. Therefore, if the underlying {@link KVStore} supports concurrent access (e.g., it's
+     * a {@link io.permazen.kv.KVTransaction} that allows concurrent reads), {@code parallelStream()} will scan
+     * disjoint sub-ranges in parallel.
+     *
+     * @return spliterator over this set
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new KVSpliterator<E>(this.kv, this.prefixMode, this.reversed, this.keyRange, this.keyFilter,
+          Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.CONCURRENT, this.comparator(),
+          this::decode, (pair, keyReader) -> this.decode(keyReader));
+    }
+
     /**
      * Create a view of this instance with additional filtering applied to the underlying {@code byte[]} encoded keys.
      * Any set element for which the corresponding key does not pass {@code keyFilter} will be effectively hidden from view.
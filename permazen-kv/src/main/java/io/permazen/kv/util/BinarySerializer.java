@@ -0,0 +1,523 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.util.CloseableIterator;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Utility methods for serializing and deserializing the contents of a {@link KVStore} to/from a compact binary format.
+ *
+ * <p>
+ * This format is much faster to read and write, and much smaller, than the XML format of {@link XMLSerializer}, which makes
+ * it more suitable for large databases. The format is:
+ *  <pre>
+ *  dump:     magic version chunk* trailer
+ *  magic:    "PZKVDUMP" (8 bytes)
+ *  version:  {@link #FORMAT_VERSION} (1 byte)
+ *  chunk:    pair-count flags raw-length stored-length crc32 stored-bytes...
+ *  trailer:  0x00 total-pair-count
+ *  </pre>
+ * Within a chunk, the counts and lengths are encoded via {@link UnsignedIntEncoder}; {@code flags} is a single byte
+ * indicating whether the chunk is compressed; and {@code crc32} is a four byte CRC-32 checksum of the raw (uncompressed)
+ * chunk data. The {@code total-pair-count} is encoded as an eight byte big-endian value.
+ *
+ * <p>
+ * The raw data in each chunk consists of key/value pairs in sorted order, with each key and value encoded by
+ * {@link KeyListEncoder}; keys are prefix-compressed relative to the previous key in the same chunk. Because each chunk is
+ * self-contained and chunks contain disjoint key ranges, chunks may be loaded independently and in parallel; see
+ * {@link #restore restore()}.
+ *
+ * <p>
+ * Chunks are optionally compressed using {@link Deflater}; the flag is per-chunk, so a chunk that does not compress well is
+ * stored as is.
+ *
+ * @see XMLSerializer
+ */
+public class BinarySerializer {
+
+    /**
+     * Magic bytes at the start of every dump.
+     */
+    public static final byte[] MAGIC = new byte[] { 'P', 'Z', 'K', 'V', 'D', 'U', 'M', 'P' };
+
+    /**
+     * Current format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Default target chunk size (uncompressed) in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum number of attempts to load a chunk when {@link #restore restore()} gets a {@link RetryTransactionException}.
+     */
+    public static final int MAX_RESTORE_ATTEMPTS = 5;
+
+    private static final int FLAG_COMPRESSED = 0x01;
+
+    private final KVStore kv;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean compress;
+
+    /**
+     * Constructor.
+     *
+     * @param kv key/value store on which to operate
+     * @throws IllegalArgumentException if {@code kv} is null
+     */
+    public BinarySerializer(KVStore kv) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        this.kv = kv;
+    }
+
+// Properties
+
+    /**
+     * Get the target chunk size used when writing.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_CHUNK_SIZE}.
+     *
+     * @return target uncompressed chunk size in bytes
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Set the target chunk size used when writing.
+     *
+     * <p>
+     * Each chunk is loaded in a separate transaction by {@link #restore restore()}, so this value should be chosen
+     * with any transaction size limits of the target database in mind.
+     *
+     * @param chunkSize target uncompressed chunk size in bytes
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive
+     */
+    public void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize <= 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Determine whether chunks are compressed when writing.
+     *
+     * <p>
+     * Default is false.
+     *
+     * @return true if compression is enabled
+     */
+    public boolean isCompress() {
+        return this.compress;
+    }
+
+    /**
+     * Configure whether chunks are compressed when writing.
+     *
+     * @param compress true to enable compression
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+// Writing
+
+    /**
+     * Export all key/value pairs in the given range from the {@link KVStore} associated with this instance to the given output.
+     *
+     * <p>
+     * All key/value pairs are read by a single range iteration; if the {@link KVStore} is a transaction or a snapshot,
+     * the output therefore reflects one consistent view of the data.
+     *
+     * <p>
+     * The {@code output} is not closed by this method.
+     *
+     * @param output binary output
+     * @param minKey minimum key (inclusive), or null for none
+     * @param maxKey maximum key (exclusive), or null for none
+     * @return the number of key/value pairs written
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code output} is null
+     */
+    public long write(OutputStream output, byte[] minKey, byte[] maxKey) throws IOException {
+        Preconditions.checkArgument(output != null, "null output");
+        final DataOutputStream out = new DataOutputStream(output);
+        out.write(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(this.chunkSize + this.chunkSize / 8);
+        final Deflater deflater = this.compress ? new Deflater() : null;
+        long total = 0;
+        try (CloseableIterator<KVPair> i = this.kv.getRange(minKey, maxKey, false)) {
+            int pairs = 0;
+            byte[] prev = null;
+            while (i.hasNext()) {
+                final KVPair pair = i.next();
+                KeyListEncoder.write(buf, pair.getKey(), prev);
+                KeyListEncoder.write(buf, pair.getValue(), null);
+                prev = pair.getKey();
+                pairs++;
+                if (buf.size() >= this.chunkSize) {
+                    this.writeChunk(out, pairs, buf, deflater);
+                    total += pairs;
+                    pairs = 0;
+                    prev = null;
+                }
+            }
+            if (pairs > 0) {
+                this.writeChunk(out, pairs, buf, deflater);
+                total += pairs;
+            }
+        } finally {
+            if (deflater != null)
+                deflater.end();
+        }
+        UnsignedIntEncoder.write(out, 0);
+        out.writeLong(total);
+        out.flush();
+        return total;
+    }
+
+    private void writeChunk(DataOutputStream out, int pairs, ByteArrayOutputStream buf, Deflater deflater) throws IOException {
+
+        // Get raw data and checksum
+        final byte[] raw = buf.toByteArray();
+        buf.reset();
+        final CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        // Compress if enabled and worthwhile
+        byte[] stored = raw;
+        int storedLength = raw.length;
+        int flags = 0;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            final byte[] compressed = new byte[raw.length];
+            int length = 0;
+            while (!deflater.finished() && length < compressed.length)
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            if (deflater.finished() && length < raw.length) {
+                stored = compressed;
+                storedLength = length;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+
+        // Write chunk
+        UnsignedIntEncoder.write(out, pairs);
+        out.writeByte(flags);
+        UnsignedIntEncoder.write(out, raw.length);
+        UnsignedIntEncoder.write(out, storedLength);
+        out.writeInt((int)crc.getValue());
+        out.write(stored, 0, storedLength);
+    }
+
+// Reading
+
+    /**
+     * Import key/value pairs into the {@link KVStore} associated with this instance from the given binary input.
+     *
+     * <p>
+     * The {@code input} is not closed by this method.
+     *
+     * @param input binary input
+     * @return the number of key/value pairs read
+     * @throws IOException if an I/O error occurs
+     * @throws IOException if the input is truncated, corrupted, or not in the expected format
+     * @throws IllegalArgumentException if {@code input} is null
+     */
+    public long read(InputStream input) throws IOException {
+        Preconditions.checkArgument(input != null, "null input");
+        final DataInputStream in = new DataInputStream(input);
+        BinarySerializer.readHeader(in);
+        long total = 0;
+        for (Chunk chunk; (chunk = BinarySerializer.readChunk(in, total)) != null; total += chunk.pairs)
+            chunk.apply(this.kv);
+        BinarySerializer.readTrailer(in, total);
+        return total;
+    }
+
+    /**
+     * Import key/value pairs from the given binary input into the given {@link KVDatabase} using parallel transactions.
+     *
+     * <p>
+     * The input is read sequentially, and each chunk is decoded and loaded into the database in its own transaction
+     * using up to {@code parallelism} threads. Transactions that fail with a {@link RetryTransactionException} are retried,
+     * up to {@value #MAX_RESTORE_ATTEMPTS} attempts.
+     *
+     * <p>
+     * Note that the restore is not atomic: if this method throws an exception, some chunks may have been loaded and
+     * some not. Any existing keys in the database are not removed, but will be overwritten if present in the input.
+     *
+     * <p>
+     * The {@code input} is not closed by this method.
+     *
+     * @param db target database
+     * @param input binary input
+     * @param parallelism maximum number of chunks to load concurrently
+     * @return the number of key/value pairs read
+     * @throws IOException if an I/O error occurs
+     * @throws IOException if the input is truncated, corrupted, or not in the expected format
+     * @throws IllegalArgumentException if {@code db} or {@code input} is null
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public static long restore(KVDatabase db, InputStream input, int parallelism) throws IOException, InterruptedException {
+
+        // Sanity check
+        Preconditions.checkArgument(db != null, "null db");
+        Preconditions.checkArgument(input != null, "null input");
+        Preconditions.checkArgument(parallelism > 0, "parallelism <= 0");
+
+        // Read header
+        final DataInputStream in = new DataInputStream(input);
+        BinarySerializer.readHeader(in);
+
+        // Read chunks and load them in parallel, bounding the number of chunks in memory at once
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, action -> {
+            final Thread thread = new Thread(action);
+            thread.setName(BinarySerializer.class.getSimpleName() + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Semaphore permits = new Semaphore(parallelism * 2);
+        final ArrayList<Future<?>> futures = new ArrayList<>();
+        long total = 0;
+        try {
+            for (Chunk chunk; (chunk = BinarySerializer.readChunk(in, total)) != null; total += chunk.pairs) {
+                permits.acquire();
+                final Chunk loadChunk = chunk;
+                futures.add(executor.submit(() -> {
+                    try {
+                        loadChunk.load(db);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+
+                // Check for failures so far
+                if (futures.size() % 64 == 0)
+                    BinarySerializer.checkCompleted(futures);
+            }
+            BinarySerializer.readTrailer(in, total);
+
+            // Wait for all chunks to load
+            for (Future<?> future : futures)
+                BinarySerializer.waitFor(future);
+        } finally {
+            executor.shutdownNow();
+        }
+        return total;
+    }
+
+    /**
+     * Determine whether the given input appears to contain data written by {@link #write write()}.
+     *
+     * <p>
+     * This method peeks at the first few bytes of {@code input} and then resets it.
+     *
+     * @param input input stream; must support {@link InputStream#mark mark()}
+     * @return true if {@code input} starts with {@link #MAGIC}
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code input} is null or does not support {@link InputStream#mark mark()}
+     */
+    public static boolean isBinaryFormat(InputStream input) throws IOException {
+        Preconditions.checkArgument(input != null, "null input");
+        Preconditions.checkArgument(input.markSupported(), "input does not support mark()");
+        final byte[] buf = new byte[MAGIC.length];
+        input.mark(buf.length);
+        try {
+            int len = 0;
+            for (int r; len < buf.length && (r = input.read(buf, len, buf.length - len)) != -1; )
+                len += r;
+            return len == buf.length && Arrays.equals(buf, MAGIC);
+        } finally {
+            input.reset();
+        }
+    }
+
+    private static void checkCompleted(ArrayList<Future<?>> futures) throws IOException, InterruptedException {
+        for (Future<?> future : futures) {
+            if (future.isDone())
+                BinarySerializer.waitFor(future);
+        }
+    }
+
+    private static void waitFor(Future<?> future) throws IOException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        final byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("input is not a binary key/value dump (invalid magic bytes)");
+        final int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION)
+            throw new IOException("unsupported binary key/value dump format version " + version);
+    }
+
+    private static Chunk readChunk(DataInputStream in, long offset) throws IOException {
+        final int pairs = UnsignedIntEncoder.read(in);
+        if (pairs == 0)
+            return null;
+        final int flags = in.readUnsignedByte();
+        if ((flags & ~FLAG_COMPRESSED) != 0)
+            throw new IOException("invalid chunk flags 0x" + Integer.toHexString(flags) + " after pair #" + offset);
+        final int rawLength = UnsignedIntEncoder.read(in);
+        final int storedLength = UnsignedIntEncoder.read(in);
+        if ((flags & FLAG_COMPRESSED) == 0 && storedLength != rawLength)
+            throw new IOException("invalid uncompressed chunk length " + storedLength + " after pair #" + offset);
+        final int crc = in.readInt();
+        final byte[] stored = new byte[storedLength];
+        in.readFully(stored);
+        return new Chunk(offset, pairs, (flags & FLAG_COMPRESSED) != 0, rawLength, crc, stored);
+    }
+
+    private static void readTrailer(DataInputStream in, long total) throws IOException {
+        final long expected = in.readLong();
+        if (expected != total)
+            throw new IOException("dump trailer indicates " + expected + " key/value pairs but " + total + " were read");
+    }
+
+// Chunk
+
+    private static final class Chunk {
+
+        final long offset;
+        final int pairs;
+        final boolean compressed;
+        final int rawLength;
+        final int crc;
+        final byte[] stored;
+
+        Chunk(long offset, int pairs, boolean compressed, int rawLength, int crc, byte[] stored) {
+            this.offset = offset;
+            this.pairs = pairs;
+            this.compressed = compressed;
+            this.rawLength = rawLength;
+            this.crc = crc;
+            this.stored = stored;
+        }
+
+        // Load this chunk into the given database, retrying if necessary
+        void load(KVDatabase db) throws IOException {
+            final byte[] raw = this.decode();
+            for (int attempt = 1; true; attempt++) {
+                final KVTransaction tx = db.createTransaction();
+                boolean success = false;
+                try {
+                    this.apply(tx, raw);
+                    tx.commit();
+                    success = true;
+                    return;
+                } catch (RetryTransactionException e) {
+                    if (attempt >= MAX_RESTORE_ATTEMPTS)
+                        throw e;
+                } finally {
+                    if (!success)
+                        tx.rollback();
+                }
+            }
+        }
+
+        // Load this chunk into the given key/value store
+        void apply(KVStore kv) throws IOException {
+            this.apply(kv, this.decode());
+        }
+
+        private void apply(KVStore kv, byte[] raw) throws IOException {
+            final ByteArrayInputStream input = new ByteArrayInputStream(raw);
+            byte[] prev = null;
+            for (int i = 0; i < this.pairs; i++) {
+                final byte[] key;
+                final byte[] value;
+                try {
+                    key = KeyListEncoder.read(input, prev);
+                    value = KeyListEncoder.read(input, null);
+                } catch (EOFException | IllegalArgumentException e) {
+                    throw new IOException("corrupt chunk data after pair #" + this.offset, e);
+                }
+                kv.put(key, value);
+                prev = key;
+            }
+            if (input.available() != 0)
+                throw new IOException("corrupt chunk data after pair #" + this.offset + ": trailing garbage");
+        }
+
+        // Decompress and verify checksum
+        private byte[] decode() throws IOException {
+            byte[] raw = this.stored;
+            if (this.compressed) {
+                raw = new byte[this.rawLength];
+                final Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(this.stored);
+                    int length = 0;
+                    while (length < raw.length && !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary())
+                        length += inflater.inflate(raw, length, raw.length - length);
+                    if (length != raw.length || !inflater.finished())
+                        throw new IOException("corrupt compressed chunk data after pair #" + this.offset);
+                } catch (DataFormatException e) {
+                    throw new IOException("corrupt compressed chunk data after pair #" + this.offset, e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            final CRC32 crc32 = new CRC32();
+            crc32.update(raw);
+            if ((int)crc32.getValue() != this.crc)
+                throw new IOException("checksum mismatch in chunk data after pair #" + this.offset);
+            return raw;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.mvcc.AtomicKVStore;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.util.ByteUtil;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Utility methods supporting {@link KVDatabase#bulkLoad KVDatabase.bulkLoad()} and
+ * {@link AtomicKVStore#bulkLoad AtomicKVStore.bulkLoad()}.
+ *
+ * <p>
+ * The {@code load()} methods in this class provide a generic fallback for implementations that have no more efficient
+ * way to ingest sorted data: the key/value pairs are grouped into batches of approximately {@code batchSize} bytes,
+ * and each batch is written using a single {@link KVTransaction#apply KVTransaction.apply()} or
+ * {@link AtomicKVStore#mutate AtomicKVStore.mutate()} operation.
+ */
+public final class BulkLoader {
+
+    /**
+     * Default batch size in bytes.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Maximum number of attempts to load a batch when {@link #load(KVDatabase, Map, Iterator, int) load()}
+     * gets a {@link RetryTransactionException}.
+     */
+    public static final int MAX_BATCH_ATTEMPTS = 5;
+
+    private BulkLoader() {
+    }
+
+    /**
+     * Load key/value pairs into a {@link KVDatabase} using a series of transactions.
+     *
+     * <p>
+     * Equivalent to {@link #load(KVDatabase, Map, Iterator, int) load}{@code (db, null, pairs, batchSize)}.
+     *
+     * @param db target database
+     * @param pairs key/value pairs in strictly ascending key order
+     * @param batchSize approximate maximum number of key and value bytes to write in each transaction
+     * @return the number of key/value pairs loaded
+     * @throws IllegalArgumentException if {@code db} or {@code pairs} is null
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     */
+    public static long load(KVDatabase db, Iterator<? extends KVPair> pairs, int batchSize) {
+        return BulkLoader.load(db, null, pairs, batchSize);
+    }
+
+    /**
+     * Load key/value pairs into a {@link KVDatabase} using a series of transactions created with the given options.
+     *
+     * <p>
+     * Transactions that fail with a {@link RetryTransactionException} are retried, up to {@value #MAX_BATCH_ATTEMPTS} attempts.
+     * The load is not atomic: if this method throws an exception, some batches may have been loaded and some not.
+     *
+     * @param db target database
+     * @param options transaction options, or null for none
+     * @param pairs key/value pairs in strictly ascending key order
+     * @param batchSize approximate maximum number of key and value bytes to write in each transaction
+     * @return the number of key/value pairs loaded
+     * @throws IllegalArgumentException if {@code db} or {@code pairs} is null
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     */
+    public static long load(KVDatabase db, Map<String, ?> options, Iterator<? extends KVPair> pairs, int batchSize) {
+
+        // Sanity check
+        Preconditions.checkArgument(db != null, "null db");
+        Preconditions.checkArgument(batchSize > 0, "batchSize <= 0");
+        final SortedIterator i = new SortedIterator(pairs);
+
+        // Load batches
+        long total = 0;
+        while (i.hasNext()) {
+            final Writes writes = BulkLoader.nextBatch(i, batchSize);
+
+            // Write it, retrying if necessary
+            for (int attempt = 1; true; attempt++) {
+                final KVTransaction tx = options != null ? db.createTransaction(options) : db.createTransaction();
+                boolean success = false;
+                try {
+                    tx.apply(writes);
+                    tx.commit();
+                    success = true;
+                    break;
+                } catch (RetryTransactionException e) {
+                    if (attempt >= MAX_BATCH_ATTEMPTS)
+                        throw e;
+                } finally {
+                    if (!success)
+                        tx.rollback();
+                }
+            }
+            total += writes.getPuts().size();
+        }
+        return total;
+    }
+
+    /**
+     * Load key/value pairs into an {@link AtomicKVStore} using a series of {@link AtomicKVStore#mutate mutate()} operations.
+     *
+     * <p>
+     * The final batch is written with {@code sync} set to true; preceding batches are not synced.
+     * The load is not atomic: if this method throws an exception, some batches may have been loaded and some not.
+     *
+     * @param kvstore target key/value store
+     * @param pairs key/value pairs in strictly ascending key order
+     * @param batchSize approximate maximum number of key and value bytes to write in each {@link AtomicKVStore#mutate mutate()}
+     * @return the number of key/value pairs loaded
+     * @throws IllegalArgumentException if {@code kvstore} or {@code pairs} is null
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     */
+    public static long load(AtomicKVStore kvstore, Iterator<? extends KVPair> pairs, int batchSize) {
+
+        // Sanity check
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(batchSize > 0, "batchSize <= 0");
+        final SortedIterator i = new SortedIterator(pairs);
+
+        // Load batches
+        long total = 0;
+        while (i.hasNext()) {
+            final Writes writes = BulkLoader.nextBatch(i, batchSize);
+            kvstore.mutate(writes, !i.hasNext());
+            total += writes.getPuts().size();
+        }
+        return total;
+    }
+
+    // Gather the next batch of puts
+    private static Writes nextBatch(Iterator<KVPair> i, int batchSize) {
+        final Writes writes = new Writes();
+        long batchBytes = 0;
+        while (i.hasNext() && batchBytes < batchSize) {
+            final KVPair pair = i.next();
+            writes.getPuts().put(pair.getKey(), pair.getValue());
+            batchBytes += pair.getKey().length + pair.getValue().length;
+        }
+        return writes;
+    }
+
+// SortedIterator
+
+    /**
+     * Wrapper for a key/value pair iteration that verifies the keys are in strictly ascending order,
+     * and keeps track of the range of keys iterated so far.
+     */
+    public static class SortedIterator implements Iterator<KVPair> {
+
+        private final Iterator<? extends KVPair> pairs;
+
+        private byte[] firstKey;
+        private byte[] lastKey;
+        private long count;
+
+        /**
+         * Constructor.
+         *
+         * @param pairs wrapped iteration
+         * @throws IllegalArgumentException if {@code pairs} is null
+         */
+        public SortedIterator(Iterator<? extends KVPair> pairs) {
+            Preconditions.checkArgument(pairs != null, "null pairs");
+            this.pairs = pairs;
+        }
+
+        /**
+         * Get the number of key/value pairs iterated so far.
+         *
+         * @return number of pairs returned by {@link #next}
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Get the smallest key range containing all of the keys iterated so far.
+         *
+         * @return range of keys returned by {@link #next}, or null if {@link #next} has not been invoked
+         */
+        public KeyRange getKeyRange() {
+            return this.firstKey != null ? new KeyRange(this.firstKey, ByteUtil.getNextKey(this.lastKey)) : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.pairs.hasNext();
+        }
+
+        /**
+         * Get the next key/value pair.
+         *
+         * @throws IllegalArgumentException if the next pair is null or its key is not greater than the previous key
+         * @throws NoSuchElementException if there are no more pairs
+         */
+        @Override
+        public KVPair next() {
+            final KVPair pair = this.pairs.next();
+            Preconditions.checkArgument(pair != null, "null pair");
+            final byte[] key = pair.getKey();
+            if (this.lastKey != null && ByteUtil.compare(key, this.lastKey) <= 0) {
+                throw new IllegalArgumentException("key " + ByteUtil.toString(key)
+                  + " is not greater than previous key " + ByteUtil.toString(this.lastKey));
+            }
+            if (this.firstKey == null)
+                this.firstKey = key;
+            this.lastKey = key;
+            this.count++;
+            return pair;
+        }
+    }
+}
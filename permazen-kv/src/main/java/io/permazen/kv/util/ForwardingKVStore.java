@@ -7,11 +7,20 @@ package io.permazen.kv.util;
 
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.util.CloseableIterator;
 
+import java.util.List;
+
 /**
  * Forwards all {@link KVStore} operations to another underlying {@link KVStore}.
+ *
+ * <p>
+ * The asynchronous read methods such as {@link KVStore#getAsync getAsync()} are not forwarded; instead,
+ * they use the default synchronous implementations, which invoke the (possibly overridden) synchronous methods
+ * of this instance. Subclasses that do not modify reads may forward them to take advantage of an underlying
+ * store's non-blocking implementation.
  */
 public abstract class ForwardingKVStore implements KVStore {
 
@@ -29,6 +38,11 @@ public abstract class ForwardingKVStore implements KVStore {
         return this.delegate().get(key);
     }
 
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        return this.delegate().getMany(keys);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         return this.delegate().getAtLeast(minKey, maxKey);
@@ -44,6 +58,11 @@ public abstract class ForwardingKVStore implements KVStore {
         return this.delegate().getRange(minKey, maxKey, reverse);
     }
 
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return this.delegate().estimateSize(minKey, maxKey);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.delegate().put(key, value);
@@ -120,7 +120,7 @@ public class KVNavigableSet extends AbstractKVNavigableSet<byte[]> {
 
     @Override
     protected byte[] decode(ByteReader reader) {
-        return reader.getBytes();
+        return reader.readBytes(reader.remain());
     }
 
     @Override
@@ -0,0 +1,216 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyFilter;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteUtil;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link Spliterator} implementation whose values derive from key/value {@code byte[]} pairs in a {@link KVStore}.
+ *
+ * <p>
+ * Instances split by dividing their {@link KeyRange} using {@link KeyRangeSplitter#findSplitKey KeyRangeSplitter.findSplitKey()}.
+ * In prefix mode, split keys are truncated to the prefix decoded from them, so that all of the keys sharing a prefix
+ * always end up in the same sub-range.
+ *
+ * <p>
+ * The {@linkplain #estimateSize estimated size} is the number of keys in the range according to
+ * {@link KVStore#estimateSize KVStore.estimateSize()}, computed lazily. If the {@link KVStore} can't estimate,
+ * the estimated size starts out as {@link Long#MAX_VALUE} and is halved with each split; this causes parallel
+ * streams to split a reasonable number of times.
+ *
+ * @param <E> iteration element type
+ */
+final class KVSpliterator<E> implements Spliterator<E> {
+
+    private final KVStore kv;
+    private final boolean prefixMode;
+    private final boolean reversed;
+    private final KeyFilter keyFilter;
+    private final int characteristics;
+    private final Comparator<? super E> comparator;
+    private final Function<ByteReader, ?> prefixDecoder;
+    private final BiFunction<KVPair, ByteReader, E> pairDecoder;
+
+    private byte[] minKey;
+    private byte[] maxKey;
+    private long estimate;                                      // -1 means not yet computed
+    private boolean estimated;                                  // estimate came from the KVStore
+    private AbstractKVIterator<E> iterator;
+
+    /**
+     * Constructor.
+     *
+     * @param kv underlying {@link KVStore}
+     * @param prefixMode whether to allow keys to have trailing garbage
+     * @param reversed whether to iterate in the reverse direction
+     * @param keyRange key range restriction, or null for none
+     * @param keyFilter key filter, or null for none
+     * @param characteristics spliterator characteristics
+     * @param comparator comparator if {@link Spliterator#SORTED}, or null for natural ordering
+     * @param prefixDecoder decodes the prefix from a key in prefix mode
+     * @param pairDecoder decodes iteration elements from key/value pairs
+     */
+    KVSpliterator(KVStore kv, boolean prefixMode, boolean reversed, KeyRange keyRange, KeyFilter keyFilter,
+      int characteristics, Comparator<? super E> comparator,
+      Function<ByteReader, ?> prefixDecoder, BiFunction<KVPair, ByteReader, E> pairDecoder) {
+        this(kv, prefixMode, reversed, keyRange != null ? keyRange.getMin() : ByteUtil.EMPTY,
+          keyRange != null ? keyRange.getMax() : null, keyFilter, characteristics, comparator,
+          prefixDecoder, pairDecoder, -1);
+    }
+
+    private KVSpliterator(KVStore kv, boolean prefixMode, boolean reversed, byte[] minKey, byte[] maxKey, KeyFilter keyFilter,
+      int characteristics, Comparator<? super E> comparator,
+      Function<ByteReader, ?> prefixDecoder, BiFunction<KVPair, ByteReader, E> pairDecoder, long estimate) {
+        this.kv = kv;
+        this.prefixMode = prefixMode;
+        this.reversed = reversed;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        this.keyFilter = keyFilter;
+        this.characteristics = characteristics;
+        this.comparator = comparator;
+        this.prefixDecoder = prefixDecoder;
+        this.pairDecoder = pairDecoder;
+        this.estimate = estimate;
+    }
+
+// Spliterator
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (this.iterator == null)
+            this.iterator = this.createIterator();
+        if (!this.iterator.hasNext()) {
+            this.iterator.close();
+            return false;
+        }
+        action.accept(this.iterator.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        if (this.iterator == null)
+            this.iterator = this.createIterator();
+        try {
+            while (this.iterator.hasNext())
+                action.accept(this.iterator.next());
+        } finally {
+            this.iterator.close();
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+
+        // Can't split once iteration has started
+        if (this.iterator != null)
+            return null;
+        this.estimateSize();
+
+        // Find split key
+        byte[] splitKey = KeyRangeSplitter.findSplitKey(this.kv, this.minKey, this.maxKey);
+        if (splitKey != null && this.prefixMode)
+            splitKey = this.findSplitPrefix(splitKey);
+        if (splitKey == null)
+            return null;
+
+        // Split the estimate; recompute both halves if the store provides estimates
+        final long splitEstimate;
+        if (this.estimated) {
+            splitEstimate = -1;
+            this.estimate = -1;
+        } else {
+            splitEstimate = this.estimate >>> 1;
+            this.estimate -= splitEstimate;
+        }
+
+        // Split off the range that comes first in iteration order
+        final KVSpliterator<E> split;
+        if (this.reversed) {
+            split = new KVSpliterator<>(this.kv, this.prefixMode, this.reversed, splitKey, this.maxKey, this.keyFilter,
+              this.characteristics, this.comparator, this.prefixDecoder, this.pairDecoder, splitEstimate);
+            this.maxKey = splitKey;
+        } else {
+            split = new KVSpliterator<>(this.kv, this.prefixMode, this.reversed, this.minKey, splitKey, this.keyFilter,
+              this.characteristics, this.comparator, this.prefixDecoder, this.pairDecoder, splitEstimate);
+            this.minKey = splitKey;
+        }
+        return split;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (this.estimate == -1) {
+            final SizeEstimate sizeEstimate = this.kv.estimateSize(this.minKey, this.maxKey);
+            this.estimated = sizeEstimate != null && sizeEstimate.getNumKeys() != -1;
+            this.estimate = this.estimated ? sizeEstimate.getNumKeys() : Long.MAX_VALUE;
+        }
+        return this.estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return this.characteristics;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        if ((this.characteristics & Spliterator.SORTED) == 0)
+            throw new IllegalStateException();
+        return this.comparator;
+    }
+
+// Internal methods
+
+    private AbstractKVIterator<E> createIterator() {
+        return new AbstractKVIterator<E>(this.kv, this.prefixMode, this.reversed,
+          new KeyRange(this.minKey, this.maxKey), this.keyFilter) {
+
+            @Override
+            protected E decodePair(KVPair pair, ByteReader keyReader) {
+                return KVSpliterator.this.pairDecoder.apply(pair, keyReader);
+            }
+        };
+    }
+
+    // Truncate the split key to its prefix, moving on to the next prefix if the lower range would otherwise be empty
+    private byte[] findSplitPrefix(byte[] splitKey) {
+        byte[] prefix = this.decodePrefix(splitKey);
+        if (ByteUtil.compare(prefix, this.minKey) > 0 && this.kv.getAtLeast(this.minKey, prefix) != null)
+            return prefix;
+        final byte[] nextKey;
+        try {
+            nextKey = ByteUtil.getKeyAfterPrefix(prefix);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final KVPair pair = this.kv.getAtLeast(nextKey, this.maxKey);
+        if (pair == null)
+            return null;
+        prefix = this.decodePrefix(pair.getKey());
+        assert ByteUtil.compare(prefix, this.minKey) > 0;
+        return prefix;
+    }
+
+    private byte[] decodePrefix(byte[] key) {
+        final ByteReader reader = new ByteReader(key);
+        this.prefixDecoder.apply(reader);
+        return reader.getBytes(0, reader.getOffset());
+    }
+}
@@ -0,0 +1,198 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility methods for splitting a {@link KeyRange} into smaller, roughly equal sub-ranges, e.g., so that
+ * the keys in the range can be scanned in parallel.
+ *
+ * <p>
+ * Split points are found by probing the {@link KVStore}: the first and last keys actually present in the range are
+ * located, and then a "midpoint" key between them is chosen. If the {@link KVStore} supports
+ * {@linkplain KVStore#estimateSize size estimation}, the midpoint is found by bisecting the key space until the
+ * estimated sizes of the two halves are roughly equal; otherwise, the midpoint in key space (as measured by
+ * {@link ByteUtil#toDouble}) is used, so that when keys are unevenly distributed the sub-ranges may contain
+ * differing numbers of keys. In either case, the first key at or after the midpoint becomes the split point.
+ *
+ * <p>
+ * Each split point probe requires a few {@link KVStore#getAtLeast getAtLeast()}, {@link KVStore#getAtMost getAtMost()}
+ * and {@link KVStore#estimateSize estimateSize()} calls, so splitting is cheap relative to scanning the range, but not free.
+ *
+ * @see AbstractKVNavigableSet#spliterator
+ * @see AbstractKVNavigableMap
+ */
+public final class KeyRangeSplitter {
+
+    private static final int MAX_BISECTIONS = 8;
+
+    private KeyRangeSplitter() {
+    }
+
+    /**
+     * Split the given key range into at most {@code maxRanges} contiguous sub-ranges.
+     *
+     * <p>
+     * The returned ranges are in order, do not overlap, and together cover all of {@code range}. Unless {@code range}
+     * is empty, every returned range contains at least one key. Fewer than {@code maxRanges} ranges are returned
+     * if {@code range} contains too few keys to be split further.
+     *
+     * @param kv key/value store containing the keys
+     * @param range the key range to split
+     * @param maxRanges maximum number of ranges to return
+     * @return list of non-overlapping sub-ranges covering {@code range}
+     * @throws IllegalArgumentException if {@code kv} or {@code range} is null
+     * @throws IllegalArgumentException if {@code maxRanges} is less than one
+     */
+    public static List<KeyRange> split(KVStore kv, KeyRange range, int maxRanges) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(maxRanges > 0, "maxRanges < 1");
+        final ArrayList<KeyRange> list = new ArrayList<>(maxRanges);
+        KeyRangeSplitter.split(kv, range.getMin(), range.getMax(), maxRanges, list);
+        return list;
+    }
+
+    private static void split(KVStore kv, byte[] minKey, byte[] maxKey, int maxRanges, List<KeyRange> list) {
+        final byte[] splitKey;
+        if (maxRanges < 2 || (splitKey = KeyRangeSplitter.findSplitKey(kv, minKey, maxKey)) == null) {
+            list.add(new KeyRange(minKey, maxKey));
+            return;
+        }
+        final int lowerRanges = maxRanges / 2;
+        KeyRangeSplitter.split(kv, minKey, splitKey, lowerRanges, list);
+        KeyRangeSplitter.split(kv, splitKey, maxKey, maxRanges - lowerRanges, list);
+    }
+
+    /**
+     * Find a key that splits the given key range into two roughly equal, non-empty halves.
+     *
+     * <p>
+     * If a key is returned, it is an existing key in {@code kv} that is strictly greater than the first key in the range,
+     * so that both {@code [minKey, splitKey)} and {@code [splitKey, maxKey)} contain at least one key.
+     *
+     * @param kv key/value store containing the keys
+     * @param minKey minimum key (inclusive), or null for no minimum
+     * @param maxKey maximum key (exclusive), or null for no maximum
+     * @return split key, or null if the range contains fewer than two keys
+     * @throws IllegalArgumentException if {@code kv} is null
+     */
+    public static byte[] findSplitKey(KVStore kv, byte[] minKey, byte[] maxKey) {
+        Preconditions.checkArgument(kv != null, "null kv");
+
+        // Find the first and last keys in the range
+        final KVPair firstPair = kv.getAtLeast(minKey, maxKey);
+        if (firstPair == null)
+            return null;
+        final KVPair lastPair = kv.getAtMost(maxKey, minKey);
+        if (lastPair == null)
+            return null;
+        final byte[] first = firstPair.getKey();
+        final byte[] last = lastPair.getKey();
+        if (ByteUtil.compare(first, last) >= 0)
+            return null;
+
+        // Find the midpoint of the keys, ignoring their common prefix
+        byte[] midKey = KeyRangeSplitter.midpoint(kv, first, last);
+        if (ByteUtil.compare(midKey, first) <= 0)
+            midKey = ByteUtil.getNextKey(first);
+        else if (ByteUtil.compare(midKey, last) > 0)
+            midKey = last;
+
+        // Find the first actual key at or after the midpoint (could be missing if "last" was concurrently removed)
+        final KVPair splitPair = kv.getAtLeast(midKey, maxKey);
+        if (splitPair == null)
+            return null;
+        assert ByteUtil.compare(splitPair.getKey(), first) > 0;
+        return splitPair.getKey();
+    }
+
+    private static byte[] midpoint(KVStore kv, byte[] first, byte[] last) {
+        final int prefixLength = KeyRangeSplitter.commonPrefixLength(first, last);
+        double lo = KeyRangeSplitter.position(first, prefixLength);
+        double hi = KeyRangeSplitter.position(last, prefixLength);
+
+        // If we have size estimates, bisect until both halves have roughly the same estimated size
+        final long total = KeyRangeSplitter.size(kv.estimateSize(first, ByteUtil.getNextKey(last)));
+        if (total > 1) {
+            for (int i = 0; i < MAX_BISECTIONS; i++) {
+                final double mid = (lo + hi) / 2;
+                final long size = KeyRangeSplitter.size(kv.estimateSize(first, KeyRangeSplitter.keyAt(first, prefixLength, mid)));
+                if (size == -1)
+                    break;
+                if (Math.abs(size * 2 - total) <= total / 8)
+                    return KeyRangeSplitter.keyAt(first, prefixLength, mid);
+                if (size * 2 < total)
+                    lo = mid;
+                else
+                    hi = mid;
+            }
+        }
+        return KeyRangeSplitter.keyAt(first, prefixLength, (lo + hi) / 2);
+    }
+
+    // Get the number of keys, or if that's unknown, the number of bytes, from an estimate
+    private static long size(SizeEstimate estimate) {
+        if (estimate == null)
+            return -1;
+        return estimate.getNumKeys() != -1 ? estimate.getNumKeys() : estimate.getNumBytes();
+    }
+
+    /**
+     * Get the length of the longest common prefix of two keys.
+     *
+     * @param key1 first key
+     * @param key2 second key, or null for infinity
+     * @return common prefix length
+     */
+    static int commonPrefixLength(byte[] key1, byte[] key2) {
+        if (key2 == null)
+            return 0;
+        int prefixLength = 0;
+        while (prefixLength < key1.length && prefixLength < key2.length && key1[prefixLength] == key2[prefixLength])
+            prefixLength++;
+        return prefixLength;
+    }
+
+    /**
+     * Get the position of a key in the key space following some prefix, as a value from zero to one.
+     *
+     * @param key key having the prefix, or null for infinity
+     * @param prefixLength prefix length
+     * @return key position
+     */
+    static double position(byte[] key, int prefixLength) {
+        if (key == null)
+            return 1.0;
+        return ByteUtil.toDouble(Arrays.copyOfRange(key, Math.min(prefixLength, key.length), key.length));
+    }
+
+    /**
+     * Get the key at the given position in the key space following the prefix of some key.
+     *
+     * @param key key having the prefix
+     * @param prefixLength prefix length
+     * @param position key position from zero (inclusive) to one (exclusive)
+     * @return key at {@code position}
+     */
+    static byte[] keyAt(byte[] key, int prefixLength, double position) {
+        final byte[] suffix = ByteUtil.fromDouble(position);
+        final byte[] result = Arrays.copyOf(key, prefixLength + suffix.length);
+        System.arraycopy(suffix, 0, result, prefixLength, suffix.length);
+        return result;
+    }
+}
@@ -15,12 +15,14 @@ import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
 import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.ReadIndex;
 import io.permazen.util.ByteUtil;
 
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -35,11 +37,16 @@ import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.LoggerFactory;
 
 /**
- * Utility class used to track key watches.
+ * Utility class used to track key watches and range watches.
+ *
+ * <p>
+ * Watched keys are kept in a sorted map, while watched ranges are kept in an interval index, so that the watches
+ * triggered by a key or range of keys can be found without examining every registered watch.
  *
  * <p>
  * To limit memory consumption, instances are configured with a maximum maximum number of key watches supported,
- * as well as a maximum lifetime for each key watch. When these limits are exceeded, one or more key watches
+ * as well as a maximum lifetime for each key watch; range watches count against the same limits. When these limits
+ * are exceeded, one or more key watches
  * is evicted and a corresponding spurious notification occurs.
  *
  * <p>
@@ -61,6 +68,7 @@ import org.slf4j.LoggerFactory;
  * Instances are thread safe.
  *
  * @see io.permazen.kv.KVTransaction#watchKey
+ * @see io.permazen.kv.KVTransaction#watchRange
  */
 @ThreadSafe
 public class KeyWatchTracker implements Closeable {
@@ -82,6 +90,10 @@ public class KeyWatchTracker implements Closeable {
 
     @GuardedBy("this")
     private final TreeMap<byte[], KeyInfo> keyInfos = new TreeMap<>(ByteUtil.COMPARATOR);
+    @GuardedBy("this")
+    private final HashMap<KeyRange, KeyInfo> rangeInfos = new HashMap<>();
+    @GuardedBy("this")
+    private final ReadIndex<KeyInfo> rangeIndex = new ReadIndex<>();
     private final Cache<KeyFuture, KeyInfo> futureMap;
     private final ExecutorService notifyExecutor;
 
@@ -141,23 +153,48 @@ public class KeyWatchTracker implements Closeable {
      * @return a {@link ListenableFuture} that returns {@code key} when the value associated with {@code key} is modified
      * @throws IllegalArgumentException if {@code key} is null
      */
-    public synchronized ListenableFuture<Void> register(byte[] key) {
+    public ListenableFuture<Void> register(byte[] key) {
 
         // Sanity check
         Preconditions.checkArgument(key != null, "null key");
-
-        // Get/create KeyInfo object for this key
-        KeyInfo keyInfo;
-        synchronized (this) {
-            if ((keyInfo = this.keyInfos.get(key)) == null) {
-                key = key.clone();                              // avoid external mutation of key contents
-                keyInfo = new KeyInfo(key);
-                this.keyInfos.put(key, keyInfo);
-            }
+        final byte[] keyCopy = key.clone();                             // avoid external mutation of key contents
+
+        // Get/create KeyInfo object for this key and create a new future; retry if the KeyInfo was concurrently discarded.
+        // Note we can't hold our lock while creating the future, because futureMap may invoke KeyInfo.handleRemoval().
+        while (true) {
+            final KeyFuture future = this.getKeyInfo(keyCopy).createFuture();
+            if (future != null)
+                return future;
         }
+    }
 
-        // Create new future for this key
-        return keyInfo.createFuture();
+    /**
+     * Register a new range watch.
+     *
+     * <p>
+     * If the returned {@link java.util.concurrent.Future} is {@link java.util.concurrent.Future#cancel cancel()}'ed,
+     * the watch is automatically unregistered.
+     *
+     * <p>
+     * If {@code range} contains a single key, this is equivalent to {@link #register(byte[]) register(range.getMin())}.
+     *
+     * @param range the range of keys to watch
+     * @return a {@link ListenableFuture} that completes when the value associated with any key in {@code range} is modified
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public ListenableFuture<Void> register(KeyRange range) {
+
+        // Sanity check
+        Preconditions.checkArgument(range != null, "null range");
+        if (range.isSingleKey())
+            return this.register(range.getMin());
+
+        // Get/create KeyInfo object for this range and create a new future; retry if the KeyInfo was concurrently discarded
+        while (true) {
+            final KeyFuture future = this.getRangeInfo(range).createFuture();
+            if (future != null)
+                return future;
+        }
     }
 
     /**
@@ -172,6 +209,18 @@ public class KeyWatchTracker implements Closeable {
         return this.keyInfos.size();
     }
 
+    /**
+     * Count the number of key ranges being watched.
+     *
+     * <p>
+     * Note that the same range can be watched more than once, so this only counts ranges being watched, not total watches.
+     *
+     * @return number of ranges being watched
+     */
+    public synchronized int getNumRangesWatched() {
+        return this.rangeInfos.size();
+    }
+
     /**
      * Trigger all watches associated with the given key.
      *
@@ -184,16 +233,17 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(key != null, "null key");
 
-        // Extract KeyInfo object for this key
-        final KeyInfo keyInfo;
+        // Extract KeyInfo objects for this key and all ranges containing it
+        final ArrayList<KeyInfo> triggerList = new ArrayList<>();
         synchronized (this) {
-            if ((keyInfo = KeyWatchTracker.this.keyInfos.remove(key)) == null)
-                return false;
+            final KeyInfo keyInfo = this.keyInfos.remove(key);
+            if (keyInfo != null)
+                triggerList.add(keyInfo);
+            this.removeRangeInfos(key, triggerList);
         }
 
         // Trigger all associated futures
-        keyInfo.triggerAll();
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -212,17 +262,15 @@ public class KeyWatchTracker implements Closeable {
         final ArrayList<KeyInfo> triggerList = new ArrayList<>();
         synchronized (this) {
             for (byte[] key : keys) {
-                final KeyInfo keyInfo = KeyWatchTracker.this.keyInfos.remove(key);
+                final KeyInfo keyInfo = this.keyInfos.remove(key);
                 if (keyInfo != null)
                     triggerList.add(keyInfo);
+                this.removeRangeInfos(key, triggerList);
             }
         }
-        if (triggerList.isEmpty())
-            return false;
 
         // Trigger all associated futures
-        triggerList.forEach(KeyInfo::triggerAll);
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -237,7 +285,7 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(range != null, "null range");
 
-        // Extract KeyInfo objects for all keys in the range
+        // Extract KeyInfo objects for all keys in the range and all overlapping ranges
         final ArrayList<KeyInfo> triggerList = new ArrayList<>();
         synchronized (this) {
             final NavigableMap<byte[], KeyInfo> subMap = range.getMax() != null ?
@@ -245,13 +293,11 @@ public class KeyWatchTracker implements Closeable {
               this.keyInfos.tailMap(range.getMin(), true);
             triggerList.addAll(subMap.values());
             subMap.clear();
+            this.removeRangeInfos(range, triggerList);
         }
-        if (triggerList.isEmpty())
-            return false;
 
         // Trigger all associated futures
-        triggerList.forEach(KeyInfo::triggerAll);
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -316,16 +362,12 @@ public class KeyWatchTracker implements Closeable {
 
         // Add all of their futures to this instance
         for (KeyInfo thatKeyInfo : thatKeyInfos) {
-            final byte[] key = thatKeyInfo.getKey();
-            KeyInfo thisKeyInfo;
-            synchronized (this) {
-                if ((thisKeyInfo = this.keyInfos.get(key)) == null) {
-                    thisKeyInfo = new KeyInfo(key);
-                    this.keyInfos.put(key, thisKeyInfo);
-                }
-            }
             for (KeyFuture future : thatKeyInfo.removeAllFutures()) {
-                thisKeyInfo.addFuture(future);
+                KeyInfo thisKeyInfo;
+                do {
+                    thisKeyInfo = thatKeyInfo.getRange() != null ?
+                      this.getRangeInfo(thatKeyInfo.getRange()) : this.getKeyInfo(thatKeyInfo.getKey());
+                } while (!thisKeyInfo.addFuture(future));
                 future.setOwner(this.futureMap);
                 if (future.isDone())
                     this.futureMap.invalidate(future);          // handle race with future's owner vs. future completion
@@ -337,10 +379,60 @@ public class KeyWatchTracker implements Closeable {
     }
 
     private synchronized KeyInfo[] removeAllKeyInfos() {
-        final Collection<KeyInfo> allKeyInfos = this.keyInfos.values();
-        final KeyInfo[] result = allKeyInfos.toArray(new KeyInfo[allKeyInfos.size()]);
+        final ArrayList<KeyInfo> allKeyInfos = new ArrayList<>(this.keyInfos.size() + this.rangeInfos.size());
+        allKeyInfos.addAll(this.keyInfos.values());
+        allKeyInfos.addAll(this.rangeInfos.values());
         this.keyInfos.clear();
-        return result;
+        this.rangeInfos.clear();
+        this.rangeIndex.clear();
+        return allKeyInfos.toArray(new KeyInfo[allKeyInfos.size()]);
+    }
+
+    private synchronized KeyInfo getKeyInfo(byte[] key) {
+        KeyInfo keyInfo = this.keyInfos.get(key);
+        if (keyInfo == null) {
+            keyInfo = new KeyInfo(key, null);
+            this.keyInfos.put(key, keyInfo);
+        }
+        return keyInfo;
+    }
+
+    private synchronized KeyInfo getRangeInfo(KeyRange range) {
+        KeyInfo keyInfo = this.rangeInfos.get(range);
+        if (keyInfo == null) {
+            keyInfo = new KeyInfo(null, range);
+            this.rangeInfos.put(range, keyInfo);
+            this.rangeIndex.add(keyInfo, new KeyRanges(range));
+        }
+        return keyInfo;
+    }
+
+    // Remove watched ranges that contain the given key, adding them to the given list
+    private void removeRangeInfos(byte[] key, ArrayList<KeyInfo> list) {
+        assert Thread.holdsLock(this);
+        if (!this.rangeInfos.isEmpty())
+            this.removeRangeInfos(new KeyRange(key), list);
+    }
+
+    // Remove watched ranges that overlap the given range, adding them to the given list
+    private void removeRangeInfos(KeyRange range, ArrayList<KeyInfo> list) {
+        assert Thread.holdsLock(this);
+        if (this.rangeInfos.isEmpty())
+            return;
+        final HashSet<KeyInfo> overlaps = new HashSet<>();
+        this.rangeIndex.findOverlaps(range, overlaps);
+        for (KeyInfo keyInfo : overlaps) {
+            this.rangeInfos.remove(keyInfo.getRange());
+            this.rangeIndex.remove(keyInfo);
+            list.add(keyInfo);
+        }
+    }
+
+    private boolean triggerAll(ArrayList<KeyInfo> triggerList) {
+        if (triggerList.isEmpty())
+            return false;
+        triggerList.forEach(KeyInfo::triggerAll);
+        return true;
     }
 
 // Closeable
@@ -367,30 +459,44 @@ public class KeyWatchTracker implements Closeable {
     // Note locking order: KeyInfo, then KeyWatchTracker
     private class KeyInfo {
 
-        private final byte[] key;
+        private final byte[] key;                                       // null for a range watch
+        private final KeyRange range;                                   // null for a key watch
         @GuardedBy("this")
         private final HashSet<KeyFuture> futures = new HashSet<>(1);
+        @GuardedBy("this")
+        private boolean discarded;                                      // no longer tracked, so can't accept new futures
 
-        KeyInfo(byte[] key) {
-            assert key != null;
+        KeyInfo(byte[] key, KeyRange range) {
+            assert (key != null) != (range != null);
             this.key = key;
+            this.range = range;
         }
 
         public byte[] getKey() {
             return this.key;
         }
 
+        public KeyRange getRange() {
+            return this.range;
+        }
+
+        // Returns null if this instance has been discarded
         KeyFuture createFuture() {
             final KeyFuture future = new KeyFuture(KeyWatchTracker.this.futureMap);
-            this.addFuture(future);
-            return future;
+            return this.addFuture(future) ? future : null;
         }
 
-        void addFuture(KeyFuture future) {
+        // Returns false if this instance has been discarded
+        boolean addFuture(KeyFuture future) {
             KeyWatchTracker.this.futureMap.put(future, this);
             synchronized (this) {
-                this.futures.add(future);
+                if (!this.discarded) {
+                    this.futures.add(future);
+                    return true;
+                }
             }
+            KeyWatchTracker.this.futureMap.invalidate(future);
+            return false;
         }
 
         void handleRemoval(KeyFuture future) {
@@ -420,9 +526,13 @@ public class KeyWatchTracker implements Closeable {
             final boolean removed;
             synchronized (this) {
                 removed = this.futures.remove(future);
-                if (this.futures.isEmpty()) {                           // discard this instance if there are no futures left
+                if (this.futures.isEmpty() && !this.discarded) {        // discard this instance if there are no futures left
+                    this.discarded = true;
                     synchronized (KeyWatchTracker.this) {
-                        KeyWatchTracker.this.keyInfos.remove(this.key);
+                        if (this.range == null)
+                            KeyWatchTracker.this.keyInfos.remove(this.key, this);
+                        else if (KeyWatchTracker.this.rangeInfos.remove(this.range, this))
+                            KeyWatchTracker.this.rangeIndex.remove(this);
                     }
                 }
             }
@@ -456,6 +566,7 @@ public class KeyWatchTracker implements Closeable {
             synchronized (this) {
                 futureList = new ArrayList<>(this.futures);
                 this.futures.clear();
+                this.discarded = true;
             }
             KeyWatchTracker.this.futureMap.invalidateAll(futureList);
             return futureList;
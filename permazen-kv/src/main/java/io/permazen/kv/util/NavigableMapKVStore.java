@@ -10,6 +10,7 @@ import com.google.common.collect.Iterators;
 
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.SizeEstimate;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
@@ -120,6 +121,18 @@ public class NavigableMapKVStore extends AbstractKVStore implements Cloneable, S
           entry -> new KVPair(entry.getKey().clone(), entry.getValue().clone())));
     }
 
+    /**
+     * Estimate the size of the specified range.
+     *
+     * <p>
+     * The implementation in {@link NavigableMapKVStore} counts up to {@link SizeEstimates#DEFAULT_MEMORY_SAMPLE_LIMIT} keys
+     * exactly, and extrapolates beyond that; see {@link SizeEstimates#sample SizeEstimates.sample()}.
+     */
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return SizeEstimates.sample(this, minKey, maxKey, SizeEstimates.DEFAULT_MEMORY_SAMPLE_LIMIT);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         Preconditions.checkArgument(key != null, "null key");
@@ -6,9 +6,13 @@
 package io.permazen.kv.util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.primitives.Bytes;
 
 import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
 
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -79,5 +83,18 @@ public class PrefixKVDatabase implements KVDatabase {
     public PrefixKVTransaction createTransaction() {
         return new PrefixKVTransaction(this);
     }
-}
 
+    /**
+     * Load a sorted stream of key/value pairs into the containing {@link KVDatabase} under this instance's key prefix.
+     *
+     * <p>
+     * The implementation in {@link PrefixKVDatabase} prepends the key prefix to each key and delegates to the
+     * containing {@link KVDatabase}; prefixing does not change the key ordering.
+     */
+    @Override
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+        Preconditions.checkArgument(pairs != null, "null pairs");
+        this.db.bulkLoad(Iterators.transform(pairs,
+          pair -> pair != null ? new KVPair(Bytes.concat(this.keyPrefix, pair.getKey()), pair.getValue()) : null));
+    }
+}
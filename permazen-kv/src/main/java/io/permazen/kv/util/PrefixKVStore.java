@@ -11,9 +11,15 @@ import com.google.common.primitives.Bytes;
 
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.util.ByteSlice;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A {@link io.permazen.kv.KVStore} view of all keys having a common {@code byte[]} prefix
  * in an outer, containing {@link io.permazen.kv.KVStore}.
@@ -68,13 +74,21 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         return this.delegate().get(this.addPrefix(key));
     }
 
+    @Override
+    public List<byte[]> getMany(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        final ArrayList<byte[]> prefixedKeys = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            prefixedKeys.add(this.addPrefix(key));
+        return this.delegate().getMany(prefixedKeys);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
         final KVPair pair = this.delegate().getAtLeast(this.addMinPrefix(minKey), this.addMaxPrefix(maxKey));
         if (pair == null)
             return null;
-        assert ByteUtil.isPrefixOf(this.keyPrefix, pair.getKey());
-        return new KVPair(this.removePrefix(pair.getKey()), pair.getValue());
+        return this.removePrefix(pair);
     }
 
     @Override
@@ -82,15 +96,56 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         final KVPair pair = this.delegate().getAtMost(this.addMaxPrefix(maxKey), this.addMinPrefix(minKey));
         if (pair == null)
             return null;
-        assert ByteUtil.isPrefixOf(this.keyPrefix, pair.getKey());
-        return new KVPair(this.removePrefix(pair.getKey()), pair.getValue());
+        return this.removePrefix(pair);
     }
 
     @Override
     public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
         final CloseableIterator<KVPair> i = this.delegate().getRange(this.addMinPrefix(minKey), this.addMaxPrefix(maxKey), reverse);
         return CloseableIterator.wrap(
-          Iterators.transform(i, pair -> new KVPair(this.removePrefix(pair.getKey()), pair.getValue())), i);
+          Iterators.transform(i, this::removePrefix), i);
+    }
+
+    @Override
+    public SizeEstimate estimateSize(byte[] minKey, byte[] maxKey) {
+        return this.delegate().estimateSize(this.addMinPrefix(minKey), this.addMaxPrefix(maxKey));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        return this.delegate().getAsync(this.addPrefix(key));
+    }
+
+    @Override
+    public CompletableFuture<List<byte[]>> getManyAsync(List<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        final ArrayList<byte[]> prefixedKeys = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            prefixedKeys.add(this.addPrefix(key));
+        return this.delegate().getManyAsync(prefixedKeys);
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtLeastAsync(byte[] minKey, byte[] maxKey) {
+        return this.delegate().getAtLeastAsync(this.addMinPrefix(minKey), this.addMaxPrefix(maxKey))
+          .thenApply(pair -> pair != null ? this.removePrefix(pair) : null);
+    }
+
+    @Override
+    public CompletableFuture<KVPair> getAtMostAsync(byte[] maxKey, byte[] minKey) {
+        return this.delegate().getAtMostAsync(this.addMaxPrefix(maxKey), this.addMinPrefix(minKey))
+          .thenApply(pair -> pair != null ? this.removePrefix(pair) : null);
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        return this.delegate().getRangeAsync(this.addMinPrefix(minKey), this.addMaxPrefix(maxKey), reverse, limit)
+          .thenApply(batch -> {
+            final ArrayList<KVPair> result = new ArrayList<>(batch.size());
+            for (KVPair pair : batch)
+                result.add(this.removePrefix(pair));
+            return result;
+        });
     }
 
     @Override
@@ -133,14 +188,19 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         return this.addPrefix(maxKey);
     }
 
-    private byte[] removePrefix(byte[] key) {
-        if (!ByteUtil.isPrefixOf(this.keyPrefix, key)) {
-            throw new IllegalArgumentException("read key " + ByteUtil.toString(key) + " not having "
+    // Strip the prefix from a key/value pair without copying the key, or loading the value until needed
+    private KVPair removePrefix(KVPair pair) {
+        final ByteSlice key = pair.getKeySlice();
+        if (!key.startsWith(this.keyPrefix)) {
+            throw new IllegalArgumentException("read key " + key + " not having "
               + ByteUtil.toString(this.keyPrefix) + " as a prefix");
         }
-        final byte[] suffix = new byte[key.length - this.keyPrefix.length];
-        System.arraycopy(key, this.keyPrefix.length, suffix, 0, suffix.length);
-        return suffix;
+        return new KVPair(key.substring(this.keyPrefix.length)) {
+            @Override
+            protected ByteSlice loadValue() {
+                return pair.getValueSlice();
+            }
+        };
     }
 }
 
@@ -0,0 +1,82 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+/**
+ * Utility methods for {@link KVStore} implementations that compute {@linkplain KVStore#estimateSize size estimates}.
+ *
+ * @see SizeEstimate
+ */
+public final class SizeEstimates {
+
+    /**
+     * Default sample size limit used by {@link KVStore} implementations that {@linkplain #sample sample}
+     * in-memory data.
+     */
+    public static final int DEFAULT_MEMORY_SAMPLE_LIMIT = 10000;
+
+    private SizeEstimates() {
+    }
+
+    /**
+     * Estimate the size of a key range by iterating over (at most) its first {@code limit} keys.
+     *
+     * <p>
+     * If the range contains {@code limit} keys or fewer, they are all counted and the result is exact.
+     * Otherwise, the counts are extrapolated to the entire range based on the fraction of the range's key space
+     * (as measured by {@link ByteUtil#toDouble}, after skipping any common prefix of {@code minKey} and {@code maxKey})
+     * that the sampled keys span; this is accurate when keys are evenly distributed in key space.
+     *
+     * @param kv key/value store
+     * @param minKey minimum key (inclusive), or null for no minimum
+     * @param maxKey maximum key (exclusive), or null for no maximum
+     * @param limit maximum number of keys to iterate
+     * @return estimated size of the range
+     * @throws IllegalArgumentException if {@code kv} is null
+     * @throws IllegalArgumentException if {@code limit} is not positive
+     */
+    public static SizeEstimate sample(KVStore kv, byte[] minKey, byte[] maxKey, int limit) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(limit > 0, "limit <= 0");
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+
+        // Count the first "limit" keys and find where the next key starts
+        long numKeys = 0;
+        long numBytes = 0;
+        byte[] nextKey = null;
+        try (CloseableIterator<KVPair> i = kv.getRange(minKey, maxKey, false)) {
+            while (i.hasNext()) {
+                final KVPair pair = i.next();
+                if (numKeys == limit) {
+                    nextKey = pair.getKey();
+                    break;
+                }
+                numKeys++;
+                numBytes += pair.getKey().length + pair.getValue().length;
+            }
+        }
+        if (nextKey == null)
+            return new SizeEstimate(numKeys, numBytes, true);
+
+        // Extrapolate from the fraction of the key space sampled
+        final int prefixLength = KeyRangeSplitter.commonPrefixLength(minKey, maxKey);
+        final double min = KeyRangeSplitter.position(minKey, prefixLength);
+        final double max = KeyRangeSplitter.position(maxKey, prefixLength);
+        final double fraction = (KeyRangeSplitter.position(nextKey, prefixLength) - min) / (max - min);
+        if (!(fraction > 0.0 && fraction <= 1.0))                 // keys are too close together to measure
+            return new SizeEstimate(numKeys, numBytes, false);
+        return new SizeEstimate(Math.round(numKeys / fraction), Math.round(numBytes / fraction), false);
+    }
+}
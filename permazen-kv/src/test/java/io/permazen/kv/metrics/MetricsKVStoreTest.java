@@ -0,0 +1,126 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.metrics;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.test.TestSupport;
+import io.permazen.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MetricsKVStoreTest extends TestSupport {
+
+    @Test
+    public void testHistogram() throws Exception {
+        final Histogram histogram = new Histogram();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getPercentile(50), 0);
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+        histogram.record(-5);
+        Assert.assertEquals(histogram.getCount(), 101);
+        Assert.assertEquals(histogram.getTotal(), 5050);
+        Assert.assertEquals(histogram.getMax(), 100);
+        Assert.assertEquals(histogram.getBucketCounts()[0], 1);
+        Assert.assertEquals(histogram.getBucketCounts()[7], 37);               // 64..100
+        Assert.assertEquals(histogram.getPercentile(100), 100);
+        Assert.assertEquals(histogram.getPercentile(50), 63);                  // 50..63
+        Assert.assertEquals(histogram.getPercentile(1), 1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(histogram.getPercentile(100), Long.MAX_VALUE);
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMax(), 0);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final KVMetrics metrics = new KVMetrics();
+        final ArrayList<String> events = new ArrayList<>();
+        final KVMetricsListener listener = new KVMetricsListener() {
+            @Override
+            public void operationCompleted(MetricsKVStore store, KVOperation op, long nanos, long bytesRead, long bytesWritten) {
+                events.add(op + ":" + bytesRead + ":" + bytesWritten);
+            }
+            @Override
+            public void rangeScanCompleted(MetricsKVStore store, long pairs, long bytesRead) {
+                events.add("SCAN:" + pairs + ":" + bytesRead);
+            }
+        };
+        metrics.addListener(listener);
+        final MetricsKVStore kv = new MetricsKVStore(new NavigableMapKVStore(), metrics);
+
+        kv.put(b("0102"), b("030405"));
+        kv.put(b("0103"), b("06"));
+        kv.put(b("0200"), b(""));
+        Assert.assertEquals(kv.get(b("0102")), b("030405"));
+        Assert.assertNull(kv.get(b("0104")));
+        Assert.assertEquals(kv.getMany(Arrays.asList(b("0102"), b("0103"))).size(), 2);
+        kv.adjustCounter(b("0200"), 1);
+        kv.remove(b("0200"));
+        try (CloseableIterator<KVPair> i = kv.getRange(b("01"), b("02"), false)) {
+            while (i.hasNext())
+                i.next();
+        }
+        try (CloseableIterator<KVPair> i = kv.getRange(null, null, true)) {
+            i.next();
+        }
+        kv.removeRange(b("01"), null);
+
+        Assert.assertEquals(events, Arrays.asList(
+          "PUT:0:5",
+          "PUT:0:3",
+          "PUT:0:2",
+          "GET:3:0",
+          "GET:0:0",
+          "GET_MANY:4:0",
+          "ADJUST_COUNTER:0:10",
+          "REMOVE:0:2",
+          "GET_RANGE:0:0",
+          "SCAN:2:8",
+          "GET_RANGE:0:0",
+          "SCAN:1:3",
+          "REMOVE_RANGE:0:1"));
+
+        Assert.assertEquals(metrics.getLatency(KVOperation.PUT).getCount(), 3);
+        Assert.assertEquals(metrics.getLatency(KVOperation.GET).getCount(), 2);
+        Assert.assertEquals((long)metrics.getOperationCounts().get("GET_RANGE"), 2);
+        Assert.assertEquals(metrics.getRangeScanLengths().getTotal(), 3);
+        Assert.assertEquals(metrics.getMaxRangeScanLength(), 2);
+        Assert.assertEquals(metrics.getBytesRead(), 18);
+        Assert.assertEquals(metrics.getBytesWritten(), 23);
+        Assert.assertEquals(kv.getBytesRead(), 18);
+        Assert.assertEquals(kv.getBytesWritten(), 23);
+        Assert.assertEquals(kv.getOperationCount(), 11);
+
+        // Disabled
+        events.clear();
+        metrics.setEnabled(false);
+        kv.put(b("0102"), b("030405"));
+        Assert.assertEquals(kv.get(b("0102")), b("030405"));
+        try (CloseableIterator<KVPair> i = kv.getRange(null, null, false)) {
+            Assert.assertTrue(i.hasNext());
+        }
+        Assert.assertTrue(events.isEmpty());
+        Assert.assertEquals(kv.getOperationCount(), 11);
+        Assert.assertEquals(metrics.getBytesWritten(), 23);
+
+        // Reset
+        metrics.setEnabled(true);
+        metrics.removeListener(listener);
+        metrics.reset();
+        kv.get(b("0102"));
+        Assert.assertTrue(events.isEmpty());
+        Assert.assertEquals(metrics.getLatency(KVOperation.GET).getCount(), 1);
+        Assert.assertEquals(metrics.getLatency(KVOperation.PUT).getCount(), 0);
+        Assert.assertEquals(metrics.getBytesRead(), 3);
+    }
+}
@@ -0,0 +1,159 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvcc;
+
+import io.permazen.kv.KeyRange;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class LockManagerTest extends TestSupport {
+
+    @Test
+    public void testBasicLocking() throws Exception {
+        final LockManager lockManager = new LockManager(4);
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+
+        // Read locks don't conflict
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("20"), false, 10), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner2, b("15"), b("25"), false, 10), LockManager.LockResult.SUCCESS);
+
+        // Write locks conflict with other owners' locks, but not our own
+        Assert.assertEquals(lockManager.lock(owner1, b("18"), b("19"), true, 10), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("15"), true, 10), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.isLocked(owner1, b("10"), b("15"), true));
+        Assert.assertTrue(lockManager.isLocked(owner1, b("10"), b("20"), false));
+        Assert.assertFalse(lockManager.isLocked(owner1, b("10"), b("20"), true));
+        Assert.assertFalse(lockManager.isLocked(owner2, b("10"), b("20"), false));
+
+        // Full range write lock conflicts with everything
+        Assert.assertEquals(lockManager.lock(owner2, b(""), null, true, 10), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+
+        // Releasing wakes up waiters
+        final AtomicReference<LockManager.LockResult> result = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                result.set(lockManager.lock(owner2, b("12"), b("13"), true, 5000));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        Assert.assertNull(result.get());
+        Assert.assertTrue(lockManager.release(owner1));
+        thread.join();
+        Assert.assertEquals(result.get(), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.release(owner2));
+    }
+
+    @Test
+    public void testHoldTimeout() throws Exception {
+        final LockManager lockManager = new LockManager(4);
+        lockManager.setHoldTimeout(100);
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+
+        // Owner #1 holds a lock too long while owner #2 waits
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("20"), true, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.checkHoldTimeout(owner1) > 0);
+        Assert.assertEquals(lockManager.lock(owner2, b("15"), null, true, 1000), LockManager.LockResult.SUCCESS);
+
+        // Owner #1 has been forced to release its locks
+        Assert.assertEquals(lockManager.checkHoldTimeout(owner1), -1);
+        Assert.assertEquals(lockManager.lock(owner1, b("30"), b("40"), false, 0), LockManager.LockResult.HOLD_TIMEOUT_EXPIRED);
+        Assert.assertFalse(lockManager.release(owner1));
+        Assert.assertTrue(lockManager.release(owner2));
+
+        // After release, owner #1 may lock again
+        Assert.assertEquals(lockManager.lock(owner1, b("30"), b("40"), false, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.release(owner1));
+    }
+
+    @Test(dataProvider = "stripes")
+    public void testConcurrentLocking(int numStripes) throws Exception {
+        final LockManager lockManager = new LockManager(numStripes);
+        final ArrayList<Lock> held = new ArrayList<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            final long seed = this.random.nextLong();
+            threads[i] = new Thread(() -> {
+                final Random random = new Random(seed);
+                try {
+                    for (int j = 0; j < 200; j++) {
+                        final LockOwner owner = new LockOwner();
+                        final ArrayList<Lock> locks = new ArrayList<>();
+                        for (int k = random.nextInt(5); k >= 0; k--) {
+                            final KeyRange range = this.randomRange(random);
+                            final boolean write = random.nextBoolean();
+                            final LockManager.LockResult result = lockManager.lock(owner,
+                              range.getMin(), range.getMax(), write, 50);
+                            if (result != LockManager.LockResult.SUCCESS)
+                                break;
+                            final Lock lock = new Lock(owner, range.getMin(), range.getMax(), write);
+                            synchronized (held) {
+                                for (Lock other : held) {
+                                    if (lock.conflictsWith(other))
+                                        throw new AssertionError("conflicting locks " + lock + " and " + other);
+                                }
+                                held.add(lock);
+                            }
+                            locks.add(lock);
+                        }
+                        synchronized (held) {
+                            held.removeAll(locks);
+                        }
+                        Assert.assertTrue(lockManager.release(owner));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null)
+            throw new AssertionError("thread failed", failure.get());
+        Assert.assertTrue(held.isEmpty());
+    }
+
+    @DataProvider(name = "stripes")
+    private Object[][] genStripes() {
+        return new Object[][] {
+            { 1 },
+            { 7 },
+            { LockManager.DEFAULT_NUM_STRIPES },
+            { LockManager.MAX_NUM_STRIPES },
+        };
+    }
+
+    private KeyRange randomRange(Random random) {
+        final byte[] key = new byte[1 + random.nextInt(9)];
+        random.nextBytes(key);
+        key[0] &= 0x0f;
+        switch (random.nextInt(10)) {
+        case 0:
+            return new KeyRange(key, null);
+        case 1:
+        case 2:
+            return KeyRange.forPrefix(Arrays.copyOf(key, 1 + random.nextInt(key.length)));
+        default:
+            return new KeyRange(key, ByteUtil.getNextKey(key));
+        }
+    }
+}
@@ -15,6 +15,8 @@ import io.permazen.kv.util.UnmodifiableKVStore;
 import io.permazen.test.TestSupport;
 import io.permazen.util.ByteUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -87,6 +89,79 @@ public class MutableViewTest extends TestSupport {
         Assert.assertEquals(mv.getReads(), new Reads(new KeyRanges(min, max)));
     }
 
+    @Test
+    public void testGetMany() throws Exception {
+        final KVStore kvstore = new NavigableMapKVStore();
+        this.setup(kvstore);
+
+        // Create two views with identical writes
+        final MutableView mv1 = new MutableView(kvstore);
+        final MutableView mv2 = new MutableView(kvstore);
+        for (MutableView mv : Arrays.asList(mv1, mv2)) {
+            mv.put(KEY_30, VAL_01);
+            mv.remove(KEY_40);
+            mv.removeRange(KEY_A0, KEY_C0);
+            mv.adjustCounter(KEY_F8, 3);
+        }
+
+        // Compare getMany() to individual get()'s
+        final List<byte[]> keys = Arrays.asList(KEY_20, KEY_30, KEY_40, KEY_50, KEY_80, KEY_A0, KEY_F8, KEY_20);
+        final List<byte[]> values = mv1.getMany(keys);
+        Assert.assertEquals(values.size(), keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            final byte[] expected = mv2.get(keys.get(i));
+            Assert.assertEquals(values.get(i) != null ? ByteUtil.toString(values.get(i)) : null,
+              expected != null ? ByteUtil.toString(expected) : null, "wrong value for key " + ByteUtil.toString(keys.get(i)));
+        }
+        Assert.assertEquals(mv1.decodeCounter(values.get(6)), 3L);
+
+        // Verify reads were recorded identically
+        Assert.assertEquals(mv1.getReads(), mv2.getReads());
+    }
+
+    @Test
+    public void testAsyncReads() throws Exception {
+        final KVStore kvstore = new NavigableMapKVStore();
+        this.setup(kvstore);
+
+        // Create two views with identical writes
+        final MutableView mv1 = new MutableView(kvstore);
+        final MutableView mv2 = new MutableView(kvstore);
+        for (MutableView mv : Arrays.asList(mv1, mv2)) {
+            mv.put(KEY_30, VAL_01);
+            mv.remove(KEY_40);
+            mv.removeRange(KEY_A0, KEY_C0);
+            mv.adjustCounter(KEY_F8, 3);
+        }
+
+        // Compare getAsync() and getManyAsync() to individual get()'s
+        final List<byte[]> keys = Arrays.asList(KEY_20, KEY_30, KEY_40, KEY_50, KEY_80, KEY_A0, KEY_F8);
+        final List<byte[]> values = mv1.getManyAsync(keys).get();
+        Assert.assertEquals(values.size(), keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            final byte[] expected = mv2.get(keys.get(i));
+            final byte[] actual = mv1.getAsync(keys.get(i)).get();
+            Assert.assertEquals(values.get(i) != null ? ByteUtil.toString(values.get(i)) : null,
+              expected != null ? ByteUtil.toString(expected) : null, "wrong value for key " + ByteUtil.toString(keys.get(i)));
+            Assert.assertEquals(actual != null ? ByteUtil.toString(actual) : null,
+              expected != null ? ByteUtil.toString(expected) : null, "wrong value for key " + ByteUtil.toString(keys.get(i)));
+        }
+
+        // Verify reads were recorded identically
+        Assert.assertEquals(mv1.getReads(), mv2.getReads());
+
+        // Compare getRangeAsync(), getAtLeastAsync(), and getAtMostAsync() to getRange()
+        for (boolean reverse : new boolean[] { false, true }) {
+            final List<KVPair> expected = new ArrayList<>();
+            mv2.getRange(KEY_20, null, reverse).forEachRemaining(expected::add);
+            Assert.assertEquals(mv1.getRangeAsync(KEY_20, null, reverse, 1000).get(), expected);
+            Assert.assertEquals(mv1.getRangeAsync(KEY_20, null, reverse, 2).get(), expected.subList(0, 2));
+            Assert.assertEquals(reverse ? mv1.getAtMostAsync(null, KEY_20).get() : mv1.getAtLeastAsync(KEY_20, null).get(),
+              expected.get(0));
+        }
+        Assert.assertEquals(mv1.getReads(), mv2.getReads());
+    }
+
     @Test
     public void testRandomWrites() throws Exception {
         KVStore kvstore = new NavigableMapKVStore();
@@ -117,10 +192,12 @@ public class MutableViewTest extends TestSupport {
                 KVPair pair = mv.getAtLeast(minKey, maxKey);
                 KVPair epair = expected.getAtLeast(minKey, maxKey);
                 Assert.assertEquals(pair, epair);
+                Assert.assertEquals(mv.getAtLeastAsync(minKey, maxKey).get(), epair);
             } else if (choice < 30) {
                 KVPair pair = mv.getAtMost(maxKey, minKey);
                 KVPair epair = expected.getAtMost(maxKey, minKey);
                 Assert.assertEquals(pair, epair);
+                Assert.assertEquals(mv.getAtMostAsync(maxKey, minKey).get(), epair);
             } else if (choice < 40) {
                 final boolean reverse = this.random.nextBoolean();
                 if (this.random.nextInt(10) == 0)
@@ -130,6 +207,9 @@ public class MutableViewTest extends TestSupport {
                 final List<KVPair> alist = Lists.newArrayList(mv.getRange(minKey, maxKey, reverse));
                 final List<KVPair> elist = Lists.newArrayList(expected.getRange(minKey, maxKey, reverse));
                 Assert.assertEquals(alist, elist, "iterations differ:\n  alist=" + alist + "\n  elist=" + elist + "\n");
+                final int limit = 1 + this.random.nextInt(5);
+                Assert.assertEquals(mv.getRangeAsync(minKey, maxKey, reverse, limit).get(),
+                  elist.subList(0, Math.min(limit, elist.size())));
             } else if (choice < 60) {
                 mv.put(minKey, value);
                 expected.put(minKey, value);
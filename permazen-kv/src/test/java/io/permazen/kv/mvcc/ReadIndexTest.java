@@ -0,0 +1,87 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvcc;
+
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ReadIndexTest extends TestSupport {
+
+    @Test
+    public void testRandomOverlaps() throws Exception {
+        final ReadIndex<Integer> index = new ReadIndex<>();
+        final HashMap<Integer, Reads> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            final int owner = this.random.nextInt(50);
+            final int choice = this.random.nextInt(10);
+            if (choice < 5) {
+
+                // Add range
+                final KeyRange range = this.randomRange();
+                index.add(owner, new KeyRanges(range));
+                expected.computeIfAbsent(owner, o -> new Reads()).add(range);
+            } else if (choice < 6) {
+
+                // Remove owner
+                index.remove(owner);
+                expected.remove(owner);
+            } else {
+
+                // Build random mutations
+                final Writes writes = new Writes();
+                for (int j = this.random.nextInt(3); j > 0; j--)
+                    writes.getRemoves().add(this.randomRange());
+                for (int j = this.random.nextInt(3); j > 0; j--)
+                    writes.getPuts().put(this.randomKey(), ByteUtil.EMPTY);
+                for (int j = this.random.nextInt(2); j > 0; j--)
+                    writes.getAdjusts().put(this.randomKey(), 1L);
+
+                // Compare index to brute force
+                final HashSet<Integer> actualOwners = new HashSet<>();
+                index.findOverlaps(writes, actualOwners);
+                final HashSet<Integer> expectedOwners = new HashSet<>();
+                for (Map.Entry<Integer, Reads> entry : expected.entrySet()) {
+                    if (entry.getValue().isConflict(writes))
+                        expectedOwners.add(entry.getKey());
+                }
+                Assert.assertEquals(actualOwners, expectedOwners, "wrong overlaps for " + writes);
+            }
+        }
+
+        // Remove everything
+        for (Integer owner : new ArrayList<>(expected.keySet()))
+            index.remove(owner);
+        Assert.assertEquals(index.size(), 0);
+        Assert.assertEquals(index.getNumOwners(), 0);
+    }
+
+    private KeyRange randomRange() {
+        byte[] min = this.randomKey();
+        byte[] max = this.randomKey();
+        if (ByteUtil.compare(min, max) > 0) {
+            final byte[] temp = min;
+            min = max;
+            max = temp;
+        }
+        return new KeyRange(min, this.random.nextInt(10) == 0 ? null : max);
+    }
+
+    private byte[] randomKey() {
+        final byte[] key = new byte[this.random.nextInt(3)];
+        this.random.nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,123 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Converter;
+
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ConvertedNavigableMap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BinarySerializerTest extends TestSupport {
+
+    @Test(dataProvider = "configs")
+    public void testRoundTrip(int chunkSize, boolean compress) throws Exception {
+
+        // Build data
+        final ConcurrentSkipListMap<byte[], byte[]> data1 = new NavigableMapKVStore().getNavigableMap();
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(12)];
+            this.random.nextBytes(key);
+            key[0] = (byte)(i % 7);
+            final byte[] value = new byte[this.random.nextInt(3) == 0 ? 0 : this.random.nextInt(40)];
+            Arrays.fill(value, (byte)this.random.nextInt(4));
+            data1.put(key, value);
+        }
+
+        // Write
+        final BinarySerializer serializer = new BinarySerializer(new NavigableMapKVStore(data1));
+        serializer.setChunkSize(chunkSize);
+        serializer.setCompress(compress);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Assert.assertEquals(serializer.write(buf, null, null), data1.size());
+        final byte[] dump = buf.toByteArray();
+        Assert.assertTrue(BinarySerializer.isBinaryFormat(new BufferedInputStream(new ByteArrayInputStream(dump))));
+
+        // Read back
+        final ConcurrentSkipListMap<byte[], byte[]> data2 = new NavigableMapKVStore().getNavigableMap();
+        Assert.assertEquals(new BinarySerializer(new NavigableMapKVStore(data2)).read(new ByteArrayInputStream(dump)), data1.size());
+        Assert.assertEquals(s(data2), s(data1));
+
+        // Key range
+        buf.reset();
+        final long count = serializer.write(buf, b("02"), b("04"));
+        data2.clear();
+        new BinarySerializer(new NavigableMapKVStore(data2)).read(new ByteArrayInputStream(buf.toByteArray()));
+        Assert.assertEquals(data2.size(), count);
+        Assert.assertEquals(s(data2), s(data1.subMap(b("02"), b("04"))));
+    }
+
+    @DataProvider(name = "configs")
+    public Object[][] genConfigs() {
+        return new Object[][] {
+            { BinarySerializer.DEFAULT_CHUNK_SIZE, false },
+            { BinarySerializer.DEFAULT_CHUNK_SIZE, true },
+            { 100, false },
+            { 100, true },
+            { 1, true },
+        };
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Assert.assertEquals(new BinarySerializer(new NavigableMapKVStore()).write(buf, null, null), 0);
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        Assert.assertEquals(new BinarySerializer(kv).read(new ByteArrayInputStream(buf.toByteArray())), 0);
+        Assert.assertTrue(kv.getNavigableMap().isEmpty());
+    }
+
+    @Test
+    public void testCorruption() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        for (int i = 0; i < 100; i++)
+            kv.put(new byte[] { (byte)i }, new byte[] { (byte)i, (byte)i });
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final BinarySerializer serializer = new BinarySerializer(kv);
+        serializer.setChunkSize(64);
+        serializer.write(buf, null, null);
+        final byte[] dump = buf.toByteArray();
+
+        // Not a dump
+        Assert.assertFalse(BinarySerializer.isBinaryFormat(new BufferedInputStream(new ByteArrayInputStream(b("3c3f786d6c")))));
+        this.verifyReadFails(b("3c3f786d6c20"));
+
+        // Truncated
+        this.verifyReadFails(Arrays.copyOf(dump, dump.length - 3));
+        this.verifyReadFails(Arrays.copyOf(dump, dump.length / 2));
+
+        // Corrupted data
+        final byte[] corrupt = dump.clone();
+        corrupt[BinarySerializer.MAGIC.length + 12] ^= 0x01;
+        this.verifyReadFails(corrupt);
+    }
+
+    private void verifyReadFails(byte[] dump) {
+        try {
+            new BinarySerializer(new NavigableMapKVStore()).read(new ByteArrayInputStream(dump));
+            assert false;
+        } catch (IOException e) {
+            this.log.debug("got expected " + e);
+        }
+    }
+
+    private static NavigableMap<String, String> s(NavigableMap<byte[], byte[]> map) {
+        final Converter<String, byte[]> converter = ByteUtil.STRING_CONVERTER.reverse();
+        return new ConvertedNavigableMap<>(map, converter, converter);
+    }
+}
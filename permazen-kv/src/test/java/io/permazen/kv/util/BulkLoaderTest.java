@@ -0,0 +1,51 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.test.TestSupport;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BulkLoaderTest extends TestSupport {
+
+    @Test
+    public void testSortedIterator() throws Exception {
+
+        // Empty
+        final BulkLoader.SortedIterator empty = new BulkLoader.SortedIterator(Collections.<KVPair>emptyIterator());
+        Assert.assertFalse(empty.hasNext());
+        Assert.assertNull(empty.getKeyRange());
+
+        // Sorted
+        final BulkLoader.SortedIterator i = new BulkLoader.SortedIterator(Arrays.asList(
+          new KVPair(b("10"), b("")),
+          new KVPair(b("1000"), b("")),
+          new KVPair(b("20"), b(""))).iterator());
+        while (i.hasNext())
+            i.next();
+        Assert.assertEquals(i.getCount(), 3);
+        Assert.assertEquals(i.getKeyRange(), new KeyRange(b("10"), b("2000")));
+
+        // Out of order
+        final BulkLoader.SortedIterator i2 = new BulkLoader.SortedIterator(Arrays.asList(
+          new KVPair(b("10"), b("")),
+          new KVPair(b("10"), b(""))).iterator());
+        i2.next();
+        try {
+            i2.next();
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(i2.getCount(), 1);
+    }
+}
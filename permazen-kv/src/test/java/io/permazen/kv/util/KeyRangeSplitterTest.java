@@ -0,0 +1,190 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyFilter;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.test.TestSupport;
+import io.permazen.util.Bounds;
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KeyRangeSplitterTest extends TestSupport {
+
+    @Test
+    public void testSplit() throws Exception {
+
+        // Empty store
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        Assert.assertEquals(KeyRangeSplitter.split(kv, KeyRange.FULL, 8), Collections.singletonList(KeyRange.FULL));
+        Assert.assertNull(KeyRangeSplitter.findSplitKey(kv, null, null));
+
+        // Single key
+        kv.put(b("1234"), b(""));
+        Assert.assertEquals(KeyRangeSplitter.split(kv, KeyRange.FULL, 8), Collections.singletonList(KeyRange.FULL));
+
+        // Two keys
+        kv.put(b("123400"), b(""));
+        Assert.assertEquals(KeyRangeSplitter.findSplitKey(kv, null, null), b("123400"));
+
+        // Random keys
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(8)];
+            this.random.nextBytes(key);
+            key[0] &= 0x7f;
+            kv.put(key, b(""));
+        }
+        for (int count = 1; count <= 32; count++) {
+            this.verifySplit(kv, KeyRange.FULL, count);
+            this.verifySplit(kv, new KeyRange(b("20"), b("40")), count);
+            this.verifySplit(kv, new KeyRange(b("3012"), b("3013")), count);
+        }
+    }
+
+    private void verifySplit(KVStore kv, KeyRange range, int count) {
+        final List<KeyRange> ranges = KeyRangeSplitter.split(kv, range, count);
+        Assert.assertTrue(ranges.size() >= 1 && ranges.size() <= count, "bad size " + ranges.size());
+        Assert.assertEquals(ranges.get(0).getMin(), range.getMin());
+        Assert.assertEquals(ranges.get(ranges.size() - 1).getMax(), range.getMax());
+        for (int i = 1; i < ranges.size(); i++)
+            Assert.assertEquals(ranges.get(i).getMin(), ranges.get(i - 1).getMax());
+        int total = 0;
+        for (KeyRange subRange : ranges) {
+            final int subCount = this.count(kv, subRange);
+            Assert.assertTrue(subCount > 0 || ranges.size() == 1, "empty range " + subRange + " in " + ranges);
+            total += subCount;
+        }
+        Assert.assertEquals(total, this.count(kv, range));
+    }
+
+    private int count(KVStore kv, KeyRange range) {
+        int count = 0;
+        for (Iterator<?> i = kv.getRange(range.getMin(), range.getMax(), false); i.hasNext(); i.next())
+            count++;
+        return count;
+    }
+
+    @Test
+    public void testSpliterator() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        for (int i = 0; i < 500; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(6)];
+            this.random.nextBytes(key);
+            kv.put(key, key);
+        }
+        final KVNavigableMap map = new KVNavigableMap(kv);
+
+        // Sets
+        this.verifySpliterator(map.navigableKeySet());
+        this.verifySpliterator(map.descendingMap().navigableKeySet());
+        this.verifySpliterator(map.navigableKeySet().subSet(b("40"), true, b("c0"), false));
+        this.verifySpliterator(map.navigableKeySet().subSet(b("40"), true, b("c0"), false).descendingSet());
+        this.verifySpliterator(map.filterKeys(new KeyRanges(b("80"), null)).navigableKeySet());
+
+        // Entry set
+        final List<String> expected = map.entrySet().stream()
+          .map(entry -> ByteUtil.toString(entry.getKey()))
+          .collect(Collectors.toList());
+        final ArrayList<Map.Entry<byte[], byte[]>> actual = new ArrayList<>();
+        this.drain(map.entrySet().spliterator(), 6, actual);
+        Assert.assertEquals(actual.stream().map(entry -> ByteUtil.toString(entry.getKey())).collect(Collectors.toList()), expected);
+        for (Map.Entry<byte[], byte[]> entry : actual)
+            Assert.assertEquals(entry.getValue(), entry.getKey());
+
+        // Parallel stream
+        Assert.assertEquals(map.navigableKeySet().parallelStream().map(ByteUtil::toString).collect(Collectors.toList()),
+          map.navigableKeySet().stream().map(ByteUtil::toString).collect(Collectors.toList()));
+        Assert.assertEquals(map.entrySet().parallelStream().count(), map.size());
+    }
+
+    @Test
+    public void testPrefixSpliterator() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key = new byte[2 + this.random.nextInt(4)];
+            this.random.nextBytes(key);
+            key[0] &= 0x0f;
+            kv.put(key, b(""));
+        }
+        final PrefixSet set = new PrefixSet(kv, false, null, null, new Bounds<>());
+        this.verifySpliterator(set);
+        this.verifySpliterator(set.descendingSet());
+        this.verifySpliterator(set.subSet(b("0400"), true, b("0a00"), false));
+    }
+
+    private void verifySpliterator(NavigableSet<byte[]> set) {
+        final List<String> expected = set.stream().map(ByteUtil::toString).collect(Collectors.toList());
+        final ArrayList<byte[]> actual = new ArrayList<>();
+        final Spliterator<byte[]> spliterator = set.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.ORDERED | Spliterator.DISTINCT));
+        Assert.assertEquals(spliterator.getComparator(), set.comparator());
+        this.drain(spliterator, 8, actual);
+        Assert.assertEquals(actual.stream().map(ByteUtil::toString).collect(Collectors.toList()), expected);
+    }
+
+    // Recursively split and then iterate, preserving encounter order
+    private <T> void drain(Spliterator<T> spliterator, int depth, List<T> list) {
+        final Spliterator<T> prefix = depth > 0 ? spliterator.trySplit() : null;
+        if (prefix != null) {
+            Assert.assertTrue(prefix.estimateSize() > 0 && spliterator.estimateSize() > 0);
+            this.drain(prefix, depth - 1, list);
+            this.drain(spliterator, depth - 1, list);
+            return;
+        }
+        if (this.random.nextBoolean()) {
+            while (spliterator.tryAdvance(list::add))
+                ;
+        } else
+            spliterator.forEachRemaining(list::add);
+    }
+
+// PrefixSet
+
+    // Set of two byte prefixes of keys, using prefix mode
+    private static class PrefixSet extends AbstractKVNavigableSet<byte[]> {
+
+        PrefixSet(KVStore kv, boolean reversed, KeyRange keyRange, KeyFilter keyFilter, Bounds<byte[]> bounds) {
+            super(kv, true, reversed, keyRange, keyFilter, bounds);
+        }
+
+        @Override
+        public Comparator<byte[]> comparator() {
+            return this.reversed ? Collections.reverseOrder(ByteUtil.COMPARATOR) : ByteUtil.COMPARATOR;
+        }
+
+        @Override
+        protected void encode(ByteWriter writer, Object obj) {
+            writer.write((byte[])obj);
+        }
+
+        @Override
+        protected byte[] decode(ByteReader reader) {
+            return reader.readBytes(2);
+        }
+
+        @Override
+        protected NavigableSet<byte[]> createSubSet(boolean newReversed,
+          KeyRange newKeyRange, KeyFilter newKeyFilter, Bounds<byte[]> newBounds) {
+            return new PrefixSet(this.kv, newReversed, newKeyRange, newKeyFilter, newBounds);
+        }
+    }
+}
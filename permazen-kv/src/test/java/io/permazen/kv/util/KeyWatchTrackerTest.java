@@ -8,8 +8,11 @@ package io.permazen.kv.util;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 
+import io.permazen.kv.KeyRange;
 import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
 
+import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -68,6 +71,91 @@ public class KeyWatchTrackerTest extends TestSupport {
             this.verifyNotComplete(future);
     }
 
+    @Test
+    private void testRangeTrigger() throws Exception {
+        final KeyWatchTracker tracker = new KeyWatchTracker();
+
+        final ListenableFuture<?> f1 = tracker.register(new KeyRange(B1, B3));
+        final ListenableFuture<?> f2 = tracker.register(new KeyRange(B3, null));
+        final ListenableFuture<?> f3 = tracker.register(new KeyRange(B1, B2));
+        final ListenableFuture<?> f4 = tracker.register(new KeyRange(B2, B3));
+        Assert.assertEquals(tracker.getNumRangesWatched(), 4);
+
+        // Keys outside of all ranges
+        tracker.trigger(new byte[] { (byte)11 });
+        tracker.trigger(new KeyRange(new byte[0], B1));
+        this.verifyNotComplete(f1);
+        this.verifyNotComplete(f2);
+        this.verifyNotComplete(f3);
+        this.verifyNotComplete(f4);
+
+        // Key inside f1 and f4 only
+        tracker.trigger(new byte[] { (byte)40 });
+        this.verifyComplete(f1);
+        this.verifyNotComplete(f2);
+        this.verifyNotComplete(f3);
+        this.verifyComplete(f4);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 2);
+
+        // Overlapping range
+        tracker.trigger(new KeyRange(new byte[] { (byte)20 }, new byte[] { (byte)60 }));
+        this.verifyComplete(f2);
+        this.verifyComplete(f3);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 0);
+
+        // Single key ranges are tracked as keys
+        final ListenableFuture<?> f5 = tracker.register(new KeyRange(B2, ByteUtil.getNextKey(B2)));
+        Assert.assertEquals(tracker.getNumRangesWatched(), 0);
+        Assert.assertEquals(tracker.getNumKeysWatched(), 1);
+        tracker.trigger(new KeyRange(B1, B3));
+        this.verifyComplete(f5);
+
+        // Cancel unregisters
+        final ListenableFuture<?> f6 = tracker.register(new KeyRange(B1, B3));
+        Assert.assertEquals(tracker.getNumRangesWatched(), 1);
+        f6.cancel(false);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 0);
+
+        // Trigger all
+        final ListenableFuture<?> f7 = tracker.register(new KeyRange(B1, B3));
+        tracker.triggerAll();
+        this.verifyComplete(f7);
+
+        // Done
+        tracker.close();
+    }
+
+    @Test
+    private void testConcurrentRangeRegisterAndTrigger() throws Exception {
+        final KeyWatchTracker tracker = new KeyWatchTracker();
+        final KeyRange range = new KeyRange(B1, B3);
+
+        // Trigger the range continuously while registering watches on it
+        final AtomicBoolean stop = new AtomicBoolean();
+        final Thread triggerer = new Thread(() -> {
+            while (!stop.get())
+                tracker.trigger(B2);
+        });
+        triggerer.start();
+        final ArrayList<ListenableFuture<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 100000; i++)
+                futures.add(tracker.register(range));
+        } finally {
+            stop.set(true);
+            triggerer.join();
+        }
+
+        // One last trigger must complete every watch that is still outstanding
+        tracker.trigger(B2);
+        for (ListenableFuture<?> future : futures)
+            this.verifyComplete(future);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 0);
+
+        // Done
+        tracker.close();
+    }
+
     @Test
     private void testCapacity() throws Exception {
         final KeyWatchTracker tracker = new KeyWatchTracker(2, 99999, false);
@@ -0,0 +1,64 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.KVStore;
+import io.permazen.kv.SizeEstimate;
+import io.permazen.kv.mvcc.MutableView;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SizeEstimatesTest extends TestSupport {
+
+    @Test
+    public void testSample() throws Exception {
+
+        // Empty store
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        Assert.assertEquals(SizeEstimates.sample(kv, null, null, 10), SizeEstimate.EMPTY);
+
+        // Small ranges are counted exactly
+        for (int i = 0; i < 10; i++)
+            kv.put(new byte[] { (byte)0x10, (byte)i }, b("abcd"));
+        Assert.assertEquals(SizeEstimates.sample(kv, null, null, 10), new SizeEstimate(10, 40, true));
+        Assert.assertEquals(SizeEstimates.sample(kv, b("1003"), b("1005"), 10), new SizeEstimate(2, 8, true));
+        Assert.assertEquals(kv.estimateSize(null, null), new SizeEstimate(10, 40, true));
+
+        // Larger ranges are extrapolated
+        final NavigableMapKVStore kv2 = new NavigableMapKVStore();
+        for (int i = 0; i < 0x10000; i += 16)
+            kv2.put(ByteUtil.parse(String.format("%04x", i)), b(""));
+        final SizeEstimate estimate = SizeEstimates.sample(kv2, null, null, 256);
+        Assert.assertFalse(estimate.isExact());
+        Assert.assertTrue(Math.abs(estimate.getNumKeys() - 4096) < 100, "bad estimate " + estimate);
+        final SizeEstimate estimate2 = SizeEstimates.sample(kv2, b("4000"), b("8000"), 256);
+        Assert.assertTrue(Math.abs(estimate2.getNumKeys() - 1024) < 50, "bad estimate " + estimate2);
+    }
+
+    @Test
+    public void testViews() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        for (int i = 0; i < 20; i++)
+            kv.put(new byte[] { (byte)(i < 10 ? 0x20 : 0x30), (byte)i }, b(""));
+
+        // Prefix store
+        final KVStore prefixKV = PrefixKVStore.create(kv, b("20"));
+        Assert.assertEquals(prefixKV.estimateSize(null, null), new SizeEstimate(10, 20, true));
+        Assert.assertEquals(prefixKV.estimateSize(b("05"), null), new SizeEstimate(5, 10, true));
+
+        // Mutable view
+        final MutableView view = new MutableView(kv);
+        Assert.assertEquals(view.estimateSize(null, null), new SizeEstimate(20, 40, true));
+        view.put(b("2099"), b("1234"));
+        final SizeEstimate estimate = view.estimateSize(b("20"), b("21"));
+        Assert.assertFalse(estimate.isExact());
+        Assert.assertEquals(estimate.getNumKeys(), 11);
+        Assert.assertEquals(view.estimateSize(b("30"), b("31")), new SizeEstimate(10, 20, false));
+    }
+}
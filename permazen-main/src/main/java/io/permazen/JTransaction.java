@@ -1103,6 +1103,23 @@ public class JTransaction {
         return this.tx.exists(id);
     }
 
+    /**
+     * Bulk load multiple objects, returning the IDs of those that exist in this transaction.
+     *
+     * <p>
+     * This method is equivalent to invoking {@link #exists exists()} for each object in turn, but the objects'
+     * meta-data is read from the key/value store in a single batch, which makes subsequent access to those
+     * objects' fields cheaper. See {@link Transaction#loadObjects Transaction.loadObjects()}.
+     *
+     * @param ids IDs of the objects to load
+     * @return the IDs in {@code ids} corresponding to objects that exist
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws IllegalArgumentException if {@code ids} is null or contains a null element
+     */
+    public ObjIdSet loadObjects(Iterable<ObjId> ids) {
+        return this.tx.loadObjects(ids);
+    }
+
     /**
      * Recreate the given instance in this transaction.
      *
@@ -1260,6 +1277,37 @@ public class JTransaction {
           this.tx.readSimpleField(id, storageId, updateVersion));
     }
 
+    /**
+     * Bulk read a simple field from multiple objects. This returns the values returned by
+     * {@link Transaction#readSimpleFields Transaction.readSimpleFields()} with {@link ObjId}s converted into
+     * {@link JObject}s, etc.
+     *
+     * <p>
+     * This method is equivalent to invoking {@link #readSimpleField readSimpleField()} for each object in turn,
+     * but the underlying key/value reads are batched, which can be significantly faster when reading from
+     * a remote key/value store.
+     *
+     * @param ids IDs of the objects containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param updateVersion true to first automatically update the objects' schema versions, false to not change them
+     * @return values of the field in the objects, in the same order as {@code ids}
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws DeletedObjectException if any object does not exist in this transaction
+     * @throws UnknownFieldException if no {@link JSimpleField} corresponding to {@code storageId} exists in some object
+     * @throws TypeNotInSchemaVersionException if {@code updateVersion} is true but some object has a type
+     *  that does not exist in this instance's schema version
+     * @throws IllegalArgumentException if {@code ids} is null or contains a null element
+     */
+    public List<Object> readSimpleFields(List<ObjId> ids, int storageId, boolean updateVersion) {
+        final List<Object> values = this.tx.readSimpleFields(ids, storageId, updateVersion);
+        final ArrayList<Object> result = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            final ObjId id = ids.get(i);
+            result.add(this.convert(this.jdb.getJField(id, storageId, JSimpleField.class).getConverter(this), values.get(i)));
+        }
+        return result;
+    }
+
     /**
      * Write a simple field. This writes the value via {@link Transaction#writeSimpleField Transaction.writeSimpleField()}
      * after converting {@link JObject}s into {@link ObjId}s, etc.
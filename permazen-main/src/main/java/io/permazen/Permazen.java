@@ -24,6 +24,7 @@ import io.permazen.core.TypeNotInSchemaVersionException;
 import io.permazen.core.UnknownFieldException;
 import io.permazen.core.UnknownTypeException;
 import io.permazen.core.type.ReferenceFieldType;
+import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KeyRange;
@@ -43,6 +44,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -699,6 +701,29 @@ public class Permazen {
         return new SnapshotJTransaction(this, stx, validationMode);
     }
 
+    /**
+     * Load a complete database image, in the form of a sorted stream of key/value pairs, into the (empty)
+     * key/value database underlying this instance.
+     *
+     * <p>
+     * This is a convenience method, equivalent to:
+     *  <blockquote><pre>
+     *  getDatabase().{@link Database#bulkLoad bulkLoad}(pairs)
+     *  </pre></blockquote>
+     *
+     * <p>
+     * No validation is performed while loading; the schema information in the loaded data is verified against this instance
+     * when the next transaction is created.
+     *
+     * @param pairs key/value pairs in strictly ascending key order
+     * @throws IllegalStateException if the key/value database contains any keys other than user meta-data
+     * @throws IllegalArgumentException if {@code pairs} is null
+     * @throws IllegalArgumentException if {@code pairs} iterates keys out of order
+     */
+    public void bulkLoad(Iterator<? extends KVPair> pairs) {
+        this.db.bulkLoad(pairs);
+    }
+
 // Schema
 
     /**
@@ -13,6 +13,7 @@ import com.google.common.base.Preconditions;
 public class ByteReader {
 
     final byte[] buf;
+    final int base;                                 // offset reported as zero
     final int max;
     int off;
 
@@ -24,6 +25,7 @@ public class ByteReader {
      */
     public ByteReader(byte[] buf) {
         this.buf = buf;
+        this.base = 0;
         this.max = buf.length;
         this.off = 0;
     }
@@ -53,10 +55,28 @@ public class ByteReader {
         if (off < 0 || len < 0 || off > buf.length || off + len < 0 || off + len > buf.length)
             throw new IndexOutOfBoundsException("buf.length = " + buf.length + ", off = " + off + ", len = " + len);
         this.buf = buf;
+        this.base = 0;
         this.max = off + len;
         this.off = off;
     }
 
+    /**
+     * Constructor. The provided slice is read from directly; no copy is made.
+     *
+     * <p>
+     * Unlike {@link #ByteReader(byte[], int, int)}, offsets used by the new instance are relative to the start
+     * of {@code slice}, i.e., {@link #getOffset} initially returns zero.
+     *
+     * @param slice bytes to read
+     * @throws NullPointerException if {@code slice} is null
+     */
+    public ByteReader(ByteSlice slice) {
+        this.buf = slice.array();
+        this.base = slice.offset();
+        this.max = this.base + slice.length();
+        this.off = this.base;
+    }
+
     /**
      * Constructor. Takes a snapshot of the given writer's entire content.
      *
@@ -109,7 +129,7 @@ public class ByteReader {
      * @throws IndexOutOfBoundsException if there are no more bytes to unread
      */
     public void unread() {
-        if (this.off == 0)
+        if (this.off == this.base)
             throw new IndexOutOfBoundsException();
         this.off--;
     }
@@ -121,7 +141,7 @@ public class ByteReader {
      * @throws IndexOutOfBoundsException if there are no more bytes to unread
      */
     public void unread(int len) {
-        if (this.off - len < 0)
+        if (this.off - len < this.base)
             throw new IndexOutOfBoundsException();
         this.off -= len;
     }
@@ -172,7 +192,7 @@ public class ByteReader {
      * @return current offset
      */
     public int getOffset() {
-        return this.off;
+        return this.off - this.base;
     }
 
     /**
@@ -181,7 +201,7 @@ public class ByteReader {
      * @return maximum offset
      */
     public int getMax() {
-        return this.max;
+        return this.max - this.base;
     }
 
     /**
@@ -193,10 +213,10 @@ public class ByteReader {
      * @throws IndexOutOfBoundsException if {@code off} and/or {@code len} is out of bounds
      */
     public byte[] getBytes(int off, int len) {
-        if (off < 0 || len < 0 || off + len > this.max)
+        if (off < 0 || len < 0 || off + len > this.max - this.base)
             throw new IndexOutOfBoundsException();
         final byte[] data = new byte[len];
-        System.arraycopy(this.buf, off, data, 0, len);
+        System.arraycopy(this.buf, this.base + off, data, 0, len);
         return data;
     }
 
@@ -208,7 +228,7 @@ public class ByteReader {
      * @throws IndexOutOfBoundsException if {@code off} is out of bounds
      */
     public byte[] getBytes(int off) {
-        return this.getBytes(off, this.max - off);
+        return this.getBytes(off, this.max - this.base - off);
     }
 
     /**
@@ -217,7 +237,7 @@ public class ByteReader {
      * @return copy of the entire buffer
      */
     public byte[] getBytes() {
-        return this.max == this.buf.length ? this.buf.clone() : this.getBytes(0);
+        return this.base == 0 && this.max == this.buf.length ? this.buf.clone() : this.getBytes(0);
     }
 
     /**
@@ -226,7 +246,7 @@ public class ByteReader {
      * @return the current offset
      */
     public int mark() {
-        return this.off;
+        return this.off - this.base;
     }
 
     /**
@@ -236,9 +256,9 @@ public class ByteReader {
      * @throws IndexOutOfBoundsException if {@code mark} is out of bounds
      */
     public void reset(int mark) {
-        if (mark < 0 || mark > this.max)
+        if (mark < 0 || mark > this.max - this.base)
             throw new IndexOutOfBoundsException();
-        this.off = mark;
+        this.off = this.base + mark;
     }
 }
 
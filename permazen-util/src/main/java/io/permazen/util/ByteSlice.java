@@ -0,0 +1,269 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * An immutable view of a contiguous range of bytes in a {@code byte[]} array.
+ *
+ * <p>
+ * Instances allow key and value data to be passed around, trimmed, and decoded without copying. The underlying array
+ * is not copied; therefore, it must not be modified while any slices of it are in use.
+ * Use {@link #toByteArray} to materialize the bytes as a new {@code byte[]} array.
+ *
+ * <p>
+ * Instances order themselves and compare for equality based on their contents, using the same unsigned lexicographic
+ * ordering as {@link ByteUtil#compare ByteUtil.compare()}.
+ */
+public final class ByteSlice implements Comparable<ByteSlice> {
+
+    /**
+     * The empty slice.
+     */
+    public static final ByteSlice EMPTY = new ByteSlice(ByteUtil.EMPTY);
+
+    private final byte[] buf;
+    private final int off;
+    private final int len;
+
+    /**
+     * Constructor. Creates a slice covering the entire array.
+     *
+     * @param buf underlying array
+     * @throws IllegalArgumentException if {@code buf} is null
+     */
+    public ByteSlice(byte[] buf) {
+        Preconditions.checkArgument(buf != null, "null buf");
+        this.buf = buf;
+        this.off = 0;
+        this.len = buf.length;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param buf underlying array
+     * @param off offset into {@code buf} of the first byte
+     * @param len number of bytes
+     * @throws IllegalArgumentException if {@code buf} is null
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} are out of bounds
+     */
+    public ByteSlice(byte[] buf, int off, int len) {
+        Preconditions.checkArgument(buf != null, "null buf");
+        if (off < 0 || len < 0 || off > buf.length || len > buf.length - off)
+            throw new IndexOutOfBoundsException("buf.length = " + buf.length + ", off = " + off + ", len = " + len);
+        this.buf = buf;
+        this.off = off;
+        this.len = len;
+    }
+
+    /**
+     * Get the number of bytes in this slice.
+     *
+     * @return slice length
+     */
+    public int length() {
+        return this.len;
+    }
+
+    /**
+     * Determine whether this slice is empty.
+     *
+     * @return true if this slice has length zero
+     */
+    public boolean isEmpty() {
+        return this.len == 0;
+    }
+
+    /**
+     * Get the byte at the specified position in this slice.
+     *
+     * @param index position in this slice
+     * @return byte value
+     * @throws IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public byte byteAt(int index) {
+        if (index < 0 || index >= this.len)
+            throw new IndexOutOfBoundsException("index = " + index + ", length = " + this.len);
+        return this.buf[this.off + index];
+    }
+
+    /**
+     * Get the portion of this slice starting at the specified position.
+     *
+     * @param start starting position in this slice
+     * @return sub-slice sharing the same underlying array
+     * @throws IndexOutOfBoundsException if {@code start} is out of bounds
+     */
+    public ByteSlice substring(int start) {
+        return this.substring(start, this.len);
+    }
+
+    /**
+     * Get a portion of this slice.
+     *
+     * @param start starting position (inclusive) in this slice
+     * @param end ending position (exclusive) in this slice
+     * @return sub-slice sharing the same underlying array
+     * @throws IndexOutOfBoundsException if {@code start} or {@code end} are out of bounds
+     */
+    public ByteSlice substring(int start, int end) {
+        if (start < 0 || end > this.len || start > end)
+            throw new IndexOutOfBoundsException("start = " + start + ", end = " + end + ", length = " + this.len);
+        if (start == 0 && end == this.len)
+            return this;
+        return new ByteSlice(this.buf, this.off + start, end - start);
+    }
+
+    /**
+     * Determine whether this slice starts with the given prefix.
+     *
+     * @param prefix prefix
+     * @return true if this slice starts with {@code prefix}
+     * @throws IllegalArgumentException if {@code prefix} is null
+     */
+    public boolean startsWith(byte[] prefix) {
+        Preconditions.checkArgument(prefix != null, "null prefix");
+        if (prefix.length > this.len)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (this.buf[this.off + i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copy the contents of this slice into a new {@code byte[]} array.
+     *
+     * @return a new array containing the bytes in this slice
+     * @see #asByteArray
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(this.buf, this.off, this.off + this.len);
+    }
+
+    /**
+     * Get the contents of this slice as a {@code byte[]} array, avoiding a copy if possible.
+     *
+     * <p>
+     * If this slice covers the entirety of the underlying array, that array is returned directly; otherwise, a copy is made.
+     * Because the returned array may be shared, it must not be modified, nor given to code that might modify it.
+     *
+     * @return the bytes in this slice
+     * @see #toByteArray
+     */
+    public byte[] asByteArray() {
+        if (this.off == 0 && this.len == this.buf.length)
+            return this.buf;
+        return this.toByteArray();
+    }
+
+    /**
+     * Create a {@link ByteReader} that reads the bytes in this slice.
+     *
+     * <p>
+     * No data is copied. Offsets used by the returned reader (e.g., with {@link ByteReader#getOffset getOffset()}
+     * and {@link ByteReader#getBytes(int, int) getBytes()}) are relative to the start of this slice.
+     *
+     * @return reader for this slice
+     */
+    public ByteReader newReader() {
+        return new ByteReader(this);
+    }
+
+    /**
+     * Write the bytes in this slice to the given {@link ByteWriter}.
+     *
+     * @param writer destination
+     * @throws IllegalArgumentException if {@code writer} is null
+     */
+    public void writeTo(ByteWriter writer) {
+        Preconditions.checkArgument(writer != null, "null writer");
+        writer.write(this.buf, this.off, this.len);
+    }
+
+    // Package access for ByteReader and ByteUtil
+    byte[] array() {
+        return this.buf;
+    }
+
+    int offset() {
+        return this.off;
+    }
+
+// Comparable
+
+    @Override
+    public int compareTo(ByteSlice that) {
+        final int minLength = Math.min(this.len, that.len);
+        for (int i = 0; i < minLength; i++) {
+            final int diff = (this.buf[this.off + i] & 0xff) - (that.buf[that.off + i] & 0xff);
+            if (diff != 0)
+                return diff < 0 ? -1 : 1;
+        }
+        return Integer.compare(this.len, that.len);
+    }
+
+    /**
+     * Compare the contents of this slice to the given {@code byte[]} array using unsigned lexicographic ordering.
+     *
+     * @param that array to compare with
+     * @return a negative, zero, or positive value as this slice is less than, equal to, or greater than {@code that}
+     * @throws NullPointerException if {@code that} is null
+     */
+    public int compareTo(byte[] that) {
+        final int minLength = Math.min(this.len, that.length);
+        for (int i = 0; i < minLength; i++) {
+            final int diff = (this.buf[this.off + i] & 0xff) - (that[i] & 0xff);
+            if (diff != 0)
+                return diff < 0 ? -1 : 1;
+        }
+        return Integer.compare(this.len, that.length);
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final ByteSlice that = (ByteSlice)obj;
+        if (this.len != that.len)
+            return false;
+        for (int i = 0; i < this.len; i++) {
+            if (this.buf[this.off + i] != that.buf[that.off + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calculate hash code.
+     *
+     * <p>
+     * The hash code of a {@link ByteSlice} equals {@link Arrays#hashCode(byte[])} of its contents.
+     *
+     * @return hash value for this instance
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < this.len; i++)
+            hash = 31 * hash + this.buf[this.off + i];
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return ByteUtil.toString(this.asByteArray());
+    }
+}
@@ -129,6 +129,21 @@ public final class ByteUtil {
         return nextKey;
     }
 
+    /**
+     * Get the next key greater than the given key in unsigned lexicographic ordering.
+     * This creates a new key simply by appending a {@code 0x00} byte to the data
+     * contained in the given key.
+     *
+     * @param key previous key
+     * @return next key after {@code key}
+     * @throws NullPointerException if {@code key} is null
+     */
+    public static byte[] getNextKey(ByteSlice key) {
+        final byte[] nextKey = new byte[key.length() + 1];
+        System.arraycopy(key.array(), key.offset(), nextKey, 0, key.length());
+        return nextKey;
+    }
+
     /**
      * Determine whether {@code key2} is the next key after {@code key1}.
      *
@@ -0,0 +1,107 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.util;
+
+import io.permazen.test.TestSupport;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ByteSliceTest extends TestSupport {
+
+    @Test
+    public void testSlice() {
+        final byte[] buf = ByteUtil.parse("00112233445566");
+        final ByteSlice slice = new ByteSlice(buf, 2, 4);
+        Assert.assertEquals(slice.length(), 4);
+        Assert.assertEquals(slice.byteAt(0), (byte)0x22);
+        Assert.assertEquals(slice.toByteArray(), ByteUtil.parse("22334455"));
+        Assert.assertEquals(slice.substring(1, 3).toByteArray(), ByteUtil.parse("3344"));
+        Assert.assertEquals(slice.substring(4), ByteSlice.EMPTY);
+        Assert.assertTrue(slice.startsWith(ByteUtil.parse("2233")));
+        Assert.assertFalse(slice.startsWith(ByteUtil.parse("2234")));
+        Assert.assertFalse(slice.startsWith(ByteUtil.parse("2233445566")));
+        Assert.assertEquals(slice.toString(), "22334455");
+        Assert.assertEquals(ByteUtil.getNextKey(slice), ByteUtil.parse("2233445500"));
+
+        // Only asByteArray() avoids copying whole-array slices
+        Assert.assertSame(new ByteSlice(buf).asByteArray(), buf);
+        Assert.assertNotSame(new ByteSlice(buf).toByteArray(), buf);
+        Assert.assertEquals(new ByteSlice(buf).toByteArray(), buf);
+        Assert.assertEquals(slice.asByteArray(), ByteUtil.parse("22334455"));
+
+        // Equality and ordering
+        final ByteSlice other = new ByteSlice(ByteUtil.parse("22334455"));
+        Assert.assertEquals(slice, other);
+        Assert.assertEquals(slice.hashCode(), Arrays.hashCode(other.toByteArray()));
+        for (int i = 0; i < 1000; i++) {
+            final byte[] key1 = new byte[this.random.nextInt(6)];
+            final byte[] key2 = new byte[this.random.nextInt(6)];
+            this.random.nextBytes(key1);
+            this.random.nextBytes(key2);
+            final int expected = Integer.signum(ByteUtil.compare(key1, key2));
+            final ByteSlice slice1 = this.embed(key1);
+            Assert.assertEquals(Integer.signum(slice1.compareTo(this.embed(key2))), expected);
+            Assert.assertEquals(Integer.signum(slice1.compareTo(key2)), expected);
+        }
+
+        // Bounds
+        try {
+            new ByteSlice(buf, 5, 3);
+            assert false;
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            slice.substring(3, 5);
+            assert false;
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReader() {
+        final ByteSlice slice = new ByteSlice(ByteUtil.parse("00112233445566"), 2, 4);
+        final ByteReader reader = slice.newReader();
+        Assert.assertEquals(reader.getOffset(), 0);
+        Assert.assertEquals(reader.getMax(), 4);
+        Assert.assertEquals(reader.remain(), 4);
+        Assert.assertEquals(reader.readByte(), 0x22);
+        final int mark = reader.mark();
+        Assert.assertEquals(mark, 1);
+        Assert.assertEquals(reader.readBytes(2), ByteUtil.parse("3344"));
+        Assert.assertEquals(reader.getOffset(), 3);
+        Assert.assertEquals(reader.getBytes(0, reader.getOffset()), ByteUtil.parse("223344"));
+        Assert.assertEquals(reader.getBytes(), ByteUtil.parse("22334455"));
+        reader.reset(mark);
+        Assert.assertEquals(reader.peek(), 0x33);
+        reader.unread();
+        try {
+            reader.unread();
+            assert false;
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        reader.skip(4);
+        try {
+            reader.readByte();
+            assert false;
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    // Embed data in a larger array
+    private ByteSlice embed(byte[] data) {
+        final byte[] buf = new byte[data.length + 4];
+        this.random.nextBytes(buf);
+        System.arraycopy(data, 0, buf, 2, data.length);
+        return new ByteSlice(buf, 2, data.length);
+    }
+}